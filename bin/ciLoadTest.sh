@@ -0,0 +1,67 @@
+#!/bin/bash
+# -----------------------------------------------------------------------------
+# Project: OpenGTS - Open GPS Tracking System
+# URL    : http://www.opengts.org
+# File   : ciLoadTest.sh
+# -----------------------------------------------------------------------------
+# Description:
+#   This command-line utility starts a local "template" TrackServer, runs the fleet
+#   load generator against it, stops the server, and exits non-zero if the ACK
+#   latency/ACK rate thresholds are not met (for use in an automated build).
+#   The test is skipped (exit 0) if the server jar has not been built.
+#   Thresholds/load may be overridden with the following environment variables:
+#     LOAD_PORT, LOAD_DEVICES, LOAD_RATE, LOAD_DURATION, LOAD_MAX_P99MS, LOAD_MIN_ACKPCT
+#   Example:
+#     LOAD_DEVICES=2000 LOAD_MAX_P99MS=500 bin/ciLoadTest.sh
+# -----------------------------------------------------------------------------
+if [ "${GTS_HOME}" = "" ]; then 
+    echo "!!! ERROR: GTS_HOME not defined !!!"
+    exit 99
+fi
+# -----------------------------------------------------------------------------
+
+SERVER="template"
+PORT="${LOAD_PORT:-31200}"
+DEVICES="${LOAD_DEVICES:-500}"
+RATE="${LOAD_RATE:-5}"
+DURATION="${LOAD_DURATION:-60}"
+MAX_P99MS="${LOAD_MAX_P99MS:-250}"
+MIN_ACKPCT="${LOAD_MIN_ACKPCT:-99.5}"
+
+# --- skip if the server has not been built
+if [ ! -f "${GTS_HOME}/build/lib/${SERVER}.jar" ]; then
+    echo "Load test skipped: ${GTS_HOME}/build/lib/${SERVER}.jar not found"
+    exit 0
+fi
+
+# --- start the server, and wait for its port
+${GTS_HOME}/bin/runserver.sh -s ${SERVER} -p ${PORT}
+if [ $? -ne 0 ]; then
+    echo "Unable to start server '${SERVER}'"
+    exit 1
+fi
+READY=0
+for i in $(seq 1 30); do
+    if (exec 3<>/dev/tcp/127.0.0.1/${PORT}) 2>/dev/null; then
+        READY=1
+        break
+    fi
+    sleep 1
+done
+if [ ${READY} -eq 0 ]; then
+    echo "Server '${SERVER}' is not listening on port ${PORT}"
+    ${GTS_HOME}/bin/runserver.sh -s ${SERVER} -term
+    exit 1
+fi
+
+# --- run the load test
+${GTS_HOME}/bin/loadTest.sh -protocol=${SERVER} -host=127.0.0.1 -port=${PORT} \
+    -devices=${DEVICES} -rate=${RATE} -duration=${DURATION} \
+    -maxP99Ms=${MAX_P99MS} -minAckPct=${MIN_ACKPCT} -maxErrors=0
+RTN=$?
+
+# --- stop the server
+${GTS_HOME}/bin/runserver.sh -s ${SERVER} -term
+exit ${RTN}
+
+# ---
@@ -117,6 +117,7 @@ use Getopt::Long;
     "dir:s"             => \$opt_dir,
     "tree"              => \$opt_tree,
     "showsql"           => \$opt_showSQL,
+    "queryStats:s"      => \$opt_queryStats,
     "debug"             => \$opt_debug,
     "debugMode"         => \$opt_debug,
     "bean:s"            => \$opt_bean,      # -- experimental
@@ -161,6 +162,9 @@ if (!$optok || $opt_help) {
     print "  Drop (delete) table from database [WARNING: Also deletes data!]:\n";
     print "    -drop=<table> [-yes]\n";
     print "\n";
+    print "  Display SQL statement statistics (with '-tables', '-schema', etc):\n";
+    print "    -queryStats[=total|count|p99|rows]\n";
+    print "\n";
     exit(1);
 }
 
@@ -381,6 +385,12 @@ if (defined $opt_load) {
     $optFound = $true;
 }
 
+# --- SQL statement statistics?
+if (defined $opt_queryStats) {
+    my $sortBy = ("$opt_queryStats" ne "")? $opt_queryStats : "total";
+    $Command .= " -db.queryStats.enable=true -queryStats=$sortBy";
+}
+
 # --- create/verify tables
 if (defined $opt_tables) {
     #print "\n";
@@ -0,0 +1,26 @@
+#!/bin/bash
+# -----------------------------------------------------------------------------
+# Project: OpenGTS - Open GPS Tracking System
+# URL    : http://www.opengts.org
+# File   : loadTest.sh
+# -----------------------------------------------------------------------------
+# Description:
+#   This command-line utility simulates a fleet of devices reporting to a running
+#   DCS server (or HTTP ingest servlet), and reports ACK latency and throughput.
+#   Example:
+#     bin/loadTest.sh -protocol=template -port=31200 -devices=5000 -rate=30 \
+#         -duration=120 -churn=0.01 -burst=0.005 -maxP99Ms=250 -minAckPct=99.5
+#   The exit code is non-zero if the "-maxP99Ms"/"-minAckPct"/"-maxErrors" 
+#   thresholds are not met.
+#   See bin/ciLoadTest.sh to run this against a local TrackServer in an automated build.
+# -----------------------------------------------------------------------------
+if [ "${GTS_HOME}" = "" ]; then 
+    echo "!!! ERROR: GTS_HOME not defined !!!"
+    exit 99
+fi
+# -----------------------------------------------------------------------------
+
+QUIET='-quiet'
+${GTS_HOME}/bin/exeJava ${QUIET} org.opengts.tools.FleetLoadGenerator $*
+
+# ---
@@ -5,14 +5,23 @@ echo "ClickForTech TestNG Test Runner"
 echo "================================"
 
 # Set up classpath
-CLASSPATH="lib/testng-7.8.0.jar:lib/jcommander-1.82.jar:lib/slf4j-api-1.7.36.jar:lib/slf4j-simple-1.7.36.jar:build/test-classes"
+LIBS="lib/javaee-api-7.0/javaee-api-7.0.jar:lib/dmtpserv.jar"
+CLASSPATH="lib/testng-7.8.0.jar:lib/jcommander-1.82.jar:lib/slf4j-api-1.7.36.jar:lib/slf4j-simple-1.7.36.jar:${LIBS}:build/classes:build/test-classes"
 
 # Create build directories
+mkdir -p build/classes
 mkdir -p build/test-classes
 mkdir -p build/test-results
 
+echo "Compiling source classes..."
+javac -nowarn -encoding UTF-8 --release 7 -cp "${LIBS}" -d build/classes $(find src/java -name "*.java") 2>&1 | grep -v "^warning:"
+if [ ${PIPESTATUS[0]} -ne 0 ]; then
+    echo "Compilation failed!"
+    exit 1
+fi
+
 echo "Compiling test classes..."
-javac -cp "lib/testng-7.8.0.jar" -d build/test-classes tests/com/click4tech/ControllerDataUtilTest.java
+javac -nowarn -encoding UTF-8 -cp "lib/testng-7.8.0.jar:${LIBS}:build/classes" -d build/test-classes $(find tests -name "*.java")
 if [ $? -ne 0 ]; then
     echo "Compilation failed!"
     exit 1
@@ -23,4 +32,11 @@ java -cp "$CLASSPATH" org.testng.TestNG tests/testng.xml -d build/test-results
 
 echo ""
 echo "Test results saved to build/test-results/"
-echo "Open build/test-results/index.html in a browser to view detailed results."
\ No newline at end of file
+echo "Open build/test-results/index.html in a browser to view detailed results."
+
+# Optional: load test against a local TrackServer (skipped if the server jar is not built)
+if [ "${LOAD_TEST}" = "true" ]; then
+    echo ""
+    echo "Running load test..."
+    GTS_HOME="${GTS_HOME:-$(pwd)}" bash bin/ciLoadTest.sh
+fi
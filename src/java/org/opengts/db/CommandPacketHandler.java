@@ -21,6 +21,8 @@
 //     -Initial release
 //  2013/08/06  Martin D. Flynn
 //     -Added support for "%COMMANDS%" and "%STACKTRACE%"
+//  2026/10/19
+//     -Added support for "%QUERYSTATS%"
 // ----------------------------------------------------------------------------
 package org.opengts.db;
 
@@ -86,6 +88,8 @@ public abstract class CommandPacketHandler
     
     public static final String  INTERNCMD_COMMANDS      = "%COMMANDS%";
     public static final String  INTERNCMD_STACKTRACE    = "%STACKTRACE%";
+    public static final String  INTERNCMD_METRICS       = "%METRICS%";
+    public static final String  INTERNCMD_QUERYSTATS    = "%QUERYSTATS%";
 
     // ------------------------------------------------------------------------
 
@@ -391,6 +395,33 @@ public abstract class CommandPacketHandler
 
             }
 
+            /* return runtime metrics? */
+            if (cmdName.equalsIgnoreCase(INTERNCMD_METRICS)) {
+                // cmdType= command="%METRICS%"
+                if (!Metrics.IsEnabled()) {
+                    return RESULT(rtCmd, DCServerFactory.ResultCode.NOT_SUPPORTED);
+                }
+                CommandPacketHandler._setResult(0,rtCmd,DCServerFactory.ResultCode.SUCCESS); // this frame
+                StringBuffer sb = new StringBuffer();
+                sb.append(rtCmd.toString()).append("\n");
+                sb.append(Metrics.GetText());
+                return sb.toString().getBytes();
+            }
+
+            /* return SQL statement statistics? */
+            if (cmdName.equalsIgnoreCase(INTERNCMD_QUERYSTATS)) {
+                // cmdType= command="%QUERYSTATS%" [arg0=<sortBy>]
+                if (!RTConfig.getBoolean(RTKey.DB_QUERY_STATS,false)) {
+                    return RESULT(rtCmd, DCServerFactory.ResultCode.NOT_SUPPORTED);
+                }
+                CommandPacketHandler._setResult(0,rtCmd,DCServerFactory.ResultCode.SUCCESS); // this frame
+                String sortBy = StringTools.trim(cmdArg0);
+                StringBuffer sb = new StringBuffer();
+                sb.append(rtCmd.toString()).append("\n");
+                sb.append(DBQueryStats.GetText((!StringTools.isBlank(sortBy)? sortBy : "total"), 50));
+                return sb.toString().getBytes();
+            }
+
             /* return available commands? */
             if (cmdName.equalsIgnoreCase(INTERNCMD_STACKTRACE)) {
                 // cmdType= command="%STACKTRACE%"
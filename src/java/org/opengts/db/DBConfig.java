@@ -71,6 +71,13 @@
 //     -Added "PROP_track_updateLastLoginTime_[user|account]"
 //  2013/08/06  Martin D. Flynn
 //     -Added PROP_FuelRegister_ignoreWhileMoving
+//  2026/10/19
+//     -Added optional table "org.opengts.db.tables.Trip", and PROP_Trip_enable
+//     -Added optional table "org.opengts.db.tables.EventShard" (EventData shard map)
+//     -Added PROP_EventArchive_dir, PROP_EventArchive_ageDays (see "EventArchive")
+//     -Added PROP_EventSpool_dir, PROP_EventSpool_segmentSizeMB, PROP_EventSpool_batchSize,
+//      PROP_EventSpool_maxRetries, PROP_EventSpool_sync (see "EventSpool")
+//     -Added "-queryStats -server=<dcs>" to display SQL statistics from a running DCS
 // ----------------------------------------------------------------------------
 package org.opengts.db;
 
@@ -414,6 +421,71 @@ public class DBConfig
     **/
     public static final String PROP_Device_eventsPerSecond              = "Device.eventsPerSecond";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** True to serialize event processing for each Device through a single per-device
+    *** owner holding one shared Device instance (defaults to 'true')<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Device_eventOwner_enable            = "Device.eventOwner.enable";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of event owner worker lanes (defaults to 0, for 2 lanes per processor with a
+    *** minimum of 8)<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_Device_eventOwner_laneCount         = "Device.eventOwner.laneCount";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of seconds a DCS session waits for a queued Device owner request
+    *** (ie. an event insertion) to complete (defaults to 30)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_eventOwner_timeoutSec        = "Device.eventOwner.timeoutSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of idle seconds after which a Device owner is released (defaults to 300)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_eventOwner_idleSeconds       = "Device.eventOwner.idleSeconds";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of seconds a Device owner retains its cached Device instance
+    *** before it is reloaded (defaults to 900)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_eventOwner_maximumAgeSec     = "Device.eventOwner.maximumAgeSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of seconds changed Device fields may remain unwritten by an
+    *** event owner (defaults to 15)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_writeBehind_intervalSec      = "Device.writeBehind.intervalSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of Device write-back requests coalesced into a single write by an event
+    *** owner (defaults to 20, 1 to write on every request)<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_Device_writeBehind_eventCount       = "Device.writeBehind.eventCount";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of seconds a cached per-account StatusCode table is retained
+    *** before it is reloaded (defaults to 600, 0 to disable the cache)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_StatusCode_cacheTimeoutSec          = "StatusCode.cacheTimeoutSec";
+
     // -------
 
     /**
@@ -447,6 +519,94 @@ public class DBConfig
     **/
     public static final String PROP_EventData_odometerOffsetType        = "EventData.odometerOffsetType";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of EventData records read per page by streaming event exports<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_EventData_cursorPageSize            = "EventData.cursorPageSize";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** EventBus bridge destinations ("host:port[,host:port]"), to which the primary key
+    *** of each inserted event is forwarded (ie. from a separate DCS JVM to the web-app)<br>
+    *** Type: String
+    **/
+    public static final String PROP_EventBus_bridge_send                = "EventBus.bridge.send";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** EventBus bridge listen address ("[bindAddress:]port") on which forwarded events
+    *** are received (default bind address is "127.0.0.1")<br>
+    *** Type: String
+    **/
+    public static final String PROP_EventBus_bridge_listen              = "EventBus.bridge.listen";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** True to maintain the Trip table as Device start/stop events are inserted<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Trip_enable                         = "Trip.enable";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Directory of the columnar EventData archive (blank to disable the archive)<br>
+    *** Type: String
+    **/
+    public static final String PROP_EventArchive_dir                    = "EventArchive.dir";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Age (in days) after which EventData records are moved to the archive<br>
+    *** Type: Long
+    **/
+    public static final String PROP_EventArchive_ageDays                = "EventArchive.ageDays";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Directory of the DCS write-ahead EventData spool (blank to insert events directly)<br>
+    *** Type: String
+    **/
+    public static final String PROP_EventSpool_dir                      = "EventSpool.dir";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Size (in megabytes) of each EventData spool segment file<br>
+    *** Type: Long
+    **/
+    public static final String PROP_EventSpool_segmentSizeMB            = "EventSpool.segmentSizeMB";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of spooled events inserted per drain batch<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_EventSpool_batchSize                = "EventSpool.batchSize";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of failed attempts after which the spooled events of a Device are moved to
+    *** the dead-letter file (0 to retry without limit)<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_EventSpool_maxRetries               = "EventSpool.maxRetries";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** True to force each spooled event to disk before the event is acknowledged<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_EventSpool_sync                     = "EventSpool.sync";
+
     // -------
 
     /**
@@ -683,7 +843,26 @@ public class DBConfig
         new RTKey.Entry(PROP_Device_invalidSpeed_maximumKPH         , 0.0                           , "Future Date Maximm Seconds"),
         new RTKey.Entry(PROP_Device_maximumOdometerKM               , 1000000.0                     , "Maximum Odometer value"),
         new RTKey.Entry(PROP_Device_maximumRuntimeHours             , 24.0 * 365.0 * 30.0           , "Maximum Runtime hours value"),
+        new RTKey.Entry(PROP_Device_eventOwner_enable               , true                          , "Per-Device event owner enabled"),
+        new RTKey.Entry(PROP_Device_eventOwner_laneCount            , 0                             , "Per-Device event owner lanes"),
+        new RTKey.Entry(PROP_Device_eventOwner_timeoutSec           , 30L                           , "Per-Device event owner request timeout"),
+        new RTKey.Entry(PROP_Device_eventOwner_idleSeconds          , 300L                          , "Per-Device event owner idle seconds"),
+        new RTKey.Entry(PROP_Device_eventOwner_maximumAgeSec        , 900L                          , "Per-Device event owner maximum age"),
+        new RTKey.Entry(PROP_Device_writeBehind_intervalSec         , 15L                           , "Device write-behind interval"),
+        new RTKey.Entry(PROP_Device_writeBehind_eventCount          , 20                            , "Device write-behind request count"),
+        new RTKey.Entry(PROP_StatusCode_cacheTimeoutSec             , 600L                          , "StatusCode cache timeout"),
         new RTKey.Entry(PROP_EventData_keyedCreationTime            , false                         , "Keyed 'EventData.creationTime'"),
+        new RTKey.Entry(PROP_EventData_cursorPageSize               , 500                           , "EventData export page size"),
+        new RTKey.Entry(PROP_EventBus_bridge_send                   , ""                            , "EventBus bridge destinations"),
+        new RTKey.Entry(PROP_EventBus_bridge_listen                 , ""                            , "EventBus bridge listen address"),
+        new RTKey.Entry(PROP_Trip_enable                            , false                         , "Maintain Trip table"),
+        new RTKey.Entry(PROP_EventArchive_dir                       , ""                            , "EventData archive directory"),
+        new RTKey.Entry(PROP_EventArchive_ageDays                   , 365L                          , "EventData archive age (days)"),
+        new RTKey.Entry(PROP_EventSpool_dir                         , ""                            , "DCS EventData spool directory"),
+        new RTKey.Entry(PROP_EventSpool_segmentSizeMB               , 64L                           , "DCS EventData spool segment size (MB)"),
+        new RTKey.Entry(PROP_EventSpool_batchSize                   , 200                           , "DCS EventData spool drain batch size"),
+        new RTKey.Entry(PROP_EventSpool_maxRetries                  , 720                           , "DCS EventData spool retries before dead-letter"),
+        new RTKey.Entry(PROP_EventSpool_sync                        , true                          , "DCS EventData spool sync writes"),
         new RTKey.Entry(PROP_Geozone_dftRadius_pointRadius          , 3000                          , "Default Point Radius"),
         new RTKey.Entry(PROP_Geozone_dftRadius_polygon              , 500                           , "Default Polygon Radius"),
         new RTKey.Entry(PROP_Geozone_dftRadius_sweptPointRadius     , 1000                          , "Default SweptPoint Radius"),
@@ -890,6 +1069,22 @@ public class DBConfig
             DBAdmin.addTableFactory(tableClassName, false/*optional*/);
         }
 
+        /* Trip tables (optional) */
+        String tripTables[] = new String[] {
+            PACKAGE_TABLES_       + "Trip"              ,
+        };
+        for (String tableClassName : tripTables) {
+            DBAdmin.addTableFactory(tableClassName, false/*optional*/);
+        }
+
+        /* EventData shard tables (optional) */
+        String shardTables[] = new String[] {
+            PACKAGE_TABLES_       + "EventShard"        ,
+        };
+        for (String tableClassName : shardTables) {
+            DBAdmin.addTableFactory(tableClassName, false/*optional*/);
+        }
+
         /* OpenDMTP protocol tables (optional) */
         String dmtpTables[] = new String[] {
             PACKAGE_DMTP_         + "EventTemplate"     ,
@@ -1251,6 +1446,7 @@ public class DBConfig
     private static final String ARG_TREE[]              = new String[] { "tree"                  };
     public  static final String ARG_SCHEMA[]            = new String[] { "schema"                };
     public  static final String ARG_STATUS[]            = new String[] { "status"                };
+    private static final String ARG_SERVER[]            = new String[] { "server", "dcs"         };
     private static final String ARG_CREATE_SYSADMIN[]   = new String[] { "createSysAdmin"        };
 
     /**
@@ -1278,6 +1474,8 @@ public class DBConfig
         Print.sysPrintln("     -load=<TableName>[.csv] -dir=<Source_Dir> [-overwrite]");
         Print.sysPrintln("  Displaying the DB schema:");
         Print.sysPrintln("     -schema[=<TableName>]");
+        Print.sysPrintln("  Displaying SQL statement statistics from a running DCS:");
+        Print.sysPrintln("     -queryStats[=total|count|p99|rows] -server=<DCSName>");
       //Print.sysPrintln("  Dropping a table (WARNING: cannot be undone!):");
       //Print.sysPrintln("     -drop=<TableName>");
         Print.sysPrintln("");
@@ -1286,6 +1484,53 @@ public class DBConfig
         }
     }
 
+    /**
+    *** Fetches the SQL statement statistics (command "%QUERYSTATS%") from the command port
+    *** of the specified running DCS
+    *** @param serverName  The DCS name
+    *** @param sortBy      The sort order ("total", "count", "p99", "rows")
+    *** @return The statistics text, or null if the statistics could not be fetched
+    **/
+    private static String _getServerQueryStats(String serverName, String sortBy)
+    {
+        DCServerConfig dcs = DCServerFactory.getServerConfig(serverName);
+        if (dcs == null) {
+            Print.sysPrintln("ERROR: DCS not found: " + serverName);
+            return null;
+        }
+        String cmdHost = dcs.getCommandDispatcherHost(null);
+        int    cmdPort = dcs.getCommandDispatcherPort();
+        if (cmdPort <= 0) {
+            Print.sysPrintln("ERROR: DCS does not define a command port: " + serverName);
+            return null;
+        }
+        RTProperties rtCmd = DCServerFactory.createRTProperties(null, null, null,
+            DCServerConfig.COMMAND_INTERNAL, CommandPacketHandler.INTERNCMD_QUERYSTATS, new String[] { sortBy });
+        ClientSocketThread cst = new ClientSocketThread(cmdHost, cmdPort);
+        cst.setReadTimeout(15000L);
+        try {
+            cst.openSocket(5000L);
+            cst.setSocketReadTimeout();
+            cst.socketWriteBytes(StringTools.getBytes(rtCmd.toString() + "\n"));
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            cst.socketReadBytes(baos, -1); // response is terminated by end-of-stream
+            String resp = StringTools.toStringValue(baos.toByteArray());
+            int p = resp.indexOf('\n');
+            RTProperties rtResp = new RTProperties((p >= 0)? resp.substring(0,p) : resp);
+            if (!DCServerFactory.isCommandResultOK(rtResp)) {
+                Print.sysPrintln("ERROR: [" + serverName + "] " + rtResp.getString(DCServerFactory.RESPONSE_MESSAGE,"failed") +
+                    " (is '" + RTKey.DB_QUERY_STATS + "' enabled in the DCS?)");
+                return null;
+            }
+            return (p >= 0)? resp.substring(p + 1) : "";
+        } catch (IOException ioe) { // ConnectException ("Connection refused"), ...
+            Print.sysPrintln("ERROR: Unable to read '" + serverName + "' command port " + cmdHost + ":" + cmdPort + ": " + ioe);
+            return null;
+        } finally {
+            cst.closeSocket();
+        }
+    }
+
     /**
     *** Displays the DBFactory dependency tree
     *** @param level  The current tree level (used for indentation purposes)
@@ -1393,6 +1638,22 @@ public class DBConfig
             }
         }
 
+        /* intercept DBAdmin queryStats: fetch SQL statement statistics from a running DCS */
+        if (RTConfig.hasProperty(DBAdmin.ARG_QUERY_STATS) && RTConfig.hasProperty(ARG_SERVER)) {
+            // -queryStats[=<sortBy>] -server=<DCSName>
+            // (without "-server", DBAdmin displays the statistics of this process only)
+            String sortBy = RTConfig.getString(DBAdmin.ARG_QUERY_STATS,"");
+            if (StringTools.isBlank(sortBy) || sortBy.equalsIgnoreCase("true")) {
+                sortBy = "total";
+            }
+            String stats = DBConfig._getServerQueryStats(RTConfig.getString(ARG_SERVER,""), sortBy);
+            if (stats == null) {
+                return 1;
+            }
+            Print.sysPrintln(stats);
+            return 0;
+        }
+
         /* intercept "-tables" command */
         if (RTConfig.hasProperty(DBAdmin.ARG_TABLES)) {
             String options = RTConfig.getString(DBAdmin.ARG_TABLES,"").trim().toLowerCase();
@@ -35,11 +35,14 @@
 //  2013/05/28  Martin D. Flynn
 //     -Added aditional argument adjustment types (see "_adjustKeyArg")
 //     -Changed CommandProtocol.SMS to value '9' (was '2').
+//  2026/10/19
+//     -Cache the resolved local/normalized key for single-key property lookups
 // ----------------------------------------------------------------------------
 package org.opengts.db;
 
 import java.lang.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.net.*;
 
@@ -1129,6 +1132,7 @@ public class DCServerConfig
     private long                            attrFlags               = F_NONE;
 
     private Map<String,RTProperties>        rtPropsMap              = new OrderedMap<String,RTProperties>();
+    private Map<String,String[]>            resolvedKeyMap          = new ConcurrentHashMap<String,String[]>();
 
     private String                          commandsAclName         = null;
     private AclEntry.AccessLevel            commandsAccessLevelDft  = null;
@@ -2051,6 +2055,62 @@ public class DCServerConfig
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Gets the declared "Packet framing" (ie. "type=prefix lengthSize=2")
+    *** @param dft  The default PacketFramer
+    *** @return The PacketFramer, or the default if no valid framing has been declared
+    **/
+    public PacketFramer getPacketFramer(PacketFramer dft)
+    {
+        String spec = this.getStringProperty(DCServerFactory.CONFIG_packetFraming(this.getName()), null);
+        if (StringTools.isBlank(spec)) {
+            return dft;
+        } else {
+            PacketFramer pf = PacketFramer.parsePacketFramer(spec);
+            if (pf == null) {
+                Print.logError("Invalid '" + this.getName() + "' packet framing ignored: " + spec);
+                return dft;
+            }
+            return pf;
+        }
+    }
+
+    /**
+    *** Gets the declared "Packet framing"
+    *** @param dcsc The DCServerConfig instance
+    *** @param dft  The default PacketFramer
+    *** @return The PacketFramer, or the default if no valid framing has been declared
+    **/
+    public static PacketFramer getPacketFramer(DCServerConfig dcsc, PacketFramer dft)
+    {
+        return (dcsc != null)? dcsc.getPacketFramer(dft) : dft;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of ordered UDP worker lanes
+    *** @param dft  The default number of UDP lanes
+    *** @return The number of UDP lanes (0 to use the general session thread pool)
+    **/
+    public int getUdpLaneCount(int dft)
+    {
+        return this.getIntProperty(DCServerFactory.CONFIG_udpLaneCount(this.getName()), dft);
+    }
+
+    /**
+    *** Gets the number of ordered UDP worker lanes
+    *** @param dcsc The DCServerConfig instance
+    *** @param dft  The default number of UDP lanes
+    *** @return The number of UDP lanes (0 to use the general session thread pool)
+    **/
+    public static int getUdpLaneCount(DCServerConfig dcsc, int dft)
+    {
+        return (dcsc != null)? dcsc.getUdpLaneCount(dft) : dft;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Gets the array of allowed UniqueID prefixes
     *** @param dftPfx  The default list of prefixes
@@ -3312,6 +3372,11 @@ public class DCServerConfig
         RTProperties rtp = this.rtPropsMap.get(DEFAULT_PROP_GROUP_ID);
         if (rtp == null) {
             rtp = new RTProperties();
+            rtp.addChangeListener(new RTProperties.PropertyChangeListener() {
+                public void propertyChange(RTProperties.PropertyChangeEvent pce) {
+                    DCServerConfig.this.resolvedKeyMap.clear();
+                }
+            });
             this.rtPropsMap.put(DEFAULT_PROP_GROUP_ID, rtp);
         }
         return rtp;
@@ -3399,6 +3464,33 @@ public class DCServerConfig
         return key;
     }
 
+    private static final int RK_LOCAL       = 0;
+    private static final int RK_NORMALIZED  = 1;
+
+    /**
+    *** Returns the local key (the key as specified, or normalized, which is defined in
+    *** the default properties, or null if neither is defined) and the normalized key.
+    *** The result is cached until the default properties are changed.
+    **/
+    private String[] _resolveKey(String key)
+    {
+        String rk[] = this.resolvedKeyMap.get(key);
+        if (rk == null) {
+            RTProperties rtp = this.getDefaultProperties();
+            String k = this.normalizeKey(key);
+            if (rtp.hasProperty(key)) {
+                rk = new String[] { key, k };
+            } else
+            if (rtp.hasProperty(k)) {
+                rk = new String[] { k, k };
+            } else {
+                rk = new String[] { null, k };
+            }
+            this.resolvedKeyMap.put(key, rk);
+        }
+        return rk;
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -3510,22 +3602,20 @@ public class DCServerConfig
     **/
     public String getStringProperty(String key, String dft)
     {
-        RTProperties rtp = this.getDefaultProperties();
-        if (rtp.hasProperty(key)) {
-            return rtp.getString(key, dft);
+        if (key == null) {
+            return RTConfig.getString(key, dft);
+        }
+        String rk[] = this._resolveKey(key);
+        if (rk[RK_LOCAL] != null) {
+            // local key
+            return this.getDefaultProperties().getString(rk[RK_LOCAL], dft);
+        } else
+        if (RTConfig.hasProperty(rk[RK_NORMALIZED])) {
+            // global normalized key
+            return RTConfig.getString(rk[RK_NORMALIZED], dft);
         } else {
-            String k = this.normalizeKey(key);
-            if (rtp.hasProperty(k)) {
-                // local normalized key
-                return rtp.getString(k, dft);
-            } else
-            if (RTConfig.hasProperty(k)) {
-                // global normalized key
-                return RTConfig.getString(k, dft);
-            } else {
-                // global original key
-                return RTConfig.getString(key, dft);
-            }
+            // global original key
+            return RTConfig.getString(key, dft);
         }
     }
 
@@ -3639,16 +3729,14 @@ public class DCServerConfig
     **/
     public int getIntProperty(String key, int dft)
     {
-        RTProperties rtp = this.getDefaultProperties();
-        if (rtp.hasProperty(key)) {
-            return rtp.getInt(key, dft);
+        if (key == null) {
+            return RTConfig.getInt(this.normalizeKey(key), dft);
+        }
+        String rk[] = this._resolveKey(key);
+        if (rk[RK_LOCAL] != null) {
+            return this.getDefaultProperties().getInt(rk[RK_LOCAL], dft);
         } else {
-            String k = this.normalizeKey(key);
-            if (rtp.hasProperty(k)) {
-                return rtp.getInt(k, dft);
-            } else {
-                return RTConfig.getInt(k, dft);
-            }
+            return RTConfig.getInt(rk[RK_NORMALIZED], dft);
         }
     }
 
@@ -3683,16 +3771,14 @@ public class DCServerConfig
     **/
     public long getLongProperty(String key, long dft)
     {
-        RTProperties rtp = this.getDefaultProperties();
-        if (rtp.hasProperty(key)) {
-            return rtp.getLong(key, dft);
+        if (key == null) {
+            return RTConfig.getLong(this.normalizeKey(key), dft);
+        }
+        String rk[] = this._resolveKey(key);
+        if (rk[RK_LOCAL] != null) {
+            return this.getDefaultProperties().getLong(rk[RK_LOCAL], dft);
         } else {
-            String k = this.normalizeKey(key);
-            if (rtp.hasProperty(k)) {
-                return rtp.getLong(k, dft);
-            } else {
-                return RTConfig.getLong(k, dft);
-            }
+            return RTConfig.getLong(rk[RK_NORMALIZED], dft);
         }
     }
 
@@ -3727,16 +3813,14 @@ public class DCServerConfig
     **/
     public double getDoubleProperty(String key, double dft)
     {
-        RTProperties rtp = this.getDefaultProperties();
-        if (rtp.hasProperty(key)) {
-            return rtp.getDouble(key, dft);
+        if (key == null) {
+            return RTConfig.getDouble(this.normalizeKey(key), dft);
+        }
+        String rk[] = this._resolveKey(key);
+        if (rk[RK_LOCAL] != null) {
+            return this.getDefaultProperties().getDouble(rk[RK_LOCAL], dft);
         } else {
-            String k = this.normalizeKey(key);
-            if (rtp.hasProperty(k)) {
-                return rtp.getDouble(k, dft);
-            } else {
-                return RTConfig.getDouble(k, dft);
-            }
+            return RTConfig.getDouble(rk[RK_NORMALIZED], dft);
         }
     }
 
@@ -3771,16 +3855,14 @@ public class DCServerConfig
     **/
     public boolean getBooleanProperty(String key, boolean dft)
     {
-        RTProperties rtp = this.getDefaultProperties();
-        if (rtp.hasProperty(key)) {
-            return rtp.getBoolean(key, dft);
+        if (key == null) {
+            return RTConfig.getBoolean(this.normalizeKey(key), dft);
+        }
+        String rk[] = this._resolveKey(key);
+        if (rk[RK_LOCAL] != null) {
+            return this.getDefaultProperties().getBoolean(rk[RK_LOCAL], dft);
         } else {
-            String k = this.normalizeKey(key);
-            if (rtp.hasProperty(k)) {
-                return rtp.getBoolean(k, dft);
-            } else {
-                return RTConfig.getBoolean(k, dft);
-            }
+            return RTConfig.getBoolean(rk[RK_NORMALIZED], dft);
         }
     }
 
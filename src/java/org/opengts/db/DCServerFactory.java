@@ -2497,10 +2497,21 @@ public class DCServerFactory {
             if (ListTools.isEmpty(prefix)) {
                 uniqueID = modemID;
                 //Print.logDebug("Looking for UniqueID: " + uniqueID);
-                device = Transport.loadDeviceByUniqueID(uniqueID);
+                device = DeviceEventOwner.getSessionDevice(DeviceEventOwner.UniqueIDAlias(uniqueID));
+                if (device == null) {
+                    device = Transport.loadDeviceByUniqueID(uniqueID);
+                }
             } else {
                 uniqueID = prefix[0] + modemID;
                 for (int u = 0; u < prefix.length; u++) {
+                    String pfxid = prefix[u] + modemID;
+                    device = DeviceEventOwner.getSessionDevice(DeviceEventOwner.UniqueIDAlias(pfxid));
+                    if (device != null) {
+                        uniqueID = pfxid;
+                        break;
+                    }
+                }
+                for (int u = 0; (device == null) && (u < prefix.length); u++) {
                     String pfxid = prefix[u] + modemID;
                     //Print.logDebug("Looking for UniqueID: " + pfxid);
                     device = Transport.loadDeviceByUniqueID(pfxid);
@@ -2528,7 +2539,10 @@ public class DCServerFactory {
                 return null;
             }
 
-            /* return device */
+            /* return (session copy of the owned) device */
+            if (!device.isSessionCopy()) {
+                device = DeviceEventOwner.getOwnedDevice(device, DeviceEventOwner.UniqueIDAlias(uniqueID));
+            }
             device.setModemID(modemID);
             return device;
 
@@ -2659,6 +2673,8 @@ public class DCServerFactory {
     public static final String CFG_udpIdleTimeoutMS = ".udpIdleTimeoutMS";           // long
     public static final String CFG_udpPacketTimeoutMS = ".udpPacketTimeoutMS";         // long
     public static final String CFG_udpSessionTimeoutMS = ".udpSessionTimeoutMS";        // long
+    public static final String CFG_packetFraming = ".packetFraming";              // String [type=line|eos|fixed|prefix|header|crc ...]
+    public static final String CFG_udpLaneCount = ".udpLaneCount";               // int
     public static final String CFG_minimumSpeedKPH = ".minimumSpeedKPH";            // double
     public static final String CFG_estimateOdometer = ".estimateOdometer";           // boolean
     public static final String CFG_ignoreDeviceOdometer = ".ignoreDeviceOdometer";       // boolean
@@ -2932,6 +2948,34 @@ public class DCServerFactory {
         };  // int
     }
 
+    /**
+     *** Return an array of "Packet framing" property names
+     *
+     *** @param name The server name
+     *** @return An array of "Packet framing" property names
+    *
+     */
+    public static String[] CONFIG_packetFraming(String name) {
+        return new String[]{
+            PROP_DCServer_ + name + CFG_packetFraming,
+            name + CFG_packetFraming
+        };  // String
+    }
+
+    /**
+     *** Return an array of "UDP lane count" property names
+     *
+     *** @param name The server name
+     *** @return An array of "UDP lane count" property names
+    *
+     */
+    public static String[] CONFIG_udpLaneCount(String name) {
+        return new String[]{
+            PROP_DCServer_ + name + CFG_udpLaneCount,
+            name + CFG_udpLaneCount
+        };  // int
+    }
+
     // --------------------------------
     /**
      *** Return an array of UniquID prefix property names
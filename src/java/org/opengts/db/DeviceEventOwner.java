@@ -0,0 +1,1003 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Per-Device ordered event processing owner
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+//     -Added coalesced (write-behind) Device write-back
+//     -DCS sessions now use a detached copy of the owned Device
+//     -Owners write pending changes before being replaced, flushed at session end
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Per-Device ordered event processing owner.<br>
+*** Each active Device is assigned a single owner which holds the one owned Device
+*** instance for that Device.  DCS sessions are given their own detached copy of the
+*** owned Device (see <code>getSessionDevice</code> and <code>getOwnedDevice</code>), so
+*** that the owned instance is only accessed from the owner's worker lane.  Events
+*** inserted, and Device write-back requests made, through a session copy are queued to
+*** the owner's mailbox and processed in order on the worker lane to which the Device is
+*** assigned.  Fields changed in the session copy are applied to the owned Device before
+*** each queued request, and the session copy is refreshed from the owned Device when the
+*** request completes.  Since a Device is always processed by the same lane, events for a
+*** Device are never processed concurrently, while separate Devices are processed in
+*** parallel across the available lanes.  A session waits at most the configured owner
+*** timeout for a queued request to complete.<br>
+*** Device write-backs are coalesced: only the fields changed since the last write are
+*** saved, and the write is deferred until the configured number of write-back requests
+*** or interval has elapsed, the DCS session ends, the owner is released, or the
+*** process shuts down.<br>
+*** Owners are released when idle, and replaced when older than the configured maximum
+*** age.  A session copy of a released owner is moved to the current owner for its
+*** Device (which is created and loaded as needed) on its next request.
+**/
+
+public class DeviceEventOwner
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final int    INSERT_OK               = 0;
+    public  static final int    INSERT_IGNORED          = 1;
+    public  static final int    INSERT_FAILED           = 2;
+
+    private static final int    DFT_LANE_COUNT          = 8;
+    private static final long   DFT_IDLE_SECONDS        = 300L;
+    private static final long   DFT_MAXIMUM_AGE_SEC     = 900L;
+    private static final long   DFT_TIMEOUT_SEC         = 30L;
+    private static final long   DFT_WRITE_INTERVAL_SEC  = 15L;
+    private static final int    DFT_WRITE_EVENT_COUNT   = 20;
+
+    private static final long   LANE_POLL_MS            = 1000L;
+    private static final long   SHUTDOWN_FLUSH_MS       = 5000L;
+
+    // ------------------------------------------------------------------------
+
+    private static final Map<String,DeviceEventOwner> ownerMap = new HashMap<String,DeviceEventOwner>();
+    private static final Map<String,String>           aliasMap = new HashMap<String,String>();
+
+    private static Lane         laneList[]              = null;
+
+    /**
+    *** Returns true if per-Device event owners are enabled
+    *** @return True if enabled
+    **/
+    public static boolean IsEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_Device_eventOwner_enable, true);
+    }
+
+    /**
+    *** Returns the maximum time to wait for a queued owner request to complete
+    **/
+    private static long _getTimeoutMS()
+    {
+        long timeoutSec = RTConfig.getLong(DBConfig.PROP_Device_eventOwner_timeoutSec, DFT_TIMEOUT_SEC);
+        return (timeoutSec > 0L)? (timeoutSec * 1000L) : (DFT_TIMEOUT_SEC * 1000L);
+    }
+
+    /**
+    *** Returns the owner key for the specified Device
+    **/
+    private static String _ownerKey(Device dev)
+    {
+        return _ownerKey(dev.getAccountID(), dev.getDeviceID());
+    }
+
+    /**
+    *** Returns the owner key for the specified Account/Device ids
+    **/
+    private static String _ownerKey(String acctID, String devID)
+    {
+        return acctID + "/" + devID;
+    }
+
+    /**
+    *** Gets/starts the worker lanes
+    **/
+    private static Lane[] _getLanes()
+    {
+        if (laneList == null) {
+            synchronized (DeviceEventOwner.class) {
+                if (laneList == null) {
+                    int count = RTConfig.getInt(DBConfig.PROP_Device_eventOwner_laneCount, 0);
+                    if (count <= 0) {
+                        // default: 2 lanes per processor
+                        count = Math.max(DFT_LANE_COUNT, Runtime.getRuntime().availableProcessors() * 2);
+                    }
+                    Lane lanes[] = new Lane[count];
+                    for (int i = 0; i < lanes.length; i++) {
+                        lanes[i] = new Lane(i);
+                        lanes[i].start();
+                    }
+                    laneList = lanes;
+                    ServerSocketThread.addSessionTerminatedHook(new Runnable() {
+                        public void run() {
+                            DeviceEventOwner.flushSessionDevices(); // write pending Device changes
+                        }
+                    });
+                    Runtime.getRuntime().addShutdownHook(new Thread("DeviceEventOwner_flush") {
+                        public void run() {
+                            DeviceEventOwner.FlushAll(SHUTDOWN_FLUSH_MS);
+                        }
+                    });
+                }
+            }
+        }
+        return laneList;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the lookup alias for a Device loaded by the specified unique-id
+    *** @param uniqueID  The (prefixed) unique-id
+    *** @return The lookup alias
+    **/
+    public static String UniqueIDAlias(String uniqueID)
+    {
+        return "uid:" + uniqueID;
+    }
+
+    /**
+    *** Returns the lookup alias for a Device loaded by the specified Account and
+    *** transport-id (or device-id)
+    *** @param acctID   The Account id
+    *** @param xportID  The transport-id
+    *** @return The lookup alias
+    **/
+    public static String TransportIDAlias(String acctID, String xportID)
+    {
+        return "xport:" + acctID + "/" + xportID;
+    }
+
+    /**
+    *** Returns a session copy of the owned Device previously registered with the
+    *** specified lookup alias (see <code>getOwnedDevice(Device,String)</code>), without
+    *** loading the Device from the database.
+    *** @param alias  The lookup alias (ie. the prefixed unique-id used by the DCS)
+    *** @return The session copy, or null if no owner is active for the alias (in which case
+    ***         the caller should load the Device and call <code>getOwnedDevice</code>)
+    **/
+    public static Device getSessionDevice(String alias)
+    {
+        if (StringTools.isBlank(alias) || !DeviceEventOwner.IsEnabled()) {
+            return null;
+        }
+        DeviceEventOwner owner;
+        synchronized (ownerMap) {
+            String key = aliasMap.get(alias);
+            owner = (key != null)? ownerMap.get(key) : null;
+            if (owner == null) {
+                return null; // load
+            }
+        }
+        if ((owner.retireTask != null) || owner._isExpired(System.currentTimeMillis())) {
+            // retire and reload
+            Device dev = owner.device;
+            owner = DeviceEventOwner._acquire(owner.key, dev.getAccount(), dev.getDeviceID(), null);
+            if (owner == null) {
+                return null;
+            }
+            synchronized (ownerMap) {
+                aliasMap.put(alias, owner.key);
+                owner.aliases.add(alias);
+            }
+        }
+        return owner._createSessionDevice();
+    }
+
+    /**
+    *** Returns a session copy of the owned Device for the specified freshly loaded Device.<br>
+    *** If an owner is already active for this Device, a copy of the owner's Device instance
+    *** is returned (and the specified instance is discarded).  Otherwise a new owner is
+    *** created holding a copy of the specified Device instance.
+    *** @param dev  The freshly loaded Device
+    *** @return The session copy (or 'dev' if owners are disabled)
+    **/
+    public static Device getOwnedDevice(Device dev)
+    {
+        return DeviceEventOwner.getOwnedDevice(dev, null);
+    }
+
+    /**
+    *** Returns a session copy of the owned Device for the specified freshly loaded Device,
+    *** and registers the specified lookup alias for use by <code>getSessionDevice</code>.
+    *** @param dev    The freshly loaded Device
+    *** @param alias  The lookup alias (may be null)
+    *** @return The session copy (or 'dev' if owners are disabled, or a copy could not be
+    ***         created)
+    **/
+    public static Device getOwnedDevice(Device dev, String alias)
+    {
+        if ((dev == null) || !DeviceEventOwner.IsEnabled()) {
+            return dev;
+        }
+        DeviceEventOwner owner = DeviceEventOwner._acquire(_ownerKey(dev), dev.getAccount(), dev.getDeviceID(), dev);
+        if (owner == null) {
+            return dev;
+        }
+        if (!StringTools.isBlank(alias)) {
+            synchronized (ownerMap) {
+                aliasMap.put(alias, owner.key);
+                owner.aliases.add(alias);
+            }
+        }
+        Device copy = owner._createSessionDevice();
+        return (copy != null)? copy : dev;
+    }
+
+    /**
+    *** Returns the active owner for the specified key, creating it if necessary
+    *** @param key      The owner key
+    *** @param account  The Device Account (used to load the Device)
+    *** @param devID    The Device id (used to load the Device)
+    *** @param loaded   The freshly loaded Device (may be null)
+    *** @return The active owner, or null if the Device could not be loaded
+    **/
+    private static DeviceEventOwner _acquire(String key, Account account, String devID, Device loaded)
+    {
+        for (;;) {
+            long nowMS = System.currentTimeMillis();
+            DeviceEventOwner retired = null;
+            boolean queueRetire = false;
+            synchronized (ownerMap) {
+                DeviceEventOwner owner = ownerMap.get(key);
+                if ((owner != null) && (owner.retireTask == null) && owner._isExpired(nowMS)) {
+                    // replace with a freshly loaded instance
+                    owner.retireTask = owner._createRetireTask();
+                    queueRetire = true;
+                }
+                if ((owner != null) && (owner.retireTask != null)) {
+                    retired = owner;
+                } else
+                if (owner != null) {
+                    owner.lastAccessMS = nowMS;
+                    return owner;
+                } else
+                if (loaded != null) {
+                    // the owned instance is a private copy, never the caller's instance
+                    Device dev;
+                    try {
+                        dev = loaded.copyDevice();
+                    } catch (DBException dbe) {
+                        Print.logError("Unable to copy owned Device: " + key + " [" + dbe + "]");
+                        return null;
+                    }
+                    Lane lanes[] = _getLanes();
+                    int ndx = (key.hashCode() & 0x7FFFFFFF) % lanes.length;
+                    owner = new DeviceEventOwner(key, dev, lanes[ndx]);
+                    ownerMap.put(key, owner);
+                    return owner;
+                }
+            }
+            if (retired != null) {
+                // wait for the retiring owner to write its pending changes, then reload
+                if (queueRetire) {
+                    if (retired.isOwnerThread()) {
+                        retired.retireTask.run();
+                    } else {
+                        retired.lane.add(retired.retireTask);
+                    }
+                }
+                try {
+                    retired.retireTask.get(_getTimeoutMS(), TimeUnit.MILLISECONDS);
+                } catch (Throwable th) { // TimeoutException, ExecutionException, InterruptedException
+                    Print.logError("Device owner retire incomplete: " + key + " [" + th + "]");
+                    retired._release();
+                }
+                if (account == null) {
+                    account = retired.device.getAccount();
+                }
+                loaded = null; // (possibly loaded before the pending changes were written)
+            }
+            try {
+                loaded = (account != null)? Device.loadDeviceByName(account, devID) : null;
+            } catch (DBException dbe) {
+                Print.logError("Unable to load owned Device: " + key + " [" + dbe + "]");
+                return null;
+            }
+            if (loaded == null) {
+                Print.logWarn("Owned Device not found: " + key);
+                return null;
+            }
+        }
+    }
+
+    /**
+    *** Returns the owner for the specified Device instance.<br>
+    *** If the specified instance is a session copy of an owner which has since been
+    *** released, the copy is moved to the current owner for the Device.
+    *** @param dev  The Device instance
+    *** @return The owner, or null if the specified instance is not owned
+    **/
+    public static DeviceEventOwner getOwner(Device dev)
+    {
+        DeviceEventOwner owner = (dev != null)? dev.getEventOwner() : null;
+        if ((owner == null) || owner.active || !dev.isSessionCopy()) {
+            return owner;
+        }
+        DeviceEventOwner current = DeviceEventOwner._acquire(owner.key, dev.getAccount(), dev.getDeviceID(), null);
+        if (current == null) {
+            // unable to reload, continue with the released owner (still processes in order)
+            return owner;
+        }
+        dev.setEventOwner(current, true);
+        return current;
+    }
+
+    /**
+    *** Returns a snapshot list of all active owners
+    **/
+    private static java.util.List<DeviceEventOwner> _getOwners(Lane lane)
+    {
+        java.util.List<DeviceEventOwner> list = new Vector<DeviceEventOwner>();
+        synchronized (ownerMap) {
+            for (DeviceEventOwner owner : ownerMap.values()) {
+                if ((lane == null) || (owner.lane == lane)) {
+                    list.add(owner);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+    *** Flushes owners on the specified lane whose write-back interval has elapsed, and
+    *** releases owners which have been idle longer than the configured idle time
+    *** (called from the lane thread)
+    **/
+    private static void _checkOwners(Lane lane)
+    {
+        long idleMS = RTConfig.getLong(DBConfig.PROP_Device_eventOwner_idleSeconds, DFT_IDLE_SECONDS) * 1000L;
+        long nowMS  = System.currentTimeMillis();
+        for (DeviceEventOwner owner : _getOwners(lane)) {
+            if ((nowMS - owner.lastAccessMS) > idleMS) {
+                FutureTask<Boolean> task = null;
+                synchronized (ownerMap) {
+                    if (owner.retireTask == null) {
+                        owner.retireTask = task = owner._createRetireTask();
+                    }
+                }
+                if (task != null) {
+                    Print.logDebug("Releasing idle Device owner: " + owner.key);
+                    task.run();
+                }
+            } else
+            if (owner._isWriteBackDue(nowMS)) {
+                owner._flush();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static ThreadLocal<Set<String>> sessionOwners = new ThreadLocal<Set<String>>();
+
+    /**
+    *** Writes pending Device changes for all owned Devices which have requested a
+    *** write-back from the current thread.  Called when a client session ends (see
+    *** <code>ServerSocketThread.addSessionTerminatedHook</code>), and by DCS modules which
+    *** do not use ServerSocketThread sessions.
+    **/
+    public static void flushSessionDevices()
+    {
+        Set<String> keys = sessionOwners.get();
+        if (keys != null) {
+            sessionOwners.remove();
+            for (String key : keys) {
+                DeviceEventOwner owner;
+                synchronized (ownerMap) {
+                    owner = ownerMap.get(key);
+                }
+                if (owner != null) {
+                    owner.flush();
+                }
+            }
+        }
+    }
+
+    /**
+    *** Writes pending Device changes for all active owners
+    *** @param timeoutMS  The maximum time to wait for each owner's write-back
+    **/
+    public static void FlushAll(long timeoutMS)
+    {
+        for (DeviceEventOwner owner : _getOwners(null)) {
+            FutureTask<Boolean> task = owner._createFlushTask();
+            owner.lane.add(task);
+            try {
+                task.get(timeoutMS, TimeUnit.MILLISECONDS);
+            } catch (Throwable th) { // TimeoutException, ExecutionException, InterruptedException
+                Print.logError("Device owner flush incomplete: " + owner.key + " [" + th + "]");
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static AtomicLong   writeBackCount          = new AtomicLong(0L);
+    private static AtomicLong   rowsWrittenCount        = new AtomicLong(0L);
+    private static AtomicLong   fieldsWrittenCount      = new AtomicLong(0L);
+    private static AtomicLong   updatesAvoidedCount     = new AtomicLong(0L);
+
+    static {
+        Metrics.RegisterGauge("device.owners", new Metrics.Gauge() {
+            public long getValue() { synchronized (ownerMap) { return ownerMap.size(); } }
+        });
+        Metrics.RegisterGauge("device.writeBack.requests", new Metrics.Gauge() {
+            public long getValue() { return GetWriteBackCount(); }
+        });
+        Metrics.RegisterGauge("device.writeBack.rowsWritten", new Metrics.Gauge() {
+            public long getValue() { return GetRowsWrittenCount(); }
+        });
+        Metrics.RegisterGauge("device.writeBack.fieldsWritten", new Metrics.Gauge() {
+            public long getValue() { return GetFieldsWrittenCount(); }
+        });
+        Metrics.RegisterGauge("device.writeBack.updatesAvoided", new Metrics.Gauge() {
+            public long getValue() { return GetUpdatesAvoidedCount(); }
+        });
+    }
+
+    /**
+    *** Gets the number of Device write-back requests
+    *** @return The number of write-back requests
+    **/
+    public static long GetWriteBackCount()
+    {
+        return writeBackCount.get();
+    }
+
+    /**
+    *** Gets the number of Device rows written
+    *** @return The number of Device rows written
+    **/
+    public static long GetRowsWrittenCount()
+    {
+        return rowsWrittenCount.get();
+    }
+
+    /**
+    *** Gets the total number of Device columns written
+    *** @return The number of Device columns written
+    **/
+    public static long GetFieldsWrittenCount()
+    {
+        return fieldsWrittenCount.get();
+    }
+
+    /**
+    *** Gets the number of write-back requests which did not require a Device row write
+    *** @return The number of avoided updates
+    **/
+    public static long GetUpdatesAvoidedCount()
+    {
+        return updatesAvoidedCount.get();
+    }
+
+    /**
+    *** Returns a String representation of the write-back statistics
+    *** @return The write-back statistics
+    **/
+    public static String GetWriteBackStats()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("requests=").append(GetWriteBackCount());
+        sb.append(" rowsWritten=").append(GetRowsWrittenCount());
+        sb.append(" fieldsWritten=").append(GetFieldsWrittenCount());
+        sb.append(" updatesAvoided=").append(GetUpdatesAvoidedCount());
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private String          key             = null;
+    private Device          device          = null;
+    private Lane            lane            = null;
+    private Set<String>     aliases         = new HashSet<String>();
+    private volatile boolean active         = true;
+    private volatile FutureTask<Boolean> retireTask = null;
+
+    private long            createTimeMS    = 0L;
+    private volatile long   lastAccessMS    = 0L;
+
+    private long            writeIntervalMS = 0L;
+    private int             writeEventCount = 0;
+    private int             pendingRequests = 0;
+    private long            lastWriteMS     = 0L;
+
+    /**
+    *** Constructor
+    **/
+    private DeviceEventOwner(String key, Device device, Lane lane)
+    {
+        this.key             = key;
+        this.device          = device;
+        this.lane            = lane;
+        this.createTimeMS    = System.currentTimeMillis();
+        this.lastAccessMS    = this.createTimeMS;
+        this.lastWriteMS     = this.createTimeMS;
+        this.writeIntervalMS = RTConfig.getLong(DBConfig.PROP_Device_writeBehind_intervalSec, DFT_WRITE_INTERVAL_SEC) * 1000L;
+        this.writeEventCount = RTConfig.getInt(DBConfig.PROP_Device_writeBehind_eventCount, DFT_WRITE_EVENT_COUNT);
+        this.device.setEventOwner(this, false);
+        if ((this.writeIntervalMS > 0L) || (this.writeEventCount > 1)) {
+            this.device.setWriteBehind(true);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the owned Device instance.<br>
+    *** The owned instance must only be accessed from the owner lane.
+    *** @return The owned Device instance
+    **/
+    public Device getDevice()
+    {
+        return this.device;
+    }
+
+    /**
+    *** Returns true if the current thread is the thread processing this owner's mailbox
+    *** @return True if called from the owner lane
+    **/
+    public boolean isOwnerThread()
+    {
+        return (Thread.currentThread() == this.lane);
+    }
+
+    /**
+    *** Returns true if this owner has exceeded the configured maximum age
+    **/
+    private boolean _isExpired(long nowMS)
+    {
+        long maxAgeMS = RTConfig.getLong(DBConfig.PROP_Device_eventOwner_maximumAgeSec, DFT_MAXIMUM_AGE_SEC) * 1000L;
+        return (maxAgeMS > 0L) && ((nowMS - this.createTimeMS) > maxAgeMS);
+    }
+
+    /**
+    *** Removes this owner, and its lookup aliases, from the registry (if still registered)
+    **/
+    private void _release()
+    {
+        synchronized (ownerMap) {
+            this.active = false;
+            if (ownerMap.get(this.key) == this) {
+                ownerMap.remove(this.key);
+            }
+            for (String alias : this.aliases) {
+                if (this.key.equals(aliasMap.get(alias))) {
+                    aliasMap.remove(alias);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Queues the specified task to this owner's mailbox and waits for the result.<br>
+    *** If the task is still queued after the configured owner timeout, it is cancelled (and
+    *** will not run).  If the task has already started, this method waits for it to complete,
+    *** so that the result of a task which has run is never reported as a failure.
+    *** @return The task result, or null if the task failed or was cancelled
+    **/
+    private <T> T _call(Request<T> task)
+    {
+        this.lastAccessMS = System.currentTimeMillis();
+        if (this.isOwnerThread()) {
+            task.run();
+        } else {
+            this.lane.add(task);
+        }
+        try {
+            try {
+                return task.get(_getTimeoutMS(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException te) {
+                if (task.cancelIfQueued()) {
+                    // still queued, will not be run
+                    Print.logError("Device owner task timeout (cancelled): " + this.key);
+                    return null;
+                }
+                Print.logWarn("Device owner task timeout (running, waiting for completion): " + this.key);
+                return task.get();
+            }
+        } catch (ExecutionException ee) {
+            Throwable th = ee.getCause();
+            Print.logException("Device owner task failed: " + this.key, ((th != null)? th : ee));
+            return null;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+    *** Creates a session copy of the owned Device
+    *** @return The session copy, or null if the copy could not be created
+    **/
+    private Device _createSessionDevice()
+    {
+        return this._call(new Request<Device>(new Callable<Device>() {
+            public Device call() throws Exception {
+                Device copy = DeviceEventOwner.this.device.copyDevice();
+                copy.setEventOwner(DeviceEventOwner.this, true);
+                copy.setWriteBehind(true); // track fields changed by the session
+                return copy;
+            }
+        }));
+    }
+
+    /**
+    *** Applies the fields changed in the session copy to the owned Device, runs the
+    *** specified task on the owner lane, then refreshes the session copy from the owned
+    *** Device.  If the task times out before it is started (and is cancelled), the changed
+    *** fields remain pending in the session copy, and are applied with the next request.
+    *** @return The task result, or null if the task failed or was cancelled
+    **/
+    /* package */ <T> T _callSession(Device copy, final Callable<T> task)
+    {
+        final Set<String> chgFlds = (copy != null)? copy.removeChangedFields() : null;
+        final Map<String,Object> chgVals = (copy != null)? copy.getFieldValueSnapshot(chgFlds) : null;
+        final Device dev = this.device;
+        final java.util.List<Map<String,Object>> devVals = new Vector<Map<String,Object>>();
+        Request<T> ft = new Request<T>(new Callable<T>() {
+            public T call() throws Exception {
+                dev.setFieldValueSnapshot(chgVals, true);
+                try {
+                    return task.call();
+                } finally {
+                    devVals.add(dev.getFieldValueSnapshot(null));
+                }
+            }
+        });
+        T rtn = this._call(ft);
+        if ((copy != null) && ft.isCancelled()) {
+            // not applied to the owned Device
+            copy.addChangedFields(chgFlds);
+        } else
+        if ((copy != null) && (rtn != null) && !devVals.isEmpty()) {
+            copy.setFieldValueSnapshot(devVals.get(0), false);
+        }
+        return rtn;
+    }
+
+    /**
+    *** Inserts the specified event in order on this owner's lane
+    *** @param copy  The Device instance through which the event was inserted
+    *** @param evdb  The EventData record to insert
+    *** @return INSERT_OK if inserted, INSERT_IGNORED if ignored by the Device, or
+    ***         INSERT_FAILED if the event could not be saved (or the request timed out
+    ***         before it was started)
+    **/
+    public int insertEventData(Device copy, final EventData evdb)
+    {
+        final Device dev = this.device;
+        Callable<Integer> task = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                if (dev.insertEventData(evdb)) {
+                    return new Integer(INSERT_OK);
+                } else {
+                    return new Integer(dev.isInsertSaveFailed()? INSERT_FAILED : INSERT_IGNORED);
+                }
+            }
+        };
+        Integer rc;
+        if (this.isOwnerThread()) {
+            // already on the owner lane (ie. queued with "queueTask")
+            try {
+                rc = task.call();
+            } catch (Exception e) {
+                Print.logException("Device owner task failed: " + this.key, e);
+                rc = null;
+            }
+        } else {
+            rc = this._callSession(copy, task);
+        }
+        return (rc != null)? rc.intValue() : INSERT_FAILED;
+    }
+
+    /**
+    *** Queues the specified task to this owner's mailbox without waiting for the result.
+    *** Tasks queued to the same owner are run in order.
+    *** @param task  The task to run on the owner lane
+    *** @return The queued task (used to wait for the result)
+    **/
+    public FutureTask<Boolean> queueTask(Callable<Boolean> task)
+    {
+        FutureTask<Boolean> ft = new FutureTask<Boolean>(task);
+        this.lastAccessMS = System.currentTimeMillis();
+        if (this.isOwnerThread()) {
+            ft.run();
+        } else {
+            this.lane.add(ft);
+        }
+        return ft;
+    }
+
+    /**
+    *** Requests a write-back of the changed Device fields.<br>
+    *** When write-behind is enabled, only the changed fields are written, and the write
+    *** is deferred until the configured request count or interval has been reached.
+    *** @param copy  The Device instance through which the write-back was requested
+    *** @param flds  The fields to update when write-behind is disabled (may be null)
+    *** @return True if the request was successful
+    **/
+    public boolean updateChangedEventFields(Device copy, Set<String> flds)
+    {
+        Set<String> keys = sessionOwners.get();
+        if (keys == null) {
+            keys = new HashSet<String>();
+            sessionOwners.set(keys);
+        }
+        keys.add(this.key);
+        writeBackCount.incrementAndGet();
+        final Set<String> updFlds = this._getUpdateFields(copy, flds);
+        Callable<Boolean> task = new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                DeviceEventOwner.this._writeBack(updFlds);
+                return Boolean.TRUE;
+            }
+        };
+        Boolean rtn;
+        if (this.isOwnerThread()) {
+            try {
+                rtn = task.call();
+            } catch (Exception e) {
+                Print.logException("Device owner task failed: " + this.key, e);
+                rtn = null;
+            }
+        } else {
+            rtn = this._callSession(copy, task);
+        }
+        return (rtn != null) && rtn.booleanValue();
+    }
+
+    /**
+    *** Returns the requested update fields, including the "other" changed fields
+    *** requested through the session copy
+    **/
+    private Set<String> _getUpdateFields(Device copy, Set<String> flds)
+    {
+        Set<String> other = (copy != null)? copy.getOtherChangedFieldNames() : null;
+        if (ListTools.isEmpty(other)) {
+            return flds;
+        }
+        Set<String> updFlds = new HashSet<String>(other);
+        if (flds != null) {
+            updFlds.addAll(flds);
+        }
+        return updFlds;
+    }
+
+    /**
+    *** Writes any pending Device changes now
+    *** @return True if successful
+    **/
+    public boolean flush()
+    {
+        Boolean rtn = this._call(this._createFlushTask());
+        return (rtn != null) && rtn.booleanValue();
+    }
+
+    /**
+    *** Creates a task which writes any pending Device changes
+    **/
+    private Request<Boolean> _createFlushTask()
+    {
+        return new Request<Boolean>(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return Boolean.valueOf(DeviceEventOwner.this._flush());
+            }
+        });
+    }
+
+    /**
+    *** Creates a task which writes any pending Device changes and retires this owner
+    **/
+    private FutureTask<Boolean> _createRetireTask()
+    {
+        return new FutureTask<Boolean>(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return Boolean.valueOf(DeviceEventOwner.this._retire());
+            }
+        });
+    }
+
+    /**
+    *** Writes any pending Device changes, reverts the Device instance to write-through
+    *** (for requests still queued to this owner), then releases this owner.  Since the
+    *** owner is released only after its pending changes are written, a replacement owner
+    *** always loads the Device after these changes have been saved.
+    *** (called from the owner lane)
+    **/
+    private boolean _retire()
+    {
+        boolean rtn = this._flush();
+        this.device.setWriteBehind(false);
+        this._release();
+        return rtn;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Handles a write-back request (called from the owner lane)
+    **/
+    private void _writeBack(Set<String> flds)
+        throws DBException
+    {
+        if (!this.device.isWriteBehind()) {
+            // write-through
+            if (flds != null) {
+                this.device.updateChangedEventFields(flds);
+            } else {
+                this.device.updateChangedEventFields();
+            }
+            rowsWrittenCount.incrementAndGet();
+            return;
+        }
+        this.pendingRequests++;
+        if (this._isWriteBackDue(System.currentTimeMillis())) {
+            if (!this._flush()) {
+                updatesAvoidedCount.incrementAndGet();
+            }
+        } else {
+            updatesAvoidedCount.incrementAndGet();
+        }
+    }
+
+    /**
+    *** Returns true if pending Device changes should be written now
+    **/
+    private boolean _isWriteBackDue(long nowMS)
+    {
+        if (this.pendingRequests <= 0) {
+            return false;
+        } else
+        if ((this.writeEventCount > 0) && (this.pendingRequests >= this.writeEventCount)) {
+            return true;
+        } else
+        if ((this.writeIntervalMS > 0L) && ((nowMS - this.lastWriteMS) >= this.writeIntervalMS)) {
+            return true;
+        } else {
+            return (this.writeIntervalMS <= 0L) && (this.writeEventCount <= 0);
+        }
+    }
+
+    /**
+    *** Writes the changed Device fields (called from the owner lane)
+    *** @return True if a Device row was written
+    **/
+    private boolean _flush()
+    {
+        this.pendingRequests = 0;
+        this.lastWriteMS     = System.currentTimeMillis();
+        try {
+            int count = this.device.flushChangedFields();
+            if (count > 0) {
+                rowsWrittenCount.incrementAndGet();
+                fieldsWrittenCount.addAndGet(count);
+                return true;
+            }
+        } catch (DBException dbe) {
+            // changed fields are retained, and retried on the next write-back
+            Print.logError("Unable to update Device: " + this.key + " [" + dbe + "]");
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this instance
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("DeviceEventOwner: ").append(this.key);
+        sb.append(" lane=").append(this.lane.getName());
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Worker lane processing the mailboxes of all Devices assigned to it
+    **/
+    /**
+    *** Owner request, which is either started by the owner lane, or cancelled before it
+    *** is started (a FutureTask cancelled while running continues to run, so whether a
+    *** timed-out request has run could not otherwise be determined)
+    **/
+    private static class Request<T>
+        extends FutureTask<T>
+    {
+        private AtomicInteger state = new AtomicInteger(0); // 0=queued, 1=started, 2=cancelled
+        public Request(Callable<T> task) {
+            super(task);
+        }
+        public void run() {
+            if (this.state.compareAndSet(0, 1)) {
+                super.run();
+            }
+        }
+        public boolean cancelIfQueued() {
+            if (this.state.compareAndSet(0, 2)) {
+                super.cancel(false);
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static class Lane
+        extends Thread
+    {
+        private LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+        public Lane(int ndx) {
+            super("DeviceEventOwner_" + ndx);
+            this.setDaemon(true);
+        }
+        public void add(Runnable task) {
+            this.queue.add(task);
+        }
+        public void run() {
+            long lastCheckMS = System.currentTimeMillis();
+            for (;;) {
+                Runnable task;
+                try {
+                    task = this.queue.poll(LANE_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                if (task != null) {
+                    try {
+                        task.run(); // FutureTask captures exceptions
+                    } catch (Throwable th) {
+                        Print.logException("Device owner lane error", th);
+                    }
+                }
+                long nowMS = System.currentTimeMillis();
+                if ((nowMS - lastCheckMS) >= LANE_POLL_MS) {
+                    DeviceEventOwner._checkOwners(this);
+                    lastCheckMS = nowMS;
+                }
+            }
+        }
+    }
+
+}
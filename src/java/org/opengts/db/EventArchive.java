@@ -0,0 +1,1198 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Columnar compressed cold-storage archive for historical EventData
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Columnar compressed EventData archive.<br>
+*** EventData records older than "EventArchive.ageDays" are moved from the EventData table
+*** into one file per Device per (GMT) month, "&lt;dir&gt;/&lt;account&gt;/&lt;device&gt;/&lt;YYYYMM&gt;.eva".
+*** Each file stores the records column by column, and each column is encoded according to
+*** its type, then compressed:<br>
+*** - integer columns: delta/zig-zag varints (ie. "timestamp"), or a dictionary if the column
+***   has few distinct values (ie. "statusCode")<br>
+*** - decimal columns: fixed-point delta/zig-zag varints, if all values are exactly
+***   representable with at most 7 decimal places (ie. "latitude"/"longitude"), otherwise
+***   XOR of the previous value bits<br>
+*** - String columns: a dictionary of distinct values<br>
+*** Files are read through a memory-mapped buffer, and the "timestamp" column is decoded
+*** first so that the remaining columns are only decoded if the file contains records in
+*** the requested range.  <code>EventData.getRangeEvents</code> merges archived records
+*** with the records in the EventData table.
+**/
+
+public class EventArchive
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String FILE_EXTN               = ".eva";
+    private static final int    FILE_MAGIC              = 0x47455641; // "GEVA"
+    private static final int    FILE_VERSION            = 1;
+
+    private static final byte   ENC_LONG_DELTA          = 1;
+    private static final byte   ENC_LONG_DICT           = 2;
+    private static final byte   ENC_DOUBLE_SCALED       = 3;
+    private static final byte   ENC_DOUBLE_XOR          = 4;
+    private static final byte   ENC_STRING_DICT         = 5;
+    private static final byte   ENC_BYTES               = 6;
+
+    private static final int    MAX_LONG_DICT_SIZE      = 256;
+    private static final int    MAX_DOUBLE_SCALE        = 7;
+
+    private static final long   DFT_AGE_DAYS            = 365L;
+
+    private static final EventData EMPTY_ARRAY[]        = new EventData[0];
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the archive directory
+    *** @return The archive directory, or null if the archive is not enabled
+    **/
+    public static File GetArchiveDir()
+    {
+        String dir = RTConfig.getString(DBConfig.PROP_EventArchive_dir, "");
+        return !StringTools.isBlank(dir)? new File(dir) : null;
+    }
+
+    /**
+    *** Returns true if the EventData archive is enabled ("EventArchive.dir" is specified)
+    *** @return True if the EventData archive is enabled
+    **/
+    public static boolean IsEnabled()
+    {
+        return (EventArchive.GetArchiveDir() != null);
+    }
+
+    /**
+    *** Gets the time before which events are archived
+    *** @return The archive cutoff time (in seconds)
+    **/
+    public static long GetArchiveCutoffTime()
+    {
+        long ageDays = RTConfig.getLong(DBConfig.PROP_EventArchive_ageDays, DFT_AGE_DAYS);
+        return DateTime.getCurrentTimeSec() - DateTime.DaySeconds(Math.max(ageDays,1L));
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the archive directory for the specified Device
+    **/
+    private static File _getDeviceDir(String acctID, String devID)
+    {
+        File dir = EventArchive.GetArchiveDir();
+        return (dir != null)? new File(new File(dir, acctID.toLowerCase()), devID.toLowerCase()) : null;
+    }
+
+    /**
+    *** Gets the start time of the GMT month containing the specified time
+    **/
+    private static long _getMonthStart(long timeSec)
+    {
+        DateTime dt = new DateTime(timeSec, DateTime.getGMTTimeZone());
+        return dt.getMonthStart(DateTime.getGMTTimeZone());
+    }
+
+    /**
+    *** Gets the start time of the GMT month following the month containing the specified time
+    **/
+    private static long _getNextMonthStart(long timeSec)
+    {
+        DateTime dt = new DateTime(timeSec, DateTime.getGMTTimeZone());
+        return dt.getMonthEnd(DateTime.getGMTTimeZone()) + 1L;
+    }
+
+    /**
+    *** Gets the "YYYYMM" name of the GMT month containing the specified time
+    **/
+    private static String _getMonthName(long timeSec)
+    {
+        DateTime dt = new DateTime(timeSec, DateTime.getGMTTimeZone());
+        return dt.format("yyyyMM", DateTime.getGMTTimeZone());
+    }
+
+    /**
+    *** Gets the start time of the GMT month named "YYYYMM"
+    *** @return The month start time, or -1 if the name is invalid
+    **/
+    private static long _parseMonthName(String name)
+    {
+        if ((name.length() != 6) || !StringTools.isNumeric(name)) {
+            return -1L;
+        }
+        int year  = StringTools.parseInt(name.substring(0,4), 0);
+        int month = StringTools.parseInt(name.substring(4,6), 0);
+        if ((year < 1970) || (month < 1) || (month > 12)) {
+            return -1L;
+        }
+        DateTime dt = new DateTime(DateTime.getGMTTimeZone(), year, month, 1, 0, 0, 0); // midnight
+        return dt.getTimeSec();
+    }
+
+    /**
+    *** Gets the archive files of the specified Device which overlap the specified time range
+    *** @return A map of month start time to archive file (in ascending month order)
+    **/
+    private static SortedMap<Long,File> _getArchiveFiles(String acctID, String devID, long timeStart, long timeEnd)
+    {
+        SortedMap<Long,File> files = new TreeMap<Long,File>();
+        File devDir = EventArchive._getDeviceDir(acctID, devID);
+        File list[] = (devDir != null)? devDir.listFiles() : null;
+        if (list != null) {
+            for (File f : list) {
+                String name = f.getName();
+                if (!name.endsWith(FILE_EXTN)) {
+                    continue;
+                }
+                long monthStart = EventArchive._parseMonthName(name.substring(0, name.length() - FILE_EXTN.length()));
+                if (monthStart < 0L) {
+                    continue;
+                }
+                long monthEnd = EventArchive._getNextMonthStart(monthStart) - 1L;
+                if ((timeEnd >= 0L) && (monthStart > timeEnd)) {
+                    continue;
+                } else
+                if ((timeStart >= 0L) && (monthEnd < timeStart)) {
+                    continue;
+                }
+                files.put(new Long(monthStart), f);
+            }
+        }
+        return files;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Read
+
+    /**
+    *** Returns true if the specified Device has archived events within the specified time range
+    *** @param acctID     The Account ID
+    *** @param devID      The Device ID
+    *** @param timeStart  The range start time (-1 for no start time)
+    *** @param timeEnd    The range end time (-1 for no end time)
+    *** @return True if archive files exist for the specified range
+    **/
+    public static boolean hasArchivedEvents(String acctID, String devID, long timeStart, long timeEnd)
+    {
+        if (!EventArchive.IsEnabled() || StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return false;
+        }
+        return !EventArchive._getArchiveFiles(acctID, devID, timeStart, timeEnd).isEmpty();
+    }
+
+    /**
+    *** Gets the archived events of the specified Device within the specified time range
+    *** @param acctID     The Account ID
+    *** @param devID      The Device ID
+    *** @param timeStart  The range start time (-1 for no start time)
+    *** @param timeEnd    The range end time (-1 for no end time)
+    *** @param statCode   The status codes to include (null for all status codes)
+    *** @param validGPS   True to include only events with a valid GPS (or cell-tower) location
+    *** @return The archived events, in ascending timestamp order (does not return null)
+    *** @throws DBException  If an archive file cannot be read
+    **/
+    public static EventData[] getArchivedEvents(
+        String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS)
+        throws DBException
+    {
+        return EventArchive.getArchivedEvents(acctID, devID, timeStart, timeEnd, statCode, validGPS, false, -1L);
+    }
+
+    /**
+    *** Gets the archived events of the specified Device within the specified time range.
+    *** Monthly archive files are read in the specified order until at least "limit" events
+    *** have been read, so the returned events include the "limit" oldest (or newest) matching
+    *** archived events, but may include more.
+    *** @param acctID       The Account ID
+    *** @param devID        The Device ID
+    *** @param timeStart    The range start time (-1 for no start time)
+    *** @param timeEnd      The range end time (-1 for no end time)
+    *** @param statCode     The status codes to include (null for all status codes)
+    *** @param validGPS     True to include only events with a valid GPS (or cell-tower) location
+    *** @param newestFirst  True to read the newest months first (for a "LAST" limit)
+    *** @param limit        The minimum number of events to read (-1 to read all months)
+    *** @return The archived events, in ascending timestamp order (does not return null)
+    *** @throws DBException  If an archive file cannot be read
+    **/
+    public static EventData[] getArchivedEvents(
+        String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS,
+        boolean newestFirst, long limit)
+        throws DBException
+    {
+        if (!EventArchive.IsEnabled() || StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return EMPTY_ARRAY;
+        }
+        java.util.List<File> files = new Vector<File>(EventArchive._getArchiveFiles(acctID, devID, timeStart, timeEnd).values());
+        if (newestFirst) {
+            Collections.reverse(files);
+        }
+        java.util.List<java.util.List<EventData>> months = new Vector<java.util.List<EventData>>();
+        long count = 0L;
+        for (File file : files) {
+            if ((limit > 0L) && (count >= limit)) {
+                // remaining months are all older (or newer) than the events already read
+                break;
+            }
+            java.util.List<EventData> monthList = new Vector<EventData>();
+            try {
+                EventArchive._readFile(file, acctID, devID, timeStart, timeEnd, statCode, validGPS, monthList);
+            } catch (IOException ioe) {
+                throw new DBException("Reading EventData archive: " + file, ioe);
+            }
+            months.add(monthList);
+            count += monthList.size();
+        }
+        if (newestFirst) {
+            Collections.reverse(months);
+        }
+        java.util.List<EventData> evList = new Vector<EventData>();
+        for (java.util.List<EventData> monthList : months) {
+            evList.addAll(monthList);
+        }
+        return evList.toArray(new EventData[evList.size()]);
+    }
+
+    /**
+    *** Returns the number of archived events of the specified Device within the specified
+    *** time range.  Only the "timestamp" and "statusCode" columns (and the location columns,
+    *** if "validGPS" is true) are decoded.
+    *** @see #getArchivedEvents
+    **/
+    public static long countArchivedEvents(
+        String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS)
+        throws DBException
+    {
+        if (!EventArchive.IsEnabled() || StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return 0L;
+        }
+        long count = 0L;
+        for (File file : EventArchive._getArchiveFiles(acctID, devID, timeStart, timeEnd).values()) {
+            try {
+                count += EventArchive._countFile(file, timeStart, timeEnd, statCode, validGPS, null);
+            } catch (IOException ioe) {
+                throw new DBException("Reading EventData archive: " + file, ioe);
+            }
+        }
+        return count;
+    }
+
+    /**
+    *** Returns the keys (see <code>GetEventKey</code>) of the archived events of the specified
+    *** Device within the specified time range.  Only the "timestamp" and "statusCode" columns
+    *** (and the location columns, if "validGPS" is true) are decoded.
+    *** @see #countArchivedEvents
+    **/
+    public static Set<String> getArchivedEventKeys(
+        String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS)
+        throws DBException
+    {
+        Set<String> keys = new HashSet<String>();
+        if (!EventArchive.IsEnabled() || StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return keys;
+        }
+        for (File file : EventArchive._getArchiveFiles(acctID, devID, timeStart, timeEnd).values()) {
+            try {
+                EventArchive._countFile(file, timeStart, timeEnd, statCode, validGPS, keys);
+            } catch (IOException ioe) {
+                throw new DBException("Reading EventData archive: " + file, ioe);
+            }
+        }
+        return keys;
+    }
+
+    /**
+    *** Gets the key of an event, as returned by <code>getArchivedEventKeys</code>
+    **/
+    public static String GetEventKey(long timestamp, int statusCode)
+    {
+        return timestamp + "/" + statusCode;
+    }
+
+    /**
+    *** Gets the start times of the archived months of the specified Device which overlap
+    *** the specified time range
+    *** @return The month start times, in ascending order (does not return null)
+    **/
+    public static long[] getArchivedMonths(String acctID, String devID, long timeStart, long timeEnd)
+    {
+        if (!EventArchive.IsEnabled() || StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return new long[0];
+        }
+        Set<Long> months = EventArchive._getArchiveFiles(acctID, devID, timeStart, timeEnd).keySet();
+        long ms[] = new long[months.size()];
+        int n = 0;
+        for (Long m : months) {
+            ms[n++] = m.longValue();
+        }
+        return ms;
+    }
+
+    /**
+    *** Gets the end time (inclusive) of the GMT month starting at the specified time
+    **/
+    public static long GetMonthEnd(long monthStart)
+    {
+        return EventArchive._getNextMonthStart(monthStart) - 1L;
+    }
+
+    /**
+    *** Gets the time range covered by the archived months of the specified Device which
+    *** overlap the specified time range
+    *** @return The {start, end} (inclusive) of the archived months, or null if none
+    **/
+    public static long[] getArchivedTimeRange(String acctID, String devID, long timeStart, long timeEnd)
+    {
+        long ms[] = EventArchive.getArchivedMonths(acctID, devID, timeStart, timeEnd);
+        if (ms.length == 0) {
+            return null;
+        }
+        return new long[] { ms[0], EventArchive.GetMonthEnd(ms[ms.length - 1]) };
+    }
+
+    /**
+    *** Column directory entry of an archive file
+    **/
+    private static class Column
+    {
+        public String   name    = null;
+        public byte     enc     = 0;
+        public int      offset  = 0;
+        public int      zlen    = 0;
+        public int      rawLen  = 0;
+    }
+
+    /**
+    *** Header and column directory of an archive file
+    **/
+    private static class ArchiveFile
+    {
+        public ByteBuffer           bb          = null;
+        public int                  rcdCount    = 0;
+        public Map<String,Column>   colMap      = new OrderedMap<String,Column>();
+        public boolean              match[]     = null;
+        public Object               times[]     = null;
+        public Object               codes[]     = null;
+    }
+
+    /**
+    *** Maps the specified archive file, reads the column directory, and determines the rows
+    *** which match the specified time range and status codes (the "timestamp" and
+    *** "statusCode" columns are decoded)
+    *** @return The archive file, or null if no row matches
+    **/
+    private static ArchiveFile _openFile(File file,
+        long timeStart, long timeEnd,
+        int statCode[])
+        throws IOException
+    {
+        ArchiveFile af = new ArchiveFile();
+
+        /* map file */
+        ByteBuffer bb = null;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel fc = raf.getChannel();
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0L, fc.size());
+        } finally {
+            if (raf != null) { try { raf.close(); } catch (Throwable th) {/*ignore*/} }
+        }
+
+        /* header */
+        if ((bb.getInt() != FILE_MAGIC) || (bb.getInt() != FILE_VERSION)) {
+            throw new IOException("Invalid archive file header");
+        }
+        int rcdCount = bb.getInt();
+        int colCount = bb.getInt();
+        Map<String,Column> colMap = af.colMap;
+        for (int c = 0; c < colCount; c++) {
+            Column col = new Column();
+            byte name[] = new byte[bb.getShort() & 0xFFFF];
+            bb.get(name);
+            col.name    = StringTools.toStringValue(name);
+            col.enc     = bb.get();
+            col.rawLen  = bb.getInt();
+            col.zlen    = bb.getInt();
+            col.offset  = bb.position();
+            bb.position(col.offset + col.zlen);
+            colMap.put(col.name, col);
+        }
+
+        /* time column (decoded first, to determine the matching rows) */
+        Object times[] = EventArchive._decodeColumn(bb, colMap.get(EventData.FLD_timestamp), rcdCount, Long.TYPE);
+        Object codes[] = EventArchive._decodeColumn(bb, colMap.get(EventData.FLD_statusCode), rcdCount, Integer.TYPE);
+        if ((times == null) || (codes == null)) {
+            throw new IOException("Archive file missing timestamp/statusCode columns");
+        }
+        boolean match[] = new boolean[rcdCount];
+        int matchCount = 0;
+        for (int r = 0; r < rcdCount; r++) {
+            long ts = ((Long)times[r]).longValue();
+            if ((timeStart >= 0L) && (ts < timeStart)) {
+                continue;
+            } else
+            if ((timeEnd >= 0L) && (ts > timeEnd)) {
+                continue;
+            }
+            if (statCode != null) {
+                int sc = ((Integer)codes[r]).intValue();
+                boolean found = false;
+                for (int s = 0; s < statCode.length; s++) {
+                    if (statCode[s] == sc) { found = true; break; }
+                }
+                if (!found) {
+                    continue;
+                }
+            }
+            match[r] = true;
+            matchCount++;
+        }
+        if (matchCount == 0) {
+            return null;
+        }
+        af.bb       = bb;
+        af.rcdCount = rcdCount;
+        af.match    = match;
+        af.times    = times;
+        af.codes    = codes;
+        return af;
+
+    }
+
+    /**
+    *** Returns the number of events in the specified archive file which match the specified
+    *** criteria
+    **/
+    private static int _countFile(File file,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS,
+        Set<String> keys)
+        throws IOException
+    {
+        ArchiveFile af = EventArchive._openFile(file, timeStart, timeEnd, statCode);
+        if (af == null) {
+            return 0;
+        }
+        Object loc[][] = null;
+        if (validGPS) {
+            String locFlds[] = new String[] {
+                EventData.FLD_latitude    , EventData.FLD_longitude,
+                EventData.FLD_cellLatitude, EventData.FLD_cellLongitude };
+            loc = new Object[locFlds.length][];
+            for (int f = 0; f < locFlds.length; f++) {
+                loc[f] = EventArchive._decodeColumn(af.bb, af.colMap.get(locFlds[f]), af.rcdCount, Double.TYPE);
+            }
+        }
+        int count = 0;
+        for (int r = 0; r < af.rcdCount; r++) {
+            if (af.match[r]) {
+                if (validGPS) {
+                    boolean valid = false;
+                    for (int f = 0; (f < loc.length) && !valid; f++) {
+                        Object v = (loc[f] != null)? loc[f][r] : null;
+                        valid = (v instanceof Number) && (((Number)v).doubleValue() != 0.0);
+                    }
+                    if (!valid) {
+                        // same as "EventData.getWhereClause" gpsRequired
+                        continue;
+                    }
+                }
+                if (keys != null) {
+                    keys.add(EventArchive.GetEventKey(((Long)af.times[r]).longValue(), ((Integer)af.codes[r]).intValue()));
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+    *** Reads the events from the specified archive file which match the specified criteria
+    **/
+    private static void _readFile(File file,
+        String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statCode[], boolean validGPS,
+        java.util.List<EventData> evList)
+        throws IOException, DBException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        ArchiveFile af = EventArchive._openFile(file, timeStart, timeEnd, statCode);
+        if (af == null) {
+            return;
+        }
+        ByteBuffer         bb       = af.bb;
+        int                rcdCount = af.rcdCount;
+        Map<String,Column> colMap   = af.colMap;
+        boolean            match[]  = af.match;
+        Object             times[]  = af.times;
+        Object             codes[]  = af.codes;
+
+        /* create matching records */
+        EventData ev[] = new EventData[rcdCount];
+        for (int r = 0; r < rcdCount; r++) {
+            if (match[r]) {
+                EventData.Key evKey = new EventData.Key(acctID, devID,
+                    ((Long)times[r]).longValue(), ((Integer)codes[r]).intValue());
+                ev[r] = evKey.getDBRecord();
+            }
+        }
+
+        /* remaining columns */
+        for (Column col : colMap.values()) {
+            if (col.name.equals(EventData.FLD_timestamp) || col.name.equals(EventData.FLD_statusCode)) {
+                continue;
+            } else
+            if (col.name.equals(EventData.FLD_accountID) || col.name.equals(EventData.FLD_deviceID)) {
+                continue;
+            }
+            DBField fld = fact.getField(col.name);
+            if (fld == null) {
+                // column no longer exists in EventData
+                continue;
+            }
+            Object vals[] = EventArchive._decodeColumn(bb, col, rcdCount, fld.getTypeClass());
+            for (int r = 0; r < rcdCount; r++) {
+                if (match[r] && (vals[r] != null)) {
+                    if (vals[r] instanceof String) {
+                        Class<?> tc = fld.getTypeClass();
+                        ev[r].setFieldValue(col.name, (tc == String.class)? vals[r] : fld.parseStringValue((String)vals[r]));
+                    } else {
+                        ev[r].setFieldValue(col.name, vals[r]);
+                    }
+                }
+            }
+        }
+
+        /* add matching records */
+        for (int r = 0; r < rcdCount; r++) {
+            if (match[r]) {
+                ev[r].clearChanged();
+                if (validGPS &&
+                    (ev[r].getLatitude()     == 0.0) && (ev[r].getLongitude()     == 0.0) &&
+                    (ev[r].getCellLatitude() == 0.0) && (ev[r].getCellLongitude() == 0.0)) {
+                    // same as "EventData.getWhereClause" gpsRequired
+                    continue;
+                }
+                evList.add(ev[r]);
+            }
+        }
+
+    }
+
+    /**
+    *** Decodes the values of the specified column
+    *** @return The decoded values (boxed to the specified field type), or null if the column is null
+    **/
+    private static Object[] _decodeColumn(ByteBuffer bb, Column col, int rcdCount, Class<?> type)
+        throws IOException
+    {
+        if (col == null) {
+            return null;
+        }
+
+        /* inflate */
+        byte raw[] = new byte[col.rawLen];
+        byte zip[] = new byte[col.zlen];
+        ByteBuffer dup = bb.duplicate();
+        dup.position(col.offset);
+        dup.get(zip);
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(zip);
+            int len = 0;
+            while (len < raw.length) {
+                int n = inf.inflate(raw, len, raw.length - len);
+                if (n <= 0) {
+                    if (inf.finished() || inf.needsInput()) { break; }
+                }
+                len += n;
+            }
+            if (len != raw.length) {
+                throw new IOException("Column '" + col.name + "' truncated");
+            }
+        } catch (DataFormatException dfe) {
+            throw new IOException("Column '" + col.name + "' corrupt: " + dfe.getMessage());
+        } finally {
+            inf.end();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+
+        /* decode */
+        Object vals[] = new Object[rcdCount];
+        switch (col.enc) {
+            case ENC_LONG_DELTA: {
+                long prev = 0L;
+                for (int r = 0; r < rcdCount; r++) {
+                    prev += _unzigzag(_readVarLong(in));
+                    vals[r] = _boxLong(prev, type);
+                }
+            } break;
+            case ENC_LONG_DICT: {
+                Object dict[] = new Object[(int)_readVarLong(in)];
+                for (int d = 0; d < dict.length; d++) {
+                    dict[d] = _boxLong(_unzigzag(_readVarLong(in)), type);
+                }
+                for (int r = 0; r < rcdCount; r++) {
+                    vals[r] = dict[(int)_readVarLong(in)];
+                }
+            } break;
+            case ENC_DOUBLE_SCALED: {
+                double scale = Math.pow(10.0, (double)in.readByte());
+                long prev = 0L;
+                for (int r = 0; r < rcdCount; r++) {
+                    prev += _unzigzag(_readVarLong(in));
+                    vals[r] = _boxDouble((double)prev / scale, type);
+                }
+            } break;
+            case ENC_DOUBLE_XOR: {
+                long prev = 0L;
+                for (int r = 0; r < rcdCount; r++) {
+                    prev ^= in.readLong();
+                    vals[r] = _boxDouble(Double.longBitsToDouble(prev), type);
+                }
+            } break;
+            case ENC_STRING_DICT: {
+                String dict[] = new String[(int)_readVarLong(in)];
+                for (int d = 0; d < dict.length; d++) {
+                    byte b[] = new byte[(int)_readVarLong(in)];
+                    in.readFully(b);
+                    dict[d] = StringTools.toStringValue(b);
+                }
+                for (int r = 0; r < rcdCount; r++) {
+                    int ndx = (int)_readVarLong(in);
+                    vals[r] = (ndx > 0)? dict[ndx - 1] : null;
+                }
+            } break;
+            case ENC_BYTES: {
+                for (int r = 0; r < rcdCount; r++) {
+                    int len = (int)_readVarLong(in);
+                    if (len > 0) {
+                        byte b[] = new byte[len - 1];
+                        in.readFully(b);
+                        vals[r] = b;
+                    }
+                }
+            } break;
+            default: {
+                throw new IOException("Column '" + col.name + "' unknown encoding: " + col.enc);
+            }
+        }
+        return vals;
+
+    }
+
+    private static Object _boxLong(long v, Class<?> type)
+    {
+        if ((type == Integer.TYPE) || (type == Integer.class)) {
+            return new Integer((int)v);
+        } else
+        if ((type == Short.TYPE) || (type == Short.class)) {
+            return new Short((short)v);
+        } else
+        if ((type == Byte.TYPE) || (type == Byte.class)) {
+            return new Byte((byte)v);
+        } else
+        if ((type == Boolean.TYPE) || (type == Boolean.class)) {
+            return new Boolean(v != 0L);
+        } else {
+            return new Long(v);
+        }
+    }
+
+    private static Object _boxDouble(double v, Class<?> type)
+    {
+        if ((type == Float.TYPE) || (type == Float.class)) {
+            return new Float((float)v);
+        } else {
+            return new Double(v);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Write
+
+    /**
+    *** Writes the specified events to an archive file
+    *** @param file  The archive file
+    *** @param ev    The events (all of the same Device)
+    **/
+    /* package */ static void _writeFile(File file, EventData ev[])
+        throws IOException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        DBField fields[] = fact.getFields();
+
+        /* encode columns */
+        ByteArrayOutputStream cols = new ByteArrayOutputStream();
+        DataOutputStream colOut = new DataOutputStream(cols);
+        int colCount = 0;
+        for (DBField fld : fields) {
+            String name = fld.getName();
+            if (name.equals(EventData.FLD_accountID) || name.equals(EventData.FLD_deviceID)) {
+                continue; // implied by the file location
+            }
+            Object vals[] = new Object[ev.length];
+            for (int r = 0; r < ev.length; r++) {
+                vals[r] = ev[r].getFieldValue(name);
+            }
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            byte enc = EventArchive._encodeColumn(fld.getTypeClass(), vals, new DataOutputStream(raw));
+            byte rawBytes[] = raw.toByteArray();
+            Deflater def = new Deflater(Deflater.BEST_COMPRESSION);
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            try {
+                def.setInput(rawBytes);
+                def.finish();
+                byte buf[] = new byte[8192];
+                while (!def.finished()) {
+                    int n = def.deflate(buf);
+                    zip.write(buf, 0, n);
+                }
+            } finally {
+                def.end();
+            }
+            byte nameBytes[] = StringTools.getBytes(name);
+            colOut.writeShort(nameBytes.length);
+            colOut.write(nameBytes);
+            colOut.writeByte(enc);
+            colOut.writeInt(rawBytes.length);
+            colOut.writeInt(zip.size());
+            zip.writeTo(colOut);
+            colCount++;
+        }
+        colOut.flush();
+
+        /* write file (to a temporary file first, then rename) */
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create archive directory: " + dir);
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(ev.length);
+            out.writeInt(colCount);
+            cols.writeTo(out);
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            if (fos != null) { try { fos.close(); } catch (Throwable th) {/*ignore*/} }
+        }
+        // atomic replace: readers see either the previous or the new file, never neither
+        java.nio.file.Files.move(tmp.toPath(), file.toPath(),
+            java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    /**
+    *** Encodes the specified column values
+    *** @return The column encoding
+    **/
+    private static byte _encodeColumn(Class<?> type, Object vals[], DataOutputStream out)
+        throws IOException
+    {
+
+        /* integer types */
+        if ((type == Long.TYPE)    || (type == Long.class)    ||
+            (type == Integer.TYPE) || (type == Integer.class) ||
+            (type == Short.TYPE)   || (type == Short.class)   ||
+            (type == Byte.TYPE)    || (type == Byte.class)    ||
+            (type == Boolean.TYPE) || (type == Boolean.class)   ) {
+            long lv[] = new long[vals.length];
+            Map<Long,Integer> dict = new LinkedHashMap<Long,Integer>();
+            for (int r = 0; r < vals.length; r++) {
+                Object v = vals[r];
+                lv[r] = (v instanceof Boolean)? (((Boolean)v).booleanValue()? 1L : 0L) :
+                        (v instanceof Number )? ((Number)v).longValue() : 0L;
+                if ((dict.size() <= MAX_LONG_DICT_SIZE) && !dict.containsKey(new Long(lv[r]))) {
+                    dict.put(new Long(lv[r]), new Integer(dict.size()));
+                }
+            }
+            if ((dict.size() <= MAX_LONG_DICT_SIZE) && ((dict.size() * 2) < vals.length)) {
+                // few distinct values (ie. "statusCode")
+                _writeVarLong(out, dict.size());
+                for (Long d : dict.keySet()) {
+                    _writeVarLong(out, _zigzag(d.longValue()));
+                }
+                for (int r = 0; r < lv.length; r++) {
+                    _writeVarLong(out, dict.get(new Long(lv[r])).longValue());
+                }
+                return ENC_LONG_DICT;
+            } else {
+                long prev = 0L;
+                for (int r = 0; r < lv.length; r++) {
+                    _writeVarLong(out, _zigzag(lv[r] - prev));
+                    prev = lv[r];
+                }
+                return ENC_LONG_DELTA;
+            }
+        }
+
+        /* decimal types */
+        if ((type == Double.TYPE) || (type == Double.class) ||
+            (type == Float.TYPE)  || (type == Float.class)    ) {
+            double dv[] = new double[vals.length];
+            for (int r = 0; r < vals.length; r++) {
+                dv[r] = (vals[r] instanceof Number)? ((Number)vals[r]).doubleValue() : 0.0;
+            }
+            // find the smallest exact fixed-point scale
+            int exp = -1;
+            for (int e = 0; (e <= MAX_DOUBLE_SCALE) && (exp < 0); e++) {
+                double scale = Math.pow(10.0, (double)e);
+                boolean exact = true;
+                for (int r = 0; (r < dv.length) && exact; r++) {
+                    double s = dv[r] * scale;
+                    if (Double.isNaN(s) || Double.isInfinite(s) || (Math.abs(s) >= 9.0e15) ||
+                        (((double)Math.round(s) / scale) != dv[r])) {
+                        exact = false;
+                    }
+                }
+                if (exact) { exp = e; }
+            }
+            if (exp >= 0) {
+                double scale = Math.pow(10.0, (double)exp);
+                out.writeByte(exp);
+                long prev = 0L;
+                for (int r = 0; r < dv.length; r++) {
+                    long lv = Math.round(dv[r] * scale);
+                    _writeVarLong(out, _zigzag(lv - prev));
+                    prev = lv;
+                }
+                return ENC_DOUBLE_SCALED;
+            } else {
+                long prev = 0L;
+                for (int r = 0; r < dv.length; r++) {
+                    long bits = Double.doubleToLongBits(dv[r]);
+                    out.writeLong(bits ^ prev);
+                    prev = bits;
+                }
+                return ENC_DOUBLE_XOR;
+            }
+        }
+
+        /* binary */
+        if (type == byte[].class) {
+            for (int r = 0; r < vals.length; r++) {
+                byte b[] = (byte[])vals[r];
+                if (b == null) {
+                    _writeVarLong(out, 0L);
+                } else {
+                    _writeVarLong(out, b.length + 1);
+                    out.write(b);
+                }
+            }
+            return ENC_BYTES;
+        }
+
+        /* String (and all other types, as String) */
+        Map<String,Integer> dict = new LinkedHashMap<String,Integer>();
+        int ndx[] = new int[vals.length];
+        for (int r = 0; r < vals.length; r++) {
+            if (vals[r] == null) {
+                ndx[r] = 0;
+            } else {
+                String s = vals[r].toString();
+                Integer d = dict.get(s);
+                if (d == null) {
+                    d = new Integer(dict.size() + 1);
+                    dict.put(s, d);
+                }
+                ndx[r] = d.intValue();
+            }
+        }
+        _writeVarLong(out, dict.size());
+        for (String s : dict.keySet()) {
+            byte b[] = StringTools.getBytes(s);
+            _writeVarLong(out, b.length);
+            out.write(b);
+        }
+        for (int r = 0; r < ndx.length; r++) {
+            _writeVarLong(out, ndx[r]);
+        }
+        return ENC_STRING_DICT;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static long _zigzag(long v)
+    {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long _unzigzag(long v)
+    {
+        return (v >>> 1) ^ -(v & 1L);
+    }
+
+    private static void _writeVarLong(DataOutputStream out, long v)
+        throws IOException
+    {
+        while ((v & ~0x7FL) != 0L) {
+            out.writeByte((int)((v & 0x7FL) | 0x80L));
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    private static long _readVarLong(DataInputStream in)
+        throws IOException
+    {
+        long v = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Archive
+
+    /**
+    *** Moves the events of the specified Device which are older than the cutoff time from
+    *** the EventData table into the archive.  Only whole (GMT) months prior to the month
+    *** containing the cutoff time are archived.  Each month is written to its archive file
+    *** (merged with any events previously archived for that month) before the archived
+    *** events are deleted (by key) from the EventData table.  Events inserted into an
+    *** archived month after it was read remain in the EventData table, and are archived by
+    *** the next run.
+    *** @param acctID      The Account ID
+    *** @param devID       The Device ID
+    *** @param cutoffTime  Events prior to the month containing this time are archived
+    *** @return The number of events archived
+    *** @throws DBException  If a database or archive file error occurs
+    **/
+    public static long archiveDevice(String acctID, String devID, long cutoffTime)
+        throws DBException
+    {
+        if (!EventArchive.IsEnabled()) {
+            throw new DBException("EventData archive not enabled ('" + DBConfig.PROP_EventArchive_dir + "')");
+        }
+        long cutoffMonth = EventArchive._getMonthStart(cutoffTime);
+        long count = 0L;
+
+        /* first live event */
+        EventData first[] = EventData.getLiveRangeEvents(
+            acctID, devID,
+            -1L, (cutoffMonth - 1L),
+            null/*statusCodes*/,
+            false/*validGPS*/,
+            EventData.LimitType.FIRST, 1L/*limit*/, true/*ascending*/,
+            null/*addtnlSelect*/,
+            null/*rcdHandler*/);
+        if (ListTools.isEmpty(first)) {
+            return 0L;
+        }
+
+        /* archive each month */
+        for (long monthStart = EventArchive._getMonthStart(first[0].getTimestamp()); monthStart < cutoffMonth;) {
+            long nextMonth = EventArchive._getNextMonthStart(monthStart);
+            EventData live[] = EventData.getLiveRangeEvents(
+                acctID, devID,
+                monthStart, (nextMonth - 1L),
+                null/*statusCodes*/,
+                false/*validGPS*/,
+                EventData.LimitType.FIRST, -1L/*limit*/, true/*ascending*/,
+                null/*addtnlSelect*/,
+                null/*rcdHandler*/);
+            if (!ListTools.isEmpty(live)) {
+                File file = new File(EventArchive._getDeviceDir(acctID, devID), EventArchive._getMonthName(monthStart) + FILE_EXTN);
+                try {
+                    // merge with previously archived events (live events replace archived duplicates)
+                    OrderedMap<String,EventData> merged = new OrderedMap<String,EventData>();
+                    if (file.exists()) {
+                        java.util.List<EventData> arch = new Vector<EventData>();
+                        EventArchive._readFile(file, acctID, devID, -1L, -1L, null, false, arch);
+                        for (EventData e : arch) {
+                            merged.put(EventArchive.GetEventKey(e.getTimestamp(), e.getStatusCode()), e);
+                        }
+                    }
+                    for (EventData e : live) {
+                        merged.put(EventArchive.GetEventKey(e.getTimestamp(), e.getStatusCode()), e);
+                    }
+                    EventData ev[] = merged.values().toArray(new EventData[merged.size()]);
+                    Arrays.sort(ev, new Comparator<EventData>() {
+                        public int compare(EventData e1, EventData e2) {
+                            long t1 = e1.getTimestamp(), t2 = e2.getTimestamp();
+                            return (t1 < t2)? -1 : (t1 > t2)? 1 : (e1.getStatusCode() - e2.getStatusCode());
+                        }
+                    });
+                    EventArchive._writeFile(file, ev);
+                    // verify before deleting from the EventData table
+                    java.util.List<EventData> check = new Vector<EventData>();
+                    EventArchive._readFile(file, acctID, devID, -1L, -1L, null, false, check);
+                    if (check.size() != ev.length) {
+                        throw new IOException("Archive verification failed: " + file);
+                    }
+                } catch (IOException ioe) {
+                    throw new DBException("Writing EventData archive: " + file, ioe);
+                }
+                EventData.deleteEvents(acctID, devID, live);
+                Print.logInfo("Archived " + live.length + " events: " + acctID + "/" + devID + " " + file.getName());
+                count += live.length;
+            }
+            monthStart = nextMonth;
+        }
+        return count;
+
+    }
+
+    /**
+    *** Deletes the archive files of the specified Device for months which end prior to the
+    *** specified time (archived events are retained for partial months)
+    *** @param acctID      The Account ID
+    *** @param devID       The Device ID
+    *** @param oldTimeSec  The time before which archived months are deleted
+    *** @return The number of archive files deleted
+    **/
+    public static int deleteOldArchives(String acctID, String devID, long oldTimeSec)
+    {
+        if (!EventArchive.IsEnabled()) {
+            return 0;
+        }
+        int count = 0;
+        for (Map.Entry<Long,File> e : EventArchive._getArchiveFiles(acctID, devID, -1L, oldTimeSec).entrySet()) {
+            long monthEnd = EventArchive._getNextMonthStart(e.getKey().longValue()) - 1L;
+            if (monthEnd < oldTimeSec) {
+                if (e.getValue().delete()) {
+                    count++;
+                } else {
+                    Print.logWarn("Unable to delete archive file: " + e.getValue());
+                }
+            }
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_ACCOUNT[]           = new String[] { "account", "acct"  };
+    private static final String ARG_DEVICE[]            = new String[] { "device" , "dev"   };
+    private static final String ARG_ARCHIVE[]           = new String[] { "archive"          };
+    private static final String ARG_LIST[]              = new String[] { "list"             };
+
+    private static void usage()
+    {
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + EventArchive.class.getName() + " {options}");
+        Print.sysPrintln("Options:");
+        Print.sysPrintln("  -account=<id>               Account ID (all Accounts if not specified)");
+        Print.sysPrintln("  -device=<id>                Device ID (all Account devices if not specified)");
+        Print.sysPrintln("");
+        Print.sysPrintln("  -archive                    Archive events older than 'EventArchive.ageDays'");
+        Print.sysPrintln("  -list                       List archive files");
+        System.exit(1);
+    }
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv,true);  // main
+        String accountID = RTConfig.getString(ARG_ACCOUNT, "");
+        String deviceID  = RTConfig.getString(ARG_DEVICE , "");
+
+        /* enabled? */
+        if (!EventArchive.IsEnabled()) {
+            Print.logError("EventData archive not enabled ('" + DBConfig.PROP_EventArchive_dir + "')");
+            System.exit(1);
+        }
+
+        /* archive */
+        if (RTConfig.getBoolean(ARG_ARCHIVE,false)) {
+            long cutoffTime = EventArchive.GetArchiveCutoffTime();
+            long startMS = System.currentTimeMillis();
+            long count = 0L;
+            try {
+                Collection<String> acctIDs = !StringTools.isBlank(accountID)?
+                    ListTools.toList(new String[] { accountID }) : Account.getAllAccounts();
+                for (String acctID : acctIDs) {
+                    Collection<String> devIDs = !StringTools.isBlank(deviceID)?
+                        ListTools.toList(new String[] { deviceID }) : Device.getDeviceIDsForAccount(acctID, null, true);
+                    for (String devID : devIDs) {
+                        count += EventArchive.archiveDevice(acctID, devID, cutoffTime);
+                    }
+                }
+            } catch (DBException dbe) {
+                Print.logException("Error archiving events", dbe);
+                System.exit(99);
+            }
+            Print.sysPrintln("Archived " + count + " events prior to " + new DateTime(cutoffTime) + " in " +
+                (System.currentTimeMillis() - startMS) + " ms");
+            System.exit(0);
+        }
+
+        /* list */
+        if (RTConfig.getBoolean(ARG_LIST,false)) {
+            if (StringTools.isBlank(accountID) || StringTools.isBlank(deviceID)) {
+                Print.logError("Account/Device not specified");
+                usage();
+            }
+            for (File f : EventArchive._getArchiveFiles(accountID, deviceID, -1L, -1L).values()) {
+                Print.sysPrintln(f + " [" + f.length() + " bytes]");
+            }
+            System.exit(0);
+        }
+
+        /* no options specified */
+        Print.logWarn("Missing options ...");
+        usage();
+
+    }
+
+}
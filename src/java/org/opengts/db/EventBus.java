@@ -0,0 +1,365 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  In-process EventData insertion bus (with optional UDP bridge)
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+import java.net.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.tables.*;
+
+/**
+*** In-process EventData insertion bus.<br>
+*** <code>Device.insertEventData</code> publishes each inserted event to this bus, which
+*** dispatches the event to all registered subscribers (ie. live map tracking channels)
+*** interested in the event's Account/Device.  Subscribers are called on the inserting
+*** thread, and must therefore only queue the event (and never block).<br>
+*** When the DCS runs in a separate JVM from the web-application, the DCS may be configured
+*** to forward the primary key of each inserted event as a UDP datagram to the host:port
+*** addresses listed in "EventBus.bridge.send", and the web-application configured to
+*** listen on the port specified by "EventBus.bridge.listen".  Forwarded events in which a
+*** local subscriber is interested are read from the EventData table and dispatched to the
+*** local subscribers.  Bridge datagrams are "best effort": a lost datagram only delays
+*** the map display until the next event for the Device.
+**/
+
+public class EventBus
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String BRIDGE_MSG_EVENT        = "E";
+    private static final char   BRIDGE_SEPARATOR        = '\t';
+    private static final int    BRIDGE_MAX_PACKET       = 1024;
+    private static final String DFT_LISTEN_ADDRESS      = "127.0.0.1";
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** EventBus subscriber
+    **/
+    public interface Subscriber
+    {
+
+        /**
+        *** Returns true if this subscriber is interested in events for the specified Device
+        *** @param acctID  The Account ID
+        *** @param devID   The Device ID
+        *** @return True if interested
+        **/
+        public boolean isSubscribed(String acctID, String devID);
+
+        /**
+        *** Called when an event is inserted for a subscribed Device.  Must not block.
+        *** @param ev  The inserted event
+        **/
+        public void eventInserted(EventData ev);
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static CopyOnWriteArrayList<Subscriber> subscriberList = new CopyOnWriteArrayList<Subscriber>();
+
+    private static AtomicLong   publishedCount          = new AtomicLong(0L);
+    private static AtomicLong   bridgeSentCount         = new AtomicLong(0L);
+    private static AtomicLong   bridgeReceivedCount     = new AtomicLong(0L);
+
+    static {
+        Metrics.RegisterGauge("eventBus.subscribers", new Metrics.Gauge() {
+            public long getValue() { return subscriberList.size(); }
+        });
+        Metrics.RegisterGauge("eventBus.published", new Metrics.Gauge() {
+            public long getValue() { return publishedCount.get(); }
+        });
+        Metrics.RegisterGauge("eventBus.bridge.sent", new Metrics.Gauge() {
+            public long getValue() { return bridgeSentCount.get(); }
+        });
+        Metrics.RegisterGauge("eventBus.bridge.received", new Metrics.Gauge() {
+            public long getValue() { return bridgeReceivedCount.get(); }
+        });
+    }
+
+    /**
+    *** Registers the specified subscriber.  Starts the bridge listener, if configured.
+    *** @param sub  The subscriber
+    **/
+    public static void Subscribe(Subscriber sub)
+    {
+        if (sub != null) {
+            EventBus._startBridgeListener();
+            subscriberList.addIfAbsent(sub);
+        }
+    }
+
+    /**
+    *** Removes the specified subscriber
+    *** @param sub  The subscriber
+    **/
+    public static void Unsubscribe(Subscriber sub)
+    {
+        if (sub != null) {
+            subscriberList.remove(sub);
+        }
+    }
+
+    /**
+    *** Returns true if any subscriber is registered
+    *** @return True if any subscriber is registered
+    **/
+    public static boolean HasSubscribers()
+    {
+        return !subscriberList.isEmpty();
+    }
+
+    /**
+    *** Returns true if any registered subscriber is interested in the specified Device
+    *** @param acctID  The Account ID
+    *** @param devID   The Device ID
+    *** @return True if any subscriber is interested
+    **/
+    public static boolean IsSubscribed(String acctID, String devID)
+    {
+        for (Subscriber sub : subscriberList) {
+            if (sub.isSubscribed(acctID, devID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Publishes the specified inserted event to the local subscribers, and to the
+    *** configured bridge addresses
+    *** @param ev  The inserted event
+    **/
+    public static void Publish(EventData ev)
+    {
+        if (ev == null) {
+            return;
+        }
+        publishedCount.incrementAndGet();
+        EventBus._dispatch(ev);
+        EventBus._bridgeSend(ev);
+    }
+
+    /**
+    *** Dispatches the specified event to the interested local subscribers
+    **/
+    private static void _dispatch(EventData ev)
+    {
+        if (subscriberList.isEmpty()) {
+            return;
+        }
+        String acctID = ev.getAccountID();
+        String devID  = ev.getDeviceID();
+        for (Subscriber sub : subscriberList) {
+            try {
+                if (sub.isSubscribed(acctID, devID)) {
+                    sub.eventInserted(ev);
+                }
+            } catch (Throwable th) {
+                Print.logException("EventBus subscriber error", th);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // bridge sender
+
+    private static volatile long                bridgeSendVersion   = -1L;
+    private static volatile InetSocketAddress   bridgeSendAddrs[]   = null;
+    private static volatile DatagramSocket      bridgeSendSocket    = null;
+
+    /**
+    *** Gets the configured bridge destination addresses.<br>
+    *** The addresses are parsed (and resolved) only when the runtime configuration changes,
+    *** so that each published event does not re-read the configuration.
+    **/
+    private static InetSocketAddress[] _getBridgeSendAddresses()
+    {
+        long ver = RTConfig.getConfigVersion();
+        if (ver != bridgeSendVersion) {
+            // (concurrent reloads parse the same configuration)
+            String spec = RTConfig.getString(DBConfig.PROP_EventBus_bridge_send, "");
+            java.util.List<InetSocketAddress> list = new Vector<InetSocketAddress>();
+            for (String hp : StringTools.split(spec,',')) {
+                hp = hp.trim();
+                int p = hp.lastIndexOf(':');
+                int port = (p > 0)? StringTools.parseInt(hp.substring(p+1),0) : 0;
+                if (port <= 0) {
+                    if (!hp.equals("")) {
+                        Print.logError("Invalid EventBus bridge address: " + hp);
+                    }
+                    continue;
+                }
+                InetSocketAddress addr = new InetSocketAddress(hp.substring(0,p), port);
+                if (addr.isUnresolved()) {
+                    Print.logError("Unresolved EventBus bridge address: " + hp);
+                    continue;
+                }
+                list.add(addr);
+            }
+            bridgeSendAddrs   = list.toArray(new InetSocketAddress[list.size()]);
+            bridgeSendVersion = ver;
+        }
+        return bridgeSendAddrs;
+    }
+
+    /**
+    *** Gets the bridge send socket (created on first use)
+    **/
+    private static DatagramSocket _getBridgeSendSocket()
+        throws IOException
+    {
+        DatagramSocket sock = bridgeSendSocket;
+        if (sock == null) {
+            synchronized (EventBus.class) {
+                if (bridgeSendSocket == null) {
+                    bridgeSendSocket = new DatagramSocket();
+                }
+                sock = bridgeSendSocket;
+            }
+        }
+        return sock;
+    }
+
+    /**
+    *** Forwards the primary key of the specified event to the configured bridge addresses
+    **/
+    private static void _bridgeSend(EventData ev)
+    {
+        InetSocketAddress addrs[] = EventBus._getBridgeSendAddresses();
+        if (ListTools.isEmpty(addrs)) {
+            return;
+        }
+        StringBuffer sb = new StringBuffer();
+        sb.append(BRIDGE_MSG_EVENT);
+        sb.append(BRIDGE_SEPARATOR).append(ev.getAccountID());
+        sb.append(BRIDGE_SEPARATOR).append(ev.getDeviceID());
+        sb.append(BRIDGE_SEPARATOR).append(ev.getTimestamp());
+        sb.append(BRIDGE_SEPARATOR).append(ev.getStatusCode());
+        byte data[] = StringTools.getBytes(sb.toString());
+        try {
+            DatagramSocket sock = EventBus._getBridgeSendSocket();
+            for (InetSocketAddress addr : addrs) {
+                sock.send(new DatagramPacket(data, data.length, addr));
+                bridgeSentCount.incrementAndGet();
+            }
+        } catch (IOException ioe) {
+            // never fail the event insertion
+            Print.logWarn("EventBus bridge send error: " + ioe);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // bridge listener
+
+    private static Thread               bridgeListener          = null;
+
+    /**
+    *** Starts the bridge listener thread, if configured and not already started
+    **/
+    private static void _startBridgeListener()
+    {
+        synchronized (EventBus.class) {
+            if (bridgeListener != null) {
+                return;
+            }
+            String spec = RTConfig.getString(DBConfig.PROP_EventBus_bridge_listen, "").trim();
+            if (spec.equals("")) {
+                return;
+            }
+            int    p    = spec.lastIndexOf(':');
+            String bind = (p > 0)? spec.substring(0,p) : DFT_LISTEN_ADDRESS;
+            int    port = StringTools.parseInt((p >= 0)? spec.substring(p+1) : spec, 0);
+            if (port <= 0) {
+                Print.logError("Invalid EventBus bridge listen port: " + spec);
+                return;
+            }
+            final DatagramSocket sock;
+            try {
+                sock = new DatagramSocket(new InetSocketAddress(bind, port));
+            } catch (IOException ioe) {
+                Print.logError("Unable to start EventBus bridge listener ["+bind+":"+port+"]: " + ioe);
+                return;
+            }
+            Print.logInfo("EventBus bridge listening on " + bind + ":" + port);
+            bridgeListener = new Thread("EventBusBridge_" + port) {
+                public void run() {
+                    byte buf[] = new byte[BRIDGE_MAX_PACKET];
+                    for (;;) {
+                        try {
+                            DatagramPacket pkt = new DatagramPacket(buf, buf.length);
+                            sock.receive(pkt);
+                            EventBus._bridgeReceived(StringTools.toStringValue(pkt.getData(), 0, pkt.getLength()));
+                        } catch (Throwable th) {
+                            Print.logException("EventBus bridge receive error", th);
+                        }
+                    }
+                }
+            };
+            bridgeListener.setDaemon(true);
+            bridgeListener.start();
+        }
+    }
+
+    /**
+    *** Handles a received bridge message
+    **/
+    private static void _bridgeReceived(String msg)
+    {
+        String f[] = StringTools.split(msg, BRIDGE_SEPARATOR);
+        if ((f.length < 5) || !f[0].equals(BRIDGE_MSG_EVENT)) {
+            Print.logWarn("Invalid EventBus bridge message: " + StringTools.trim(msg));
+            return;
+        }
+        bridgeReceivedCount.incrementAndGet();
+        String acctID = f[1];
+        String devID  = f[2];
+        if (!EventBus.IsSubscribed(acctID, devID)) {
+            return;
+        }
+        long ts = StringTools.parseLong(f[3], 0L);
+        int  sc = StringTools.parseInt(f[4], StatusCodes.STATUS_NONE);
+        try {
+            EventData ev = EventData.getEventData(acctID, devID, ts, sc);
+            if (ev != null) {
+                EventBus._dispatch(ev);
+            }
+        } catch (DBException dbe) {
+            Print.logException("Error reading bridged EventData: " + acctID + "/" + devID, dbe);
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Paged (constant memory) EventData range cursor
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Paged EventData range cursor.<br>
+*** Iterates over the EventData records of a single Device within a time range, in
+*** ascending primary-key order, while holding at most one page of records in memory.
+*** Each page is read with a separate "keyset" select, which continues from the primary
+*** key of the last record of the previous page (ie. "WHERE (timestamp>T) OR
+*** (timestamp=T AND statusCode>S) ... ORDER BY timestamp,statusCode LIMIT N").  Since a
+*** result set is not held open between pages, other queries may be issued on the same
+*** DB connection while iterating (ie. while formatting each record), and the cursor
+*** works with any DBProvider.<br>
+*** If the Device has events in the EventData archive (see "EventArchive"), each archived
+*** month within the range is returned first, one month per page (merged with any live
+*** events within that month), followed by the pages of the EventData table after the
+*** last archived month.<br>
+*** Each call to <code>iterator()</code> restarts from the beginning of the range.<br>
+*** A DBException while reading a page is not swallowed (which would silently truncate
+*** the range): <code>hasNext()</code> throws a <code>CursorException</code> wrapping the
+*** DBException, which is also available from <code>getError()</code>.
+**/
+
+public class EventDataCursor
+    implements Iterable<EventData>
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final int    DFT_PAGE_SIZE           = 500;
+
+    /**
+    *** Gets the configured number of records read per page
+    *** @return The page size
+    **/
+    public static int GetPageSize()
+    {
+        int ps = RTConfig.getInt(DBConfig.PROP_EventData_cursorPageSize, DFT_PAGE_SIZE);
+        return (ps > 0)? ps : DFT_PAGE_SIZE;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Unchecked exception thrown by the cursor iterator when a page cannot be read
+    **/
+    public static class CursorException
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+        public CursorException(String msg, DBException cause) {
+            super(msg, cause);
+        }
+        public DBException getDBException() {
+            return (DBException)this.getCause();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private String      accountID       = null;
+    private String      deviceID        = null;
+    private long        timeStart       = -1L;
+    private long        timeEnd         = -1L;
+    private int         statusCodes[]   = null;
+    private boolean     validGPS        = false;
+    private long        limit           = -1L;
+    private int         pageSize        = DFT_PAGE_SIZE;
+
+    private String      pageKeys[]      = null;
+
+    private Device      device          = null;
+
+    private volatile DBException error  = null;
+
+    /**
+    *** Constructor.  The returned events will have their Device (and Account) set to
+    *** the specified Device.
+    *** @param dev          The Device
+    *** @param timeStart    The event start time (-1 for no start time)
+    *** @param timeEnd      The event end time (-1 for no end time)
+    *** @param statusCodes  The list of status-codes (null for all status codes)
+    *** @param validGPS     True to read only events with valid GPS locations
+    *** @param limit        The maximum number of events to return (&lt;=0 for no limit)
+    **/
+    public EventDataCursor(Device dev,
+        long timeStart, long timeEnd,
+        int statusCodes[],
+        boolean validGPS,
+        long limit)
+    {
+        this(dev.getAccountID(), dev.getDeviceID(), timeStart, timeEnd, statusCodes, validGPS, limit);
+        this.device = dev;
+    }
+
+    /**
+    *** Constructor
+    *** @param acctID       The Account ID
+    *** @param devID        The Device ID
+    *** @param timeStart    The event start time (-1 for no start time)
+    *** @param timeEnd      The event end time (-1 for no end time)
+    *** @param statusCodes  The list of status-codes (null for all status codes)
+    *** @param validGPS     True to read only events with valid GPS locations
+    *** @param limit        The maximum number of events to return (&lt;=0 for no limit)
+    **/
+    public EventDataCursor(String acctID, String devID,
+        long timeStart, long timeEnd,
+        int statusCodes[],
+        boolean validGPS,
+        long limit)
+    {
+        this.accountID   = StringTools.trim(acctID);
+        this.deviceID    = StringTools.trim(devID);
+        this.timeStart   = timeStart;
+        this.timeEnd     = timeEnd;
+        this.statusCodes = statusCodes;
+        this.validGPS    = validGPS;
+        this.limit       = limit;
+        this.pageSize    = EventDataCursor.GetPageSize();
+
+        /* keyset fields (primary key, less accountID/deviceID) */
+        java.util.List<String> keys = new Vector<String>();
+        DBField keyFlds[] = EventData.getFactory().getKeyFields();
+        for (DBField kf : keyFlds) {
+            String kn = kf.getName();
+            if (!kn.equals(EventData.FLD_accountID) && !kn.equals(EventData.FLD_deviceID)) {
+                keys.add(kn);
+            }
+        }
+        this.pageKeys = keys.toArray(new String[keys.size()]);
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the Account ID
+    **/
+    public String getAccountID()
+    {
+        return this.accountID;
+    }
+
+    /**
+    *** Gets the Device ID
+    **/
+    public String getDeviceID()
+    {
+        return this.deviceID;
+    }
+
+    /**
+    *** Sets the number of records read per page
+    *** @param pageSize  The page size
+    **/
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = (pageSize > 0)? pageSize : DFT_PAGE_SIZE;
+    }
+
+    /**
+    *** Gets the number of records read per page
+    *** @return The page size
+    **/
+    public int getPageSize()
+    {
+        return this.pageSize;
+    }
+
+    /**
+    *** Gets the DBException which ended the most recent iteration
+    *** @return The DBException, or null if no error occurred
+    **/
+    public DBException getError()
+    {
+        return this.error;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reads the events of the specified archived month within this range, merged with
+    *** the live events within the same month
+    *** @param monthStart  The archived month start time
+    *** @param max         The maximum number of records to return
+    *** @return The month events, in ascending primary-key order
+    **/
+    private EventData[] _readArchivedMonth(long monthStart, long max)
+        throws DBException
+    {
+        long monthEnd = EventArchive.GetMonthEnd(monthStart);
+        long start    = (this.timeStart >= 0L)? Math.max(this.timeStart, monthStart) : monthStart;
+        long end      = (this.timeEnd   >= 0L)? Math.min(this.timeEnd  , monthEnd  ) : monthEnd;
+        EventData arch[] = EventArchive.getArchivedEvents(
+            this.accountID, this.deviceID,
+            start, end,
+            this.statusCodes,
+            this.validGPS);
+        EventData live[] = EventData.getLiveRangeEvents(
+            this.accountID, this.deviceID,
+            start, end,
+            this.statusCodes,
+            this.validGPS,
+            EventData.LimitType.FIRST, max, true/*ascending*/,
+            null/*addtnlSelect*/,
+            null/*rcdHandler*/);
+        java.util.List<EventData> evList = EventData.mergeArchivedEvents(arch, live);
+        if (evList.size() > max) {
+            evList = evList.subList(0, (int)max);
+        }
+        return evList.toArray(new EventData[evList.size()]);
+    }
+
+    /**
+    *** Creates the select for the page following the specified event
+    *** @param startTime  The live range start time (following any archived months)
+    *** @param lastEv     The last event of the previous page (null for the first page)
+    *** @param max        The maximum number of records to read
+    *** @return The page DBSelect
+    **/
+    private DBSelect<EventData> _createPageSelect(long startTime, EventData lastEv, long max)
+    {
+        DBFactory<EventData> dbFact = EventData.getFactory();
+
+        /* keyset continuation */
+        // ( (timestamp>T) OR ((timestamp=T) AND (statusCode>S)) [OR ...] )
+        String keySel = null;
+        if (lastEv != null) {
+            DBWhere dwh = new DBWhere(dbFact);
+            String orSel[] = new String[this.pageKeys.length];
+            for (int k = 0; k < this.pageKeys.length; k++) {
+                String andSel[] = new String[k + 1];
+                for (int e = 0; e < k; e++) {
+                    andSel[e] = dwh.EQ(this.pageKeys[e], lastEv.getFieldValue(this.pageKeys[e]));
+                }
+                andSel[k] = dwh.GT(this.pageKeys[k], lastEv.getFieldValue(this.pageKeys[k]));
+                orSel[k]  = (andSel.length > 1)? dwh.AND(andSel) : andSel[0];
+            }
+            keySel = (orSel.length > 1)? dwh.OR(orSel) : orSel[0];
+        }
+
+        /* select */
+        DBSelect<EventData> dsel = new DBSelect<EventData>(dbFact);
+        dsel.setWhere(EventData.getWhereClause(
+            this.accountID, this.deviceID,
+            startTime, this.timeEnd,
+            this.statusCodes,
+            this.validGPS,
+            keySel));
+        dsel.setOrderByFields(this.pageKeys);
+        dsel.setOrderAscending(true);
+        dsel.setLimit(max);
+        dsel.setShardIndex(EventData.getShardIndex(this.accountID, this.deviceID));
+        return dsel;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a new iterator over the events in this range.<br>
+    *** Note: a DBException while reading a page ends the iteration, and is thrown from
+    *** <code>hasNext()</code> (or <code>next()</code>) wrapped in a <code>CursorException</code>.
+    *** @return The event iterator
+    **/
+    public Iterator<EventData> iterator()
+    {
+        this.error = null;
+        final long months[] = EventArchive.getArchivedMonths(this.accountID, this.deviceID, this.timeStart, this.timeEnd);
+        return new Iterator<EventData>() {
+            private EventData page[]    = null;
+            private int       pageNdx   = 0;
+            private int       monthNdx  = 0;
+            private long      liveStart = (months.length > 0)?
+                (EventArchive.GetMonthEnd(months[months.length - 1]) + 1L) : EventDataCursor.this.timeStart;
+            private EventData lastEv    = null;
+            private long      count     = 0L;
+            private boolean   endOfData = false;
+            public boolean hasNext() {
+                while ((this.page == null) || (this.pageNdx >= this.page.length)) {
+                    if (this.endOfData) {
+                        return false;
+                    }
+                    this._readPage();
+                }
+                return true;
+            }
+            private void _readPage() {
+                this.page    = null;
+                this.pageNdx = 0;
+                long max = EventDataCursor.this.pageSize;
+                if (EventDataCursor.this.limit > 0L) {
+                    max = Math.min(max, EventDataCursor.this.limit - this.count);
+                }
+                if (max <= 0L) {
+                    this.endOfData = true;
+                    return;
+                }
+                try {
+                    if (this.monthNdx < months.length) {
+                        // next archived month (may be empty)
+                        long archMax = (EventDataCursor.this.limit > 0L)? (EventDataCursor.this.limit - this.count) : Long.MAX_VALUE;
+                        this.page = EventDataCursor.this._readArchivedMonth(months[this.monthNdx++], archMax);
+                        return;
+                    }
+                    if ((EventDataCursor.this.timeEnd >= 0L) && (this.liveStart > EventDataCursor.this.timeEnd)) {
+                        this.endOfData = true;
+                        return;
+                    }
+                    DBSelect<EventData> dsel = EventDataCursor.this._createPageSelect(this.liveStart, this.lastLive(), max);
+                    this.page = EventData.getSelectedEvents(dsel, null); // null if no records
+                } catch (DBException dbe) {
+                    this.endOfData = true;
+                    EventDataCursor.this.error = dbe;
+                    throw new CursorException("Error reading EventData page: " +
+                        EventDataCursor.this.accountID + "/" + EventDataCursor.this.deviceID, dbe);
+                }
+                if ((this.page == null) || (this.page.length < max)) {
+                    this.endOfData = true;
+                }
+            }
+            private EventData lastLive() {
+                // keyset continuation within the live pages only
+                return ((this.lastEv != null) && (this.lastEv.getTimestamp() >= this.liveStart))? this.lastEv : null;
+            }
+            public EventData next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                EventData ev = this.page[this.pageNdx];
+                this.page[this.pageNdx++] = null; // release reference
+                if (EventDataCursor.this.device != null) {
+                    ev.setDevice(EventDataCursor.this.device);
+                }
+                this.lastEv = ev;
+                this.count++;
+                return ev;
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
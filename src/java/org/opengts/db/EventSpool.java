@@ -0,0 +1,1053 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  DCS write-ahead EventData spool
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.tables.*;
+
+/**
+*** DCS write-ahead EventData spool.<br>
+*** When started by a DCS (see <code>Start</code>), <code>Device.insertEventData</code>
+*** appends each parsed EventData record to an append-only log of memory-mapped segment
+*** files and returns as soon as the record is on local disk, before the device is
+*** acknowledged.  A background drainer thread reads the log in order, and inserts the
+*** records in batches through the per-Device event owner lanes (see
+*** <code>DeviceEventOwner</code>), so that records for a Device are inserted in the order
+*** received.  If the database is unavailable the drainer retries the remaining records
+*** of the batch until they are inserted.  If the records of a Device still cannot be
+*** inserted after "EventSpool.maxRetries" attempts while the Device itself can be read
+*** from the database (ie. a record which is rejected), they are moved to the
+*** "deadletter.seg" file in the spool directory (same record format as a segment file).<br>
+*** Appended records are forced to disk by group commit: the first appending thread which
+*** finds no force in progress forces all records appended so far, and the other appending
+*** threads wait for that force instead of forcing the segment themselves.<br>
+*** The checkpoint file contains the position before which all records have been drained,
+*** and the position of the last inserted record of each Device with records after that
+*** position.  On restart, segments left by a previous process are scanned (a partially
+*** written record at the end of a segment is discarded) and drained from the checkpoint,
+*** skipping the records already inserted for each Device, so that only the records in
+*** progress at the time of a crash may be inserted twice.  Delivery is at-least-once: a
+*** record inserted twice also runs the Device rules, notifications, and Device "last"
+*** field updates of <code>Device.insertEventData</code> twice.
+**/
+
+public class EventSpool
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String SEGMENT_PREFIX          = "spool_";
+    private static final String SEGMENT_EXTN            = ".seg";
+    private static final String CHECKPOINT_FILE         = "checkpoint";
+    private static final String LOCK_FILE               = "spool.lock";
+    private static final String DEADLETTER_FILE         = "deadletter" + SEGMENT_EXTN;
+
+    private static final int    RECORD_HEADER_SIZE      = 8; // length, CRC32
+
+    private static final long   DFT_SEGMENT_SIZE_MB     = 64L;
+    private static final int    DFT_BATCH_SIZE          = 200;
+    private static final int    DFT_MAX_RETRIES         = 720; // 1 hour
+
+    private static final long   DRAIN_POLL_MS           = 250L;
+    private static final long   RETRY_INTERVAL_MS       = 5000L;
+    private static final long   RATE_INTERVAL_MS        = 10000L;
+
+    private static final byte   TYPE_LONG               = 'J';
+    private static final byte   TYPE_BOOLEAN            = 'Z';
+    private static final byte   TYPE_DOUBLE             = 'D';
+    private static final byte   TYPE_STRING             = 'S';
+    private static final byte   TYPE_BYTES              = 'B';
+    private static final byte   TYPE_OTHER              = 'T';
+
+    // ------------------------------------------------------------------------
+
+    private static volatile EventSpool spoolInstance    = null;
+
+    /**
+    *** Returns true if the spool has been configured ("EventSpool.dir" is specified)
+    *** @return True if the spool is configured
+    **/
+    public static boolean IsEnabled()
+    {
+        return !StringTools.isBlank(RTConfig.getString(DBConfig.PROP_EventSpool_dir, ""));
+    }
+
+    /**
+    *** Starts the spool for the named DCS, if the spool is configured.  The spool files
+    *** are kept in the "&lt;EventSpool.dir&gt;/&lt;name&gt;" directory, and any events
+    *** left in the spool by a previous process are drained.  Only the process which has
+    *** started the spool appends events to it.
+    *** @param name  The DCS name (ie. "Constants.DEVICE_CODE")
+    *** @return The started spool, or null if the spool is not configured or could not
+    ***         be started (events are then inserted directly)
+    **/
+    public static synchronized EventSpool Start(String name)
+    {
+        if (spoolInstance != null) {
+            return spoolInstance;
+        } else
+        if (!EventSpool.IsEnabled()) {
+            return null;
+        }
+        File dir = new File(RTConfig.getString(DBConfig.PROP_EventSpool_dir,""), StringTools.trim(name));
+        try {
+            EventSpool spool = new EventSpool(dir);
+            spool._startDrainer();
+            spoolInstance = spool;
+            Print.logInfo("EventData spool started: " + dir + " [pending " + spool.getPendingCount() + " events]");
+            return spool;
+        } catch (IOException ioe) {
+            Print.logException("Unable to start EventData spool: " + dir, ioe);
+            return null;
+        }
+    }
+
+    /**
+    *** Gets the started spool
+    *** @return The spool, or null if the spool has not been started
+    **/
+    public static EventSpool GetInstance()
+    {
+        return spoolInstance;
+    }
+
+    /**
+    *** Returns true if the current thread is the spool drainer thread
+    *** @return True if called from the drainer thread
+    **/
+    public static boolean IsDrainerThread()
+    {
+        EventSpool spool = spoolInstance;
+        return (spool != null) && (Thread.currentThread() == spool.drainer);
+    }
+
+    // ------------------------------------------------------------------------
+
+    static {
+        Metrics.RegisterGauge("spool.pendingEvents", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.getPendingCount() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.pendingBytes", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.getPendingBytes() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.segments", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.getSegmentCount() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.appended", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.appendCount.get() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.drained", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.drainCount.get() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.deadLettered", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.deadLetterCount.get() : 0L; }
+        });
+        Metrics.RegisterGauge("spool.drainPerSec", new Metrics.Gauge() {
+            public long getValue() { EventSpool s = spoolInstance; return (s != null)? s.getDrainRate() : 0L; }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Memory-mapped spool segment file
+    **/
+    private static class Segment
+    {
+        public long             seq         = 0L;
+        public File             file        = null;
+        public MappedByteBuffer buffer      = null;
+        public int              size        = 0;
+        public volatile int     writePos    = 0;
+        public volatile boolean sealed      = false;
+        public int              recordCount = 0;     // records found when recovered
+        public Segment(File dir, long seq, int size, boolean create) throws IOException {
+            this.seq  = seq;
+            this.file = new File(dir, SEGMENT_PREFIX + StringTools.format(seq,"0000000000000000") + SEGMENT_EXTN);
+            RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            try {
+                if (create) {
+                    raf.setLength((long)size);
+                }
+                this.size   = (int)Math.min(raf.length(), (long)Integer.MAX_VALUE);
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, (long)this.size);
+            } finally {
+                raf.close(); // mapping remains valid
+            }
+        }
+        public int remaining() {
+            return this.size - this.writePos;
+        }
+        /* scans a recovered segment for the end of the last complete record */
+        public void recover() {
+            int pos = 0;
+            for (;;) {
+                byte payload[] = EventSpool._readRecord(this.buffer, pos, this.size);
+                if (payload == null) {
+                    break;
+                }
+                pos += RECORD_HEADER_SIZE + payload.length;
+                this.recordCount++;
+            }
+            this.writePos = pos;
+            this.sealed   = true;
+        }
+    }
+
+    /**
+    *** Reads the record at the specified segment position
+    *** @return The record payload, or null if no complete record exists at the position
+    **/
+    private static byte[] _readRecord(ByteBuffer buf, int pos, int limit)
+    {
+        if ((pos + RECORD_HEADER_SIZE) > limit) {
+            return null;
+        }
+        int len = buf.getInt(pos);
+        if ((len <= 0) || ((pos + RECORD_HEADER_SIZE + len) > limit)) {
+            return null;
+        }
+        int crc = buf.getInt(pos + 4);
+        byte payload[] = new byte[len];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(pos + RECORD_HEADER_SIZE);
+        dup.get(payload);
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return (crc == (int)crc32.getValue())? payload : null;
+    }
+
+    /**
+    *** Returns the spool offset of the specified segment position
+    **/
+    private static long _offset(long seq, int pos)
+    {
+        return (seq << 32) | ((long)pos & 0xFFFFFFFFL);
+    }
+
+    /**
+    *** Spooled record read by the drainer
+    **/
+    /* package */ static class Spooled
+    {
+        public String       accountID   = null;
+        public String       deviceID    = null;
+        public EventData    event       = null;
+        public long         offset      = 0L;   // see "_offset"
+        public byte         payload[]   = null;
+        public Spooled(String acctID, String devID, EventData ev) {
+            this.accountID  = acctID;
+            this.deviceID   = devID;
+            this.event      = ev;
+        }
+        public String getKey() {
+            return this.accountID + "/" + this.deviceID;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private File                    spoolDir        = null;
+    private FileLock                dirLock         = null;
+    private int                     segmentSize     = 0;
+    private int                     batchSize       = DFT_BATCH_SIZE;
+    private int                     maxRetries      = DFT_MAX_RETRIES;
+    private boolean                 syncWrites      = true;
+
+    private LinkedList<Segment>     segments        = new LinkedList<Segment>(); // guarded by "this"
+    private Segment                 writeSeg        = null;
+    private Segment                 readSeg         = null;
+    private int                     readPos         = 0;
+    private Map<String,Long>        deviceCkpts     = new HashMap<String,Long>(); // guarded by "this"
+    private long                    appendSeq       = 0L;                         // guarded by "this"
+
+    private final Object            syncLock        = new Object();
+    private long                    syncedSeq       = 0L;                         // guarded by "syncLock"
+    private boolean                 syncing         = false;                      // guarded by "syncLock"
+
+    private AtomicLong              appendCount     = new AtomicLong(0L);
+    private AtomicLong              drainCount      = new AtomicLong(0L);
+    private AtomicLong              deadLetterCount = new AtomicLong(0L);
+    private AtomicLong              pendingCount    = new AtomicLong(0L);
+    private volatile long           drainRate       = 0L;
+
+    private Thread                  drainer         = null;
+
+    /**
+    *** Constructor: opens/recovers the spool in the specified directory
+    **/
+    /* package */ EventSpool(File dir)
+        throws IOException
+    {
+        this.spoolDir    = dir;
+        this.segmentSize = (int)Math.min(RTConfig.getLong(DBConfig.PROP_EventSpool_segmentSizeMB,DFT_SEGMENT_SIZE_MB), 1024L) * 1024 * 1024;
+        this.batchSize   = RTConfig.getInt(DBConfig.PROP_EventSpool_batchSize, DFT_BATCH_SIZE);
+        this.maxRetries  = RTConfig.getInt(DBConfig.PROP_EventSpool_maxRetries, DFT_MAX_RETRIES);
+        this.syncWrites  = RTConfig.getBoolean(DBConfig.PROP_EventSpool_sync, true);
+        if (this.segmentSize <= 0) { this.segmentSize = (int)DFT_SEGMENT_SIZE_MB * 1024 * 1024; }
+        if (this.batchSize   <= 0) { this.batchSize   = DFT_BATCH_SIZE; }
+
+        /* lock directory (one process per spool directory) */
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create spool directory");
+        }
+        FileChannel lockChannel = new RandomAccessFile(new File(dir,LOCK_FILE), "rw").getChannel();
+        this.dirLock = lockChannel.tryLock();
+        if (this.dirLock == null) {
+            lockChannel.close();
+            throw new IOException("Spool directory in use by another process");
+        }
+
+        /* checkpoint */
+        long ckSeq = 0L;
+        int  ckPos = 0;
+        File ckFile = new File(dir, CHECKPOINT_FILE);
+        if (ckFile.isFile()) {
+            // "<seq> <pos>", followed by "<account>/<device> <offset>" for each Device
+            String lines[] = StringTools.split(StringTools.toStringValue(FileTools.readFile(ckFile)).trim(), '\n');
+            for (int i = 0; i < lines.length; i++) {
+                String ck[] = StringTools.split(lines[i].trim(), ' ');
+                if (ck.length < 2) {
+                    continue;
+                } else
+                if (i == 0) {
+                    ckSeq = StringTools.parseLong(ck[0], 0L);
+                    ckPos = StringTools.parseInt(ck[1], 0);
+                } else {
+                    this.deviceCkpts.put(ck[0], new Long(StringTools.parseLong(ck[1], 0L)));
+                }
+            }
+        }
+
+        /* recover existing segments */
+        File files[] = dir.listFiles();
+        SortedMap<Long,File> segFiles = new TreeMap<Long,File>();
+        if (files != null) {
+            for (File f : files) {
+                String n = f.getName();
+                if (n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_EXTN)) {
+                    String s = n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_EXTN.length());
+                    segFiles.put(new Long(StringTools.parseLong(s,-1L)), f);
+                }
+            }
+        }
+        long nextSeq = ckSeq + 1L;
+        for (Long seq : segFiles.keySet()) {
+            if ((seq.longValue() < 0L) || (seq.longValue() < ckSeq)) {
+                // already drained
+                segFiles.get(seq).delete();
+                continue;
+            }
+            Segment seg = new Segment(dir, seq.longValue(), 0, false);
+            seg.recover();
+            long pending = seg.recordCount;
+            if (seq.longValue() == ckSeq) {
+                // count records after the checkpoint
+                pending = 0L;
+                for (int pos = ckPos; pos < seg.writePos;) {
+                    byte p[] = EventSpool._readRecord(seg.buffer, pos, seg.writePos);
+                    if (p == null) { break; }
+                    pos += RECORD_HEADER_SIZE + p.length;
+                    pending++;
+                }
+            }
+            this.pendingCount.addAndGet(pending);
+            this.segments.add(seg);
+            nextSeq = Math.max(nextSeq, seq.longValue() + 1L);
+        }
+
+        /* new write segment */
+        this.writeSeg = new Segment(dir, nextSeq, this.segmentSize, true);
+        this.segments.add(this.writeSeg);
+
+        /* reader starts at the checkpoint */
+        this.readSeg = this.segments.getFirst();
+        this.readPos = (this.readSeg.seq == ckSeq)? ckPos : 0;
+
+        /* flush the mapped write segment on shutdown */
+        Runtime.getRuntime().addShutdownHook(new Thread("EventSpool_flush") {
+            public void run() {
+                synchronized (EventSpool.this) {
+                    EventSpool.this.writeSeg.buffer.force();
+                }
+            }
+        });
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the spool directory
+    *** @return The spool directory
+    **/
+    public File getDirectory()
+    {
+        return this.spoolDir;
+    }
+
+    /**
+    *** Gets the number of spooled events not yet inserted into the EventData table
+    *** @return The number of pending events
+    **/
+    public long getPendingCount()
+    {
+        return this.pendingCount.get();
+    }
+
+    /**
+    *** Gets the number of spooled bytes not yet inserted into the EventData table
+    *** @return The number of pending bytes
+    **/
+    public synchronized long getPendingBytes()
+    {
+        long bytes = 0L;
+        for (Segment seg : this.segments) {
+            if (seg == this.readSeg) {
+                bytes += seg.writePos - this.readPos;
+            } else
+            if (seg.seq > this.readSeg.seq) {
+                bytes += seg.writePos;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+    *** Gets the number of spool segment files
+    *** @return The number of segment files
+    **/
+    public synchronized int getSegmentCount()
+    {
+        return this.segments.size();
+    }
+
+    /**
+    *** Gets the recent drain rate
+    *** @return The number of events drained per second (over the last 10 seconds)
+    **/
+    public long getDrainRate()
+    {
+        return this.drainRate;
+    }
+
+    /**
+    *** Releases the spool directory lock (the spool must not be used afterwards)
+    **/
+    /* package */ void _close()
+        throws IOException
+    {
+        synchronized (this) {
+            this.writeSeg.buffer.force();
+        }
+        if (this.dirLock != null) {
+            this.dirLock.release();
+            this.dirLock.channel().close();
+            this.dirLock = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Append
+
+    /**
+    *** Appends the specified event to the spool.  The event is copied, and may be
+    *** modified by the caller after this method returns.  If "EventSpool.sync" is true,
+    *** this method returns after the event has been forced to disk (see "_syncTo").
+    *** @param evdb  The EventData record to spool
+    *** @return True if the event was written to the spool, false if the spool could not
+    ***         be written (the caller should insert the event directly)
+    **/
+    public boolean append(EventData evdb)
+    {
+        long metricsNS = Metrics.StartTimer();
+        byte payload[];
+        try {
+            payload = EventSpool._encodeEvent(evdb);
+        } catch (IOException ioe) {
+            Print.logError("Unable to encode spooled event: " + ioe);
+            return false;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        int recLen = RECORD_HEADER_SIZE + payload.length;
+        long appendNum;
+        synchronized (this) {
+
+            /* roll to a new segment */
+            if (this.writeSeg.remaining() < recLen) {
+                try {
+                    Segment seg = new Segment(this.spoolDir, this.writeSeg.seq + 1L, Math.max(this.segmentSize,recLen), true);
+                    this.writeSeg.buffer.force();
+                    this.writeSeg.sealed = true;
+                    this.writeSeg = seg;
+                    this.segments.add(seg);
+                } catch (IOException ioe) {
+                    Print.logError("Unable to create spool segment: " + ioe);
+                    return false;
+                }
+            }
+
+            /* write record (length last, so that a partial record is not read) */
+            int pos = this.writeSeg.writePos;
+            MappedByteBuffer buf = this.writeSeg.buffer;
+            buf.putInt(pos + 4, (int)crc32.getValue());
+            ByteBuffer dup = buf.duplicate();
+            dup.position(pos + RECORD_HEADER_SIZE);
+            dup.put(payload);
+            buf.putInt(pos, payload.length);
+            this.writeSeg.writePos = pos + recLen;
+            appendNum = ++this.appendSeq;
+            this.appendCount.incrementAndGet();
+            this.pendingCount.incrementAndGet();
+            this.notifyAll();
+
+        }
+        if (this.syncWrites) {
+            this._syncTo(appendNum);
+        }
+        Metrics.RecordElapsed("spool.append", metricsNS);
+        return true;
+    }
+
+    /**
+    *** Group commit: returns once the specified appended record has been forced to disk.
+    *** If no force is in progress, the current segment is forced (covering all records
+    *** appended so far), otherwise this thread waits for the force in progress, and then
+    *** checks again.  (Segments are forced when sealed, so only the current write segment
+    *** may contain records which have not been forced)
+    *** @param appendNum  The append sequence number of the record
+    **/
+    private void _syncTo(long appendNum)
+    {
+        for (;;) {
+            synchronized (this.syncLock) {
+                if (this.syncedSeq >= appendNum) {
+                    return;
+                } else
+                if (this.syncing) {
+                    try { this.syncLock.wait(); } catch (InterruptedException ie) { /*ignore*/ }
+                    continue;
+                }
+                this.syncing = true;
+            }
+            MappedByteBuffer buf;
+            long forcedSeq;
+            synchronized (this) {
+                buf       = this.writeSeg.buffer;
+                forcedSeq = this.appendSeq;
+            }
+            try {
+                buf.force();
+            } finally {
+                synchronized (this.syncLock) {
+                    this.syncing = false;
+                    if (forcedSeq > this.syncedSeq) {
+                        this.syncedSeq = forcedSeq;
+                    }
+                    this.syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+    *** Encodes the specified event
+    **/
+    private static byte[] _encodeEvent(EventData evdb)
+        throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bos);
+        _writeString(out, evdb.getAccountID());
+        _writeString(out, evdb.getDeviceID());
+        out.writeLong(evdb.getTimestamp());
+        out.writeInt(evdb.getStatusCode());
+        for (DBField fld : EventData.getFactory().getFields()) {
+            if (fld.isPrimaryKey()) {
+                continue; // written above
+            }
+            String name = fld.getName();
+            Object val  = evdb.getFieldValue(name);
+            if (val == null) {
+                continue;
+            }
+            _writeString(out, name);
+            if (val instanceof Boolean) {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean(((Boolean)val).booleanValue());
+            } else
+            if ((val instanceof Long) || (val instanceof Integer) || (val instanceof Short) || (val instanceof Byte)) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(((Number)val).longValue());
+            } else
+            if ((val instanceof Double) || (val instanceof Float)) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(((Number)val).doubleValue());
+            } else
+            if (val instanceof String) {
+                out.writeByte(TYPE_STRING);
+                _writeString(out, (String)val);
+            } else
+            if (val instanceof byte[]) {
+                out.writeByte(TYPE_BYTES);
+                out.writeInt(((byte[])val).length);
+                out.write((byte[])val);
+            } else {
+                out.writeByte(TYPE_OTHER);
+                _writeString(out, val.toString());
+            }
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+    *** Decodes the specified event
+    **/
+    private static Spooled _decodeEvent(byte payload[])
+        throws IOException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String acctID = _readString(in);
+        String devID  = _readString(in);
+        long   ts     = in.readLong();
+        int    sc     = in.readInt();
+        EventData evdb = new EventData.Key(acctID, devID, ts, sc).getDBRecord();
+        while (in.available() > 0) {
+            String name = _readString(in);
+            byte   type = in.readByte();
+            Object val  = null;
+            switch (type) {
+                case TYPE_BOOLEAN: val = new Boolean(in.readBoolean()); break;
+                case TYPE_LONG   : val = new Long(in.readLong());       break;
+                case TYPE_DOUBLE : val = new Double(in.readDouble());   break;
+                case TYPE_STRING : val = _readString(in);               break;
+                case TYPE_OTHER  : val = _readString(in);               break;
+                case TYPE_BYTES  : {
+                    byte b[] = new byte[in.readInt()];
+                    in.readFully(b);
+                    val = b;
+                } break;
+                default: throw new IOException("Invalid field type: " + type);
+            }
+            DBField fld = fact.getField(name);
+            if (fld == null) {
+                // field no longer exists in EventData
+                continue;
+            }
+            Class<?> tc = fld.getTypeClass();
+            if (type == TYPE_OTHER) {
+                val = fld.parseStringValue((String)val);
+            } else
+            if (val instanceof Long) {
+                long v = ((Long)val).longValue();
+                if ((tc == Integer.TYPE) || (tc == Integer.class)) { val = new Integer((int)v);   } else
+                if ((tc == Short.TYPE  ) || (tc == Short.class  )) { val = new Short((short)v);   } else
+                if ((tc == Byte.TYPE   ) || (tc == Byte.class   )) { val = new Byte((byte)v);     }
+            } else
+            if (val instanceof Double) {
+                if ((tc == Float.TYPE) || (tc == Float.class)) { val = new Float(((Double)val).floatValue()); }
+            }
+            evdb.setFieldValue(name, val);
+        }
+        return new Spooled(acctID, devID, evdb);
+    }
+
+    private static void _writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        byte b[] = StringTools.getBytes(StringTools.trim(s));
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String _readString(DataInputStream in)
+        throws IOException
+    {
+        byte b[] = new byte[in.readInt()];
+        in.readFully(b);
+        return StringTools.toStringValue(b);
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Drain
+
+    /**
+    *** Starts the drainer thread
+    **/
+    private void _startDrainer()
+    {
+        this.drainer = new Thread(new Runnable() {
+            public void run() {
+                EventSpool.this._drainLoop();
+            }
+        }, "EventSpool_drain");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+    *** Drainer thread main loop
+    **/
+    private void _drainLoop()
+    {
+        long rateStartMS    = System.currentTimeMillis();
+        long rateStartCount = 0L;
+        for (;;) {
+            try {
+                java.util.List<Spooled> batch = this._readBatch();
+                if (!batch.isEmpty()) {
+                    long metricsNS = Metrics.StartTimer();
+                    this._insertBatch(batch); // checkpoints inserted records
+                    this.drainCount.addAndGet(batch.size());
+                    this.pendingCount.addAndGet(-batch.size());
+                    Metrics.RecordElapsed("spool.drainBatch", metricsNS);
+                } else {
+                    synchronized (this) {
+                        if (this._atEnd()) {
+                            this.wait(DRAIN_POLL_MS);
+                        }
+                    }
+                }
+            } catch (InterruptedException ie) {
+                break;
+            } catch (Throwable th) {
+                Print.logException("EventData spool drain error", th);
+                try { Thread.sleep(RETRY_INTERVAL_MS); } catch (InterruptedException ie) { break; }
+            }
+            long nowMS = System.currentTimeMillis();
+            if ((nowMS - rateStartMS) >= RATE_INTERVAL_MS) {
+                long count = this.drainCount.get();
+                this.drainRate = ((count - rateStartCount) * 1000L) / (nowMS - rateStartMS);
+                rateStartMS    = nowMS;
+                rateStartCount = count;
+            }
+        }
+    }
+
+    /**
+    *** Returns true if the reader has read all records currently in the spool
+    **/
+    private synchronized boolean _atEnd()
+    {
+        return (this.readPos >= this.readSeg.writePos) && (this.readSeg == this.writeSeg);
+    }
+
+    /**
+    *** Reads the next batch of records (does not advance the checkpoint).  Records which
+    *** were already inserted for their Device (according to the checkpoint) are skipped.
+    **/
+    /* package */ java.util.List<Spooled> _readBatch()
+        throws IOException
+    {
+        java.util.List<Spooled> batch = new Vector<Spooled>();
+        synchronized (this) {
+            while (batch.size() < this.batchSize) {
+                if (this.readPos < this.readSeg.writePos) {
+                    byte payload[] = EventSpool._readRecord(this.readSeg.buffer, this.readPos, this.readSeg.writePos);
+                    if (payload == null) {
+                        // not expected (recovered segments end at the last valid record)
+                        Print.logError("Invalid spool record: " + this.readSeg.file + " @" + this.readPos);
+                        this.readPos = this.readSeg.writePos;
+                        continue;
+                    }
+                    long offset = EventSpool._offset(this.readSeg.seq, this.readPos);
+                    this.readPos += RECORD_HEADER_SIZE + payload.length;
+                    try {
+                        Spooled sp = EventSpool._decodeEvent(payload);
+                        Long devCk = this.deviceCkpts.get(sp.getKey());
+                        if ((devCk != null) && (offset <= devCk.longValue())) {
+                            // already inserted before restart
+                            this.pendingCount.decrementAndGet();
+                            continue;
+                        }
+                        sp.offset  = offset;
+                        sp.payload = payload;
+                        batch.add(sp);
+                    } catch (IOException ioe) {
+                        Print.logError("Invalid spooled event: " + ioe);
+                        this.pendingCount.decrementAndGet();
+                    }
+                } else
+                if (this.readSeg.sealed) {
+                    // move to the next segment
+                    int ndx = this.segments.indexOf(this.readSeg);
+                    this.readSeg = this.segments.get(ndx + 1);
+                    this.readPos = 0;
+                } else {
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+    *** Saves the checkpoint: the position of the first record of the specified batch which
+    *** has not been inserted (or the current reader position, if all have been inserted),
+    *** and the last inserted record of each Device.  Fully drained segments are deleted.
+    *** @param batch  The batch most recently read by "_readBatch"
+    *** @param done   The inserted (or discarded) records of the batch
+    **/
+    /* package */ void _checkpoint(java.util.List<Spooled> batch, boolean done[])
+        throws IOException
+    {
+        StringBuffer ck = new StringBuffer();
+        java.util.List<Segment> drained = new Vector<Segment>();
+        synchronized (this) {
+
+            /* last inserted record of each Device */
+            int first = -1;
+            for (int i = 0; i < batch.size(); i++) {
+                Spooled sp = batch.get(i);
+                if (!done[i]) {
+                    if (first < 0) { first = i; }
+                } else {
+                    Long devCk = this.deviceCkpts.get(sp.getKey());
+                    if ((devCk == null) || (devCk.longValue() < sp.offset)) {
+                        this.deviceCkpts.put(sp.getKey(), new Long(sp.offset));
+                    }
+                }
+            }
+
+            /* drained position */
+            long seq = (first < 0)? this.readSeg.seq : (batch.get(first).offset >>> 32);
+            int  pos = (first < 0)? this.readPos     : (int)(batch.get(first).offset & 0xFFFFFFFFL);
+            long drainedOffset = EventSpool._offset(seq, pos);
+            ck.append(seq).append(" ").append(pos).append("\n");
+            for (Iterator<Map.Entry<String,Long>> i = this.deviceCkpts.entrySet().iterator(); i.hasNext();) {
+                Map.Entry<String,Long> e = i.next();
+                if (e.getValue().longValue() < drainedOffset) {
+                    i.remove(); // prior to the drained position
+                } else {
+                    ck.append(e.getKey()).append(" ").append(e.getValue()).append("\n");
+                }
+            }
+            while (this.segments.getFirst().seq < seq) {
+                drained.add(this.segments.removeFirst());
+            }
+
+        }
+        File tmp = new File(this.spoolDir, CHECKPOINT_FILE + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(StringTools.getBytes(ck.toString()));
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        java.nio.file.Files.move(tmp.toPath(), new File(this.spoolDir, CHECKPOINT_FILE).toPath(),
+            java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        for (Segment seg : drained) {
+            if (!seg.file.delete()) {
+                Print.logWarn("Unable to delete spool segment: " + seg.file);
+            }
+        }
+    }
+
+    /**
+    *** Appends the specified records to the dead-letter file.  The file has the segment
+    *** record format, so that the records may be re-spooled by renaming the file to a
+    *** segment file name following the last segment, while the DCS is stopped.
+    **/
+    /* package */ void _deadLetter(java.util.List<Spooled> list)
+        throws IOException
+    {
+        File file = new File(this.spoolDir, DEADLETTER_FILE);
+        FileOutputStream fos = new FileOutputStream(file, true);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            for (Spooled sp : list) {
+                CRC32 crc32 = new CRC32();
+                crc32.update(sp.payload);
+                out.writeInt(sp.payload.length);
+                out.writeInt((int)crc32.getValue());
+                out.write(sp.payload);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        this.deadLetterCount.addAndGet(list.size());
+    }
+
+    /**
+    *** Inserts the specified batch of records.  Records are queued to the owner lane of
+    *** each Device, so that separate Devices are inserted in parallel, while records for
+    *** a Device are inserted in order.  If a record cannot be inserted (ie. the database
+    *** is unavailable), the remaining records for that Device are retried until the
+    *** entire batch has been inserted, or moved to the dead-letter file once the Device
+    *** has failed "EventSpool.maxRetries" attempts in which it could be loaded.  The
+    *** checkpoint is saved after each attempt.
+    **/
+    private void _insertBatch(java.util.List<Spooled> batch)
+        throws InterruptedException, IOException
+    {
+        boolean done[] = new boolean[batch.size()];
+        Map<String,Integer> retries = new HashMap<String,Integer>();
+        for (int attempt = 0;; attempt++) {
+            final Set<String> failedDevs = Collections.synchronizedSet(new HashSet<String>());
+            Set<String> loadFailedDevs = new HashSet<String>(); // database unavailable
+            Map<String,Device> devMap = new HashMap<String,Device>();
+            Map<Integer,Future<Boolean>> futures = new LinkedHashMap<Integer,Future<Boolean>>();
+
+            /* queue records */
+            for (int i = 0; i < batch.size(); i++) {
+                if (done[i]) {
+                    continue;
+                }
+                final Spooled sp  = batch.get(i);
+                final String  key = sp.getKey();
+                if (failedDevs.contains(key)) {
+                    continue;
+                }
+                Device dev = devMap.get(key);
+                if (dev == null) {
+                    try {
+                        Account account = Account.getAccount(sp.accountID);
+                        dev = (account != null)? Device.loadDeviceByName(account, sp.deviceID) : null;
+                    } catch (DBException dbe) {
+                        Print.logError("Unable to load spooled event Device: " + key + " [" + dbe + "]");
+                        failedDevs.add(key);
+                        loadFailedDevs.add(key);
+                        continue;
+                    }
+                    if (dev == null) {
+                        Print.logWarn("Spooled event Device not found (discarded): " + key);
+                        done[i] = true;
+                        continue;
+                    }
+                    dev = DeviceEventOwner.getOwnedDevice(dev);
+                    devMap.put(key, dev);
+                }
+                final Device insDev = dev;
+                Callable<Boolean> task = new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        if (failedDevs.contains(key)) {
+                            return Boolean.FALSE; // retain order
+                        } else
+                        if (insDev.insertEventData(sp.event)) {
+                            return Boolean.TRUE;
+                        } else
+                        if (insDev.isInsertSaveFailed()) {
+                            failedDevs.add(key);
+                            return Boolean.FALSE;
+                        } else {
+                            return Boolean.TRUE; // ignored by the Device (ie. invalid event)
+                        }
+                    }
+                };
+                DeviceEventOwner owner = DeviceEventOwner.getOwner(dev);
+                if (owner != null) {
+                    futures.put(new Integer(i), owner.queueTask(task));
+                } else {
+                    FutureTask<Boolean> ft = new FutureTask<Boolean>(task);
+                    ft.run();
+                    futures.put(new Integer(i), ft);
+                }
+            }
+
+            /* wait for results */
+            for (Map.Entry<Integer,Future<Boolean>> e : futures.entrySet()) {
+                int i = e.getKey().intValue();
+                try {
+                    done[i] = e.getValue().get().booleanValue();
+                } catch (ExecutionException ee) {
+                    // not a database failure, do not retry
+                    Print.logException("Spooled event insert failed: " + batch.get(i).getKey(), ee.getCause());
+                    done[i] = true;
+                }
+            }
+
+            /* write Device changes */
+            for (Device dev : devMap.values()) {
+                try {
+                    dev.updateChangedEventFields(); // on the owner lane, if owned
+                } catch (DBException dbe) {
+                    Print.logError("Unable to update Device: " + dev.getAccountID() + "/" + dev.getDeviceID() + " [" + dbe + "]");
+                }
+            }
+            DeviceEventOwner.flushSessionDevices();
+
+            /* dead-letter the records of Devices which are rejected while the database is available */
+            for (String key : new Vector<String>(failedDevs)) {
+                if (loadFailedDevs.contains(key)) {
+                    continue; // database unavailable, retried without limit
+                }
+                Integer n = retries.get(key);
+                n = new Integer((n != null)? (n.intValue() + 1) : 1);
+                retries.put(key, n);
+                if ((this.maxRetries > 0) && (n.intValue() >= this.maxRetries)) {
+                    java.util.List<Spooled> dead = new Vector<Spooled>();
+                    for (int i = 0; i < done.length; i++) {
+                        if (!done[i] && key.equals(batch.get(i).getKey())) {
+                            dead.add(batch.get(i));
+                            done[i] = true;
+                        }
+                    }
+                    this._deadLetter(dead);
+                    Print.logError("Moved " + dead.size() + " spooled events of " + key + " to " + DEADLETTER_FILE + " after " + n + " attempts");
+                }
+            }
+
+            /* checkpoint inserted records */
+            this._checkpoint(batch, done);
+
+            /* complete? */
+            int remaining = 0;
+            for (int i = 0; i < done.length; i++) {
+                if (!done[i]) { remaining++; }
+            }
+            if (remaining == 0) {
+                return;
+            }
+            if (attempt == 0) {
+                Print.logWarn("Unable to insert " + remaining + " spooled events, retrying every " + (RETRY_INTERVAL_MS/1000L) + " sec");
+            }
+            Thread.sleep(RETRY_INTERVAL_MS);
+
+        }
+    }
+
+}
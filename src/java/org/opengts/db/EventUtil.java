@@ -73,6 +73,12 @@
 //     -Added "GET_NEARBY_GEOZONES", "MAP_INCL_SC_COLOR"
 //  2013/04/08  Martin D. Flynn
 //     -Changed "GET_NEARBY_GEOZONES" to "NEARBY_GEOZONE_RADIUS"
+//  2026/10/19
+//     -Event writers now iterate "Device.getSavedRangeEventIterator()", which may
+//      stream events from an "EventDataCursor", and flush after each page/device.
+//     -"-output=FILE.gz" writes gzip compressed events.
+//     -Map data may include a "cluster" DataSet (server-side pushpin clustering)
+//     -"writeEvents" reads events within a read-replica scope
 // ----------------------------------------------------------------------------
 package org.opengts.db;
 
@@ -268,6 +274,19 @@ public class EventUtil
         }
     }
 
+    /**
+    *** Flush output after each full page of streamed events (supports chunked transfer)
+    *** @param pwout    The PrintWriter
+    *** @param evCount  The number of events written so far
+    *** @param pageSize The number of events per flush (see "EventDataCursor.GetPageSize")
+    **/
+    private void flushEvents(PrintWriter pwout, long evCount, int pageSize)
+    {
+        if ((pwout != null) && ((evCount % pageSize) == 0L)) {
+            pwout.flush();
+        }
+    }
+
     /**
     *** Print output to specified PrintStream
     *** @param psout  The PrintStream
@@ -412,6 +431,8 @@ public class EventUtil
 
         /* print events */
         if (!ListTools.isEmpty(devList)) {
+            long evCount = 0L;
+            int  flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
 
                 /* check account ID */
@@ -421,14 +442,15 @@ public class EventUtil
                 }
 
                 /* Device events */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (ListTools.isEmpty(evList)) {
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if ((evIter == null) || !evIter.hasNext()) {
                     // no events for this device
                     continue;
                 }
 
                 /* write events */
-                for (EventData ev : evList) {
+                while (evIter.hasNext()) {
+                    EventData ev = evIter.next();
 
                     /* same account? */
                     if (!ev.getAccountID().equals(accountID)) {
@@ -441,8 +463,10 @@ public class EventUtil
                     String rcd = this.formatEventData_CSV(ev, evFields, 
                         dispTmz, dateFmt, timeFmt, csvSep) + "\n";
                     this.write(pwout, rcd);
+                    this.flushEvents(pwout, ++evCount, flushCount);
 
                 }
+                this.flush(pwout);
 
             }
         }
@@ -602,6 +626,8 @@ public class EventUtil
     public  static final String  TAG_Point                      = "P";
     public  static final String  TAG_Shape                      = "Shape"; // MapShape
     public  static final String  TAG_Action                     = "Action"; // used by ReportDisplay
+    public  static final String  TAG_Remove                     = "Remove"; // MapDelta
+    public  static final String  TAG_Replace                    = "Replace"; // MapDelta
     
     public  static final String  JSON_Error                     = "Error";
     public  static final String  JSON_Command                   = "Command";
@@ -632,6 +658,10 @@ public class EventUtil
     public  static final String  JSON_routeColor                = "routeColor";
     public  static final String  JSON_textColor                 = "textColor";
     public  static final String  JSON_id                        = "id";
+    public  static final String  JSON_Delta                     = "Delta";
+    public  static final String  JSON_Token                     = "Token";
+    public  static final String  JSON_Removed                   = "Removed";
+    public  static final String  JSON_Replaced                  = "Replaced";
 
     public  static final String  ATTR_isFleet                   = "isFleet";
     public  static final String  ATTR_type                      = "type";
@@ -650,10 +680,19 @@ public class EventUtil
     public  static final String  ATTR_battery                   = "battery";
     public  static final String  ATTR_signal                    = "signal";
     public  static final String  ATTR_command                   = "command";
+    public  static final String  ATTR_delta                     = "delta";
+    public  static final String  ATTR_token                     = "token";
 
     public  static final String  DSTYPE_device                  = "device";
     public  static final String  DSTYPE_group                   = "group";
     public  static final String  DSTYPE_poi                     = "poi";
+    public  static final String  DSTYPE_cluster                 = "cluster";
+
+    public  static final String  ATTR_columns                   = "columns";
+    public  static final String  JSON_columns                   = ATTR_columns;
+
+    // NOTE: The format encoded here must match the cluster record format parsed by the client
+    public  static final String  CLUSTER_COLUMNS                = "count|lat|lon|minLat|minLon|maxLat|maxLon";
 
   //public  static final String  CSV_SEPARATOR                  = "|";
     public  static final char    CSV_SEPARATOR_CHAR             = '|';
@@ -744,6 +783,23 @@ public class EventUtil
 
     // -------------------------------
 
+    /* encode a single map pushpin cluster record (see CLUSTER_COLUMNS) */
+    public String formatMapCluster(GeoCluster<?> gc, char csvSep)
+    {
+        // count|lat|lon|minLat|minLon|maxLat|maxLon
+        GeoPoint  gp = gc.getGeoPoint();
+        GeoBounds gb = gc.getBounds();
+        StringBuffer sb = new StringBuffer();
+        sb.append(gc.getCount());
+        sb.append(csvSep).append(StringTools.format(gp.getLatitude()    ,"0.00000"));
+        sb.append(csvSep).append(StringTools.format(gp.getLongitude()   ,"0.00000"));
+        sb.append(csvSep).append(StringTools.format(gb.getMinLatitude() ,"0.00000"));
+        sb.append(csvSep).append(StringTools.format(gb.getMinLongitude(),"0.00000"));
+        sb.append(csvSep).append(StringTools.format(gb.getMaxLatitude() ,"0.00000"));
+        sb.append(csvSep).append(StringTools.format(gb.getMaxLongitude(),"0.00000"));
+        return sb.toString();
+    }
+
     /* encode a single map event record */
     public String formatMapEvent(
         BasicPrivateLabel privLabel,
@@ -1006,6 +1062,137 @@ public class EventUtil
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Incremental map update information.<br>
+    *** When included in the map data, the "token" identifies the map state represented by the
+    *** response, and is returned by the client on the next update request.  If "isDelta" is
+    *** true, the response contains only the events which were not included in the state
+    *** identified by the token included in the request.  The client first removes the listed
+    *** "removed" devices (no longer displayed), and the current datasets of the listed
+    *** "replaced" devices (which are replaced by the events in this response), then merges
+    *** the events into its current datasets.
+    **/
+    public static class MapDelta
+    {
+        private String                  token       = null;
+        private boolean                 isDelta     = false;
+        private java.util.List<String>  removed     = null;
+        private java.util.List<String>  replaced    = null;
+        public MapDelta(String token, boolean isDelta, Collection<String> removed) {
+            this(token, isDelta, removed, null);
+        }
+        public MapDelta(String token, boolean isDelta, Collection<String> removed, Collection<String> replaced) {
+            this.token    = token;
+            this.isDelta  = isDelta;
+            this.removed  = !ListTools.isEmpty(removed)?  new Vector<String>(removed)  : null;
+            this.replaced = !ListTools.isEmpty(replaced)? new Vector<String>(replaced) : null;
+        }
+        public String getToken() {
+            return this.token;
+        }
+        public boolean isDelta() {
+            return this.isDelta;
+        }
+        public java.util.List<String> getRemovedDeviceIDs() {
+            return this.removed; // may be null
+        }
+        public java.util.List<String> getReplacedDeviceIDs() {
+            return this.replaced; // may be null
+        }
+    }
+
+    /**
+    *** Map event data output arguments (see "writeMapEvents").<br>
+    *** Unset arguments have the same default values as the corresponding "writeMapEvents"
+    *** parameters would have when specified as null/false/0.
+    **/
+    public static class MapEventsArgs
+    {
+        private int                             dataFmt         = MAPDATA_DEFAULT;
+        private int                             indentLevel     = 0;
+        private boolean                         isSoapRequest   = false;
+        private boolean                         isTopLevelTag   = true;
+        private BasicPrivateLabel               privLabel       = null;
+        private EventDataProvider               edp[]           = null;
+        private boolean                         includeShapes   = false;
+        private String                          iconSelector    = null;
+        private OrderedSet<String>              iconKeys        = null;
+        private boolean                         isFleet         = false;
+        private boolean                         fleetRoute      = false;
+        private String                          selID           = null;
+        private TimeZone                        tmz             = null;
+        private Account                         acct            = null;
+        private User                            user            = null;
+        private DateTime                        latestTime      = null;
+        private double                          lastBattery     = 0.0;
+        private double                          lastSignal      = 0.0;
+        private double                          minProximityM   = 0.0;
+        private char                            csvSep          = CSV_SEPARATOR_CHAR;
+        private MapDelta                        delta           = null;
+        private Collection<? extends GeoCluster<?>> clusters    = null;
+        public MapEventsArgs() {
+            super();
+        }
+        public MapEventsArgs setDataFormat(int dataFmt, int indentLevel) {
+            this.dataFmt = dataFmt;
+            this.indentLevel = indentLevel;
+            return this;
+        }
+        public MapEventsArgs setRequest(boolean isSoapRequest, boolean isTopLevelTag, BasicPrivateLabel privLabel) {
+            this.isSoapRequest = isSoapRequest;
+            this.isTopLevelTag = isTopLevelTag;
+            this.privLabel = privLabel;
+            return this;
+        }
+        public MapEventsArgs setEvents(EventDataProvider edp[], boolean includeShapes) {
+            this.edp = edp;
+            this.includeShapes = includeShapes;
+            return this;
+        }
+        public MapEventsArgs setIcons(String iconSelector, OrderedSet<String> iconKeys) {
+            this.iconSelector = iconSelector;
+            this.iconKeys = iconKeys;
+            return this;
+        }
+        public MapEventsArgs setSelection(boolean isFleet, boolean fleetRoute, String selID) {
+            this.isFleet = isFleet;
+            this.fleetRoute = fleetRoute;
+            this.selID = selID;
+            return this;
+        }
+        public MapEventsArgs setAccount(Account acct, User user, TimeZone tmz) {
+            this.acct = acct;
+            this.user = user;
+            this.tmz = tmz;
+            return this;
+        }
+        public MapEventsArgs setLatest(DateTime latestTime, double lastBattery, double lastSignal) {
+            this.latestTime = latestTime;
+            this.lastBattery = lastBattery;
+            this.lastSignal = lastSignal;
+            return this;
+        }
+        public MapEventsArgs setMinProximity(double minProximityM) {
+            this.minProximityM = minProximityM;
+            return this;
+        }
+        public MapEventsArgs setCsvSeparator(char csvSep) {
+            this.csvSep = csvSep;
+            return this;
+        }
+        public MapEventsArgs setDelta(MapDelta delta) {
+            this.delta = delta;
+            return this;
+        }
+        public MapEventsArgs setClusters(Collection<? extends GeoCluster<?>> clusters) {
+            this.clusters = clusters;
+            return this;
+        }
+        public boolean isXML() {
+            return (this.dataFmt == EventUtil.MAPDATA_XML);
+        }
+    }
+
     /* write encoded map event data to the specified PrintWriter */
     public boolean writeMapEvents(
         int dataFmt, int indentLevel, PrintWriter pwout, 
@@ -1020,32 +1207,27 @@ public class EventUtil
         double minProximityM)
         throws IOException
     {
-        if (dataFmt == EventUtil.MAPDATA_XML) {
-            return this.writeMapEvents_xml(
-                indentLevel, pwout, 
-                isSoapRequest, isTopLevelTag,
-                privLabel,
-                edp, includeShapes,
-                iconSelector, iconKeys,
-                isFleet, fleetRoute, selID,
-                tmz,
-                acct, user,
-                latestTime, lastBattery, lastSignal,
-                minProximityM,
-                CSV_SEPARATOR_CHAR);
+        return this.writeMapEvents(pwout, (new MapEventsArgs())
+            .setDataFormat(dataFmt, indentLevel)
+            .setRequest(isSoapRequest, isTopLevelTag, privLabel)
+            .setEvents(edp, includeShapes)
+            .setIcons(iconSelector, iconKeys)
+            .setSelection(isFleet, fleetRoute, selID)
+            .setAccount(acct, user, tmz)
+            .setLatest(latestTime, lastBattery, lastSignal)
+            .setMinProximity(minProximityM));
+    }
+
+    /* write encoded map event data (including the incremental update information and pushpin clusters) to the specified PrintWriter */
+    // 'args.edp' contains the events which are displayed as individual pushpins, 'args.clusters'
+    // contains the pushpin clusters (only clusters containing more than one point are written).
+    public boolean writeMapEvents(PrintWriter pwout, MapEventsArgs args)
+        throws IOException
+    {
+        if (args.isXML()) {
+            return this.writeMapEvents_xml(pwout, args);
         } else {
-            return this.writeMapEvents_json(
-                pwout, 
-                isSoapRequest, isTopLevelTag,
-                privLabel,
-                edp, includeShapes,
-                iconSelector, iconKeys,
-                isFleet, fleetRoute, selID,
-                tmz,
-                acct, user,
-                latestTime, lastBattery, lastSignal,
-                minProximityM,
-                CSV_SEPARATOR_CHAR);
+            return this.writeMapEvents_json(pwout, args);
         }
     }
 
@@ -1065,38 +1247,48 @@ public class EventUtil
         double minProximityM)
         throws IOException
     {
-        return this.writeMapEvents_xml(
-            indentLevel, pwout, 
-            isSoapRequest, isTopLevelTag,
-            privLabel,
-            edp, includeShapes,
-            iconSelector, iconKeys,
-            isFleet, fleetRoute, selID,
-            tmz,
-            acct, user,
-            latestTime, lastBattery, lastSignal,
-            minProximityM,
-            CSV_SEPARATOR_CHAR);
+        return this.writeMapEvents_xml(pwout, (new MapEventsArgs())
+            .setDataFormat(EventUtil.MAPDATA_XML, indentLevel)
+            .setRequest(isSoapRequest, isTopLevelTag, privLabel)
+            .setEvents(edp, includeShapes)
+            .setIcons(iconSelector, iconKeys)
+            .setSelection(isFleet, fleetRoute, selID)
+            .setAccount(acct, user, tmz)
+            .setLatest(latestTime, lastBattery, lastSignal)
+            .setMinProximity(minProximityM));
     }
 
     /* write encoded map event data to the specified PrintWriter */
-    private boolean writeMapEvents_xml(
-        int indentLevel, PrintWriter pwout, 
-        boolean isSoapRequest, boolean isTopLevelTag,
-        BasicPrivateLabel privLabel,
-        EventDataProvider edp[],  boolean includeShapes,
-        String iconSelector, OrderedSet<String>iconKeys, 
-        boolean isFleet, boolean fleetRoute, String selID,
-        TimeZone tmz, 
-        Account acct, User user,
-        DateTime latestTime, double lastBattery, double lastSignal,
-        double minProximityM,
-        char csvSep)
+    private boolean writeMapEvents_xml(PrintWriter pwout, MapEventsArgs args)
         throws IOException
     {
+        int                 indentLevel     = args.indentLevel;
+        boolean             isSoapRequest   = args.isSoapRequest;
+        boolean             isTopLevelTag   = args.isTopLevelTag;
+        BasicPrivateLabel   privLabel       = args.privLabel;
+        EventDataProvider   edp[]           = args.edp;
+        boolean             includeShapes   = args.includeShapes;
+        String              iconSelector    = args.iconSelector;
+        OrderedSet<String>  iconKeys        = args.iconKeys;
+        boolean             isFleet         = args.isFleet;
+        boolean             fleetRoute      = args.fleetRoute;
+        String              selID           = args.selID;
+        TimeZone            tmz             = args.tmz;
+        Account             acct            = args.acct;
+        User                user            = args.user;
+        DateTime            latestTime      = args.latestTime;
+        double              lastBattery     = args.lastBattery;
+        double              lastSignal      = args.lastSignal;
+        double              minProximityM   = args.minProximityM;
+        char                csvSep          = args.csvSep;
+        MapDelta            delta           = args.delta;
+        Collection<? extends GeoCluster<?>> clusters = args.clusters;
+
         // <?xml version='1.0' encoding='UTF-8' standalone='no' ?>
-        // <MapData isFleet="false">
+        // <MapData isFleet="false" [delta="true" token="TOKEN"]>
         //   <Time timestamp="EPOCH" timezone="TMZ" year="YYYY" month="MM" day="DD">YYYY/MM/DD|hh:mm:ss</Time>
+        //   <Remove id="deviceid"/>
+        //   <Replace id="deviceid"/>
         //   <LastEvent device="DEVICE" timestamp="EPOCH" timezone="TMZ" year="YYYY" month="MM" day="DD" battery="0.82" signal="0.45">YYYY/MM/DD|hh:mm:ss</LastEvent>
         //   <Shape type="circle" radius="1000" color="#FF0000"><![CDATA[
         //      lat/lon, lat/lon, ...
@@ -1143,7 +1335,10 @@ public class EventUtil
         /* "MapData" tag */
         this.write(pwout, PFX1);
         this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_MapData,
-            XMLTools.ATTR(ATTR_isFleet,isFleet),
+            XMLTools.ATTR(ATTR_isFleet,isFleet) +
+            ((delta != null)? 
+                (XMLTools.ATTR(ATTR_delta,delta.isDelta()) + XMLTools.ATTR(ATTR_token,delta.getToken())) : 
+                ""),
             false,true));
 
         /* today time */
@@ -1161,6 +1356,28 @@ public class EventUtil
         this.write(pwout, today.format(dateFmt,tmz) + csvSep + today.format(timeFmt,tmz));
         this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Time,true));
 
+        /* removed devices (incremental update) */
+        // <Remove id="deviceid"/>
+        if ((delta != null) && (delta.getRemovedDeviceIDs() != null)) {
+            for (String devID : delta.getRemovedDeviceIDs()) {
+                this.write(pwout, PFX2);
+                this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Remove,
+                    XMLTools.ATTR(ATTR_id,devID),
+                    true,true));
+            }
+        }
+
+        /* replaced devices (incremental update) */
+        // <Replace id="deviceid"/>
+        if ((delta != null) && (delta.getReplacedDeviceIDs() != null)) {
+            for (String devID : delta.getReplacedDeviceIDs()) {
+                this.write(pwout, PFX2);
+                this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Replace,
+                    XMLTools.ATTR(ATTR_id,devID),
+                    true,true));
+            }
+        }
+
         /* latest event? */
         // <LastEvent device="DEVICE" timestamp="EPOCH" timezone="TMZ" year="YYYY" month="MM" day="DD" battery="0.82" signal="0.45">YYYY/MM/DD|hh:mm:ss</LastEvent>
         if (!isFleet && (latestTime != null)) {
@@ -1372,6 +1589,33 @@ public class EventUtil
             csvSep,
             minProximityM);
 
+        // <DataSet type="cluster" columns="count|lat|lon|...">
+        if (!ListTools.isEmpty(clusters)) {
+            String PFX3 = (indentLevel > 0)? XMLTools.PREFIX(isSoapRequest,(indentLevel+2)*3) : "";
+            boolean didStartSet = false;
+            for (GeoCluster<?> gc : clusters) {
+                if (gc.getCount() <= 1) {
+                    continue;
+                }
+                if (!didStartSet) {
+                    this.write(pwout, PFX2);
+                    this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_DataSet,
+                        XMLTools.ATTR(ATTR_type   , DSTYPE_cluster) +
+                        XMLTools.ATTR(ATTR_columns, CLUSTER_COLUMNS),
+                        false,true));
+                    didStartSet = true;
+                }
+                this.write(pwout, PFX3);
+                this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Point,"",false,false));
+                this.write(pwout, XMLTools.CDATA(isSoapRequest,this.formatMapCluster(gc, csvSep)));
+                this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Point,true));
+            }
+            if (didStartSet) {
+                this.write(pwout, PFX2);
+                this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_DataSet,true));
+            }
+        }
+
         /* XML footer */
         this.write(pwout, PFX1);
         this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_MapData,true));
@@ -1689,37 +1933,45 @@ public class EventUtil
         double minProximityM)
         throws IOException
     {
-        return this.writeMapEvents_json(
-            //response,
-            pwout, 
-            isSoapRequest, isTopLevelTag,
-            privLabel,
-            edp, includeShapes,
-            iconSelector, iconKeys,
-            isFleet, fleetRoute, selID,
-            tmz,
-            acct, user,
-            latestTime, lastBattery, lastSignal,
-            minProximityM,
-            CSV_SEPARATOR_CHAR);
+        return this.writeMapEvents_json(pwout, (new MapEventsArgs())
+            .setDataFormat(EventUtil.MAPDATA_JSON, 0)
+            .setRequest(isSoapRequest, isTopLevelTag, privLabel)
+            .setEvents(edp, includeShapes)
+            .setIcons(iconSelector, iconKeys)
+            .setSelection(isFleet, fleetRoute, selID)
+            .setAccount(acct, user, tmz)
+            .setLatest(latestTime, lastBattery, lastSignal)
+            .setMinProximity(minProximityM));
     }
 
     /* write encoded map event data to the specified PrintWriter */
     private boolean writeMapEvents_json(
         //HttpServletResponse response,
-        PrintWriter pwout, 
-        boolean isSoapRequest, boolean isTopLevelTag,
-        BasicPrivateLabel privLabel,
-        EventDataProvider edp[],  boolean includeShapes,
-        String iconSelector, OrderedSet<String>iconKeys, 
-        boolean isFleet, boolean fleetRoute, String selID,
-        TimeZone tmz, 
-        Account acct, User user,
-        DateTime latestTime, double lastBattery, double lastSignal,
-        double minProximityM,
-        char csvSep)
+        PrintWriter pwout, MapEventsArgs args)
         throws IOException
     {
+        int                 indentLevel     = args.indentLevel;
+        boolean             isSoapRequest   = args.isSoapRequest;
+        boolean             isTopLevelTag   = args.isTopLevelTag;
+        BasicPrivateLabel   privLabel       = args.privLabel;
+        EventDataProvider   edp[]           = args.edp;
+        boolean             includeShapes   = args.includeShapes;
+        String              iconSelector    = args.iconSelector;
+        OrderedSet<String>  iconKeys        = args.iconKeys;
+        boolean             isFleet         = args.isFleet;
+        boolean             fleetRoute      = args.fleetRoute;
+        String              selID           = args.selID;
+        TimeZone            tmz             = args.tmz;
+        Account             acct            = args.acct;
+        User                user            = args.user;
+        DateTime            latestTime      = args.latestTime;
+        double              lastBattery     = args.lastBattery;
+        double              lastSignal      = args.lastSignal;
+        double              minProximityM   = args.minProximityM;
+        char                csvSep          = args.csvSep;
+        MapDelta            delta           = args.delta;
+        Collection<? extends GeoCluster<?>> clusters = args.clusters;
+
         JSON._Object JMapData = this.getJMapData_JSON(
             privLabel,
             edp, includeShapes,
@@ -1731,6 +1983,41 @@ public class EventUtil
             minProximityM,
             null/*actions*/,
             csvSep);
+        if (!ListTools.isEmpty(clusters)) {
+            // { "type": "cluster", "columns": "count|lat|lon|...", "Points": [ "count|lat|lon|...", ... ] }
+            JSON._Array pointArray = new JSON._Array();
+            for (GeoCluster<?> gc : clusters) {
+                if (gc.getCount() > 1) {
+                    pointArray.addValue(this.formatMapCluster(gc, csvSep));
+                }
+            }
+            if (!pointArray.isEmpty()) {
+                JSON._Object dataSetObj = new JSON._Object();
+                dataSetObj.addKeyValue(JSON_type   , DSTYPE_cluster);
+                dataSetObj.addKeyValue(JSON_columns, CLUSTER_COLUMNS);
+                dataSetObj.addKeyValue(JSON_route  , false);
+                dataSetObj.addKeyValue(JSON_Points , pointArray);
+                JSON._Array dataSetArray = JMapData.getArrayForName(JSON_DataSets, null);
+                if (dataSetArray == null) {
+                    dataSetArray = new JSON._Array();
+                    JMapData.addKeyValue(JSON_DataSets, dataSetArray);
+                }
+                dataSetArray.addValue(dataSetObj);
+            }
+        }
+        if (delta != null) {
+            // "Delta": true, "Token": "TOKEN", "Removed": [ "deviceid", ... ], "Replaced": [ "deviceid", ... ]
+            JMapData.addKeyValue(JSON_Delta, delta.isDelta());
+            JMapData.addKeyValue(JSON_Token, delta.getToken());
+            if (delta.getRemovedDeviceIDs() != null) {
+                java.util.List<String> rmv = delta.getRemovedDeviceIDs();
+                JMapData.addKeyValue(JSON_Removed, new JSON._Array(rmv.toArray(new String[rmv.size()])));
+            }
+            if (delta.getReplacedDeviceIDs() != null) {
+                java.util.List<String> rpl = delta.getReplacedDeviceIDs();
+                JMapData.addKeyValue(JSON_Replaced, new JSON._Array(rpl.toArray(new String[rpl.size()])));
+            }
+        }
         JSON._Object jsonObj = new JSON._Object();
         jsonObj.addKeyValue(JSON_JMapData, JMapData);
         String jsonStr = jsonObj.toString(false);
@@ -2808,6 +3095,8 @@ public class EventUtil
 
         /* list device event data */
         if (!ListTools.isEmpty(devList)) {
+            long evCount = 0L;
+            int  flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
                 String deviceID = dev.getDeviceID();
 
@@ -2818,8 +3107,8 @@ public class EventUtil
                 }
 
                 /* device events */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (ListTools.isEmpty(evList)) {
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if ((evIter == null) || !evIter.hasNext()) {
                     // no events for this device
                     continue;
                 }
@@ -2840,8 +3129,8 @@ public class EventUtil
                 }
 
                 /* Device events */
-                for (int i = 0; i < evList.length; i++) {
-                    EventData ev = evList[i];
+                while (evIter.hasNext()) {
+                    EventData ev = evIter.next();
     
                     /* same account? */
                     if (!ev.getAccountID().equals(accountID)) {
@@ -2855,6 +3144,7 @@ public class EventUtil
                         dev, ev,
                         2, allTags,
                         privLabel, oldFormat);
+                    this.flushEvents(pwout, ++evCount, flushCount);
     
                 }
 
@@ -2863,6 +3153,7 @@ public class EventUtil
                     this.write(pwout, PFX1);
                     this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Device,true));
                 }
+                this.flush(pwout);
                 
             }
 
@@ -2927,6 +3218,8 @@ public class EventUtil
         
         /* track body */
         if (!ListTools.isEmpty(devList)) {
+            long evCount = 0L;
+            int  flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
                 String deviceID = dev.getDeviceID();
     
@@ -2943,19 +3236,22 @@ public class EventUtil
                 this.write(pwout, "  <trkseg>\n");
 
                 /* events */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (!ListTools.isEmpty(evList)) {
-                    for (EventData ev : evList) {
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if (evIter != null) {
+                    while (evIter.hasNext()) {
+                        EventData ev = evIter.next();
                         this.write(pwout, "    <trkpt lat=\"" + ev.getLatitude() + "\" lon=\"" + ev.getLongitude() + "\">\n");
                         this.write(pwout, "      <time>" + (new DateTime(ev.getTimestamp(),tz)).format(dateFmt) + "</time>\n");
                         this.write(pwout, "      <ele>"+ev.getAltitude()+"</ele>\n"); // meters
                         this.write(pwout, "    </trkpt>\n");
+                        this.flushEvents(pwout, ++evCount, flushCount);
                     }
                 }
         
                 /* Device end tag */
                 this.write(pwout, "  </trkseg>\n");
                 this.write(pwout, "  </trk>\n");
+                this.flush(pwout);
                 
             }
             
@@ -2963,6 +3259,7 @@ public class EventUtil
 
         /* footer */
         this.write(pwout, "</gpx>\n");
+        this.flush(pwout);
 
         return true;
     }
@@ -3058,6 +3355,8 @@ public class EventUtil
 
         if (!ListTools.isEmpty(devList)) {
             int d = 0, lastDevNdx = devList.size() - 1;
+            long evCount = 0L;
+            int  flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
                 boolean isLastDev = (d++ == lastDevNdx);
 
@@ -3074,14 +3373,13 @@ public class EventUtil
                 this.writeKeyValue_JSON(pwout,PFX3,"Device", deviceID, false);
 
                 /* event data */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (evList != null) {
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if (evIter != null) {
                     this.writeKeyValue_JSON(pwout,PFX3,"Device_desc", deviceDesc, false);
                     this.writeKeyValue_JSON(pwout,PFX3,"EventData", "[", true);
-                    int lastEventNdx = evList.length - 1;
-                    for (int e = 0; e <= lastEventNdx; e++) {
-                        EventData ev = evList[e];
-                        boolean isLastEvent = (e == lastEventNdx);
+                    for (int e = 0; evIter.hasNext(); e++) {
+                        EventData ev = evIter.next();
+                        boolean isLastEvent = !evIter.hasNext();
         
                         /* same account? */
                         if (!ev.getAccountID().equals(accountID)) {
@@ -3092,6 +3390,7 @@ public class EventUtil
     
                         /* event */
                         this.writeEvents_JSON_Event(pwout, e, ev, isLastEvent, 4, allTags, privLabel);
+                        this.flushEvents(pwout, ++evCount, flushCount);
     
                     }
                     this.writeKeyValue_JSON(pwout,PFX3,"]", null, true);
@@ -3101,6 +3400,7 @@ public class EventUtil
 
                 /* Device footer */
                 this.writeKeyValue_JSON(pwout,PFX2,"}", null, isLastDev);
+                this.flush(pwout);
                 
             }
 
@@ -3399,6 +3699,8 @@ public class EventUtil
 
         /* devices */
         if (!ListTools.isEmpty(devList)) {
+            long evCount = 0L;
+            int  flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
                 String deviceID = dev.getDeviceID();
     
@@ -3409,9 +3711,10 @@ public class EventUtil
                 }
 
                 /* events */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (!ListTools.isEmpty(evList)) {
-                    for (EventData ev : evList) {
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if (evIter != null) {
+                    while (evIter.hasNext()) {
+                        EventData ev = evIter.next();
         
                         /* same account? */
                         if (!ev.getAccountID().equals(accountID)) {
@@ -3426,15 +3729,18 @@ public class EventUtil
                         pwout.write(" description=\""+ev.getAddress()+"\"");
                         // other options available as well
                         pwout.write("/>\n");
+                        this.flushEvents(pwout, ++evCount, flushCount);
                         
                     }
                 }
+                this.flush(pwout);
                 
             }
         }
 
         /* footer */
         pwout.write("</lbs>\n");
+        this.flush(pwout);
 
         /* return success */
         return true;
@@ -3480,10 +3786,12 @@ public class EventUtil
         throws IOException
     {
         PrintWriter pwout = (out != null)? new PrintWriter(out) : null;
-        return this.writeEvents(pwout, 
+        boolean rtn = this.writeEvents(pwout, 
             account, devList,
             formatEnum, allTags, tmz,
             privLabel);
+        this.flush(pwout);
+        return rtn;
     }
     
     public boolean writeEvents(PrintWriter pwout, 
@@ -3493,44 +3801,53 @@ public class EventUtil
         throws IOException
     {
         if (devList != null) {
-            switch (formatEnum) {
-                case FORMAT_TXT:
-                case FORMAT_CSV:
-                    return this.writeEvents_CSV(pwout, 
-                        account, devList, 
-                        allTags, dispTmz, 
-                        ',', true/*inclHeader*/, privLabel);
-                case FORMAT_KML:
-                    return GoogleKML.getInstance().writeEvents(pwout, 
-                        account, devList, 
-                        privLabel);
-                case FORMAT_XML:
-                case FORMAT_XMLOLD:
-                    return this.writeEvents_XML(pwout, 
-                        account, devList, 
-                        allTags, dispTmz,
-                        privLabel, (formatEnum == FORMAT_XMLOLD));
-                case FORMAT_GPX:
-                    return this.writeEvents_GPX(pwout, 
-                        account, devList, 
-                        privLabel);
-                case FORMAT_JSON:
-                case FORMAT_JSONX:
-                    return this.writeEvents_JSON(pwout, 
-                        account, devList, 
-                        allTags, dispTmz,
-                        privLabel);
-                case FORMAT_BML:
-                    return this.writeEvents_BML(pwout, 
-                        account, devList, 
-                        privLabel);
-                case FORMAT_AEMP:
-                    return this.writeEvents_AEMP(pwout, 
-                        account, devList, 
-                        privLabel);
-                default:
-                    Print.logError("Unrecognized data format: " + formatEnum);
-                    return false;
+            // exported events are read-only, and may be read from a read-replica
+            DBConnection.pushReadReplica();
+            try {
+                switch (formatEnum) {
+                    case FORMAT_TXT:
+                    case FORMAT_CSV:
+                        return this.writeEvents_CSV(pwout, 
+                            account, devList, 
+                            allTags, dispTmz, 
+                            ',', true/*inclHeader*/, privLabel);
+                    case FORMAT_KML:
+                        return GoogleKML.getInstance().writeEvents(pwout, 
+                            account, devList, 
+                            privLabel);
+                    case FORMAT_XML:
+                    case FORMAT_XMLOLD:
+                        return this.writeEvents_XML(pwout, 
+                            account, devList, 
+                            allTags, dispTmz,
+                            privLabel, (formatEnum == FORMAT_XMLOLD));
+                    case FORMAT_GPX:
+                        return this.writeEvents_GPX(pwout, 
+                            account, devList, 
+                            privLabel);
+                    case FORMAT_JSON:
+                    case FORMAT_JSONX:
+                        return this.writeEvents_JSON(pwout, 
+                            account, devList, 
+                            allTags, dispTmz,
+                            privLabel);
+                    case FORMAT_BML:
+                        return this.writeEvents_BML(pwout, 
+                            account, devList, 
+                            privLabel);
+                    case FORMAT_AEMP:
+                        return this.writeEvents_AEMP(pwout, 
+                            account, devList, 
+                            privLabel);
+                    default:
+                        Print.logError("Unrecognized data format: " + formatEnum);
+                        return false;
+                }
+            } catch (EventDataCursor.CursorException ce) {
+                // events streamed from a cursor could not be read: the output is incomplete
+                throw new IOException("Error reading events", ce.getDBException());
+            } finally {
+                DBConnection.popReadReplica();
             }
         }
         return false;
@@ -3546,6 +3863,10 @@ public class EventUtil
             } else
             if (outFile.equalsIgnoreCase("stderr")) {
                 return System.err;
+            } else
+            if (outFile.toLowerCase().endsWith(".gz")) {
+                // compressed output (finished when the stream is closed)
+                return new java.util.zip.GZIPOutputStream(new FileOutputStream(outFile, false/*no-append*/), 8192);
             } else {
                 return new FileOutputStream(outFile, false/*no-append*/);
             }
@@ -3642,7 +3963,7 @@ public class EventUtil
         Print.logInfo("  -events=<count>                Write last <count> events to output file");
         Print.logInfo("  -events=<from>,<to>[,<limit>]  Write events in specified range to output file");
         Print.logInfo("  -format=[csv|kml]              Event output format");
-        Print.logInfo("  -output=<file>                 Event output file");
+        Print.logInfo("  -output=<file>                 Event output file (\".gz\" to compress)");
         Print.logInfo("  -geozone=<from>,<to> [-update] Look for matching geozones for account/device");
         Print.logInfo("  -geocode=<from>,<to> [-update] Apply reverse-geocode to addresses");
         Print.logInfo("  -update                        Update matching geozone/address");
@@ -3738,18 +4059,21 @@ public class EventUtil
             }
 
             /* extract records */
-            // this assumes that the number of returned records is reasonable and fits in memory
-            try {
-                EventData evList[] = null;
-                if ((startTime <= 0L) && (endTime <= 0L)) {
-                    evList = devList[0].getLatestEvents(limit, false);
-                } else {
-                    evList = devList[0].getRangeEvents(startTime, endTime, false, EventData.LimitType.FIRST, limit);
+            // a date range is read one page at a time while the events are written
+            if ((startTime <= 0L) && (endTime <= 0L)) {
+                DBConnection.pushReadReplica();
+                try {
+                    EventData evList[] = devList[0].getLatestEvents(limit, false);
+                    devList[0].setSavedRangeEvents(evList);
+                } catch (DBException dbe) {
+                    dbe.printException();
+                    System.exit(99);
+                } finally {
+                    DBConnection.popReadReplica();
                 }
-                devList[0].setSavedRangeEvents(evList);
-            } catch (DBException dbe) {
-                dbe.printException();
-                System.exit(99);
+            } else {
+                devList[0].setSavedRangeCursor(new EventDataCursor(devList[0],
+                    startTime, endTime, null/*statusCodes*/, false/*validGPS*/, limit));
             }
 
             /* output records */
@@ -28,6 +28,9 @@
 //     -Convert odometer KM to account display units.
 //  2011/12/06  Martin D. Flynn
 //     -Changed Google pushpins "mm_20_COLOR.png" to new location.
+//  2026/10/19
+//     -"writeEvents" iterates streamed device events, flushing after each page/device.
+//     -"writeEvents" simplifies each device route line (see "googleKML.simplifyMeters").
 // ----------------------------------------------------------------------------
 package org.opengts.db;
 
@@ -50,6 +53,9 @@ public class GoogleKML
     // ------------------------------------------------------------------------
 
     public static final String PROP_GoogleKML_lastPushpinID = "googleKML.lastPushpinID";
+    public static final String PROP_GoogleKML_simplifyMeters = "googleKML.simplifyMeters";
+
+    private static final double DFT_SIMPLIFY_METERS         = 3.0; // route line only
     
     // ------------------------------------------------------------------------
 
@@ -299,6 +305,15 @@ public class GoogleKML
 
     // ------------------------------------------------------------------------
 
+    /* return the KML "lon,lat,alt" coordinates of the specified event */
+    private static String _getCoordinates(EventData ev)
+    {
+        GeoPoint gp = ev.getGeoPoint();
+        return gp.getLongitudeString(GeoPoint.SFORMAT_DEC_5,null) + "," + 
+            gp.getLatitudeString(GeoPoint.SFORMAT_DEC_5,null) + "," + 
+            Math.round(ev.getAltitude());
+    }
+
     private String _writePlacemark(PrintWriter out, 
         I18N i18n, BasicPrivateLabel privLabel, EventData ev, 
         boolean isLast, boolean useLastPP,
@@ -379,7 +394,7 @@ public class GoogleKML
         out.write(tab + "  <styleUrl>#" + style + "</styleUrl>\n");
         
         // GPS location
-        String gpsPoint = lonStr + "," + latStr + "," + Math.round(altM);
+        String gpsPoint = GoogleKML._getCoordinates(ev);
         out.write(tab + "  <Point><coordinates>" + gpsPoint + "</coordinates></Point>\n");
         
         out.write(tab + "</Placemark>\n");
@@ -431,9 +446,16 @@ public class GoogleKML
             useLastPP = true;
         }
 
+        /* route line simplification tolerance (0 to disable) */
+        // (every event is written as a placemark, only the route line is simplified)
+        double simplifyM = (privLabel != null)? 
+            privLabel.getDoubleProperty(PROP_GoogleKML_simplifyMeters, DFT_SIMPLIFY_METERS) : 
+            DFT_SIMPLIFY_METERS;
+
         /* placemarks */
         if (!ListTools.isEmpty(devList)) {
             java.util.List<String> routeList = new Vector<String>();
+            int flushCount = EventDataCursor.GetPageSize();
             for (Device dev : devList) {
                 String deviceID = dev.getDeviceID();
                 routeList.clear();
@@ -445,11 +467,14 @@ public class GoogleKML
                 }
     
                 /* write event placemarks */
-                EventData evList[] = dev.getSavedRangeEvents();
-                if (!ListTools.isEmpty(evList)) {
-                    for (int e = 0; e < evList.length; e++) {
-                        EventData ev = evList[e];
-                        boolean isLast = (e == (evList.length - 1));
+                // (only the simplified route coordinates are retained while streaming events)
+                RouteSimplifier.Window route = new RouteSimplifier.Window(simplifyM, flushCount);
+                Iterator<EventData> evIter = dev.getSavedRangeEventIterator();
+                if (evIter != null) {
+                    long evCount = 0L;
+                    while (evIter.hasNext()) {
+                        EventData ev = evIter.next();
+                        boolean isLast = !evIter.hasNext();
         
                         /* same account? */
                         if (!ev.getAccountID().equals(accountID)) {
@@ -459,16 +484,25 @@ public class GoogleKML
                         ev.setAccount(account); // redundant
         
                         /* write marker */
-                        String pc = this._writePlacemark(out, i18n, privLabel, ev, isLast, useLastPP, 4);
-                        routeList.add(pc);
+                        this._writePlacemark(out, i18n, privLabel, ev, isLast, useLastPP, 4);
+                        for (EventData rev : route.add(ev)) {
+                            routeList.add(GoogleKML._getCoordinates(rev));
+                        }
+                        if ((++evCount % flushCount) == 0L) {
+                            out.flush();
+                        }
         
                     }
                 }
+                for (EventData rev : route.finish()) {
+                    routeList.add(GoogleKML._getCoordinates(rev));
+                }
     
                 /* draw device route */
                 if (routeList.size() > 1) {
                     this._writeRoute(out, i18n, privLabel, deviceID, routeList, 4);
                 }
+                out.flush();
     
             }
         }
@@ -0,0 +1,450 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Route (EventData track) simplification
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Route (EventData track) simplification.<br>
+*** Removes redundant (nearly collinear) route points using the Douglas-Peucker algorithm,
+*** while always retaining "significant" events: the first and last events, events with
+*** a status code other than a periodic location/in-motion code, the first event of each
+*** stop and of each subsequent start, geozone transitions, and events without a valid
+*** GPS location.  The track between consecutive significant events is simplified
+*** independently.<br>
+*** Rather than simplifying for a single tolerance, each event is assigned an "importance"
+*** (the Douglas-Peucker deviation, in meters, at which the event is retained).  The route
+*** for any tolerance is then the events whose importance is at least the tolerance, so
+*** that a single pass supports a zoom-level "pyramid" (see "getMinimumZoom") from which a
+*** replay may be progressively refined.
+**/
+
+public class RouteSimplifier
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final double DFT_PIXEL_TOLERANCE         = 1.0;
+
+    public  static final int    MIN_ZOOM                    = 0;
+    public  static final int    MAX_ZOOM                    = 22;
+
+    /* meters per pixel at the equator at zoom level 0 (256 pixel Mercator tiles) */
+    private static final double EQUATOR_METERS_PER_PIXEL    = 156543.03392;
+
+    private static final double SIGNIFICANT                 = Double.MAX_VALUE;
+
+    /**
+    *** Returns the simplification tolerance, in meters, for the specified map zoom level
+    *** @param zoom       The map zoom level
+    *** @param latitude   The latitude of the displayed route
+    *** @param pixelTol   The tolerance in pixels
+    *** @return The tolerance in meters
+    **/
+    public static double GetToleranceMeters(int zoom, double latitude, double pixelTol)
+    {
+        int z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        double mpp = EQUATOR_METERS_PER_PIXEL * Math.cos(Math.toRadians(latitude)) / (double)(1L << z);
+        return mpp * ((pixelTol > 0.0)? pixelTol : DFT_PIXEL_TOLERANCE);
+    }
+
+    /**
+    *** Returns true if the specified status code is a periodic location/in-motion code,
+    *** which may be removed from a simplified route
+    *** @param code  The status code
+    *** @return True if the status code may be removed
+    **/
+    public static boolean IsTrivialStatusCode(int code)
+    {
+        if (StatusCodes.IsLocation(code)) {
+            return true;
+        }
+        switch (code) {
+            case StatusCodes.STATUS_NONE            :
+            case StatusCodes.STATUS_MOTION_IN_MOTION:
+            case StatusCodes.STATUS_MOTION_MOVING   :
+            case StatusCodes.STATUS_MOTION_HEADING  :
+                return true;
+        }
+        return false;
+    }
+
+    /**
+    *** Returns true if the specified event must be retained in a simplified route
+    *** @param ev    The event
+    *** @param prev  The previous event (null if this is the first event)
+    *** @return True if the event is significant
+    **/
+    public static boolean IsSignificant(EventData ev, EventData prev)
+    {
+        if (prev == null) {
+            // first event
+            return true;
+        } else
+        if (!ev.isValidGeoPoint() || !prev.isValidGeoPoint()) {
+            // no GPS location
+            return true;
+        } else
+        if (!RouteSimplifier.IsTrivialStatusCode(ev.getStatusCode())) {
+            // status code event (includes geozone arrive/depart)
+            return true;
+        } else
+        if ((ev.getSpeedKPH() <= 0.0) != (prev.getSpeedKPH() <= 0.0)) {
+            // stopped, or started
+            return true;
+        } else
+        if (!ev.getGeozoneID().equals(prev.getGeozoneID())) {
+            // geozone transition
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the distance, in meters, from point P to the segment A-B (using a local
+    *** equirectangular projection, which is accurate for the short segments of a route)
+    **/
+    private static double _distanceToSegmentMeters(
+        double pLat, double pLon,
+        double aLat, double aLon,
+        double bLat, double bLon)
+    {
+        double cosLat = Math.cos(Math.toRadians(aLat));
+        double mpd    = Math.toRadians(1.0) * GeoPoint.EARTH_MEAN_RADIUS_METERS; // meters per degree
+        double bx = (bLon - aLon) * cosLat * mpd, by = (bLat - aLat) * mpd;
+        double px = (pLon - aLon) * cosLat * mpd, py = (pLat - aLat) * mpd;
+        double len2 = (bx * bx) + (by * by);
+        if (len2 > 0.0) {
+            double t = ((px * bx) + (py * by)) / len2;
+            t = Math.max(0.0, Math.min(1.0, t));
+            px -= t * bx;
+            py -= t * by;
+        }
+        return Math.sqrt((px * px) + (py * py));
+    }
+
+    // ------------------------------------------------------------------------
+
+    private java.util.List<EventData>   events          = null;
+    private double                      importance[]    = null;
+    private long                        elapsedNS       = 0L;
+
+    /**
+    *** Constructor.  Computes the importance of each event in the specified route.
+    *** @param events  The route events, in ascending time order
+    **/
+    public RouteSimplifier(java.util.List<EventData> events)
+    {
+        long startNS = System.nanoTime();
+        this.events     = (events != null)? events : new Vector<EventData>();
+        this.importance = new double[this.events.size()];
+        this._computeImportance();
+        this.elapsedNS  = System.nanoTime() - startNS;
+    }
+
+    /**
+    *** Constructor.  Computes the importance of each event in the specified route.
+    *** @param events  The route events, in ascending time order
+    **/
+    public RouteSimplifier(EventData events[])
+    {
+        this((events != null)? Arrays.asList(events) : null);
+    }
+
+    /**
+    *** Assigns the Douglas-Peucker importance of each event
+    **/
+    private void _computeImportance()
+    {
+        int n = this.events.size();
+        if (n == 0) {
+            return;
+        }
+
+        /* significant events */
+        double lat[] = new double[n];
+        double lon[] = new double[n];
+        EventData prev = null;
+        for (int i = 0; i < n; i++) {
+            EventData ev = this.events.get(i);
+            lat[i] = ev.getLatitude();
+            lon[i] = ev.getLongitude();
+            this.importance[i] = (RouteSimplifier.IsSignificant(ev,prev) || (i == (n - 1)))? SIGNIFICANT : 0.0;
+            prev = ev;
+        }
+
+        /* Douglas-Peucker between consecutive significant events */
+        // a point's importance is limited by the importance of its enclosing segment, so
+        // that the importance decreases monotonically with the recursion depth
+        java.util.List<int[]> stack = new Vector<int[]>();
+        int a = 0;
+        for (int b = 1; b < n; b++) {
+            if (this.importance[b] == SIGNIFICANT) {
+                if ((b - a) > 1) {
+                    stack.add(new int[] { a, b });
+                }
+                a = b;
+            }
+        }
+        while (!stack.isEmpty()) {
+            int seg[] = stack.remove(stack.size() - 1);
+            int s = seg[0], e = seg[1];
+            double maxD = -1.0;
+            int    maxI = -1;
+            for (int i = s + 1; i < e; i++) {
+                double d = _distanceToSegmentMeters(lat[i], lon[i], lat[s], lon[s], lat[e], lon[e]);
+                if (d > maxD) {
+                    maxD = d;
+                    maxI = i;
+                }
+            }
+            double limit = Math.min(this.importance[s], this.importance[e]);
+            this.importance[maxI] = Math.min(maxD, limit);
+            if ((maxI - s) > 1) { stack.add(new int[] { s, maxI }); }
+            if ((e - maxI) > 1) { stack.add(new int[] { maxI, e }); }
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of events in the route
+    *** @return The number of events
+    **/
+    public int size()
+    {
+        return this.events.size();
+    }
+
+    /**
+    *** Gets the time taken to compute the event importance
+    *** @return The elapsed time in milliseconds
+    **/
+    public double getElapsedMS()
+    {
+        return (double)this.elapsedNS / 1000000.0;
+    }
+
+    /**
+    *** Gets the importance of the specified event: the largest tolerance, in meters, at
+    *** which the event is retained
+    *** @param ndx  The event index
+    *** @return The event importance (Double.MAX_VALUE for significant events)
+    **/
+    public double getImportance(int ndx)
+    {
+        return this.importance[ndx];
+    }
+
+    /**
+    *** Gets the lowest zoom level at which the specified event is displayed
+    *** @param ndx       The event index
+    *** @param pixelTol  The tolerance in pixels
+    *** @return The lowest zoom level (0 for significant events)
+    **/
+    public int getMinimumZoom(int ndx, double pixelTol)
+    {
+        double imp = this.importance[ndx];
+        if (imp == SIGNIFICANT) {
+            return MIN_ZOOM;
+        }
+        double lat = this.events.get(ndx).getLatitude();
+        for (int z = MIN_ZOOM; z < MAX_ZOOM; z++) {
+            if (RouteSimplifier.GetToleranceMeters(z, lat, pixelTol) <= imp) {
+                return z;
+            }
+        }
+        return MAX_ZOOM;
+    }
+
+    /**
+    *** Returns the events retained at the specified tolerance
+    *** @param toleranceM  The tolerance in meters (&lt;=0 to return all events)
+    *** @return The list of retained events
+    **/
+    public java.util.List<EventData> simplify(double toleranceM)
+    {
+        long startNS = System.nanoTime();
+        java.util.List<EventData> list = new Vector<EventData>();
+        for (int i = 0; i < this.importance.length; i++) {
+            if ((toleranceM <= 0.0) || (this.importance[i] >= toleranceM)) {
+                list.add(this.events.get(i));
+            }
+        }
+        long elapsedNS = this.elapsedNS + (System.nanoTime() - startNS);
+        RouteSimplifier._recordStats(this.importance.length, list.size(), elapsedNS);
+        return list;
+    }
+
+    /**
+    *** Returns the events displayed at the specified zoom level
+    *** @param zoom      The map zoom level
+    *** @param pixelTol  The tolerance in pixels
+    *** @return The list of retained events
+    **/
+    public java.util.List<EventData> simplifyForZoom(int zoom, double pixelTol)
+    {
+        if (this.events.isEmpty()) {
+            return new Vector<EventData>();
+        }
+        double lat = this.events.get(this.events.size() / 2).getLatitude();
+        return this.simplify(RouteSimplifier.GetToleranceMeters(zoom, lat, pixelTol));
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Records/logs the simplification statistics
+    **/
+    private static void _recordStats(int countIn, int countOut, long elapsedNS)
+    {
+        Metrics.Add("route.simplify.pointsIn" , countIn);
+        Metrics.Add("route.simplify.pointsOut", countOut);
+        if (Metrics.IsEnabled()) {
+            Metrics.GetHistogram("route.simplify").record(elapsedNS / 1000L);
+        }
+        if (countIn > 0) {
+            Print.logDebug("Route simplified: %d ==> %d points (%.1f%% removed) in %.2f ms",
+                countIn, countOut, (100.0 * (countIn - countOut)) / countIn, elapsedNS / 1000000.0);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Simplifies a streamed route, one window of events at a time.<br>
+    *** Events are added in ascending time order, and each full window of events is simplified
+    *** (the last retained event of each window begins the next window), so that a streamed
+    *** route (ie. from an EventDataCursor) is simplified while holding at most one window of
+    *** events.
+    **/
+    public static class Window
+    {
+        private double                      toleranceM  = 0.0;
+        private int                         size        = 3;
+        private java.util.List<EventData>   buffer      = new Vector<EventData>();
+        /**
+        *** Constructor
+        *** @param toleranceM  The tolerance in meters (&lt;=0 for no simplification)
+        *** @param windowSize  The number of events simplified at a time
+        **/
+        public Window(double toleranceM, int windowSize) {
+            this.toleranceM = toleranceM;
+            this.size       = Math.max(windowSize, 3);
+        }
+        /**
+        *** Adds the next route event
+        *** @param ev  The event
+        *** @return The events retained from the completed window (empty if the window is not complete)
+        **/
+        public java.util.List<EventData> add(EventData ev) {
+            this.buffer.add(ev);
+            if ((this.toleranceM > 0.0) && (this.buffer.size() < this.size)) {
+                return new Vector<EventData>();
+            }
+            return this._simplifyBuffer(true);
+        }
+        /**
+        *** Completes the route
+        *** @return The events retained from the remaining events
+        **/
+        public java.util.List<EventData> finish() {
+            return this._simplifyBuffer(false);
+        }
+        private java.util.List<EventData> _simplifyBuffer(boolean more) {
+            if (this.buffer.isEmpty()) {
+                return new Vector<EventData>();
+            } else
+            if (this.toleranceM <= 0.0) {
+                java.util.List<EventData> all = new Vector<EventData>(this.buffer);
+                this.buffer.clear();
+                return all;
+            }
+            java.util.List<EventData> kept = new RouteSimplifier(this.buffer).simplify(this.toleranceM);
+            this.buffer.clear();
+            if (more && (kept.size() > 1)) {
+                // carry the last retained event to the next window
+                this.buffer.add(kept.remove(kept.size() - 1));
+            }
+            return kept;
+        }
+    }
+
+    /**
+    *** Returns an iterator over the simplified events of the specified event iterator
+    *** (see "RouteSimplifier.Window")
+    *** @param source      The source event iterator, in ascending time order
+    *** @param toleranceM  The tolerance in meters (&lt;=0 for no simplification)
+    *** @param windowSize  The number of events simplified at a time
+    *** @return The simplified event iterator
+    **/
+    public static Iterator<EventData> SimplifyIterator(
+        final Iterator<EventData> source,
+        final double toleranceM,
+        final int windowSize)
+    {
+        if ((source == null) || (toleranceM <= 0.0)) {
+            return source;
+        }
+        return new Iterator<EventData>() {
+            private Window                    window   = new Window(toleranceM, windowSize);
+            private java.util.List<EventData> output   = new LinkedList<EventData>();
+            private boolean                   finished = false;
+            public boolean hasNext() {
+                while (this.output.isEmpty()) {
+                    if (source.hasNext()) {
+                        this.output.addAll(this.window.add(source.next()));
+                    } else
+                    if (!this.finished) {
+                        this.finished = true;
+                        this.output.addAll(this.window.finish());
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            public EventData next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.output.remove(0);
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
@@ -110,6 +110,8 @@
 //  2013/08/06  Martin D. Flynn
 //     -Added FLD_allowNotify
 //     -Added "-setPassword=" command-line option.
+//  2026/10/19
+//     -"getAccount" now reads through the record cache (see DBFactory.getCachedRecord)
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -1029,6 +1031,7 @@ public class Account
                 Account.class, 
                 Account.Key.class,
                 true/*editable*/, true/*viewable*/);
+            factory.setRecordCacheable(true);
         }
         return factory;
     }
@@ -3261,13 +3264,9 @@ public class Account
             // invalid AccountID specified
             return null;
         } else {
+            // null if Account does not exist
             Account.Key key = new Account.Key(acctID);
-            if (key.exists()) {
-                return key.getDBRecord(true);
-            } else {
-                // Account does not exist
-                return null;
-            }
+            return Account.getFactory().getCachedRecord(key);
         }
     }
 
@@ -181,6 +181,14 @@
 //  2013/08/06  Martin D. Flynn
 //     -Added FLD_lastEngineOnTime/FLD_lastEngineOffTime
 //     -Support engine-hour accumulation based on Engine On/Off events.
+//  2026/10/19
+//     -Maintain the Trip table on motion start/stop (see "Trip.enable")
+//     -Added "GetMotionChange" (start/stop determination shared with the Trip table)
+//     -"getDevice" now reads through the record cache, if enabled for Device
+//     -"insertEventData" appends to the DCS write-ahead spool, if started (see "EventSpool")
+//     -DCS sessions may use a detached copy of the owned Device (see "DeviceEventOwner")
+//     -"deleteEventsPriorTo" deletes from the EventData shard (and mirror) of this Device
+//     -Added "addChangedFields" (restores detached-copy changes not applied by the owner)
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -1497,6 +1505,7 @@ public class Device // Asset
                 Device.Key.class,
                 true/*editable*/, true/*viewable*/);
             factory.addParentTable(Account.TABLE_NAME());
+            factory.setRecordCacheable(true); // enabled only if listed in "db.cache.tables"
             factory.setLogMissingColumnWarnings(RTConfig.getBoolean(DBConfig.PROP_Device_logMissingColumns,true));
             // FLD_lastFaultCode max length
             DBField lastFCFld = factory.getField(FLD_lastFaultCode);
@@ -4567,6 +4576,20 @@ public class Device // Asset
     *** @return A list of Geozone transitions, or null if no transition occurred.
     **/
     public java.util.List<GeozoneTransition> checkGeozoneTransitions(long eventTime, GeoPoint eventGP)
+    {
+        long metricsNS = Metrics.StartTimer();
+        java.util.List<GeozoneTransition> geoTrans = this._checkGeozoneTransitions(eventTime, eventGP);
+        Metrics.RecordElapsed("event.geozone", metricsNS);
+        return geoTrans;
+    }
+
+    /**
+    *** Checks the new event time and GeoPoint for Geozone transitions
+    *** @param eventTime  The tie of the event
+    *** @param eventGP    The new event location
+    *** @return A list of Geozone transitions, or null if no transition occurred.
+    **/
+    private java.util.List<GeozoneTransition> _checkGeozoneTransitions(long eventTime, GeoPoint eventGP)
     {
 
         /* invalid point? */
@@ -8014,6 +8037,19 @@ public class Device // Asset
 
     }
 
+    private boolean insertSaveFailed = false;
+
+    /**
+    *** Returns true if the last call to "insertEventData" failed because the EventData
+    *** record could not be saved (ie. the database is unavailable), rather than because
+    *** the event was ignored
+    *** @return True if the last event insertion failed to save the event
+    **/
+    public boolean isInsertSaveFailed()
+    {
+        return this.insertSaveFailed;
+    }
+
     /** 
     *** Insert event into EventData table
     *** @param evdb  The EventData record to insert
@@ -8022,6 +8058,24 @@ public class Device // Asset
     public boolean insertEventData(EventData evdb)
     {
 
+        /* write-ahead spool (inserted later, in order, by the spool drainer) */
+        DeviceEventOwner owner = DeviceEventOwner.getOwner(this);
+        if (((owner == null) || !owner.isOwnerThread()) && !EventSpool.IsDrainerThread()) {
+            EventSpool spool = EventSpool.GetInstance();
+            if ((spool != null) && (evdb != null) && spool.append(evdb)) {
+                return true;
+            }
+            // spool not started, or not writable: insert now
+        }
+
+        /* process in order on the owning lane, against the owned Device instance */
+        if ((owner != null) && (!owner.isOwnerThread() || this.isSessionCopy())) {
+            int rc = owner.insertEventData(this, evdb);
+            this.insertSaveFailed = (rc == DeviceEventOwner.INSERT_FAILED);
+            return (rc == DeviceEventOwner.INSERT_OK);
+        }
+        this.insertSaveFailed = false;
+
         /* log event insertion */
         if (Device.LogEventDataInsertion >= Print.LOG_WARN) {
             // LOG_WARN, LOG_INFO, LOG_DEBUG
@@ -8029,11 +8083,17 @@ public class Device // Asset
         }
 
         /* insert event */
+        long metricsNS = Metrics.StartTimer();
         if (!this._insertEventData(evdb)) {
-            // event was ignored
+            // event was ignored, or could not be saved
+            Metrics.RecordElapsed(this.insertSaveFailed? "event.insert.failed" : "event.insert.ignored", metricsNS);
             Print.logWarn("Event not inserted ...");
             return false;
         }
+        Metrics.RecordElapsed("event.insert", metricsNS);
+
+        /* live tracking subscribers */
+        EventBus.Publish(evdb);
 
         /* status code */
         int sc = evdb.getStatusCode();
@@ -8066,6 +8126,44 @@ public class Device // Asset
         return true;
     }
 
+    /* motion change states */
+    public static final int MOTION_MOVING   = 0;    // continue "moving"
+    public static final int MOTION_STOPPED  = 1;    // continue "stopped"
+    public static final int MOTION_START    = 2;    // now "moving" (was "stopped", or undefined)
+    public static final int MOTION_STOP     = 3;    // now "stopped" (was "moving", or undefined)
+
+    /**
+    *** Determines the motion change of the specified event, given the last start/stop times.
+    *** This is the start/stop determination used by <code>insertEventData</code> (and by the
+    *** Trip table, which is derived from the same start/stop transitions).
+    *** @param lastStartTime  The last "start" time (may be '0' if uninitialized)
+    *** @param lastStopTime   The last "stop" time (may be '0' if uninitialized)
+    *** @param ev             The event
+    *** @return The motion change (MOTION_MOVING, MOTION_STOPPED, MOTION_START, MOTION_STOP)
+    **/
+    public static int GetMotionChange(long lastStartTime, long lastStopTime, EventData ev)
+    {
+        if (lastStartTime > lastStopTime) {
+            // last state was "moving"
+            return ev.isStopEvent(true)? MOTION_STOP : MOTION_MOVING;
+        } else
+        if (lastStopTime > lastStartTime) {
+            // last state was "stopped"
+            return ev.isStartEvent(true)? MOTION_START : MOTION_STOPPED;
+        } else
+        if (ev.isStopEvent(true)) {
+            // undefined lastStopTime/lastStartTime, is "stopped"
+            return MOTION_STOP;
+        } else
+        if (ev.isStartEvent(true)) {
+            // undefined lastStopTime/lastStartTime, is "moving"
+            return MOTION_START;
+        } else {
+            // undefined lastStopTime/lastStartTime, check speed only
+            return (ev.getSpeedKPH() <= 0.0)? MOTION_STOP : MOTION_START;
+        }
+    }
+
     /**
     *** Insert event into EventData table
     *** @param evdb  The EventData record to insert
@@ -8076,6 +8174,7 @@ public class Device // Asset
         // Notes:
         // 1) This incoming EventData record is populated, but hasn't been saved
         // 2) This Device record at this point _should_ still contain old/last field values
+        long    metricsNS = Metrics.StartTimer();
         Account account = this.getAccount();
         String  acctID  = this.getAccountID();
         String  devID   = this.getDeviceID();
@@ -8223,6 +8322,9 @@ public class Device // Asset
             return true;
         }
 
+        /* validation complete */
+        Metrics.RecordElapsed("event.validate", metricsNS);
+
         /* extended EventData record update */
         int extUpdate = EXT_UPDATE_NONE;
 
@@ -8266,6 +8368,7 @@ public class Device // Asset
         }
 
         /* set geozone/reverse-geocode address */
+        metricsNS = Metrics.StartTimer();
         try {
             Set<String> updFields = evdb.updateAddress(true/*fastOnly*/);
             if (updFields != null) {
@@ -8287,6 +8390,7 @@ public class Device // Asset
         } catch (Throwable th) {
             Print.logException("Address update error", th);
         }
+        Metrics.RecordElapsed("event.reverseGeocode", metricsNS);
 
         /* stateline border-crossing check */
         //if (this.getBorderCrossing() == Device.BorderCrossingState.ON.getIntValue()) {
@@ -8299,21 +8403,15 @@ public class Device // Asset
         long lastStartTime = this.getLastStartTime(); // may be '0' if uninitialized
         long nextStopTime  = 0L;
         long nextStartTime = 0L;
-        if ((lastStartTime > lastStopTime)/* && (eventTime > lastStartTime)*/) {
-            // last state was "moving"
-            if (evdb.isStopEvent(true)) {
-                // was "moving", now "stopped"
+        int  motionChange  = Device.GetMotionChange(lastStartTime, lastStopTime, evdb);
+        switch (motionChange) {
+            case MOTION_STOP:
+                // was "moving" (or undefined), now "stopped"
                 evdb.setStopped(true);
                 nextStopTime = eventTime;
-            } else {
-                // continue "moving"
-                evdb.setStopped(false);
-            }
-        } else
-        if ((lastStopTime > lastStartTime)/* && (eventTime > lastStopTime)*/) {
-            // last state was "stopped"
-            if (evdb.isStartEvent(true)) {
-                // was "stopped", now "moving"
+                break;
+            case MOTION_START:
+                // was "stopped" (or undefined), now "moving"
                 /*
                 if (!isOldEvent && AUTO_GENERATE_NON_MOVING_EVENT && 
                     ((eventTime - lastEventTime) < MAX_STOPPED_DELTA_SEC)) {
@@ -8333,33 +8431,15 @@ public class Device // Asset
                 */
                 evdb.setStopped(false);
                 nextStartTime = eventTime;
-            } else {
+                break;
+            case MOTION_STOPPED:
                 // continue "stopped"
                 evdb.setStopped(true);
-            }
-        } else {
-            // undefined lastStopTime/lastStartTime
-            if (evdb.isStopEvent(true)) {
-                // is "stopped"
-                evdb.setStopped(true);
-                nextStopTime = eventTime;
-            } else
-            if (evdb.isStartEvent(true)) {
-                // is "moving"
+                break;
+            default:
+                // continue "moving"
                 evdb.setStopped(false);
-                nextStartTime = eventTime;
-            } else {
-                // check speed only
-                if (evdb.getSpeedKPH() <= 0.0) {
-                    // assume "stopped"
-                    evdb.setStopped(true);
-                    nextStopTime = eventTime;
-                } else {
-                    // assume "moving"
-                    evdb.setStopped(false);
-                    nextStartTime = eventTime;
-                }
-            }
+                break;
         }
 
         /* last digital input? */
@@ -8544,14 +8624,17 @@ public class Device // Asset
         // ---------------------------------------------------------------------
 
         /* save EventData record */
+        metricsNS = Metrics.StartTimer();
         try {
             evdb.save(); // insert();
             // may be re-saved below after deferred reverse-geocode
         } catch (DBException dbe) {
             // save failed
             Print.logError("EventData save failed: " + dbe);
+            this.insertSaveFailed = true;
             return false;
         }
+        Metrics.RecordElapsed("event.dbWrite", metricsNS);
 
         /* background processes */
         if (extUpdate != EXT_UPDATE_NONE) {
@@ -8574,11 +8657,13 @@ public class Device // Asset
 
         /* check rules */
         // "checkEventRules" may recursively call "_insertEventData"
+        metricsNS = Metrics.StartTimer();
         if (this.checkEventRules(evdb)) { 
             // Fields may have changed: (NOTE: not yet saved)
             //   FLD_lastNotifyTime
             //   FLD_lastNotifyCode
         }
+        Metrics.RecordElapsed("event.rules", metricsNS);
 
         // ---------------------------------------------------------------------
         // Device record can now be updated
@@ -8609,6 +8694,31 @@ public class Device // Asset
             this.setLastStartTime(nextStartTime);               // FLD_lastStartTime
         }
 
+        /* trip segments */
+        if (!isOldEvent && Trip.IsEnabled()) {
+            if ((motionChange == MOTION_START) && (lastStartTime <= lastStopTime)) {
+                // was "stopped" (or undefined), now "moving"
+                Trip.tripStarted(evdb);
+            } else
+            if ((motionChange == MOTION_STOP) && (lastStartTime > lastStopTime)) {
+                // was "moving", now "stopped": complete trip from the trip events
+                // (in the background, from the IDs and a copy of the stop event, since this Device
+                // and event continue to be updated by this thread)
+                final String    tripAcctID    = acctID;
+                final String    tripDevID     = devID;
+                final long      tripStartTime = lastStartTime;
+                final EventData stopEv        = Trip.copyEvent(evdb);
+                if (stopEv != null) {
+                    Runnable job = new Runnable() {
+                        public void run() {
+                            Trip.tripStopped(tripAcctID, tripDevID, tripStartTime, stopEv);
+                        }
+                    };
+                    BackgroundThreadPool.run(job);
+                }
+            }
+        }
+
         /* malfunction-indicator-lamp (MIL) */
         if (evdb.hasMalfunctionLamp()) {
             // sets Device last MIL if it was explicitly set in EventData
@@ -8797,7 +8907,9 @@ public class Device // Asset
 
         /* cell tower GPS location */
         if ((extUpdate & EXT_UPDATE_CELLGPS) != 0) {
+            long metricsNS = Metrics.StartTimer();
             Set<String> updf = evdb.updateCellTowerLocation();
+            Metrics.RecordElapsed("event.cellLookup", metricsNS);
             if (updf != null) {
                 // MobileLocation was successful (but may not have returned a valid location)
                 if (updatedEvFields == null) { updatedEvFields = new HashSet<String>(); }
@@ -8821,6 +8933,7 @@ public class Device // Asset
 
         /* address */
         if ((extUpdate & EXT_UPDATE_ADDRESS) != 0) {
+            long metricsNS = Metrics.StartTimer();
             try {
                 Set<String> updf = evdb.updateAddress(false/*!fastOnly*/);
                 if (updf != null) {
@@ -8830,6 +8943,7 @@ public class Device // Asset
             } catch (SlowOperationException soe) {
                 // this will not occur ('fastOnly' is false)
             }
+            Metrics.RecordElapsed("event.reverseGeocodeSlow", metricsNS);
         }
 
         /* stateline border-crossing check here */
@@ -9005,7 +9119,6 @@ public class Device // Asset
 
         /* delete all EventData entries prior to the specified date */
         // [DELETE FROM EventData WHERE accountID='account' and deviceID='device' and timestamp<priorToTime]
-        DBConnection dbc = null;
         try {
             DBDelete edel = new DBDelete(EventData.getFactory());
             DBWhere  ewh  = edel.createDBWhere();
@@ -9017,12 +9130,9 @@ public class Device // Asset
                 )
             ));
             Print.logInfo("EventData delete command: " + edel);
-            dbc = DBConnection.getDefaultConnection();
-            dbc.executeUpdate(edel.toString());
+            EventData._executeShardUpdate(this.getAccountID(), this.getDeviceID(), edel.toString());
         } catch (SQLException sqe) {
             throw new DBException("Deleting EventData records", sqe);
-        } finally {
-            DBConnection.release(dbc);
         }
 
         /* number of records deleted (or supposed to have been deleted) */
@@ -9204,7 +9314,7 @@ public class Device // Asset
     public void updateChangedEventFields()
         throws DBException
     {
-        this.update(_createChangedFieldsSet((String[])null));
+        this.updateChangedEventFields((Set<String>)null);
     }
 
     /**
@@ -9214,6 +9324,13 @@ public class Device // Asset
     public void updateChangedEventFields(Set<String> flds)
         throws DBException
     {
+        DeviceEventOwner owner = DeviceEventOwner.getOwner(this);
+        if ((owner != null) && (!owner.isOwnerThread() || this.isSessionCopy())) {
+            if (!owner.updateChangedEventFields(this, flds)) {
+                throw new DBException("Device owner update failed: " + this.getAccountID() + "/" + this.getDeviceID());
+            }
+            return;
+        }
         this.update(_createChangedFieldsSet(flds));
     }
 
@@ -9224,7 +9341,246 @@ public class Device // Asset
     public void updateChangedEventFields(String... flds)
         throws DBException
     {
-        this.update(_createChangedFieldsSet(flds));
+        this.updateChangedEventFields((flds != null)? ListTools.toSet(flds,null) : (Set<String>)null);
+    }
+
+    // --------------------------------
+
+    private Set<String> writeBehindFieldSet = null;
+
+    /**
+    *** Enables/Disables tracking of changed fields for deferred (write-behind) updates.<br>
+    *** While enabled, fields changed via "setChanged" are accumulated until written by
+    *** "flushChangedFields", or by any other update which includes them.
+    *** @param enable  True to enable changed field tracking
+    **/
+    public void setWriteBehind(boolean enable)
+    {
+        if (!enable) {
+            this.writeBehindFieldSet = null;
+        } else
+        if (this.writeBehindFieldSet == null) {
+            this.writeBehindFieldSet = new HashSet<String>();
+        }
+    }
+
+    /**
+    *** Returns true if changed field tracking is enabled for deferred updates
+    *** @return True if write-behind is enabled
+    **/
+    public boolean isWriteBehind()
+    {
+        return (this.writeBehindFieldSet != null);
+    }
+
+    /**
+    *** Sets the 'changed' state of this record, and records the changed field
+    *** for deferred write-back (if enabled)
+    *** @param fieldName  The changed field
+    **/
+    public void setChanged(String fieldName)
+    {
+        super.setChanged(fieldName);
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if ((wbSet != null) && (fieldName != null) && !this.suspendWriteBehind) {
+            synchronized (wbSet) {
+                wbSet.add(fieldName);
+            }
+        }
+    }
+
+    /**
+    *** Updates the specified fields in this Device record, and removes them from the
+    *** set of fields pending deferred write-back
+    *** @param updFldSet  A Set of fields to update (null to update all fields)
+    *** @throws DBException if a database error occurs.
+    **/
+    public void update(Set<String> updFldSet)
+        throws DBException
+    {
+        super.update(updFldSet);
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if ((wbSet != null) && !this.isSessionCopy()) {
+            // (session copies retain written fields, so that they are also applied to the owned instance)
+            synchronized (wbSet) {
+                if (updFldSet == null) {
+                    wbSet.clear();
+                } else {
+                    wbSet.removeAll(updFldSet);
+                }
+            }
+        }
+    }
+
+    /**
+    *** Returns true if there are changed fields pending deferred write-back
+    *** @return True if there are pending changed fields
+    **/
+    public boolean hasChangedFields()
+    {
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if (wbSet == null) {
+            return false;
+        }
+        synchronized (wbSet) {
+            return !wbSet.isEmpty();
+        }
+    }
+
+    /**
+    *** Writes only those fields which have changed since the last update
+    *** (requires write-behind to be enabled)
+    *** @return The number of fields written (0 if nothing has changed)
+    *** @throws DBException if a database error occurs.
+    **/
+    public int flushChangedFields()
+        throws DBException
+    {
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if (wbSet == null) {
+            return 0;
+        }
+        Set<String> updFlds;
+        synchronized (wbSet) {
+            if (wbSet.isEmpty()) {
+                return 0;
+            }
+            updFlds = new HashSet<String>(wbSet);
+        }
+        int count = updFlds.size();
+        this.update(updFlds);
+        return count;
+    }
+
+    /**
+    *** Adds the specified fields to the set of tracked changed fields (ie. to restore
+    *** fields returned by "removeChangedFields" which could not be applied)
+    *** @param flds  The changed fields
+    **/
+    public void addChangedFields(Set<String> flds)
+    {
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if ((wbSet == null) || ListTools.isEmpty(flds)) {
+            return;
+        }
+        synchronized (wbSet) {
+            wbSet.addAll(flds);
+        }
+    }
+
+    /**
+    *** Returns the fields changed since the last call to this method, and clears the
+    *** set of tracked changed fields (requires write-behind to be enabled)
+    *** @return The set of changed fields (empty if nothing has changed)
+    **/
+    public Set<String> removeChangedFields()
+    {
+        Set<String> wbSet = this.writeBehindFieldSet;
+        if (wbSet == null) {
+            return new HashSet<String>();
+        }
+        synchronized (wbSet) {
+            Set<String> chgFlds = new HashSet<String>(wbSet);
+            wbSet.clear();
+            return chgFlds;
+        }
+    }
+
+    // --------------------------------
+
+    private DeviceEventOwner eventOwner = null;
+    private boolean sessionCopy = false;
+    private boolean suspendWriteBehind = false;
+
+    /**
+    *** Sets the event owner for this Device instance
+    *** @param owner        The event owner
+    *** @param sessionCopy  True if this instance is a DCS session copy of the owned instance
+    **/
+    public void setEventOwner(DeviceEventOwner owner, boolean sessionCopy)
+    {
+        this.eventOwner  = owner;
+        this.sessionCopy = sessionCopy;
+    }
+
+    /**
+    *** Gets the event owner for this Device instance
+    *** @return The event owner, or null if this instance is not owned
+    **/
+    public DeviceEventOwner getEventOwner()
+    {
+        return this.eventOwner;
+    }
+
+    /**
+    *** Returns true if this instance is a DCS session copy of an owned Device
+    *** @return True if this instance is a session copy
+    **/
+    public boolean isSessionCopy()
+    {
+        return this.sessionCopy;
+    }
+
+    /**
+    *** Returns a copy of the specified field values
+    *** @param flds  The fields to copy (null for all non-key fields)
+    *** @return A map of field names to values
+    **/
+    public Map<String,Object> getFieldValueSnapshot(Set<String> flds)
+    {
+        Map<String,Object> valMap = new HashMap<String,Object>();
+        DBFieldValues fv = this.getRecordKey().getFieldValues();
+        for (DBField fld : this.getRecordKey().getFields()) {
+            String name = fld.getName();
+            if (fld.isPrimaryKey() || ((flds != null) && !flds.contains(name))) {
+                continue;
+            }
+            Object val = fv.getOptionalFieldValue(name);
+            if (val instanceof byte[]) {
+                val = ((byte[])val).clone();
+            }
+            valMap.put(name, val);
+        }
+        return valMap;
+    }
+
+    /**
+    *** Sets the field values from the specified map
+    *** @param valMap  A map of field names to values
+    *** @param track   True to track the set fields as changed for deferred write-back
+    **/
+    public void setFieldValueSnapshot(Map<String,Object> valMap, boolean track)
+    {
+        if (valMap == null) {
+            return;
+        }
+        DBFieldValues fv = this.getRecordKey().getFieldValues();
+        this.suspendWriteBehind = !track;
+        try {
+            for (Map.Entry<String,Object> e : valMap.entrySet()) {
+                fv.setOptionalFieldValue(e.getKey(), e.getValue());
+            }
+        } finally {
+            this.suspendWriteBehind = false;
+        }
+    }
+
+    /**
+    *** Returns a detached copy of this Device.<br>
+    *** The copy shares this Device's Account instance, and holds its own copy of the
+    *** Transport (if any).
+    *** @return The Device copy
+    *** @throws DBException if the copy could not be created
+    **/
+    public Device copyDevice()
+        throws DBException
+    {
+        Device copy = DBRecord.copyRecord(this);
+        copy.setAccount(this.getAccount());
+        if (this.transport != null) {
+            copy.setTransport(DBRecord.copyRecord(this.transport));
+        }
+        return copy;
     }
 
     // ------------------------------------------------------------------------
@@ -9740,6 +10096,44 @@ public class Device // Asset
     {
         this.cachedRangeEvents = events;
     }
+
+    private EventDataCursor cachedRangeCursor = null;
+
+    /**
+    *** Gets the saved range event cursor
+    *** @return The range event cursor
+    **/
+    public EventDataCursor getSavedRangeCursor()
+    {
+        return this.cachedRangeCursor;
+    }
+
+    /**
+    *** Sets the saved range event cursor.  Events are then read one page at a time
+    *** while iterating, rather than held in memory (see "getSavedRangeEventIterator").
+    *** @param cursor The range event cursor
+    **/
+    public void setSavedRangeCursor(EventDataCursor cursor)
+    {
+        this.cachedRangeCursor = cursor;
+    }
+
+    /**
+    *** Gets an iterator over the saved list of cached events, or over the saved range
+    *** event cursor if no list of events has been saved
+    *** @return The event iterator, or null if neither events nor a cursor have been saved
+    **/
+    public Iterator<EventData> getSavedRangeEventIterator()
+    {
+        if (this.cachedRangeEvents != null) {
+            return ListTools.toIterator(this.cachedRangeEvents);
+        } else
+        if (this.cachedRangeCursor != null) {
+            return this.cachedRangeCursor.iterator();
+        } else {
+            return null;
+        }
+    }
     
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -10235,14 +10629,11 @@ public class Device // Asset
         if ((account != null) && (devID != null)) {
             String acctID = account.getAccountID();
             Device.Key key = new Device.Key(acctID, devID);
-            if (key.exists()) {
-                Device dev = key.getDBRecord(true);
+            Device dev = Device.getFactory().getCachedRecord(key);
+            if (dev != null) {
                 dev.setAccount(account);
-                return dev;
-            } else {
-                // device does not exist
-                return null;
             }
+            return dev; // null if device does not exist
         } else {
             return null; // just say it doesn't exist
         }
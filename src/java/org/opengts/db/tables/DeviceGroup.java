@@ -29,6 +29,8 @@
 //     -Added command-line option to count/delete old events by group
 //  2013/03/01  Martin D. Flynn
 //     -Added delete between devices for 'deleteOldEvents' and 'countOldEvents'
+//  2026/10/19
+//     -"getDeviceGroup" now reads through the record cache (see DBFactory.getCachedRecord)
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -143,6 +145,7 @@ public class DeviceGroup
                 DeviceGroup.Key.class,
                 true/*editable*/, true/*viewable*/);
             factory.addParentTable(Account.TABLE_NAME());
+            factory.setRecordCacheable(true);
         }
         return factory;
     }
@@ -639,10 +642,10 @@ public class DeviceGroup
 
         /* get/create group */
         DeviceGroup.Key groupKey = new DeviceGroup.Key(account.getAccountID(), groupId);
-        if (groupKey.exists()) { // may throw DBException
-            DeviceGroup group = groupKey.getDBRecord(true);
-            group.setAccount(account);
-            return group;
+        DeviceGroup cachedGroup = DeviceGroup.getFactory().getCachedRecord(groupKey); // may throw DBException
+        if (cachedGroup != null) {
+            cachedGroup.setAccount(account);
+            return cachedGroup;
         } else
         if (createOK) {
             DeviceGroup group = groupKey.getDBRecord();
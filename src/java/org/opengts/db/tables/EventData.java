@@ -167,6 +167,10 @@
 //     -Added FLD_seatbeltMask
 //  2013/05/28  Martin D. Flynn
 //     -Added KEY_TIMEZONE
+//  2026/10/19
+//     -EventData may be sharded by account (see "EventShard"). Range selects, counts,
+//      and deletes are sent to the shard owning the account/device.
+//     -Range selects/counts include events moved to the columnar archive (see "EventArchive").
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -785,6 +789,7 @@ public class EventData
             factory.addParentTable(Account.TABLE_NAME());
             factory.addParentTable(Device.TABLE_NAME());
             factory.setLogMissingColumnWarnings(RTConfig.getBoolean(DBConfig.PROP_EventData_logMissingColumns,true));
+            factory.setShardRouter(EventShard.getShardRouter());
             // FLD_address max length
             DBField addrFld = factory.getField(FLD_address);
             EventData.AddressColumnLength = (addrFld   != null)? addrFld.getStringLength()   : 0;
@@ -6734,6 +6739,55 @@ public class EventData
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Gets the index of the shard which owns the events of the specified Account/Device
+    *** @param acctId  The Account ID
+    *** @param devId   The Device ID (may be null/blank if sharded by account)
+    *** @return The shard index, or -1 if not sharded (or if the shard cannot be determined)
+    **/
+    public static int getShardIndex(String acctId, String devId)
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        if (!fact.isSharded() || StringTools.isBlank(acctId)) {
+            return DBShard.PRIMARY;
+        }
+        EventData.Key evKey = new EventData.Key();
+        evKey.setFieldValue(FLD_accountID, acctId.toLowerCase());
+        if (!StringTools.isBlank(devId) && !devId.equals("*")) {
+            evKey.setFieldValue(FLD_deviceID, devId.toLowerCase());
+        }
+        return fact.getShardIndex(evKey);
+    }
+
+    /**
+    *** Executes the specified update/delete statement on the shard (and mirror shard)
+    *** owning the events of the specified Account/Device
+    **/
+    /* package */ static void _executeShardUpdate(String acctId, String devId, String sql)
+        throws SQLException, DBException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        if (!fact.isSharded()) {
+            DBShard.ExecuteUpdate(DBShard.PRIMARY, sql);
+            return;
+        }
+        EventData.Key evKey = new EventData.Key();
+        evKey.setFieldValue(FLD_accountID, acctId.toLowerCase());
+        evKey.setFieldValue(FLD_deviceID , devId.toLowerCase());
+        int shard = fact.getShardIndex(evKey);
+        if (shard < 0) {
+            DBShard.ExecuteUpdateAll(sql);
+        } else {
+            DBShard.ExecuteUpdate(shard, sql);
+            int mirror = fact.getMirrorShardIndex(evKey);
+            if (mirror >= 0) {
+                DBShard.ExecuteUpdate(mirror, sql);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     /* create range event selector */
     private static DBSelect<EventData> _createRangeEventSelector(
         String acctId, String devId,
@@ -6768,7 +6822,8 @@ public class EventData
         }
 
         /* create/return DBSelect */
-        // DBSelect: [SELECT * FROM EventData] <Where> ORDER BY <FLD_timestamp> [DESC] LIMIT <Limit>
+        // DBSelect: [SELECT * FROM EventData] <Where> ORDER BY <FLD_timestamp>,<FLD_statusCode> [DESC] LIMIT <Limit>
+        // (events with the same timestamp are ordered by status code, as in the archive)
         DBSelect<EventData> dsel = new DBSelect<EventData>(EventData.getFactory());
         dsel.setWhere(EventData.getWhereClause(
             acctId, devId,
@@ -6776,9 +6831,10 @@ public class EventData
             statCode,
             validGPS,
             addtnlSelect));
-        dsel.setOrderByFields(FLD_timestamp);
+        dsel.setOrderByFields(FLD_timestamp, FLD_statusCode);
         dsel.setOrderAscending(isAscending);
         dsel.setLimit(limit);
+        dsel.setShardIndex(EventData.getShardIndex(acctId, devId));
         return dsel;
         
     }
@@ -6833,6 +6889,155 @@ public class EventData
         throws DBException
     {
 
+        /* archived events not included? */
+        if (!EventData._includeArchive(acctId, devId, timeStart, timeEnd, addtnlSelect)) {
+            return EventData.getLiveRangeEvents(
+                acctId, devId,
+                timeStart, timeEnd,
+                statCode,
+                validGPS,
+                limitType, limit, ascending,
+                addtnlSelect,
+                rcdHandler);
+        }
+
+        /* live events (limit is applied after merging) */
+        EventData live[] = EventData.getLiveRangeEvents(
+            acctId, devId,
+            timeStart, timeEnd,
+            statCode,
+            validGPS,
+            limitType, limit, true/*ascending*/,
+            addtnlSelect,
+            null/*rcdHandler*/);
+
+        /* archived events */
+        // If the live events alone meet the limit, only archived events within the time range
+        // of the live events can be included.  Archive months are read from the limit end of
+        // the range (newest first for LAST) only until the limit is met.
+        boolean lastN = !EventData.LimitType.FIRST.equals(limitType);
+        long archStart = timeStart;
+        long archEnd   = timeEnd;
+        if ((limit > 0L) && (live.length >= limit)) {
+            if (lastN) {
+                archStart = Math.max(timeStart, live[0].getTimestamp());
+            } else {
+                long t = live[live.length - 1].getTimestamp();
+                archEnd = (timeEnd >= 0L)? Math.min(timeEnd, t) : t;
+            }
+        }
+        EventData arch[] = EventArchive.getArchivedEvents(
+            acctId, devId,
+            archStart, archEnd,
+            statCode,
+            validGPS,
+            lastN, limit); // ascending
+
+        /* merge (ascending, live events replace archived duplicates) */
+        java.util.List<EventData> evList = EventData.mergeArchivedEvents(arch, live);
+
+        /* limit */
+        if ((limit > 0L) && (evList.size() > limit)) {
+            int n = (int)limit;
+            if (EventData.LimitType.FIRST.equals(limitType)) {
+                evList = evList.subList(0, n);
+            } else {
+                evList = evList.subList(evList.size() - n, evList.size());
+            }
+        }
+        if (!ascending) {
+            evList = new Vector<EventData>(evList);
+            Collections.reverse(evList);
+        }
+
+        /* record handler */
+        if (rcdHandler != null) {
+            java.util.List<EventData> saved = new Vector<EventData>();
+            for (EventData ev : evList) {
+                int rcdHandlerResponse = rcdHandler.handleDBRecord(ev);
+                if (rcdHandlerResponse == DBRecordHandler.DBRH_STOP) {
+                    break;
+                } else
+                if (rcdHandlerResponse == DBRecordHandler.DBRH_SAVE) {
+                    saved.add(ev);
+                }
+            }
+            evList = saved;
+        }
+        return evList.toArray(new EventData[evList.size()]);
+
+    }
+
+    /**
+    *** Merges archived and live events, each in ascending (timestamp, statusCode) order.
+    *** A live event replaces an archived event with the same key (ie. an event which was
+    *** archived, but not yet deleted from the EventData table).
+    *** @param arch  The archived events
+    *** @param live  The live events
+    *** @return The merged events, in ascending (timestamp, statusCode) order
+    **/
+    public static java.util.List<EventData> mergeArchivedEvents(EventData arch[], EventData live[])
+    {
+        java.util.List<EventData> evList = new Vector<EventData>();
+        int a = 0, l = 0;
+        while ((a < arch.length) || (l < live.length)) {
+            if (l >= live.length) {
+                evList.add(arch[a++]);
+            } else
+            if (a >= arch.length) {
+                evList.add(live[l++]);
+            } else {
+                long ta = arch[a].getTimestamp(), tl = live[l].getTimestamp();
+                int  sa = arch[a].getStatusCode(), sl = live[l].getStatusCode();
+                if ((ta == tl) && (sa == sl)) {
+                    a++; // duplicate
+                } else
+                if ((ta < tl) || ((ta == tl) && (sa < sl))) {
+                    evList.add(arch[a++]);
+                } else {
+                    evList.add(live[l++]);
+                }
+            }
+        }
+        return evList;
+    }
+
+    /**
+    *** Returns true if the range select for the specified Account/Device should include 
+    *** events from the EventData archive (see "EventArchive")
+    **/
+    private static boolean _includeArchive(
+        String acctId, String devId,
+        long timeStart, long timeEnd,
+        String addtnlSelect)
+    {
+        if (!EventArchive.IsEnabled()) {
+            return false;
+        } else
+        if (StringTools.isBlank(acctId) || StringTools.isBlank(devId) || devId.equals("*")) {
+            return false;
+        } else
+        if (!StringTools.isBlank(addtnlSelect)) {
+            // arbitrary SQL selections cannot be applied to archived events
+            return false;
+        } else {
+            return EventArchive.hasArchivedEvents(acctId, devId, timeStart, timeEnd);
+        }
+    }
+
+    /* get range of EventData records from the EventData table only (does not return null) */
+    public static EventData[] getLiveRangeEvents(
+        String acctId, 
+        String devId,
+        long timeStart, long timeEnd,
+        int statCode[],
+        boolean validGPS,
+        EventData.LimitType limitType, long limit, boolean ascending,
+        String addtnlSelect,
+        DBRecordHandler<EventData> rcdHandler)
+        throws DBException
+    {
+
         /* get record selector */
         DBSelect<EventData> dsel = EventData._createRangeEventSelector(
             acctId, devId, 
@@ -6920,6 +7125,39 @@ public class EventData
         } finally {
             DBProvider.unlockTables();
         }
+
+        /* include archived events */
+        // Events which are both archived and live (ie. archived, but not yet deleted from the
+        // EventData table) are counted once, as in "getRangeEvents".  Only the live events
+        // within the archived months are read to find these duplicates.
+        if (EventData._includeArchive(acctId, devId, timeStart, timeEnd, addtnlSelect)) {
+            Set<String> archKeys = EventArchive.getArchivedEventKeys(
+                acctId, devId,
+                timeStart, timeEnd,
+                statCode,
+                validGPS);
+            recordCount += archKeys.size();
+            long archRange[] = EventArchive.getArchivedTimeRange(acctId, devId, timeStart, timeEnd);
+            if ((recordCount > archKeys.size()) && !archKeys.isEmpty() && (archRange != null)) {
+                EventData dup[] = EventData.getLiveRangeEvents(
+                    acctId, devId,
+                    ((timeStart >= 0L)? Math.max(timeStart, archRange[0]) : archRange[0]),
+                    ((timeEnd   >= 0L)? Math.min(timeEnd  , archRange[1]) : archRange[1]),
+                    statCode,
+                    validGPS,
+                    EventData.LimitType.FIRST, -1L/*limit*/, true/*ascending*/,
+                    null/*addtnlSelect*/,
+                    null/*rcdHandler*/);
+                for (EventData ev : dup) {
+                    if (archKeys.contains(EventArchive.GetEventKey(ev.getTimestamp(), ev.getStatusCode()))) {
+                        recordCount--;
+                    }
+                }
+            }
+            if ((limit > 0L) && (recordCount > limit)) {
+                recordCount = limit;
+            }
+        }
         return recordCount;
 
     }
@@ -6938,14 +7176,15 @@ public class EventData
         long timeStart, long timeEnd)
         throws DBException
     {
-        StringBuffer wh = new StringBuffer();
-        wh.append(EventData.getWhereClause(
+        DBSelect<EventData> dsel = new DBSelect<EventData>(EventData.getFactory());
+        dsel.setWhere(EventData.getWhereClause(
             acctId, devId,
             timeStart, timeEnd,
             null  /*statCode[]*/ ,
             false /*gpsRequired*/,
             null  /*andSelect*/  ));
-        return DBRecord.getRecordCount(EventData.getFactory(), wh);
+        dsel.setShardIndex(EventData.getShardIndex(acctId, devId)); // all shards if no account
+        return DBRecord.getRecordCount(dsel);
     }
 
     // ------------------------------------------------------------------------
@@ -6999,6 +7238,7 @@ public class EventData
         dsel.setOrderByFields(FLD_creationMillis,FLD_timestamp);
         dsel.setOrderAscending(true);
         dsel.setLimit(limit);
+        dsel.setShardIndex(EventData.getShardIndex(acctId, devId));
 
         /* get events */
         EventData ed[] = null;
@@ -7115,14 +7355,10 @@ public class EventData
         ));
 
         /* delete */
-        DBConnection dbc = null;
         try {
-            dbc = DBConnection.getDefaultConnection();
-            dbc.executeUpdate(ddel.toString());
+            EventData._executeShardUpdate(acctID, devID, ddel.toString());
         } catch (SQLException sqe) {
             throw new DBException("Deleting future EventData records", sqe);
-        } finally {
-            DBConnection.release(dbc);
         }
 
         /* return count */
@@ -7130,6 +7366,60 @@ public class EventData
 
     }
 
+    private static final int DELETE_KEY_CHUNK_SIZE = 200;
+
+    /**
+    *** Deletes the specified events (by primary key).  Used by "EventArchive" to remove
+    *** events from the EventData table once they have been archived.
+    *** @param acctID      The Account ID
+    *** @param devID       The Device ID
+    *** @param ev          The events to delete (all of the specified Device)
+    **/
+    public static void deleteEvents(
+        String acctID, String devID,
+        EventData ev[])
+        throws DBException
+    {
+
+        /* valid Device */
+        if (StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            throw new DBException("AccountID/DeviceID not specified");
+        }
+
+        /* delete in chunks */
+        for (int e = 0; (ev != null) && (e < ev.length); e += DELETE_KEY_CHUNK_SIZE) {
+            int n = Math.min(DELETE_KEY_CHUNK_SIZE, ev.length - e);
+
+            /* SQL statement */
+            // DBDelete: DELETE FROM EventData WHERE ((accountID='acct) AND (deviceID='dev') AND ( ((timestamp=ts) AND (statusCode=sc)) OR ... ))
+            DBDelete ddel = new DBDelete(EventData.getFactory());
+            DBWhere dwh = ddel.createDBWhere();
+            String keys[] = new String[n];
+            for (int k = 0; k < n; k++) {
+                keys[k] = dwh.AND(
+                    dwh.EQ(EventData.FLD_timestamp ,ev[e + k].getTimestamp()),
+                    dwh.EQ(EventData.FLD_statusCode,ev[e + k].getStatusCode())
+                );
+            }
+            ddel.setWhere(dwh.WHERE_(
+                dwh.AND(
+                    dwh.EQ(EventData.FLD_accountID,acctID),
+                    dwh.EQ(EventData.FLD_deviceID ,devID),
+                    dwh.OR(keys)
+                )
+            ));
+
+            /* delete */
+            try {
+                EventData._executeShardUpdate(acctID, devID, ddel.toString());
+            } catch (SQLException sqe) {
+                throw new DBException("Deleting EventData records", sqe);
+            }
+
+        }
+
+    }
+
     // ------------------------------------------------------------------------
     
     /**
@@ -7203,6 +7493,13 @@ public class EventData
             }
         }
 
+        /* delete archived months prior to the delete time */
+        int archCount = EventArchive.deleteOldArchives(acctID, devID, oldTimeSec);
+        if ((archCount > 0) && (msg != null)) {
+            if (msg.length() > 0) { msg.append(", "); }
+            msg.append("Deleted " + archCount + " archive file(s)");
+        }
+
         /* count events in range */
         long count = EventData.getRecordCount(acctID,devID,-1L,(oldTimeSec - 1L));
         if (count <= 0L) {
@@ -7232,14 +7529,10 @@ public class EventData
         ));
 
         /* delete */
-        DBConnection dbc = null;
         try {
-            dbc = DBConnection.getDefaultConnection();
-            dbc.executeUpdate(ddel.toString());
+            EventData._executeShardUpdate(acctID, devID, ddel.toString());
         } catch (SQLException sqe) {
             throw new DBException("Deleting old EventData records", sqe);
-        } finally {
-            DBConnection.release(dbc);
         }
 
         /* return count */
@@ -0,0 +1,619 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  EventData shard map (Account to EventData shard overrides)
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db.tables;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** EventShard table.<br>
+*** When EventData shards are configured ("db.shard.urls"), the EventData records of an
+*** Account are stored in the shard selected by a hash of the accountID (or of the
+*** accountID/deviceID, if "db.shard.key=device").  A record in this table (stored in the
+*** primary database) overrides the hashed shard of an Account, and may also specify a
+*** "mirror" shard to which all EventData writes of the Account are also sent.<br>
+*** Accounts are moved between shards online with the "-moveTo" command, which mirrors
+*** writes to the new shard, copies the existing events, switches the owning shard, and
+*** finally deletes the events from the old shard.
+**/
+
+public class EventShard
+    extends AccountRecord<EventShard>
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String SHARD_KEY_ACCOUNT       = "account";
+    public  static final String SHARD_KEY_DEVICE        = "device";
+
+    private static final long   DFT_MAP_REFRESH_SEC     = 10L;
+    private static final long   COPY_CHUNK_SIZE         = 5000L;
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // SQL table definition below
+
+    /* table name */
+    public static final String _TABLE_NAME              = "EventShard";
+    public static String TABLE_NAME() { return DBProvider._translateTableName(_TABLE_NAME); }
+
+    /* field definition */
+    public static final String FLD_shardIndex           = "shardIndex";
+    public static final String FLD_mirrorShardIndex     = "mirrorShardIndex";   // '-1' if not mirrored
+    private static DBField FieldInfo[] = {
+        // EventShard fields
+        newField_accountID(true),
+        new DBField(FLD_shardIndex      , Integer.TYPE  , DBField.TYPE_INT16       , "Shard Index"         , ""),
+        new DBField(FLD_mirrorShardIndex, Integer.TYPE  , DBField.TYPE_INT16       , "Mirror Shard Index"  , ""),
+        // Common fields
+        newField_lastUpdateTime(),
+        newField_creationTime(),
+    };
+
+    /* key class */
+    public static class Key
+        extends AccountKey<EventShard>
+    {
+        public Key() {
+            super();
+        }
+        public Key(String acctId) {
+            super.setFieldValue(FLD_accountID , ((acctId != null)? acctId.toLowerCase() : ""));
+        }
+        public DBFactory<EventShard> getFactory() {
+            return EventShard.getFactory();
+        }
+    }
+
+    /* factory constructor */
+    private static DBFactory<EventShard> factory = null;
+    public static DBFactory<EventShard> getFactory()
+    {
+        if (factory == null) {
+            factory = DBFactory.createDBFactory(
+                EventShard.TABLE_NAME(),
+                EventShard.FieldInfo,
+                DBFactory.KeyType.PRIMARY,
+                EventShard.class,
+                EventShard.Key.class,
+                false/*editable*/,true/*viewable*/);
+            factory.addParentTable(Account.TABLE_NAME());
+        }
+        return factory;
+    }
+
+    /* Bean instance */
+    public EventShard()
+    {
+        super();
+    }
+
+    /* database record */
+    public EventShard(EventShard.Key key)
+    {
+        super(key);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* table description */
+    public static String getTableDescription(Locale loc)
+    {
+        I18N i18n = I18N.getI18N(EventShard.class, loc);
+        return i18n.getString("EventShard.description",
+            "This table contains " +
+            "Account EventData shard assignments which override the hashed shard."
+            );
+    }
+
+    // SQL table definition above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Bean access fields below
+
+    public int getShardIndex()
+    {
+        Integer v = (Integer)this.getFieldValue(FLD_shardIndex);
+        return (v != null)? v.intValue() : DBShard.PRIMARY;
+    }
+
+    public void setShardIndex(int v)
+    {
+        this.setFieldValue(FLD_shardIndex, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public int getMirrorShardIndex()
+    {
+        Integer v = (Integer)this.getFieldValue(FLD_mirrorShardIndex);
+        return (v != null)? v.intValue() : DBShard.PRIMARY;
+    }
+
+    public void setMirrorShardIndex(int v)
+    {
+        this.setFieldValue(FLD_mirrorShardIndex, v);
+    }
+
+    // Bean access fields above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this EventShard
+    *** @return A String representation of this EventShard
+    **/
+    public String toString()
+    {
+        return this.getAccountID() + " shard=" + this.getShardIndex() + " mirror=" + this.getMirrorShardIndex();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Shard map
+
+    private static final Object             shardMapLock        = new Object();
+    private static volatile Map<String,int[]> shardMap          = null; // accountID ==> [shard, mirror]
+    private static volatile long            shardMapLoadMS      = 0L;
+    private static Boolean                  tableExists         = null;
+
+    /**
+    *** Gets the EventShard overrides, reloading from the primary database every
+    *** "db.shard.mapRefreshSec" seconds
+    *** @return The map of accountID to [shard, mirror]
+    **/
+    private static Map<String,int[]> _getShardMap()
+    {
+        long refreshMS = RTConfig.getLong(RTKey.DB_SHARD_MAP_REFRESH, DFT_MAP_REFRESH_SEC) * 1000L;
+        Map<String,int[]> map = EventShard.shardMap;
+        if ((map != null) && ((System.currentTimeMillis() - EventShard.shardMapLoadMS) < refreshMS)) {
+            return map;
+        }
+        synchronized (EventShard.shardMapLock) {
+            if ((EventShard.shardMap == null) ||
+                ((System.currentTimeMillis() - EventShard.shardMapLoadMS) >= refreshMS)) {
+                Map<String,int[]> newMap = new HashMap<String,int[]>();
+                DBShard.PushShard(DBShard.PRIMARY); // EventShard is stored in the primary database
+                try {
+                    if (tableExists == null) {
+                        tableExists = new Boolean(EventShard.getFactory().tableExists());
+                    }
+                    if (tableExists.booleanValue()) {
+                        DBSelect<EventShard> dsel = new DBSelect<EventShard>(EventShard.getFactory());
+                        EventShard es[] = DBRecord.select(dsel); // select:DBSelect
+                        if (es != null) {
+                            for (EventShard e : es) {
+                                newMap.put(e.getAccountID(), new int[] { e.getShardIndex(), e.getMirrorShardIndex() });
+                            }
+                        }
+                    }
+                    EventShard.shardMap = newMap;
+                } catch (DBException dbe) {
+                    // keep the previous map (if any)
+                    Print.logException("Unable to load EventShard map", dbe);
+                    if (EventShard.shardMap == null) {
+                        EventShard.shardMap = newMap;
+                    }
+                } finally {
+                    DBShard.PopShard();
+                }
+                EventShard.shardMapLoadMS = System.currentTimeMillis();
+            }
+            return EventShard.shardMap;
+        }
+    }
+
+    /**
+    *** Gets the EventData shard for the specified Account/Device
+    *** @param acctID  The Account ID
+    *** @param devID   The Device ID (required only if "db.shard.key=device")
+    *** @return The shard index, or -1 if sharding is disabled, or if the shard cannot be determined
+    **/
+    public static int getShardIndex(String acctID, String devID)
+    {
+        if (!DBShard.IsEnabled() || StringTools.isBlank(acctID)) {
+            return DBShard.PRIMARY;
+        }
+        String acct = acctID.toLowerCase();
+        int ovr[] = EventShard._getShardMap().get(acct);
+        if (ovr != null) {
+            return ovr[0];
+        } else
+        if (!SHARD_KEY_DEVICE.equalsIgnoreCase(RTConfig.getString(RTKey.DB_SHARD_KEY,SHARD_KEY_ACCOUNT))) {
+            return DBShard.HashIndex(acct);
+        } else
+        if (!StringTools.isBlank(devID)) {
+            return DBShard.HashIndex(acct + "/" + devID.toLowerCase());
+        } else {
+            return DBShard.PRIMARY; // device not specified
+        }
+    }
+
+    /**
+    *** Gets the EventData mirror shard for the specified Account
+    *** @param acctID  The Account ID
+    *** @return The mirror shard index, or -1 if EventData writes are not mirrored
+    **/
+    public static int getMirrorShardIndex(String acctID)
+    {
+        if (!DBShard.IsEnabled() || StringTools.isBlank(acctID)) {
+            return DBShard.PRIMARY;
+        }
+        int ovr[] = EventShard._getShardMap().get(acctID.toLowerCase());
+        return (ovr != null)? ovr[1] : DBShard.PRIMARY;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static DBShardRouter shardRouter = null;
+
+    /**
+    *** Gets the EventData shard router
+    *** @return The EventData shard router
+    **/
+    public static DBShardRouter getShardRouter()
+    {
+        if (shardRouter == null) {
+            shardRouter = new DBShardRouter() {
+                public int getShardIndex(DBRecordKey<?> key) {
+                    return EventShard.getShardIndex(
+                        EventShard._getKeyString(key, FLD_accountID),
+                        EventShard._getKeyString(key, EventData.FLD_deviceID));
+                }
+                public int getMirrorShardIndex(DBRecordKey<?> key) {
+                    return EventShard.getMirrorShardIndex(
+                        EventShard._getKeyString(key, FLD_accountID));
+                }
+            };
+        }
+        return shardRouter;
+    }
+
+    private static String _getKeyString(DBRecordKey<?> key, String fldName)
+    {
+        DBFieldValues fv = key.getFieldValues();
+        return fv.hasFieldValue(fldName)? StringTools.trim(fv.getFieldValue(fldName)) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Account move
+
+    /**
+    *** Sets the shard/mirror overrides for the specified Account, and waits until all
+    *** processes have reloaded the shard map
+    **/
+    private static void _setShard(String acctID, int shard, int mirror)
+        throws DBException
+    {
+        DBShard.PushShard(DBShard.PRIMARY);
+        try {
+            EventShard.Key key = new EventShard.Key(acctID);
+            EventShard es = key.exists()? key.getDBRecord(true) : key.getDBRecord();
+            es.setShardIndex(shard);
+            es.setMirrorShardIndex(mirror);
+            es.save();
+            Print.logInfo("EventShard: " + es);
+        } finally {
+            DBShard.PopShard();
+        }
+        long waitMS = (2L * RTConfig.getLong(RTKey.DB_SHARD_MAP_REFRESH, DFT_MAP_REFRESH_SEC) * 1000L) + 1000L;
+        Print.logInfo("Waiting " + waitMS + " ms for shard map refresh ...");
+        try { Thread.sleep(waitMS); } catch (InterruptedException ie) { /*ignore*/ }
+    }
+
+    /**
+    *** Gets the next Device ID (in deviceID order) which has EventData records on the
+    *** specified shard.  Devices are read from the EventData table, so that the events of
+    *** Devices which have since been deleted from the Device table are also found.
+    *** @return The next Device ID, or null if there are no more Devices
+    **/
+    private static String _getNextEventDeviceID(String acctID, String afterDevID, int shard)
+        throws DBException
+    {
+        // DBSelect: SELECT deviceID FROM EventData WHERE ((accountID='acct') AND (deviceID>'after')) ORDER BY deviceID LIMIT 1
+        DBSelect<EventData> dsel = new DBSelect<EventData>(EventData.getFactory());
+        dsel.setSelectedFields(EventData.FLD_deviceID);
+        DBWhere dwh = dsel.createDBWhere();
+        if (afterDevID != null) {
+            dsel.setWhere(dwh.WHERE_(dwh.AND(
+                dwh.EQ(EventData.FLD_accountID,acctID),
+                dwh.GT(EventData.FLD_deviceID ,afterDevID)
+            )));
+        } else {
+            dsel.setWhere(dwh.WHERE_(dwh.EQ(EventData.FLD_accountID,acctID)));
+        }
+        dsel.setOrderByFields(EventData.FLD_deviceID);
+        dsel.setLimit(1L);
+        DBConnection dbc = null;
+        Statement   stmt = null;
+        ResultSet     rs = null;
+        try {
+            dbc  = DBShard.GetDBConnection(shard);
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            return rs.next()? rs.getString(EventData.FLD_deviceID) : null;
+        } catch (SQLException sqe) {
+            throw new DBException("Getting EventData Device IDs from shard #" + shard, sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+    /**
+    *** Copies the EventData records of the specified Device from one shard to another
+    *** (records which already exist on the destination shard are skipped).  Records are
+    *** read in chunks, in (timestamp,statusCode) primary key order.
+    *** @return The number of records copied
+    **/
+    private static long _copyEvents(String acctID, String devID, int fromShard, int toShard)
+        throws DBException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        long count    = 0L;
+        long lastTime = -1L;
+        int  lastCode = 0;
+        for (;;) {
+            // DBSelect: SELECT * FROM EventData WHERE ((accountID='acct') AND (deviceID='dev') AND ((timestamp>last) OR ((timestamp=last) AND (statusCode>code)))) ORDER BY timestamp,statusCode LIMIT chunk
+            DBSelect<EventData> dsel = new DBSelect<EventData>(fact);
+            DBWhere dwh = dsel.createDBWhere();
+            dwh.append(dwh.AND(
+                dwh.EQ(EventData.FLD_accountID,acctID),
+                dwh.EQ(EventData.FLD_deviceID ,devID)
+            ));
+            if (lastTime >= 0L) {
+                dwh.append(dwh.AND_(dwh.OR(
+                    dwh.GT(EventData.FLD_timestamp,lastTime),
+                    dwh.AND(
+                        dwh.EQ(EventData.FLD_timestamp ,lastTime),
+                        dwh.GT(EventData.FLD_statusCode,lastCode)
+                    )
+                )));
+            }
+            dsel.setWhere(dwh.WHERE(dwh.toString()));
+            dsel.setOrderByFields(EventData.FLD_timestamp, EventData.FLD_statusCode);
+            dsel.setLimit(COPY_CHUNK_SIZE);
+            dsel.setShardIndex(fromShard);
+            EventData ev[] = DBRecord.select(dsel); // select:DBSelect
+            if (ListTools.isEmpty(ev)) {
+                break;
+            }
+            DBShard.PushShard(toShard);
+            try {
+                for (EventData e : ev) {
+                    try {
+                        DBProvider.insertRecordIntoTable(e);
+                        count++;
+                    } catch (SQLException sqe) {
+                        if (sqe.getErrorCode() != DBFactory.SQLERR_DUPLICATE_KEY) {
+                            throw new DBException("Copying EventData to shard #" + toShard, sqe);
+                        }
+                        // already copied (or mirrored)
+                    }
+                }
+            } finally {
+                DBShard.PopShard();
+            }
+            if (ev.length < COPY_CHUNK_SIZE) {
+                break;
+            }
+            lastTime = ev[ev.length - 1].getTimestamp();
+            lastCode = ev[ev.length - 1].getStatusCode();
+        }
+        return count;
+    }
+
+    /**
+    *** Moves the EventData records of the specified Account to another shard, while the
+    *** Account continues to receive events.<br>
+    *** 1) Writes are mirrored to the new shard.<br>
+    *** 2) Existing events are copied to the new shard.<br>
+    *** 3) The new shard becomes the owner (writes are still mirrored to the old shard).<br>
+    *** 4) Mirroring is stopped, and the events are deleted from the old shard.<br>
+    *** Each step waits for all processes to reload the shard map.
+    *** @param acctID   The Account ID
+    *** @param toShard  The destination shard index
+    *** @return The number of events copied
+    *** @throws DBException  If a database error occurs
+    **/
+    public static long moveAccount(String acctID, int toShard)
+        throws DBException
+    {
+        if (!DBShard.IsEnabled()) {
+            throw new DBException("EventData shards are not configured");
+        } else
+        if ((toShard < 0) || (toShard >= DBShard.GetShardCount())) {
+            throw new DBException("Invalid shard index: " + toShard);
+        } else
+        if (SHARD_KEY_DEVICE.equalsIgnoreCase(RTConfig.getString(RTKey.DB_SHARD_KEY,SHARD_KEY_ACCOUNT))) {
+            // device-hashed accounts may span several shards
+            throw new DBException("Account move requires 'db.shard.key=account'");
+        }
+        String acct = acctID.toLowerCase();
+        int fromShard = EventShard.getShardIndex(acct, null);
+        if (fromShard == toShard) {
+            Print.logInfo("Account already on shard #" + toShard + ": " + acct);
+            return 0L;
+        }
+
+        /* 1) mirror writes to the new shard */
+        EventShard._setShard(acct, fromShard, toShard);
+
+        /* 2) copy existing events (of every deviceID found on the old shard) */
+        long count = 0L;
+        for (String devID = EventShard._getNextEventDeviceID(acct, null, fromShard); devID != null;
+            devID = EventShard._getNextEventDeviceID(acct, devID, fromShard)) {
+            long devCount = EventShard._copyEvents(acct, devID, fromShard, toShard);
+            Print.logInfo("Copied " + devCount + " events: " + acct + "/" + devID);
+            count += devCount;
+        }
+
+        /* 3) switch owner to the new shard (mirror to the old shard) */
+        EventShard._setShard(acct, toShard, fromShard);
+
+        /* 4) stop mirroring, and delete events from the old shard */
+        EventShard._setShard(acct, toShard, DBShard.PRIMARY);
+        DBDelete ddel = new DBDelete(EventData.getFactory());
+        DBWhere dwh = ddel.createDBWhere();
+        ddel.setWhere(dwh.WHERE_(dwh.EQ(EventData.FLD_accountID,acct)));
+        try {
+            DBShard.ExecuteUpdate(fromShard, ddel.toString());
+        } catch (SQLException sqe) {
+            throw new DBException("Deleting EventData from shard #" + fromShard, sqe);
+        }
+
+        return count;
+    }
+
+    /**
+    *** Pins the current hashed shard of every Account which does not already have an
+    *** EventShard override, so that the Accounts remain on their current shard if the
+    *** number of shards ("db.shard.urls") is later changed
+    *** @return The number of Accounts pinned
+    *** @throws DBException  If a database error occurs
+    **/
+    public static long pinAccounts()
+        throws DBException
+    {
+        if (!DBShard.IsEnabled()) {
+            throw new DBException("EventData shards are not configured");
+        } else
+        if (SHARD_KEY_DEVICE.equalsIgnoreCase(RTConfig.getString(RTKey.DB_SHARD_KEY,SHARD_KEY_ACCOUNT))) {
+            // device-hashed accounts may span several shards
+            throw new DBException("Account pinning requires 'db.shard.key=account'");
+        }
+        long count = 0L;
+        DBShard.PushShard(DBShard.PRIMARY);
+        try {
+            for (String acctID : Account.getAllAccounts()) {
+                String acct = acctID.toLowerCase();
+                EventShard.Key key = new EventShard.Key(acct);
+                if (!key.exists()) {
+                    EventShard es = key.getDBRecord();
+                    es.setShardIndex(DBShard.HashIndex(acct));
+                    es.setMirrorShardIndex(DBShard.PRIMARY);
+                    es.save();
+                    count++;
+                }
+            }
+        } finally {
+            DBShard.PopShard();
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_ACCOUNT[]           = new String[] { "account", "acct"  };
+    private static final String ARG_MOVE_TO[]           = new String[] { "moveTo"           };
+    private static final String ARG_LIST[]              = new String[] { "list"             };
+    private static final String ARG_PIN_ALL[]           = new String[] { "pinAll"           };
+
+    private static void usage()
+    {
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + EventShard.class.getName() + " {options}");
+        Print.sysPrintln("Options:");
+        Print.sysPrintln("  -account=<id>               Account ID");
+        Print.sysPrintln("  -moveTo=<shard>             Move Account events to the specified shard (online)");
+        Print.sysPrintln("  -list                       List shard of Account (all overrides if no Account)");
+        Print.sysPrintln("  -pinAll                     Pin the current hashed shard of all Accounts (before adding a shard)");
+        System.exit(1);
+    }
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv,true);  // main
+        String accountID = RTConfig.getString(ARG_ACCOUNT, "");
+
+        /* shards configured? */
+        if (!DBShard.IsEnabled()) {
+            Print.logError("EventData shards are not configured ('" + RTKey.DB_SHARD_URLS + "')");
+            System.exit(1);
+        }
+
+        /* move */
+        if (RTConfig.hasProperty(ARG_MOVE_TO)) {
+            if (StringTools.isBlank(accountID)) {
+                Print.logError("Account-ID not specified.");
+                usage();
+            }
+            int toShard = RTConfig.getInt(ARG_MOVE_TO, -1);
+            try {
+                long startMS = System.currentTimeMillis();
+                long count = EventShard.moveAccount(accountID, toShard);
+                Print.sysPrintln("Moved " + count + " events for '" + accountID + "' to shard #" + toShard + " in " +
+                    (System.currentTimeMillis() - startMS) + " ms");
+                System.exit(0);
+            } catch (DBException dbe) {
+                Print.logException("Error moving Account: " + accountID, dbe);
+                System.exit(99);
+            }
+        }
+
+        /* pin all accounts */
+        if (RTConfig.getBoolean(ARG_PIN_ALL,false)) {
+            try {
+                long count = EventShard.pinAccounts();
+                Print.sysPrintln("Pinned " + count + " Accounts to their current shard");
+                System.exit(0);
+            } catch (DBException dbe) {
+                Print.logException("Error pinning Accounts", dbe);
+                System.exit(99);
+            }
+        }
+
+        /* list */
+        if (RTConfig.getBoolean(ARG_LIST,false)) {
+            if (!StringTools.isBlank(accountID)) {
+                Print.sysPrintln(accountID + " shard=" + EventShard.getShardIndex(accountID,null) +
+                    " mirror=" + EventShard.getMirrorShardIndex(accountID));
+            } else {
+                for (Map.Entry<String,int[]> e : EventShard._getShardMap().entrySet()) {
+                    Print.sysPrintln(e.getKey() + " shard=" + e.getValue()[0] + " mirror=" + e.getValue()[1]);
+                }
+            }
+            System.exit(0);
+        }
+
+        /* no options specified */
+        Print.logWarn("Missing options ...");
+        usage();
+
+    }
+
+}
@@ -79,6 +79,10 @@
 //     -Added command-line "-delete" option.
 //  2012/09/02  Martin D. Flynn
 //     -Increased number of points per Geozone to 10
+//  2026/10/19
+//     -"containsPoint" now tests against a compiled GeoShape (cached per Geozone record)
+//     -"IsGeozoneTypeSupported" reports the types supported by GeoShape
+//     -Swept point-radius (corridor) zones now test the distance to each segment.
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -333,7 +337,6 @@ public class Geozone
                 Geozone.Key.class,
                 true/*editable*/, true/*viewable*/);
             factory.addParentTable(Account.TABLE_NAME());
-            Geozone._initZoneTypes();
         }
         return factory;
     }
@@ -1846,87 +1849,129 @@ public class Geozone
 
     // ------------------------------------------------------------------------
 
-    private static GeozoneChecker geozoneMultiPointRadius = null;
-    private static GeozoneChecker geozoneSweptPointRadius = null;
-    private static GeozoneChecker geozoneBoundedRectangle = null;
-    private static GeozoneChecker geozonePolygon          = null;
-
-    private static void _initZoneTypes()
-    {
-        StringBuffer sb = new StringBuffer();
-
-        /* GeozoneType.POINT_RADIUS: standard point radius */
-        geozoneMultiPointRadius = GeoPoint.getGeozoneChecker();
-        sb.append("PointRadius");
-
-        /* GeozoneType.POLYGON: optional polygon */
-        geozonePolygon = GeoPolygon.getGeozoneChecker();
-        sb.append(",Polygon");
-        //try {
-        //    MethodAction ma = new MethodAction(DBConfig.PACKAGE_RULE_UTIL_ + "GeoPolygon", "getGeozoneChecker");
-        //    geozonePolygon = (GeozoneChecker)ma.invoke();
-        //    sb.append(",Polygon");
-        //} catch (Throwable th) {
-        //    geozonePolygon = null;
-        //}
-
-        /* GeozoneType.BOUNDED_RECT: standard bounded rectangle */
-        geozoneBoundedRectangle = new GeozoneChecker() {
-            public boolean containsPoint(GeoPoint gpTest, GeoPoint gpList[], double radiusKM) {
-                if (gpList.length < 2) { return false; }
-                double latN =  -90.0, latS =   90.0;
-                double lonW =  180.0, lonE = -180.0;
-                for (int i = 0; i < gpList.length; i++) {
-                    double lat = gpList[i].getLatitude();
-                    if (lat > latN) { latN = lat; }
-                    if (lat < latS) { latS = lat; }
-                    double lon = gpList[i].getLongitude();
-                    if (lon > lonE ) { lonE  = lon; }
-                    if (lon < lonW ) { lonW  = lon; }
-                }
-                double lat = gpTest.getLatitude();
-                double lon = gpTest.getLongitude();
-                if (lat > (latN + CLIENT_GEOPOINT_DELTA)) { return false; } // North/Top
-                if (lat < (latS - CLIENT_GEOPOINT_DELTA)) { return false; } // South/Bottom
-                if (lon < (lonW - CLIENT_GEOPOINT_DELTA)) { return false; } // West/Left  (fails if zone spans +/-180 deg)
-                if (lon > (lonE + CLIENT_GEOPOINT_DELTA)) { return false; } // East/Right (fails if zone spans +/-180 deg)
-                return true; // success
-            }
-        };
-        sb.append(",Rectangle");
-        
-        /* GeozoneType.SWEPT_POINT_RADIUS: optional swept point radius */
-        try {
-            MethodAction ma = new MethodAction(DBConfig.PACKAGE_RULE_UTIL_ + "GeoSegment", "getGeozoneChecker");
-            geozoneSweptPointRadius = (GeozoneChecker)ma.invoke();
-            sb.append(",SweptPointRadius");
-        } catch (Throwable th) {
-            geozoneSweptPointRadius = null;
-        }
-        
-        /* display supported Geozone types */
-        //Print.logDebug("Supported Geozone types: " + sb);
-
-    }
-    
+    /**
+    *** Returns true if the specified Geozone type is supported
+    *** @param type  The Geozone type
+    *** @return True if the specified Geozone type is supported
+    **/
     public static boolean IsGeozoneTypeSupported(int type)
     {
         return IsGeozoneTypeSupported(Geozone.getGeozoneType(type));
     }
-    
+
+    /**
+    *** Returns true if the specified Geozone type is supported.  All types are compiled
+    *** into a GeoShape for "containsPoint" (including SWEPT_POINT_RADIUS corridors, which
+    *** no longer require the optional GeoSegment checker).
+    *** @param type  The Geozone type
+    *** @return True if the specified Geozone type is supported
+    **/
     public static boolean IsGeozoneTypeSupported(GeozoneType type)
     {
+        if (type == null) {
+            return false;
+        }
         switch (type) {
-            case POINT_RADIUS        : return (geozoneMultiPointRadius != null);
-            case BOUNDED_RECT        : return (geozoneBoundedRectangle != null);
-            case SWEPT_POINT_RADIUS  : return (geozoneSweptPointRadius != null);
-            case POLYGON             : return (geozonePolygon          != null);
+            case POINT_RADIUS        : return true;
+            case BOUNDED_RECT        : return true;
+            case SWEPT_POINT_RADIUS  : return true;
+            case POLYGON             : return true;
         }
         return false;
     }
 
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+
+    private static final int MAX_COMPILED_SHAPES = 5000;
+
+    private static class CompiledShape
+    {
+        public long     updateTime = 0L;
+        public GeoShape shape      = null;
+        public CompiledShape(long updateTime, GeoShape shape) {
+            this.updateTime = updateTime;
+            this.shape      = shape;
+        }
+    }
+
+    private static Map<String,CompiledShape> compiledShapeCache = new LinkedHashMap<String,CompiledShape>(64, 0.75F, true) {
+        protected boolean removeEldestEntry(Map.Entry<String,CompiledShape> eldest) {
+            return (this.size() > MAX_COMPILED_SHAPES);
+        }
+    };
+
+    private transient GeoShape compiledShape = null;
+
+    /**
+    *** Sets the 'changed' state of this record, and discards the compiled shape
+    *** @param fieldName  The changed field
+    **/
+    public void setChanged(String fieldName)
+    {
+        super.setChanged(fieldName);
+        this.compiledShape = null;
+    }
+
+    /**
+    *** Gets the compiled shape of this Geozone.  Unchanged records loaded from the
+    *** database share the compiled shape with other instances of the same Geozone
+    *** record (until the record "lastUpdateTime" changes).
+    *** @return The compiled shape, or null if the zone type is not recognized
+    **/
+    public GeoShape getCompiledShape()
+    {
+        if (this.compiledShape == null) {
+            GeoShape shape   = null;
+            long     updTime = this.getLastUpdateTime();
+            String   key     = null;
+            if (!this.hasChanged() && (updTime > 0L)) {
+                key = this.getAccountID() + "/" + this.getGeozoneID() + "/" + this.getSortID();
+                synchronized (compiledShapeCache) {
+                    CompiledShape cs = compiledShapeCache.get(key);
+                    if ((cs != null) && (cs.updateTime == updTime)) {
+                        shape = cs.shape;
+                    }
+                }
+            }
+            if (shape == null) {
+                shape = this._compileShape();
+                if ((shape != null) && (key != null)) {
+                    synchronized (compiledShapeCache) {
+                        compiledShapeCache.put(key, new CompiledShape(updTime, shape));
+                    }
+                }
+            }
+            this.compiledShape = shape;
+        }
+        return this.compiledShape;
+    }
+
+    /* create the compiled shape from the current points/radius */
+    private GeoShape _compileShape()
+    {
+        GeoPoint gzPts[] = this.getGeoPoints();
+        double   lat[]   = new double[gzPts.length];
+        double   lon[]   = new double[gzPts.length];
+        for (int i = 0; i < gzPts.length; i++) {
+            lat[i] = gzPts[i].getLatitude();
+            lon[i] = gzPts[i].getLongitude();
+        }
+        double radiusKM = this.getRadiusKilometers();
+        if (this.isClientUpload()) {
+            // we make the radius slightly bigger if this was used for a client detected geozone
+            radiusKM += CLIENT_RADIUS_DELTA_METERS / 1000.0;
+        }
+        switch (Geozone.getGeozoneType(this)) {
+            case POINT_RADIUS       : return GeoShape.createPointRadius(lat, lon, radiusKM);
+            case BOUNDED_RECT       : return GeoShape.createRectangle(lat, lon, CLIENT_GEOPOINT_DELTA);
+            case POLYGON            : return GeoShape.createPolygon(lat, lon);
+            case SWEPT_POINT_RADIUS : return GeoShape.createCorridor(lat, lon, radiusKM);
+        }
+        return null;
+    }
+
     /* return true if this geozone contains the specified point */
     public boolean containsPoint(GeoPoint gp)
     {
@@ -1936,56 +1981,14 @@ public class Geozone
             return false;
         }
 
-        /* determine inclusion in Geozone based on zone type */
-        GeoPoint gzPts[] = this.getGeoPoints();
-        switch (Geozone.getGeozoneType(this)) {
-            case POINT_RADIUS: {
-                double radiusKM  = this.getRadiusKilometers();
-                if (this.isClientUpload()) {
-                    radiusKM += CLIENT_RADIUS_DELTA_METERS / 1000.0;
-                }
-                if (geozoneMultiPointRadius != null) {
-                    return geozoneMultiPointRadius.containsPoint(gp,gzPts,radiusKM);
-                } else {
-                    return false;
-                }
-            }
-            case BOUNDED_RECT: {
-                if (geozoneBoundedRectangle != null) {
-                    return geozoneBoundedRectangle.containsPoint(gp,gzPts,0.0);
-                } else {
-                    return false;
-                }
-            }
-            case POLYGON: {
-                if (geozonePolygon != null) {
-                    return geozonePolygon.containsPoint(gp,gzPts,0.0);
-                } else {
-                    return false;
-                }
-            }
-            case SWEPT_POINT_RADIUS:  {
-                double radiusKM  = this.getRadiusKilometers();
-                if (this.isClientUpload()) {
-                    // we make the radius slightly bigger if this was used for a client detected geozone
-                    radiusKM += CLIENT_RADIUS_DELTA_METERS / 1000.0;
-                }
-                if (geozoneSweptPointRadius != null) {
-                    return geozoneSweptPointRadius.containsPoint(gp,gzPts,radiusKM);
-                } else 
-                if (geozoneMultiPointRadius != null) {
-                    Print.logWarn("GeoSegment not installed, testing with PointRadius ...");
-                    return geozoneMultiPointRadius.containsPoint(gp,gzPts,radiusKM);
-                } else {
-                    return false;
-                }
-            }
-            default: {
-                Print.logError("Unrecognized Geozone type: " + this.getZoneType());
-            }
+        /* determine inclusion in Geozone based on compiled zone shape */
+        GeoShape shape = this.getCompiledShape();
+        if (shape == null) {
+            Print.logError("Unrecognized Geozone type: " + this.getZoneType());
+            return false;
         }
+        return shape.containsPoint(gp.getLatitude(), gp.getLongitude());
 
-        return false;
     }
 
     // ------------------------------------------------------------------------
@@ -36,6 +36,8 @@
 //     -Removed check for invalid status codes when using the command-line admin.
 //  2011/06/16  Martin D. Flynn
 //     -Added FLD_foregroundColor, FLD_backgroundColor
+//  2026/10/19
+//     -Added per-account cache of resolved StatusCode records (see "findStatusCode")
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -126,6 +128,7 @@ public class StatusCode
             factory.addParentTable(Account.TABLE_NAME());
             factory.addParentTable(Device.TABLE_NAME());
             factory.setFieldDefaultValue(FLD_deviceID, ALL_DEVICES);  
+            factory.setRecordListener(new CacheListener());
         }
         return factory;
     }
@@ -410,8 +413,214 @@ public class StatusCode
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+    // Account StatusCode cache
+    // All StatusCode records for an account are loaded with a single query, and
+    // retained (including accounts with no custom codes) until a StatusCode record
+    // for the account is inserted/updated/deleted, or the cache timeout expires.
+
+    /**
+    *** Cached StatusCode records for a single account
+    **/
+    private static class AccountCodes
+    {
+        private long                                    loadTimeMS  = 0L;
+        private Map<Integer,StatusCode>                 acctCodes   = new HashMap<Integer,StatusCode>();
+        private Map<String,Map<Integer,StatusCode>>     devCodes    = new HashMap<String,Map<Integer,StatusCode>>();
+        public AccountCodes(StatusCode codes[]) {
+            this.loadTimeMS = System.currentTimeMillis();
+            if (codes != null) {
+                for (StatusCode sc : codes) {
+                    Integer code  = new Integer(sc.getStatusCode());
+                    String  devID = sc.getDeviceID();
+                    if (StringTools.isBlank(devID) || devID.equals(ALL_DEVICES)) {
+                        this.acctCodes.put(code, sc);
+                    } else {
+                        Map<Integer,StatusCode> dm = this.devCodes.get(devID);
+                        if (dm == null) {
+                            dm = new HashMap<Integer,StatusCode>();
+                            this.devCodes.put(devID, dm);
+                        }
+                        dm.put(code, sc);
+                    }
+                }
+            }
+        }
+        public boolean isExpired(long timeoutMS) {
+            return ((System.currentTimeMillis() - this.loadTimeMS) > timeoutMS);
+        }
+        public StatusCode getDeviceCode(String deviceID, int code) {
+            Map<Integer,StatusCode> dm = !StringTools.isBlank(deviceID)? this.devCodes.get(deviceID.toLowerCase()) : null;
+            return (dm != null)? dm.get(new Integer(code)) : null;
+        }
+        public StatusCode getAccountCode(int code) {
+            return this.acctCodes.get(new Integer(code));
+        }
+    }
+
+    private static Map<String,AccountCodes> accountCodesCache = new HashMap<String,AccountCodes>();
+
+    /**
+    *** Returns the cache timeout in milliseconds (0 if caching is disabled)
+    **/
+    private static long _getCacheTimeoutMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_StatusCode_cacheTimeoutSec, 600L) * 1000L;
+    }
+
+    /**
+    *** Gets the cached StatusCode records for the specified account, loading them if necessary
+    *** @param accountID  The account ID
+    *** @param timeoutMS  The cache timeout
+    *** @return The cached StatusCode records (null if unable to load)
+    **/
+    private static AccountCodes _getAccountCodes(String accountID, long timeoutMS)
+    {
+        String acctKey = accountID.toLowerCase();
+
+        /* cached? */
+        synchronized (accountCodesCache) {
+            AccountCodes ac = accountCodesCache.get(acctKey);
+            if ((ac != null) && !ac.isExpired(timeoutMS)) {
+                return ac;
+            }
+        }
+
+        /* load */
+        // DBSelect: SELECT * FROM StatusCode WHERE (accountID='acct')
+        AccountCodes ac = null;
+        long startMS = System.currentTimeMillis();
+        try {
+            DBSelect<StatusCode> dsel = new DBSelect<StatusCode>(StatusCode.getFactory());
+            DBWhere dwh = dsel.createDBWhere();
+            dsel.setWhere(dwh.WHERE(dwh.EQ(StatusCode.FLD_accountID,acctKey)));
+            ac = new AccountCodes(DBRecord.select(dsel));
+        } catch (DBException dbe) {
+            Print.logError("Unable to load StatusCodes for account: " + accountID + " [" + dbe + "]");
+            return null;
+        }
+
+        /* save (unless invalidated while loading) */
+        synchronized (accountCodesCache) {
+            Long invTime = accountCodesInvalidated.get(acctKey);
+            if (((invTime == null) || (invTime.longValue() < startMS)) && (allCodesInvalidatedMS < startMS)) {
+                accountCodesCache.put(acctKey, ac);
+            }
+        }
+        return ac;
+
+    }
+
+    private static Map<String,Long> accountCodesInvalidated = new HashMap<String,Long>();
+    private static long             allCodesInvalidatedMS   = 0L;
+
+    /**
+    *** Clears the cached StatusCode records for the specified account
+    *** @param accountID  The account ID (null/blank to clear all accounts)
+    **/
+    public static void clearStatusCodeCache(String accountID)
+    {
+        long nowMS = System.currentTimeMillis();
+        synchronized (accountCodesCache) {
+            if (StringTools.isBlank(accountID)) {
+                accountCodesCache.clear();
+                accountCodesInvalidated.clear();
+                allCodesInvalidatedMS = nowMS;
+            } else {
+                String acctKey = accountID.toLowerCase();
+                accountCodesCache.remove(acctKey);
+                accountCodesInvalidated.put(acctKey, new Long(nowMS));
+            }
+        }
+    }
+
+    /**
+    *** StatusCode table listener which invalidates cached account StatusCodes
+    **/
+    private static class CacheListener
+        implements DBRecordDeleteListener<StatusCode>
+    {
+        public CacheListener() {
+            super();
+        }
+        public void recordWillInsert(StatusCode rcd) {
+            // no-op
+        }
+        public void recordDidInsert(StatusCode rcd) {
+            StatusCode.clearStatusCodeCache(rcd.getAccountID());
+        }
+        public void recordWillUpdate(StatusCode rcd) {
+            // no-op
+        }
+        public void recordDidUpdate(StatusCode rcd) {
+            StatusCode.clearStatusCodeCache(rcd.getAccountID());
+        }
+        public void recordDidDelete(DBRecordKey<StatusCode> key) {
+            Object acctID = key.getFieldValues().hasFieldValue(FLD_accountID)? key.getFieldValue(FLD_accountID) : null;
+            StatusCode.clearStatusCodeCache((acctID != null)? acctID.toString() : null); // all if no account
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     /* return StatusCode */
     public static StatusCode findStatusCode(String accountID, String deviceID, int statusCode)
+    {
+        long timeoutMS = _getCacheTimeoutMS();
+        if (timeoutMS <= 0L) {
+            return StatusCode._findStatusCode(accountID, deviceID, statusCode);
+        }
+
+        /* check account status codes */
+        if (!StringTools.isBlank(accountID)) {
+            AccountCodes ac = StatusCode._getAccountCodes(accountID, timeoutMS);
+            if (ac == null) {
+                return StatusCode._findStatusCode(accountID, deviceID, statusCode);
+            }
+            // first, try account/device
+            StatusCode code = ac.getDeviceCode(deviceID, statusCode);
+            if (code != null) {
+                return StatusCode._copyCode(code);
+            }
+            // next, try just the account
+            code = ac.getAccountCode(statusCode);
+            if (code != null) {
+                return StatusCode._copyCode(code);
+            }
+        }
+
+        /* check global status codes */
+        String sysAdmin = AccountRecord.getSystemAdminAccountID();
+        if (!StringTools.isBlank(sysAdmin)) {
+            AccountCodes ac = StatusCode._getAccountCodes(sysAdmin, timeoutMS);
+            if (ac == null) {
+                return StatusCode._findStatusCode(null, null, statusCode);
+            }
+            return StatusCode._copyCode(ac.getAccountCode(statusCode));
+        }
+
+        /* not found */
+        return null;
+
+    }
+
+    /* return a copy of the cached StatusCode (cached records are never returned to callers) */
+    private static StatusCode _copyCode(StatusCode code)
+    {
+        if (code == null) {
+            return null;
+        }
+        try {
+            return DBRecord.copyRecord(code);
+        } catch (DBException dbe) {
+            // not expected (StatusCode factory is defined)
+            Print.logError("Unable to copy cached StatusCode: " + dbe);
+            return null;
+        }
+    }
+
+    /* return StatusCode (uncached) */
+    private static StatusCode _findStatusCode(String accountID, String deviceID, int statusCode)
     {
 
         /* check account status codes */
@@ -0,0 +1,1032 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Precomputed per-trip segments, derived from the Device start/stop events
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.db.tables;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.math.*;
+import java.io.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Trip table.<br>
+*** Each record represents a single trip of a Device, from the event at which the Device
+*** started moving, to the event at which the Device stopped (using the same start/stop
+*** determination as <code>Device.insertEventData</code>, see <code>Device.GetMotionChange</code>).  A record is inserted (with an
+*** end time of '0') when a Device starts moving, and is completed from the events of the
+*** trip when the Device stops, so that trip-oriented reports need not re-scan the raw
+*** events.  Trips for a historical range may be regenerated with the "-rebuild" command.
+**/
+
+public class Trip
+    extends DeviceRecord<Trip>
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    GEOZONE_LIST_LENGTH     = 200;
+    private static final int    SUBDIVISION_LIST_LENGTH = 400;
+
+    // ------------------------------------------------------------------------
+
+    private static Boolean tableExists = null;
+
+    /**
+    *** Returns true if trips are maintained ("Trip.enable") and the Trip table exists
+    *** @return True if trips are maintained
+    **/
+    public static boolean IsEnabled()
+    {
+        if (!RTConfig.getBoolean(DBConfig.PROP_Trip_enable,false)) {
+            return false;
+        } else
+        if (tableExists == null) {
+            try {
+                tableExists = new Boolean(Trip.getFactory().tableExists());
+            } catch (DBException dbe) {
+                Print.logException("Unable to determine Trip table existence", dbe);
+                tableExists = Boolean.FALSE;
+            }
+            if (!tableExists.booleanValue()) {
+                Print.logWarn("'Trip.enable' is true, but the Trip table does not exist");
+            }
+        }
+        return tableExists.booleanValue();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // SQL table definition below
+
+    /* table name */
+    public static final String _TABLE_NAME              = "Trip";
+    public static String TABLE_NAME() { return DBProvider._translateTableName(_TABLE_NAME); }
+
+    /* field definition */
+    public static final String FLD_startTime            = "startTime";
+    public static final String FLD_endTime              = "endTime";            // '0' if in progress
+    public static final String FLD_startLatitude        = "startLatitude";
+    public static final String FLD_startLongitude       = "startLongitude";
+    public static final String FLD_startOdometerKM      = "startOdometerKM";
+    public static final String FLD_startAddress         = "startAddress";
+    public static final String FLD_startFuelTotal       = "startFuelTotal";
+    public static final String FLD_endLatitude          = "endLatitude";
+    public static final String FLD_endLongitude         = "endLongitude";
+    public static final String FLD_endOdometerKM        = "endOdometerKM";
+    public static final String FLD_endAddress           = "endAddress";
+    public static final String FLD_endFuelTotal         = "endFuelTotal";
+    public static final String FLD_distanceKM           = "distanceKM";
+    public static final String FLD_maxSpeedKPH          = "maxSpeedKPH";
+    public static final String FLD_avgSpeedKPH          = "avgSpeedKPH";
+    public static final String FLD_idleSeconds          = "idleSeconds";
+    public static final String FLD_eventCount           = "eventCount";
+    public static final String FLD_driverID             = EventData.FLD_driverID;
+    public static final String FLD_geozonesEntered      = "geozonesEntered";
+    public static final String FLD_geozonesExited       = "geozonesExited";
+    public static final String FLD_subdivisionKM        = "subdivisionKM";      // "US/CA=12.3,US/NV=45.6"
+    private static DBField FieldInfo[] = {
+        // Trip fields
+        newField_accountID(true),
+        newField_deviceID(true),
+        new DBField(FLD_startTime       , Long.TYPE     , DBField.TYPE_UINT32      , "Start Time"          , "key=true format=time"),
+        new DBField(FLD_endTime         , Long.TYPE     , DBField.TYPE_UINT32      , "End Time"            , "format=time"),
+        new DBField(FLD_startLatitude   , Double.TYPE   , DBField.TYPE_DOUBLE      , "Start Latitude"      , "format=#0.00000"),
+        new DBField(FLD_startLongitude  , Double.TYPE   , DBField.TYPE_DOUBLE      , "Start Longitude"     , "format=#0.00000"),
+        new DBField(FLD_startOdometerKM , Double.TYPE   , DBField.TYPE_DOUBLE      , "Start Odometer"      , "format=#0.0 units=distance"),
+        new DBField(FLD_startAddress    , String.class  , DBField.TYPE_ADDRESS()   , "Start Address"       , "utf8=true"),
+        new DBField(FLD_startFuelTotal  , Double.TYPE   , DBField.TYPE_DOUBLE      , "Start Fuel Total"    , "format=#0.0 units=volume"),
+        new DBField(FLD_endLatitude     , Double.TYPE   , DBField.TYPE_DOUBLE      , "End Latitude"        , "format=#0.00000"),
+        new DBField(FLD_endLongitude    , Double.TYPE   , DBField.TYPE_DOUBLE      , "End Longitude"       , "format=#0.00000"),
+        new DBField(FLD_endOdometerKM   , Double.TYPE   , DBField.TYPE_DOUBLE      , "End Odometer"        , "format=#0.0 units=distance"),
+        new DBField(FLD_endAddress      , String.class  , DBField.TYPE_ADDRESS()   , "End Address"         , "utf8=true"),
+        new DBField(FLD_endFuelTotal    , Double.TYPE   , DBField.TYPE_DOUBLE      , "End Fuel Total"      , "format=#0.0 units=volume"),
+        new DBField(FLD_distanceKM      , Double.TYPE   , DBField.TYPE_DOUBLE      , "Distance"            , "format=#0.0 units=distance"),
+        new DBField(FLD_maxSpeedKPH     , Double.TYPE   , DBField.TYPE_DOUBLE      , "Maximum Speed"       , "format=#0.0 units=speed"),
+        new DBField(FLD_avgSpeedKPH     , Double.TYPE   , DBField.TYPE_DOUBLE      , "Average Speed"       , "format=#0.0 units=speed"),
+        new DBField(FLD_idleSeconds     , Long.TYPE     , DBField.TYPE_UINT32      , "Idle Seconds"        , ""),
+        new DBField(FLD_eventCount      , Long.TYPE     , DBField.TYPE_UINT32      , "Event Count"         , ""),
+        new DBField(FLD_driverID        , String.class  , DBField.TYPE_DRIVER_ID() , "Driver ID"           , "utf8=true"),
+        new DBField(FLD_geozonesEntered , String.class  , DBField.TYPE_STRING(GEOZONE_LIST_LENGTH), "Geozones Entered", ""),
+        new DBField(FLD_geozonesExited  , String.class  , DBField.TYPE_STRING(GEOZONE_LIST_LENGTH), "Geozones Exited" , ""),
+        new DBField(FLD_subdivisionKM   , String.class  , DBField.TYPE_STRING(SUBDIVISION_LIST_LENGTH), "Subdivision Distances", ""),
+        // Common fields
+        newField_lastUpdateTime(),
+        newField_creationTime(),
+    };
+
+    /* key class */
+    public static class Key
+        extends DeviceKey<Trip>
+    {
+        public Key() {
+            super();
+        }
+        public Key(String acctId, String devId, long startTime) {
+            super.setFieldValue(FLD_accountID , ((acctId != null)? acctId.toLowerCase() : ""));
+            super.setFieldValue(FLD_deviceID  , ((devId  != null)? devId.toLowerCase()  : ""));
+            super.setFieldValue(FLD_startTime , startTime);
+        }
+        public DBFactory<Trip> getFactory() {
+            return Trip.getFactory();
+        }
+    }
+
+    /* factory constructor */
+    private static DBFactory<Trip> factory = null;
+    public static DBFactory<Trip> getFactory()
+    {
+        if (factory == null) {
+            factory = DBFactory.createDBFactory(
+                Trip.TABLE_NAME(),
+                Trip.FieldInfo,
+                DBFactory.KeyType.PRIMARY,
+                Trip.class,
+                Trip.Key.class,
+                false/*editable*/,true/*viewable*/);
+            factory.addParentTable(Account.TABLE_NAME());
+            factory.addParentTable(Device.TABLE_NAME());
+        }
+        return factory;
+    }
+
+    /* Bean instance */
+    public Trip()
+    {
+        super();
+    }
+
+    /* database record */
+    public Trip(Trip.Key key)
+    {
+        super(key);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* table description */
+    public static String getTableDescription(Locale loc)
+    {
+        I18N i18n = I18N.getI18N(Trip.class, loc);
+        return i18n.getString("Trip.description",
+            "This table contains " +
+            "Device trips (start/stop segments) derived from the Device start/stop events."
+            );
+    }
+
+    // SQL table definition above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Bean access fields below
+
+    public long getStartTime()
+    {
+        Long v = (Long)this.getFieldValue(FLD_startTime);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    private void setStartTime(long v)
+    {
+        this.setFieldValue(FLD_startTime, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getEndTime()
+    {
+        Long v = (Long)this.getFieldValue(FLD_endTime);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setEndTime(long v)
+    {
+        this.setFieldValue(FLD_endTime, v);
+    }
+
+    /**
+    *** Returns true if this trip is still in progress
+    *** @return True if this trip is still in progress
+    **/
+    public boolean isInProgress()
+    {
+        return (this.getEndTime() <= 0L);
+    }
+
+    /**
+    *** Gets the elapsed time of this trip
+    *** @return The elapsed time in seconds (-1 if the trip is still in progress)
+    **/
+    public long getElapsedSeconds()
+    {
+        return this.isInProgress()? -1L : (this.getEndTime() - this.getStartTime());
+    }
+
+    // ------------------------------------------------------------------------
+
+    public double getStartLatitude()
+    {
+        return this.getFieldValue(FLD_startLatitude, 0.0);
+    }
+
+    public void setStartLatitude(double v)
+    {
+        this.setFieldValue(FLD_startLatitude, v);
+    }
+
+    public double getStartLongitude()
+    {
+        return this.getFieldValue(FLD_startLongitude, 0.0);
+    }
+
+    public void setStartLongitude(double v)
+    {
+        this.setFieldValue(FLD_startLongitude, v);
+    }
+
+    public GeoPoint getStartGeoPoint()
+    {
+        return new GeoPoint(this.getStartLatitude(), this.getStartLongitude());
+    }
+
+    public double getStartOdometerKM()
+    {
+        return this.getFieldValue(FLD_startOdometerKM, 0.0);
+    }
+
+    public void setStartOdometerKM(double v)
+    {
+        this.setFieldValue(FLD_startOdometerKM, v);
+    }
+
+    public String getStartAddress()
+    {
+        String v = (String)this.getFieldValue(FLD_startAddress);
+        return StringTools.trim(v);
+    }
+
+    public void setStartAddress(String v)
+    {
+        this.setFieldValue(FLD_startAddress, StringTools.trim(v));
+    }
+
+    public double getStartFuelTotal()
+    {
+        return this.getFieldValue(FLD_startFuelTotal, 0.0);
+    }
+
+    public void setStartFuelTotal(double v)
+    {
+        this.setFieldValue(FLD_startFuelTotal, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public double getEndLatitude()
+    {
+        return this.getFieldValue(FLD_endLatitude, 0.0);
+    }
+
+    public void setEndLatitude(double v)
+    {
+        this.setFieldValue(FLD_endLatitude, v);
+    }
+
+    public double getEndLongitude()
+    {
+        return this.getFieldValue(FLD_endLongitude, 0.0);
+    }
+
+    public void setEndLongitude(double v)
+    {
+        this.setFieldValue(FLD_endLongitude, v);
+    }
+
+    public GeoPoint getEndGeoPoint()
+    {
+        return new GeoPoint(this.getEndLatitude(), this.getEndLongitude());
+    }
+
+    public double getEndOdometerKM()
+    {
+        return this.getFieldValue(FLD_endOdometerKM, 0.0);
+    }
+
+    public void setEndOdometerKM(double v)
+    {
+        this.setFieldValue(FLD_endOdometerKM, v);
+    }
+
+    public String getEndAddress()
+    {
+        String v = (String)this.getFieldValue(FLD_endAddress);
+        return StringTools.trim(v);
+    }
+
+    public void setEndAddress(String v)
+    {
+        this.setFieldValue(FLD_endAddress, StringTools.trim(v));
+    }
+
+    public double getEndFuelTotal()
+    {
+        return this.getFieldValue(FLD_endFuelTotal, 0.0);
+    }
+
+    public void setEndFuelTotal(double v)
+    {
+        this.setFieldValue(FLD_endFuelTotal, v);
+    }
+
+    /**
+    *** Gets the fuel used during this trip
+    *** @return The fuel used (liters), or -1 if unavailable
+    **/
+    public double getFuelTrip()
+    {
+        double startFuel = this.getStartFuelTotal();
+        double endFuel   = this.getEndFuelTotal();
+        return ((startFuel > 0.0) && (endFuel >= startFuel))? (endFuel - startFuel) : -1.0;
+    }
+
+    // ------------------------------------------------------------------------
+
+    public double getDistanceKM()
+    {
+        return this.getFieldValue(FLD_distanceKM, 0.0);
+    }
+
+    public void setDistanceKM(double v)
+    {
+        this.setFieldValue(FLD_distanceKM, v);
+    }
+
+    public double getMaxSpeedKPH()
+    {
+        return this.getFieldValue(FLD_maxSpeedKPH, 0.0);
+    }
+
+    public void setMaxSpeedKPH(double v)
+    {
+        this.setFieldValue(FLD_maxSpeedKPH, v);
+    }
+
+    public double getAvgSpeedKPH()
+    {
+        return this.getFieldValue(FLD_avgSpeedKPH, 0.0);
+    }
+
+    public void setAvgSpeedKPH(double v)
+    {
+        this.setFieldValue(FLD_avgSpeedKPH, v);
+    }
+
+    public long getIdleSeconds()
+    {
+        Long v = (Long)this.getFieldValue(FLD_idleSeconds);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setIdleSeconds(long v)
+    {
+        this.setFieldValue(FLD_idleSeconds, v);
+    }
+
+    public long getEventCount()
+    {
+        Long v = (Long)this.getFieldValue(FLD_eventCount);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setEventCount(long v)
+    {
+        this.setFieldValue(FLD_eventCount, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public String getDriverID()
+    {
+        String v = (String)this.getFieldValue(FLD_driverID);
+        return StringTools.trim(v);
+    }
+
+    public void setDriverID(String v)
+    {
+        this.setFieldValue(FLD_driverID, StringTools.trim(v));
+    }
+
+    public String getGeozonesEntered()
+    {
+        String v = (String)this.getFieldValue(FLD_geozonesEntered);
+        return StringTools.trim(v);
+    }
+
+    public void setGeozonesEntered(String v)
+    {
+        this.setFieldValue(FLD_geozonesEntered, StringTools.trim(v));
+    }
+
+    public String getGeozonesExited()
+    {
+        String v = (String)this.getFieldValue(FLD_geozonesExited);
+        return StringTools.trim(v);
+    }
+
+    public void setGeozonesExited(String v)
+    {
+        this.setFieldValue(FLD_geozonesExited, StringTools.trim(v));
+    }
+
+    public String getSubdivisionKM()
+    {
+        String v = (String)this.getFieldValue(FLD_subdivisionKM);
+        return StringTools.trim(v);
+    }
+
+    public void setSubdivisionKM(String v)
+    {
+        this.setFieldValue(FLD_subdivisionKM, StringTools.trim(v));
+    }
+
+    /**
+    *** Gets the distance traveled within each subdivision (state/province) during this trip
+    *** @return A map of subdivision (ie. "US/CA") to kilometers (does not return null)
+    **/
+    public OrderedMap<String,Double> getSubdivisionDistances()
+    {
+        OrderedMap<String,Double> map = new OrderedMap<String,Double>();
+        for (String sd : StringTools.split(this.getSubdivisionKM(),',')) {
+            int p = sd.lastIndexOf('=');
+            if (p > 0) {
+                map.put(sd.substring(0,p), new Double(StringTools.parseDouble(sd.substring(p+1),0.0)));
+            }
+        }
+        return map;
+    }
+
+    // Bean access fields above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* String representation */
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.getAccountID()).append("/").append(this.getDeviceID()).append(" ");
+        sb.append(new DateTime(this.getStartTime())).append(" ==> ");
+        sb.append(this.isInProgress()? "(in progress)" : (new DateTime(this.getEndTime())).toString());
+        sb.append(" [").append(StringTools.format(this.getDistanceKM(),"0.0")).append(" km]");
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Accumulates the events of a single trip
+    **/
+    public static class Builder
+    {
+        private Trip                trip        = null;
+        private GeoPoint            lastGP      = null;
+        private double              lastOdomKM  = 0.0;
+        private long                lastTime    = 0L;
+        private String              lastZoneID  = "";
+        private String              lastSubdiv  = "";
+        private double              gpsDistKM   = 0.0;
+        private OrderedSet<String>  entered     = new OrderedSet<String>();
+        private OrderedSet<String>  exited      = new OrderedSet<String>();
+        private OrderedMap<String,Double> subdivKM = new OrderedMap<String,Double>();
+        public Builder(EventData startEv) {
+            this.trip = new Trip(new Trip.Key(startEv.getAccountID(), startEv.getDeviceID(), startEv.getTimestamp()));
+            this.trip.setCreationDefaultValues();
+            this.trip.setStartLatitude(startEv.getLatitude());
+            this.trip.setStartLongitude(startEv.getLongitude());
+            this.trip.setStartOdometerKM(Math.max(startEv.getOdometerKM(),0.0));
+            this.trip.setStartAddress(startEv.getAddress());
+            this.trip.setStartFuelTotal(startEv.getFieldValue(EventData.FLD_fuelTotal, 0.0));
+            this.trip.setDriverID(startEv.getDriverID());
+            this.lastZoneID = startEv.getGeozoneID();
+            this.add(startEv);
+        }
+        /* add the next event of this trip */
+        public void add(EventData ev) {
+            long ts = ev.getTimestamp();
+            double kph = ev.getSpeedKPH();
+            // idle: stationary since the previous event
+            if ((this.lastTime > 0L) && (ts > this.lastTime) && (kph <= 0.0)) {
+                this.trip.setIdleSeconds(this.trip.getIdleSeconds() + (ts - this.lastTime));
+            }
+            this.lastTime = ts;
+            // location/distance
+            double odomKM = ev.getOdometerKM();
+            String subdiv = ev.getSubdivision();
+            if (StringTools.isBlank(subdiv)) {
+                subdiv = this.lastSubdiv;
+            }
+            if (ev.isValidGeoPoint()) {
+                GeoPoint gp = ev.getGeoPoint();
+                if (this.lastGP != null) {
+                    double gpsKM = this.lastGP.kilometersToPoint(gp);
+                    this.gpsDistKM += gpsKM;
+                    // segment distance within the subdivision of this event
+                    double segKM = ((this.lastOdomKM > 0.0) && (odomKM >= this.lastOdomKM))? (odomKM - this.lastOdomKM) : gpsKM;
+                    if (!StringTools.isBlank(subdiv) && (segKM > 0.0)) {
+                        Double km = this.subdivKM.get(subdiv);
+                        this.subdivKM.put(subdiv, new Double(((km != null)? km.doubleValue() : 0.0) + segKM));
+                    }
+                }
+                this.lastGP = gp;
+                this.lastOdomKM = odomKM;
+                this.trip.setEndLatitude(gp.getLatitude());
+                this.trip.setEndLongitude(gp.getLongitude());
+                this.trip.setEndAddress(ev.getAddress());
+            }
+            this.lastSubdiv = subdiv;
+            if (odomKM > 0.0) {
+                this.trip.setEndOdometerKM(odomKM);
+            }
+            double fuel = ev.getFieldValue(EventData.FLD_fuelTotal, 0.0);
+            if (fuel > 0.0) {
+                this.trip.setEndFuelTotal(fuel);
+            }
+            if (kph > this.trip.getMaxSpeedKPH()) {
+                this.trip.setMaxSpeedKPH(kph);
+            }
+            if (StringTools.isBlank(this.trip.getDriverID()) && ev.hasDriverID()) {
+                this.trip.setDriverID(ev.getDriverID());
+            }
+            // geozone transitions
+            int    sc     = ev.getStatusCode();
+            String zoneID = ev.getGeozoneID();
+            if (StatusCodes.IsGeozoneArrive(sc) && !StringTools.isBlank(zoneID)) {
+                this.entered.add(zoneID);
+            } else
+            if (StatusCodes.IsGeozoneDepart(sc) && !StringTools.isBlank(zoneID)) {
+                this.exited.add(zoneID);
+            } else
+            if (!zoneID.equals(this.lastZoneID)) {
+                if (!StringTools.isBlank(this.lastZoneID)) { this.exited.add(this.lastZoneID); }
+                if (!StringTools.isBlank(zoneID)         ) { this.entered.add(zoneID);         }
+            }
+            this.lastZoneID = zoneID;
+            this.trip.setEventCount(this.trip.getEventCount() + 1L);
+        }
+        /* complete this trip (endEv may be null if the trip is still in progress) */
+        public Trip getTrip(EventData endEv) {
+            Trip t = this.trip;
+            double startOdom = t.getStartOdometerKM();
+            double endOdom   = t.getEndOdometerKM();
+            double distKM    = ((startOdom > 0.0) && (endOdom >= startOdom))? (endOdom - startOdom) : this.gpsDistKM;
+            t.setDistanceKM(distKM);
+            t.setGeozonesEntered(Trip._zoneList(this.entered));
+            t.setGeozonesExited( Trip._zoneList(this.exited ));
+            t.setSubdivisionKM(Trip._subdivisionList(this.subdivKM));
+            if (endEv != null) {
+                t.setEndTime(endEv.getTimestamp());
+                long movingSec = t.getElapsedSeconds() - t.getIdleSeconds();
+                t.setAvgSpeedKPH((movingSec > 0L)? (distKM / ((double)movingSec / 3600.0)) : 0.0);
+            } else {
+                t.setEndTime(0L);
+                t.setAvgSpeedKPH(0.0);
+            }
+            return t;
+        }
+    }
+
+    /* comma-separated "subdivision=km" list, truncated to the field length */
+    private static String _subdivisionList(OrderedMap<String,Double> subdivKM)
+    {
+        StringBuffer sb = new StringBuffer();
+        for (String sd : subdivKM.keySet()) {
+            String s = sd + "=" + StringTools.format(subdivKM.get(sd).doubleValue(),"0.000");
+            if ((sb.length() + 1 + s.length()) > SUBDIVISION_LIST_LENGTH) {
+                Print.logWarn("Trip subdivision list truncated: " + subdivKM.size() + " subdivisions");
+                break;
+            }
+            if (sb.length() > 0) { sb.append(","); }
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /* comma-separated geozone list, truncated to the field length */
+    private static String _zoneList(OrderedSet<String> zones)
+    {
+        String s = StringTools.join(zones, ',');
+        if (s.length() > GEOZONE_LIST_LENGTH) {
+            int p = s.lastIndexOf(',', GEOZONE_LIST_LENGTH);
+            s = (p > 0)? s.substring(0,p) : "";
+        }
+        return s;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Called by <code>Device.insertEventData</code> when the Device starts moving.
+    *** Inserts an in-progress trip record.
+    *** @param startEv  The start event
+    **/
+    public static void tripStarted(EventData startEv)
+    {
+        try {
+            Trip trip = (new Trip.Builder(startEv)).getTrip(null);
+            trip.save();
+        } catch (DBException dbe) {
+            Print.logException("Unable to save Trip start: " + startEv.getAccountID() + "/" + startEv.getDeviceID(), dbe);
+        }
+    }
+
+    /**
+    *** Returns a detached copy of the specified event, for use by a background trip job
+    *** while the inserting thread continues to update the original event
+    *** @param ev  The event
+    *** @return The copy, or null if the event could not be copied
+    **/
+    public static EventData copyEvent(EventData ev)
+    {
+        try {
+            return DBRecord.copyRecord(ev);
+        } catch (DBException dbe) {
+            Print.logException("Unable to copy Trip stop event: " + ev.getAccountID() + "/" + ev.getDeviceID(), dbe);
+            return null;
+        }
+    }
+
+    /**
+    *** Called (in the background) by <code>Device.insertEventData</code> when the Device stops
+    *** moving.  Completes the trip starting at the specified time from the events of the trip.
+    *** @param acctID     The Account ID
+    *** @param devID      The Device ID
+    *** @param startTime  The trip start time (the Device "lastStartTime")
+    *** @param stopEv     The stop event (a copy not shared with the inserting thread)
+    **/
+    public static void tripStopped(String acctID, String devID, long startTime, EventData stopEv)
+    {
+        if ((startTime <= 0L) || (startTime > stopEv.getTimestamp())) {
+            return;
+        }
+        long startNS = Metrics.StartTimer();
+        Trip.Builder tb = null;
+        EventData lastEv = null;
+        EventDataCursor cursor = new EventDataCursor(acctID, devID, startTime, stopEv.getTimestamp(), null, false, -1L);
+        try {
+            for (Iterator<EventData> i = cursor.iterator(); i.hasNext();) {
+                lastEv = i.next();
+                if (tb == null) {
+                    tb = new Trip.Builder(lastEv);
+                } else {
+                    tb.add(lastEv);
+                }
+            }
+        } catch (EventDataCursor.CursorException ce) {
+            // do not save a trip built from a partial event list ("rebuildTrips" can regenerate it)
+            Print.logException("Unable to read Trip events: " + acctID + "/" + devID, ce.getDBException());
+            return;
+        }
+        if (tb == null) {
+            // no events found (the start event was not saved?)
+            tb = new Trip.Builder(stopEv);
+        } else
+        if ((lastEv.getTimestamp() != stopEv.getTimestamp()) || (lastEv.getStatusCode() != stopEv.getStatusCode())) {
+            // the stop event has not yet been saved
+            tb.add(stopEv);
+        }
+        try {
+            Trip trip = tb.getTrip(stopEv);
+            trip.save();
+            Print.logDebug("Trip completed: " + trip);
+        } catch (DBException dbe) {
+            Print.logException("Unable to save Trip: " + acctID + "/" + devID, dbe);
+        }
+        Metrics.RecordElapsed("trip.complete", startNS);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Regenerates the trips of the specified Device within the specified time range from
+    *** the Device events.  Existing trips starting within the range are replaced.
+    *** The motion state is undefined at the start of the range, and is then tracked through
+    *** <code>Device.GetMotionChange</code>, as <code>Device.insertEventData</code> does.
+    *** @param device    The Device
+    *** @param fromTime  The range start time
+    *** @param toTime    The range end time
+    *** @return The number of trips saved
+    *** @throws DBException  If a database error occurs
+    **/
+    public static int rebuildTrips(Device device, long fromTime, long toTime)
+        throws DBException
+    {
+        String acctID = device.getAccountID();
+        String devID  = device.getDeviceID();
+
+        /* delete existing trips */
+        // DBDelete: DELETE FROM Trip WHERE ((accountID='acct') AND (deviceID='dev') AND (startTime>=from) AND (startTime<=to))
+        DBDelete ddel = new DBDelete(Trip.getFactory());
+        DBWhere dwh = ddel.createDBWhere();
+        ddel.setWhere(dwh.WHERE_(
+            dwh.AND(
+                dwh.EQ(Trip.FLD_accountID,acctID),
+                dwh.EQ(Trip.FLD_deviceID ,devID),
+                dwh.GE(Trip.FLD_startTime,fromTime),
+                dwh.LE(Trip.FLD_startTime,toTime)
+            )
+        ));
+        DBConnection dbc = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            dbc.executeUpdate(ddel.toString());
+        } catch (SQLException sqe) {
+            throw new DBException("Deleting Trip records", sqe);
+        } finally {
+            DBConnection.release(dbc);
+        }
+
+        /* scan events */
+        int          count     = 0;
+        long         lastStart = 0L; // undefined
+        long         lastStop  = 0L;
+        Trip.Builder tb        = null;
+        EventDataCursor cursor = new EventDataCursor(device, fromTime, toTime, null, false, -1L);
+        try {
+            for (Iterator<EventData> i = cursor.iterator(); i.hasNext();) {
+                EventData ev = i.next();
+                long ts = ev.getTimestamp();
+                switch (Device.GetMotionChange(lastStart, lastStop, ev)) {
+                    case Device.MOTION_START:
+                        if (lastStart <= lastStop) {
+                            // was "stopped" (or undefined), now "moving"
+                            tb = new Trip.Builder(ev);
+                        }
+                        lastStart = ts;
+                        break;
+                    case Device.MOTION_STOP:
+                        if ((lastStart > lastStop) && (tb != null)) {
+                            // was "moving", now "stopped"
+                            tb.add(ev);
+                            tb.getTrip(ev).save();
+                            count++;
+                            tb = null;
+                        }
+                        lastStop = ts;
+                        break;
+                    default:
+                        if (tb != null) {
+                            tb.add(ev);
+                        }
+                        break;
+                }
+            }
+        } catch (EventDataCursor.CursorException ce) {
+            throw ce.getDBException();
+        }
+        if (tb != null) {
+            // trip in progress at the end of the range
+            tb.getTrip(null).save();
+            count++;
+        }
+        return count;
+
+    }
+
+    /**
+    *** Regenerates the trips of the specified Devices within the specified time range,
+    *** processing the Devices in parallel
+    *** @param account   The Account
+    *** @param devIDs    The list of Device IDs
+    *** @param fromTime  The range start time
+    *** @param toTime    The range end time
+    *** @param threads   The number of Devices processed concurrently
+    *** @return The total number of trips saved
+    **/
+    public static long rebuildTrips(final Account account, Collection<String> devIDs,
+        final long fromTime, final long toTime,
+        int threads)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads,1));
+        java.util.List<Future<Integer>> results = new Vector<Future<Integer>>();
+        for (final String devID : devIDs) {
+            results.add(pool.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    Device dev = Device.getDevice(account, devID);
+                    if (dev == null) {
+                        Print.logWarn("Device not found: " + account.getAccountID() + "/" + devID);
+                        return new Integer(0);
+                    }
+                    int n = Trip.rebuildTrips(dev, fromTime, toTime);
+                    Print.logInfo("Rebuilt " + n + " trips: " + account.getAccountID() + "/" + devID);
+                    return new Integer(n);
+                }
+            }));
+        }
+        pool.shutdown();
+        long total = 0L;
+        for (Future<Integer> f : results) {
+            try {
+                total += f.get().intValue();
+            } catch (ExecutionException ee) {
+                Print.logException("Trip rebuild failed", ee.getCause());
+            } catch (InterruptedException ie) {
+                Print.logWarn("Trip rebuild interrupted");
+                pool.shutdownNow();
+                break;
+            }
+        }
+        return total;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the trips of the specified Device which start within the specified time range
+    *** @param acctID    The Account ID
+    *** @param devID     The Device ID
+    *** @param fromTime  The range start time (-1 for no start time)
+    *** @param toTime    The range end time (-1 for no end time)
+    *** @param limit     The maximum number of trips returned (&lt;=0 for no limit)
+    *** @return The trips, in ascending start time order (does not return null)
+    *** @throws DBException  If a database error occurs
+    **/
+    public static Trip[] getTrips(String acctID, String devID,
+        long fromTime, long toTime, long limit)
+        throws DBException
+    {
+
+        /* invalid account/device? */
+        if (StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return new Trip[0];
+        }
+
+        /* where clause */
+        // DBSelect: WHERE ((accountID='acct') AND (deviceID='dev') AND (startTime>=from) AND (startTime<=to)) ORDER BY startTime
+        DBSelect<Trip> dsel = new DBSelect<Trip>(Trip.getFactory());
+        DBWhere dwh = dsel.createDBWhere();
+        dwh.append(dwh.AND(
+            dwh.EQ(Trip.FLD_accountID,acctID),
+            dwh.EQ(Trip.FLD_deviceID ,devID)
+        ));
+        if (fromTime >= 0L) {
+            dwh.append(dwh.AND_(dwh.GE(Trip.FLD_startTime,fromTime)));
+        }
+        if ((toTime >= 0L) && (toTime >= fromTime)) {
+            dwh.append(dwh.AND_(dwh.LE(Trip.FLD_startTime,toTime)));
+        }
+        dsel.setWhere(dwh.WHERE(dwh.toString()));
+        dsel.setOrderByFields(FLD_startTime);
+        dsel.setLimit(limit);
+
+        /* select */
+        Trip t[] = DBRecord.select(dsel); // select:DBSelect
+        return (t != null)? t : new Trip[0];
+
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_ACCOUNT[]           = new String[] { "account", "acct"  };
+    private static final String ARG_DEVICE[]            = new String[] { "device" , "dev"   };
+    private static final String ARG_FROM[]              = new String[] { "from"             };
+    private static final String ARG_TO[]                = new String[] { "to"               };
+    private static final String ARG_REBUILD[]           = new String[] { "rebuild"          };
+    private static final String ARG_LIST[]              = new String[] { "list"             };
+    private static final String ARG_THREADS[]           = new String[] { "threads"          };
+
+    private static void usage()
+    {
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + Trip.class.getName() + " {options}");
+        Print.sysPrintln("Common Options:");
+        Print.sysPrintln("  -account=<id>               Account ID");
+        Print.sysPrintln("  -device=<id>                Device ID (all Account devices if not specified)");
+        Print.sysPrintln("  -from=<time>                Range start time");
+        Print.sysPrintln("  -to=<time>                  Range end time (default 'current')");
+        Print.sysPrintln("");
+        Print.sysPrintln("  -rebuild                    Regenerate trips from events within range");
+        Print.sysPrintln("  -threads=<count>            Number of devices rebuilt concurrently [default 4]");
+        Print.sysPrintln("  -list                       List trips within range");
+        System.exit(1);
+    }
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv,true);  // main
+        String accountID = RTConfig.getString(ARG_ACCOUNT, "");
+        String deviceID  = RTConfig.getString(ARG_DEVICE , "");
+
+        /* account */
+        if (StringTools.isBlank(accountID)) {
+            Print.logError("Account-ID not specified.");
+            usage();
+        }
+        Account account = null;
+        try {
+            account = Account.getAccount(accountID); // may throw DBException
+            if (account == null) {
+                Print.logError("Account-ID does not exist: " + accountID);
+                usage();
+            }
+        } catch (DBException dbe) {
+            Print.logException("Error loading Account: " + accountID, dbe);
+            System.exit(99);
+        }
+
+        /* time range */
+        TimeZone tmz = account.getTimeZone(null);
+        long fromTime = -1L;
+        long toTime   = DateTime.getCurrentTimeSec();
+        try {
+            String from = RTConfig.getString(ARG_FROM, "");
+            String to   = RTConfig.getString(ARG_TO  , "");
+            if (!StringTools.isBlank(from)) {
+                fromTime = DateTime.parseArgumentDate(from,tmz,false).getTimeSec();
+            }
+            if (!StringTools.isBlank(to) && !to.equalsIgnoreCase("current")) {
+                toTime = DateTime.parseArgumentDate(to,tmz,true).getTimeSec();
+            }
+        } catch (DateTime.DateParseException dpe) {
+            Print.logError("Invalid time specification: " + dpe.getMessage());
+            usage();
+        }
+
+        /* devices */
+        java.util.List<String> devIDs = new Vector<String>();
+        try {
+            if (!StringTools.isBlank(deviceID)) {
+                devIDs.add(deviceID);
+            } else {
+                devIDs.addAll(Device.getDeviceIDsForAccount(accountID, null, false));
+            }
+        } catch (DBException dbe) {
+            Print.logException("Error reading Devices: " + accountID, dbe);
+            System.exit(99);
+        }
+
+        /* rebuild */
+        if (RTConfig.getBoolean(ARG_REBUILD,false)) {
+            if (fromTime < 0L) {
+                Print.logError("Rebuild requires '-from'");
+                usage();
+            }
+            int threads = RTConfig.getInt(ARG_THREADS, 4);
+            long startMS = System.currentTimeMillis();
+            long count = Trip.rebuildTrips(account, devIDs, fromTime, toTime, threads);
+            Print.sysPrintln("Rebuilt " + count + " trips for " + devIDs.size() + " devices in " +
+                (System.currentTimeMillis() - startMS) + " ms");
+            System.exit(0);
+        }
+
+        /* list */
+        if (RTConfig.getBoolean(ARG_LIST,false)) {
+            try {
+                for (String devID : devIDs) {
+                    for (Trip t : Trip.getTrips(accountID, devID, fromTime, toTime, -1L)) {
+                        Print.sysPrintln(t.toString());
+                    }
+                }
+                System.exit(0);
+            } catch (DBException dbe) {
+                Print.logException("Error reading Trips", dbe);
+                System.exit(99);
+            }
+        }
+
+        /* no options specified */
+        Print.logWarn("Missing options ...");
+        usage();
+
+    }
+
+}
@@ -45,6 +45,8 @@
 //     -Added fields 'FLD_preferredDeviceID', 'FLD_roleID'
 //  2011/03/08  Martin D. Flynn
 //     -Added FLD_notifyEmail
+//  2026/10/19
+//     -"getUser" now reads through the record cache (see DBFactory.getCachedRecord)
 // ----------------------------------------------------------------------------
 package org.opengts.db.tables;
 
@@ -319,6 +321,7 @@ public class User
                 User.Key.class,
                 true/*editable*/, true/*viewable*/);
             factory.addParentTable(Account.TABLE_NAME());
+            factory.setRecordCacheable(true);
         }
         return factory;
     }
@@ -1489,13 +1492,11 @@ public class User
     {
         if ((account != null) && (userId != null)) {
             User.Key userKey = new User.Key(account.getAccountID(), userId);
-            if (userKey.exists()) {
-                User user = userKey.getDBRecord(true);
+            User user = User.getFactory().getCachedRecord(userKey);
+            if (user != null) {
                 user.setAccount(account);
-                return user;
-            } else {
-                return null;
             }
+            return user;
         } else {
             throw new DBException("Account or UserID is null");
         }
@@ -71,6 +71,10 @@
 //  2013/05/28  Martin D. Flynn
 //     -Added support for displaying MySQL db engine type and approximate InnoDB
 //      record counts.
+//  2026/10/19
+//     -Added "-queryStats" option to display SQL statement statistics.
+//     -Sharded tables are created/validated on each shard, and "-dump" writes one file
+//      per shard (see "DBShard").
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -478,45 +482,56 @@ public class DBAdmin
 
             /* display table information */
             DBFactory<? extends DBRecord> f = (DBFactory<? extends DBRecord>)factMap.get(tn);
-            try {
-                StringBuffer sb = new StringBuffer();
-                sb.append("  Table ");
-                sb.append(StringTools.leftAlign("'" + f.getUntranslatedTableName() + "'", 25));
-                if (!f.tableExists()) {
-                    sb.append(StringTools.rightAlign("---", cntLen));
-                    if ((validateMask & VALIDATE_CREATE_TABLE) != 0) {
-                        String dbEng = DBProvider.getProviderIndexType();
-                        int p = dbEng.indexOf("=");
-                        if (p >= 0) { dbEng = dbEng.substring(p+1); }
+            int shardCount = f.isSharded()? DBShard.GetShardCount() : 0;
+            for (int shard = (shardCount > 0)? 0 : -1; shard < shardCount; shard++) {
+                // sharded tables are created/validated on each shard
+                String shardName = "";
+                if (shard >= 0) {
+                    DBShard.PushShard(shard);
+                    shardName = "[#" + shard + "]";
+                }
+                try {
+                    StringBuffer sb = new StringBuffer();
+                    sb.append("  Table ");
+                    sb.append(StringTools.leftAlign("'" + f.getUntranslatedTableName() + "'" + shardName, 25));
+                    if (!f.tableExists()) {
+                        sb.append(StringTools.rightAlign("---", cntLen));
+                        if ((validateMask & VALIDATE_CREATE_TABLE) != 0) {
+                            String dbEng = DBProvider.getProviderIndexType();
+                            int p = dbEng.indexOf("=");
+                            if (p >= 0) { dbEng = dbEng.substring(p+1); }
+                            if ((validateMask & VALIDATE_DISPLAY_DB_ENGINE) != 0) {
+                                sb.append(" ["+dbEng+"]");
+                            }
+                            sb.append(" Creating table ...");
+                            Print.sysPrintln(sb.toString());
+                            f.createTable();
+                        } else {
+                            sb.append(" Table does not exist!");
+                            Print.sysPrintln(sb.toString());
+                        }
+                    } else {
+                        boolean actual = ((validateMask & VALIDATE_ACTUAL_RECORD_COUNT) != 0)? true : false;
+                        long    rc     = f.getRecordCount("", actual);
+                        String  dbEng  = f.getIndexType();
+                        String  rcs    = (rc < 0L)? "n/a" : String.valueOf(rc);
+                        if (!actual && (rc > 0L) && dbEng.equalsIgnoreCase("InnoDB")) {
+                            rcs = "~" + rcs;  // InnoDB is estimated
+                        }
+                        sb.append(StringTools.rightAlign(rcs, cntLen));
                         if ((validateMask & VALIDATE_DISPLAY_DB_ENGINE) != 0) {
                             sb.append(" ["+dbEng+"]");
                         }
-                        sb.append(" Creating table ...");
-                        Print.sysPrintln(sb.toString());
-                        f.createTable();
-                    } else {
-                        sb.append(" Table does not exist!");
+                        sb.append(" Validating columns ...");
                         Print.sysPrintln(sb.toString());
+                        validatedColumns = f.validateColumns(validateMask) && validatedColumns;
                     }
-                } else {
-                    boolean actual = ((validateMask & VALIDATE_ACTUAL_RECORD_COUNT) != 0)? true : false;
-                    long    rc     = f.getRecordCount("", actual);
-                    String  dbEng  = f.getIndexType();
-                    String  rcs    = (rc < 0L)? "n/a" : String.valueOf(rc);
-                    if (!actual && (rc > 0L) && dbEng.equalsIgnoreCase("InnoDB")) {
-                        rcs = "~" + rcs;  // InnoDB is estimated
-                    }
-                    sb.append(StringTools.rightAlign(rcs, cntLen));
-                    if ((validateMask & VALIDATE_DISPLAY_DB_ENGINE) != 0) {
-                        sb.append(" ["+dbEng+"]");
-                    }
-                    sb.append(" Validating columns ...");
-                    Print.sysPrintln(sb.toString());
-                    validatedColumns = f.validateColumns(validateMask) && validatedColumns;
+                } catch (DBException dbe) {
+                    Print.sysPrintln("    ERROR: Unable to create/validate table '" + f.getUntranslatedTableName() + "'" + shardName);
+                    dbe.printException();
+                } finally {
+                    if (shard >= 0) { DBShard.PopShard(); }
                 }
-            } catch (DBException dbe) {
-                Print.sysPrintln("    ERROR: Unable to create/validate table '" + f.getUntranslatedTableName() + "'");
-                dbe.printException();
             }
 
         }
@@ -801,6 +816,20 @@ public class DBAdmin
         return new File(dirName);
     }
 
+    /**
+    *** Dumps the records of the specified table matching the specified 'where' clause
+    *** @param fact   The table DBFactory
+    *** @param where  The 'where' clause (may be null)
+    *** @param file   The output file
+    *** @throws DBException If an error occurs
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static <T extends DBRecord> void _dumpTable(DBFactory<T> fact, String where, File file)
+        throws DBException
+    {
+        fact.dumpTable(file, new DBSelect<T>(fact, where));
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -836,6 +865,7 @@ public class DBAdmin
     public  static final String ARG_NOINSERT[]  = new String[] { "noInsert"  };
     public  static final String ARG_OVERWRITE[] = new String[] { "overwrite" };
     public  static final String ARG_BEAN[]      = new String[] { "bean"      };
+    public  static final String ARG_QUERY_STATS[]= new String[] { "queryStats" };
   //public  static final String ARG_HIBXML[]    = new String[] { "hibxml"    };
   //public  static final String ARG_RELOAD[]    = new String[] { "reload"    };
 
@@ -1181,8 +1211,26 @@ public class DBAdmin
                 DBFactory<? extends DBRecord> fact = DBAdmin.getTableFactory(utableName);
                 if (fact != null) {
                     try {
-                        DBSelect dbSel = new DBSelect(fact,where); // "unchecked call"
-                        fact.dumpTable(dumpFile, dbSel); // "unchecked conversion"
+                        if (fact.isSharded()) {
+                            // dump each shard to a separate file, in parallel
+                            // IE. "EventData.shard0.txt", "EventData.shard1.txt", ...
+                            final DBFactory<?> shardFact = fact;
+                            final String shardWhere = where;
+                            final File   shardDir   = dumpFile.getParentFile();
+                            final String shardName  = dumpFile.getName();
+                            final int    shardExtP  = shardName.lastIndexOf('.');
+                            DBShard.ScatterGather(new DBShard.ShardTask<File>() {
+                                public File run(int shard) throws DBException {
+                                    String name = shardName.substring(0,shardExtP) + ".shard" + shard + shardName.substring(shardExtP);
+                                    File file = new File(shardDir, name);
+                                    Print.logInfo("Dumping shard #" + shard + " to file: " + file);
+                                    DBAdmin._dumpTable(shardFact, shardWhere, file);
+                                    return file;
+                                }
+                            });
+                        } else {
+                            DBAdmin._dumpTable(fact, where, dumpFile);
+                        }
                     } catch (DBException dbe) {
                         Print.logException("Error dumping table: " + utableName, dbe);
                         return DBAdminExec.ERROR;
@@ -1385,6 +1433,21 @@ public class DBAdmin
         }
         */
         
+        /* queryStats: print SQL statement statistics for the above commands (this process only) */
+        // (the statistics of a running DCS are displayed by "DBConfig -queryStats -server=<DCSName>")
+        // bin/exe DBAdmin -db.queryStats.enable=true -tables -queryStats[=total|count|p99|rows]
+        if (RTConfig.hasProperty(ARG_QUERY_STATS)) {
+            execCmd++;
+            String sortBy = RTConfig.getString(ARG_QUERY_STATS,"");
+            if (StringTools.isBlank(sortBy) || sortBy.equalsIgnoreCase("true")) {
+                sortBy = "total";
+            }
+            if (!RTConfig.getBoolean(RTKey.DB_QUERY_STATS,false)) {
+                Print.sysPrintln("SQL statement statistics are disabled (see '" + RTKey.DB_QUERY_STATS + "')");
+            }
+            Print.sysPrintln(DBQueryStats.GetText(sortBy, 0));
+        }
+
         return (execCmd > 0)? DBAdminExec.OK : DBAdminExec.NONE;
 
     }
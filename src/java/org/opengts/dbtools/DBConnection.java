@@ -40,6 +40,11 @@
 //      connection and retrying SQL statement.
 //  2013/05/28  Martin D. Flynn
 //     -Added additional checks for "...CommunicationsException" for close/retry
+//  2026/10/19
+//     -Record statement timing/rows (including failed statements) in "DBQueryStats".
+//     -Added read-replica routing ("pushReadReplica", "getReadConnection"), including
+//      the read-replicas of the current thread shard ("db.shard.replica.urls.<N>").
+//     -"getDefaultConnection" returns the current thread shard (see "DBShard.PushShard").
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -397,6 +402,7 @@ public class DBConnection
             DBConnection dbc = null;
             String dbConnMsg = null;
             Throwable previousLock = null;
+            long metricsNS = Metrics.StartTimer();
             synchronized (DBConnection.ConnectionPoolLock) {
                 dbc = DBConnection._getDBConnection(uri);
                 if (dbc == null) {
@@ -414,6 +420,7 @@ public class DBConnection
                 }
                 previousLock = dbc._lock();
             }
+            Metrics.RecordElapsed("db.connection.borrow", metricsNS);
             if (dbConnMsg != null) {
                 Print.logDebug(dbConnMsg);
             }
@@ -427,15 +434,100 @@ public class DBConnection
     }
 
     /**
-    *** Gets the default DBConnection
+    *** Gets the default DBConnection.  If a shard has been set for the current thread
+    *** (see "DBShard.PushShard"), the returned connection is to that shard.
     **/
     public static DBConnection getDefaultConnection()
+    {
+        int shard = DBShard.GetThreadShard();
+        if (shard >= 0) {
+            return DBShard.GetDBConnection(shard);
+        } else {
+            return DBConnection.getPrimaryConnection();
+        }
+    }
+
+    /**
+    *** Gets the DBConnection to the primary database
+    **/
+    public static DBConnection getPrimaryConnection()
     {
         String uri = DBProvider.getDBUri(true);
         String usr = DBProvider.getDBUsername();
         String pwd = DBProvider.getDBPassword();
         return DBConnection.getDBConnection(uri, usr, pwd);
     }
+
+    // ------------------------------------------------------------------------
+
+    // per-thread read-replica scope: [0]=nesting level, [1]=primary-write count
+    private static ThreadLocal<int[]> ReadReplicaScope = new ThreadLocal<int[]>();
+
+    /**
+    *** Pushes a read-replica scope for the current thread.  Within this scope, read-only
+    *** selects (see "getReadConnection") may be sent to an available read-replica.
+    *** Must be matched by a call to "popReadReplica" (in a "finally" block).
+    **/
+    public static void pushReadReplica()
+    {
+        int scope[] = ReadReplicaScope.get();
+        if (scope == null) {
+            scope = new int[2];
+            ReadReplicaScope.set(scope);
+        }
+        scope[0]++;
+    }
+
+    /**
+    *** Pops the read-replica scope for the current thread
+    **/
+    public static void popReadReplica()
+    {
+        int scope[] = ReadReplicaScope.get();
+        if ((scope != null) && (--scope[0] <= 0)) {
+            ReadReplicaScope.remove();
+        }
+    }
+
+    /**
+    *** Returns true if the current thread is within a read-replica scope which has
+    *** not yet written to the primary database
+    *** @return True if reads on the current thread may be sent to a read-replica
+    **/
+    public static boolean isReadReplicaScope()
+    {
+        int scope[] = ReadReplicaScope.get();
+        return (scope != null) && (scope[0] > 0) && (scope[1] == 0);
+    }
+
+    /**
+    *** Gets a DBConnection for a read-only select.  If the current thread is within a
+    *** read-replica scope, has no locked tables, and a read-replica is available, the
+    *** returned connection is to the read-replica with the fewest outstanding requests.
+    *** If the current thread has a shard set (see "DBShard.PushShard"), the read-replicas
+    *** of that shard are used.  Otherwise the default (primary, or shard) DBConnection
+    *** is returned.
+    *** @return The DBConnection
+    **/
+    public static DBConnection getReadConnection()
+    {
+        if (DBConnection.isReadReplicaScope() && (DBProvider.getLockLevel() <= 0)) {
+            DBReplica replica = DBReplica.ChooseReplica(DBShard.GetThreadShard());
+            if (replica != null) {
+                DBConnection dbc = replica.getDBConnection();
+                if (dbc != null) {
+                    synchronized (DBConnection.ConnectionPoolLock) {
+                        dbc.readReplica = replica;
+                    }
+                    replica.incrementOutstanding();
+                    return dbc;
+                }
+            }
+        }
+        return DBConnection.getDefaultConnection();
+    }
+
+    // ------------------------------------------------------------------------
     
     public static boolean isLocked(DBConnection dbc)
     {
@@ -458,8 +550,18 @@ public class DBConnection
         //Print.logInfo("Releasing DBConnection ...");
         if (dbc != null) {
             boolean alreadyReleased = false;
+            DBReplica replica = null;
             synchronized (DBConnection.ConnectionPoolLock) {
                 alreadyReleased = dbc._release();
+                if (!alreadyReleased && (dbc.readReplica != null)) {
+                    replica = dbc.readReplica;
+                    if (dbc._getLockCount() <= 0) {
+                        dbc.readReplica = null;
+                    }
+                }
+            }
+            if (replica != null) {
+                replica.decrementOutstanding();
             }
             //if (alreadyReleased) {
             //    Print.logStackTrace("DBConnection already released!");
@@ -485,6 +587,7 @@ public class DBConnection
     private String      threadName          = null;
     
     private String      dbUri               = null;
+    private Boolean     isPrimary           = null;
     
     private String      userName            = null;
     private String      password            = null;
@@ -497,6 +600,7 @@ public class DBConnection
     private long        lastUseTime         = 0L;
     private int         lockCount           = 0;
     private Throwable   lastLockTrace       = null;
+    private DBReplica   readReplica         = null;
 
     /**
     *** Constructor
@@ -583,6 +687,20 @@ public class DBConnection
         return (this.dbUri != null)? this.dbUri : DBProvider.getDBUri(true);
     }
 
+    /**
+    *** Returns true if this connection URI is the primary (default) database URI.
+    *** (The DataSource, if configured, applies to the primary database only)
+    *** @return True if this connection is to the primary database
+    **/
+    public boolean isPrimaryUri()
+    {
+        if (this.isPrimary == null) {
+            // the URI of a connection does not change, cache the comparison
+            this.isPrimary = new Boolean((this.dbUri == null) || this.dbUri.equals(DBProvider.getDBUri(true)));
+        }
+        return this.isPrimary.booleanValue();
+    }
+
     /**
     *** Gets the connection user
     *** @return The connection user
@@ -639,10 +757,11 @@ public class DBConnection
             // See my.cnf:
             //    max_connections=800
             //    max_user_connections=800
+            long metricsNS = Metrics.StartTimer();
             String user = this.getUser();
             if (StringTools.isBlank(user)) {
                 //Print.logInfo("Obtaining connection without a user/password ...");
-                if (USE_DRIVER_MANAGER || (DBConnection.DBDataSource == null)) {
+                if (USE_DRIVER_MANAGER || (DBConnection.DBDataSource == null) || !this.isPrimaryUri()) {
                     this.dbConnection = DriverManager.getConnection(this.getUri());
                 } else {
                     this.dbConnection = DBConnection.DBDataSource.getConnection();
@@ -650,7 +769,7 @@ public class DBConnection
             } else {
                 String pass = this.getPassword();
                 //Print.logInfo("User: " + user + " Password: " + pass);
-                if (USE_DRIVER_MANAGER || (DBConnection.DBDataSource == null)) {
+                if (USE_DRIVER_MANAGER || (DBConnection.DBDataSource == null) || !this.isPrimaryUri()) {
                     this.dbConnection = DriverManager.getConnection(this.getUri(), user, pass);
                 } else {
                     //this.dbConnection = DBConnection.DBDataSource.getConnection(user, pass);
@@ -658,6 +777,8 @@ public class DBConnection
                 }
             }
 
+            Metrics.RecordElapsed("db.connection.open", metricsNS);
+
             /* save connection time */
             this.connectTime = DateTime.getCurrentTimeSec();
             this.connectOpenCount++;
@@ -816,7 +937,16 @@ public class DBConnection
             if (DBConnection.parseCommunicationsException(sqe)) {
                 // close/retry connection
                 this.closeConnection();
-                return this._execute(sql, rowByRow); // try once more
+                try {
+                    return this._execute(sql, rowByRow); // try once more
+                } catch (SQLException sqe2) {
+                    DBReplica replica = this.readReplica;
+                    if (replica != null) {
+                        // read-replica unreachable: use primary until next health check
+                        replica.markFailed(sqe2.getMessage());
+                    }
+                    throw sqe2;
+                }
             } else
             if ((errCode == DBFactory.SQLERR_SYNTAX_ERROR)  ||
                 (errCode == DBFactory.SQLERR_UNKNOWN_COLUMN)  ) {
@@ -847,9 +977,58 @@ public class DBConnection
     {
         LastSQLExecuted = sql;
         Statement stmt = this.createStatement(rowByRow);
-        stmt.execute(sql); // eg. "SELECT * FROM <table>"
-        return stmt;
-        // may throw "...CommunicationsException"
+        long metricsNS = Metrics.StartTimer();
+        long statsNS   = DBQueryStats.StartTimer();
+        long rows      = -1L;
+        try {
+            boolean hasRS = stmt.execute(sql); // eg. "SELECT * FROM <table>"
+            if (metricsNS != 0L) { Metrics.RecordElapsed(DBConnection._metricsName(sql), metricsNS); }
+            if (!hasRS && (statsNS != 0L)) { rows = (long)stmt.getUpdateCount(); }
+            return stmt;
+            // may throw "...CommunicationsException"
+        } finally {
+            // also record failed statements (ie. lock wait timeout)
+            if (statsNS != 0L) { DBQueryStats.RecordQuery(sql, statsNS, rows); }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the query latency metric name for the specified SQL statement
+    *** ("db.query.&lt;verb&gt;.&lt;table&gt;")
+    *** @param sql  The SQL statement
+    *** @return The metric name
+    **/
+    protected static String _metricsName(String sql)
+    {
+        String s = StringTools.trim(sql);
+        int p = s.indexOf(' ');
+        String verb = ((p > 0)? s.substring(0,p) : s).toLowerCase();
+        String kwd = null;
+        if (verb.equals("select") || verb.equals("delete")) {
+            kwd = " FROM ";
+        } else
+        if (verb.equals("insert") || verb.equals("replace")) {
+            kwd = " INTO ";
+        } else
+        if (verb.equals("update")) {
+            kwd = " ";
+        }
+        String table = "other";
+        if (kwd != null) {
+            int t = StringTools.indexOfIgnoreCase(s, kwd);
+            if (t > 0) {
+                int b = t + kwd.length();
+                while ((b < s.length()) && ((s.charAt(b) == ' ') || (s.charAt(b) == '`'))) { b++; }
+                int e = b;
+                while ((e < s.length()) && (Character.isLetterOrDigit(s.charAt(e)) || (s.charAt(e) == '_'))) { e++; }
+                if (e > b) {
+                    table = s.substring(b,e);
+                }
+            }
+        }
+        return "db.query." + verb + "." + table;
     }
 
     // ------------------------------------------------------------------------
@@ -894,9 +1073,17 @@ public class DBConnection
         ResultSet rs = null;
         LastSQLExecuted = sql;
         stmt = this.createStatement();
-        rs = stmt.executeQuery(sql);
-        return rs; // TODO: close 'stmt'?
-        // may throw "...CommunicationsException"
+        long metricsNS = Metrics.StartTimer();
+        long statsNS   = DBQueryStats.StartTimer();
+        try {
+            rs = stmt.executeQuery(sql);
+            if (metricsNS != 0L) { Metrics.RecordElapsed(DBConnection._metricsName(sql), metricsNS); }
+            return rs; // TODO: close 'stmt'?
+            // may throw "...CommunicationsException"
+        } finally {
+            // also record failed statements (ie. lock wait timeout)
+            if (statsNS != 0L) { DBQueryStats.RecordQuery(sql, statsNS, -1L); }
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -925,6 +1112,12 @@ public class DBConnection
     public long executeUpdate(String sql, boolean rtnAutoIncrVal)
         throws SQLException, DBException
     {
+        int scope[] = ReadReplicaScope.get();
+        if (scope != null) {
+            // this thread has written to the primary, subsequent reads in this scope
+            // must also use the primary
+            scope[1]++;
+        }
         try {
             if (ShowExecutedSQL) { 
                 Print.logInfo("SQL: " + sql); 
@@ -972,11 +1165,16 @@ public class DBConnection
     {
         Statement stmt = null;
         ResultSet rs = null;
+        long statsNS = 0L;
+        long rows = -1L;
         try {
             LastSQLExecuted = sql;
             stmt = this.createStatement();
+            long metricsNS = Metrics.StartTimer();
+            statsNS = DBQueryStats.StartTimer();
             if (rtnAutoIncrVal) {
-                stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+                rows = (long)stmt.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+                if (metricsNS != 0L) { Metrics.RecordElapsed(DBConnection._metricsName(sql), metricsNS); }
                 rs = stmt.getGeneratedKeys();
                 if (rs.next()) {
                     return rs.getLong(1);
@@ -985,13 +1183,16 @@ public class DBConnection
                     return -1L;
                 }
             } else {
-                stmt.executeUpdate(sql); // known to throw IOException
+                rows = (long)stmt.executeUpdate(sql); // known to throw IOException
+                if (metricsNS != 0L) { Metrics.RecordElapsed(DBConnection._metricsName(sql), metricsNS); }
                 return -1L;
             }
         } catch (SQLException sqe) {
             throw sqe;
             // may throw "...CommunicationsException"
         } finally {
+            // also record failed statements (ie. lock wait timeout)
+            if (statsNS != 0L) { DBQueryStats.RecordQuery(sql, statsNS, rows); }
             if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
             if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
         }
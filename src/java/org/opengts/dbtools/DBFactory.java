@@ -89,6 +89,12 @@
 //  2013/05/28  Martin D. Flynn
 //     -Added support for reading approximate InnoDB record counts from the statement
 //      "show table status where Name='TABLE'".
+//  2026/10/19
+//     -Added optional read-through record cache (see "getCachedRecord")
+//     -Derby: check table existence in the system catalog (avoids "SELECT COUNT(*)")
+//     -Derby: fixed "ALTER ... SET DATA TYPE" column type
+//     -Added optional shard routing (see "setShardRouter")
+//     -Record deletes are passed to a "DBRecordDeleteListener" record listener
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -356,6 +362,12 @@ public class DBFactory<gDBR extends DBRecord>
 
     private DBRecordListener<gDBR>                  recordListener      = null;
 
+    private boolean                                 recordCacheable     = false;
+    private boolean                                 recordCacheInit     = false;
+    private volatile DBRecordCache<gDBR>            recordCache         = null;
+
+    private DBShardRouter                           shardRouter         = null;
+
     private boolean                                 logMissingColumns   = true; // default log
 
     // ------------------------------------------------------------------------
@@ -1321,6 +1333,50 @@ public class DBFactory<gDBR extends DBRecord>
         return null;
     }
 
+    /**
+    *** Returns a detached copy of the specified record.<br>
+    *** Mutable field values (BLOB and DateTime) are copied, so that the copy shares
+    *** no mutable state with the specified record.
+    *** @param rcd  The record to copy
+    *** @return The record copy (with no changed fields)
+    *** @throws DBException   If the record key cannot be created
+    **/
+    public gDBR copyRecord(gDBR rcd)
+        throws DBException
+    {
+        DBRecordKey<gDBR> key = this.createKey();
+        DBFieldValues srcVals = this._getRecordKey(rcd).getFieldValues();
+        DBFieldValues keyVals = key.getFieldValues();
+        for (DBField fld : this.getKeyFields()) {
+            // key fields are set before the record is created
+            keyVals.setFieldValue(fld.getName(), srcVals.getFieldValue(fld.getName()));
+        }
+        gDBR copy = key.getDBRecord();
+        for (DBField fld : this.getFields()) {
+            Object val = fld.isPrimaryKey()? null : srcVals.getOptionalFieldValue(fld.getName());
+            if (val instanceof byte[]) {
+                val = ((byte[])val).clone();
+            } else
+            if (val instanceof DateTime) {
+                val = new DateTime((DateTime)val);
+            }
+            if (val != null) {
+                keyVals.setFieldValue(fld.getName(), val);
+            }
+        }
+        copy.clearChanged();
+        return copy;
+    }
+
+    /**
+    *** Gets the DBRecordKey of the specified record of this DBFactory
+    **/
+    @SuppressWarnings("unchecked")
+    private DBRecordKey<gDBR> _getRecordKey(gDBR rcd)
+    {
+        return (DBRecordKey<gDBR>)rcd.getRecordKey(); // "unchecked cast"
+    }
+
     /**
     *** Creates/returns a DBRecordKey for this DBFactory populated with key values from the
     *** specified ResultSet
@@ -1630,6 +1686,14 @@ public class DBFactory<gDBR extends DBRecord>
             dbc = DBConnection.getDefaultConnection();
 
             /* get table existence */
+            if (DBProvider.getProvider().getID() == DBProvider.DB_DERBY) {
+                /* Derby: check system catalog */
+                String xtableName = this.getTranslatedTableName().toUpperCase();
+                String sqlExists  = "SELECT TABLENAME FROM SYS.SYSTABLES WHERE TABLENAME=" + DBField.quote(xtableName);
+                stmt = dbc.execute(sqlExists); // may throw DBException, SQLException
+                rs   = stmt.getResultSet();
+                return rs.next();
+            } else
             if ((DBProvider.getProvider().getID() != DBProvider.DB_MYSQL) || 
                 DBFactory.mysqlTableExistsUseSelectCount()                  ) {
                 /* VERY slow on Windows or InnoDB */ // "SELECT COUNT(*) FROM table"
@@ -2044,7 +2108,7 @@ public class DBFactory<gDBR extends DBRecord>
             if (colMap.containsKey(colName)) {
                 // Change an existing column name:
                 //   Derby: ALTER TABLE <table> ALTER <column> SET DATA TYPE <type>
-                sb.append(" ALTER ").append(colName).append(" SET DATA TYPE ").append(col.getFieldDefinition());
+                sb.append(" ALTER ").append(colName).append(" SET DATA TYPE ").append(col.getSqlType(false));
             } else {
                 // Add a new column:
                 //   Derby: ALTER TABLE <table> ADD COLUMN <column> <type>
@@ -3499,6 +3563,121 @@ public class DBFactory<gDBR extends DBRecord>
         return this.getUntranslatedTableName().hashCode();
     }
 
+    // ------------------------------------------------------------------------
+    // Record cache
+
+    /**
+    *** Sets this table as eligible for the read-through record cache.  The cache is
+    *** used only if this table is also listed in the "db.cache.tables" property.
+    *** @param cacheable  True if this table may use the record cache
+    **/
+    public void setRecordCacheable(boolean cacheable)
+    {
+        this.recordCacheable = cacheable;
+    }
+
+    /**
+    *** Gets the record cache for this table
+    *** @return The record cache, or null if the record cache is not enabled for this table
+    **/
+    public synchronized DBRecordCache<gDBR> getRecordCache()
+    {
+        if (!this.recordCacheInit) {
+            this.recordCacheInit = true;
+            if (this.recordCacheable && DBRecordCache.IsCacheEnabled(this.getUntranslatedTableName())) {
+                this.recordCache = DBRecordCache.CreateCache(this);
+            }
+        }
+        return this.recordCache;
+    }
+
+    /**
+    *** Gets the record for the specified full key, from the record cache if enabled.
+    *** (if the record cache is not enabled, the record is read directly from the table)
+    *** @param key  The full record key
+    *** @return The record (a copy which may be modified), or null if it does not exist
+    *** @throws DBException If a database error occurs
+    **/
+    public gDBR getCachedRecord(DBRecordKey<gDBR> key)
+        throws DBException
+    {
+        DBRecordCache<gDBR> cache = this.getRecordCache();
+        if (cache != null) {
+            return cache.getRecord(key);
+        } else
+        if (key.exists()) {
+            return key.getDBRecord(true);
+        } else {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Shard routing
+
+    /**
+    *** Sets the shard router for this table.  If shards are configured (see "DBShard"),
+    *** records in this table are stored in the shard selected by the router.
+    *** @param router  The shard router (null if this table is not sharded)
+    **/
+    public void setShardRouter(DBShardRouter router)
+    {
+        this.shardRouter = router;
+    }
+
+    /**
+    *** Gets the shard router for this table
+    *** @return The shard router, or null if this table is not sharded
+    **/
+    public DBShardRouter getShardRouter()
+    {
+        return this.shardRouter;
+    }
+
+    /**
+    *** Returns true if this table has a shard router, and shards are configured
+    *** @return True if this table is sharded
+    **/
+    public boolean isSharded()
+    {
+        return (this.shardRouter != null) && DBShard.IsEnabled();
+    }
+
+    /**
+    *** Gets the index of the shard which owns the specified record key.  A shard set
+    *** on the current thread (see "DBShard.PushShard") overrides the router.
+    *** @param key  The record key
+    *** @return The shard index, or DBShard.PRIMARY if this table is not sharded
+    **/
+    public int getShardIndex(DBRecordKey<?> key)
+    {
+        if (!this.isSharded()) {
+            return DBShard.PRIMARY;
+        }
+        int threadShard = DBShard.GetThreadShard();
+        if (threadShard >= 0) {
+            return threadShard;
+        } else {
+            return this.shardRouter.getShardIndex(key);
+        }
+    }
+
+    /**
+    *** Gets the index of the shard to which writes of the specified record key are
+    *** also mirrored (ie. while the owning account is being moved between shards)
+    *** @param key  The record key
+    *** @return The mirror shard index, or DBShard.PRIMARY if writes are not mirrored
+    **/
+    public int getMirrorShardIndex(DBRecordKey<?> key)
+    {
+        if (!this.isSharded() || (DBShard.GetThreadShard() >= 0)) {
+            return DBShard.PRIMARY;
+        } else {
+            int mirror = this.shardRouter.getMirrorShardIndex(key);
+            return (mirror != this.shardRouter.getShardIndex(key))? mirror : DBShard.PRIMARY;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // DBRecordListener interface
     
@@ -3537,6 +3716,9 @@ public class DBFactory<gDBR extends DBRecord>
     **/
     public void recordDidInsert(gDBR rcd)
     {
+        if (this.recordCache != null) {
+            this.recordCache.invalidate(this._getRecordKey(rcd));
+        }
         if (this.recordListener != null) {
             this.recordListener.recordDidInsert(rcd);
         }
@@ -3559,11 +3741,28 @@ public class DBFactory<gDBR extends DBRecord>
     **/
     public void recordDidUpdate(gDBR rcd)
     {
+        if (this.recordCache != null) {
+            this.recordCache.invalidate(this._getRecordKey(rcd));
+        }
         if (this.recordListener != null) {
             this.recordListener.recordDidUpdate(rcd);
         }
     }
 
+    /**
+    *** Callback after record(s) matching the specified key have been deleted from the table
+    *** @param key  The key of the deleted record(s)
+    **/
+    public void recordDidDelete(DBRecordKey<gDBR> key)
+    {
+        if (this.recordCache != null) {
+            this.recordCache.invalidate(key);
+        }
+        if (this.recordListener instanceof DBRecordDeleteListener) {
+            ((DBRecordDeleteListener<gDBR>)this.recordListener).recordDidDelete(key);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
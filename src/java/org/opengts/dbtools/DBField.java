@@ -50,6 +50,8 @@
 //     -Remove 'isPriKey' check from 'isUniqueALtKey' settings.
 //  2012/01/29  Martin D. Flynn
 //     -PostgreSQL support added (by Gaurav Kohli)
+//  2026/10/19
+//     -Derby: quote String values per the SQL standard (no backslash escapes)
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -182,7 +184,35 @@ public class DBField
     **/
     public static String quote(String s)
     {
-        return DBField.quote(s, QUOTE_CHAR, true);
+        if (DBProvider.getProvider().getID() == DBProvider.DB_DERBY) {
+            // Derby: backslash is not an escape character, embedded quotes are doubled
+            return DBField.quoteStandard(s, QUOTE_CHAR);
+        } else {
+            return DBField.quote(s, QUOTE_CHAR, true);
+        }
+    }
+
+    /**
+    *** Quotes and returns the specified String, per the SQL standard (embedded quotes
+    *** are doubled, all other characters are included as-is)
+    *** @param s  The String to quote
+    *** @param q  The quote character
+    *** @return The quoted String
+    **/
+    public static String quoteStandard(String s, char q)
+    {
+        if (s == null) { s = ""; }
+        StringBuffer qsb = new StringBuffer(s.length() + 2);
+        qsb.append(q);
+        for (int c = 0; c < s.length(); c++) {
+            char ch = s.charAt(c);
+            if (ch == q) {
+                qsb.append(q);
+            }
+            qsb.append(ch);
+        }
+        qsb.append(q);
+        return qsb.toString();
     }
 
     /**
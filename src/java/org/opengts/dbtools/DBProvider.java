@@ -73,6 +73,13 @@
 //     -Changed SQL Server data types SQL_INT16[int], SQL_UINT16[int]
 //  2013/02/06  Martin D. Flynn
 //     -Fixed "getDataTypeFromSqlType" to also check for boolean types
+//  2026/10/19
+//     -Completed Derby support (LIMIT/OFFSET, TIMESTAMP/unsigned types, index map,
+//      "DROP INDEX", in-JVM table locking), and added the in-process "derby_embedded"
+//      provider.
+//     -Record table lock hold times in "DBQueryStats".
+//     -Added "getDBReplicaUris" for read-replica routing.
+//     -Inserts/updates are sent to the owning (and mirror) shard for sharded tables.
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -80,6 +87,7 @@ import java.lang.*;
 import java.lang.reflect.*;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.locks.*;
 import java.sql.*;
 
 import org.opengts.util.*;
@@ -233,7 +241,7 @@ public class DBProvider
 
     public    static final int      DB_MYSQL                = 1; // MySQL:
     public    static final int      DB_POSTGRESQL           = 2; // PostgreSQL: 
-    public    static final int      DB_DERBY                = 3; // Derby:      not fully supported!
+    public    static final int      DB_DERBY                = 3; // Derby:      (network server, or embedded)
     public    static final int      DB_SQLSERVER            = 4; // SQLServer:
     public    static final int      DB_ORACLEXE             = 5; // OracleXE:   not fully supported!
 
@@ -242,6 +250,7 @@ public class DBProvider
     public    static final long     FLAGS_NONE              = 0x0000000000000000L;
     public    static final long     FLAGS_LIMIT             = 0x0000000000000001L;
     public    static final long     FLAGS_OFFSET            = 0x0000000000000002L;
+    public    static final long     FLAGS_EMBEDDED          = 0x0000000000000004L; // in-process database
 
     // ------------------------------------------------------------------------
 
@@ -534,7 +543,7 @@ public class DBProvider
     // ------------------------------------------------------------------------
     // Apache Derby driver
     // http://db.apache.org/derby
-    // Example configuration properties:
+    // Example configuration properties (network server):
     //   db.sql.provider=derby
     //   db.sql.dbname=gts
     //   db.sql.host=localhost
@@ -542,10 +551,17 @@ public class DBProvider
     //   db.sql.user=gts
     //   db.sql.pass=opengts
     //   db.sql.connection=jdbc:derby://localhost:${db.sql.port}/${db.sql.dbname};create=true
+    // Example configuration properties (embedded, in-process):
+    //   db.sql.provider=derby_embedded
+    //   db.sql.dbname=gts
+    //   db.sql.embedded.dir=${GTS_HOME}/derby
+    //   db.sql.user=gts
+    //   (connection url: jdbc:derby:${db.sql.embedded.dir}/${db.sql.dbname};create=true)
     // Notes:
     //   - Installing the Derby JDBC jar (optional)
     //      cp $DERBY_HOME/lib/derbyclient.jar $JAVA_HOME/lib/ext/.
-    //   - Starting Derby:
+    //      (embedded: cp $DERBY_HOME/lib/derby.jar $JAVA_HOME/lib/ext/.)
+    //   - Starting Derby (not required for "derby_embedded"):
     //      $DERBY_HOME/bin/startNetworkServer &
     //      (java -jar $DERBY_HOME/lib/derbyrun.jar server start -noSecurityManager &)
     //      "derby.log" will be created in the current directory
@@ -556,10 +572,35 @@ public class DBProvider
     //      java -jar $DERBY_HOME/lib/derbyrun.jar ij
     //      ij> CONNECT 'jdbc:derby:gts;create=true';
     //      ij> CONNECT 'jdbc:derby:/usr/local/gts/derby/gts;create=true';
+    //   - LIMIT/OFFSET requires Derby 10.5 or later ("OFFSET n ROWS FETCH NEXT n ROWS ONLY")
+    //   - Derby "LOCK TABLE" only lasts for the current transaction, so table locking
+    //     is performed within this JVM (see "_lockTables").  An embedded database can
+    //     only be opened by a single JVM, so this is sufficient for "derby_embedded".
     // ------------------------------------------------------------------------
-    // Partially supported
+    // Fully supported
     // ------------------------------------------------------------------------
-    
+
+    private static final String DERBY_DATA_TYPES[] = new String[] {
+        /* SQL_UNKNOWN */ "",
+        /* SQL_BOOLEAN */ "SMALLINT",
+        /* SQL_INT8    */ "SMALLINT",
+        /* SQL_UINT8   */ "SMALLINT",
+        /* SQL_INT16   */ "SMALLINT",
+        /* SQL_UINT16  */ "INTEGER",            // 16bit unsigned does not fit in SMALLINT
+        /* SQL_INT32   */ "INTEGER",
+        /* SQL_UINT32  */ "BIGINT",             // 32bit unsigned does not fit in INTEGER
+        /* SQL_INT64   */ "BIGINT",
+        /* SQL_UINT64  */ "BIGINT",
+        /* SQL_FLOAT   */ "FLOAT",
+        /* SQL_DOUBLE  */ "DOUBLE",
+        /* SQL_SBLOB   */ "BLOB",
+        /* SQL_BLOB    */ "BLOB",
+        /* SQL_MBLOB   */ "BLOB",
+        /* SQL_TEXT    */ "CLOB",
+        /* SQL_VARCHAR */ "VARCHAR",
+        /* SQL_DATETIME*/ "TIMESTAMP",
+    };
+
     public static final String  Derby_Name     = "derby";
     protected static DBProvider Derby_Provider = new DBProvider(
         Derby_Name, DB_DERBY, 1527,
@@ -568,27 +609,20 @@ public class DBProvider
         null,                                       // index name filter
         new NameFilterUpperCase("DB"),              // table name filter
         null,                                       // "CREATE TABLE" suffix
-        FLAGS_NONE,                                 // flags
-        new String[] {
-            /* SQL_UNKNOWN */ "",
-            /* SQL_BOOLEAN */ "SMALLINT",
-            /* SQL_INT8    */ "SMALLINT",
-            /* SQL_UINT8   */ "SMALLINT",
-            /* SQL_INT16   */ "SMALLINT",
-            /* SQL_UINT16  */ "SMALLINT",
-            /* SQL_INT32   */ "INTEGER",
-            /* SQL_UINT32  */ "INTEGER",
-            /* SQL_INT64   */ "BIGINT",
-            /* SQL_UINT64  */ "BIGINT",
-            /* SQL_FLOAT   */ "FLOAT",
-            /* SQL_DOUBLE  */ "DOUBLE",
-            /* SQL_SBLOB   */ "BLOB",
-            /* SQL_BLOB    */ "BLOB",
-            /* SQL_MBLOB   */ "BLOB",
-            /* SQL_TEXT    */ "CLOB",
-            /* SQL_VARCHAR */ "VARCHAR",
-            /* SQL_DATETIME*/ "DATETIME",
-        }
+        FLAGS_LIMIT|FLAGS_OFFSET,                   // flags
+        DERBY_DATA_TYPES
+    );
+
+    public static final String  Derby_Embedded_Name     = "derby_embedded";
+    protected static DBProvider Derby_Embedded_Provider = new DBProvider(
+        Derby_Embedded_Name, DB_DERBY, 0,
+        new String[] { "org.apache.derby.jdbc.EmbeddedDriver" },
+        new NameFilterUpperCase(""),                // column name filter
+        null,                                       // index name filter
+        new NameFilterUpperCase("DB"),              // table name filter
+        null,                                       // "CREATE TABLE" suffix
+        FLAGS_LIMIT|FLAGS_OFFSET|FLAGS_EMBEDDED,    // flags
+        DERBY_DATA_TYPES
     );
 
     // ------------------------------------------------------------------------
@@ -654,6 +688,7 @@ public class DBProvider
         // ---
         globalDBProviderMap.put(Oracle_XE_Provider.getJDBCName()   , Oracle_XE_Provider   );
         globalDBProviderMap.put(Derby_Provider.getJDBCName()       , Derby_Provider       );
+        globalDBProviderMap.put(Derby_Embedded_Provider.getJDBCName(), Derby_Embedded_Provider);
     }
 
     /**
@@ -697,6 +732,16 @@ public class DBProvider
         return globalDBProvider;
     }
 
+    /**
+    *** Clears the current DBProvider, so that it is selected again from "db.sql.provider"
+    *** (and the table locking setting is read again) on next use.  For testing only.
+    **/
+    static synchronized void _resetProvider()
+    {
+        globalDBProvider = null;
+        lockingEnabled   = null;
+    }
+
     /**
     *** Returns the name of the current DBProvider
     *** @return The current DBProvider name
@@ -741,6 +786,9 @@ public class DBProvider
             for (int i = 0; i < driver.length; i++) {
                 try {
                     Class.forName(driver[i]);
+                    if (DBProvider.getProvider().isEmbedded()) {
+                        DBProvider._addEmbeddedShutdownHook();
+                    }
                     return driver[i]; // stop at the first one that works
                 } catch (Throwable t) { // ClassNotFoundException
                     Print.logWarn("JDBC driver class not found: " + driver[i]);
@@ -772,6 +820,31 @@ public class DBProvider
         return null;
     }
     
+    /**
+    *** Adds a shutdown hook which cleanly closes the embedded database on exit.
+    *** (otherwise the embedded database will perform recovery on the next startup)
+    **/
+    private static synchronized void _addEmbeddedShutdownHook()
+    {
+        if (!didAddEmbeddedShutdownHook) {
+            didAddEmbeddedShutdownHook = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("EmbeddedDBShutdown") {
+                public void run() {
+                    try {
+                        // Derby: always throws an SQLException (SQLState "XJ015") on success
+                        DriverManager.getConnection("jdbc:derby:;shutdown=true");
+                    } catch (SQLException sqe) {
+                        if (!"XJ015".equals(sqe.getSQLState())) {
+                            Print.logWarn("Embedded database shutdown: " + sqe);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static boolean didAddEmbeddedShutdownHook = false;
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -858,6 +931,16 @@ public class DBProvider
         }
     }
 
+    /**
+    *** Returns the read-replica database access URIs
+    *** @return The read-replica URIs, or null if no read-replicas are defined
+    **/
+    public static String[] getDBReplicaUris()
+    {
+        String uris[] = RTConfig.getStringArray(RTKey.DB_REPLICA_URLS, null);
+        return !ListTools.isEmpty(uris)? uris : null;
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -921,9 +1004,20 @@ public class DBProvider
             case DB_DERBY: {
                 // Derby: jdbc:derby://<host>:<port>/<database>[;create=true]
                 // ij> connect 'jdbc:derby://localhost:1527/gts;create=true';
+                // Embedded Derby: jdbc:derby:[<directory>/]<database>[;create=true]
                 if (uri.length() == 0) {
-                    // TODO:
-                    uri.append("jdbc:derby://").append(getDBHost()).append(":").append(getDBPort()).append("/");
+                    if (dbProv.isEmbedded()) {
+                        String dir = RTConfig.getString(RTKey.DB_EMBEDDED_DIR,"").trim();
+                        uri.append("jdbc:derby:");
+                        if (!StringTools.isBlank(dir)) {
+                            uri.append(dir);
+                            if (!dir.endsWith("/") && !dir.endsWith(File.separator)) {
+                                uri.append("/");
+                            }
+                        }
+                    } else {
+                        uri.append("jdbc:derby://").append(getDBHost()).append(":").append(getDBPort()).append("/");
+                    }
                     uri.append(getDBName()).append(";create=true");
                 }
                 break;
@@ -1176,15 +1270,16 @@ public class DBProvider
         if (dbp.getID() == DB_DERBY) {
             // http://db.apache.org/derby/docs/10.9/ref/refderby.pdf
             // http://db.apache.org/derby/docs/10.9/ref/
+            // (indexes are obtained from "getActualTableIndexMap")
             showCols      = "SELECT " + 
-                "T.TABLENAME,C.COLUMNNAME,C.REFERENCEID,C.COLUMNNUMBER,C.COLUMNDATATYPE,C.COLUMNDEFAULT,N.TYPE " +
-                "FROM SYS.SYSCOLUMNS C, SYS.SYSCONSTRAINTS N, SYS.SYSTABLES T " +
-                "WHERE T.TABLENAME = '"+xtableName.toUpperCase()+"' AND T.TABLEID=C.REFERENCEID AND T.TABLEID=N.TABLEID " +
+                "T.TABLENAME,C.COLUMNNAME,C.REFERENCEID,C.COLUMNNUMBER,C.COLUMNDATATYPE,C.COLUMNDEFAULT " +
+                "FROM SYS.SYSCOLUMNS C, SYS.SYSTABLES T " +
+                "WHERE T.TABLENAME = '"+xtableName.toUpperCase()+"' AND T.TABLEID=C.REFERENCEID " +
                 "ORDER BY C.COLUMNNUMBER";
-            colName_Field = "COLUMNNAME";
-            colName_Type  = "COLUMNDATATYPE";
-            colName_Key   = "TYPE"; // P-primaryKey, U-unique, C-check,  F-foreignKey
-            dftCharSet    = "utf8";
+            colName_Field   = "COLUMNNAME";
+            colName_Type    = "COLUMNDATATYPE";
+            colName_Default = "COLUMNDEFAULT";
+            dftCharSet      = "utf8";
         } else
         if (dbp.getID() == DB_POSTGRESQL) {
             showCols      = "SELECT " +
@@ -1345,8 +1440,11 @@ public class DBProvider
                     "    and a.attnum = ANY(ix.indkey)" +
                     "    and t.relkind = 'r'" +
                     "    and t.relname = 'device'";
+        } else
+        if (dbp.getID() == DB_DERBY) {
+            // Derby: JDBC DatabaseMetaData
+            return DBProvider._getDerbyTableIndexMap(utableName, xtableName);
         } else {
-            // Derby:: "SELECT ???"
             return null;
         }
 
@@ -1388,6 +1486,67 @@ public class DBProvider
         
     }
 
+    /**
+    *** Returns a map of column names to index names (Derby)
+    *** @param utableName The untranslated table name
+    *** @param xtableName The translated table name
+    *** @return A map of column names to index names
+    *** @throws DBException if an error occured fetching the indexes
+    **/
+    private static DBTableIndexMap _getDerbyTableIndexMap(String utableName, String xtableName)
+        throws DBException
+    {
+
+        /* defined alternate index names (Derby stores index names in uppercase) */
+        // alternate index names are prefixed with the table name (see "createAlternateIndex")
+        Map<String,String> altNames = new HashMap<String,String>();
+        altNames.put((utableName + "_" + DEFAULT_ALT_INDEX_NAME).toUpperCase(), DEFAULT_ALT_INDEX_NAME);
+        DBFactory<?> fact = DBAdmin.getTableFactory(utableName);
+        DBAlternateIndex altIndexes[] = (fact != null)? fact.getAlternateIndexes() : null;
+        if (altIndexes != null) {
+            for (int i = 0; i < altIndexes.length; i++) {
+                String n = altIndexes[i].getIndexName();
+                altNames.put((utableName + "_" + n).toUpperCase(), n);
+            }
+        }
+
+        /* extract indexes */
+        String tblName = xtableName.toUpperCase();
+        DBConnection dbc = null;
+        ResultSet    rs  = null;
+        DBTableIndexMap indexMap = new DBTableIndexMap(utableName);
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            DatabaseMetaData dbmd = dbc.getConnection().getMetaData();
+            // primary key
+            rs = dbmd.getPrimaryKeys(null, null, tblName);
+            while (rs.next()) {
+                indexMap.addIndexColumn(PRIMARY_INDEX_NAME, rs.getString("COLUMN_NAME"));
+            }
+            rs.close();
+            // alternate indexes
+            rs = dbmd.getIndexInfo(null, null, tblName, false, true);
+            while (rs.next()) {
+                String ndxName = StringTools.trim(rs.getString("INDEX_NAME"));
+                String colName = rs.getString("COLUMN_NAME");
+                String altName = altNames.get(ndxName.toUpperCase());
+                if (altName != null) {
+                    indexMap.addIndexColumn(altName, colName);
+                }
+                // other indexes (ie. "SQL..." system generated primary key index) are ignored
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Unable to get indexes", sqe);
+        } finally {
+            if (rs != null) { try { rs.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+
+        /* return index map */
+        return indexMap;
+
+    }
+
     // ------------------------------------------------------------------------
     
     /**
@@ -1849,12 +2008,17 @@ public class DBProvider
 
         /* remove index */
         StringBuffer sb = new StringBuffer();
-        // MySQL: ALTER TABLE <table> DROP INDEX altIndex
-        sb.append("ALTER TABLE ").append(xtableName).append(" ");
-        sb.append("DROP ");
-        sb.append(DBFactory.getKeyTypeName(DBFactory.KeyType.INDEX));
-        sb.append(" ");
-        sb.append(indexName);
+        if (DBProvider.getProvider().getID() == DB_DERBY) {
+            // Derby: DROP INDEX altIndex
+            sb.append("DROP INDEX ").append(indexName);
+        } else {
+            // MySQL: ALTER TABLE <table> DROP INDEX altIndex
+            sb.append("ALTER TABLE ").append(xtableName).append(" ");
+            sb.append("DROP ");
+            sb.append(DBFactory.getKeyTypeName(DBFactory.KeyType.INDEX));
+            sb.append(" ");
+            sb.append(indexName);
+        }
         DBConnection dbc = null;
         try {
             dbc = DBConnection.getDefaultConnection();
@@ -2072,7 +2236,7 @@ public class DBProvider
             // ResultSet rs = <Statement>.getGeneratedKeys();
             DBConnection dbc = null;
             try {
-                dbc = DBConnection.getDefaultConnection();
+                dbc = DBShard.GetDBConnection(DBProvider._getShardIndex(recKey));
                 if (autoIncrField != null) {
                     long autoIncrVal = dbc.executeUpdate(sb.toString(), true);
                     if (autoIncrVal >= 0) {
@@ -2085,6 +2249,7 @@ public class DBProvider
             } finally {
                 DBConnection.release(dbc);
             }
+            DBProvider._mirrorUpdate(recKey, sb.toString());
             return true;
         } else {
             Print.logInfo("No columns specified to insert!!! [" + xtableName + "]");
@@ -2219,7 +2384,7 @@ public class DBProvider
         if (addedField) {
             DBConnection dbc = null;
             try {
-                dbc = DBConnection.getDefaultConnection();
+                dbc = DBShard.GetDBConnection(DBProvider._getShardIndex(recKey));
                 dbc.executeUpdate(sb.toString());
             } catch (SQLException sqle) {
                 Print.logError("SQL(ExecuteUpdate): " + sb);
@@ -2230,6 +2395,7 @@ public class DBProvider
             } finally {
                 DBConnection.release(dbc);
             }
+            DBProvider._mirrorUpdate(recKey, sb.toString());
             return true;
         } else {
             Print.logInfo("No columns specified to update!!! [" + xtableName + "]");
@@ -2238,6 +2404,39 @@ public class DBProvider
         
     }
 
+    /**
+    *** Returns the index of the shard which owns the specified record key
+    **/
+    private static int _getShardIndex(DBRecordKey<?> recKey)
+    {
+        return recKey.getFactory().getShardIndex(recKey);
+    }
+
+    /**
+    *** Executes the insert/update statement on the mirror shard of the specified record
+    *** key (if any).  Mirror write errors are logged, but otherwise ignored, since the
+    *** record has already been written to the owning shard.
+    *** @param recKey   The record key
+    *** @param sql      The insert/update statement
+    **/
+    private static void _mirrorUpdate(DBRecordKey<?> recKey, String sql)
+    {
+        int mirror = recKey.getFactory().getMirrorShardIndex(recKey);
+        if (mirror >= 0) {
+            try {
+                DBShard.ExecuteUpdate(mirror, sql);
+            } catch (SQLException sqe) {
+                if (sqe.getErrorCode() == DBFactory.SQLERR_DUPLICATE_KEY) {
+                    // already copied to the mirror shard
+                } else {
+                    Print.logError("Mirror shard #" + mirror + " write failed: " + sqe);
+                }
+            } catch (DBException dbe) {
+                Print.logError("Mirror shard #" + mirror + " write failed: " + dbe);
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
     // grant access to database (needed for initialization only)
@@ -2428,6 +2627,23 @@ public class DBProvider
     private static Stack<Throwable> lockLevel      = new Stack<Throwable>();
     private static int              lockSeq        = 0;
     private static int              unlockSeq      = 0;
+    private static ReentrantLock    jvmTableLock   = new ReentrantLock();
+
+    /* table lock held by the current thread (for lock hold time statistics) */
+    private static class LockHold
+    {
+        public Throwable site    = null;
+        public long      startNS = 0L;
+        public LockHold(Throwable site, long startNS) {
+            this.site    = site;
+            this.startNS = startNS;
+        }
+    }
+    private static ThreadLocal<Stack<LockHold>> lockHolds = new ThreadLocal<Stack<LockHold>>() {
+        protected Stack<LockHold> initialValue() {
+            return new Stack<LockHold>();
+        }
+    };
 
     /**
     *** Returns true if table locking is enabled
@@ -2449,6 +2665,30 @@ public class DBProvider
         }
     }
 
+    /**
+    *** Pushes the lock location onto the lock-level stack, and the lock location and lock
+    *** time onto the lock-hold stack of the current thread
+    **/
+    private static void _pushLockLevel(Throwable t)
+    {
+        DBProvider.lockLevel.push(t);
+        DBProvider.lockHolds.get().push(new LockHold(t, DBQueryStats.StartTimer()));
+    }
+
+    /**
+    *** Pops the lock location from the lock-level stack, and records the lock hold time
+    *** of the most recent lock obtained by the current thread
+    **/
+    private static void _popLockLevel()
+    {
+        DBProvider.lockLevel.pop();
+        Stack<LockHold> holds = DBProvider.lockHolds.get();
+        if (!holds.empty()) {
+            LockHold h = holds.pop();
+            DBQueryStats.RecordLockHold(h.site, h.startNS);
+        }
+    }
+
     /**
     *** Returns the current recursive lock level
     *** @return The current recursive lock level
@@ -2496,6 +2736,17 @@ public class DBProvider
         /* supported by DBProvider? */
         DBProvider dbp = DBProvider.getProvider();
         int dbid = dbp.getID();
+        if (dbid == DBProvider.DB_DERBY) {
+            // Derby: lock within this JVM
+            if (!forceLock && !DBProvider.isTableLockingEnabled()) {
+                return false; // nothing locked
+            }
+            Throwable t = new Throwable();
+            t.fillInStackTrace();
+            DBProvider.jvmTableLock.lock();
+            DBProvider._pushLockLevel(t);
+            return true;
+        } else
         if (dbid != DBProvider.DB_MYSQL) {
             return false;
         }
@@ -2545,7 +2796,7 @@ public class DBProvider
                 } finally {
                     DBConnection.release(dbc);
                 }
-                DBProvider.lockLevel.push(t);
+                DBProvider._pushLockLevel(t);
             }
             
             return true;
@@ -2589,6 +2840,17 @@ public class DBProvider
         /* supported by DBProvider? */
         DBProvider dbp = DBProvider.getProvider();
         int dbid = dbp.getID();
+        if (dbid == DBProvider.DB_DERBY) {
+            // Derby: unlock within this JVM
+            // (like MySQL "UNLOCK TABLES", this releases all locks held by this thread)
+            while (DBProvider.jvmTableLock.isHeldByCurrentThread()) {
+                if (!DBProvider.lockLevel.empty()) {
+                    DBProvider._popLockLevel();
+                }
+                DBProvider.jvmTableLock.unlock();
+            }
+            return true;
+        } else
         if (dbid != DBProvider.DB_MYSQL) {
             return false;
         }
@@ -2606,7 +2868,7 @@ public class DBProvider
                     DBConnection.release(dbc);
                 }
                 if (!DBProvider.lockLevel.empty()) {
-                    DBProvider.lockLevel.pop();
+                    DBProvider._popLockLevel();
                 } else {
                     Print.logStackTrace("Lock-Level stack is empty");
                 }
@@ -2801,6 +3063,15 @@ public class DBProvider
         return ((this.jdbcFlags & FLAGS_OFFSET) != 0);
     }
 
+    /**
+    *** Returns true if the DBProvider database runs in-process (within this JVM)
+    *** @return True if the DBProvider database is embedded
+    **/
+    public boolean isEmbedded()
+    {
+        return ((this.jdbcFlags & FLAGS_EMBEDDED) != 0);
+    }
+
     // ------------------------------------------------------------------------
 
     /*
@@ -0,0 +1,466 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBQueryStats</code> aggregates SQL statement latency by statement "fingerprint"
+*** (the SQL statement with all literal values replaced by '?'), and table lock hold
+*** times by the calling code location.<br>
+*** Statistics are collected when "db.queryStats.enable" is true.  Statements (and table
+*** lock holds) which take longer than "db.slowQuery.thresholdMS" are logged, along with
+*** the calling code location, whether or not statistics collection is enabled.<br>
+*** The collected statistics may be displayed with "DBAdmin -queryStats".
+**/
+
+public class DBQueryStats
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String OTHER_FINGERPRINT       = "<other>";
+    private static final int    MAX_FINGERPRINT_LENGTH  = 1000;
+
+    private static final String SORT_COUNT              = "count";
+    private static final String SORT_TOTAL              = "total";
+    private static final String SORT_P99                = "p99";
+    private static final String SORT_ROWS               = "rows";
+
+    // ------------------------------------------------------------------------
+    // Configuration (reloaded when the runtime configuration changes)
+
+    private static volatile long    configVersion   = -1L;
+    private static volatile boolean statsEnabled    = false;
+    private static volatile long    slowThresholdNS = 0L;
+    private static volatile int     maxFingerprints = 1000;
+
+    /**
+    *** Loads the configuration, if the runtime configuration has changed
+    **/
+    private static void _loadConfig()
+    {
+        if (!RTConfig.isInitialized()) {
+            return;
+        }
+        long ver = RTConfig.getConfigVersion();
+        if (ver != configVersion) {
+            statsEnabled    = RTConfig.getBoolean(RTKey.DB_QUERY_STATS, false);
+            slowThresholdNS = RTConfig.getLong(RTKey.DB_SLOW_QUERY_MS, 0L) * 1000000L;
+            maxFingerprints = RTConfig.getInt(RTKey.DB_QUERY_STATS_MAX, 1000);
+            configVersion   = ver;
+        }
+    }
+
+    /**
+    *** Returns true if statistics collection, or slow statement logging, is enabled
+    *** @return True if statement timing is required
+    **/
+    public static boolean IsEnabled()
+    {
+        DBQueryStats._loadConfig();
+        return statsEnabled || (slowThresholdNS > 0L);
+    }
+
+    /**
+    *** Returns a start time for a later call to "RecordQuery"/"RecordLockHold"
+    *** @return The start time in nanoseconds, or 0 if statement timing is not required
+    **/
+    public static long StartTimer()
+    {
+        return DBQueryStats.IsEnabled()? System.nanoTime() : 0L;
+    }
+
+    // ------------------------------------------------------------------------
+    // SQL fingerprint
+
+    /**
+    *** Returns the fingerprint of the specified SQL statement.  Quoted strings, numbers,
+    *** and hex values are replaced by '?', lists of values ("(?,?,?)") are replaced by
+    *** "(?+)", and whitespace is collapsed.
+    *** @param sql  The SQL statement
+    *** @return The SQL fingerprint
+    **/
+    public static String Fingerprint(String sql)
+    {
+        // Derby: backslash is not an escape character (see "DBField.quote")
+        boolean bsEscape = (DBProvider.getProvider().getID() != DBProvider.DB_DERBY);
+        return DBQueryStats.Fingerprint(sql, bsEscape);
+    }
+
+    /**
+    *** Returns the fingerprint of the specified SQL statement
+    *** @param sql       The SQL statement
+    *** @param bsEscape  True if backslash escapes the next character in quoted strings
+    *** @return The SQL fingerprint
+    **/
+    public static String Fingerprint(String sql, boolean bsEscape)
+    {
+        if (sql == null) {
+            return "";
+        }
+        int len = sql.length();
+        StringBuffer fp = new StringBuffer(Math.min(len,MAX_FINGERPRINT_LENGTH) + 8);
+        int i = 0;
+        while ((i < len) && (fp.length() < MAX_FINGERPRINT_LENGTH)) {
+            char ch = sql.charAt(i);
+            if ((ch == '"') || (ch == '`')) {
+                // quoted identifier (copied as-is)
+                int e = sql.indexOf(ch, i + 1);
+                e = (e >= 0)? (e + 1) : len;
+                fp.append(sql, i, e);
+                i = e;
+            } else
+            if (ch == '\'') {
+                // quoted string literal
+                i++;
+                while (i < len) {
+                    char c = sql.charAt(i);
+                    if (bsEscape && (c == '\\')) {
+                        i += 2; // escaped character
+                    } else
+                    if (c == ch) {
+                        if (((i + 1) < len) && (sql.charAt(i + 1) == ch)) {
+                            i += 2; // doubled quote
+                        } else {
+                            i++;
+                            break;
+                        }
+                    } else {
+                        i++;
+                    }
+                }
+                fp.append('?');
+            } else
+            if (Character.isDigit(ch) && !DBQueryStats._isIdentChar(fp)) {
+                // numeric/hex literal
+                while ((i < len) && (Character.isLetterOrDigit(sql.charAt(i)) || (sql.charAt(i) == '.'))) {
+                    i++;
+                }
+                fp.append('?');
+            } else
+            if (Character.isWhitespace(ch)) {
+                while ((i < len) && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if ((fp.length() > 0) && (i < len)) {
+                    fp.append(' ');
+                }
+            } else {
+                fp.append(ch);
+                i++;
+            }
+        }
+        return DBQueryStats._collapseLists(fp.toString());
+    }
+
+    /**
+    *** Returns true if the last character in the buffer is part of an identifier
+    **/
+    private static boolean _isIdentChar(StringBuffer sb)
+    {
+        if (sb.length() <= 0) {
+            return false;
+        }
+        char ch = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(ch) || (ch == '_') || (ch == '?');
+    }
+
+    /**
+    *** Replaces value lists "(?,?,...)" with "(?+)"
+    **/
+    private static String _collapseLists(String fp)
+    {
+        if (fp.indexOf("?,") < 0) {
+            return fp;
+        }
+        StringBuffer sb = new StringBuffer(fp.length());
+        int i = 0, len = fp.length();
+        while (i < len) {
+            char ch = fp.charAt(i);
+            if (ch == '(') {
+                int e = i + 1;
+                int n = 0;
+                for (;;) {
+                    while ((e < len) && (fp.charAt(e) == ' ')) { e++; }
+                    if ((e >= len) || (fp.charAt(e) != '?')) { break; }
+                    e++; n++;
+                    while ((e < len) && (fp.charAt(e) == ' ')) { e++; }
+                    if ((e < len) && (fp.charAt(e) == ',')) { e++; continue; }
+                    break;
+                }
+                if ((n > 1) && (e < len) && (fp.charAt(e) == ')')) {
+                    sb.append("(?+)");
+                    i = e + 1;
+                    continue;
+                }
+            }
+            sb.append(ch);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // Calling code location
+
+    /**
+    *** Returns the first stack frame of the specified Throwable which is outside of
+    *** the "org.opengts.dbtools" package
+    *** @param t  The Throwable
+    *** @return The calling code location ("class.method:line")
+    **/
+    public static String GetCallerSite(Throwable t)
+    {
+        StackTraceElement st[] = (t != null)? t.getStackTrace() : null;
+        if (ListTools.isEmpty(st)) {
+            return "?";
+        }
+        String pkg = DBQueryStats.class.getPackage().getName() + ".";
+        for (int i = 0; i < st.length; i++) {
+            if (!st[i].getClassName().startsWith(pkg)) {
+                return DBQueryStats._siteName(st[i]);
+            }
+        }
+        return DBQueryStats._siteName(st[st.length - 1]);
+    }
+
+    private static String _siteName(StackTraceElement ste)
+    {
+        String cn = ste.getClassName();
+        int p = cn.lastIndexOf('.');
+        return ((p >= 0)? cn.substring(p + 1) : cn) + "." + ste.getMethodName() + ":" + ste.getLineNumber();
+    }
+
+    // ------------------------------------------------------------------------
+    // Statement statistics
+
+    /**
+    *** Statistics for a single SQL fingerprint, or table lock site
+    **/
+    private static class Stat
+    {
+        private String              name        = null;
+        private Metrics.Histogram   latency     = new Metrics.Histogram();
+        private AtomicLong          rows        = new AtomicLong(0L);
+        private AtomicLong          slow        = new AtomicLong(0L);
+        public Stat(String name) {
+            this.name = name;
+        }
+        public long getTotalMicros() {
+            return Math.round(this.latency.getMean() * (double)this.latency.getCount());
+        }
+        public long getSortValue(String sortBy) {
+            if (SORT_COUNT.equalsIgnoreCase(sortBy)) {
+                return this.latency.getCount();
+            } else
+            if (SORT_P99.equalsIgnoreCase(sortBy)) {
+                return this.latency.getPercentile(99.0);
+            } else
+            if (SORT_ROWS.equalsIgnoreCase(sortBy)) {
+                return this.rows.get();
+            } else {
+                return this.getTotalMicros();
+            }
+        }
+    }
+
+    private static final ConcurrentHashMap<String,Stat> queryStats = new ConcurrentHashMap<String,Stat>();
+    private static final ConcurrentHashMap<String,Stat> lockStats  = new ConcurrentHashMap<String,Stat>();
+
+    /* last statement recorded by the current thread (so "RecordRows" need not fingerprint it again) */
+    private static class LastQuery
+    {
+        public String sql  = null;
+        public Stat   stat = null;
+    }
+    private static final ThreadLocal<LastQuery> lastQuery = new ThreadLocal<LastQuery>() {
+        protected LastQuery initialValue() {
+            return new LastQuery();
+        }
+    };
+
+    /**
+    *** Gets/creates the statistics entry for the specified name
+    **/
+    private static Stat _getStat(ConcurrentHashMap<String,Stat> map, String name)
+    {
+        Stat s = map.get(name);
+        if (s == null) {
+            if (map.size() >= maxFingerprints) {
+                name = OTHER_FINGERPRINT;
+                s = map.get(name);
+                if (s != null) {
+                    return s;
+                }
+            }
+            Stat n = new Stat(name);
+            s = map.putIfAbsent(name, n);
+            if (s == null) { s = n; }
+        }
+        return s;
+    }
+
+    /**
+    *** Records the execution of the specified SQL statement
+    *** @param sql      The SQL statement
+    *** @param startNS  The value returned by "StartTimer" (ignored if 0)
+    *** @param rows     The number of rows updated (or -1 if unknown)
+    **/
+    public static void RecordQuery(String sql, long startNS, long rows)
+    {
+        if (startNS == 0L) {
+            return;
+        }
+        long elapsedNS = System.nanoTime() - startNS;
+        boolean isSlow = (slowThresholdNS > 0L) && (elapsedNS >= slowThresholdNS);
+        if (statsEnabled) {
+            Stat s = DBQueryStats._getStat(queryStats, DBQueryStats.Fingerprint(sql));
+            LastQuery lq = lastQuery.get();
+            lq.sql  = sql;
+            lq.stat = s;
+            s.latency.record(elapsedNS / 1000L);
+            if (rows > 0L) { s.rows.addAndGet(rows); }
+            if (isSlow) { s.slow.incrementAndGet(); }
+        }
+        if (isSlow) {
+            String site = DBQueryStats.GetCallerSite(new Throwable());
+            Print.logWarn("SQL(Slow) " + (elapsedNS / 1000000L) + "ms [" + site + "]: " + sql);
+        }
+    }
+
+    /**
+    *** Records the number of rows read by the specified SQL query
+    *** @param sql   The SQL statement (normally the same String instance last passed to
+    ***              "RecordQuery" by this thread, in which case it is not fingerprinted again)
+    *** @param rows  The number of rows read
+    **/
+    public static void RecordRows(String sql, long rows)
+    {
+        if (statsEnabled && (rows > 0L)) {
+            LastQuery lq = lastQuery.get();
+            Stat s = ((lq.sql == sql) && (lq.stat != null))? lq.stat : 
+                DBQueryStats._getStat(queryStats, DBQueryStats.Fingerprint(sql));
+            s.rows.addAndGet(rows);
+        }
+    }
+
+    /**
+    *** Records a table lock hold time
+    *** @param lockSite The Throwable created at the time the lock was obtained
+    *** @param startNS  The value returned by "StartTimer" when the lock was obtained (ignored if 0)
+    **/
+    public static void RecordLockHold(Throwable lockSite, long startNS)
+    {
+        if (startNS == 0L) {
+            return;
+        }
+        long elapsedNS = System.nanoTime() - startNS;
+        boolean isSlow = (slowThresholdNS > 0L) && (elapsedNS >= slowThresholdNS);
+        if (!statsEnabled && !isSlow) {
+            return;
+        }
+        String site = DBQueryStats.GetCallerSite(lockSite);
+        if (statsEnabled) {
+            Stat s = DBQueryStats._getStat(lockStats, site);
+            s.latency.record(elapsedNS / 1000L);
+            if (isSlow) { s.slow.incrementAndGet(); }
+        }
+        if (isSlow) {
+            Print.logWarn("SQL(SlowLock) table lock held " + (elapsedNS / 1000000L) + "ms [" + site + "]");
+        }
+    }
+
+    /**
+    *** Clears all collected statistics
+    **/
+    public static void Reset()
+    {
+        queryStats.clear();
+        lockStats.clear();
+        lastQuery.remove(); // current thread only (other threads re-fingerprint after their next query)
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the collected statistics as a text table
+    *** @param sortBy  The sort order ("total", "count", "p99", "rows")
+    *** @param limit   The maximum number of fingerprints displayed (0 for all)
+    *** @return The statistics text
+    **/
+    public static String GetText(String sortBy, int limit)
+    {
+        StringBuffer sb = new StringBuffer();
+        DBQueryStats._appendText(sb, "SQL statements (by " + sortBy + ")", queryStats, sortBy, limit, true);
+        sb.append("\n");
+        DBQueryStats._appendText(sb, "Table lock hold times (by " + sortBy + ")", lockStats, sortBy, limit, false);
+        return sb.toString();
+    }
+
+    private static void _appendText(StringBuffer sb, String title,
+        Map<String,Stat> map, final String sortBy, int limit, boolean inclRows)
+    {
+        java.util.List<Stat> list = new Vector<Stat>(map.values());
+        Collections.sort(list, new Comparator<Stat>() {
+            public int compare(Stat s1, Stat s2) {
+                long v1 = s1.getSortValue(sortBy);
+                long v2 = s2.getSortValue(sortBy);
+                return (v1 > v2)? -1 : (v1 < v2)? 1 : 0;
+            }
+        });
+        sb.append(title).append(":\n");
+        sb.append(StringTools.padRight("count",' ',9));
+        sb.append(StringTools.padRight("total_ms",' ',11));
+        sb.append(StringTools.padRight("p50_ms",' ',9));
+        sb.append(StringTools.padRight("p99_ms",' ',9));
+        sb.append(StringTools.padRight("max_ms",' ',9));
+        sb.append(StringTools.padRight("slow",' ',7));
+        if (inclRows) {
+            sb.append(StringTools.padRight("rows",' ',11));
+        }
+        sb.append(inclRows? "fingerprint" : "caller").append("\n");
+        int n = 0;
+        for (Stat s : list) {
+            if ((limit > 0) && (n++ >= limit)) {
+                break;
+            }
+            Metrics.Histogram h = s.latency;
+            sb.append(StringTools.padRight(String.valueOf(h.getCount()),' ',9));
+            sb.append(StringTools.padRight(String.valueOf(s.getTotalMicros() / 1000L),' ',11));
+            sb.append(StringTools.padRight(StringTools.format((double)h.getPercentile(50.0) / 1000.0,"0.0"),' ',9));
+            sb.append(StringTools.padRight(StringTools.format((double)h.getPercentile(99.0) / 1000.0,"0.0"),' ',9));
+            sb.append(StringTools.padRight(StringTools.format((double)h.getMaximum() / 1000.0,"0.0"),' ',9));
+            sb.append(StringTools.padRight(String.valueOf(s.slow.get()),' ',7));
+            if (inclRows) {
+                sb.append(StringTools.padRight(String.valueOf(s.rows.get()),' ',11));
+            }
+            sb.append(s.name).append("\n");
+        }
+    }
+
+}
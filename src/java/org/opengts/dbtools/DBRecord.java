@@ -65,6 +65,14 @@
 //      [in "getRecordCount(...)"]
 //  2013/04/08  Martin D. Flynn
 //     -Added "getTemporaryProperties()"/"hasTemporaryProperties()"
+//  2026/10/19
+//     -"select(DBSelect,...)" and "getRecordCount(DBSelect)" use a read-replica
+//      connection within a "DBConnection.pushReadReplica()" scope.
+//     -"select(DBSelect,...)" and "getRecordCount(DBSelect)" are sent to the selected
+//      shard, or to all shards, for sharded tables (see "DBShard").  Records selected
+//      from all shards are merged one record at a time, in "ORDER BY" order.
+//     -The shard selects of an all-shard select are run in parallel (see "DBShard.Scatter")
+//     -Added "copyRecord"
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -270,13 +278,53 @@ public abstract class DBRecord<gDBR extends DBRecord>
         // (since we are only interested in a total count)
         dsel.setOrderByFields((String[])null);
 
+        /* sharded table */
+        if (fact.isSharded() && (DBShard.GetThreadShard() < 0)) {
+            int shard = dsel.getShardIndex();
+            if (shard >= 0) {
+                // single shard
+                DBShard.PushShard(shard);
+                try {
+                    return DBRecord._getRecordCount(dsel);
+                } finally {
+                    DBShard.PopShard();
+                }
+            } else {
+                // sum of counts from all shards
+                final DBSelect<T> shardSel = dsel;
+                java.util.List<Long> counts = DBShard.ScatterGather(new DBShard.ShardTask<Long>() {
+                    public Long run(int shard) throws DBException {
+                        return new Long(DBRecord._getRecordCount(shardSel));
+                    }
+                });
+                long count = 0L;
+                for (Long c : counts) {
+                    count += c.longValue();
+                }
+                return count;
+            }
+        }
+
+        /* count */
+        return DBRecord._getRecordCount(dsel);
+
+    }
+
+    /**
+    *** Returns the number of records matching the specified DBSelect, from the current connection
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static <T extends DBRecord> long _getRecordCount(DBSelect<T> dsel)
+        throws DBException
+    {
+
         /* get result set */
         DBConnection dbc  = null;
         Statement   stmt  = null;
         ResultSet   rs    = null;
         long        count = 0L;
         try {
-            dbc  = DBConnection.getDefaultConnection();
+            dbc  = DBConnection.getReadConnection(); // read-replica, if in scope
             stmt = dbc.execute(dsel.toString());
             rs   = stmt.getResultSet();
             if (rs.next()) {
@@ -452,6 +500,20 @@ public abstract class DBRecord<gDBR extends DBRecord>
         return (dbr != null)? dbr._getFactory() : null;
     }
     
+    /**
+    *** Returns a detached copy of the specified record.<br>
+    *** Mutable field values (BLOB and DateTime) are copied, so that the copy shares
+    *** no mutable state with the specified record.
+    *** @param rcd  The record to copy
+    *** @return The record copy (with no changed fields)
+    *** @throws DBException if the record DBFactory is not defined
+    **/
+    public static <T extends DBRecord<T>> T copyRecord(T rcd)
+        throws DBException
+    {
+        return rcd.getFactory(true).copyRecord(rcd);
+    }
+
     // NOTE:
     // "getFactory()" is a static method reserved for subclasses
     // public DBFactory getFactory()  <-- do not create/implemente this method here
@@ -662,6 +724,323 @@ public abstract class DBRecord<gDBR extends DBRecord>
         DBRecordHandler<T> rcdHandler)
         throws DBException
     {
+        DBFactory<T> fact = dsel.getFactory();
+
+        /* non-sharded table, or already on a shard */
+        if (!fact.isSharded() || (DBShard.GetThreadShard() >= 0)) {
+            return DBRecord._select(dsel, rcdHandler);
+        }
+
+        /* single shard */
+        if (dsel.getShardIndex() >= 0) {
+            DBShard.PushShard(dsel.getShardIndex());
+            try {
+                return DBRecord._select(dsel, rcdHandler);
+            } finally {
+                DBShard.PopShard();
+            }
+        }
+
+        /* all shards */
+        return DBRecord._selectMerged(dsel, rcdHandler);
+
+    }
+
+    /**
+    *** An open result set on one shard, positioned at the next record to merge
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static class ShardCursor<T extends DBRecord>
+    {
+        private int             shard   = DBShard.PRIMARY;
+        private DBConnection    dbc     = null;
+        private Statement       stmt    = null;
+        private ResultSet       rs      = null;
+        private T               rcd     = null;
+        public ShardCursor(int shard, String sql) throws SQLException, DBException {
+            this.shard = shard;
+            DBShard.PushShard(shard);
+            try {
+                this.dbc = DBConnection.getReadConnection(); // shard read-replica, if in scope
+            } finally {
+                DBShard.PopShard();
+            }
+            try {
+                this.stmt = this.dbc.execute(sql);
+                this.rs   = this.stmt.getResultSet();
+            } catch (SQLException sqe) {
+                this.close();
+                throw sqe;
+            } catch (DBException dbe) {
+                this.close();
+                throw dbe;
+            }
+        }
+        public boolean next(DBFactory<T> fact) throws SQLException, DBException {
+            this.rcd = null;
+            while (this.rs.next()) {
+                DBRecordKey<T> rcdKey = fact.createKey(this.rs); // may throw DBException
+                if (rcdKey != null) {
+                    this.rcd = rcdKey.getDBRecord();
+                    this.rcd.setAllFieldValues(this.rs);
+                    return true;
+                }
+            }
+            return false;
+        }
+        public void close() {
+            DBConnection dbc = this.dbc;
+            this.dbc = null;
+            if (dbc != null) {
+                DBConnection.release(dbc, this.stmt, this.rs);
+            }
+        }
+    }
+
+    /**
+    *** Records selected from one shard by a DBShard thread, handed to the merging thread
+    *** through a bounded queue.  The shard connection is opened, read, and released on
+    *** the DBShard thread only.
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static class ShardStream<T extends DBRecord>
+        implements DBShard.ShardTask<Boolean>
+    {
+        private static final int    PREFETCH    = 64;
+        private static final Object END         = new Object();
+        private DBFactory<T>        fact        = null;
+        private String              sql         = null;
+        private boolean             replica     = false;
+        private java.util.concurrent.BlockingQueue<Object> queue =
+            new java.util.concurrent.ArrayBlockingQueue<Object>(PREFETCH);
+        private volatile boolean    closed      = false;
+        private int                 shard       = DBShard.PRIMARY;
+        private T                   rcd         = null;
+        public ShardStream(int shard, DBFactory<T> fact, String sql, boolean replica) {
+            this.shard   = shard;
+            this.fact    = fact;
+            this.sql     = sql;
+            this.replica = replica;
+        }
+        public Boolean run(int shard) {
+            // DBShard thread
+            if (this.replica) { DBConnection.pushReadReplica(); }
+            ShardCursor<T> cursor = null;
+            try {
+                cursor = new ShardCursor<T>(this.shard, this.sql);
+                while (!this.closed && cursor.next(this.fact)) {
+                    if (!this._put(cursor.rcd)) {
+                        break;
+                    }
+                }
+                this._put(END);
+            } catch (Throwable th) { // SQLException, DBException, ...
+                this._put(th);
+            } finally {
+                if (cursor != null) { cursor.close(); }
+                if (this.replica) { DBConnection.popReadReplica(); }
+            }
+            return Boolean.TRUE;
+        }
+        private boolean _put(Object obj) {
+            try {
+                while (!this.closed) {
+                    if (this.queue.offer(obj, 100L, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException ie) {
+                // stop reading
+            }
+            return false;
+        }
+        @SuppressWarnings("unchecked") // records are put by "run"
+        public boolean next() throws SQLException, DBException {
+            // merging thread
+            this.rcd = null;
+            Object obj = null;
+            try {
+                obj = this.queue.take();
+            } catch (InterruptedException ie) {
+                throw new DBException("Shard #" + this.shard + " select interrupted", ie);
+            }
+            if (obj == END) {
+                return false;
+            } else
+            if (obj instanceof SQLException) {
+                throw (SQLException)obj;
+            } else
+            if (obj instanceof DBException) {
+                throw (DBException)obj;
+            } else
+            if (obj instanceof Throwable) {
+                throw new DBException("Shard #" + this.shard + " select failed", (Throwable)obj);
+            } else {
+                this.rcd = (T)obj;
+                return true;
+            }
+        }
+        public void close() {
+            this.closed = true;
+            this.queue.clear(); // the DBShard thread closes the shard cursor
+        }
+    }
+
+    /**
+    *** Compares the specified "ORDER BY" fields of two records.  String values are
+    *** compared ignoring case, to match the (case-insensitive) default database collation.
+    **/
+    @SuppressWarnings({"rawtypes","unchecked"}) // same record bound as DBFactory
+    private static int _compareFields(DBRecord r1, DBRecord r2, String orderBy[], boolean ascending)
+    {
+        for (String fn : orderBy) {
+            Object v1 = r1.getFieldValue(fn);
+            Object v2 = r2.getFieldValue(fn);
+            int c = 0;
+            if (v1 == v2) {
+                c = 0;
+            } else
+            if (v1 == null) {
+                c = -1;
+            } else
+            if (v2 == null) {
+                c = 1;
+            } else
+            if ((v1 instanceof String) && (v2 instanceof String)) {
+                c = ((String)v1).compareToIgnoreCase((String)v2);
+            } else
+            if (v1 instanceof Comparable) {
+                c = ((Comparable<Object>)v1).compareTo(v2);
+            }
+            if (c != 0) {
+                return ascending? c : -c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+    *** Gets an array of DBRecords based on the specified DBSelect, from all shards.<br>
+    *** The select is sent to each shard (with the limit increased by the offset, since the
+    *** offset can only be applied after merging).  The shard selects are run in parallel on
+    *** DBShard threads, and the shard result sets are merged one record at a time on this
+    *** thread: in "ORDER BY" order if specified, otherwise shard by shard.  At most a small
+    *** bounded prefetch of records per shard is held in memory before the DBRecordHandler
+    *** is called on this thread (the handler may itself access the database), and the
+    *** merge stops as soon as the limit is reached, or the handler returns DBRH_STOP.
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static <T extends DBRecord> T[] _selectMerged(DBSelect<T> dsel,
+        DBRecordHandler<T> rcdHandler)
+        throws DBException
+    {
+        final DBFactory<T> fact = dsel.getFactory();
+        final String  orderBy[] = dsel.getOrderByFields();
+        final boolean ascending = dsel.isOrderAscending();
+        long limit  = dsel.getLimit();
+        long offset = dsel.hasOffset()? dsel.getOffset() : 0L;
+
+        /* shard select */
+        String sql = null;
+        try {
+            if (offset > 0L) {
+                if (limit > 0L) { dsel.setLimit(limit + offset); }
+                dsel.setOffset(0L);
+            }
+            sql = dsel.toString();
+        } finally {
+            dsel.setLimit(limit);
+            dsel.setOffset(offset);
+        }
+
+        /* start shard selects */
+        int shardCount = DBShard.GetShardCount();
+        final String shardSQL = sql;
+        final boolean replica = DBConnection.isReadReplicaScope() && (DBProvider.getLockLevel() <= 0);
+        final java.util.List<ShardStream<T>> cursors = new Vector<ShardStream<T>>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            cursors.add(new ShardStream<T>(shard, fact, shardSQL, replica));
+        }
+        DBShard.Scatter(new DBShard.ShardTask<Boolean>() {
+            public Boolean run(int shard) {
+                return cursors.get(shard).run(shard);
+            }
+        });
+
+        /* merge */
+        PriorityQueue<ShardStream<T>> queue = new PriorityQueue<ShardStream<T>>(Math.max(shardCount,1),
+            new Comparator<ShardStream<T>>() {
+                public int compare(ShardStream<T> c1, ShardStream<T> c2) {
+                    int c = (orderBy != null)? DBRecord._compareFields(c1.rcd, c2.rcd, orderBy, ascending) : 0;
+                    return (c != 0)? c : (c1.shard - c2.shard);
+                }
+            });
+        java.util.List<T> rcdList = new Vector<T>();
+        long rcdCnt = 0L;
+        try {
+            for (ShardStream<T> cursor : cursors) {
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+            long skip = offset;
+            while (!queue.isEmpty() && ((limit <= 0L) || (rcdCnt < (limit + offset)))) {
+                ShardStream<T> cursor = queue.poll();
+                T rcd = cursor.rcd;
+                rcdCnt++;
+                if (cursor.next()) {
+                    queue.add(cursor);
+                } else {
+                    cursor.close();
+                }
+                if (skip > 0L) {
+                    skip--;
+                } else
+                if (rcdHandler != null) {
+                    int rcdStatus = rcdHandler.handleDBRecord(rcd);
+                    if (rcdStatus == DBRecordHandler.DBRH_STOP) {
+                        break;
+                    } else
+                    if (rcdStatus == DBRecordHandler.DBRH_SAVE) {
+                        rcdList.add(rcd);
+                    }
+                } else {
+                    rcdList.add(rcd);
+                }
+            }
+            DBQueryStats.RecordRows(sql, rcdCnt);
+        } catch (SQLException sqe) {
+            throw new DBException("Record Selection (Record #"+rcdCnt+")", sqe);
+        } catch (java.lang.OutOfMemoryError oome) {
+            throw new DBException("Out Of Memory (Record #"+rcdCnt+")", oome);
+        } catch (DBException dbe) {
+            throw dbe;
+        } catch (Throwable th) {
+            throw new DBException("Unexpected error (Record #"+rcdCnt+")", th);
+        } finally {
+            for (ShardStream<T> cursor : cursors) {
+                cursor.close();
+            }
+        }
+
+        /* convert to array */
+        try {
+            return ListTools.toArray(rcdList, fact.getRecordClass());
+        } catch (Throwable t) { // MethodNotFoundException, ...
+            // Implementation error (should never occur)
+            throw new DBException("Array conversion", t);
+        }
+
+    }
+
+    /**
+    *** Gets an array of DBRecords based on the specified DBSelect, from the current connection
+    **/
+    @SuppressWarnings("rawtypes") // same record bound as DBFactory
+    private static <T extends DBRecord> T[] _select(DBSelect<T> dsel, 
+        DBRecordHandler<T> rcdHandler)
+        throws DBException
+    {
 
         /* get result set */
         long       rcdCnt = 0L;
@@ -672,8 +1051,9 @@ public abstract class DBRecord<gDBR extends DBRecord>
         DBFactory<T> fact = dsel.getFactory();
 
         try {
-            dbc  = DBConnection.getDefaultConnection();
-            stmt = dbc.execute(dsel.toString());
+            dbc  = DBConnection.getReadConnection(); // read-replica, if in scope
+            String sql = dsel.toString();
+            stmt = dbc.execute(sql);
             rs   = stmt.getResultSet();
             /* extract records from result set */
             while (rs.next()) {
@@ -697,6 +1077,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
                     }
                 }
             }
+            DBQueryStats.RecordRows(sql, rcdCnt);
         } catch (SQLException sqe) {
             //this.setLastCaughtSQLException(sqe); // select(...)
             throw new DBException("Record Selection (Record #"+rcdCnt+")", sqe);
@@ -934,7 +1315,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
             }
             String wh = recKey.getWhereClause(DBWhere.KEY_FULL);
             dsel.setWhere(wh);
-            dbc  = DBConnection.getDefaultConnection();
+            dbc  = DBShard.GetDBConnection(recKey.getFactory().getShardIndex(recKey));
             stmt = dbc.execute(dsel.toString());
             rs   = stmt.getResultSet();
             if (rs.next()) {
@@ -0,0 +1,523 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.util.*;
+import java.net.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBRecordCache</code> is a bounded, read-through cache of table records, keyed
+*** by the full primary key.<br>
+*** Records are loaded with a single "SELECT" (missing records are cached as well), and
+*** each caller receives its own copy of the cached record, which may be modified/saved
+*** without affecting the cached snapshot.  Cached records are discarded when the record
+*** is inserted/updated/deleted through the owning <code>DBFactory</code>, when the
+*** cache timeout expires, or when an invalidation is received from another JVM (see
+*** "db.cache.invalidate.port"/"db.cache.invalidate.peers").  Invalidations are received
+*** only on the configured "db.cache.invalidate.bindAddress", and only if signed with the
+*** shared "db.cache.invalidate.secret".<br>
+*** Tables opt in with <code>DBFactory.setRecordCacheable(true)</code>, and the cache is
+*** then enabled for the tables listed in the "db.cache.tables" property.
+**/
+
+@SuppressWarnings("rawtypes") // same record bound as DBFactory
+public class DBRecordCache<gDBR extends DBRecord>
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String INVALIDATE_PREFIX   = "DBCache:";
+    private static final String INVALIDATE_ALL      = "*";
+    private static final String INVALIDATE_MAC      = "HmacSHA256";
+    private static final long   INVALIDATE_MAX_AGE  = 60000L;   // ms, maximum clock skew/delay
+
+    private static Map<String,DBRecordCache<?>> cacheMap = new TreeMap<String,DBRecordCache<?>>();
+
+    /**
+    *** Returns true if the record cache is enabled for the specified table
+    *** @param utableName  The untranslated table name
+    *** @return True if the record cache is enabled for the table
+    **/
+    public static boolean IsCacheEnabled(String utableName)
+    {
+        if (RTConfig.getInt(RTKey.DB_CACHE_MAX_SIZE,0) <= 0) {
+            return false;
+        } else
+        if (RTConfig.getLong(RTKey.DB_CACHE_TIMEOUT,0L) <= 0L) {
+            return false;
+        } else {
+            String tables[] = RTConfig.getStringArray(RTKey.DB_CACHE_TABLES, null);
+            return ListTools.containsIgnoreCase(tables, utableName);
+        }
+    }
+
+    /**
+    *** Creates the record cache for the specified table, using the configured
+    *** cache size/timeout
+    *** @param factory  The table DBFactory
+    *** @return The record cache
+    **/
+    @SuppressWarnings("rawtypes")
+    public static <T extends DBRecord> DBRecordCache<T> CreateCache(DBFactory<T> factory)
+    {
+        int  maxSize   = RTConfig.getInt( RTKey.DB_CACHE_MAX_SIZE, 1000);
+        long timeoutMS = RTConfig.getLong(RTKey.DB_CACHE_TIMEOUT ,   60L) * 1000L;
+        DBRecordCache<T> cache = new DBRecordCache<T>(factory, maxSize, timeoutMS);
+        synchronized (cacheMap) {
+            cacheMap.put(factory.getUntranslatedTableName(), cache);
+        }
+        DBRecordCache._startInvalidationListener();
+        return cache;
+    }
+
+    /**
+    *** Gets the statistics for all created record caches
+    *** @return The record cache statistics (one table per line)
+    **/
+    public static String GetStatistics()
+    {
+        StringBuffer sb = new StringBuffer();
+        synchronized (cacheMap) {
+            for (DBRecordCache<?> cache : cacheMap.values()) {
+                sb.append(cache.toString()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+    *** Gets the record cache for the specified table
+    **/
+    private static DBRecordCache<?> _getCache(String utableName)
+    {
+        synchronized (cacheMap) {
+            return cacheMap.get(utableName);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Cross-JVM invalidation
+    // Invalidations are sent as "DBCache:<timeMS>:<signature>\n<table>\n<key>" UDP datagrams
+    // to each configured peer, and received on the configured local address/port.  The
+    // signature is the hex HMAC-SHA256 of "<timeMS>\n<table>\n<key>" with the shared secret.
+    // Datagrams with an invalid signature, or older than INVALIDATE_MAX_AGE, are ignored
+    // (a replayed datagram within that window only discards a cached record again).
+
+    private static boolean          invListenerInit = false;
+    private static DatagramSocket   invSendSocket   = null;
+    private static InetSocketAddress invPeers[]     = null;
+    private static byte             invSecret[]     = null;
+
+    /**
+    *** Gets the signature of the specified invalidation message
+    **/
+    private static String _signInvalidation(byte secret[], String timeMS, String body)
+    {
+        try {
+            Mac mac = Mac.getInstance(INVALIDATE_MAC);
+            mac.init(new SecretKeySpec(secret, INVALIDATE_MAC));
+            return StringTools.toHexString(mac.doFinal(StringTools.getBytes(timeMS + "\n" + body)));
+        } catch (Throwable th) { // NoSuchAlgorithmException, InvalidKeyException
+            Print.logError("Unable to sign record cache invalidation: " + th);
+            return null;
+        }
+    }
+
+    /**
+    *** Starts the invalidation listener thread (if a local port is configured)
+    **/
+    private static synchronized void _startInvalidationListener()
+    {
+        if (invListenerInit) {
+            return;
+        }
+        invListenerInit = true;
+
+        /* shared secret (required to send or receive invalidations) */
+        String secret = RTConfig.getString(RTKey.DB_CACHE_INVALIDATE_SECRET, "");
+        boolean hasPeers = !ListTools.isEmpty(RTConfig.getStringArray(RTKey.DB_CACHE_INVALIDATE_PEERS, null));
+        boolean hasPort  = (RTConfig.getInt(RTKey.DB_CACHE_INVALIDATE_PORT, 0) > 0);
+        if (StringTools.isBlank(secret)) {
+            if (hasPeers || hasPort) {
+                Print.logError("Record cache invalidation disabled: '" + RTKey.DB_CACHE_INVALIDATE_SECRET + "' not specified");
+            }
+            return;
+        }
+        invSecret = StringTools.getBytes(secret);
+
+        /* peers */
+        String peers[] = RTConfig.getStringArray(RTKey.DB_CACHE_INVALIDATE_PEERS, null);
+        if (!ListTools.isEmpty(peers)) {
+            java.util.List<InetSocketAddress> peerList = new Vector<InetSocketAddress>();
+            for (String peer : peers) {
+                int p = peer.lastIndexOf(':');
+                int port = (p > 0)? StringTools.parseInt(peer.substring(p + 1), 0) : 0;
+                if (port > 0) {
+                    peerList.add(new InetSocketAddress(peer.substring(0, p).trim(), port));
+                } else {
+                    Print.logWarn("Invalid record cache invalidation peer: " + peer);
+                }
+            }
+            if (!peerList.isEmpty()) {
+                try {
+                    invSendSocket = new DatagramSocket();
+                    invPeers = peerList.toArray(new InetSocketAddress[peerList.size()]);
+                } catch (SocketException se) {
+                    Print.logError("Unable to create record cache invalidation socket: " + se);
+                }
+            }
+        }
+
+        /* listener */
+        int port = RTConfig.getInt(RTKey.DB_CACHE_INVALIDATE_PORT, 0);
+        if (port > 0) {
+            String bindAddr = RTConfig.getString(RTKey.DB_CACHE_INVALIDATE_BIND, "127.0.0.1");
+            final DatagramSocket rcvSocket;
+            try {
+                rcvSocket = new DatagramSocket(new InetSocketAddress(bindAddr, port));
+            } catch (SocketException se) {
+                Print.logError("Unable to listen for record cache invalidations on " + bindAddr + ":" + port + ": " + se);
+                return;
+            }
+            Thread invThread = new Thread(new Runnable() {
+                public void run() {
+                    byte buf[] = new byte[1024];
+                    for (;;) {
+                        try {
+                            DatagramPacket pkt = new DatagramPacket(buf, buf.length);
+                            rcvSocket.receive(pkt);
+                            String msg = StringTools.toStringValue(pkt.getData(), 0, pkt.getLength());
+                            DBRecordCache._receiveInvalidation(msg);
+                        } catch (Throwable th) {
+                            Print.logError("Record cache invalidation listener error: " + th);
+                        }
+                    }
+                }
+            }, "DBRecordCacheInvalidation");
+            invThread.setDaemon(true);
+            invThread.start();
+            Print.logInfo("Listening for record cache invalidations on " + bindAddr + ":" + port);
+        }
+
+    }
+
+    /**
+    *** Sends the invalidation of the specified table key to all configured peers
+    **/
+    private static void _sendInvalidation(String utableName, String keyStr)
+    {
+        DatagramSocket sock  = invSendSocket;
+        InetSocketAddress peers[] = invPeers;
+        if ((sock == null) || (peers == null)) {
+            return;
+        }
+        String inv = DBRecordCache._encodeInvalidation(invSecret, System.currentTimeMillis(), utableName + "\n" + keyStr);
+        if (inv == null) {
+            return;
+        }
+        byte msg[] = StringTools.getBytes(inv);
+        for (InetSocketAddress peer : peers) {
+            try {
+                sock.send(new DatagramPacket(msg, msg.length, peer));
+            } catch (Throwable th) {
+                Print.logWarn("Unable to send record cache invalidation to " + peer + ": " + th);
+            }
+        }
+    }
+
+    /**
+    *** Handles an invalidation received from another JVM
+    **/
+    private static void _receiveInvalidation(String msg)
+    {
+        String body = DBRecordCache._decodeInvalidation(invSecret, msg, System.currentTimeMillis());
+        int p = (body != null)? body.indexOf('\n') : -1;
+        if (p < 0) {
+            return;
+        }
+        String utableName = body.substring(0, p);
+        String keyStr     = body.substring(p + 1);
+        DBRecordCache<?> cache = DBRecordCache._getCache(utableName);
+        if (cache != null) {
+            if (keyStr.equals(INVALIDATE_ALL)) {
+                cache._invalidateAll(false);
+            } else {
+                cache._invalidate(keyStr, false);
+            }
+        }
+    }
+
+    /**
+    *** Encodes/signs the specified invalidation body ("<table>\n<key>")
+    *** @return The invalidation message, or null if it could not be signed
+    **/
+    static String _encodeInvalidation(byte secret[], long timeMS, String body)
+    {
+        String ts  = String.valueOf(timeMS);
+        String sig = DBRecordCache._signInvalidation(secret, ts, body);
+        return (sig != null)? (INVALIDATE_PREFIX + ts + ":" + sig + "\n" + body) : null;
+    }
+
+    /**
+    *** Validates the specified invalidation message and returns its body ("<table>\n<key>")
+    *** @return The invalidation body, or null if the message is malformed, has an invalid
+    ***         signature, or is older/newer than INVALIDATE_MAX_AGE
+    **/
+    static String _decodeInvalidation(byte secret[], String msg, long nowMS)
+    {
+        if ((secret == null) || (msg == null) || !msg.startsWith(INVALIDATE_PREFIX)) {
+            return null;
+        }
+        int h = msg.indexOf('\n');
+        int c = (h > 0)? msg.lastIndexOf(':', h) : -1;
+        if (c < INVALIDATE_PREFIX.length()) {
+            return null;
+        }
+        String ts     = msg.substring(INVALIDATE_PREFIX.length(), c);
+        String body   = msg.substring(h + 1);
+        String expect = DBRecordCache._signInvalidation(secret, ts, body);
+        byte   sig[]  = StringTools.getBytes(msg.substring(c + 1, h));
+        if ((expect == null) || !java.security.MessageDigest.isEqual(StringTools.getBytes(expect), sig)) {
+            Print.logWarn("Ignoring record cache invalidation with an invalid signature");
+            return null;
+        }
+        long age = nowMS - StringTools.parseLong(ts, 0L);
+        if (Math.abs(age) > INVALIDATE_MAX_AGE) {
+            Print.logWarn("Ignoring expired record cache invalidation [age " + age + " ms]");
+            return null;
+        }
+        return body;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Cached record (null record if the key does not exist)
+    **/
+    private static class CacheEntry<T>
+    {
+        public T    record     = null;
+        public long loadTimeMS = 0L;
+        public CacheEntry(T record, long loadTimeMS) {
+            this.record     = record;
+            this.loadTimeMS = loadTimeMS;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private DBFactory<gDBR>                     factory         = null;
+    private int                                 maxSize         = 1000;
+    private long                                timeoutMS       = 60000L;
+    private Map<String,CacheEntry<gDBR>>        cache           = null;
+    private long                                generation      = 0L;
+
+    private long                                hitCount        = 0L;
+    private long                                missCount       = 0L;
+    private long                                invalidateCount = 0L;
+
+    /**
+    *** Constructor
+    *** @param factory    The table DBFactory
+    *** @param maxSize    The maximum number of cached records
+    *** @param timeoutMS  The cached record timeout (milliseconds)
+    **/
+    public DBRecordCache(DBFactory<gDBR> factory, int maxSize, long timeoutMS)
+    {
+        this.factory   = factory;
+        this.maxSize   = Math.max(maxSize, 1);
+        this.timeoutMS = timeoutMS;
+        this.cache     = new LinkedHashMap<String,CacheEntry<gDBR>>(64, 0.75F, true) {
+            protected boolean removeEldestEntry(Map.Entry<String,CacheEntry<gDBR>> eldest) {
+                return (this.size() > DBRecordCache.this.maxSize);
+            }
+        };
+        final String utableName = factory.getUntranslatedTableName();
+        Metrics.RegisterGauge("db.cache." + utableName + ".hitPct", new Metrics.Gauge() {
+            public long getValue() { return Math.round(DBRecordCache.this.getHitRatio() * 100.0); }
+        });
+        Metrics.RegisterGauge("db.cache." + utableName + ".size", new Metrics.Gauge() {
+            public long getValue() { return DBRecordCache.this.getSize(); }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets a copy of the record for the specified key, loading the record if it is
+    *** not cached
+    *** @param key  The full record key
+    *** @return A copy of the record, or null if the record does not exist
+    *** @throws DBException If a database error occurs
+    **/
+    public gDBR getRecord(DBRecordKey<gDBR> key)
+        throws DBException
+    {
+        String keyStr = key.toString();
+
+        /* cached? */
+        long gen;
+        synchronized (this.cache) {
+            CacheEntry<gDBR> ce = this.cache.get(keyStr);
+            if ((ce != null) && ((System.currentTimeMillis() - ce.loadTimeMS) <= this.timeoutMS)) {
+                this.hitCount++;
+                return (ce.record != null)? this._copyRecord(ce.record) : null;
+            }
+            this.missCount++;
+            gen = this.generation;
+        }
+
+        /* load */
+        // DBSelect: SELECT * FROM <table> WHERE <fullKey>
+        long loadTimeMS = System.currentTimeMillis();
+        DBSelect<gDBR> dsel = new DBSelect<gDBR>(this.factory);
+        dsel.setWhere(key.getWhereClause(DBWhere.KEY_FULL));
+        gDBR rcds[] = DBRecord.select(dsel);
+        gDBR rcd = !ListTools.isEmpty(rcds)? rcds[0] : null;
+        if (rcd != null) {
+            rcd.clearChanged();
+        }
+
+        /* save (unless invalidated while loading) */
+        synchronized (this.cache) {
+            if (this.generation == gen) {
+                this.cache.put(keyStr, new CacheEntry<gDBR>(rcd, loadTimeMS));
+            }
+        }
+        return (rcd != null)? this._copyRecord(rcd) : null;
+
+    }
+
+    /**
+    *** Returns a copy of the specified cached record
+    **/
+    private gDBR _copyRecord(gDBR rcd)
+        throws DBException
+    {
+        return this.factory.copyRecord(rcd);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Discards the cached record for the specified key, and notifies peers
+    *** @param key  The record key (all records are discarded if this is a partial key)
+    **/
+    public void invalidate(DBRecordKey<gDBR> key)
+    {
+        if (key == null) {
+            this.invalidateAll();
+            return;
+        }
+        DBFieldValues fv = key.getFieldValues();
+        DBField kf[] = key.getKeyFields();
+        for (int i = 0; i < kf.length; i++) {
+            if (!fv.hasFieldValue(kf[i].getName())) {
+                this.invalidateAll();
+                return;
+            }
+        }
+        this._invalidate(key.toString(), true);
+    }
+
+    /**
+    *** Discards all cached records, and notifies peers
+    **/
+    public void invalidateAll()
+    {
+        this._invalidateAll(true);
+    }
+
+    private void _invalidate(String keyStr, boolean notifyPeers)
+    {
+        synchronized (this.cache) {
+            this.cache.remove(keyStr);
+            this.generation++;
+            this.invalidateCount++;
+        }
+        if (notifyPeers) {
+            DBRecordCache._sendInvalidation(this.factory.getUntranslatedTableName(), keyStr);
+        }
+    }
+
+    private void _invalidateAll(boolean notifyPeers)
+    {
+        synchronized (this.cache) {
+            this.cache.clear();
+            this.generation++;
+            this.invalidateCount++;
+        }
+        if (notifyPeers) {
+            DBRecordCache._sendInvalidation(this.factory.getUntranslatedTableName(), INVALIDATE_ALL);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of cached records
+    *** @return The number of cached records
+    **/
+    public int getSize()
+    {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    /**
+    *** Gets the ratio of cache hits to lookups
+    *** @return The hit ratio (0.0 to 1.0)
+    **/
+    public double getHitRatio()
+    {
+        synchronized (this.cache) {
+            long total = this.hitCount + this.missCount;
+            return (total > 0L)? ((double)this.hitCount / (double)total) : 0.0;
+        }
+    }
+
+    /**
+    *** Returns a String representation of this record cache
+    *** @return A String representation
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        synchronized (this.cache) {
+            sb.append(this.factory.getUntranslatedTableName()).append(": ");
+            sb.append("size=").append(this.cache.size()).append("/").append(this.maxSize);
+            sb.append(" hits=").append(this.hitCount);
+            sb.append(" misses=").append(this.missCount);
+            sb.append(" invalidations=").append(this.invalidateCount);
+        }
+        sb.append(" hitRatio=").append(StringTools.format(this.getHitRatio() * 100.0,"0.0")).append("%");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,46 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBRecordDeleteListener</code> callback listener for DBRecord update/insert/delete.<br>
+*** A <code>DBRecordListener</code> set on a DBFactory which also implements this interface
+*** is notified when records are deleted.
+**/
+
+@SuppressWarnings("rawtypes") // same bound as DBRecordListener
+public interface DBRecordDeleteListener<gDBR extends DBRecord>
+    extends DBRecordListener<gDBR>
+{
+
+    /**
+    *** Callback after record(s) matching the specified key have been deleted from the table
+    *** @param key  The key of the deleted record(s)
+    **/
+    public void recordDidDelete(DBRecordKey<gDBR> key);
+
+}
@@ -46,6 +46,8 @@
 //     -Added 'soapXML' argument to various methods.
 //  2009/11/01  Martin D. Flynn
 //     -Added support for 'autoIndex' field
+//  2026/10/19
+//     -"_exists"/"_delete" are sent to the owning shard for sharded tables (see "DBShard")
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -411,8 +413,25 @@ public abstract class DBRecordKey<gDBR extends DBRecord>
         Statement    stmt   = null;
         ResultSet    rs     = null;
         boolean      exists = false;
+        DBFactory<gDBR> fact = this.getFactory();
+        if (fact.isSharded() && (fact.getShardIndex(this) < 0)) {
+            // owning shard is not determined by this (partial) key, check all shards
+            final DBRecordKey<gDBR> key = this;
+            final String altIndex = altIndexName;
+            final int    keyType  = whereKeyType;
+            java.util.List<Boolean> found = DBShard.ScatterGather(new DBShard.ShardTask<Boolean>() {
+                public Boolean run(int shard) throws DBException {
+                    try {
+                        return new Boolean(key._exists(altIndex, keyType));
+                    } catch (SQLException sqe) {
+                        throw new DBException("Shard #" + shard + " record exists", sqe);
+                    }
+                }
+            });
+            return found.contains(Boolean.TRUE);
+        }
         try {
-            dbc    = DBConnection.getDefaultConnection();
+            dbc    = DBShard.GetDBConnection(fact.getShardIndex(this));
             stmt   = dbc.execute(dsel.toString()); // may throw DBException
             rs     = stmt.getResultSet();
             exists = rs.next();
@@ -559,13 +578,19 @@ public abstract class DBRecordKey<gDBR extends DBRecord>
         DBDelete ddel = new DBDelete(this.getFactory());
         ddel.setWhere(this._getWhereClause(altIndexName, whereKeyType));
         //Print.logInfo("DBDelete: " + ddel);
-        DBConnection dbc = null;
-        try {
-            dbc = DBConnection.getDefaultConnection();
-            dbc.executeUpdate(ddel.toString());
-        } finally {
-            DBConnection.release(dbc);
+        DBFactory<gDBR> fact = this.getFactory();
+        int shard = fact.getShardIndex(this);
+        if (fact.isSharded() && (shard < 0)) {
+            // owning shard is not determined by this (partial) key, delete from all shards
+            DBShard.ExecuteUpdateAll(ddel.toString());
+        } else {
+            DBShard.ExecuteUpdate(shard, ddel.toString());
+            int mirror = fact.getMirrorShardIndex(this);
+            if (mirror >= 0) {
+                DBShard.ExecuteUpdate(mirror, ddel.toString());
+            }
         }
+        fact.recordDidDelete(this);
     }
     
     protected void _deleteDependencies()
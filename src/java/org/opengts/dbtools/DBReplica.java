@@ -0,0 +1,358 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBReplica</code> represents a read-replica database server, specified by the
+*** JDBC URIs in "db.sql.replica.urls" (replicas of the primary database), or in
+*** "db.shard.replica.urls.&lt;N&gt;" (replicas of EventData shard #N).<br>
+*** Read-only selects within a <code>DBConnection.pushReadReplica()</code> scope are sent
+*** to the available replica with the fewest outstanding requests.  Each replica is
+*** checked periodically by a background thread, and is not used while it is unreachable,
+*** or while its replication lag exceeds "db.sql.replica.maxLagSec".
+**/
+
+public class DBReplica
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final long       DFT_CHECK_INTERVAL_SEC  = 30L;
+
+    private static final DBReplica  EMPTY_ARRAY[]           = new DBReplica[0];
+
+    // ------------------------------------------------------------------------
+
+    // replicas by shard index (DBShard.PRIMARY for the replicas of the primary database)
+    private static final Map<Integer,DBReplica[]> replicaLists = new HashMap<Integer,DBReplica[]>();
+    private static Thread           healthChecker           = null;
+    private static AtomicInteger    nextReplica             = new AtomicInteger(0);
+
+    /**
+    *** Returns the configured read-replicas of the primary database
+    *** @return The configured replicas (does not return null)
+    **/
+    public static DBReplica[] GetReplicas()
+    {
+        return DBReplica.GetReplicas(DBShard.PRIMARY);
+    }
+
+    /**
+    *** Returns the configured read-replicas of the specified shard (starts the health-check
+    *** thread on the first call which finds a configured replica)
+    *** @param shard  The shard index (DBShard.PRIMARY for the primary database)
+    *** @return The configured replicas (does not return null)
+    **/
+    public static DBReplica[] GetReplicas(int shard)
+    {
+        Integer key = new Integer((shard < 0)? DBShard.PRIMARY : shard);
+        synchronized (DBReplica.replicaLists) {
+            DBReplica list[] = DBReplica.replicaLists.get(key);
+            if (list == null) {
+                java.util.List<DBReplica> rl = new Vector<DBReplica>();
+                String uris[] = (key.intValue() < 0)?
+                    DBProvider.getDBReplicaUris() :
+                    RTConfig.getStringArray(RTKey.DB_SHARD_REPLICA_URLS_ + key, null);
+                if (uris != null) {
+                    for (String uri : uris) {
+                        if (!StringTools.isBlank(uri)) {
+                            rl.add(new DBReplica(uri.trim()));
+                        }
+                    }
+                }
+                if (rl.isEmpty()) {
+                    list = EMPTY_ARRAY;
+                } else {
+                    list = rl.toArray(new DBReplica[rl.size()]);
+                    Print.logInfo("Read-replicas configured" + ((key.intValue() < 0)? "" : (" for shard #" + key)) + ": " + list.length);
+                    DBReplica._startHealthChecker();
+                }
+                DBReplica.replicaLists.put(key, list);
+            }
+            return list;
+        }
+    }
+
+    /**
+    *** Returns all configured read-replicas (of the primary database, and of all shards
+    *** which have been accessed)
+    **/
+    private static java.util.List<DBReplica> _getAllReplicas()
+    {
+        java.util.List<DBReplica> all = new Vector<DBReplica>();
+        synchronized (DBReplica.replicaLists) {
+            for (DBReplica list[] : DBReplica.replicaLists.values()) {
+                all.addAll(Arrays.asList(list));
+            }
+        }
+        return all;
+    }
+
+    /**
+    *** Returns the available replica of the primary database with the fewest outstanding
+    *** requests
+    *** @return The chosen replica, or null if no replica is currently available
+    **/
+    public static DBReplica ChooseReplica()
+    {
+        return DBReplica.ChooseReplica(DBShard.PRIMARY);
+    }
+
+    /**
+    *** Returns the available replica of the specified shard with the fewest outstanding
+    *** requests
+    *** @param shard  The shard index (DBShard.PRIMARY for the primary database)
+    *** @return The chosen replica, or null if no replica is currently available
+    **/
+    public static DBReplica ChooseReplica(int shard)
+    {
+        DBReplica list[] = DBReplica.GetReplicas(shard);
+        if (list.length == 0) {
+            return null;
+        }
+        // start at a rotating offset, so that ties are distributed across replicas
+        int start = (nextReplica.getAndIncrement() & 0x7FFFFFFF) % list.length;
+        DBReplica best = null;
+        for (int i = 0; i < list.length; i++) {
+            DBReplica r = list[(start + i) % list.length];
+            if (r.isAvailable() && ((best == null) || (r.getOutstanding() < best.getOutstanding()))) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    /**
+    *** Starts the replica health-check thread
+    **/
+    private static synchronized void _startHealthChecker()
+    {
+        if (healthChecker != null) {
+            return;
+        }
+        healthChecker = new Thread(new Runnable() {
+            public void run() {
+                for (;;) {
+                    for (DBReplica r : DBReplica._getAllReplicas()) {
+                        r.checkHealth();
+                    }
+                    long intervalMS = RTConfig.getLong(RTKey.DB_REPLICA_CHECK_INTERVAL, DFT_CHECK_INTERVAL_SEC) * 1000L;
+                    try { Thread.sleep(Math.max(intervalMS,1000L)); } catch (InterruptedException ie) { break; }
+                }
+            }
+        }, "DBReplicaHealthCheck");
+        healthChecker.setDaemon(true);
+        healthChecker.start();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private String          uri             = null;
+    private AtomicInteger   outstanding     = new AtomicInteger(0);
+    private volatile boolean healthy        = false; // unavailable until first checked
+    private volatile long   lagSec          = -1L;
+    private volatile long   lastCheckTime   = 0L;
+
+    /**
+    *** Constructor
+    *** @param uri  The replica JDBC URI
+    **/
+    private DBReplica(String uri)
+    {
+        this.uri = uri;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the replica JDBC URI
+    *** @return The replica JDBC URI
+    **/
+    public String getUri()
+    {
+        return this.uri;
+    }
+
+    /**
+    *** Gets a DBConnection to this replica (using the primary user/password)
+    *** @return The DBConnection
+    **/
+    protected DBConnection getDBConnection()
+    {
+        String usr = DBProvider.getDBUsername();
+        String pwd = DBProvider.getDBPassword();
+        return DBConnection.getDBConnection(this.getUri(), usr, pwd);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of requests currently outstanding on this replica
+    *** @return The number of outstanding requests
+    **/
+    public int getOutstanding()
+    {
+        return this.outstanding.get();
+    }
+
+    protected void incrementOutstanding()
+    {
+        this.outstanding.incrementAndGet();
+    }
+
+    protected void decrementOutstanding()
+    {
+        this.outstanding.decrementAndGet();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if this replica is reachable, and within the maximum replication lag
+    *** @return True if this replica is available for reads
+    **/
+    public boolean isAvailable()
+    {
+        return this.healthy;
+    }
+
+    /**
+    *** Gets the replication lag, as of the last health check
+    *** @return The replication lag in seconds, or -1 if unknown
+    **/
+    public long getLagSeconds()
+    {
+        return this.lagSec;
+    }
+
+    /**
+    *** Marks this replica as unavailable until the next successful health check
+    *** @param reason  The failure reason
+    **/
+    public void markFailed(String reason)
+    {
+        if (this.healthy) {
+            this.healthy = false;
+            Print.logWarn("Read-replica unavailable: " + this.getUri() + " [" + reason + "]");
+        }
+    }
+
+    /**
+    *** Checks that the replica is reachable, and that its replication lag is within
+    *** the maximum specified by "db.sql.replica.maxLagSec"
+    **/
+    public void checkHealth()
+    {
+        long    maxLag  = RTConfig.getLong(RTKey.DB_REPLICA_MAX_LAG, 0L);
+        int     dbid    = DBProvider.getProvider().getID();
+        boolean checkLag = false;
+        String  sql     = null;
+        if ((maxLag > 0L) && (dbid == DBProvider.DB_MYSQL)) {
+            sql = "SHOW SLAVE STATUS";
+            checkLag = true;
+        } else
+        if ((maxLag > 0L) && (dbid == DBProvider.DB_POSTGRESQL)) {
+            sql = "SELECT EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) AS Seconds_Behind_Master";
+            checkLag = true;
+        } else
+        if (dbid == DBProvider.DB_DERBY) {
+            sql = "VALUES 1"; // lag not available
+        } else {
+            sql = "SELECT 1"; // lag not available
+        }
+
+        /* query replica */
+        String       failure = null;
+        long         lag     = 0L;
+        DBConnection dbc     = null;
+        Statement    stmt    = null;
+        ResultSet    rs      = null;
+        try {
+            dbc  = this.getDBConnection();
+            stmt = dbc.execute(sql);
+            rs   = stmt.getResultSet();
+            if (!checkLag) {
+                // reachable, lag not checked
+            } else
+            if ((rs != null) && rs.next()) {
+                // "Seconds_Behind_Master" is NULL if replication is not running
+                String s = rs.getString("Seconds_Behind_Master");
+                lag = StringTools.isBlank(s)? -1L : Math.round(StringTools.parseDouble(s,-1.0));
+                if (lag < 0L) {
+                    failure = "replication not running";
+                } else
+                if (lag > maxLag) {
+                    failure = "replication lag " + lag + " sec";
+                }
+            } else {
+                // not configured as a replica (ie. primary, or copy)
+            }
+        } catch (SQLException sqe) {
+            failure = sqe.getMessage();
+            lag     = -1L;
+            if (dbc != null) { dbc.closeConnection(); }
+        } catch (DBException dbe) {
+            failure = dbe.getMessage();
+            lag     = -1L;
+        } finally {
+            DBConnection.release(dbc, stmt, rs);
+        }
+
+        /* update state */
+        this.lagSec        = lag;
+        this.lastCheckTime = DateTime.getCurrentTimeSec();
+        if (failure != null) {
+            this.markFailed(failure);
+        } else
+        if (!this.healthy) {
+            this.healthy = true;
+            Print.logInfo("Read-replica available: " + this.getUri() + (checkLag? (" [lag " + lag + " sec]") : ""));
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this replica
+    *** @return A String representation of this replica
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.getUri());
+        sb.append(" available=").append(this.isAvailable());
+        sb.append(" outstanding=").append(this.getOutstanding());
+        sb.append(" lag=").append(this.getLagSeconds());
+        sb.append(" checked=").append(this.lastCheckTime);
+        return sb.toString();
+    }
+
+}
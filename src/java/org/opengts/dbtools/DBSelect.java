@@ -32,6 +32,9 @@
 //     -PostgreSQL support added (by Gaurav Kohli)
 //  2012/10/16  Martin D. Flynn
 //     -Fixed "TOP X " specification for SQLServer (append blank char after 'X')
+//  2026/10/19
+//     -Added Derby "OFFSET/FETCH" support
+//     -Added shard index (see "setShardIndex")
 // ----------------------------------------------------------------------------
 package org.opengts.dbtools;
 
@@ -61,6 +64,7 @@ public class DBSelect<gDBR extends DBRecord>
     private boolean         ascending       = true; // default ascending
     private long            limit           = 0L;   // no limit
     private long            offset          = 0L;   // beginning of list
+    private int             shardIndex      = -1;   // all shards (if sharded)
 
     /**
     *** Constructor
@@ -114,6 +118,28 @@ public class DBSelect<gDBR extends DBRecord>
         return this.factory;
     }
     
+    // ------------------------------------------------------------------------
+    // Shard
+
+    /**
+    *** Sets the shard to which this select is sent (if the table is sharded).  If not
+    *** set, the select is sent to all shards (see "DBShard.ScatterGather").
+    *** @param shard  The shard index, or -1 for all shards
+    **/
+    public void setShardIndex(int shard)
+    {
+        this.shardIndex = shard;
+    }
+
+    /**
+    *** Gets the shard to which this select is sent (if the table is sharded)
+    *** @return The shard index, or -1 for all shards
+    **/
+    public int getShardIndex()
+    {
+        return this.shardIndex;
+    }
+
     // ------------------------------------------------------------------------
     // Selected fields
 
@@ -360,7 +386,6 @@ public class DBSelect<gDBR extends DBRecord>
     **/
     public boolean supportsLimit()
     {
-        // Derby does not support LIMIT
         return DBProvider.getProvider().supportsLimit();
     }
 
@@ -408,7 +433,6 @@ public class DBSelect<gDBR extends DBRecord>
     **/
     public boolean supportsOffset()
     {
-        // Derby does not support LIMIT/OFFSET
         return DBProvider.getProvider().supportsOffset();
     }
 
@@ -507,7 +531,7 @@ public class DBSelect<gDBR extends DBRecord>
             /* SELECT fields */
             // MySQL:      SELECT field,... FROM ... WHERE ... ORDER BY ... [DESC] LIMIT <limit> OFFSET <offset>
             // SQLServer:  SELECT [TOP <n>] field,... FROM ... WHERE ... ORDER BY ... [DESC]
-            // Derby:      SELECT field,... FROM ... WHERE ... ORDER BY ... 
+            // Derby:      SELECT field,... FROM ... WHERE ... ORDER BY ... [DESC] OFFSET <offset> ROWS FETCH NEXT <limit> ROWS ONLY
             // PostgreSQL: SELECT field,... FROM ... WHERE ... ORDER BY ... [DESC] LIMIT <limit> OFFSET <offset>
             sb.append("SELECT ");
 
@@ -585,7 +609,11 @@ public class DBSelect<gDBR extends DBRecord>
                     // (yes, it should be here instead, but it isn't.  Deal with it.)
                     break;
                 case DBProvider.DB_DERBY:
-                    // Derby doesn't support any form of 'LIMIT'
+                    // Derby 10.5+: OFFSET <offset> ROWS FETCH NEXT <limit> ROWS ONLY
+                    if (this.hasOffset()) {
+                        sb.append(" OFFSET ").append(this.getOffset()).append(" ROWS");
+                    }
+                    sb.append(" FETCH NEXT ").append(this.getLimit()).append(" ROWS ONLY");
                     break;
             }
         }
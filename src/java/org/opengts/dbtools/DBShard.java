@@ -0,0 +1,298 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBShard</code> manages the database shards specified by the JDBC URIs in
+*** "db.shard.urls".  Tables with a <code>DBShardRouter</code> (see
+*** <code>DBFactory.setShardRouter</code>) store their records in the shard selected by
+*** the router, all other tables remain in the primary database.<br>
+*** Operations which are not routed to a single shard (ie. selects without an owning
+*** key) are run on all shards in parallel with <code>ScatterGather</code>.
+**/
+
+public class DBShard
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final int        PRIMARY                 = -1;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the configured shard URIs
+    *** @return The shard URIs (does not return null)
+    **/
+    public static String[] GetShardUris()
+    {
+        String uris[] = RTConfig.getStringArray(RTKey.DB_SHARD_URLS, null);
+        if (ListTools.isEmpty(uris)) {
+            return new String[0];
+        } else
+        if (StringTools.isBlank(uris[0])) {
+            return new String[0];
+        } else {
+            return uris;
+        }
+    }
+
+    /**
+    *** Returns the number of configured shards
+    *** @return The number of shards (0 if sharding is disabled)
+    **/
+    public static int GetShardCount()
+    {
+        return DBShard.GetShardUris().length;
+    }
+
+    /**
+    *** Returns true if shards have been configured
+    *** @return True if sharding is enabled
+    **/
+    public static boolean IsEnabled()
+    {
+        return (DBShard.GetShardCount() > 0);
+    }
+
+    /**
+    *** Returns the shard index for the specified key hash String.<br>
+    *** The index is the key hash modulo the number of shards, so changing the number of
+    *** shards in "db.shard.urls" changes the hashed shard of most existing keys (their
+    *** existing events would no longer be found).  Before adding a shard, pin the current
+    *** shard of all existing Accounts with "EventShard -pinAll", and only new Accounts
+    *** will then be hashed over the new number of shards.
+    *** @param key  The String to hash (ie. the accountID)
+    *** @return The shard index, or PRIMARY if sharding is disabled
+    **/
+    public static int HashIndex(String key)
+    {
+        int count = DBShard.GetShardCount();
+        if (count <= 0) {
+            return PRIMARY;
+        } else {
+            // String.hashCode is specified, and is the same in all JVMs
+            int h = StringTools.trim(key).toLowerCase().hashCode();
+            return (h & 0x7FFFFFFF) % count;
+        }
+    }
+
+    /**
+    *** Gets a DBConnection to the specified shard
+    *** @param shard  The shard index (PRIMARY for the default connection)
+    *** @return The DBConnection
+    **/
+    public static DBConnection GetDBConnection(int shard)
+    {
+        String uris[] = DBShard.GetShardUris();
+        if (shard < 0) {
+            return DBConnection.getDefaultConnection();
+        } else
+        if (shard >= uris.length) {
+            Print.logError("Invalid shard index: " + shard + " (using primary database)");
+            return DBConnection.getPrimaryConnection();
+        } else {
+            String usr = DBProvider.getDBUsername();
+            String pwd = DBProvider.getDBPassword();
+            return DBConnection.getDBConnection(uris[shard].trim(), usr, pwd);
+        }
+    }
+
+    /**
+    *** Executes the specified SQL update statement on the specified shard
+    *** @param shard  The shard index (PRIMARY for the default connection)
+    *** @param sql    The SQL update statement
+    **/
+    public static void ExecuteUpdate(int shard, String sql)
+        throws SQLException, DBException
+    {
+        DBConnection dbc = null;
+        try {
+            dbc = DBShard.GetDBConnection(shard);
+            dbc.executeUpdate(sql);
+        } finally {
+            DBConnection.release(dbc);
+        }
+    }
+
+    /**
+    *** Executes the specified SQL update statement on all shards in parallel
+    *** @param sql    The SQL update statement
+    **/
+    public static void ExecuteUpdateAll(final String sql)
+        throws DBException
+    {
+        DBShard.ScatterGather(new ShardTask<Boolean>() {
+            public Boolean run(int shard) throws DBException {
+                try {
+                    DBShard.ExecuteUpdate(shard, sql);
+                    return Boolean.TRUE;
+                } catch (SQLException sqe) {
+                    throw new DBException("Shard #" + shard + " update", sqe);
+                }
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+    // Per-thread shard (all default connections on the thread use this shard)
+
+    private static ThreadLocal<Stack<Integer>> threadShard = new ThreadLocal<Stack<Integer>>();
+
+    /**
+    *** Sets the shard used by all "DBConnection.getDefaultConnection()" connections on
+    *** the current thread (ie. for table creation/validation, dumps, and account moves).
+    *** Must be matched by a call to "PopShard" (in a "finally" block).
+    *** @param shard  The shard index
+    **/
+    public static void PushShard(int shard)
+    {
+        Stack<Integer> s = threadShard.get();
+        if (s == null) {
+            s = new Stack<Integer>();
+            threadShard.set(s);
+        }
+        s.push(new Integer(shard));
+    }
+
+    /**
+    *** Restores the previous per-thread shard
+    **/
+    public static void PopShard()
+    {
+        Stack<Integer> s = threadShard.get();
+        if (s != null) {
+            if (!s.empty()) { s.pop(); }
+            if (s.empty()) { threadShard.remove(); }
+        }
+    }
+
+    /**
+    *** Returns the shard set for the current thread
+    *** @return The shard index, or PRIMARY if no shard has been set
+    **/
+    public static int GetThreadShard()
+    {
+        Stack<Integer> s = threadShard.get();
+        return ((s != null) && !s.empty())? s.peek().intValue() : PRIMARY;
+    }
+
+    // ------------------------------------------------------------------------
+    // Scatter/Gather
+
+    /**
+    *** Task run on each shard by <code>ScatterGather</code>
+    **/
+    public interface ShardTask<T>
+    {
+        public T run(int shard) throws DBException;
+    }
+
+    private static ExecutorService shardExecutor = null;
+
+    private static synchronized ExecutorService _getExecutor()
+    {
+        if (shardExecutor == null) {
+            shardExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private int threadNum = 0;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DBShard_" + (++threadNum));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return shardExecutor;
+    }
+
+    /**
+    *** Starts the specified task on all shards in parallel, and returns without waiting
+    *** for the tasks to complete.  The task is run with the per-thread shard set (see
+    *** "PushShard") to the shard index.
+    *** @param task  The task to run
+    *** @return The task Futures, in shard index order
+    **/
+    public static <T> java.util.List<Future<T>> Scatter(final ShardTask<T> task)
+    {
+        int count = DBShard.GetShardCount();
+        java.util.List<Future<T>> futures = new Vector<Future<T>>();
+        for (int i = 0; i < count; i++) {
+            final int shard = i;
+            futures.add(DBShard._getExecutor().submit(new Callable<T>() {
+                public T call() throws Exception {
+                    DBShard.PushShard(shard);
+                    try {
+                        return task.run(shard);
+                    } finally {
+                        DBShard.PopShard();
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+    *** Runs the specified task on all shards in parallel.  The task is run with the
+    *** per-thread shard set (see "PushShard") to the shard index.
+    *** @param task  The task to run
+    *** @return The task results, in shard index order
+    *** @throws DBException  If the task failed on any shard
+    **/
+    public static <T> java.util.List<T> ScatterGather(final ShardTask<T> task)
+        throws DBException
+    {
+        java.util.List<Future<T>> futures = DBShard.Scatter(task);
+        java.util.List<T> results = new Vector<T>();
+        DBException error = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (error == null) {
+                    error = (cause instanceof DBException)?
+                        (DBException)cause :
+                        new DBException("Shard #" + i + " task failed", cause);
+                }
+                results.add(null);
+            } catch (InterruptedException ie) {
+                if (error == null) {
+                    error = new DBException("Shard #" + i + " task interrupted", ie);
+                }
+                results.add(null);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,57 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBShardRouter</code> is the interface used by a sharded table (see
+*** <code>DBFactory.setShardRouter</code>) to map a record key to the index of the
+*** database shard (see <code>DBShard</code>) which owns the record.
+**/
+
+public interface DBShardRouter
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the index of the shard which owns the specified record key
+    *** @param key  The record key
+    *** @return The shard index, or -1 for the primary database
+    **/
+    public int getShardIndex(DBRecordKey<?> key);
+
+    /**
+    *** Returns the index of a second shard to which inserts/updates/deletes of the
+    *** specified record key are also written (ie. while the owner is being moved
+    *** between shards)
+    *** @param key  The record key
+    *** @return The mirror shard index, or -1 if writes are not mirrored
+    **/
+    public int getMirrorShardIndex(DBRecordKey<?> key);
+
+}
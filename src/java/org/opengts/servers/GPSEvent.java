@@ -123,6 +123,11 @@ public class GPSEvent
         if (StringTools.isBlank(acctID)) {
             return this.loadDevice(devID); // load ad ModemID
         } else {
+            String alias = DeviceEventOwner.TransportIDAlias(acctID, devID);
+            Device sessDev = DeviceEventOwner.getSessionDevice(alias);
+            if (sessDev != null) {
+                return sessDev;
+            }
             try {
                 Account account = Account.getAccount(acctID);
                 if (account == null) {
@@ -130,7 +135,7 @@ public class GPSEvent
                     return null;
                 } else {
                     Device dev = Transport.loadDeviceByTransportID(account, devID);
-                    return dev;
+                    return DeviceEventOwner.getOwnedDevice(dev, alias);
                 }
             } catch (DBException dbe) {
                 Print.logError("Error getting Device: " + acctID + "/" + devID + " [" + dbe + "]");
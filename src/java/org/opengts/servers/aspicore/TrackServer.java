@@ -53,6 +53,8 @@ public class TrackServer
             TrackServer.setUdpIdleTimeout(   dcs.getUdpIdleTimeoutMS(   Constants.TIMEOUT_UDP_IDLE   ));
             TrackServer.setUdpPacketTimeout( dcs.getUdpPacketTimeoutMS( Constants.TIMEOUT_UDP_PACKET ));
             TrackServer.setUdpSessionTimeout(dcs.getUdpSessionTimeoutMS(Constants.TIMEOUT_UDP_SESSION));
+            TrackServer.setPacketFramer(dcs.getPacketFramer(null));
+            TrackServer.setUdpLaneCount(dcs.getUdpLaneCount(0));
         }
     }
 
@@ -145,6 +147,34 @@ public class TrackServer
         return TrackServer.udpTimeout_session;
     }
 
+    // ------------------------------------------------------------------------
+    // Packet framing (see "packetFraming" in "dcservers.xml")
+
+    /* packet framer (null to use "TrackClientPacketHandler.getActualPacketLength") */
+    private static PacketFramer packetFramer = null;
+    public static void setPacketFramer(PacketFramer framer)
+    {
+        TrackServer.packetFramer = framer;
+    }
+    public static PacketFramer getPacketFramer()
+    {
+        return TrackServer.packetFramer;
+    }
+
+    // ------------------------------------------------------------------------
+    // UDP lanes (see "udpLaneCount" in "dcservers.xml")
+
+    /* number of ordered UDP worker lanes (0 to use the general session thread pool) */
+    private static int udpLaneCount = 0;
+    public static void setUdpLaneCount(int count)
+    {
+        TrackServer.udpLaneCount = count;
+    }
+    public static int getUdpLaneCount()
+    {
+        return TrackServer.udpLaneCount;
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -231,6 +261,7 @@ public class TrackServer
         sst.setSessionTimeout(TrackServer.tcpTimeout_session);   // time for entire session
         sst.setLingerTimeoutSec(Constants.LINGER_ON_CLOSE_SEC);
         sst.setTerminateOnTimeout(Constants.TERMINATE_ON_TIMEOUT);
+        sst.setPacketFramer(TrackServer.getPacketFramer());
         sst.setClientPacketHandlerClass(TrackClientPacketHandler.class);
 
         /* start thread */
@@ -269,6 +300,8 @@ public class TrackServer
         sst.setSessionTimeout(TrackServer.udpTimeout_session);
       //sst.setLingerTimeoutSec(Constants.LINGER_ON_CLOSE_SEC);
         sst.setTerminateOnTimeout(Constants.TERMINATE_ON_TIMEOUT);
+        sst.setDatagramLaneCount(TrackServer.getUdpLaneCount());
+        sst.setPacketFramer(TrackServer.getPacketFramer());
         sst.setClientPacketHandlerClass(TrackClientPacketHandler.class);
 
         /* start thread */
@@ -99,7 +99,11 @@ public class DMTPDBFactory
         try {
             if (account != null) {
                 // By Account/DeviceID
-                Device dev = Transport.loadDeviceByTransportID(account, devName);
+                String alias = DeviceEventOwner.TransportIDAlias(account.getAccountID(), devName);
+                Device dev = DeviceEventOwner.getSessionDevice(alias);
+                if (dev == null) {
+                    dev = DeviceEventOwner.getOwnedDevice(Transport.loadDeviceByTransportID(account, devName), alias);
+                }
                 if (dev != null) {
                     return new DeviceDBImpl(dev);
                 } else {
@@ -110,7 +114,11 @@ public class DMTPDBFactory
                 // By UniqueID
                 String prefixID = StringTools.blankDefault(acctDBImpl.getPrefixID(),DEFAULT_UNIQUE_PREFIX);
                 String uniqueID = prefixID + "_" + devName;
-                Device dev = Transport.loadDeviceByUniqueID(uniqueID);
+                String alias = DeviceEventOwner.UniqueIDAlias(uniqueID);
+                Device dev = DeviceEventOwner.getSessionDevice(alias);
+                if (dev == null) {
+                    dev = DeviceEventOwner.getOwnedDevice(Transport.loadDeviceByUniqueID(uniqueID), alias);
+                }
                 if (dev != null) {
                     acctDBImpl.setAccountName(dev.getAccountID());
                     return new DeviceDBImpl(dev);
@@ -133,7 +141,11 @@ public class DMTPDBFactory
     public DeviceDB getDeviceDB(byte uniqId[]) 
     {
         try {
-            Device dev = Transport.loadDeviceByUniqueID(uniqId);
+            String alias = DeviceEventOwner.UniqueIDAlias("0x" + StringTools.toHexString(uniqId));
+            Device dev = DeviceEventOwner.getSessionDevice(alias);
+            if (dev == null) {
+                dev = DeviceEventOwner.getOwnedDevice(Transport.loadDeviceByUniqueID(uniqId), alias);
+            }
             if (dev != null) {
                 return new DeviceDBImpl(dev);
             } else {
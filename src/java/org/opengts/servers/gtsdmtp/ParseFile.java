@@ -25,12 +25,22 @@
 //     -Moved to "OpenGTS"
 //  2007/07/27  Martin D. Flynn
 //     -Repackaged to "org.opengts.servers.gtsdmtp"
+//  2026/10/19
+//     -Added "-bulk" import mode (memory-mapped, parallel per-device, resumable)
 // ----------------------------------------------------------------------------
 package org.opengts.servers.gtsdmtp;
 
 import java.lang.*;
 import java.util.*;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opengts.util.*;
 import org.opengts.dbtools.*;
@@ -44,9 +54,11 @@ import org.opendmtp.codes.ServerErrors;
 import org.opendmtp.server.base.DMTPServer;
 import org.opendmtp.server.base.AccountID;
 import org.opendmtp.server.base.DeviceID;
+import org.opendmtp.server.base.UniqueID;
 import org.opendmtp.server.base.Packet;
 import org.opendmtp.server.base.PacketParseException;
 import org.opendmtp.server.base.Event;
+import org.opendmtp.server.db.DeviceDB;
 
 public class ParseFile
 {
@@ -56,6 +68,14 @@ public class ParseFile
     private static String ARG_ACCOUNT[] = new String[] { "account", "acct", "a" };
     private static String ARG_DEVICE[]  = new String[] { "device" , "dev" , "d" };
     private static String ARG_FILE[]    = new String[] { "file"   ,         "f" };
+    private static String ARG_BULK[]    = new String[] { "bulk"                   };
+    private static String ARG_THREADS[] = new String[] { "threads"                };
+    private static String ARG_BATCH[]   = new String[] { "batch"                  };
+    private static String ARG_RULES[]   = new String[] { "rules"                  };
+    private static String ARG_GEOZONE[] = new String[] { "geozones"               };
+    private static String ARG_RESUME[]  = new String[] { "resume"                 };
+    private static String ARG_CKPOINT[] = new String[] { "checkpoint"             };
+    private static String ARG_PROGRESS[]= new String[] { "progress"               };
 
     // ------------------------------------------------------------------------
 
@@ -67,9 +87,478 @@ public class ParseFile
         Print.logInfo("  -account=<id>   Acount ID which owns Device");
         Print.logInfo("  -device=<id>    Device ID to which parsed events will be inserted");
         Print.logInfo("  -file=<file>    The OpenDMTP event file to parse");
+        Print.logInfo("Bulk Import Options:");
+        Print.logInfo("  -bulk           Import in parallel by device (account/device optional if the");
+        Print.logInfo("                  file contains UniqueID/AccountID/DeviceID packets)");
+        Print.logInfo("  -threads=<n>    Number of import threads [default=#processors]");
+        Print.logInfo("  -batch=<n>      Maximum packets per device batch [default=" + DFT_BATCH_SIZE + "]");
+        Print.logInfo("  -rules=<bool>   Evaluate event rules [default=false]");
+        Print.logInfo("  -geozones=<bool> Simulate Geozone arrive/depart events [default=false]");
+        Print.logInfo("  -resume         Resume from the last saved checkpoint");
+        Print.logInfo("  -checkpoint=<file> The checkpoint file [default=<file>.offset]");
+        Print.logInfo("  -progress=<sec> Progress reporting interval [default=" + DFT_PROGRESS_SEC + "]");
         System.exit(1);
     }
 
+    // ------------------------------------------------------------------------
+    // Bulk import:
+    // The file is memory-mapped and scanned sequentially for packet boundaries.
+    // Event packets are grouped into per-device batches, which are decoded and
+    // inserted by a fixed set of import threads.  All batches for a device are
+    // handled by the same thread, so per-device event order is preserved.
+
+    private static final int    DFT_BATCH_SIZE      = 500;
+    private static final long   DFT_PROGRESS_SEC    = 10L;
+
+    private static final long   MAP_WINDOW_SIZE     = 64L * 1024L * 1024L;
+    private static final int    MAX_PACKET_SCAN     = 1024;
+    private static final long   POLL_MS             = 1000L;
+    private static final String CHECKPOINT_SUFFIX   = ".offset";
+
+    /* a sequence of packets for a single device */
+    private static class DeviceBatch
+    {
+        public DeviceID                 device   = null;
+        public String                   key      = null;
+        public long                     startOfs = 0L;
+        public java.util.List<byte[]>   packets  = new Vector<byte[]>();
+        public DeviceBatch(DeviceID device, long startOfs) {
+            this.device   = device;
+            this.key      = device.getAccountName() + "/" + device.getDeviceName();
+            this.startOfs = startOfs;
+        }
+    }
+
+    private static class BulkImport
+    {
+
+        private File                    evFile          = null;
+        private File                    ckFile          = null;
+        private long                    fileLen         = 0L;
+        private long                    resumeOfs       = 0L;
+        private int                     batchSize       = DFT_BATCH_SIZE;
+        private long                    progressMS      = DFT_PROGRESS_SEC * 1000L;
+
+        private ExecutorService         workers[]       = null;
+        private Semaphore               inFlight        = null;
+        private volatile boolean        aborted         = false;
+
+        private TreeSet<Long>           pending         = new TreeSet<Long>();
+        private long                    scanOfs         = 0L;
+
+        private Map<String,AccountID>   accountMap      = new HashMap<String,AccountID>();
+        private Map<String,DeviceID>    deviceMap       = new HashMap<String,DeviceID>();
+
+        private AtomicLong              packetCount     = new AtomicLong(0L);
+        private AtomicLong              eventCount      = new AtomicLong(0L);
+        private AtomicLong              skipCount       = new AtomicLong(0L);
+        private AtomicLong              errorCount      = new AtomicLong(0L);
+        private long                    noDeviceCount   = 0L;
+
+        private long                    startMS         = 0L;
+        private long                    lastProgressMS  = 0L;
+        private long                    lastCkOfs       = -1L;
+
+        public BulkImport(File evFile, File ckFile, int threads, int batchSize, long progressSec) {
+            this.evFile     = evFile;
+            this.ckFile     = ckFile;
+            this.batchSize  = (batchSize > 0)? batchSize : DFT_BATCH_SIZE;
+            this.progressMS = ((progressSec > 0L)? progressSec : DFT_PROGRESS_SEC) * 1000L;
+            int thCount     = (threads > 0)? threads : Runtime.getRuntime().availableProcessors();
+            this.workers    = new ExecutorService[thCount];
+            for (int i = 0; i < this.workers.length; i++) {
+                final String name = "ParseFile_" + (i + 1);
+                this.workers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            this.inFlight   = new Semaphore(thCount * 4);
+        }
+
+        // --------------------------------
+
+        /* load the last saved checkpoint */
+        public void resume() {
+            if ((this.ckFile != null) && this.ckFile.isFile()) {
+                String ck[] = StringTools.split(StringTools.toStringValue(FileTools.readFile(this.ckFile)).trim(), ' ');
+                this.resumeOfs = (ck.length >= 1)? StringTools.parseLong(ck[0], 0L) : 0L;
+                long ckLen = (ck.length >= 2)? StringTools.parseLong(ck[1], 0L) : 0L;
+                if ((ckLen > 0L) && (ckLen != this.evFile.length())) {
+                    Print.logWarn("File length has changed since the checkpoint was saved: " + this.evFile);
+                }
+                Print.logInfo("Resuming import at offset " + this.resumeOfs);
+            } else {
+                Print.logWarn("Checkpoint not found (starting at beginning of file): " + this.ckFile);
+            }
+        }
+
+        /* save the specified checkpoint offset */
+        private void _saveCheckpoint(long ofs)
+            throws IOException
+        {
+            File tmp = new File(this.ckFile.getPath() + ".tmp");
+            FileOutputStream fos = new FileOutputStream(tmp);
+            try {
+                fos.write(StringTools.getBytes(ofs + " " + this.fileLen + "\n"));
+                fos.getFD().sync();
+            } finally {
+                fos.close();
+            }
+            if (!tmp.renameTo(this.ckFile)) {
+                this.ckFile.delete();
+                if (!tmp.renameTo(this.ckFile)) {
+                    throw new IOException("Unable to save import checkpoint");
+                }
+            }
+        }
+
+        /* return the offset before which all packets have been imported */
+        private long _getCheckpoint() {
+            long ofs;
+            synchronized (this.pending) {
+                ofs = this.pending.isEmpty()? this.scanOfs : this.pending.first().longValue();
+            }
+            return Math.max(ofs, this.resumeOfs);
+        }
+
+        // --------------------------------
+
+        /* display progress, and save the checkpoint */
+        private void _progress(boolean force) {
+            long nowMS = System.currentTimeMillis();
+            if (!force && ((nowMS - this.lastProgressMS) < this.progressMS)) {
+                return;
+            }
+            this.lastProgressMS = nowMS;
+            long   ckOfs  = this._getCheckpoint();
+            long   elapSec = Math.max(1L, (nowMS - this.startMS) / 1000L);
+            double pct    = (this.fileLen > 0L)? ((double)ckOfs * 100.0 / (double)this.fileLen) : 100.0;
+            long   events = this.eventCount.get();
+            long   doneB  = ckOfs - this.resumeOfs;
+            String eta    = "?";
+            if (doneB > 0L) {
+                long etaSec = (long)((double)(this.fileLen - ckOfs) * (double)elapSec / (double)doneB);
+                eta = StringTools.formatElapsedSeconds(etaSec, StringTools.ELAPSED_FORMAT_HHMMSS);
+            }
+            Print.logInfo("Imported " + ckOfs + "/" + this.fileLen + " bytes (" + StringTools.format(pct,"0.0") + "%), " +
+                events + " events (" + (events / elapSec) + "/sec), ETA " + eta);
+            if ((this.ckFile != null) && (ckOfs != this.lastCkOfs)) {
+                try {
+                    this._saveCheckpoint(ckOfs);
+                    this.lastCkOfs = ckOfs;
+                } catch (IOException ioe) {
+                    Print.logError("Unable to save checkpoint: " + ioe);
+                }
+            }
+        }
+
+        // --------------------------------
+
+        /* load/cache the specified Account */
+        private AccountID _loadAccount(String acctName) {
+            if (!this.accountMap.containsKey(acctName)) {
+                AccountID account = null;
+                try {
+                    account = AccountID.loadAccountID(acctName);
+                } catch (PacketParseException ppe) {
+                    Print.logError("Unable to load Account: " + acctName + " [" + ppe + "]");
+                }
+                this.accountMap.put(acctName, account);
+            }
+            return this.accountMap.get(acctName);
+        }
+
+        /* load/cache the specified Device */
+        private DeviceID _loadDevice(AccountID account, String devName) {
+            if (account == null) {
+                Print.logError("DeviceID packet without an AccountID: " + devName);
+                return null;
+            }
+            String key = "A:" + account.getAccountName() + "/" + devName;
+            if (!this.deviceMap.containsKey(key)) {
+                DeviceID device = null;
+                try {
+                    device = DeviceID.loadDeviceID(account, devName);
+                } catch (PacketParseException ppe) {
+                    Print.logError("Unable to load Device: " + key + " [" + ppe + "]");
+                }
+                this.deviceMap.put(key, device);
+            }
+            return this.deviceMap.get(key);
+        }
+
+        /* load/cache the specified Device */
+        private DeviceID _loadDevice(byte uniqId[]) {
+            String key = "U:" + StringTools.toHexString(uniqId);
+            if (!this.deviceMap.containsKey(key)) {
+                DeviceID device = null;
+                try {
+                    device = DeviceID.loadDeviceID(new UniqueID(uniqId));
+                } catch (PacketParseException ppe) {
+                    Print.logError("Unable to load Device: " + key + " [" + ppe + "]");
+                }
+                this.deviceMap.put(key, device);
+            }
+            return this.deviceMap.get(key);
+        }
+
+        /* return the Device record for the specified DeviceID */
+        private static Device _getDevice(DeviceID device) {
+            DeviceDB devDB = device.getDeviceDB();
+            return (devDB instanceof DeviceDBImpl)? ((DeviceDBImpl)devDB).getDevice() : null;
+        }
+
+        /* return the packet type (without parsing the payload) */
+        private static int _getPacketType(byte pkt[]) {
+            if ((pkt.length >= 5) && (pkt[0] == '$')) {
+                // ASCII: "$E0TT..."
+                return StringTools.parseHex(StringTools.toStringValue(pkt).substring(3,5), -1);
+            } else
+            if (pkt.length >= Packet.MIN_HEADER_LENGTH) {
+                // Binary: 0xE0, TT, LL, ...
+                return pkt[1] & 0xFF;
+            } else {
+                return -1;
+            }
+        }
+
+        // --------------------------------
+
+        /* queue the specified batch to the import thread for the batch device */
+        private void _submit(final DeviceBatch batch)
+            throws InterruptedException
+        {
+            while (!this.inFlight.tryAcquire(POLL_MS, TimeUnit.MILLISECONDS)) {
+                this._progress(false);
+            }
+            int ndx = (batch.key.hashCode() & 0x7FFFFFFF) % this.workers.length;
+            this.workers[ndx].execute(new Runnable() {
+                public void run() {
+                    try {
+                        BulkImport.this._importBatch(batch);
+                    } finally {
+                        BulkImport.this.inFlight.release();
+                    }
+                }
+            });
+        }
+
+        /* decode and insert the events in the specified batch (called from an import thread) */
+        private void _importBatch(DeviceBatch batch) {
+            if (this.aborted) {
+                return; // leave pending, checkpoint remains before this batch
+            }
+
+            /* session copy of the owned Device (see DMTPDBFactory), Device updates are coalesced */
+            Device dev = _getDevice(batch.device);
+
+            /* insert events in order */
+            boolean failed = false;
+            for (byte pkt[] : batch.packets) {
+                try {
+                    Packet packet = new Packet(batch.device, true/*isClient*/, pkt); // client packet
+                    if (!packet.isEventType()) {
+                        continue; // not an event packet - ignore
+                    }
+                    Event evData = new Event(null, packet);
+                    int err = batch.device.saveEvent(evData);
+                    if (err == ServerErrors.NAK_OK) {
+                        this.eventCount.incrementAndGet();
+                    } else
+                    if ((dev != null) && dev.isInsertSaveFailed()) {
+                        // database failure, stop import
+                        Print.logError("Event insertion error: " + batch.key + " [" + err + "]");
+                        failed = true;
+                        break;
+                    } else {
+                        // event ignored by the Device
+                        this.skipCount.incrementAndGet();
+                    }
+                } catch (PacketParseException ppe) {
+                    Print.logException("Unable to parse packet: " + batch.key, ppe);
+                    this.errorCount.incrementAndGet();
+                } catch (Throwable th) {
+                    Print.logException("Event insertion error: " + batch.key, th);
+                    failed = true;
+                    break;
+                }
+            }
+
+            /* write the Device changes accumulated for this batch */
+            DeviceEventOwner.flushSessionDevices();
+
+            /* batch complete */
+            if (failed) {
+                this.aborted = true;
+            } else {
+                this.packetCount.addAndGet(batch.packets.size());
+                synchronized (this.pending) {
+                    this.pending.remove(new Long(batch.startOfs));
+                }
+            }
+
+        }
+
+        // --------------------------------
+
+        /* import the file */
+        public boolean run(DeviceID dftDevice) {
+            this.startMS = System.currentTimeMillis();
+            this.lastProgressMS = this.startMS;
+            boolean invalid = false;
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(this.evFile, "r");
+                FileChannel fc = raf.getChannel();
+                this.fileLen = fc.size();
+
+                /* scan packets */
+                if (dftDevice != null) {
+                    String key = "A:" + dftDevice.getAccountName() + "/" + dftDevice.getDeviceName();
+                    this.deviceMap.put(key, dftDevice);
+                }
+                AccountID        account = (dftDevice != null)? dftDevice.getAccountID() : null;
+                DeviceID         device  = dftDevice;
+                DeviceBatch      batch   = null;
+                MappedByteBuffer map     = null;
+                long             mapOfs  = 0L;
+                long             mapEnd  = 0L;
+                byte             scan[]  = new byte[MAX_PACKET_SCAN];
+                long             ofs     = 0L;
+                while ((ofs < this.fileLen) && !this.aborted) {
+
+                    /* map the next window (packets may span window boundaries) */
+                    if ((map == null) || (((ofs + MAX_PACKET_SCAN) > mapEnd) && (mapEnd < this.fileLen))) {
+                        mapOfs = ofs;
+                        mapEnd = Math.min(this.fileLen, ofs + MAP_WINDOW_SIZE);
+                        map    = fc.map(FileChannel.MapMode.READ_ONLY, mapOfs, mapEnd - mapOfs);
+                    }
+
+                    /* extract packet */
+                    int  avail = (int)Math.min((long)MAX_PACKET_SCAN, mapEnd - ofs);
+                    byte hdr[] = (avail == scan.length)? scan : new byte[avail];
+                    map.position((int)(ofs - mapOfs));
+                    map.get(hdr, 0, avail);
+                    int len = Packet.getPacketLength(hdr, 0);
+                    if ((len <= 0) || (len > avail)) {
+                        Print.logError("Found invalid packet at offset " + ofs);
+                        invalid = true;
+                        break;
+                    }
+                    byte pkt[] = new byte[len];
+                    System.arraycopy(hdr, 0, pkt, 0, len);
+
+                    /* identification packets select the device for the following events */
+                    int type = _getPacketType(pkt);
+                    if ((type == Packet.PKT_CLIENT_UNIQUE_ID ) ||
+                        (type == Packet.PKT_CLIENT_ACCOUNT_ID) ||
+                        (type == Packet.PKT_CLIENT_DEVICE_ID )   ) {
+                        try {
+                            Packet  idPkt   = new Packet(pkt);
+                            Payload payload = idPkt.getPayload(true);
+                            int     plen    = idPkt.getPayloadLength();
+                            if (type == Packet.PKT_CLIENT_UNIQUE_ID) {
+                                device  = this._loadDevice(payload.readBytes(plen));
+                                account = (device != null)? device.getAccountID() : null;
+                            } else
+                            if (type == Packet.PKT_CLIENT_ACCOUNT_ID) {
+                                account = this._loadAccount(payload.readString(plen).trim());
+                                device  = null;
+                            } else {
+                                device  = this._loadDevice(account, payload.readString(plen).trim());
+                            }
+                        } catch (PacketParseException ppe) {
+                            Print.logException("Unable to parse identification packet at offset " + ofs, ppe);
+                            device = null;
+                        }
+                    } else
+                    if (ofs < this.resumeOfs) {
+                        // already imported
+                    } else
+                    if (device == null) {
+                        this.noDeviceCount++;
+                    } else {
+                        if ((batch != null) && ((batch.device != device) || (batch.packets.size() >= this.batchSize))) {
+                            this._submit(batch);
+                            batch = null;
+                        }
+                        if (batch == null) {
+                            batch = new DeviceBatch(device, ofs);
+                            synchronized (this.pending) {
+                                this.pending.add(new Long(ofs));
+                            }
+                        }
+                        batch.packets.add(pkt);
+                    }
+
+                    /* advance to next packet */
+                    ofs += len;
+                    synchronized (this.pending) {
+                        this.scanOfs = ofs;
+                    }
+                    this._progress(false);
+
+                }
+                if (batch != null) {
+                    this._submit(batch);
+                }
+
+            } catch (IOException ioe) {
+                Print.logException("Unable to read packet file: " + this.evFile, ioe);
+                invalid = true;
+            } catch (InterruptedException ie) {
+                Print.logError("Import interrupted");
+                invalid = true;
+            } finally {
+                if (raf != null) { try { raf.close(); } catch (Throwable th) {/*ignore*/} }
+            }
+
+            /* wait for import threads */
+            for (int i = 0; i < this.workers.length; i++) {
+                this.workers[i].shutdown();
+            }
+            for (int i = 0; i < this.workers.length; i++) {
+                try {
+                    while (!this.workers[i].awaitTermination(POLL_MS, TimeUnit.MILLISECONDS)) {
+                        this._progress(false);
+                    }
+                } catch (InterruptedException ie) {
+                    invalid = true;
+                    break;
+                }
+            }
+            DeviceEventOwner.FlushAll(POLL_MS * 5L);
+
+            /* final checkpoint */
+            boolean success = !invalid && !this.aborted;
+            if (success && (this._getCheckpoint() >= this.fileLen)) {
+                if ((this.ckFile != null) && this.ckFile.isFile()) {
+                    this.ckFile.delete();
+                }
+                this.lastCkOfs = this.fileLen;
+            }
+            this._progress(true);
+
+            /* summary */
+            long elapMS = Math.max(1L, System.currentTimeMillis() - this.startMS);
+            Print.logInfo("Packets imported : " + this.packetCount.get());
+            Print.logInfo("Events inserted  : " + this.eventCount.get() + " (" + (this.eventCount.get() * 1000L / elapMS) + "/sec)");
+            Print.logInfo("Events ignored   : " + this.skipCount.get());
+            Print.logInfo("Parse errors     : " + this.errorCount.get());
+            Print.logInfo("Packets w/o Device: " + this.noDeviceCount);
+            if (!success) {
+                Print.logError("Import stopped, resume with \"-resume\" from offset " + this._getCheckpoint());
+            }
+            return success;
+
+        }
+
+    }
+
     // ------------------------------------------------------------------------
     // This class will read event packets from a file and insert them into the
     // EventData table for the specified Device.
@@ -81,9 +570,14 @@ public class ParseFile
         String accountID  = RTConfig.getString(ARG_ACCOUNT, null);
         String deviceID   = RTConfig.getString(ARG_DEVICE , null);
         File   evFile     = RTConfig.getFile(ARG_FILE,null);
+        boolean bulk      = RTConfig.getBoolean(ARG_BULK,false);
 
         /* account/device/file specified? */
-        if (StringTools.isBlank(accountID) || StringTools.isBlank(deviceID) || (evFile == null)) {
+        // (account/device are optional in bulk mode, if the file contains identification packets)
+        if ((evFile == null) || (StringTools.isBlank(accountID) != StringTools.isBlank(deviceID))) {
+            usage();
+        } else
+        if (!bulk && StringTools.isBlank(accountID)) {
             usage();
         }
 
@@ -102,22 +596,47 @@ public class ParseFile
         /* load account/device */
         AccountID account = null;
         DeviceID  device  = null;
-        try {
-            account = AccountID.loadAccountID(accountID);
-            if (account == null) {
-                Print.sysPrintln("ERROR: Unable to load Account - " + accountID);
+        if (!StringTools.isBlank(accountID)) {
+            try {
+                account = AccountID.loadAccountID(accountID);
+                if (account == null) {
+                    Print.sysPrintln("ERROR: Unable to load Account - " + accountID);
+                    System.exit(99);
+                }
+                device = DeviceID.loadDeviceID(account, deviceID);
+                if (device == null) {
+                    Print.sysPrintln("ERROR: Unable to load Device - " + accountID + "/" + deviceID);
+                    System.exit(99);
+                }
+            } catch (PacketParseException ppe) {
+                Print.logException("Unable to load DeviceID: " + accountID + "/" + deviceID, ppe);
                 System.exit(99);
             }
-            device = DeviceID.loadDeviceID(account, deviceID);
-            if (device == null) {
-                Print.sysPrintln("ERROR: Unable to load Device - " + accountID + "/" + deviceID);
-                System.exit(99);
+        }
+
+        /* bulk import */
+        if (bulk) {
+            if (!RTConfig.getBoolean(ARG_RULES,false)) {
+                Device.setRuleFactory(null);
             }
-        } catch (PacketParseException ppe) {
-            Print.logException("Unable to load DeviceID: " + accountID + "/" + deviceID, ppe);
-            System.exit(99);
+            DeviceDBImpl.SIMEVENT_GEOZONES = RTConfig.getBoolean(ARG_GEOZONE,false);
+            File ckFile = RTConfig.getFile(ARG_CKPOINT,null);
+            if (ckFile == null) {
+                ckFile = new File(evFile.getPath() + CHECKPOINT_SUFFIX);
+            }
+            BulkImport bi = new BulkImport(evFile, ckFile,
+                RTConfig.getInt(ARG_THREADS,0),
+                RTConfig.getInt(ARG_BATCH,DFT_BATCH_SIZE),
+                RTConfig.getLong(ARG_PROGRESS,DFT_PROGRESS_SEC));
+            if (RTConfig.getBoolean(ARG_RESUME,false)) {
+                bi.resume();
+            }
+            boolean ok = bi.run(device);
+            Print.sysPrintln("");
+            Print.sysPrintln(ok? "... Done." : "... Stopped.");
+            System.exit(ok? 0 : 99);
         }
-        
+
         /* read file */
         byte pktData[] = FileTools.readFile(evFile);
         if (ListTools.isEmpty(pktData)) {
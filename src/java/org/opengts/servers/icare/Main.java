@@ -206,8 +206,13 @@ public class Main
         /* start server */
         if (RTConfig.getBoolean(ARG_START,false)) {
             
+            /* write-ahead EventData spool (also drains events spooled before a restart) */
+            EventSpool.Start(Main.getServerContextName());
+
             /* start port listeners */
             try {
+                TrackServer.setPacketFramer(DCServerConfig.getPacketFramer(Main.getServerConfig(),null));
+                TrackServer.setUdpLaneCount(DCServerConfig.getUdpLaneCount(Main.getServerConfig(),0));
                 TrackServer.startTrackServer(listenPorts);
             } catch (Throwable t) { // trap any server exception
                 Print.logError("Error: " + t);
@@ -50,6 +50,8 @@ public class TrackServer
             TrackServer.setUdpIdleTimeout(   dcs.getUdpIdleTimeoutMS(   Constants.TIMEOUT_UDP_IDLE   ));
             TrackServer.setUdpPacketTimeout( dcs.getUdpPacketTimeoutMS( Constants.TIMEOUT_UDP_PACKET ));
             TrackServer.setUdpSessionTimeout(dcs.getUdpSessionTimeoutMS(Constants.TIMEOUT_UDP_SESSION));
+            TrackServer.setPacketFramer(dcs.getPacketFramer(null));
+            TrackServer.setUdpLaneCount(dcs.getUdpLaneCount(0));
         }
     }
 
@@ -147,6 +149,34 @@ public class TrackServer
         return TrackServer.udpTimeout_session;
     }
 
+    // ------------------------------------------------------------------------
+    // Packet framing (see "packetFraming" in "dcservers.xml")
+
+    /* packet framer (null to use "TrackClientPacketHandler.getActualPacketLength") */
+    private static PacketFramer packetFramer = null;
+    public static void setPacketFramer(PacketFramer framer)
+    {
+        TrackServer.packetFramer = framer;
+    }
+    public static PacketFramer getPacketFramer()
+    {
+        return TrackServer.packetFramer;
+    }
+
+    // ------------------------------------------------------------------------
+    // UDP lanes (see "udpLaneCount" in "dcservers.xml")
+
+    /* number of ordered UDP worker lanes (0 to use the general session thread pool) */
+    private static int udpLaneCount = 0;
+    public static void setUdpLaneCount(int count)
+    {
+        TrackServer.udpLaneCount = count;
+    }
+    public static int getUdpLaneCount()
+    {
+        return TrackServer.udpLaneCount;
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -239,6 +269,7 @@ public class TrackServer
         sst.setPacketTimeout(TrackServer.tcpTimeout_packet);     // time from start of packet to packet completion
         sst.setSessionTimeout(TrackServer.tcpTimeout_session);   // time for entire session
         sst.setTerminateOnTimeout(Constants.TERMINATE_ON_TIMEOUT);
+        sst.setPacketFramer(TrackServer.getPacketFramer());
         sst.setClientPacketHandlerClass(TrackClientPacketHandler.class);
         sst.setLingerTimeoutSec(Constants.LINGER_ON_CLOSE_SEC);
 
@@ -276,6 +307,8 @@ public class TrackServer
         sst.setPacketTimeout(TrackServer.udpTimeout_packet);
         sst.setSessionTimeout(TrackServer.udpTimeout_session);
         sst.setTerminateOnTimeout(Constants.TERMINATE_ON_TIMEOUT);
+        sst.setDatagramLaneCount(TrackServer.getUdpLaneCount());
+        sst.setPacketFramer(TrackServer.getPacketFramer());
         sst.setClientPacketHandlerClass(TrackClientPacketHandler.class);
 
         /* start thread */
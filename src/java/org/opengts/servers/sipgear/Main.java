@@ -195,6 +195,9 @@ public class Main
         /* start server */
         if (RTConfig.getBoolean(ARG_START,false)) {
             
+            /* write-ahead EventData spool (also drains events spooled before a restart) */
+            EventSpool.Start(Main.getServerContextName());
+
             /* start port listeners */
             try {
                 int tcpPorts[]  = getTcpPorts();
@@ -43,6 +43,8 @@
 //  2013/05/28  Martin D. Flynn
 //     -Update "parseInsertRecord_TK103_alt" handling of GPIO and event codes ("BO01").
 //     -Changed conversion of odometer/mileage units to 'meters'.
+//  2026/10/19
+//     -Added "getDatagramModemID", used to assign datagrams to UDP lanes by modem ID.
 // ----------------------------------------------------------------------------
 // ----------------------------------------------------------------------------
 package org.opengts.servers.tk10x;
@@ -168,6 +170,37 @@ public class TrackClientPacketHandler
 
     // ------------------------------------------------------------------------
 
+    /* return the modem ID contained in the specified datagram (null if not present) */
+    // used to assign the datagrams of a device to the same UDP lane, since the source
+    // IP address and port of a device may change between datagrams behind carrier NAT.
+    public static String getDatagramModemID(byte data[], int dataLen)
+    {
+        int len = Math.min(dataLen, (data != null)? data.length : 0);
+        if (len <= 0) {
+            return null;
+        }
+        String s = StringTools.toStringValue(data, 0, len).trim();
+        if (s.startsWith("(")) {
+            // TK103-3: "(" + 12 character device serial number
+            return (s.length() >= 13)? s.substring(1,13) : null;
+        }
+        int p = s.indexOf("imei:");
+        if (p >= 0) {
+            // TK102, TK103-2, "##" keep-alive: "imei:" + modem ID
+            int e = p + "imei:".length();
+            while ((e < s.length()) && Character.isLetterOrDigit(s.charAt(e))) { e++; }
+            String id = s.substring(p + "imei:".length(), e);
+            return !id.equals("")? id : null;
+        }
+        if ((s.length() == 15) && StringTools.isNumeric(s)) {
+            // TK103 IMEI-only packet
+            return s;
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+
     /* workhorse of the packet handler */
     public byte[] getHandlePacket(byte pktBytes[]) 
     {
@@ -0,0 +1,1524 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Device fleet load generator for the DCS servers and HTTP ingest servlets
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.tools;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.CRC32;
+import java.io.*;
+import java.net.*;
+
+import org.opengts.util.*;
+import org.opengts.db.StatusCodes;
+
+/**
+*** <code>FleetLoadGenerator</code> simulates a fleet of moving devices reporting to a
+*** running DCS server (TCP/UDP) or HTTP ingest servlet, in the native packet format of
+*** the selected protocol, and reports ACK latency percentiles and throughput.<br>
+*** Reports are sent on a fixed schedule, and the ACK latency is measured from the time
+*** each report was due (rather than from the time it was actually sent), so that a stalled
+*** server is not hidden by the resulting send delays.  TCP/UDP ACKs are read by a thread
+*** per connection, so a device never waits for an ACK before sending its next report.<br>
+*** Each device follows a random route (driving/stopped), reports at a configurable
+*** interval, and may randomly reconnect ("churn") or go offline and later upload its
+*** buffered history in a burst.<br>
+*** The exit code is non-zero if the specified latency/ACK thresholds are not met, so
+*** that this tool can be run against a local TrackServer in an automated build.
+**/
+
+public class FleetLoadGenerator
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final int        TRANSPORT_TCP           = 1;
+    public  static final int        TRANSPORT_UDP           = 2;
+    public  static final int        TRANSPORT_HTTP          = 4;
+
+    private static final TimeZone   GMT                     = TimeZone.getTimeZone("GMT");
+
+    /* GPS epoch (1980/01/06) */
+    private static final long       GPS_EPOCH_SEC           = 315964800L;
+
+    /**
+    *** Returns the transport name
+    **/
+    public static String GetTransportName(int transport)
+    {
+        switch (transport) {
+            case TRANSPORT_TCP  : return "tcp";
+            case TRANSPORT_UDP  : return "udp";
+            case TRANSPORT_HTTP : return "http";
+            default             : return "?";
+        }
+    }
+
+    /**
+    *** Returns the transport for the specified name
+    **/
+    public static int ParseTransport(String name)
+    {
+        if (StringTools.isBlank(name)) {
+            return 0;
+        } else
+        if (name.equalsIgnoreCase("tcp")) {
+            return TRANSPORT_TCP;
+        } else
+        if (name.equalsIgnoreCase("udp")) {
+            return TRANSPORT_UDP;
+        } else
+        if (name.equalsIgnoreCase("http")) {
+            return TRANSPORT_HTTP;
+        } else {
+            return 0;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A simulated GPS fix
+    **/
+    public static class Fix
+    {
+        public long     fixtime     = 0L;
+        public double   latitude    = 0.0;
+        public double   longitude   = 0.0;
+        public double   speedKPH    = 0.0;
+        public double   heading     = 0.0;
+        public double   altitudeM   = 0.0;
+        public double   odomKM      = 0.0;
+        public boolean  moving      = false;
+        public int      sequence    = 0;
+        public Fix() {
+            super();
+        }
+        public double getSpeedKnots() {
+            return this.speedKPH / 1.852;
+        }
+        public double getSpeedMPH() {
+            return this.speedKPH / GeoPoint.KILOMETERS_PER_MILE;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Protocol packet encoder
+    **/
+    public static abstract class PacketEncoder
+    {
+        private String  name        = null;
+        private int     transports  = 0;
+        public PacketEncoder(String name, int transports) {
+            this.name       = name;
+            this.transports = transports;
+        }
+        public String getName() {
+            return this.name;
+        }
+        public boolean supportsTransport(int transport) {
+            return ((this.transports & transport) != 0);
+        }
+        public int getDefaultTransport() {
+            if (this.supportsTransport(TRANSPORT_TCP)) {
+                return TRANSPORT_TCP;
+            } else
+            if (this.supportsTransport(TRANSPORT_HTTP)) {
+                return TRANSPORT_HTTP;
+            } else {
+                return TRANSPORT_UDP;
+            }
+        }
+        /* packet sent once after each (re)connect, or null */
+        public byte[] getLoginPacket(SimDevice dev) {
+            return null;
+        }
+        /* true if the server acknowledges the login packet */
+        public boolean isLoginAcked() {
+            return false;
+        }
+        /* packet containing a single fix */
+        public abstract byte[] encode(SimDevice dev, Fix fix);
+        /* packet containing several buffered fixes, or null to send each separately */
+        public byte[] encodeHistory(SimDevice dev, java.util.List<Fix> fixes) {
+            return null;
+        }
+        /* true if the server acknowledges data packets */
+        public boolean isDataAcked() {
+            return false;
+        }
+        /* true if the specified bytes contain a complete ACK/NAK */
+        public boolean isAckComplete(byte b[], int len) {
+            return (len > 0) && (b[len - 1] == '\n');
+        }
+        /* true if the complete response is a negative acknowledgement */
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return false;
+        }
+        /* HTTP servlet path */
+        public String getHttpPath() {
+            return null;
+        }
+        /* HTTP query string for a single fix */
+        public String getHttpQuery(SimDevice dev, Fix fix) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* "ddmm.mmmm" */
+    private static String _nmeaLat(double lat)
+    {
+        double a = Math.abs(lat);
+        double d = Math.floor(a);
+        return String.format(Locale.US, "%09.4f", (d * 100.0) + ((a - d) * 60.0));
+    }
+
+    /* "dddmm.mmmm" */
+    private static String _nmeaLon(double lon)
+    {
+        double a = Math.abs(lon);
+        double d = Math.floor(a);
+        return String.format(Locale.US, "%010.4f", (d * 100.0) + ((a - d) * 60.0));
+    }
+
+    /* signed fixed-point degrees ("+3958635") */
+    private static String _fixedDeg(double deg, int digits, double scale)
+    {
+        long v = Math.round(Math.abs(deg) * scale);
+        return ((deg < 0.0)? "-" : "+") + StringTools.padLeft(String.valueOf(v), '0', digits);
+    }
+
+    /* GMT date/time */
+    private static String _gmt(long fixtime, String pattern)
+    {
+        return DateFormatCache.format(fixtime * 1000L, GMT, pattern, Locale.US);
+    }
+
+    /* "$GPRMC,...*CS" (without the leading '$' if 'dollar' is false) */
+    private static String _gprmc(Fix fix, boolean dollar)
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("$GPRMC,");
+        sb.append(_gmt(fix.fixtime,"HHmmss")).append(".000,A,");
+        sb.append(_nmeaLat(fix.latitude)).append(",").append((fix.latitude  >= 0.0)? "N" : "S").append(",");
+        sb.append(_nmeaLon(fix.longitude)).append(",").append((fix.longitude >= 0.0)? "E" : "W").append(",");
+        sb.append(String.format(Locale.US, "%.2f", fix.getSpeedKnots())).append(",");
+        sb.append(String.format(Locale.US, "%.2f", fix.heading)).append(",");
+        sb.append(_gmt(fix.fixtime,"ddMMyy")).append(",,");
+        int cksum = Nmea0183.calcXORChecksum(sb.toString(), false);
+        sb.append("*").append(StringTools.toHexString(cksum,8));
+        return dollar? sb.toString() : sb.substring(1);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** "template": ASCII format #1 (no ACK) or #9 (RTProperties, "ack="/"nak=" responses)
+    **/
+    public static class TemplateEncoder
+        extends PacketEncoder
+    {
+        private int format = 9;
+        public TemplateEncoder(int format) {
+            super("template", TRANSPORT_TCP | TRANSPORT_UDP);
+            this.format = format;
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            StringBuffer sb = new StringBuffer();
+            if (this.format == 1) {
+                // <MobileID>,<YYYY/MM/DD>,<HH:MM:SS>,<Latitude>,<Longitude>,<Speed>,<Heading>,<AltitudeM>
+                sb.append(dev.getMobileID()).append(",");
+                sb.append(_gmt(fix.fixtime,"yyyy/MM/dd,HH:mm:ss")).append(",");
+                sb.append(String.format(Locale.US, "%.5f,%.5f,%.1f,%.1f,%.0f",
+                    fix.latitude, fix.longitude, fix.speedKPH, fix.heading, fix.altitudeM));
+            } else
+            if (this.format == 11) {
+                // $POS,<MobileID>,<HHMMSS>,A,<NMEALat>,<N|S>,<NMEALon>,<E|W>,<Knots>,<Heading>,<DDMMYY>
+                sb.append("$POS,").append(dev.getMobileID()).append(",");
+                sb.append(_gmt(fix.fixtime,"HHmmss")).append(".000,A,");
+                sb.append(_nmeaLat(fix.latitude)).append(",").append((fix.latitude  >= 0.0)? "N" : "S").append(",");
+                sb.append(_nmeaLon(fix.longitude)).append(",").append((fix.longitude >= 0.0)? "E" : "W").append(",");
+                sb.append(String.format(Locale.US, "%.1f,%.1f,", fix.getSpeedKnots(), fix.heading));
+                sb.append(_gmt(fix.fixtime,"ddMMyy"));
+            } else {
+                // mid=<MobileID> ts=<Epoch> code=<StatusCode> gps=<Lat>/<Lon> ... ack=ACK nak=NAK
+                sb.append("mid=").append(dev.getMobileID());
+                sb.append(" ts=").append(fix.fixtime);
+                sb.append(" code=").append(StatusCodes.STATUS_LOCATION);
+                sb.append(String.format(Locale.US, " gps=%.5f/%.5f kph=%.1f dir=%.0f alt=%.0f odom=%.1f",
+                    fix.latitude, fix.longitude, fix.speedKPH, fix.heading, fix.altitudeM, fix.odomKM));
+                sb.append(" ack=ACK nak=NAK");
+            }
+            sb.append("\r\n");
+            return StringTools.getBytes(sb.toString());
+        }
+        public boolean isDataAcked() {
+            return (this.format == 9);
+        }
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return !StringTools.toStringValue(b,0,len).startsWith("ACK");
+        }
+    }
+
+    /**
+    *** "tk10x": TK103 "##" login ("LOAD" response), and "imei:" data records (no ACK)
+    **/
+    public static class TK10xEncoder
+        extends PacketEncoder
+    {
+        public TK10xEncoder() {
+            super("tk10x", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        public byte[] getLoginPacket(SimDevice dev) {
+            return StringTools.getBytes("##,imei:" + dev.getMobileID() + ",A;");
+        }
+        public boolean isLoginAcked() {
+            return true;
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            // imei:<IMEI>,tracker,<YYMMDDhhmm>,<Phone>,F,<hhmmss>.000,A,<NMEALat>,N,<NMEALon>,W,<Knots>,<Heading>;
+            StringBuffer sb = new StringBuffer();
+            sb.append("imei:").append(dev.getMobileID()).append(",tracker,");
+            sb.append(_gmt(fix.fixtime,"yyMMddHHmm")).append(",,F,");
+            sb.append(_gmt(fix.fixtime,"HHmmss")).append(".000,A,");
+            sb.append(_nmeaLat(fix.latitude)).append(",").append((fix.latitude  >= 0.0)? "N" : "S").append(",");
+            sb.append(_nmeaLon(fix.longitude)).append(",").append((fix.longitude >= 0.0)? "E" : "W").append(",");
+            sb.append(String.format(Locale.US, "%.2f,%.2f;", fix.getSpeedKnots(), fix.heading));
+            return StringTools.getBytes(sb.toString());
+        }
+        public boolean isAckComplete(byte b[], int len) {
+            return (len >= 4); // "LOAD"
+        }
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return !StringTools.toStringValue(b,0,len).startsWith("LOAD");
+        }
+    }
+
+    /**
+    *** "taip": Trimble TAIP "RPV" records (no ACK)
+    **/
+    public static class TaipEncoder
+        extends PacketEncoder
+    {
+        public TaipEncoder() {
+            super("taip", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            // >RPV<TOD><Lat><Lon><MPH><Heading><Src><Age>;ID=<MobileID><
+            long tod = fix.fixtime % DateTime.DaySeconds(1);
+            StringBuffer sb = new StringBuffer();
+            sb.append(">RPV");
+            sb.append(StringTools.padLeft(String.valueOf(tod),'0',5));
+            sb.append(_fixedDeg(fix.latitude , 7, 100000.0));
+            sb.append(_fixedDeg(fix.longitude, 8, 100000.0));
+            sb.append(StringTools.padLeft(String.valueOf(Math.round(fix.getSpeedMPH())),'0',3));
+            sb.append(StringTools.padLeft(String.valueOf(Math.round(fix.heading) % 360L),'0',3));
+            sb.append("12"); // 3D GPS, fresh
+            sb.append(";ID=").append(dev.getMobileID());
+            sb.append("<");
+            return StringTools.getBytes(sb.toString());
+        }
+    }
+
+    /**
+    *** "icare": 12 byte header followed by "%IMEI,$GPRMC,..." (no ACK)
+    **/
+    public static class ICareEncoder
+        extends PacketEncoder
+    {
+        public ICareEncoder() {
+            super("icare", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            StringBuffer sb = new StringBuffer();
+            sb.append(StringTools.padLeft(String.valueOf(fix.sequence % 1000000000L),'0',12)); // header
+            sb.append("%").append(dev.getMobileID()).append(",");
+            sb.append(_gprmc(fix,true));
+            sb.append(",000.0,E,A,0000000000,L00");
+            byte b[] = StringTools.getBytes(sb.toString());
+            byte p[] = new byte[b.length + 1];
+            System.arraycopy(b, 0, p, 0, b.length);
+            p[b.length] = 0x00; // terminator
+            return p;
+        }
+    }
+
+    /**
+    *** "lantrix": "RGP" records, acknowledged with "&gt;ACK;ID=..;#NNNN;*CS&lt;"
+    **/
+    public static class LantrixEncoder
+        extends PacketEncoder
+    {
+        public LantrixEncoder() {
+            super("lantrix", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        private static String _checksum(String msg) {
+            int cs = 0;
+            for (int i = 0; i < msg.length(); i++) {
+                if (msg.charAt(i) == '*') { break; }
+                cs ^= (msg.charAt(i) & 0x7F);
+            }
+            return StringTools.toHexString(cs,8);
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            // >RGP<DDMMYY><HHMMSS><Lat><Lon><KPH><Heading><Src><Age><IO><Events><HDOP>;ID=<id>;#<seq>;*<CS><
+            StringBuffer sb = new StringBuffer();
+            sb.append(">RGP");
+            sb.append(_gmt(fix.fixtime,"ddMMyyHHmmss"));
+            sb.append(_fixedDeg(fix.latitude , 7, 100000.0));
+            sb.append(_fixedDeg(fix.longitude, 8, 100000.0));
+            sb.append(StringTools.padLeft(String.valueOf(Math.round(fix.speedKPH)),'0',3));
+            sb.append(StringTools.padLeft(String.valueOf(Math.round(fix.heading) % 360L),'0',3));
+            sb.append("3");                                     // 3D fix
+            sb.append("00");                                    // age (hex)
+            sb.append(fix.moving? "01" : "00");                 // I/O (hex)
+            sb.append("00");                                    // event count
+            sb.append("09");                                    // HDOP
+            sb.append(";ID=").append(dev.getMobileID());
+            sb.append(";#").append(StringTools.padLeft(String.valueOf(fix.sequence % 10000),'0',4));
+            sb.append(";*");
+            sb.append(_checksum(sb.toString())).append("<");
+            byte b[] = StringTools.getBytes(sb.toString());
+            byte p[] = new byte[b.length + 1];
+            System.arraycopy(b, 0, p, 0, b.length);
+            p[b.length] = 0x00; // terminator
+            return p;
+        }
+        public boolean isDataAcked() {
+            return true;
+        }
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return !StringTools.toStringValue(b,0,len).startsWith(">ACK;ID=" + dev.getMobileID() + ";");
+        }
+    }
+
+    /**
+    *** "sipgear": TK102 style "GPRMC,...,imei:IMEI" records (no ACK)
+    **/
+    public static class SipGearEncoder
+        extends PacketEncoder
+    {
+        public SipGearEncoder() {
+            super("sipgear", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            // <Serial>,<Phone>,GPRMC,<hhmmss>.000,A,<Lat>,N,<Lon>,W,<Knots>,<Heading>,<DDMMYY>,,,A*CS,F,,imei:<IMEI>,<Sats>,<AltM>
+            String rmc = _gprmc(fix,false);
+            int cs = rmc.lastIndexOf('*');
+            StringBuffer sb = new StringBuffer();
+            sb.append(_gmt(fix.fixtime,"yyMMddHHmmss")).append(",0000000000,");
+            sb.append(rmc.substring(0,cs)).append(",A").append(rmc.substring(cs));
+            sb.append(",F,,imei:").append(dev.getMobileID());
+            sb.append(",08,").append(Math.round(fix.altitudeM));
+            sb.append("\n");
+            return StringTools.getBytes(sb.toString());
+        }
+    }
+
+    /**
+    *** "aspicore": multi-line "IMEI"/"$GPRMC"/"*CRC" records (no ACK, TCP only)
+    **/
+    public static class AspicoreEncoder
+        extends PacketEncoder
+    {
+        public AspicoreEncoder() {
+            super("aspicore", TRANSPORT_TCP);
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            StringBuffer sb = new StringBuffer();
+            sb.append("IMEI ").append(dev.getMobileID()).append("\r\n");
+            sb.append(_gprmc(fix,true)).append("\r\n");
+            CRC32 crc = new CRC32();
+            crc.update(StringTools.getBytes(sb.toString()));
+            sb.append("*").append(StringTools.toHexString(crc.getValue(),32)).append("\r\n");
+            return StringTools.getBytes(sb.toString());
+        }
+        public byte[] encodeHistory(SimDevice dev, java.util.List<Fix> fixes) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            for (Fix fix : fixes) {
+                byte b[] = this.encode(dev, fix);
+                baos.write(b, 0, b.length);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+    *** "astra": binary protocol "K" reports, acknowledged with 0x06
+    **/
+    public static class AstraEncoder
+        extends PacketEncoder
+    {
+        private static final int REPORT_LEN         = 38;
+        private static final int MAX_REPORTS        = 32;
+        private static final int REASON_TIME        = 0x01;
+        private static final int STATUS_IGNITION   = 0x01;
+        private static final int STATUS_TO_FOLLOW   = 0x10;
+        private static final int CRC16_MODBUS[]     = new int[256];
+        static {
+            for (int i = 0; i < 256; i++) {
+                int c = i;
+                for (int b = 0; b < 8; b++) {
+                    c = ((c & 1) != 0)? ((c >>> 1) ^ 0xA001) : (c >>> 1);
+                }
+                CRC16_MODBUS[i] = c;
+            }
+        }
+        public AstraEncoder() {
+            super("astra", TRANSPORT_TCP | TRANSPORT_UDP);
+        }
+        private static int _crc16(byte b[], int len) {
+            int crc = 0xFFFF;
+            for (int i = 0; i < len; i++) {
+                crc = (crc >>> 8) ^ CRC16_MODBUS[(crc ^ b[i]) & 0xFF];
+            }
+            return crc;
+        }
+        private byte[] _packet(SimDevice dev, java.util.List<Fix> fixes) {
+            int n = fixes.size();
+            int len = 3 + 7 + (n * REPORT_LEN) + 2;
+            long imei = StringTools.parseLong(dev.getMobileID(), 0L);
+            Payload p = new Payload(len);
+            p.writeUInt('K', 1);
+            p.writeUInt(len, 2);
+            p.writeULong(imei / 10000000L, 4);  // TAC
+            p.writeULong(imei % 10000000L, 3);  // MSN
+            for (int i = 0; i < n; i++) {
+                Fix fix = fixes.get(i);
+                int status = (fix.moving? STATUS_IGNITION : 0) | ((i < (n - 1))? STATUS_TO_FOLLOW : 0);
+                p.writeUInt(fix.sequence & 0xFF, 1);
+                p.writeLong(Math.round(fix.latitude  * 1000000.0), 4);
+                p.writeLong(Math.round(fix.longitude * 1000000.0), 4);
+                p.writeULong(fix.fixtime - GPS_EPOCH_SEC, 4);
+                p.writeUInt((int)Math.min(Math.round(fix.speedKPH / 2.0), 255L), 1);
+                p.writeUInt((int)(Math.round(fix.heading / 2.0) % 180L), 1);
+                p.writeUInt(REASON_TIME, 3);
+                p.writeUInt(status, 2);
+                p.writeUInt(fix.moving? 0x01 : 0x00, 1);    // digitals
+                p.writeUInt(0, 1);                          // ADC1
+                p.writeUInt(100, 1);                        // battery %
+                p.writeUInt(69, 1);                         // ext power (13.8V)
+                p.writeUInt((int)Math.min(Math.round(fix.speedKPH / 2.0), 255L), 1);
+                p.writeZeroFill(6);                         // accelerometer
+                p.writeUInt((int)Math.min(Math.round(fix.odomKM * 10.0), 0xFFFFL), 2);
+                p.writeUInt(0, 2);                          // idle time
+                p.writeUInt((int)Math.min(Math.round(fix.altitudeM / 20.0), 255L), 1);
+                p.writeUInt(0xF8, 1);                       // GSM 15, 8 sats
+                p.writeUInt(0, 1);                          // geofence
+            }
+            byte b[] = p.getBytes();
+            int crc = _crc16(b, len - 2);
+            byte pkt[] = new byte[len];
+            System.arraycopy(b, 0, pkt, 0, len - 2);
+            pkt[len - 2] = (byte)((crc >>> 8) & 0xFF);
+            pkt[len - 1] = (byte)( crc        & 0xFF);
+            return pkt;
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            return this._packet(dev, Collections.singletonList(fix));
+        }
+        public byte[] encodeHistory(SimDevice dev, java.util.List<Fix> fixes) {
+            if (fixes.size() > MAX_REPORTS) {
+                return null;
+            }
+            return this._packet(dev, fixes);
+        }
+        public boolean isDataAcked() {
+            return true;
+        }
+        public boolean isAckComplete(byte b[], int len) {
+            return (len >= 1);
+        }
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return (b[0] != 0x06);
+        }
+    }
+
+    /**
+    *** HTTP "$GPRMC" ingest servlets ("gprmc", "gc101", "controllerdata")
+    **/
+    public static class HttpGPRMCEncoder
+        extends PacketEncoder
+    {
+        private String path     = null;
+        private String idParm   = null;
+        private String rmcParm  = null;
+        public HttpGPRMCEncoder(String name, String path, String idParm, String rmcParm) {
+            super(name, TRANSPORT_HTTP);
+            this.path       = path;
+            this.idParm     = idParm;
+            this.rmcParm    = rmcParm;
+        }
+        public byte[] encode(SimDevice dev, Fix fix) {
+            return StringTools.getBytes(this.getHttpQuery(dev, fix));
+        }
+        public boolean isDataAcked() {
+            return true;
+        }
+        public boolean isNak(SimDevice dev, byte b[], int len) {
+            return !StringTools.toStringValue(b,0,len).trim().startsWith("OK");
+        }
+        public String getHttpPath() {
+            return this.path;
+        }
+        public String getHttpQuery(SimDevice dev, Fix fix) {
+            StringBuffer sb = new StringBuffer();
+            sb.append(this.idParm ).append("=").append(URIArg.encodeArg(dev.getMobileID()));
+            sb.append("&");
+            sb.append(this.rmcParm).append("=").append(URIArg.encodeArg(_gprmc(fix,true)));
+            return sb.toString();
+        }
+    }
+
+    /**
+    *** Returns the packet encoder for the specified protocol name
+    *** @param name    The protocol/server name
+    *** @param format  The "template" server data format
+    *** @return The packet encoder, or null if the protocol is not supported
+    **/
+    public static PacketEncoder GetPacketEncoder(String name, int format)
+    {
+        String n = StringTools.trim(name).toLowerCase();
+        if (n.equals("template")) {
+            return new TemplateEncoder(format);
+        } else
+        if (n.equals("tk10x")) {
+            return new TK10xEncoder();
+        } else
+        if (n.equals("taip")) {
+            return new TaipEncoder();
+        } else
+        if (n.equals("icare")) {
+            return new ICareEncoder();
+        } else
+        if (n.equals("lantrix")) {
+            return new LantrixEncoder();
+        } else
+        if (n.equals("sipgear")) {
+            return new SipGearEncoder();
+        } else
+        if (n.equals("aspicore")) {
+            return new AspicoreEncoder();
+        } else
+        if (n.equals("astra")) {
+            return new AstraEncoder();
+        } else
+        if (n.equals("gprmc")) {
+            return new HttpGPRMCEncoder(n, "/gprmc/Data", "id", "gprmc");
+        } else
+        if (n.equals("gc101")) {
+            return new HttpGPRMCEncoder(n, "/gc101/Data", "imei", "rmc");
+        } else
+        if (n.equals("controllerdata")) {
+            return new HttpGPRMCEncoder(n, "/ControllerData", "imei", "rmc");
+        } else {
+            return null;
+        }
+    }
+
+    public static final String PROTOCOLS[] = new String[] {
+        "template", "tk10x", "taip", "icare", "lantrix", "sipgear", "aspicore", "astra",
+        "gprmc", "gc101", "controllerdata"
+    };
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Load statistics
+    **/
+    public static class Stats
+    {
+        public Metrics.Histogram    ackLatency      = new Metrics.Histogram(); // microseconds
+        public Metrics.Histogram    connectLatency  = new Metrics.Histogram(); // microseconds
+        public AtomicLong           events          = new AtomicLong(0L);
+        public AtomicLong           packets         = new AtomicLong(0L);
+        public AtomicLong           bytes           = new AtomicLong(0L);
+        public AtomicLong           ackExpected     = new AtomicLong(0L);
+        public AtomicLong           acks            = new AtomicLong(0L);
+        public AtomicLong           naks            = new AtomicLong(0L);
+        public AtomicLong           timeouts        = new AtomicLong(0L);
+        public AtomicLong           errors          = new AtomicLong(0L);
+        public AtomicLong           connects        = new AtomicLong(0L);
+        public AtomicLong           reconnects      = new AtomicLong(0L);
+        public AtomicLong           bursts          = new AtomicLong(0L);
+        public Stats() {
+            super();
+        }
+        public double getAckPercent() {
+            long e = this.ackExpected.get();
+            return (e > 0L)? ((double)this.acks.get() * 100.0 / (double)e) : 100.0;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A simulated device
+    **/
+    public class SimDevice
+        implements Runnable
+    {
+
+        private int                 index       = 0;
+        private String              mobileID    = null;
+        private Random              rand        = null;
+
+        private GeoPoint            location    = null;
+        private double              heading     = 0.0;
+        private double              speedKPH    = 0.0;
+        private double              targetKPH   = 0.0;
+        private double              altitudeM   = 0.0;
+        private double              odomKM      = 0.0;
+        private long                stopUntil   = 0L;
+        private long                lastTime    = 0L;
+        private int                 sequence    = 0;
+
+        private int                 offline     = 0;
+        private java.util.List<Fix> history     = new Vector<Fix>();
+
+        private long                sendNS      = 0L; // scheduled time of the current report
+        private volatile Connection conn        = null;
+
+        public SimDevice(int index, String mobileID, long seed) {
+            this.index      = index;
+            this.mobileID   = mobileID;
+            this.rand       = new Random(seed);
+            double distM    = Math.sqrt(this.rand.nextDouble()) * FleetLoadGenerator.this.radiusKM * 1000.0;
+            this.location   = FleetLoadGenerator.this.center.getHeadingPoint(distM, this.rand.nextDouble() * 360.0);
+            this.heading    = this.rand.nextDouble() * 360.0;
+            this.altitudeM  = 50.0 + (this.rand.nextDouble() * 300.0);
+            this.odomKM     = this.rand.nextDouble() * 100000.0;
+            this.targetKPH  = 30.0 + (this.rand.nextDouble() * 80.0);
+        }
+
+        public String getMobileID() {
+            return this.mobileID;
+        }
+
+        /* advance the simulated position to 'nowSec' */
+        private Fix _nextFix(long nowSec) {
+            double dtSec = (this.lastTime > 0L)? (double)(nowSec - this.lastTime) : 0.0;
+            this.lastTime = nowSec;
+            if (nowSec < this.stopUntil) {
+                this.speedKPH = 0.0;
+            } else {
+                if (this.rand.nextDouble() < 0.03) {
+                    // stop for 1..10 minutes
+                    this.stopUntil = nowSec + 60L + (long)(this.rand.nextDouble() * 540.0);
+                    this.speedKPH  = 0.0;
+                } else {
+                    if (this.rand.nextDouble() < 0.10) {
+                        this.targetKPH = 20.0 + (this.rand.nextDouble() * 100.0);
+                    }
+                    double dv = Math.min(Math.abs(this.targetKPH - this.speedKPH), 2.0 * Math.max(dtSec,1.0));
+                    this.speedKPH += (this.targetKPH > this.speedKPH)? dv : -dv;
+                    this.heading   = (this.heading + (this.rand.nextGaussian() * 20.0) + 360.0) % 360.0;
+                    if (this.rand.nextDouble() < 0.05) {
+                        this.heading = (this.heading + ((this.rand.nextBoolean()? 90.0 : 270.0))) % 360.0;
+                    }
+                    double distM = this.speedKPH * dtSec / 3.6;
+                    if (distM > 0.0) {
+                        this.location = this.location.getHeadingPoint(distM, this.heading);
+                        this.odomKM  += distM / 1000.0;
+                    }
+                }
+            }
+            this.altitudeM = Math.max(0.0, this.altitudeM + (this.rand.nextGaussian() * 2.0));
+            Fix fix = new Fix();
+            fix.fixtime     = nowSec;
+            fix.latitude    = this.location.getLatitude();
+            fix.longitude   = this.location.getLongitude();
+            fix.speedKPH    = this.speedKPH;
+            fix.heading     = this.heading;
+            fix.altitudeM   = this.altitudeM;
+            fix.odomKM      = this.odomKM;
+            fix.moving      = (this.speedKPH > 0.0);
+            fix.sequence    = ++this.sequence;
+            return fix;
+        }
+
+        /* report interval (milliseconds, with jitter) */
+        private long _nextDelayMS() {
+            long ms = FleetLoadGenerator.this.reportMS;
+            if (this.speedKPH <= 0.0) {
+                ms *= FleetLoadGenerator.this.stoppedFactor;
+            }
+            double jitter = 0.9 + (this.rand.nextDouble() * 0.2);
+            return Math.max(1L, Math.round((double)ms * jitter));
+        }
+
+        /* schedules the first report */
+        private void _start(long delayMS) {
+            this.sendNS = System.nanoTime() + (delayMS * 1000000L);
+            FleetLoadGenerator.this.schedule(this, delayMS);
+        }
+
+        /* scheduled report */
+        public void run() {
+            FleetLoadGenerator flg = FleetLoadGenerator.this;
+            if (!flg.isRunning()) {
+                this.close();
+                return;
+            }
+            try {
+                Fix fix = this._nextFix(DateTime.getCurrentTimeSec());
+                if (this.offline > 0) {
+                    // offline: buffer history
+                    this.history.add(fix);
+                    this.offline--;
+                    if (this.offline == 0) {
+                        this._sendHistory();
+                    }
+                } else
+                if ((flg.burstProb > 0.0) && (this.rand.nextDouble() < flg.burstProb)) {
+                    // go offline, then upload buffered history in a burst
+                    this.close();
+                    this.history.add(fix);
+                    this.offline = Math.max(flg.burstSize - 1, 0);
+                    if (this.offline == 0) {
+                        this._sendHistory();
+                    }
+                } else {
+                    if ((flg.churnProb > 0.0) && (this.rand.nextDouble() < flg.churnProb) && this.isOpen()) {
+                        this.close();
+                        flg.stats.reconnects.incrementAndGet();
+                    }
+                    this._send(flg.encoder.encode(this, fix), 1, flg.encoder.isDataAcked(), fix);
+                }
+            } catch (Throwable th) {
+                flg.stats.errors.incrementAndGet();
+                if (flg.stats.errors.get() <= 10L) {
+                    Print.logWarn("Device " + this.mobileID + ": " + th);
+                }
+                this.close();
+            }
+            if (flg.isRunning()) {
+                // the next report is due one interval after this report was due (not after it
+                // completed), so that a slow response does not hide the delay of later reports
+                this.sendNS += this._nextDelayMS() * 1000000L;
+                flg.schedule(this, Math.max((this.sendNS - System.nanoTime()) / 1000000L, 0L));
+            } else {
+                this.close();
+            }
+        }
+
+        /* upload buffered history */
+        private void _sendHistory() throws IOException {
+            FleetLoadGenerator flg = FleetLoadGenerator.this;
+            java.util.List<Fix> fixes = new Vector<Fix>(this.history);
+            this.history.clear();
+            flg.stats.bursts.incrementAndGet();
+            byte pkt[] = (flg.transport != TRANSPORT_HTTP)? flg.encoder.encodeHistory(this, fixes) : null;
+            if (pkt != null) {
+                this._send(pkt, fixes.size(), flg.encoder.isDataAcked(), fixes.get(0));
+            } else {
+                for (Fix fix : fixes) {
+                    this._send(flg.encoder.encode(this, fix), 1, flg.encoder.isDataAcked(), fix);
+                }
+            }
+        }
+
+        /* send a packet (the ACK, if expected, is read by the connection reader thread) */
+        private void _send(byte pkt[], int eventCount, boolean acked, Fix fix) throws IOException {
+            FleetLoadGenerator flg = FleetLoadGenerator.this;
+            if (flg.transport == TRANSPORT_HTTP) {
+                this._sendHTTP(fix);
+            } else {
+                this._open();
+                this.conn.send(pkt, acked, this.sendNS);
+            }
+            flg.stats.events.addAndGet(eventCount);
+        }
+
+        /* open the TCP/UDP connection and send the login packet */
+        private void _open() throws IOException {
+            if (this.isOpen()) {
+                return;
+            }
+            this.close(); // closed by the reader thread
+            FleetLoadGenerator flg = FleetLoadGenerator.this;
+            long startNS = System.nanoTime();
+            Connection c = new Connection();
+            flg.stats.connectLatency.record((System.nanoTime() - startNS) / 1000L);
+            flg.stats.connects.incrementAndGet();
+            this.conn = c;
+            byte login[] = flg.encoder.getLoginPacket(this);
+            if (login != null) {
+                c.login(login, flg.encoder.isLoginAcked(), this.sendNS);
+            }
+            c.start();
+        }
+
+        /* HTTP GET */
+        private void _sendHTTP(Fix fix) throws IOException {
+            FleetLoadGenerator flg = FleetLoadGenerator.this;
+            String query = flg.encoder.getHttpQuery(this, fix);
+            URL url = new URL(flg.httpURL + (flg.httpURL.indexOf('?') >= 0? "&" : "?") + query);
+            HttpURLConnection http = (HttpURLConnection)url.openConnection();
+            http.setConnectTimeout((int)flg.ackTimeoutMS);
+            http.setReadTimeout((int)flg.ackTimeoutMS);
+            flg.stats.packets.incrementAndGet();
+            flg.stats.bytes.addAndGet(query.length());
+            flg.stats.ackExpected.incrementAndGet();
+            try {
+                int code = http.getResponseCode();
+                InputStream is = (code < 400)? http.getInputStream() : http.getErrorStream();
+                byte buf[] = new byte[512];
+                int len = 0;
+                if (is != null) {
+                    try {
+                        int n;
+                        while ((n = is.read(buf, len, buf.length - len)) > 0) {
+                            len += n;
+                            if (len >= buf.length) { break; }
+                        }
+                    } finally {
+                        is.close();
+                    }
+                }
+                if ((code >= 300) || flg.encoder.isNak(this, buf, len)) {
+                    flg.stats.naks.incrementAndGet();
+                } else {
+                    flg.stats.acks.incrementAndGet();
+                    flg.stats.ackLatency.record((System.nanoTime() - this.sendNS) / 1000L);
+                }
+            } catch (SocketTimeoutException ste) {
+                flg.stats.timeouts.incrementAndGet();
+                http.disconnect();
+            }
+        }
+
+        public boolean isOpen() {
+            Connection c = this.conn;
+            return (c != null) && c.isOpen();
+        }
+
+        public int getPendingCount() {
+            Connection c = this.conn;
+            return (c != null)? c.pending.size() : 0;
+        }
+
+        public void close() {
+            Connection c = this.conn;
+            this.conn = null;
+            if (c != null) {
+                // ACKs still outstanding when the test ends are neither ACKed nor lost
+                c.close(FleetLoadGenerator.this.isRunning());
+            }
+        }
+
+        /**
+        *** A TCP/UDP connection, and the thread which reads its ACKs, so that a slow
+        *** response does not delay the following reports of this device
+        **/
+        private class Connection
+            implements Runnable
+        {
+
+            private Socket                          socket      = null;
+            private DatagramSocket                  datagram    = null;
+            private InputStream                     input       = null;
+            private OutputStream                    output      = null;
+            private ConcurrentLinkedQueue<long[]>   pending     = new ConcurrentLinkedQueue<long[]>(); // { scheduledNS, sentNS }
+            private byte                            buf[]       = new byte[512];
+            private int                             len         = 0;
+            private volatile boolean                closed      = false;
+
+            public Connection() throws IOException {
+                FleetLoadGenerator flg = FleetLoadGenerator.this;
+                int readMS = (int)Math.max(flg.ackTimeoutMS / 4L, 1L); // ACK timeout check interval
+                if (flg.transport == TRANSPORT_UDP) {
+                    this.datagram = new DatagramSocket();
+                    this.datagram.setSoTimeout(readMS);
+                    this.datagram.connect(flg.address);
+                } else {
+                    Socket s = new Socket();
+                    try {
+                        s.setTcpNoDelay(true);
+                        s.connect(flg.address, (int)flg.ackTimeoutMS);
+                        s.setSoTimeout(readMS);
+                        this.input  = new BufferedInputStream(s.getInputStream());
+                        this.output = s.getOutputStream();
+                        this.socket = s;
+                    } catch (IOException ioe) {
+                        try { s.close(); } catch (Throwable th) {/*ignore*/}
+                        throw ioe;
+                    }
+                }
+            }
+
+            /* starts the reader thread */
+            public void start() {
+                Thread t = new Thread(null, this, "FleetAck_" + SimDevice.this.mobileID, 64L * 1024L);
+                t.setDaemon(true);
+                t.start();
+            }
+
+            public boolean isOpen() {
+                return !this.closed;
+            }
+
+            /* write a packet (the scheduled time is queued for the matching ACK) */
+            public void send(byte pkt[], boolean acked, long schedNS) throws IOException {
+                FleetLoadGenerator flg = FleetLoadGenerator.this;
+                if (acked) {
+                    flg.stats.ackExpected.incrementAndGet();
+                    this.pending.add(new long[] { schedNS, System.nanoTime() });
+                }
+                if (this.datagram != null) {
+                    this.datagram.send(new DatagramPacket(pkt, pkt.length));
+                } else {
+                    this.output.write(pkt);
+                    this.output.flush();
+                }
+                flg.stats.packets.incrementAndGet();
+                flg.stats.bytes.addAndGet(pkt.length);
+            }
+
+            /* write the login packet, and wait for its ACK before any data is sent */
+            public void login(byte pkt[], boolean acked, long schedNS) throws IOException {
+                this.send(pkt, acked, schedNS);
+                while (!this.pending.isEmpty()) {
+                    try {
+                        this._receive();
+                    } catch (SocketTimeoutException ste) {
+                        if (this._isExpired()) {
+                            this.close(true);
+                            throw new IOException("Login ACK timeout");
+                        }
+                    } catch (IOException ioe) {
+                        this.close(true);
+                        throw ioe;
+                    }
+                }
+            }
+
+            /* true if the oldest outstanding ACK has timed out */
+            private boolean _isExpired() {
+                long ack[] = this.pending.peek();
+                return (ack != null) && ((System.nanoTime() - ack[1]) >= (FleetLoadGenerator.this.ackTimeoutMS * 1000000L));
+            }
+
+            /* read a single response, and match it to the oldest outstanding packet */
+            private void _receive() throws IOException {
+                FleetLoadGenerator flg = FleetLoadGenerator.this;
+                if (this.datagram != null) {
+                    DatagramPacket dp = new DatagramPacket(this.buf, this.buf.length);
+                    this.datagram.receive(dp);
+                    this.len = dp.getLength();
+                } else {
+                    // a partial response is kept across read timeouts
+                    while (!flg.encoder.isAckComplete(this.buf, this.len) && (this.len < this.buf.length)) {
+                        int b = this.input.read();
+                        if (b < 0) {
+                            throw new EOFException("Connection closed by server");
+                        }
+                        this.buf[this.len++] = (byte)b;
+                    }
+                }
+                long ack[] = this.pending.poll();
+                if (ack == null) {
+                    // unsolicited response
+                } else
+                if (flg.encoder.isNak(SimDevice.this, this.buf, this.len)) {
+                    flg.stats.naks.incrementAndGet();
+                } else {
+                    // latency from the scheduled send time (includes any sender delay)
+                    flg.stats.acks.incrementAndGet();
+                    flg.stats.ackLatency.record((System.nanoTime() - ack[0]) / 1000L);
+                }
+                this.len = 0;
+            }
+
+            /* reader thread */
+            public void run() {
+                while (!this.closed) {
+                    try {
+                        this._receive();
+                    } catch (SocketTimeoutException ste) {
+                        if (this._isExpired()) {
+                            this.close(true); // discard any late response
+                        }
+                    } catch (IOException ioe) {
+                        if (!this.closed) {
+                            FleetLoadGenerator.this.stats.errors.incrementAndGet();
+                            this.close(true);
+                        }
+                    }
+                }
+            }
+
+            /* close the connection, outstanding ACKs are counted as timeouts if 'lost' */
+            public void close(boolean lost) {
+                synchronized (this) {
+                    if (this.closed) {
+                        return;
+                    }
+                    this.closed = true;
+                }
+                if (this.socket != null) {
+                    try { this.socket.close(); } catch (Throwable th) {/*ignore*/}
+                }
+                if (this.datagram != null) {
+                    this.datagram.close();
+                }
+                Stats stats = FleetLoadGenerator.this.stats;
+                for (long ack[] = this.pending.poll(); ack != null; ack = this.pending.poll()) {
+                    if (lost) {
+                        stats.timeouts.incrementAndGet();
+                    } else {
+                        stats.ackExpected.decrementAndGet();
+                    }
+                }
+            }
+
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private PacketEncoder               encoder         = null;
+    private int                         transport       = TRANSPORT_TCP;
+    private InetSocketAddress           address         = null;
+    private String                      httpURL         = null;
+
+    private GeoPoint                    center          = new GeoPoint(39.0, -104.9);
+    private double                      radiusKM        = 25.0;
+    private long                        reportMS        = 30000L;
+    private long                        stoppedFactor   = 4L;
+    private long                        ackTimeoutMS    = 10000L;
+    private double                      churnProb       = 0.0;
+    private double                      burstProb       = 0.0;
+    private int                         burstSize       = 20;
+
+    private ScheduledThreadPoolExecutor executor        = null;
+    private volatile boolean            running         = false;
+    private Stats                       stats           = new Stats();
+
+    /**
+    *** Constructor
+    *** @param encoder    The protocol packet encoder
+    *** @param transport  The transport (TRANSPORT_TCP, TRANSPORT_UDP, TRANSPORT_HTTP)
+    *** @param host       The server host
+    *** @param port       The server port
+    **/
+    public FleetLoadGenerator(PacketEncoder encoder, int transport, String host, int port)
+    {
+        this.encoder    = encoder;
+        this.transport  = transport;
+        if (transport == TRANSPORT_HTTP) {
+            this.httpURL = "http://" + host + ":" + port + StringTools.trim(encoder.getHttpPath());
+        } else {
+            this.address = new InetSocketAddress(host, port);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the full HTTP URL (overrides the default host/port/path)
+    **/
+    public void setHttpURL(String url)
+    {
+        if (!StringTools.isBlank(url)) {
+            this.httpURL = url;
+        }
+    }
+
+    /**
+    *** Sets the area over which the devices start
+    **/
+    public void setArea(GeoPoint center, double radiusKM)
+    {
+        this.center   = center;
+        this.radiusKM = radiusKM;
+    }
+
+    /**
+    *** Sets the report interval (and the interval multiplier while stopped)
+    **/
+    public void setReportInterval(long reportMS, long stoppedFactor)
+    {
+        this.reportMS      = Math.max(reportMS, 1L);
+        this.stoppedFactor = Math.max(stoppedFactor, 1L);
+    }
+
+    /**
+    *** Sets the ACK/connect/read timeout
+    **/
+    public void setAckTimeoutMS(long timeoutMS)
+    {
+        this.ackTimeoutMS = Math.max(timeoutMS, 1L);
+    }
+
+    /**
+    *** Sets the per-report probability of a reconnect
+    **/
+    public void setChurn(double churnProb)
+    {
+        this.churnProb = churnProb;
+    }
+
+    /**
+    *** Sets the per-report probability of going offline for 'burstSize' reports,
+    *** followed by an upload of the buffered history
+    **/
+    public void setBurst(double burstProb, int burstSize)
+    {
+        this.burstProb = burstProb;
+        this.burstSize = Math.max(burstSize, 1);
+    }
+
+    /**
+    *** Gets the statistics
+    **/
+    public Stats getStats()
+    {
+        return this.stats;
+    }
+
+    public boolean isRunning()
+    {
+        return this.running;
+    }
+
+    private void schedule(SimDevice dev, long delayMS)
+    {
+        try {
+            this.executor.schedule(dev, delayMS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            dev.close();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs the simulation
+    *** @param deviceCount  The number of simulated devices
+    *** @param imeiBase     The mobile-id of the first device (incremented for each device)
+    *** @param threads      The number of sender threads
+    *** @param durationMS   The simulation duration
+    *** @param statusMS     The interval between status lines (0 to disable)
+    *** @param seed         The random seed
+    **/
+    public void run(int deviceCount, long imeiBase, int threads, long durationMS, long statusMS, long seed)
+        throws InterruptedException
+    {
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(threads,1), new ThreadFactory() {
+            private int threadNum = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "FleetLoad_" + (++threadNum));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.running = true;
+
+        /* start devices (spread over the first report interval) */
+        Random rand = new Random(seed);
+        SimDevice devs[] = new SimDevice[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            devs[i] = new SimDevice(i, String.valueOf(imeiBase + i), seed + i);
+            devs[i]._start((long)(rand.nextDouble() * (double)this.reportMS));
+        }
+        Print.logInfo("Started " + deviceCount + " '" + this.encoder.getName() + "' devices [" +
+            GetTransportName(this.transport) + " " + ((this.address != null)? this.address.toString() : this.httpURL) + "]");
+
+        /* run */
+        long startMS = System.currentTimeMillis();
+        long endMS   = startMS + durationMS;
+        long lastMS  = startMS;
+        long lastEv  = 0L;
+        long lastAck = 0L;
+        for (;;) {
+            long nowMS = System.currentTimeMillis();
+            if (nowMS >= endMS) { break; }
+            long sleepMS = (statusMS > 0L)? Math.min(statusMS, endMS - nowMS) : (endMS - nowMS);
+            Thread.sleep(sleepMS);
+            if (statusMS > 0L) {
+                nowMS = System.currentTimeMillis();
+                double sec = (double)Math.max(nowMS - lastMS, 1L) / 1000.0;
+                long ev  = this.stats.events.get();
+                long ack = this.stats.acks.get();
+                Print.logInfo(String.format(Locale.US,
+                    "Events %d (%.1f/sec), ACKs %d (%.1f/sec), p99 %.1f ms, timeouts %d, errors %d",
+                    ev, (double)(ev - lastEv) / sec, ack, (double)(ack - lastAck) / sec,
+                    (double)this.stats.ackLatency.getPercentile(99.0) / 1000.0,
+                    this.stats.timeouts.get(), this.stats.errors.get()));
+                lastMS  = nowMS;
+                lastEv  = ev;
+                lastAck = ack;
+            }
+        }
+
+        /* stop */
+        this.running = false;
+        this.elapsedMS = System.currentTimeMillis() - startMS;
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(this.ackTimeoutMS + 1000L, TimeUnit.MILLISECONDS);
+        long ackEndMS = System.currentTimeMillis() + this.ackTimeoutMS;
+        for (int i = 0; i < deviceCount; i++) {
+            // wait for the ACKs still in flight
+            while ((devs[i].getPendingCount() > 0) && (System.currentTimeMillis() < ackEndMS)) {
+                Thread.sleep(10L);
+            }
+        }
+        for (int i = 0; i < deviceCount; i++) {
+            devs[i].close();
+        }
+
+    }
+
+    private long elapsedMS = 0L;
+
+    /**
+    *** Returns the summary report
+    **/
+    public String getSummary()
+    {
+        Stats s = this.stats;
+        double sec = (double)Math.max(this.elapsedMS, 1L) / 1000.0;
+        StringBuffer sb = new StringBuffer();
+        sb.append("Protocol   : ").append(this.encoder.getName()).append(" (").append(GetTransportName(this.transport)).append(")\n");
+        sb.append("Elapsed    : ").append(String.format(Locale.US, "%.1f sec", sec)).append("\n");
+        sb.append("Events     : ").append(s.events.get()).append(String.format(Locale.US, " (%.1f/sec)", (double)s.events.get() / sec)).append("\n");
+        sb.append("Packets    : ").append(s.packets.get()).append(String.format(Locale.US, " (%.1f/sec, %d bytes)", (double)s.packets.get() / sec, s.bytes.get())).append("\n");
+        sb.append("Connects   : ").append(s.connects.get()).append(" (reconnects ").append(s.reconnects.get()).append(", bursts ").append(s.bursts.get()).append(")\n");
+        sb.append("ACKs       : ").append(s.acks.get()).append("/").append(s.ackExpected.get());
+        sb.append(String.format(Locale.US, " (%.2f%%, %.1f/sec)", s.getAckPercent(), (double)s.acks.get() / sec));
+        sb.append(", NAKs ").append(s.naks.get()).append(", timeouts ").append(s.timeouts.get()).append(", errors ").append(s.errors.get()).append("\n");
+        sb.append("ACK latency: ");
+        if (s.ackLatency.getCount() > 0L) {
+            sb.append(String.format(Locale.US, "p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                (double)s.ackLatency.getPercentile(50.0) / 1000.0,
+                (double)s.ackLatency.getPercentile(90.0) / 1000.0,
+                (double)s.ackLatency.getPercentile(99.0) / 1000.0,
+                (double)s.ackLatency.getMaximum()        / 1000.0));
+        } else {
+            sb.append("n/a (protocol does not acknowledge data packets)");
+        }
+        sb.append("\n");
+        sb.append("Connect    : ");
+        sb.append(String.format(Locale.US, "p50 %.2f ms, p99 %.2f ms",
+            (double)s.connectLatency.getPercentile(50.0) / 1000.0,
+            (double)s.connectLatency.getPercentile(99.0) / 1000.0));
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_PROTOCOL[]  = new String[] { "protocol" , "dcs"       , "p"  };
+    private static final String ARG_TRANSPORT[] = new String[] { "transport", "t"                };
+    private static final String ARG_HOST[]      = new String[] { "host"     , "h"                };
+    private static final String ARG_PORT[]      = new String[] { "port"                          };
+    private static final String ARG_URL[]       = new String[] { "url"                           };
+    private static final String ARG_FORMAT[]    = new String[] { "format"                        };
+    private static final String ARG_DEVICES[]   = new String[] { "devices"  , "n"                };
+    private static final String ARG_IMEI[]      = new String[] { "imeiBase" , "imei"             };
+    private static final String ARG_RATE[]      = new String[] { "rate"     , "interval"         };
+    private static final String ARG_STOPPED[]   = new String[] { "stoppedFactor"                 };
+    private static final String ARG_DURATION[]  = new String[] { "duration" , "d"                };
+    private static final String ARG_THREADS[]   = new String[] { "threads"                       };
+    private static final String ARG_TIMEOUT[]   = new String[] { "timeout"                       };
+    private static final String ARG_CHURN[]     = new String[] { "churn"                         };
+    private static final String ARG_BURST[]     = new String[] { "burst"                         };
+    private static final String ARG_BURST_SIZE[]= new String[] { "burstSize"                     };
+    private static final String ARG_LAT[]       = new String[] { "lat"                           };
+    private static final String ARG_LON[]       = new String[] { "lon"                           };
+    private static final String ARG_RADIUS[]    = new String[] { "radius"                        };
+    private static final String ARG_SEED[]      = new String[] { "seed"                          };
+    private static final String ARG_STATUS[]    = new String[] { "status"                        };
+    private static final String ARG_PRINT[]     = new String[] { "print"                         };
+    private static final String ARG_MAX_P99[]   = new String[] { "maxP99Ms"                      };
+    private static final String ARG_MIN_ACK[]   = new String[] { "minAckPct"                     };
+    private static final String ARG_MAX_ERRORS[]= new String[] { "maxErrors"                     };
+
+    private static void usage()
+    {
+        Print.logInfo("Usage:");
+        Print.logInfo("  java ... " + FleetLoadGenerator.class.getName() + " {options}");
+        Print.logInfo("Options:");
+        Print.logInfo("  -protocol=<name>       " + StringTools.join(PROTOCOLS,"|"));
+        Print.logInfo("  -transport=<tcp|udp|http>  Transport (default depends on protocol)");
+        Print.logInfo("  -host=<host>           Server host [localhost]");
+        Print.logInfo("  -port=<port>           Server port (default from 'dcservers.xml', or 8080 for http)");
+        Print.logInfo("  -url=<url>             Full HTTP ingest URL (http only)");
+        Print.logInfo("  -format=<1|9|11>       'template' data format [9]");
+        Print.logInfo("  -devices=<count>       Number of simulated devices [1000]");
+        Print.logInfo("  -imeiBase=<id>         Mobile-ID of the first device [350000001000000]");
+        Print.logInfo("  -rate=<sec>            Report interval while moving [30]");
+        Print.logInfo("  -stoppedFactor=<n>     Report interval multiplier while stopped [4]");
+        Print.logInfo("  -duration=<sec>        Test duration [60]");
+        Print.logInfo("  -threads=<count>       Sender threads [64]");
+        Print.logInfo("  -timeout=<ms>          Connect/ACK timeout [10000]");
+        Print.logInfo("  -churn=<prob>          Per-report reconnect probability [0]");
+        Print.logInfo("  -burst=<prob>          Per-report probability of going offline [0]");
+        Print.logInfo("  -burstSize=<count>     Reports buffered while offline, then uploaded [20]");
+        Print.logInfo("  -lat=<deg> -lon=<deg> -radius=<km>  Starting area [39.0/-104.9, 25]");
+        Print.logInfo("  -seed=<long>           Random seed [1]");
+        Print.logInfo("  -status=<sec>          Status line interval [10]");
+        Print.logInfo("  -print=<count>         Print sample packets and exit");
+        Print.logInfo("  -maxP99Ms=<ms>         Fail if the ACK latency p99 exceeds this value");
+        Print.logInfo("  -minAckPct=<pct>       Fail if fewer than this percentage of packets were ACKed");
+        Print.logInfo("  -maxErrors=<count>     Fail if more than this number of send errors occurred");
+        System.exit(1);
+    }
+
+    /**
+    *** Main entry point
+    *** @param argv  The command-line arguments
+    **/
+    public static void main(String argv[])
+    {
+        RTConfig.setCommandLineArgs(argv);
+
+        /* protocol */
+        String protocol = RTConfig.getString(ARG_PROTOCOL, "");
+        PacketEncoder encoder = GetPacketEncoder(protocol, RTConfig.getInt(ARG_FORMAT,9));
+        if (encoder == null) {
+            Print.logError("Missing/Invalid protocol: " + protocol);
+            usage();
+        }
+
+        /* transport */
+        int transport = RTConfig.hasProperty(ARG_TRANSPORT)?
+            ParseTransport(RTConfig.getString(ARG_TRANSPORT,"")) : encoder.getDefaultTransport();
+        if (!encoder.supportsTransport(transport)) {
+            Print.logError("Transport not supported by '" + encoder.getName() + "': " + RTConfig.getString(ARG_TRANSPORT,""));
+            usage();
+        }
+
+        /* print sample packets */
+        if (RTConfig.hasProperty(ARG_PRINT)) {
+            FleetLoadGenerator flg = new FleetLoadGenerator(encoder, transport, "localhost", 1);
+            SimDevice dev = flg.new SimDevice(0, String.valueOf(RTConfig.getLong(ARG_IMEI,350000001000000L)), RTConfig.getLong(ARG_SEED,1L));
+            long now = DateTime.getCurrentTimeSec();
+            int count = RTConfig.getInt(ARG_PRINT,3);
+            for (int i = 0; i < count; i++) {
+                byte b[] = encoder.encode(dev, dev._nextFix(now + (i * 30L)));
+                int len = b.length;
+                while ((len > 0) && (b[len - 1] == 0x00)) { len--; } // terminator
+                if (StringTools.isPrintableASCII(b, 0, len, true)) {
+                    Print.sysPrintln(StringTools.toStringValue(b,0,len).trim());
+                } else {
+                    Print.sysPrintln("0x" + StringTools.toHexString(b));
+                }
+            }
+            System.exit(0);
+        }
+
+        /* host/port */
+        String host = RTConfig.getString(ARG_HOST, "localhost");
+        int    port = RTConfig.getInt(ARG_PORT, 0);
+        if (port <= 0) {
+            if (transport == TRANSPORT_HTTP) {
+                port = 8080;
+            } else {
+                port = GetDefaultPort(encoder.getName(), transport);
+            }
+        }
+        if ((port <= 0) && !RTConfig.hasProperty(ARG_URL)) {
+            Print.logError("Server port not specified");
+            usage();
+        }
+
+        /* simulation */
+        FleetLoadGenerator flg = new FleetLoadGenerator(encoder, transport, host, port);
+        flg.setHttpURL(RTConfig.getString(ARG_URL,null));
+        flg.setArea(new GeoPoint(RTConfig.getDouble(ARG_LAT,39.0), RTConfig.getDouble(ARG_LON,-104.9)), RTConfig.getDouble(ARG_RADIUS,25.0));
+        flg.setReportInterval((long)(RTConfig.getDouble(ARG_RATE,30.0) * 1000.0), RTConfig.getLong(ARG_STOPPED,4L));
+        flg.setAckTimeoutMS(RTConfig.getLong(ARG_TIMEOUT,10000L));
+        flg.setChurn(RTConfig.getDouble(ARG_CHURN,0.0));
+        flg.setBurst(RTConfig.getDouble(ARG_BURST,0.0), RTConfig.getInt(ARG_BURST_SIZE,20));
+        try {
+            flg.run(
+                RTConfig.getInt(ARG_DEVICES, 1000),
+                RTConfig.getLong(ARG_IMEI, 350000001000000L),
+                RTConfig.getInt(ARG_THREADS, 64),
+                RTConfig.getLong(ARG_DURATION, 60L) * 1000L,
+                RTConfig.getLong(ARG_STATUS, 10L) * 1000L,
+                RTConfig.getLong(ARG_SEED, 1L));
+        } catch (InterruptedException ie) {
+            Print.logWarn("Interrupted");
+        }
+        Print.sysPrintln(flg.getSummary());
+
+        /* pass/fail */
+        Stats s = flg.getStats();
+        int exit = 0;
+        if (RTConfig.hasProperty(ARG_MAX_P99)) {
+            double p99 = (double)s.ackLatency.getPercentile(99.0) / 1000.0;
+            if (p99 > RTConfig.getDouble(ARG_MAX_P99,0.0)) {
+                Print.logError("FAILED: ACK latency p99 " + p99 + " ms exceeds " + RTConfig.getDouble(ARG_MAX_P99,0.0) + " ms");
+                exit = 1;
+            }
+        }
+        if (RTConfig.hasProperty(ARG_MIN_ACK)) {
+            if (s.getAckPercent() < RTConfig.getDouble(ARG_MIN_ACK,0.0)) {
+                Print.logError("FAILED: ACK rate " + s.getAckPercent() + "% below " + RTConfig.getDouble(ARG_MIN_ACK,0.0) + "%");
+                exit = 1;
+            }
+        }
+        if (RTConfig.hasProperty(ARG_MAX_ERRORS)) {
+            if (s.errors.get() > RTConfig.getLong(ARG_MAX_ERRORS,0L)) {
+                Print.logError("FAILED: " + s.errors.get() + " send errors");
+                exit = 1;
+            }
+        }
+        System.exit(exit);
+
+    }
+
+    /**
+    *** Returns the first configured port of the named DCServer, or 0 if unavailable
+    **/
+    private static int GetDefaultPort(String name, int transport)
+    {
+        try {
+            org.opengts.db.DCServerConfig dcs = org.opengts.db.DCServerFactory.getServerConfig(name, false);
+            int ports[] = (dcs == null)? null :
+                (transport == TRANSPORT_UDP)? dcs.getUdpPorts() : dcs.getTcpPorts();
+            return ListTools.isEmpty(ports)? 0 : ports[0];
+        } catch (Throwable th) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,590 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Asynchronous log-file writer used by 'Print' when "log.async.enable" is true.
+//  Logging threads place records in a bounded lock-free ring buffer, and a single
+//  writer thread formats and writes them in batches, keeping the log file open
+//  and performing size/time based rotation (optionally gzipping rotated files).
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.zip.*;
+
+/**
+*** Asynchronous log-file writer
+**/
+
+public class AsyncLogWriter
+    implements Runnable
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String OVERFLOW_DROP           = "drop";   // drop new records when full
+    public  static final String OVERFLOW_BLOCK          = "block";  // wait for space when full
+
+    private static final int    DFT_QUEUE_SIZE          = 8192;
+    private static final int    MIN_QUEUE_SIZE          = 64;
+    private static final int    MAX_BATCH_SIZE          = 512;
+    private static final long   IDLE_WAIT_MS            = 500L;
+    private static final int    OUTPUT_BUFFER_SIZE      = 64 * 1024;
+
+    // ------------------------------------------------------------------------
+
+    private static final Object         instanceLock    = new Object();
+    private static volatile int         instanceState   = -1; // -1=unknown, 0=disabled, 1=running
+    private static AsyncLogWriter       instance        = null;
+    private static boolean              instanceInit    = false;
+
+    private static final AtomicLong     droppedCount    = new AtomicLong(0L);
+
+    /**
+    *** Returns the running asynchronous log writer, or null if asynchronous
+    *** logging is disabled (or not applicable to the current log output)
+    *** @return The AsyncLogWriter, or null
+    **/
+    public static AsyncLogWriter getInstance()
+    {
+        int state = instanceState;
+        if (state == 1) {
+            return instance;
+        } else
+        if (state == 0) {
+            return null;
+        } else
+        if (!RTConfig.isInitialized()) {
+            return null;
+        }
+        synchronized (instanceLock) {
+            if ((instanceState >= 0) || instanceInit) {
+                // already initialized, or recursive call during initialization
+                return (instanceState == 1)? instance : null;
+            }
+            instanceInit = true;
+            try {
+                File logFile = null;
+                if (!RTConfig.getBoolean(RTKey.LOG_ASYNC_ENABLE,false)) {
+                    // async logging not enabled
+                } else
+                if (Print.hasLogPrintStream()) {
+                    // log output is redirected
+                } else
+                if ((logFile = Print.getLogFile()) == null) {
+                    // not logging to a file
+                } else {
+                    int    qSize    = RTConfig.getInt(RTKey.LOG_ASYNC_QUEUE_SIZE, DFT_QUEUE_SIZE);
+                    String overflow = RTConfig.getString(RTKey.LOG_ASYNC_OVERFLOW, OVERFLOW_DROP);
+                    instance = new AsyncLogWriter(logFile, qSize, OVERFLOW_BLOCK.equalsIgnoreCase(overflow));
+                    instance.start();
+                    final AsyncLogWriter alw = instance;
+                    Metrics.RegisterGauge("log.async.queue", new Metrics.Gauge() {
+                        public long getValue() { return alw.getQueueSize(); }
+                    });
+                    Metrics.RegisterGauge("log.async.dropped", new Metrics.Gauge() {
+                        public long getValue() { return droppedCount.get(); }
+                    });
+                }
+                instanceState = (instance != null)? 1 : 0;
+            } finally {
+                instanceInit = false;
+            }
+            return instance;
+        }
+    }
+
+    /**
+    *** Stops any running asynchronous log writer (after writing all queued records).
+    *** The log writer will be re-initialized on the next logged message.
+    **/
+    public static void resetInstance()
+    {
+        AsyncLogWriter alw = null;
+        synchronized (instanceLock) {
+            alw = instance;
+            instance = null;
+            instanceState = -1;
+        }
+        if (alw != null) {
+            alw.shutdown(5000L);
+        }
+    }
+
+    /**
+    *** Writes all currently queued log records
+    *** @param timeoutMS  The maximum time to wait (in milliseconds)
+    **/
+    public static void flushInstance(long timeoutMS)
+    {
+        AsyncLogWriter alw = (instanceState == 1)? instance : null;
+        if (alw != null) {
+            alw.flush(timeoutMS);
+        }
+    }
+
+    /**
+    *** Returns the number of log records dropped because the queue was full
+    *** @return The number of dropped log records
+    **/
+    public static long GetDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified format arguments are immutable, and may be
+    *** formatted later on the writer thread
+    **/
+    private static boolean _isImmutable(Object args[])
+    {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                Object a = args[i];
+                if ((a == null)               ||
+                    (a instanceof String)     ||
+                    ((a instanceof Number) && !(a instanceof AtomicLong) && !(a instanceof AtomicInteger)) ||
+                    (a instanceof Boolean)    ||
+                    (a instanceof Character)  ||
+                    (a instanceof Enum)         ) {
+                    continue;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    *** Log record
+    **/
+    private static class Record
+    {
+        public int      level   = 0;
+        public long     timeMS  = 0L;
+        public boolean  header  = false;
+        public String   frame   = null;
+        public String   message = null;
+        public Object   args[]  = null;
+        public Record(int level, boolean header, String frame, String msg, Object args[]) {
+            this.level   = level;
+            this.timeMS  = System.currentTimeMillis();
+            this.header  = header;
+            this.frame   = frame;
+            if ((args != null) && (args.length > 0) && !_isImmutable(args)) {
+                // format now, the arguments may change before the writer gets to them
+                this.message = Print._formatLogText(msg, args);
+                this.args    = null;
+            } else {
+                this.message = msg;
+                this.args    = args;
+            }
+        }
+        public String format() {
+            return Print._formatLogMessage(this.level, this.header, this.timeMS, this.frame, this.message, this.args);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private File                        logFile         = null;
+    private boolean                     blockOnFull     = false;
+
+    /* ring buffer (multiple producers, single consumer) */
+    private int                         mask            = 0;
+    private AtomicReferenceArray<Record> slots          = null;
+    private AtomicLongArray             sequence        = null;
+    private AtomicLong                  tail            = new AtomicLong(0L); // next put position
+    private long                        head            = 0L;                 // next take position (writer only)
+    private AtomicLong                  taken           = new AtomicLong(0L); // records written
+
+    private volatile boolean            writerWaiting   = false;
+    private volatile boolean            stopped         = false;
+    private Thread                      writerThread    = null;
+
+    /* output (writer only) */
+    private OutputStream                output          = null;
+    private long                        outputSize      = 0L;
+    private long                        openTimeMS      = 0L;
+    private long                        droppedReported = 0L;
+
+    /**
+    *** Constructor
+    *** @param logFile      The output log file
+    *** @param queueSize    The maximum number of queued log records (rounded up to a power of 2)
+    *** @param blockOnFull  True to wait for space when the queue is full, false to drop the record
+    **/
+    public AsyncLogWriter(File logFile, int queueSize, boolean blockOnFull)
+    {
+        int cap = MIN_QUEUE_SIZE;
+        while ((cap < queueSize) && (cap < (1 << 20))) { cap <<= 1; }
+        this.logFile     = logFile;
+        this.blockOnFull = blockOnFull;
+        this.mask        = cap - 1;
+        this.slots       = new AtomicReferenceArray<Record>(cap);
+        this.sequence    = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) {
+            this.sequence.set(i, (long)i);
+        }
+        this.droppedReported = droppedCount.get(); // dropped by a previous writer
+    }
+
+    /**
+    *** Starts the writer thread
+    **/
+    public void start()
+    {
+        this.writerThread = new Thread(this, "AsyncLogWriter");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        final AsyncLogWriter alw = this;
+        Runtime.getRuntime().addShutdownHook(new Thread("AsyncLogWriter.shutdown") {
+            public void run() {
+                alw.shutdown(5000L);
+            }
+        });
+    }
+
+    /**
+    *** Stops the writer thread after writing all queued records
+    *** @param timeoutMS  The maximum time to wait (in milliseconds)
+    **/
+    public void shutdown(long timeoutMS)
+    {
+        this.stopped = true;
+        Thread wt = this.writerThread;
+        if ((wt != null) && (wt != Thread.currentThread())) {
+            LockSupport.unpark(wt);
+            try {
+                wt.join(timeoutMS);
+            } catch (InterruptedException ie) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+    *** Waits until all currently queued records have been written
+    *** @param timeoutMS  The maximum time to wait (in milliseconds)
+    **/
+    public void flush(long timeoutMS)
+    {
+        long target   = this.tail.get();
+        long expireMS = System.currentTimeMillis() + timeoutMS;
+        while ((this.taken.get() < target) && this.writerThread.isAlive() &&
+            (System.currentTimeMillis() < expireMS)) {
+            LockSupport.unpark(this.writerThread);
+            LockSupport.parkNanos(1000000L); // 1ms
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Queues a log message
+    *** @param level   The log level
+    *** @param header  True to include the log header
+    *** @param frame   The caller stack frame (null if not included)
+    *** @param msg     The message (or message format)
+    *** @param args    The optional message format arguments
+    *** @return False if the writer is not running and the message must be written directly
+    **/
+    public boolean log(int level, boolean header, String frame, String msg, Object args[])
+    {
+        if (this.stopped || (Thread.currentThread() == this.writerThread)) {
+            return false;
+        }
+        Record rec = new Record(level, header, frame, msg, args);
+        for (int spin = 0; !this._offer(rec); spin++) {
+            Thread wt = this.writerThread;
+            if (!this.blockOnFull && (level > Print.LOG_ERROR)) {
+                // drop (errors are never dropped)
+                droppedCount.incrementAndGet();
+                return true;
+            } else
+            if (this.stopped || (wt == null) || !wt.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(wt);
+            if (spin < 16) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(100000L); // 0.1ms
+            }
+        }
+        if (this.writerWaiting) {
+            LockSupport.unpark(this.writerThread);
+        }
+        return true;
+    }
+
+    /**
+    *** Places the record in the ring buffer
+    *** @return False if the buffer is full
+    **/
+    private boolean _offer(Record rec)
+    {
+        for (;;) {
+            long pos = this.tail.get();
+            int  ndx = (int)pos & this.mask;
+            long dif = this.sequence.get(ndx) - pos;
+            if (dif == 0L) {
+                if (this.tail.compareAndSet(pos, pos + 1L)) {
+                    this.slots.set(ndx, rec);
+                    this.sequence.set(ndx, pos + 1L); // publish
+                    return true;
+                }
+            } else
+            if (dif < 0L) {
+                return false; // full
+            }
+        }
+    }
+
+    /**
+    *** Removes the next record from the ring buffer (writer thread only)
+    *** @return The next record, or null if the buffer is empty
+    **/
+    private Record _poll()
+    {
+        int ndx = (int)this.head & this.mask;
+        if (this.sequence.get(ndx) != (this.head + 1L)) {
+            return null; // empty, or not yet published
+        }
+        Record rec = this.slots.get(ndx);
+        this.slots.set(ndx, null);
+        this.sequence.set(ndx, this.head + this.mask + 1L); // release slot
+        this.head++;
+        return rec;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writer thread
+    **/
+    public void run()
+    {
+        for (;;) {
+            int count = 0;
+            try {
+                count = this._writeBatch();
+            } catch (Throwable th) {
+                Print.sysPrintln("[AsyncLogWriter] Unexpected exception: " + th);
+            }
+            if (count > 0) {
+                continue;
+            } else
+            if (this.stopped) {
+                break;
+            }
+            this.writerWaiting = true;
+            if (this.sequence.get((int)this.head & this.mask) != (this.head + 1L)) {
+                LockSupport.parkNanos(IDLE_WAIT_MS * 1000000L);
+            }
+            this.writerWaiting = false;
+            this._checkRotate();
+        }
+        while (this._writeBatch() > 0) {
+            // write records queued while stopping
+        }
+        this._closeOutput();
+    }
+
+    /**
+    *** Writes the next batch of records (writer thread only)
+    *** @return The number of records written
+    **/
+    private int _writeBatch()
+    {
+
+        /* dropped records */
+        long dropped = droppedCount.get();
+        if (dropped > this.droppedReported) {
+            long delta = dropped - this.droppedReported;
+            this.droppedReported = dropped;
+            this._write(Print._formatLogMessage(Print.LOG_WARN, true, System.currentTimeMillis(), null,
+                "Async log queue full, dropped " + delta + " log record(s)", null));
+        }
+
+        /* write records */
+        int count = 0;
+        for (; count < MAX_BATCH_SIZE; count++) {
+            Record rec = this._poll();
+            if (rec == null) {
+                break;
+            }
+            this._write(rec.format());
+        }
+
+        /* flush */
+        if (count > 0) {
+            if (this.output != null) {
+                try {
+                    this.output.flush();
+                } catch (IOException ioe) {
+                    Print.sysPrintln("[AsyncLogWriter] Unable to write log file: " + ioe);
+                    this._closeOutput();
+                }
+            }
+            this.taken.addAndGet(count);
+            this._checkRotate();
+        }
+        return count;
+
+    }
+
+    /**
+    *** Writes the formatted log message (writer thread only)
+    **/
+    private void _write(String logMsg)
+    {
+        byte d[] = StringTools.getBytes(logMsg);
+        OutputStream out = this._getOutput();
+        if (out != null) {
+            try {
+                out.write(d);
+                this.outputSize += d.length;
+                return;
+            } catch (IOException ioe) {
+                Print.sysPrintln("[AsyncLogWriter] Unable to write log file: " + ioe);
+                this._closeOutput();
+            }
+        }
+        PrintStream err = System.err;
+        err.print(logMsg); // [OUTPUT]
+        err.flush();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the open log file OutputStream (writer thread only)
+    **/
+    private OutputStream _getOutput()
+    {
+        if (this.output == null) {
+            try {
+                this.output     = new BufferedOutputStream(new FileOutputStream(this.logFile,true), OUTPUT_BUFFER_SIZE);
+                this.outputSize = this.logFile.length();
+                this.openTimeMS = System.currentTimeMillis();
+            } catch (IOException ioe) {
+                Print.sysPrintln("[AsyncLogWriter] Unable to open log file: " + this.logFile + " [" + ioe + "]");
+                this.output = null;
+            }
+        }
+        return this.output;
+    }
+
+    /**
+    *** Closes the log file OutputStream (writer thread only)
+    **/
+    private void _closeOutput()
+    {
+        if (this.output != null) {
+            try {
+                this.output.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+            this.output = null;
+        }
+    }
+
+    /**
+    *** Rotates the log file if the maximum size, or rotation interval, has been
+    *** reached (writer thread only)
+    **/
+    private void _checkRotate()
+    {
+        if (this.output == null) {
+            return;
+        }
+        long maxSize  = Print.getRotateLogFileSize();
+        long interval = Print.getRotateIntervalSec() * 1000L;
+        boolean rotate = false;
+        if ((maxSize > 0L) && (this.outputSize > maxSize)) {
+            rotate = true;
+        } else
+        if ((interval > 0L) && ((System.currentTimeMillis() - this.openTimeMS) >= interval)) {
+            rotate = true;
+        }
+        if (rotate) {
+            this._closeOutput();
+            File bkuFile = Print._rotateLogFile(this.logFile);
+            if ((bkuFile != null) && RTConfig.getBoolean(RTKey.LOG_FILE_ROTATE_GZIP,false)) {
+                AsyncLogWriter._gzipFile(bkuFile);
+            }
+            // reopened on next write
+        }
+    }
+
+    /**
+    *** Compresses the specified file, replacing it with a ".gz" file
+    **/
+    private static void _gzipFile(File file)
+    {
+        File gzFile = new File(file.getPath() + ".gz");
+        InputStream  fis = null;
+        OutputStream gos = null;
+        boolean ok = false;
+        try {
+            fis = new FileInputStream(file);
+            gos = new GZIPOutputStream(new FileOutputStream(gzFile), OUTPUT_BUFFER_SIZE);
+            byte buf[] = new byte[OUTPUT_BUFFER_SIZE];
+            for (int len; (len = fis.read(buf)) >= 0;) {
+                gos.write(buf, 0, len);
+            }
+            ok = true;
+        } catch (IOException ioe) {
+            Print.sysPrintln("[AsyncLogWriter] Unable to gzip rotated log file: " + file + " [" + ioe + "]");
+        } finally {
+            if (fis != null) { try { fis.close(); } catch (IOException ioe) {/*ignore*/} }
+            if (gos != null) { try { gos.close(); } catch (IOException ioe) { ok = false; } }
+        }
+        if (ok) {
+            gzFile.setLastModified(file.lastModified());
+            file.delete();
+        } else {
+            gzFile.delete();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the number of records currently queued
+    *** @return The number of records currently queued
+    **/
+    public long getQueueSize()
+    {
+        return this.tail.get() - this.taken.get();
+    }
+
+}
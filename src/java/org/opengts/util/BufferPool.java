@@ -0,0 +1,194 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Shared pool of reusable byte buffers
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+*** Shared pool of reusable byte buffers.<br>
+*** Buffers are grouped into power-of-two size classes.  A buffer obtained from
+*** <code>borrow(...)</code> is at least as large as the requested length (and may be
+*** larger), and should be returned to the pool with <code>release(...)</code> once the
+*** caller no longer references it.  Buffers which are not released are simply garbage
+*** collected.
+**/
+
+public class BufferPool
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    MIN_CLASS_SHIFT         = 6;    // 64 bytes
+    private static final int    MAX_CLASS_SHIFT         = 20;   // 1Mb
+    private static final int    DFT_MAX_PER_CLASS       = 64;
+
+    // ------------------------------------------------------------------------
+
+    private static BufferPool   sharedPool              = null;
+
+    /**
+    *** Gets the shared global BufferPool instance
+    *** @return The shared BufferPool
+    **/
+    public static BufferPool getSharedPool()
+    {
+        if (sharedPool == null) {
+            synchronized (BufferPool.class) {
+                if (sharedPool == null) {
+                    sharedPool = new BufferPool(DFT_MAX_PER_CLASS);
+                }
+            }
+        }
+        return sharedPool;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the size-class index for the specified length
+    **/
+    private static int _classIndex(int len)
+    {
+        int shift = MIN_CLASS_SHIFT;
+        while ((shift < MAX_CLASS_SHIFT) && ((1 << shift) < len)) {
+            shift++;
+        }
+        return shift - MIN_CLASS_SHIFT;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private ArrayDeque<byte[]>  freeList[]      = null;
+    private int                 maxPerClass     = DFT_MAX_PER_CLASS;
+
+    private AtomicLong          borrowCount     = new AtomicLong(0L);
+    private AtomicLong          allocCount      = new AtomicLong(0L);
+
+    /**
+    *** Constructor
+    *** @param maxPerClass  The maximum number of idle buffers retained per size class
+    **/
+    @SuppressWarnings("unchecked")
+    public BufferPool(int maxPerClass)
+    {
+        int classCount = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+        this.freeList = (ArrayDeque<byte[]>[])new ArrayDeque<?>[classCount];
+        for (int i = 0; i < classCount; i++) {
+            this.freeList[i] = new ArrayDeque<byte[]>();
+        }
+        this.maxPerClass = (maxPerClass > 0)? maxPerClass : DFT_MAX_PER_CLASS;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Obtains a buffer of at least the specified length
+    *** @param minLen  The minimum required buffer length
+    *** @return A buffer of at least 'minLen' bytes (contents undefined)
+    **/
+    public byte[] borrow(int minLen)
+    {
+        if (minLen < 0) { minLen = 0; }
+        this.borrowCount.incrementAndGet();
+
+        /* larger than largest size class */
+        if (minLen > (1 << MAX_CLASS_SHIFT)) {
+            this.allocCount.incrementAndGet();
+            return new byte[minLen];
+        }
+
+        /* from pool */
+        int ndx = _classIndex(minLen);
+        ArrayDeque<byte[]> list = this.freeList[ndx];
+        synchronized (list) {
+            byte b[] = list.pollFirst();
+            if (b != null) {
+                return b;
+            }
+        }
+
+        /* allocate new */
+        this.allocCount.incrementAndGet();
+        return new byte[1 << (ndx + MIN_CLASS_SHIFT)];
+
+    }
+
+    /**
+    *** Returns a previously borrowed buffer to the pool
+    *** @param b  The buffer to return (ignored if null, or not a pooled size)
+    **/
+    public void release(byte b[])
+    {
+        if ((b == null) || (b.length > (1 << MAX_CLASS_SHIFT))) {
+            return;
+        }
+        int ndx = _classIndex(b.length);
+        if (b.length != (1 << (ndx + MIN_CLASS_SHIFT))) {
+            return; // not allocated by this pool
+        }
+        ArrayDeque<byte[]> list = this.freeList[ndx];
+        synchronized (list) {
+            if (list.size() < this.maxPerClass) {
+                list.addFirst(b);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of buffers requested from this pool
+    *** @return The number of 'borrow' calls
+    **/
+    public long getBorrowCount()
+    {
+        return this.borrowCount.get();
+    }
+
+    /**
+    *** Gets the number of buffers which had to be newly allocated
+    *** @return The number of new buffer allocations
+    **/
+    public long getAllocationCount()
+    {
+        return this.allocCount.get();
+    }
+
+    /**
+    *** Returns a String representation of this instance
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("BufferPool: borrowed=").append(this.getBorrowCount());
+        sb.append(" allocated=").append(this.getAllocationCount());
+        return sb.toString();
+    }
+
+}
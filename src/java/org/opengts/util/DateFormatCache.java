@@ -0,0 +1,263 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Per-thread cache of date/time formatters, keyed by (pattern, TimeZone, Locale).
+//  Formatting output is identical to a newly created 'SimpleDateFormat'.
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.text.*;
+
+/**
+*** Per-thread cache of date/time formatters.<br>
+*** 'SimpleDateFormat' instances are not thread-safe, and are expensive to create (the
+*** pattern is parsed, and a Calendar and DateFormatSymbols are created, on each
+*** construction).  This cache retains one formatter per thread for each recently used
+*** (pattern, TimeZone, Locale) combination.  In addition, each cached formatter retains
+*** its last formatted result, which is reused when the next time formats to the same
+*** text: the same second (for patterns without milliseconds), or the same local day
+*** (for date-only patterns, using the cached day start/end boundaries).
+**/
+
+public class DateFormatCache
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    MAX_FORMATTERS_PER_THREAD   = 48;
+
+    /* pattern letters which do not change within a single (local) day */
+    private static final String DAY_PATTERN_LETTERS         = "GyYMLwWDdFEu";
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Cached formatter
+    **/
+    private static class Formatter
+    {
+
+        private SimpleDateFormat    sdf             = null;
+        private Calendar            calendar        = null;
+        private boolean             dayOnly         = false;    // pattern has date fields only
+        private boolean             hasMillis       = false;    // pattern has 'S'
+
+        private long                lastFrom        = 1L;       // cached text valid from (inclusive)
+        private long                lastTo          = 0L;       // cached text valid to (exclusive)
+        private String              lastText        = null;
+
+        private java.util.Date      date            = new java.util.Date(0L);
+        private FieldPosition       fieldPos        = new FieldPosition(0);
+
+        public Formatter(String pattern, TimeZone tz, Locale loc) {
+            // may throw IllegalArgumentException
+            this.sdf = (loc != null)? new SimpleDateFormat(pattern, loc) : new SimpleDateFormat(pattern);
+            this.sdf.setTimeZone(tz);
+            this.calendar  = Calendar.getInstance(tz);
+            this.dayOnly   = DateFormatCache._isDayPattern(pattern);
+            this.hasMillis = DateFormatCache._hasPatternLetter(pattern, 'S');
+        }
+
+        public String format(long timeMS) {
+
+            /* same as last result? */
+            if ((this.lastText != null) && (timeMS >= this.lastFrom) && (timeMS < this.lastTo)) {
+                return this.lastText;
+            }
+
+            /* format */
+            StringBuffer sb = new StringBuffer();
+            this.date.setTime(timeMS);
+            this.fieldPos.setBeginIndex(0);
+            this.fieldPos.setEndIndex(0);
+            this.sdf.format(this.date, sb, this.fieldPos);
+            String text = sb.toString();
+
+            /* range over which this text remains valid */
+            if (this.dayOnly) {
+                // the day end is the start of the next local day (not dayStart + 1 day, which
+                // is wrong where a DST transition occurs at midnight and 00:00 does not exist)
+                long dayStart = this._getDayStart(timeMS, 0);
+                long dayEnd   = this._getDayStart(timeMS, 1);
+                if ((dayStart <= timeMS) && (timeMS < dayEnd) &&
+                    this._isSameDay(dayStart, timeMS) && this._isSameDay(dayEnd - 1L, timeMS) &&
+                    !this._isSameDay(dayEnd, timeMS)) {
+                    this.lastFrom = dayStart;
+                    this.lastTo   = dayEnd;
+                } else {
+                    // (unusual zone transition) do not cache
+                    this.lastFrom = 1L;
+                    this.lastTo   = 0L;
+                }
+            } else
+            if (!this.hasMillis) {
+                long secStart = (timeMS >= 0L)? ((timeMS / 1000L) * 1000L) : ((((timeMS + 1L) / 1000L) - 1L) * 1000L);
+                this.lastFrom = secStart;
+                this.lastTo   = secStart + 1000L;
+            } else {
+                this.lastFrom = timeMS;
+                this.lastTo   = timeMS + 1L;
+            }
+            this.lastText = text;
+            return text;
+
+        }
+
+        /* first instant of the local day 'addDays' after the day containing 'timeMS' */
+        private long _getDayStart(long timeMS, int addDays) {
+            this.calendar.setTimeInMillis(timeMS);
+            if (addDays != 0) {
+                this.calendar.add(Calendar.DAY_OF_MONTH, addDays);
+            }
+            this.calendar.set(Calendar.HOUR_OF_DAY, 0); // (lenient) a skipped 00:00 becomes the first valid time
+            this.calendar.set(Calendar.MINUTE     , 0);
+            this.calendar.set(Calendar.SECOND     , 0);
+            this.calendar.set(Calendar.MILLISECOND, 0);
+            return this.calendar.getTimeInMillis();
+        }
+
+        /* true if both times fall on the same local day */
+        private boolean _isSameDay(long t1, long t2) {
+            this.calendar.setTimeInMillis(t1);
+            int y1 = this.calendar.get(Calendar.YEAR), d1 = this.calendar.get(Calendar.DAY_OF_YEAR);
+            this.calendar.setTimeInMillis(t2);
+            return (y1 == this.calendar.get(Calendar.YEAR)) && (d1 == this.calendar.get(Calendar.DAY_OF_YEAR));
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified pattern contains the specified (unquoted) letter
+    **/
+    private static boolean _hasPatternLetter(String pattern, char letter)
+    {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if (ch == '\'') {
+                quoted = !quoted;
+            } else
+            if (!quoted && (ch == letter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    *** Returns true if the specified pattern contains only (unquoted) date fields whose
+    *** value does not change within a single local day
+    **/
+    private static boolean _isDayPattern(String pattern)
+    {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if (ch == '\'') {
+                quoted = !quoted;
+            } else
+            if (!quoted && (((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')))) {
+                if (DAY_PATTERN_LETTERS.indexOf(ch) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static ThreadLocal<Map<String,Formatter>> threadFormatters = new ThreadLocal<Map<String,Formatter>>() {
+        protected Map<String,Formatter> initialValue() {
+            return new LinkedHashMap<String,Formatter>(16, 0.75F, true) {
+                protected boolean removeEldestEntry(Map.Entry<String,Formatter> eldest) {
+                    return (this.size() > MAX_FORMATTERS_PER_THREAD);
+                }
+            };
+        }
+    };
+
+    /**
+    *** Gets the cached formatter for the current thread
+    *** @throws IllegalArgumentException if the pattern is invalid
+    **/
+    private static Formatter _getFormatter(String pattern, TimeZone tz, Locale loc)
+    {
+        Locale fmtLoc = (loc != null)? loc : Locale.getDefault(Locale.Category.FORMAT);
+        StringBuffer key = new StringBuffer(pattern.length() + 32);
+        key.append(tz.getID()).append('|').append(tz.getRawOffset()).append('|');
+        key.append(fmtLoc.toString()).append('|').append(pattern);
+        String k = key.toString();
+        Map<String,Formatter> fmtMap = threadFormatters.get();
+        Formatter f = fmtMap.get(k);
+        if (f == null) {
+            f = new Formatter(pattern, tz, loc); // may throw IllegalArgumentException
+            fmtMap.put(k, f);
+        }
+        return f;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Formats the specified time, using the default format Locale.  The returned
+    *** value is identical to <code>new SimpleDateFormat(pattern)</code> (with the
+    *** specified TimeZone) formatting the same time.
+    *** @param timeMS   The time to format (milliseconds since the epoch)
+    *** @param tz       The TimeZone (must not be null)
+    *** @param pattern  The SimpleDateFormat pattern (must not be null)
+    *** @return The formatted date/time
+    *** @throws IllegalArgumentException if the pattern is invalid
+    **/
+    public static String format(long timeMS, TimeZone tz, String pattern)
+    {
+        return DateFormatCache._getFormatter(pattern, tz, null).format(timeMS);
+    }
+
+    /**
+    *** Formats the specified time, using the specified Locale
+    *** @param timeMS   The time to format (milliseconds since the epoch)
+    *** @param tz       The TimeZone (must not be null)
+    *** @param pattern  The SimpleDateFormat pattern (must not be null)
+    *** @param loc      The Locale (null for the default format Locale)
+    *** @return The formatted date/time
+    *** @throws IllegalArgumentException if the pattern is invalid
+    **/
+    public static String format(long timeMS, TimeZone tz, String pattern, Locale loc)
+    {
+        return DateFormatCache._getFormatter(pattern, tz, loc).format(timeMS);
+    }
+
+    /**
+    *** Clears the formatters cached by the current thread
+    **/
+    public static void clearThreadCache()
+    {
+        threadFormatters.remove();
+    }
+
+}
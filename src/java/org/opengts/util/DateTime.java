@@ -72,6 +72,8 @@
 //     -Added "parseDateTime" support for parsing delta months/years (ie. "+2m", "-1y", etc)
 //  2013/08/06  Martin D. Flynn
 //     -Fixed NPE in "parseDateTime" (when Epoch time specification is invalid).
+//  2026/10/19
+//     -Date/time formatting now uses cached per-thread formatters (see "DateFormatCache")
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
@@ -3091,8 +3093,6 @@ public class DateTime
 
     // ------------------------------------------------------------------------
 
-    private static SimpleDateFormat simpleFormatter = null;
-
     /**
     *** Returns a String representation of this DateTime instance
     **/
@@ -3106,14 +3106,8 @@ public class DateTime
     **/
     public String toString(TimeZone tmz) 
     {
-        if (simpleFormatter == null) {
-            // eg. "Sun Mar 26 12:38:12 PST 2006"
-            simpleFormatter = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
-        }
-        synchronized (simpleFormatter) {
-            simpleFormatter.setTimeZone(this._timeZone(tmz));
-            return simpleFormatter.format(this.getDate());
-        }
+        // eg. "Sun Mar 26 12:38:12 PST 2006"
+        return DateFormatCache.format(this.getTimeMillis(), this._timeZone(tmz), "EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
     }
 
     // ------------------------------------------------------------------------
@@ -3127,18 +3121,8 @@ public class DateTime
     **/
     public static String format(java.util.Date date, TimeZone tz, String dtFmt)
     {
-        StringBuffer sb = new StringBuffer();
-        SimpleDateFormat sdf = null;
-        try {
-            String f = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
-            sdf = new SimpleDateFormat(f);
-        } catch (IllegalArgumentException iae) {
-            Print.logException("Invalid date/time format: " + dtFmt, iae);
-            sdf = new SimpleDateFormat(DEFAULT_DATETIME_FORMAT); // assumed to be valid
-        }
-        sdf.setTimeZone((tz != null)? tz : DateTime.getDefaultTimeZone()); 
-        sdf.format(date, sb, new FieldPosition(0));
-        return sb.toString();
+        TimeZone tmz = (tz != null)? tz : DateTime.getDefaultTimeZone();
+        return DateTime._format(date.getTime(), tmz, dtFmt);
     }
 
     /** 
@@ -3151,17 +3135,26 @@ public class DateTime
     public String format(String dtFmt, TimeZone tz, StringBuffer sb)
     {
         if (sb == null) { sb = new StringBuffer(); }
-        SimpleDateFormat sdf = null;
+        sb.append(DateTime._format(this.getTimeMillis(), this._timeZone(tz), dtFmt));
+        return sb.toString();
+    }
+
+    /**
+    *** Formats the specified time using a cached (per-thread) formatter
+    *** @param timeMS The time to format (milliseconds)
+    *** @param tz     The TimeZone
+    *** @param dtFmt  The Date/Time format (null for the default format)
+    *** @return The formatted Date/Time String
+    **/
+    private static String _format(long timeMS, TimeZone tz, String dtFmt)
+    {
+        String f = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
         try {
-            String f = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
-            sdf = new SimpleDateFormat(f);
+            return DateFormatCache.format(timeMS, tz, f);
         } catch (IllegalArgumentException iae) {
             Print.logException("Invalid date/time format: " + dtFmt, iae);
-            sdf = new SimpleDateFormat(DEFAULT_DATETIME_FORMAT); // assumed to be valid
+            return DateFormatCache.format(timeMS, tz, DEFAULT_DATETIME_FORMAT); // assumed to be valid
         }
-        sdf.setTimeZone(this._timeZone(tz)); 
-        sdf.format(this.getDate(), sb, new FieldPosition(0));
-        return sb.toString();
     }
 
     /** 
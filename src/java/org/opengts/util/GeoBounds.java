@@ -21,6 +21,8 @@
 //     -Initial release
 //  2011/12/06  Martin D. Flynn
 //     -Added "extendByRadius"
+//  2026/10/19
+//     -Added "containsPoint" (viewport culling)
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
@@ -311,6 +313,38 @@ public class GeoBounds
         }
     }
     
+    /**
+    *** Returns true if the specified point is within this bounds.  If the minimum
+    *** longitude is greater than the maximum longitude, the bounds is assumed to
+    *** cross the +/-180 longitude meridian.
+    *** @param lat  The point latitude
+    *** @param lon  The point longitude
+    *** @return True if the point is within this bounds
+    **/
+    public boolean containsPoint(double lat, double lon)
+    {
+        if ((lat < this.getMinLatitude()) || (lat > this.getMaxLatitude())) {
+            return false;
+        } else
+        if (this.getMinLongitude() <= this.getMaxLongitude()) {
+            return (lon >= this.getMinLongitude()) && (lon <= this.getMaxLongitude());
+        } else {
+            // crosses the +/-180 meridian
+            return (lon >= this.getMinLongitude()) || (lon <= this.getMaxLongitude());
+        }
+    }
+
+    /**
+    *** Returns true if the specified point is within this bounds
+    *** @param gpp  The point
+    *** @return True if the point is within this bounds
+    **/
+    public boolean containsPoint(GeoPointProvider gpp)
+    {
+        GeoPoint gp = (gpp != null)? gpp.getGeoPoint() : null;
+        return (gp != null) && this.containsPoint(gp.getLatitude(), gp.getLongitude());
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -0,0 +1,211 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** Represents a cluster of points which fall within the same grid cell at a map zoom level.<br>
+*** The grid is defined in "Web Mercator" world pixel coordinates (256 pixels per tile at
+*** zoom level 0, doubling at each zoom level), and is anchored at the world origin, so the
+*** cluster to which a point belongs at a given zoom level does not change as the map is
+*** panned.  As the map is zoomed in, the cells become smaller and clusters separate into
+*** smaller clusters and individual points.  Since at most one cluster is returned per cell,
+*** the number of returned clusters depends on the viewport size, not the number of points.
+**/
+
+public class GeoCluster<T extends GeoPointProvider>
+    implements GeoPointProvider
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final int    DFT_CELL_PIXELS     = 64;
+    public  static final int    MIN_ZOOM            = 0;
+    public  static final int    MAX_ZOOM            = 22;
+
+    private static final double TILE_PIXELS         = 256.0;
+    private static final double MAX_LATITUDE        = 85.05112878; // Web Mercator world is square
+
+    /**
+    *** Returns the "Web Mercator" world pixel X coordinate of the specified longitude
+    *** @param lon   The longitude
+    *** @param zoom  The zoom level
+    *** @return The world pixel X coordinate
+    **/
+    public static double getWorldPixelX(double lon, int zoom)
+    {
+        double ws = TILE_PIXELS * (double)(1L << zoom);
+        return ((lon + 180.0) / 360.0) * ws;
+    }
+
+    /**
+    *** Returns the "Web Mercator" world pixel Y coordinate of the specified latitude.
+    *** Latitudes beyond +/-85.0511 (the edge of the square world map) are clamped.
+    *** @param lat   The latitude
+    *** @param zoom  The zoom level
+    *** @return The world pixel Y coordinate
+    **/
+    public static double getWorldPixelY(double lat, int zoom)
+    {
+        double ws  = TILE_PIXELS * (double)(1L << zoom);
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+        return (0.5 - (Math.log((1.0 + sin) / (1.0 - sin)) / (4.0 * Math.PI))) * ws;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Groups the specified points into clusters.  Points with an invalid location, or
+    *** which are outside of the specified viewport, are omitted.
+    *** @param points      The points to cluster
+    *** @param viewport    The viewport bounds (null for no viewport culling)
+    *** @param zoom        The map zoom level
+    *** @param cellPixels  The grid cell size, in pixels
+    *** @return The list of clusters, in order of the first point of each cluster.  Clusters
+    ***         containing a single point are included.
+    **/
+    public static <T extends GeoPointProvider> java.util.List<GeoCluster<T>> createClusters(
+        Collection<T> points, GeoBounds viewport,
+        int zoom, int cellPixels)
+    {
+        int    z    = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        double cell = (cellPixels > 0)? (double)cellPixels : (double)DFT_CELL_PIXELS;
+        Map<Long,GeoCluster<T>> cellMap = new LinkedHashMap<Long,GeoCluster<T>>();
+        if (points != null) {
+            for (T gpp : points) {
+                GeoPoint gp = (gpp != null)? gpp.getGeoPoint() : null;
+                if ((gp == null) || !gp.isValid()) {
+                    continue;
+                }
+                double lat = gp.getLatitude();
+                double lon = gp.getLongitude();
+                if ((viewport != null) && !viewport.containsPoint(lat,lon)) {
+                    continue;
+                }
+                long cx = (long)Math.floor(GeoCluster.getWorldPixelX(lon,z) / cell);
+                long cy = (long)Math.floor(GeoCluster.getWorldPixelY(lat,z) / cell);
+                Long key = new Long((cx << 32) | (cy & 0xFFFFFFFFL));
+                GeoCluster<T> gc = cellMap.get(key);
+                if (gc == null) {
+                    gc = new GeoCluster<T>();
+                    cellMap.put(key, gc);
+                }
+                gc.add(gpp, lat, lon);
+            }
+        }
+        return new Vector<GeoCluster<T>>(cellMap.values());
+    }
+
+    // ------------------------------------------------------------------------
+
+    private java.util.List<T>   members     = new Vector<T>();
+    private GeoBounds           bounds      = new GeoBounds();
+    private double              sumLat      = 0.0;
+    private double              sumLon      = 0.0;
+
+    /**
+    *** Constructor
+    **/
+    public GeoCluster()
+    {
+        super();
+    }
+
+    /**
+    *** Adds a point to this cluster
+    **/
+    private void add(T gpp, double lat, double lon)
+    {
+        this.members.add(gpp);
+        this.bounds.extendByPoint(gpp);
+        this.sumLat += lat;
+        this.sumLon += lon;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of points in this cluster
+    *** @return The number of points
+    **/
+    public int getCount()
+    {
+        return this.members.size();
+    }
+
+    /**
+    *** Returns true if this cluster contains a single point
+    *** @return True if this cluster contains a single point
+    **/
+    public boolean isSinglePoint()
+    {
+        return (this.members.size() == 1);
+    }
+
+    /**
+    *** Gets the points in this cluster
+    *** @return The list of points
+    **/
+    public java.util.List<T> getMembers()
+    {
+        return this.members;
+    }
+
+    /**
+    *** Gets the bounds of the points in this cluster
+    *** @return The cluster bounds
+    **/
+    public GeoBounds getBounds()
+    {
+        return this.bounds;
+    }
+
+    /**
+    *** Gets the cluster center (the average location of the points in this cluster)
+    *** @return The cluster center
+    **/
+    public GeoPoint getGeoPoint()
+    {
+        int n = this.members.size();
+        return (n > 0)? new GeoPoint(this.sumLat / n, this.sumLon / n) : GeoPoint.INVALID_GEOPOINT;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Return a String representation of this GeoCluster
+    *** @return A String representation
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Count:").append(this.getCount());
+        sb.append(",Center:").append(this.getGeoPoint());
+        sb.append(",").append(this.getBounds());
+        return sb.toString();
+    }
+
+}
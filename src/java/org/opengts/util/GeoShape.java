@@ -0,0 +1,490 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Note:
+//  Polygon inclusion is tested as if the points were in a flat 2D plane (see
+//  GeoPolygon).
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** A "compiled" zone shape (point-radius, rectangle, polygon, or corridor), for repeated
+*** point inclusion tests.<br>
+*** The shape vertices are held in primitive <code>double[]</code> arrays, along with a
+*** precomputed bounding box (expanded by the radius) which rejects most points with four
+*** comparisons.  Polygons are additionally divided into horizontal "slabs" at each distinct
+*** vertex latitude, each holding the list of edges which span the slab, so that a point
+*** inclusion test is a binary search for the slab followed by a winding-number test over
+*** only the edges of that slab (rather than every edge of the polygon).  The result is
+*** identical to <code>GeoPolygon.isPointInside</code>.  Corridors (swept point-radius)
+*** index their segments in a grid of cells about the size of the radius, so that only
+*** the segments near the point are tested.<br>
+*** GeoShape instances are immutable, and may be shared between threads.
+**/
+
+public class GeoShape
+{
+
+    // ------------------------------------------------------------------------
+
+    public enum ShapeType {
+        POINT_RADIUS,
+        RECTANGLE,
+        POLYGON,
+        CORRIDOR
+    };
+
+    private static final double METERS_PER_DEGREE   = Math.toRadians(1.0) * GeoPoint.EARTH_MEAN_RADIUS_METERS;
+    private static final int    MAX_GRID_CELLS      = 4096;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates a point-radius shape (the point is inside if it is within the radius of
+    *** any of the specified points)
+    *** @param lat       The point latitudes
+    *** @param lon       The point longitudes
+    *** @param radiusKM  The radius in kilometers
+    *** @return The compiled shape
+    **/
+    public static GeoShape createPointRadius(double lat[], double lon[], double radiusKM)
+    {
+        return new GeoShape(ShapeType.POINT_RADIUS, lat, lon, radiusKM, 0.0);
+    }
+
+    /**
+    *** Creates a rectangle shape bounding the specified points
+    *** @param lat       The point latitudes
+    *** @param lon       The point longitudes
+    *** @param deltaDeg  The amount by which the rectangle is expanded on each side (degrees)
+    *** @return The compiled shape
+    **/
+    public static GeoShape createRectangle(double lat[], double lon[], double deltaDeg)
+    {
+        return new GeoShape(ShapeType.RECTANGLE, lat, lon, 0.0, deltaDeg);
+    }
+
+    /**
+    *** Creates a polygon shape.  The polygon is closed if the last point is not the same
+    *** as the first point.
+    *** @param lat  The vertex latitudes
+    *** @param lon  The vertex longitudes
+    *** @return The compiled shape
+    **/
+    public static GeoShape createPolygon(double lat[], double lon[])
+    {
+        return new GeoShape(ShapeType.POLYGON, lat, lon, 0.0, 0.0);
+    }
+
+    /**
+    *** Creates a corridor shape (the point is inside if it is within the radius of any
+    *** segment joining consecutive points)
+    *** @param lat       The point latitudes
+    *** @param lon       The point longitudes
+    *** @param radiusKM  The radius in kilometers
+    *** @return The compiled shape
+    **/
+    public static GeoShape createCorridor(double lat[], double lon[], double radiusKM)
+    {
+        return new GeoShape(ShapeType.CORRIDOR, lat, lon, radiusKM, 0.0);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private ShapeType   type        = null;
+    private double      lat[]       = null;
+    private double      lon[]       = null;
+    private double      radiusM     = 0.0;
+    private GeoPoint    points[]    = null;
+
+    private double      minLat      = 0.0;
+    private double      maxLat      = 0.0;
+    private double      minLon      = 0.0;
+    private double      maxLon      = 0.0;
+
+    /* polygon slab index */
+    private double      slabLat[]   = null;     // ascending distinct vertex latitudes
+    private int         slabEdge[][]= null;     // edges spanning [slabLat[i], slabLat[i+1])
+
+    /* corridor segment grid */
+    private double      cellDegLat  = 0.0;
+    private double      cellDegLon  = 0.0;
+    private int         gridCols    = 0;
+    private int         gridRows    = 0;
+    private int         gridSeg[][] = null;     // segments within radius of each cell
+    private double      cosLat      = 1.0;
+
+    /**
+    *** Constructor
+    **/
+    private GeoShape(ShapeType type, double lat[], double lon[], double radiusKM, double deltaDeg)
+    {
+        this.type    = type;
+        this.radiusM = Math.max(radiusKM, 0.0) * 1000.0;
+
+        /* copy points (closing polygons) */
+        int n = Math.min((lat != null)? lat.length : 0, (lon != null)? lon.length : 0);
+        boolean close = (type == ShapeType.POLYGON) && (n >= 3) &&
+            ((lat[0] != lat[n - 1]) || (lon[0] != lon[n - 1]));
+        this.lat = new double[close? (n + 1) : n];
+        this.lon = new double[this.lat.length];
+        System.arraycopy(lat, 0, this.lat, 0, n);
+        System.arraycopy(lon, 0, this.lon, 0, n);
+        if (close) {
+            this.lat[n] = lat[0];
+            this.lon[n] = lon[0];
+        }
+
+        this.points = new GeoPoint[this.lat.length];
+        for (int i = 0; i < this.lat.length; i++) {
+            this.points[i] = new GeoPoint(this.lat[i], this.lon[i]);
+        }
+
+        /* bounding box */
+        this.minLat =  90.0; this.maxLat =  -90.0;
+        this.minLon = 180.0; this.maxLon = -180.0;
+        for (int i = 0; i < this.lat.length; i++) {
+            this.minLat = Math.min(this.minLat, this.lat[i]);
+            this.maxLat = Math.max(this.maxLat, this.lat[i]);
+            this.minLon = Math.min(this.minLon, this.lon[i]);
+            this.maxLon = Math.max(this.maxLon, this.lon[i]);
+        }
+        double midLat = (this.minLat + this.maxLat) / 2.0;
+        this.cosLat   = Math.max(Math.cos(Math.toRadians(midLat)), 0.01);
+        double dLat   = deltaDeg;
+        double dLon   = deltaDeg;
+        if (this.radiusM > 0.0) {
+            // expand by radius (with a margin for the spherical distance)
+            double maxAbsLat = Math.min(Math.max(Math.abs(this.minLat), Math.abs(this.maxLat)) + 1.0, 89.0);
+            dLat = (this.radiusM / METERS_PER_DEGREE) * 1.01;
+            dLon = (this.radiusM / (METERS_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat)))) * 1.01;
+        }
+        this.minLat -= dLat; this.maxLat += dLat;
+        this.minLon -= dLon; this.maxLon += dLon;
+
+        /* type specific index */
+        if (type == ShapeType.POLYGON) {
+            this._buildSlabIndex();
+        } else
+        if (type == ShapeType.CORRIDOR) {
+            this._buildSegmentGrid();
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Builds the polygon slab index
+    **/
+    private void _buildSlabIndex()
+    {
+        int n = this.lat.length;
+        if (n < 2) {
+            return;
+        }
+
+        /* distinct vertex latitudes */
+        double ys[] = this.lat.clone();
+        Arrays.sort(ys);
+        int k = 0;
+        for (int i = 0; i < ys.length; i++) {
+            if ((k == 0) || (ys[i] != ys[k - 1])) {
+                ys[k++] = ys[i];
+            }
+        }
+        this.slabLat = Arrays.copyOf(ys, k);
+
+        /* edges spanning each slab */
+        // edge (i,i+1) contributes to the winding number for 'y' only when
+        // min(y0,y1) <= y < max(y0,y1), which holds for an entire slab or not at all
+        java.util.List<java.util.List<Integer>> slabs = new ArrayList<java.util.List<Integer>>();
+        for (int s = 0; s < k; s++) {
+            slabs.add(new ArrayList<Integer>());
+        }
+        for (int e = 0; e < (n - 1); e++) {
+            double y0 = Math.min(this.lat[e], this.lat[e + 1]);
+            double y1 = Math.max(this.lat[e], this.lat[e + 1]);
+            if (y0 == y1) {
+                continue; // horizontal edge never contributes
+            }
+            int s0 = Arrays.binarySearch(this.slabLat, y0);
+            int s1 = Arrays.binarySearch(this.slabLat, y1);
+            for (int s = s0; s < s1; s++) {
+                slabs.get(s).add(new Integer(e));
+            }
+        }
+        this.slabEdge = new int[k][];
+        for (int s = 0; s < k; s++) {
+            java.util.List<Integer> el = slabs.get(s);
+            this.slabEdge[s] = new int[el.size()];
+            for (int i = 0; i < el.size(); i++) {
+                this.slabEdge[s][i] = el.get(i).intValue();
+            }
+        }
+
+    }
+
+    /**
+    *** Builds the corridor segment grid
+    **/
+    private void _buildSegmentGrid()
+    {
+        int n = this.lat.length;
+        if ((n < 2) || (this.radiusM <= 0.0)) {
+            return;
+        }
+
+        /* cell size: about the radius, limited to MAX_GRID_CELLS cells */
+        double spanLat = this.maxLat - this.minLat;
+        double spanLon = this.maxLon - this.minLon;
+        double cell    = Math.max(this.radiusM / METERS_PER_DEGREE, 1.0E-6);
+        double minCell = Math.sqrt((spanLat * spanLon) / (double)MAX_GRID_CELLS);
+        cell = Math.max(cell, minCell);
+        this.cellDegLat = cell;
+        this.cellDegLon = cell;
+        this.gridRows   = Math.max(1, (int)Math.ceil(spanLat / cell));
+        this.gridCols   = Math.max(1, (int)Math.ceil(spanLon / cell));
+
+        /* assign each segment (bounds expanded by radius) to the cells it overlaps */
+        double padLat = (this.radiusM / METERS_PER_DEGREE) * 1.01;
+        double padLon = padLat / this.cosLat;
+        java.util.List<java.util.List<Integer>> cells = new ArrayList<java.util.List<Integer>>();
+        for (int c = 0; c < (this.gridRows * this.gridCols); c++) {
+            cells.add(null);
+        }
+        for (int e = 0; e < (n - 1); e++) {
+            int r0 = this._row(Math.min(this.lat[e], this.lat[e + 1]) - padLat);
+            int r1 = this._row(Math.max(this.lat[e], this.lat[e + 1]) + padLat);
+            int c0 = this._col(Math.min(this.lon[e], this.lon[e + 1]) - padLon);
+            int c1 = this._col(Math.max(this.lon[e], this.lon[e + 1]) + padLon);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int ndx = (r * this.gridCols) + c;
+                    if (cells.get(ndx) == null) {
+                        cells.set(ndx, new ArrayList<Integer>());
+                    }
+                    cells.get(ndx).add(new Integer(e));
+                }
+            }
+        }
+        this.gridSeg = new int[cells.size()][];
+        for (int c = 0; c < cells.size(); c++) {
+            java.util.List<Integer> sl = cells.get(c);
+            if (sl != null) {
+                this.gridSeg[c] = new int[sl.size()];
+                for (int i = 0; i < sl.size(); i++) {
+                    this.gridSeg[c][i] = sl.get(i).intValue();
+                }
+            }
+        }
+
+    }
+
+    private int _row(double lat)
+    {
+        int r = (int)Math.floor((lat - this.minLat) / this.cellDegLat);
+        return Math.max(0, Math.min(this.gridRows - 1, r));
+    }
+
+    private int _col(double lon)
+    {
+        int c = (int)Math.floor((lon - this.minLon) / this.cellDegLon);
+        return Math.max(0, Math.min(this.gridCols - 1, c));
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the shape type
+    *** @return The shape type
+    **/
+    public ShapeType getType()
+    {
+        return this.type;
+    }
+
+    /**
+    *** Gets the number of points in this shape (including the closing point of a polygon)
+    *** @return The number of points
+    **/
+    public int getPointCount()
+    {
+        return this.lat.length;
+    }
+
+    /**
+    *** Gets the bounding box of this shape (expanded by the radius)
+    *** @return The bounding box
+    **/
+    public GeoBounds getBounds()
+    {
+        GeoBounds gb = new GeoBounds();
+        gb.setMinLatitude(this.minLat);
+        gb.setMaxLatitude(this.maxLat);
+        gb.setMinLongitude(this.minLon);
+        gb.setMaxLongitude(this.maxLon);
+        return gb;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified point is inside this shape
+    *** @param gp  The point to test
+    *** @return True if the point is inside this shape
+    **/
+    public boolean containsPoint(GeoPoint gp)
+    {
+        return (gp != null) && this.containsPoint(gp.getLatitude(), gp.getLongitude());
+    }
+
+    /**
+    *** Returns true if the specified point is inside this shape
+    *** @param lat  The point latitude
+    *** @param lon  The point longitude
+    *** @return True if the point is inside this shape
+    **/
+    public boolean containsPoint(double lat, double lon)
+    {
+
+        /* bounding box (fails if the shape spans +/-180 deg, as do the other zone checks) */
+        if ((this.lat.length == 0) ||
+            (lat < this.minLat) || (lat > this.maxLat) ||
+            (lon < this.minLon) || (lon > this.maxLon)) {
+            return false;
+        }
+
+        /* shape */
+        switch (this.type) {
+            case RECTANGLE    : return (this.lat.length >= 2);
+            case POINT_RADIUS : return this._containsPointRadius(lat, lon);
+            case POLYGON      : return this._containsPolygon(lat, lon);
+            case CORRIDOR     : return this._containsCorridor(lat, lon);
+        }
+        return false;
+
+    }
+
+    /* point radius */
+    private boolean _containsPointRadius(double lat, double lon)
+    {
+        double   radiusKM = this.radiusM / 1000.0;
+        GeoPoint gp       = new GeoPoint(lat, lon);
+        for (int i = 0; i < this.points.length; i++) {
+            if (this.points[i].kilometersToPoint(gp) <= radiusKM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* polygon (winding number over the edges of the point's slab) */
+    private boolean _containsPolygon(double lat, double lon)
+    {
+        if (this.slabLat == null) {
+            return false;
+        }
+        int s = Arrays.binarySearch(this.slabLat, lat);
+        if (s < 0) {
+            s = -s - 2; // slab below the insertion point
+        }
+        if ((s < 0) || (s >= (this.slabLat.length - 1))) {
+            return false;
+        }
+        int wn = 0;
+        for (int e : this.slabEdge[s]) {
+            double x0 = this.lon[e], y0 = this.lat[e];
+            double x1 = this.lon[e + 1], y1 = this.lat[e + 1];
+            double isLeft = ((x1 - x0) * (lat - y0)) - ((lon - x0) * (y1 - y0));
+            if (y0 <= lat) {
+                if ((y1 > lat) && (isLeft > 0.0)) { ++wn; } // upward crossing, point left of edge
+            } else {
+                if ((y1 <= lat) && (isLeft < 0.0)) { --wn; } // downward crossing, point right of edge
+            }
+        }
+        return (wn != 0);
+    }
+
+    /* corridor (distance to the segments near the point) */
+    private boolean _containsCorridor(double lat, double lon)
+    {
+        if (this.lat.length == 1) {
+            return this._containsPointRadius(lat, lon);
+        } else
+        if (this.gridSeg == null) {
+            return false;
+        }
+        int segs[] = this.gridSeg[(this._row(lat) * this.gridCols) + this._col(lon)];
+        if (segs == null) {
+            return false;
+        }
+        for (int e : segs) {
+            if (this._distanceToSegmentMeters(lat, lon, e) <= this.radiusM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    *** Returns the distance, in meters, from the specified point to the specified segment
+    *** (using a local equirectangular projection)
+    **/
+    private double _distanceToSegmentMeters(double lat, double lon, int e)
+    {
+        double cos = Math.cos(Math.toRadians(lat));
+        double bx = (this.lon[e + 1] - this.lon[e]) * cos * METERS_PER_DEGREE;
+        double by = (this.lat[e + 1] - this.lat[e])       * METERS_PER_DEGREE;
+        double px = (lon - this.lon[e]) * cos * METERS_PER_DEGREE;
+        double py = (lat - this.lat[e])       * METERS_PER_DEGREE;
+        double len2 = (bx * bx) + (by * by);
+        if (len2 > 0.0) {
+            double t = Math.max(0.0, Math.min(1.0, ((px * bx) + (py * by)) / len2));
+            px -= t * bx;
+            py -= t * by;
+        }
+        return Math.sqrt((px * px) + (py * py));
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this GeoShape
+    *** @return A String representation
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.type).append("[").append(this.lat.length).append(" points");
+        if (this.radiusM > 0.0) {
+            sb.append(", ").append(StringTools.format(this.radiusM,"0")).append(" m");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
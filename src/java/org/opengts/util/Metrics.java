@@ -0,0 +1,349 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Runtime counters, gauges, and latency histograms
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+*** Runtime counters, gauges, and latency histograms.<br>
+*** Metrics are disabled unless the runtime property "metrics.enable" is true, in which
+*** case the static convenience methods return immediately without allocating or
+*** reading the clock.  Latency histograms use log-linear buckets (8 sub-buckets per
+*** power of two, about 12% resolution) over microsecond values.
+**/
+
+public class Metrics
+{
+
+    // ------------------------------------------------------------------------
+
+    private static volatile int enableState = -1; // -1=unknown, 0=disabled, 1=enabled
+
+    /**
+    *** Returns true if metrics collection is enabled
+    *** @return True if enabled
+    **/
+    public static boolean IsEnabled()
+    {
+        int state = enableState;
+        if (state < 0) {
+            if (!RTConfig.isInitialized()) {
+                return false;
+            }
+            state = RTConfig.getBoolean(RTKey.METRICS_ENABLE,false)? 1 : 0;
+            enableState = state;
+        }
+        return (state == 1);
+    }
+
+    /**
+    *** Enables/Disables metrics collection (overrides the runtime property)
+    *** @param enable  True to enable
+    **/
+    public static void SetEnabled(boolean enable)
+    {
+        enableState = enable? 1 : 0;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static final ConcurrentHashMap<String,Object> metricMap = new ConcurrentHashMap<String,Object>();
+
+    /**
+    *** Gets/creates the named Counter
+    *** @param name  The metric name
+    *** @return The Counter
+    **/
+    public static Counter GetCounter(String name)
+    {
+        Object m = metricMap.get(name);
+        if (m == null) {
+            Object n = new Counter();
+            m = metricMap.putIfAbsent(name, n);
+            if (m == null) { m = n; }
+        }
+        return (m instanceof Counter)? (Counter)m : new Counter();
+    }
+
+    /**
+    *** Gets/creates the named Histogram
+    *** @param name  The metric name
+    *** @return The Histogram
+    **/
+    public static Histogram GetHistogram(String name)
+    {
+        Object m = metricMap.get(name);
+        if (m == null) {
+            Object n = new Histogram();
+            m = metricMap.putIfAbsent(name, n);
+            if (m == null) { m = n; }
+        }
+        return (m instanceof Histogram)? (Histogram)m : new Histogram();
+    }
+
+    /**
+    *** Registers a Gauge, replacing any previous metric with the same name
+    *** @param name   The metric name
+    *** @param gauge  The Gauge
+    **/
+    public static void RegisterGauge(String name, Gauge gauge)
+    {
+        if ((name != null) && (gauge != null)) {
+            metricMap.put(name, gauge);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Increments the named counter (if enabled)
+    *** @param name  The metric name
+    **/
+    public static void Increment(String name)
+    {
+        if (IsEnabled()) {
+            GetCounter(name).increment();
+        }
+    }
+
+    /**
+    *** Adds to the named counter (if enabled)
+    *** @param name   The metric name
+    *** @param delta  The value to add
+    **/
+    public static void Add(String name, long delta)
+    {
+        if (IsEnabled()) {
+            GetCounter(name).add(delta);
+        }
+    }
+
+    /**
+    *** Returns a start time for a later call to "RecordElapsed"
+    *** @return The start time in nanoseconds, or 0 if metrics are disabled
+    **/
+    public static long StartTimer()
+    {
+        return IsEnabled()? System.nanoTime() : 0L;
+    }
+
+    /**
+    *** Records the time elapsed since the specified start time to the named histogram
+    *** @param name     The metric name
+    *** @param startNS  The value returned by "StartTimer" (ignored if 0)
+    **/
+    public static void RecordElapsed(String name, long startNS)
+    {
+        if (startNS != 0L) {
+            GetHistogram(name).record((System.nanoTime() - startNS) / 1000L);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the current metric values in a simple "name value" text format
+    *** @return The metric values
+    **/
+    public static String GetText()
+    {
+        StringBuffer sb = new StringBuffer();
+        Map<String,Object> sorted = new TreeMap<String,Object>(metricMap);
+        for (String name : sorted.keySet()) {
+            Object m = sorted.get(name);
+            if (m instanceof Counter) {
+                sb.append(name).append(" ").append(((Counter)m).get()).append("\n");
+            } else
+            if (m instanceof Gauge) {
+                sb.append(name).append(" ").append(((Gauge)m).getValue()).append("\n");
+            } else
+            if (m instanceof Histogram) {
+                ((Histogram)m).appendText(name, sb);
+            }
+        }
+        ThreadPool._AppendMetrics(sb);
+        return sb.toString();
+    }
+
+    /**
+    *** Clears all counters and histograms (gauges are retained)
+    **/
+    public static void Reset()
+    {
+        for (Iterator<Object> i = metricMap.values().iterator(); i.hasNext();) {
+            Object m = i.next();
+            if (!(m instanceof Gauge)) {
+                i.remove();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Monotonic counter
+    **/
+    public static class Counter
+    {
+        private AtomicLong value = new AtomicLong(0L);
+        public Counter() {
+            super();
+        }
+        public void increment() {
+            this.value.incrementAndGet();
+        }
+        public void add(long delta) {
+            this.value.addAndGet(delta);
+        }
+        public long get() {
+            return this.value.get();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gauge interface (value is obtained at the time the metrics are read)
+    **/
+    public interface Gauge
+    {
+        public long getValue();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Log-linear latency histogram
+    **/
+    public static class Histogram
+    {
+
+        private static final int SUB_BITS       = 3;    // 8 sub-buckets per power of two
+        private static final int SUB_COUNT      = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT   = 40;   // ~12 days in microseconds
+
+        private AtomicLongArray buckets = new AtomicLongArray((MAX_EXPONENT + 1) * SUB_COUNT);
+        private AtomicLong      count   = new AtomicLong(0L);
+        private AtomicLong      total   = new AtomicLong(0L);
+        private AtomicLong      maximum = new AtomicLong(0L);
+
+        public Histogram() {
+            super();
+        }
+
+        /* bucket index for value */
+        private static int _index(long v) {
+            if (v < SUB_COUNT) {
+                return (int)v;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(v);                // floor(log2(v)) >= SUB_BITS
+            if (exp > MAX_EXPONENT) {
+                return ((MAX_EXPONENT + 1) * SUB_COUNT) - 1;
+            }
+            int sub = (int)((v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+            return ((exp - SUB_BITS + 1) * SUB_COUNT) + sub;
+        }
+
+        /* upper value bound of bucket */
+        private static long _upperBound(int ndx) {
+            if (ndx < SUB_COUNT) {
+                return ndx;
+            }
+            int exp = (ndx / SUB_COUNT) + SUB_BITS - 1;
+            int sub = ndx % SUB_COUNT;
+            long base = 1L << exp;
+            long step = 1L << (exp - SUB_BITS);
+            return base + ((sub + 1) * step) - 1L;
+        }
+
+        /**
+        *** Records a value (microseconds)
+        **/
+        public void record(long v) {
+            if (v < 0L) { v = 0L; }
+            this.buckets.incrementAndGet(_index(v));
+            this.count.incrementAndGet();
+            this.total.addAndGet(v);
+            long max = this.maximum.get();
+            while ((v > max) && !this.maximum.compareAndSet(max, v)) {
+                max = this.maximum.get();
+            }
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public long getMaximum() {
+            return this.maximum.get();
+        }
+
+        public double getMean() {
+            long c = this.count.get();
+            return (c > 0L)? ((double)this.total.get() / (double)c) : 0.0;
+        }
+
+        /**
+        *** Returns the (upper bound of the) value at the specified percentile (0..100)
+        **/
+        public long getPercentile(double pct) {
+            long c = this.count.get();
+            if (c <= 0L) {
+                return 0L;
+            }
+            long target = (long)Math.ceil((pct / 100.0) * (double)c);
+            if (target < 1L) { target = 1L; }
+            long seen = 0L;
+            for (int i = 0; i < this.buckets.length(); i++) {
+                seen += this.buckets.get(i);
+                if (seen >= target) {
+                    if (i == (this.buckets.length() - 1)) {
+                        // overflow bucket: values are not bounded by the bucket
+                        return this.maximum.get();
+                    }
+                    return Math.min(_upperBound(i), this.maximum.get());
+                }
+            }
+            return this.maximum.get();
+        }
+
+        /* append text representation */
+        protected void appendText(String name, StringBuffer sb) {
+            sb.append(name).append(".count ").append(this.getCount()).append("\n");
+            sb.append(name).append(".mean_us ").append(Math.round(this.getMean())).append("\n");
+            sb.append(name).append(".p50_us ").append(this.getPercentile(50.0)).append("\n");
+            sb.append(name).append(".p90_us ").append(this.getPercentile(90.0)).append("\n");
+            sb.append(name).append(".p99_us ").append(this.getPercentile(99.0)).append("\n");
+            sb.append(name).append(".max_us ").append(this.getMaximum()).append("\n");
+        }
+
+    }
+
+}
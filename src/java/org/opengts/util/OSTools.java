@@ -34,6 +34,8 @@
 //     -Updated "isSunJava"
 //  2012/10/16  Martin D. Flynn
 //     -Added "writePidFile(...)"
+//  2026/10/19
+//     -"sun.reflect.Reflection" is now called reflectively (compiles on newer JDKs)
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
@@ -661,12 +663,21 @@ public class OSTools
     *** @param frame The frame index
     *** @return The calling class
     **/
-    @SuppressWarnings("proprietary")  // <-- does not work to supress the "Sun proprietary API" warning
     private static Class _getCallerClass(int frame)
         throws Throwable
     {
-        return sun.reflect.Reflection.getCallerClass(frame + 1); // <== ignore any warnings
+        // "Method.invoke" frames are not counted by "sun.reflect.Reflection.getCallerClass"
+        if (getCallerClassMethod == null) {
+            Class<?> reflClass = Class.forName("sun.reflect.Reflection");
+            getCallerClassMethod = reflClass.getMethod("getCallerClass", Integer.TYPE);
+        }
+        try {
+            return (Class)getCallerClassMethod.invoke(null, new Integer(frame + 1));
+        } catch (java.lang.reflect.InvocationTargetException ite) {
+            throw ite.getCause();
+        }
     }
+    private static java.lang.reflect.Method getCallerClassMethod = null;
 
     /**
     *** Gets the class of the caller at the specified frame index
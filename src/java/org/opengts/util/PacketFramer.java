@@ -0,0 +1,406 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Declarative packet framing for ServerSocketThread
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+*** <code>PacketFramer</code> determines the length of an incoming client packet.<br>
+*** When a PacketFramer is set on a <code>ServerSocketThread</code>, it is used in place
+*** of <code>ClientPacketHandler.getActualPacketLength(...)</code>, and the returned
+*** lengths follow the same conventions (ie. <code>ServerSocketThread.PACKET_LEN_*</code>).
+*** <br>
+*** A PacketFramer may be declared in "dcservers.xml" using the "packetFraming" property,
+*** which has the form "type=TYPE key=value ...".  For example:
+*** <pre>
+***   &lt;Property key="packetFraming"&gt;type=line&lt;/Property&gt;
+***   &lt;Property key="packetFraming"&gt;type=prefix lengthSize=2&lt;/Property&gt;
+***   &lt;Property key="packetFraming"&gt;type=header lengthOffset=1 lengthSize=2 lengthAdjust=3&lt;/Property&gt;
+***   &lt;Property key="packetFraming"&gt;type=crc lengthOffset=2 lengthSize=1 lengthAdjust=5 crc=crc16&lt;/Property&gt;
+*** </pre>
+**/
+
+public abstract class PacketFramer
+{
+
+    // ------------------------------------------------------------------------
+
+    public static final String  TYPE_LINE               = "line";       // line terminated
+    public static final String  TYPE_EOS                = "eos";        // end of stream
+    public static final String  TYPE_FIXED             = "fixed";      // fixed length
+    public static final String  TYPE_PREFIX             = "prefix";     // length-prefixed
+    public static final String  TYPE_HEADER             = "header";     // fixed-header with length field
+    public static final String  TYPE_CRC                = "crc";        // fixed-header with trailing CRC
+
+    public static final String  PROP_type               = "type";
+    public static final String  PROP_length             = "length";
+    public static final String  PROP_lengthOffset       = "lengthOffset";
+    public static final String  PROP_lengthSize         = "lengthSize";
+    public static final String  PROP_lengthAdjust       = "lengthAdjust";
+    public static final String  PROP_littleEndian       = "littleEndian";
+    public static final String  PROP_crc                = "crc";
+    public static final String  PROP_crcStart           = "crcStart";
+    public static final String  PROP_crcTrailer         = "crcTrailer";
+
+    public static final String  CRC_CCITT               = "ccitt";
+    public static final String  CRC_16                  = "crc16";
+    public static final String  CRC_SUM8                = "sum8";
+    public static final String  CRC_XOR8                = "xor8";
+
+    // ------------------------------------------------------------------------
+
+    /* shared line-terminated framer */
+    public static final PacketFramer LINE_TERMINATED    = new LineTerminated();
+
+    /* shared end-of-stream framer */
+    public static final PacketFramer END_OF_STREAM      = new EndOfStream();
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates a PacketFramer from the specified "type=TYPE key=value ..." specification
+    *** @param spec  The PacketFramer specification
+    *** @return The PacketFramer, or null if the specification is blank or invalid
+    **/
+    public static PacketFramer parsePacketFramer(String spec)
+    {
+        if (StringTools.isBlank(spec)) {
+            return null;
+        }
+        return PacketFramer.createPacketFramer(new RTProperties(spec));
+    }
+
+    /**
+    *** Creates a PacketFramer from the specified properties
+    *** @param rtp  The PacketFramer properties
+    *** @return The PacketFramer, or null if the type is missing or invalid
+    **/
+    public static PacketFramer createPacketFramer(RTProperties rtp)
+    {
+        if (rtp == null) {
+            return null;
+        }
+        String  type   = StringTools.trim(rtp.getString(PROP_type,"")).toLowerCase();
+        int     lenOfs = rtp.getInt(PROP_lengthOffset, 0);
+        int     lenSiz = rtp.getInt(PROP_lengthSize  , 1);
+        boolean bigEnd = !rtp.getBoolean(PROP_littleEndian, false);
+        if (type.equals(TYPE_LINE)) {
+            return LINE_TERMINATED;
+        } else
+        if (type.equals(TYPE_EOS)) {
+            return END_OF_STREAM;
+        } else
+        if (type.equals(TYPE_FIXED)) {
+            int len = rtp.getInt(PROP_length, 0);
+            if (len <= 0) {
+                Print.logError("Invalid PacketFramer length: " + len);
+                return null;
+            }
+            return new FixedLength(len);
+        } else
+        if (type.equals(TYPE_PREFIX)) {
+            int lenAdj = rtp.getInt(PROP_lengthAdjust, lenSiz);
+            return new FixedHeader(0, lenSiz, lenAdj, bigEnd);
+        } else
+        if (type.equals(TYPE_HEADER)) {
+            int lenAdj = rtp.getInt(PROP_lengthAdjust, lenOfs + lenSiz);
+            return new FixedHeader(lenOfs, lenSiz, lenAdj, bigEnd);
+        } else
+        if (type.equals(TYPE_CRC)) {
+            int    lenAdj   = rtp.getInt(PROP_lengthAdjust, lenOfs + lenSiz);
+            String crc      = StringTools.trim(rtp.getString(PROP_crc, CRC_16)).toLowerCase();
+            if (!PacketFramer.isValidCrcType(crc)) {
+                Print.logError("Invalid PacketFramer crc: " + crc);
+                return null;
+            }
+            int    crcStart = rtp.getInt(PROP_crcStart, 0);
+            int    crcTrail = rtp.getInt(PROP_crcTrailer, 0);
+            FixedHeader hdr = new FixedHeader(lenOfs, lenSiz, lenAdj, bigEnd);
+            return new BinaryCRC(hdr, crc, crcStart, crcTrail, bigEnd);
+        } else {
+            Print.logError("Invalid PacketFramer type: " + type);
+            return null;
+        }
+    }
+
+    /**
+    *** Returns true if the specified CRC type is supported
+    *** @param crc  The CRC type ("ccitt", "crc16", "sum8", "xor8")
+    *** @return True if the CRC type is supported
+    **/
+    public static boolean isValidCrcType(String crc)
+    {
+        return CRC_CCITT.equals(crc) || CRC_16.equals(crc) || CRC_SUM8.equals(crc) || CRC_XOR8.equals(crc);
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Thrown when the packet header contains an invalid packet length.<br>
+    *** The remaining stream cannot be framed, and the session is terminated.
+    **/
+    public static class FramingException
+        extends java.io.IOException
+    {
+        private static final long serialVersionUID = 1L;
+        public FramingException(String msg) {
+            super(msg);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Constructor
+    **/
+    protected PacketFramer()
+    {
+        super();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the minimum number of bytes which must be read before
+    *** <code>getActualPacketLength</code> is able to determine the packet length.
+    *** @return The minimum packet length, or '0' to defer to the ServerSocketThread
+    **/
+    public abstract int getMinimumPacketLength();
+
+    /**
+    *** Returns the actual packet length based on the partial packet read so far.
+    *** @param packet    The packet buffer (may be larger than 'packetLen')
+    *** @param packetLen The number of valid bytes in the packet buffer
+    *** @return The actual/incremental packet length, or one of the
+    ***         <code>ServerSocketThread.PACKET_LEN_*</code> values
+    *** @throws FramingException  If the packet header contains an invalid length
+    **/
+    public abstract int getActualPacketLength(byte packet[], int packetLen)
+        throws FramingException;
+
+    /**
+    *** Returns true if the fully read packet is valid (ie. passes any checksum validation).
+    *** Invalid packets are discarded by the ServerSocketThread.
+    *** @param packet    The packet buffer (may be larger than 'packetLen')
+    *** @param packetLen The number of valid bytes in the packet buffer
+    *** @return True if the packet is valid
+    **/
+    public boolean isValidPacket(byte packet[], int packetLen)
+    {
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this instance
+    **/
+    public String toString()
+    {
+        return StringTools.className(this);
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Line-terminated packets
+    **/
+    public static class LineTerminated
+        extends PacketFramer
+    {
+        public LineTerminated() {
+            super();
+        }
+        public int getMinimumPacketLength() {
+            return 0;
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) {
+            return ServerSocketThread.PACKET_LEN_LINE_TERMINATOR;
+        }
+        public String toString() {
+            return TYPE_LINE;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Packets which extend to the end of the stream (typically UDP datagrams)
+    **/
+    public static class EndOfStream
+        extends PacketFramer
+    {
+        public EndOfStream() {
+            super();
+        }
+        public int getMinimumPacketLength() {
+            return 0;
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) {
+            return ServerSocketThread.PACKET_LEN_END_OF_STREAM;
+        }
+        public String toString() {
+            return TYPE_EOS;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Fixed length packets
+    **/
+    public static class FixedLength
+        extends PacketFramer
+    {
+        private int length = 0;
+        public FixedLength(int length) {
+            super();
+            this.length = length;
+        }
+        public int getMinimumPacketLength() {
+            return this.length;
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) {
+            return this.length;
+        }
+        public String toString() {
+            return TYPE_FIXED + "[" + this.length + "]";
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Packets with a fixed length header containing a binary length field.<br>
+    *** The total packet length is the value of the length field plus 'lengthAdjust'.
+    *** (a length-prefixed packet is a fixed header with a length field at offset '0')
+    **/
+    public static class FixedHeader
+        extends PacketFramer
+    {
+        private int     lengthOffset = 0;
+        private int     lengthSize   = 1;
+        private int     lengthAdjust = 1;
+        private boolean bigEndian    = true;
+        public FixedHeader(int lenOfs, int lenSize, int lenAdjust, boolean bigEndian) {
+            super();
+            this.lengthOffset = (lenOfs  >= 0)? lenOfs : 0;
+            this.lengthSize   = ((lenSize >= 1) && (lenSize <= 4))? lenSize : 1;
+            this.lengthAdjust = lenAdjust;
+            this.bigEndian    = bigEndian;
+        }
+        public int getMinimumPacketLength() {
+            return this.lengthOffset + this.lengthSize;
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) throws FramingException {
+            int hdrLen = this.getMinimumPacketLength();
+            if (packetLen < hdrLen) {
+                return ServerSocketThread.PACKET_LEN_INCREMENTAL_ | hdrLen;
+            }
+            Payload p = Payload.view(packet, packetLen, this.bigEndian);
+            p.readSkip(this.lengthOffset);
+            long len = p.readULong(this.lengthSize, 0L) + this.lengthAdjust;
+            if (len < hdrLen) {
+                throw new FramingException("Packet length ["+len+"] less than header length ["+hdrLen+"]");
+            } else
+            if (len >= ServerSocketThread.PACKET_LEN_INCREMENTAL_MASK) {
+                throw new FramingException("Packet length ["+len+"] exceeds maximum");
+            } else {
+                return (int)len;
+            }
+        }
+        public String toString() {
+            return TYPE_HEADER + "[" + this.lengthOffset + "," + this.lengthSize + "," + this.lengthAdjust + "]";
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Binary packets with a fixed header (providing the length) and a trailing CRC.<br>
+    *** The CRC is calculated from 'crcStart' up to the CRC field, and the CRC field is
+    *** located 'crcTrailer' bytes before the end of the packet.
+    **/
+    public static class BinaryCRC
+        extends PacketFramer
+    {
+        private PacketFramer header     = null;
+        private String       crcType    = CRC_16;
+        private int          crcSize    = 2;
+        private int          crcStart   = 0;
+        private int          crcTrailer = 0;
+        private boolean      bigEndian  = true;
+        public BinaryCRC(PacketFramer header, String crcType, int crcStart, int crcTrailer, boolean bigEndian) {
+            super();
+            this.header     = header;
+            this.crcType    = StringTools.trim(crcType).toLowerCase();
+            if (!PacketFramer.isValidCrcType(this.crcType)) {
+                throw new IllegalArgumentException("Invalid PacketFramer crc: " + crcType);
+            }
+            this.crcSize    = (this.crcType.equals(CRC_SUM8) || this.crcType.equals(CRC_XOR8))? 1 : 2;
+            this.crcStart   = (crcStart   >= 0)? crcStart   : 0;
+            this.crcTrailer = (crcTrailer >= 0)? crcTrailer : 0;
+            this.bigEndian  = bigEndian;
+        }
+        public int getMinimumPacketLength() {
+            return this.header.getMinimumPacketLength();
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) throws FramingException {
+            return this.header.getActualPacketLength(packet, packetLen);
+        }
+        public boolean isValidPacket(byte packet[], int packetLen) {
+            int crcOfs = packetLen - this.crcTrailer - this.crcSize;
+            int crcLen = crcOfs - this.crcStart;
+            if (crcLen < 0) {
+                return false;
+            }
+            Payload p = Payload.view(packet, packetLen, this.bigEndian);
+            p.readSkip(crcOfs);
+            int pktCrc = p.readUInt(this.crcSize, -1);
+            int calCrc;
+            if (this.crcType.equals(CRC_CCITT)) {
+                calCrc = Checksum.calcCrcCCITT(packet, this.crcStart, crcLen) & 0xFFFF;
+            } else
+            if (this.crcType.equals(CRC_SUM8)) {
+                calCrc = (int)Checksum.calcCrcSum8(packet, this.crcStart, crcLen) & 0xFF;
+            } else
+            if (this.crcType.equals(CRC_XOR8)) {
+                calCrc = (int)Checksum.calcCrcXOR8(packet, this.crcStart, crcLen) & 0xFF;
+            } else { // CRC_16
+                calCrc = Checksum.calcCrc16(packet, this.crcStart, crcLen) & 0xFFFF;
+            }
+            return (pktCrc == calCrc);
+        }
+        public String toString() {
+            return TYPE_CRC + "[" + this.header + "," + this.crcType + "]";
+        }
+    }
+
+}
@@ -266,6 +266,32 @@ public class Payload
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Creates a read-only Payload view of the first <code>len</code> bytes of the
+    *** specified byte array.  Unlike the source constructors, the byte array is never
+    *** copied, thus changes to the byte array will be visible to the returned Payload.
+    *** (typically used for parsing packet headers from a shared/pooled read buffer)
+    *** @param b   The backing byte array
+    *** @param len The number of valid bytes in the byte array
+    *** @param bigEndian If the payload uses big-endian byte ordering
+    *** @return The Payload view
+    **/
+    public static Payload view(byte b[], int len, boolean bigEndian)
+    {
+        Payload p = new Payload(-1, bigEndian);
+        if (b == null) {
+            p.payload = EMPTY_BYTE_ARRAY;
+            p.size    = 0;
+        } else {
+            p.payload = b;
+            p.size    = ((len >= 0) && (len <= b.length))? len : b.length;
+        }
+        p.index = 0;
+        return p;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Sets the byte ordering of the payload to "Big-Endian"<br>
     *** Also called "Network Byte Order", "MSB first", ...
@@ -48,6 +48,9 @@
 //     -Added better handling of OutputStream logging redirection
 //     -Added "setRemoteLogging" to enable/start remote cached logging
 //     -Changed 'getRotateLogFileSize' to support "5mb", "5000k", etc.
+//  2026/10/19
+//     -Added optional asynchronous log writer (see "AsyncLogWriter")
+//     -Moved log file rotation to '_rotateLogFile', added time-based rotation
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
@@ -180,6 +183,7 @@ public class Print
     
     private static long         printRotateLogFileSize  = -1L;      // lazy init
     private static long         printRotateDelAgeSec    = -1L;      // lazy init
+    private static long         printRotateIntervalSec  = -1L;      // lazy init
 
     /**
     *** Resets all print logging settings. Does not change or reset the output
@@ -195,6 +199,7 @@ public class Print
         Print.printLogFile            = null;
         Print.printRotateLogFileSize  = -1L;
         Print.printRotateDelAgeSec    = -1L;
+        Print.printRotateIntervalSec  = -1L;
     }
 
     /** 
@@ -1170,6 +1175,7 @@ public class Print
     **/
     public static void setLogFile(File file)
     {
+        AsyncLogWriter.resetInstance();
         Print.closePrintStream();
         Print.printLogFile = file;
         Print.printLogFile_init = true; 
@@ -1342,6 +1348,119 @@ public class Print
         return Print.printRotateDelAgeSec;
     }
 
+    /**
+    *** Gets the time-based log file rotation interval (in seconds).
+    *** (currently only observed by the asynchronous log writer)
+    *** @return The rotation interval (in seconds), or 0 if no time-based rotation
+    **/
+    public static long getRotateIntervalSec()
+    {
+        if (Print.printRotateIntervalSec < 0L) {
+            String intvStr = RTConfig.getString(RTKey.LOG_FILE_ROTATE_INTERVAL,"");
+            long   intvVal = StringTools.parseLong(intvStr,0L);
+            if (intvVal <= 0L) {
+                // no time-based rotation
+                Print.printRotateIntervalSec = 0L;
+            } else
+            if (intvStr.endsWith("s")) {
+                // seconds
+                Print.printRotateIntervalSec = intvVal;
+            } else
+            if (intvStr.endsWith("m")) {
+                // minutes
+                Print.printRotateIntervalSec = DateTime.MinuteSeconds(intvVal);
+            } else
+            if (intvStr.endsWith("d")) {
+                // days
+                Print.printRotateIntervalSec = DateTime.DaySeconds(intvVal);
+            } else {
+                // hours
+                Print.printRotateIntervalSec = DateTime.HourSeconds(intvVal);
+            }
+        }
+        return Print.printRotateIntervalSec;
+    }
+
+    /**
+    *** Renames the specified log file to a rotated (date extension) backup file, and
+    *** deletes aged rotated files.  The log file must not currently be open.
+    *** @param logFile  The log file to rotate
+    *** @return The rotated backup file, or null if the log file could not be renamed
+    **/
+    protected static File _rotateLogFile(File logFile)
+    {
+        String rotExtnSep = "."; // must not be empty
+        final long nowMS  = DateTime.getCurrentTimeMillis();
+
+        // backup existing file
+        String absPath = logFile.getAbsolutePath();
+        String rotExtn = Print.formatDate(RTConfig.getString(RTKey.LOG_FILE_ROTATE_EXTN));
+        String bkuName = absPath + rotExtnSep + rotExtn;
+        File bkuFile = new File(bkuName);
+        for (int i = 1; bkuFile.exists() || (new File(bkuName + ".gz")).exists(); i++) { 
+            // find a filename that does not exist
+            bkuName = absPath + rotExtnSep + rotExtn + "." + i;
+            bkuFile = new File(bkuName); 
+        }
+        boolean didRename = false;
+        try {
+            didRename = logFile.renameTo(bkuFile);
+            if (didRename) {
+                // update modified time (so this file isn't deleted below)
+                bkuFile.setLastModified(nowMS);
+            }
+        } catch (Throwable th) {
+            // error renaming
+            //Print.sysPrintln("Unable to rename logFile: " + file + " ==> " + bkuFile);
+            //th.printStackTrace(); // to stderr/stdout
+            didRename = false;
+        }
+
+        // delete old rotated files?
+        final long delAgeSec = Print.getRotateDeleteAgeSec();
+        if (delAgeSec > 0L) {
+            final long   delAgeMS = delAgeSec * 1000L;
+            final String logName_ = logFile.getName() + rotExtnSep; // include rotate extension separator
+            File delFiles[] = logFile.getParentFile().listFiles(new FileFilter() {
+                public boolean accept(File f) {
+                    if (!f.getName().startsWith(logName_)) {
+                        // not a rotated file
+                        return false;
+                    } else
+                    if ((nowMS - f.lastModified()) < delAgeMS) {
+                        // too young
+                        return false;
+                    }
+                    // mark for deletion
+                    return true;
+                }
+            });
+            if (!ListTools.isEmpty(delFiles)) {
+                // delete files
+                for (int i = 0; i < delFiles.length; i++) {
+                    boolean didDelete = false;
+                    try {
+                        didDelete = delFiles[i].delete();
+                    } catch (Throwable th) {
+                        // error deleting
+                        //Print.sysPrintln("Unable to delete logFile: " + delFiles[i]);
+                        //th.printStackTrace(); // to stderr/stdout
+                        didDelete = false;
+                    }
+                    if (RTConfig.isDebugMode()) {
+                        if (didDelete) {
+                            Print.sysPrintln("Delete : " + delFiles[i]);
+                        } else {
+                            Print.sysPrintln("Delete Failed: " + delFiles[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        return didRename? bkuFile : null;
+    }
+
     /**
     *** Opens the output log file
     *** (does not return null)
@@ -1433,75 +1552,7 @@ public class Print
                     /* is file (non directory): check rotate [was "logFile.exists()"] */
                     long maxSize = Print.getRotateLogFileSize();
                     if ((maxSize > 0L) && logFile.isFile() && (logFile.length() > maxSize)) {
-                        String rotExtnSep = "."; // must not be empty
-                        final long nowMS  = DateTime.getCurrentTimeMillis();
-
-                        // backup existing file
-                        String absPath = logFile.getAbsolutePath();
-                        String rotExtn = Print.formatDate(RTConfig.getString(RTKey.LOG_FILE_ROTATE_EXTN));
-                        String bkuName = absPath + rotExtnSep + rotExtn;
-                        File bkuFile = new File(bkuName);
-                        for (int i = 1; bkuFile.exists(); i++) { 
-                            // find a filename that does not exist
-                            bkuName = absPath + rotExtnSep + rotExtn + "." + i;
-                            bkuFile = new File(bkuName); 
-                        }
-                        boolean didRename = false;
-                        try {
-                            didRename = logFile.renameTo(bkuFile);
-                            if (didRename) {
-                                // update modified time (so this file isn't deleted below)
-                                bkuFile.setLastModified(nowMS);
-                            }
-                        } catch (Throwable th) {
-                            // error renaming
-                            //Print.sysPrintln("Unable to rename logFile: " + file + " ==> " + bkuFile);
-                            //th.printStackTrace(); // to stderr/stdout
-                            didRename = false;
-                        }
-
-                        // delete old rotated files?
-                        final long delAgeSec = Print.getRotateDeleteAgeSec();
-                        if (delAgeSec > 0L) {
-                            final long   delAgeMS = delAgeSec * 1000L;
-                            final String logName_ = logFile.getName() + rotExtnSep; // include rotate extension separator
-                            File delFiles[] = logFile.getParentFile().listFiles(new FileFilter() {
-                                public boolean accept(File f) {
-                                    if (!f.getName().startsWith(logName_)) {
-                                        // not a rotated file
-                                        return false;
-                                    } else
-                                    if ((nowMS - f.lastModified()) < delAgeMS) {
-                                        // too young
-                                        return false;
-                                    }
-                                    // mark for deletion
-                                    return true;
-                                }
-                            });
-                            if (!ListTools.isEmpty(delFiles)) {
-                                // delete files
-                                for (int i = 0; i < delFiles.length; i++) {
-                                    boolean didDelete = false;
-                                    try {
-                                        didDelete = delFiles[i].delete();
-                                    } catch (Throwable th) {
-                                        // error deleting
-                                        //Print.sysPrintln("Unable to delete logFile: " + delFiles[i]);
-                                        //th.printStackTrace(); // to stderr/stdout
-                                        didDelete = false;
-                                    }
-                                    if (RTConfig.isDebugMode()) {
-                                        if (didDelete) {
-                                            Print.sysPrintln("Delete : " + delFiles[i]);
-                                        } else {
-                                            Print.sysPrintln("Delete Failed: " + delFiles[i]);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-
+                        Print._rotateLogFile(logFile);
                     } // log file rotation
 
                     /* open PrintStream */
@@ -1820,47 +1871,94 @@ public class Print
             return;
         }
 
+        /* header/frame */
+        // Print this 'header' info for logged messages with a level < 'headerLevel'
+        // ie. print header for errors/warnings, but not for info/debug
+        boolean header = (level <= Print.getLogHeaderLevel());
+        String  sFrame = (header && Print._includeStackFrame() && (nextFrame >= 0))? _getStackFrame(nextFrame) : null;
+
+        /* asynchronous log writer */
+        AsyncLogWriter alw = AsyncLogWriter.getInstance();
+        if ((alw != null) && alw.log(level, header, sFrame, msg, args)) {
+            return;
+        }
+
+        /* print message */
+        String logMsg = Print._formatLogMessage(level, header, System.currentTimeMillis(), sFrame, msg, args);
+        Print._writeLog(level, logMsg);
+
+    }
+
+    /**
+    *** Formats the specified log message
+    *** @param level  The log level
+    *** @param header True to include the log header
+    *** @param timeMS The log message time (milliseconds)
+    *** @param frame  The stack frame to include in the header (may be null)
+    *** @param msg    The message to log
+    *** @param args   Any arguments referenced by any format specifiers in
+    ***               <code>msg</code>
+    *** @return The formatted log message (including trailing newline)
+    **/
+    protected static String _formatLogMessage(int level, boolean header, long timeMS, String frame, String msg, Object args[])
+    {
+
         /* message accumulator */
         StringBuffer logMsg = new StringBuffer();
 
         /* log message */
-        if (level <= Print.getLogHeaderLevel()) {
-            // Print this 'header' info for logged messages with a level < 'headerLevel'
-            // ie. print header for errors/warnings, but not for info/debug
+        if (header) {
             logMsg.append("[");
             logMsg.append(Print.getLogLevelString(level));
             if (Print._includeDate()) {
                 logMsg.append("|");
-                logMsg.append(Print.formatDate("MM/dd HH:mm:ss")); // "yyyy/MM/dd HH:mm:ss"
+                logMsg.append((new DateTime(timeMS / 1000L)).format("MM/dd HH:mm:ss",null)); // "yyyy/MM/dd HH:mm:ss"
             }
-            if (Print._includeStackFrame() && (nextFrame >= 0)) {
+            if (frame != null) {
                 logMsg.append("|");
-                logMsg.append(_getStackFrame(nextFrame));
+                logMsg.append(frame);
             }
             logMsg.append("] ");
         }
 
         /* message */
         if (msg != null) {
-            if ((args != null) && (args.length > 0)) {
-                try {
-                    logMsg.append(String.format(msg,args));
-                } catch (Throwable th) { 
-                    // MissingFormatArgumentException, UnknownFormatConversionException
-                    System.out.println("ERROR: [" + msg + "] " + th); // [OUTPUT]
-                    logMsg.append(msg);
-                }
-            } else {
-                logMsg.append(msg);
-            }
+            logMsg.append(Print._formatLogText(msg, args));
             if (!msg.endsWith("\n")) { logMsg.append("\n"); }
         } else {
             logMsg.append("\n");
         }
 
-        /* print message */
-        Print._writeLog(level, logMsg.toString());
+        return logMsg.toString();
+    }
 
+    /**
+    *** Formats the specified message and arguments
+    *** @param msg    The message (or message format)
+    *** @param args   The optional message format arguments
+    *** @return The formatted message
+    **/
+    protected static String _formatLogText(String msg, Object args[])
+    {
+        if ((msg != null) && (args != null) && (args.length > 0)) {
+            try {
+                return String.format(msg,args);
+            } catch (Throwable th) {
+                // MissingFormatArgumentException, UnknownFormatConversionException
+                System.out.println("ERROR: [" + msg + "] " + th); // [OUTPUT]
+                return msg;
+            }
+        } else {
+            return msg;
+        }
+    }
+
+    /**
+    *** Waits for any queued asynchronous log messages to be written
+    **/
+    public static void flushLog()
+    {
+        AsyncLogWriter.flushInstance(5000L);
     }
 
     /**
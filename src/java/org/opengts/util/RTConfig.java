@@ -63,6 +63,10 @@
 //     -Added "getLongArray" and "getDoubleArray" methods
 //  2012/10/16  Martin D. Flynn
 //     -Added support for saving the PID file
+//  2026/10/19
+//     -Resolved property keys are cached in a typed snapshot, which is discarded
+//      whenever a property layer changes.
+//     -Added optional config file change detection and reload (see "rtconfig.reloadIntervalSec")
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
@@ -70,6 +74,8 @@ import java.io.*;
 import java.util.*;
 import java.net.*;
 import java.math.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
 *** Provides static support for hierarchical runtime properties
@@ -414,7 +420,7 @@ public class RTConfig
         if (CFG_PROPERTIES[RUNTIME_CONSTANT] == null) {
             synchronized (CFG_PROPERTIES) {
                 if (CFG_PROPERTIES[RUNTIME_CONSTANT] == null) {
-                    CFG_PROPERTIES[RUNTIME_CONSTANT] = new RTProperties();
+                    RTConfig._setLayer(RUNTIME_CONSTANT, new RTProperties());
                 }
             }
         }
@@ -499,6 +505,234 @@ public class RTConfig
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+    // Resolved key snapshot
+    // Each lookup of a property key walks the thread-temporary properties and the
+    // property layers, then re-parses the String value.  Instead, the layer and the
+    // typed values for each resolved key are cached in a snapshot, which is replaced
+    // (not modified) whenever a property layer changes.  Threads which have thread
+    // local or temporary properties bypass the snapshot.
+
+    private static final int                MAX_SNAPSHOT_KEYS   = 20000;
+    private static final AtomicLong         configVersion       = new AtomicLong(1L);
+    private static volatile ConfigSnapshot  configSnapshot      = null;
+
+    private static final RTProperties.PropertyChangeListener layerChangeListener =
+        new RTProperties.PropertyChangeListener() {
+            public void propertyChange(RTProperties.PropertyChangeEvent pce) {
+                RTConfig._configChanged();
+            }
+        };
+
+    /**
+    *** Resolved property key (layer and precomputed typed values)
+    **/
+    private static class ResolvedKey
+    {
+        private String       key      = null;
+        private RTProperties rtp      = null;
+        private String       strVal   = null;
+        private boolean      intOK    = false;
+        private int          intVal   = 0;
+        private boolean      longOK   = false;
+        private long         longVal  = 0L;
+        private boolean      dblOK    = false;
+        private double       dblVal   = 0.0;
+        private boolean      boolOK   = false;
+        private boolean      boolVal  = false;
+        public ResolvedKey(String key, RTProperties rtp) {
+            this.key = key;
+            this.rtp = rtp;
+            if (rtp != null) {
+                // a typed value is cached only if it does not depend on the default
+                this.strVal  = rtp.getString(key, null);
+                this.intVal  = rtp.getInt(key, 0);
+                this.intOK   = (this.intVal == rtp.getInt(key, 1));
+                this.longVal = rtp.getLong(key, 0L);
+                this.longOK  = (this.longVal == rtp.getLong(key, 1L));
+                this.dblVal  = rtp.getDouble(key, 0.0);
+                this.dblOK   = (this.dblVal == rtp.getDouble(key, 1.0));
+                this.boolVal = RTConfig._getBoolean(rtp, key, false);
+                this.boolOK  = (this.boolVal == RTConfig._getBoolean(rtp, key, true));
+            }
+        }
+        public RTProperties getProperties() {
+            return this.rtp;
+        }
+        public String getString(String dft) {
+            return (this.rtp != null)? this.strVal : dft;
+        }
+        public int getInt(int dft) {
+            return (this.rtp == null)? dft : this.intOK? this.intVal : this.rtp.getInt(this.key, dft);
+        }
+        public long getLong(long dft) {
+            return (this.rtp == null)? dft : this.longOK? this.longVal : this.rtp.getLong(this.key, dft);
+        }
+        public double getDouble(double dft) {
+            return (this.rtp == null)? dft : this.dblOK? this.dblVal : this.rtp.getDouble(this.key, dft);
+        }
+        public boolean getBoolean(boolean dft) {
+            return (this.rtp == null)? dft : this.boolOK? this.boolVal : RTConfig._getBoolean(this.rtp, this.key, dft);
+        }
+    }
+
+    /**
+    *** Resolved keys for a specific configuration version
+    **/
+    private static class ConfigSnapshot
+    {
+        public long                             version     = 0L;
+        public ConcurrentMap<String,ResolvedKey> dftKeys    = new ConcurrentHashMap<String,ResolvedKey>();
+        public ConcurrentMap<String,ResolvedKey> noDftKeys  = new ConcurrentHashMap<String,ResolvedKey>();
+        public ConfigSnapshot(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+    *** Gets the current configuration version.  The version is incremented whenever
+    *** a property layer is changed or replaced.
+    *** @return The current configuration version
+    **/
+    public static long getConfigVersion()
+    {
+        return configVersion.get();
+    }
+
+    /**
+    *** Discards the current resolved key snapshot
+    **/
+    protected static void _configChanged()
+    {
+        configVersion.incrementAndGet();
+    }
+
+    /**
+    *** Sets the specified property layer
+    **/
+    private static void _setLayer(int ndx, RTProperties rtp)
+    {
+        CFG_PROPERTIES[ndx] = rtp;
+        if ((rtp != null) && (ndx != THREAD_LOCAL)) {
+            rtp.removeChangeListener(layerChangeListener);
+            rtp.addChangeListener(layerChangeListener);
+        }
+        RTConfig._configChanged();
+    }
+
+    /**
+    *** Returns true if the current thread has thread local or temporary properties
+    **/
+    private static boolean _hasThreadProperties()
+    {
+        RTProperties tlp = CFG_PROPERTIES[THREAD_LOCAL];
+        if ((tlp != null) && !tlp.isEmpty()) {
+            return true;
+        }
+        if (CFG_THREAD_TEMPORARY != null) {
+            Stack<RTProperties> rtpStack = CFG_THREAD_TEMPORARY.get();
+            if ((rtpStack != null) && !rtpStack.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    *** Gets the resolved key from the current snapshot
+    *** @param key    The key
+    *** @param dftOk  True to check defaults, if not found elsewhere
+    *** @return The resolved key, or null if the snapshot cannot be used
+    **/
+    private static ResolvedKey _getResolvedKey(String key, boolean dftOk)
+    {
+        if ((key == null) || !RTConfig.isInitialized() || RTConfig._hasThreadProperties()) {
+            return null;
+        }
+        long ver = configVersion.get();
+        ConfigSnapshot snap = configSnapshot;
+        if ((snap == null) || (snap.version != ver)) {
+            snap = new ConfigSnapshot(ver);
+            configSnapshot = snap;
+        }
+        ConcurrentMap<String,ResolvedKey> keyMap = dftOk? snap.dftKeys : snap.noDftKeys;
+        ResolvedKey rk = keyMap.get(key);
+        if (rk == null) {
+            rk = new ResolvedKey(key, RTConfig._getPropertiesForKey(key, dftOk));
+            if ((configVersion.get() == ver) && (keyMap.size() < MAX_SNAPSHOT_KEYS)) {
+                keyMap.put(key, rk);
+            }
+        }
+        return rk;
+    }
+
+    // ------------------------------------------------------------------------
+    // Config file change detection
+
+    private static Thread   configWatcher       = null;
+
+    /**
+    *** Starts the config file watcher thread, if "rtconfig.reloadIntervalSec" is
+    *** greater than zero.  The config file directory is checked for changed "*.conf"
+    *** files, and all runtime properties are reloaded when a change is detected.<br>
+    *** Limitations: only "*.conf" files in the loaded config directory are checked
+    *** (files in subdirectories, and the device communication server "dcservers*.xml"
+    *** configuration, are not reloaded), and values which were copied into static
+    *** fields at startup keep their startup value until the process is restarted.
+    **/
+    private static synchronized void _startConfigWatcher()
+    {
+        if (configWatcher != null) {
+            return;
+        }
+        final long intervalMS = RTConfig.getLong(RTKey.RT_RELOAD_INTERVAL, 0L) * 1000L;
+        final File cfgDir     = RTConfig.getLoadedConfigDir();
+        if ((intervalMS <= 0L) || (cfgDir == null)) {
+            return;
+        }
+        configWatcher = new Thread(new Runnable() {
+            public void run() {
+                long lastStamp = RTConfig._getConfigDirStamp(cfgDir);
+                for (;;) {
+                    try { Thread.sleep(intervalMS); } catch (InterruptedException ie) { break; }
+                    long stamp = RTConfig._getConfigDirStamp(cfgDir);
+                    if (stamp != lastStamp) {
+                        lastStamp = stamp;
+                        Print.logInfo("Config file change detected: " + cfgDir);
+                        try {
+                            RTConfig.reload();
+                        } catch (Throwable th) {
+                            Print.logException("Config file reload failed", th);
+                        }
+                    }
+                }
+            }
+        }, "RTConfigWatcher");
+        configWatcher.setDaemon(true);
+        configWatcher.start();
+    }
+
+    /**
+    *** Returns a value which changes when any "*.conf" file in the specified directory changes
+    **/
+    private static long _getConfigDirStamp(File dir)
+    {
+        long stamp = 0L;
+        File files[] = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isFile() && f.getName().endsWith(".conf")) {
+                    stamp = (stamp * 31L) + f.getName().hashCode();
+                    stamp = (stamp * 31L) + f.lastModified();
+                    stamp = (stamp * 31L) + f.length();
+                }
+            }
+        }
+        return stamp;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Returns the RTProperties for the specified key
     *** @param key    The key
@@ -506,6 +740,22 @@ public class RTConfig
     *** @return The RTProperties
     **/
     public static RTProperties getPropertiesForKey(String key, boolean dftOk)
+    {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOk);
+        if (rk != null) {
+            return rk.getProperties();
+        } else {
+            return RTConfig._getPropertiesForKey(key, dftOk);
+        }
+    }
+
+    /**
+    *** Returns the RTProperties for the specified key (uncached)
+    *** @param key    The key
+    *** @param dftOk  True to check defaults, if not found elsewhere
+    *** @return The RTProperties
+    **/
+    private static RTProperties _getPropertiesForKey(String key, boolean dftOk)
     {
         if (key != null) {
 
@@ -705,7 +955,7 @@ public class RTConfig
             //}
             if (CFG_PROPERTIES[COMMAND_LINE] == null) {
                 // first initialization
-                CFG_PROPERTIES[COMMAND_LINE] = cmdLineProps;     
+                RTConfig._setLayer(COMMAND_LINE, cmdLineProps);
                 _startupInit(true); // initialize now to allow for overriding 'configFile'
             } else {
                 // subsequent re-initialization
@@ -771,7 +1021,7 @@ public class RTConfig
     **/
     public static void _setServletContextProperties(RTProperties props)
     {
-        CFG_PROPERTIES[SERVLET_CONTEXT] = props;
+        RTConfig._setLayer(SERVLET_CONTEXT, props);
     }
 
     /** 
@@ -1345,31 +1595,31 @@ public class RTConfig
                 }
             }
         }
-        CFG_PROPERTIES[SYSTEM_PROPS] = new RTProperties(propMap);
+        RTConfig._setLayer(SYSTEM_PROPS, new RTProperties(propMap));
 
         /* environment variables */
         if (RTConfig.getEnvironmentVariablesEnabled()) {
             try {
                 Map<String,String> envMap = System.getenv();
                 //for (String k:envMap.keySet()) {String v = envMap.get(k);Print.logInfo("Env: "+k+"==>"+v);}
-                CFG_PROPERTIES[ENVIRONMENT] = new RTProperties(envMap);
+                RTConfig._setLayer(ENVIRONMENT, new RTProperties(envMap));
                 //CFG_PROPERTIES[ENVIRONMENT].setAllowBlankValues(false);
             } catch (Throwable th) {
                 // security error?
-                CFG_PROPERTIES[ENVIRONMENT] = null;
+                RTConfig._setLayer(ENVIRONMENT, null);
             }
         }
 
         /* load config file/URL */
         if (_foundConfigURL != null) {
-            CFG_PROPERTIES[CONFIG_FILE] = new RTProperties(_foundConfigURL);
+            RTConfig._setLayer(CONFIG_FILE, new RTProperties(_foundConfigURL));
             if (RTConfig.verbose) { 
                 Print.logInfo("Loaded config URL: " + _foundConfigURL); 
             }
         } else {
             //String cfgDir = RTConfig.getFile(RTKey.CONFIG_FILE_DIR);
             //String cfgFile = RTConfig.getFile(RTKey.CONFIG_FILE);
-            CFG_PROPERTIES[CONFIG_FILE] = new RTProperties(); // must be non-null
+            RTConfig._setLayer(CONFIG_FILE, new RTProperties()); // must be non-null
             if (RTConfig.verbose) { 
                 Print.logWarn("No config file was found"); 
             }
@@ -1421,6 +1671,8 @@ public class RTConfig
 
         /* now initialized */
         _didStartupInit = 2;
+        RTConfig._configChanged();
+        RTConfig._startConfigWatcher();
         //Print.logInfo("DebugMode: " + RTConfig.isDebugMode());
 
         /* set all of the Print configuration */
@@ -2079,6 +2331,10 @@ public class RTConfig
     **/
     public static String getString(String key, String dft, boolean dftOK)
     {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOK);
+        if (rk != null) {
+            return rk.getString(dft);
+        }
         RTProperties rtp = getPropertiesForKey(key, dftOK);
         return (rtp != null)? rtp.getString(key, dft) : dft;
     }
@@ -2406,6 +2662,10 @@ public class RTConfig
     **/
     public static double getDouble(String key, double dft, boolean dftOK)
     {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOK);
+        if (rk != null) {
+            return rk.getDouble(dft);
+        }
         RTProperties rtp = getPropertiesForKey(key, dftOK);
         return (rtp != null)? rtp.getDouble(key, dft) : dft;
     }
@@ -2643,6 +2903,10 @@ public class RTConfig
     **/
     public static long getLong(String key, long dft, boolean dftOK)
     {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOK);
+        if (rk != null) {
+            return rk.getLong(dft);
+        }
         RTProperties rtp = getPropertiesForKey(key, dftOK);
         return (rtp != null)? rtp.getLong(key, dft) : dft;
     }
@@ -2722,6 +2986,10 @@ public class RTConfig
     **/
     public static int getInt(String key, int dft, boolean dftOK)
     {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOK);
+        if (rk != null) {
+            return rk.getInt(dft);
+        }
         RTProperties rtp = getPropertiesForKey(key, dftOK);
         return (rtp != null)? rtp.getInt(key, dft) : dft;
     }
@@ -3059,7 +3327,20 @@ public class RTConfig
     **/
     public static boolean getBoolean(String key, boolean dft, boolean dftOK)
     {
+        ResolvedKey rk = RTConfig._getResolvedKey(key, dftOK);
+        if (rk != null) {
+            return rk.getBoolean(dft);
+        }
         RTProperties rtp = getPropertiesForKey(key, dftOK);
+        return RTConfig._getBoolean(rtp, key, dft);
+        //return (rtp != null)? rtp.getBoolean(key, dft) : dft;
+    }
+
+    /**
+    *** Gets a <code>boolean</code> property from the specified RTProperties
+    **/
+    private static boolean _getBoolean(RTProperties rtp, String key, boolean dft)
+    {
         if (rtp == null) {
             return dft; // no key, return default
         } else {
@@ -3070,7 +3351,6 @@ public class RTConfig
                 return rtp.getBoolean(key, dft);  // key with argument, use dft if not parsable.
             }
         }
-        //return (rtp != null)? rtp.getBoolean(key, dft) : dft;
     }
 
     /**
@@ -84,6 +84,7 @@ public class RTKey
     public static final String WEBAPP_FILE                  = "webappFile";
     public static final String CONFIG_FILE                  = "configFile";
     public static final String COMMAND_LINE_CONF            = "conf";           // alias for CONFIG_FILE for cmdLine use
+    public static final String RT_RELOAD_INTERVAL           = "rtconfig.reloadIntervalSec"; // Long (0=disabled)
 
     public static final String TEST_MODE                    = "testMode";
     public static final String DEBUG                        = "debug";
@@ -135,6 +136,11 @@ public class RTKey
     public static final String LOG_FILE_ROTATE_SIZE         = "log.file.rotate.maxSize";
     public static final String LOG_FILE_ROTATE_EXTN         = "log.file.rotate.dateFormatExtn";
     public static final String LOG_FILE_ROTATE_DELETE_AGE   = "log.file.rotate.deleteAge";
+    public static final String LOG_FILE_ROTATE_INTERVAL     = "log.file.rotate.interval";
+    public static final String LOG_FILE_ROTATE_GZIP         = "log.file.rotate.gzip";
+    public static final String LOG_ASYNC_ENABLE             = "log.async.enable";
+    public static final String LOG_ASYNC_QUEUE_SIZE         = "log.async.queueSize";
+    public static final String LOG_ASYNC_OVERFLOW           = "log.async.overflow";
     public static final String LOG_INCL_DATE                = "log.include.date";
     public static final String LOG_INCL_STACKFRAME          = "log.include.frame";
     public static final String LOG_EMAIL_EXCEPTIONS         = "log.email.sendExceptions";
@@ -155,6 +161,14 @@ public class RTKey
     public static final String DB_PORT                      = "db.sql.port";                    // Integer
     public static final String DB_USER                      = "db.sql.user";                    // String
     public static final String DB_PASS                      = "db.sql.password";                // String
+    public static final String DB_EMBEDDED_DIR              = "db.sql.embedded.dir";            // String (embedded DB directory)
+    public static final String DB_REPLICA_URLS              = "db.sql.replica.urls";            // String[] (read-replica JDBC URIs)
+    public static final String DB_REPLICA_MAX_LAG           = "db.sql.replica.maxLagSec";       // Long (sec)
+    public static final String DB_REPLICA_CHECK_INTERVAL    = "db.sql.replica.checkIntervalSec";// Long (sec)
+    public static final String DB_SHARD_URLS                = "db.shard.urls";                  // String[] (shard JDBC URIs)
+    public static final String DB_SHARD_KEY                 = "db.shard.key";                   // String (account|device)
+    public static final String DB_SHARD_MAP_REFRESH         = "db.shard.mapRefreshSec";         // Long (sec)
+    public static final String DB_SHARD_REPLICA_URLS_       = "db.shard.replica.urls.";         // String[] (read-replica JDBC URIs of shard #N)
     public static final String DB_UTF8                      = "db.sql.utf8";                    // Boolean
     public static final String DB_TABLE_NAME_PREFIX         = "db.tableNamePrefix";             // String (not used?)
     public static final String DB_TABLE_LOCKING             = "db.tableLocking";                // Boolean
@@ -163,6 +177,16 @@ public class RTKey
     public static final String DB_SHOW_CONNECTIONS          = "db.showConnections";             // Boolean
     public static final String DB_INACTIVE_TIMEOUT          = "db.inactiveTimeout";             // Long (sec)
     public static final String DB_MYSQL_TBLEXIST_SEL_COUNT  = "db.mysql.tableExistsSelectCount";// Boolean
+    public static final String DB_CACHE_TABLES              = "db.cache.tables";                // String[]
+    public static final String DB_CACHE_MAX_SIZE            = "db.cache.maxSize";               // Integer
+    public static final String DB_CACHE_TIMEOUT             = "db.cache.timeoutSec";            // Long (sec)
+    public static final String DB_QUERY_STATS               = "db.queryStats.enable";           // Boolean
+    public static final String DB_QUERY_STATS_MAX           = "db.queryStats.maxFingerprints";  // Integer
+    public static final String DB_SLOW_QUERY_MS             = "db.slowQuery.thresholdMS";       // Long (ms)
+    public static final String DB_CACHE_INVALIDATE_PORT     = "db.cache.invalidate.port";       // Integer
+    public static final String DB_CACHE_INVALIDATE_PEERS    = "db.cache.invalidate.peers";      // String[] (host:port)
+    public static final String DB_CACHE_INVALIDATE_BIND     = "db.cache.invalidate.bindAddress";// String
+    public static final String DB_CACHE_INVALIDATE_SECRET   = "db.cache.invalidate.secret";     // String
 
     public static final String DB_TYPESIZE_                 = "db.typeSize.";                   // Integer
     public static final String DB_TYPEINT_                  = "db.typeInt.";                    // String (INT8|UINT8|INT16|UINT16|...)
@@ -172,6 +196,9 @@ public class RTKey
     public static final String OSTOOLS_MEMORY_TREND_WEIGHT  = "OSTools.memoryTrendWeight";      // Double (percent 0.0 .. 1.0)
     public static final String OSTOOLS_MEMORY_USAGE_WARN    = "OSTools.memoryUsageWarning";     // Double (percent 0.0 .. 1.0)
 
+    public static final String METRICS_ENABLE               = "metrics.enable";                 // Boolean
+    public static final String METRICS_ACCESS_KEY           = "metrics.accessKey";              // String
+
     // ------------------------------------------------------------------------
 
     public static final String CONSTANT_PREFIX              = "%";
@@ -213,6 +240,7 @@ public class RTKey
         new Entry(CONFIG_FILE_DIR            , "/conf"                          , "Runtime config file directory"),             // APP|WEB
         new Entry(CONFIG_FILE                , "default.conf"                   , "Default runtime config file"),               // APP
         new Entry(WEBAPP_FILE                , "webapp.conf"                    , "Default webapp config file"),                //     WEB
+        new Entry(RT_RELOAD_INTERVAL         , 0L                               , "Config file change check interval (sec)"),   // APP|WEB
 
         new Entry("Web Session context attributes"),
         new Entry(SESSION_NAME               , null                             , "Session context name"),                      // WEB
@@ -259,6 +287,11 @@ public class RTKey
         new Entry(LOG_FILE_ROTATE_SIZE       , 200000L                          , "log file rotate max size"),                  // APP|WEB
         new Entry(LOG_FILE_ROTATE_EXTN       , "yyyyMMddHHmmss'.log'"           , "log file rotate date format extension"),     // APP|WEB
         new Entry(LOG_FILE_ROTATE_DELETE_AGE , "0"                              , "log file rotate delete age (default days)"), // APP|WEB
+        new Entry(LOG_FILE_ROTATE_INTERVAL   , "0"                              , "log file rotate interval (default hours)"),  // APP|WEB
+        new Entry(LOG_FILE_ROTATE_GZIP       , false                            , "gzip rotated log files"),                    // APP|WEB
+        new Entry(LOG_ASYNC_ENABLE           , false                            , "asynchronous log file writer"),              // APP|WEB
+        new Entry(LOG_ASYNC_QUEUE_SIZE       , 8192                             , "asynchronous log queue size"),               // APP|WEB
+        new Entry(LOG_ASYNC_OVERFLOW         , "drop"                           , "asynchronous log overflow (drop|block)"),    // APP|WEB
         new Entry(LOG_INCL_DATE              , false                            , "include date in logs"),                      // APP|WEB
         new Entry(LOG_INCL_STACKFRAME        , false                            , "include stackframe in logs"),                // APP|WEB
         new Entry(LOG_EMAIL_EXCEPTIONS       , false                            , "EMail exceptions"),                          // APP|WEB
@@ -280,6 +313,13 @@ public class RTKey
         new Entry(DB_PORT                    , -1                               , "Database server port"),                      // APP|WEB
         new Entry(DB_USER                    , ""                               , "Database server user"),                      // APP|WEB
         new Entry(DB_PASS                    , ""                               , "Database server password"),                  // APP|WEB
+        new Entry(DB_EMBEDDED_DIR            , ""                               , "Embedded database directory"),               // APP|WEB
+        new Entry(DB_REPLICA_URLS            , ""                               , "Read-replica JDBC URIs"),                    // APP|WEB
+        new Entry(DB_REPLICA_MAX_LAG         , 0L                               , "Read-replica maximum lag (sec)"),            // APP|WEB
+        new Entry(DB_REPLICA_CHECK_INTERVAL  , 30L                              , "Read-replica health-check interval (sec)"),  // APP|WEB
+        new Entry(DB_SHARD_URLS              , ""                               , "Shard JDBC URIs"),                           // APP|WEB
+        new Entry(DB_SHARD_KEY               , "account"                        , "Shard hash key (account|device)"),           // APP|WEB
+        new Entry(DB_SHARD_MAP_REFRESH       , 10L                              , "Shard map refresh interval (sec)"),          // APP|WEB
         new Entry(DB_UTF8                    , false                            , "Enable UTF8"),                               // APP|WEB
         new Entry(DB_TABLE_NAME_PREFIX       , ""                               , "Table name prefix"),                         // APP|WEB
         new Entry(DB_TABLE_LOCKING           , false                            , "Table locking enabled"),                     // APP|WEB
@@ -288,12 +328,26 @@ public class RTKey
         new Entry(DB_SHOW_CONNECTIONS        , false                            , "Show connections"),                          // APP|WEB
         new Entry(DB_INACTIVE_TIMEOUT        , (6L*3600L) /*6hrs*/              , "Inactive connection timeout"),                          // APP|WEB
         new Entry(DB_MYSQL_TBLEXIST_SEL_COUNT, true                             , "MySQL tableExist use SELECT COUNT(*)"),      // APP|WEB
+        new Entry(DB_CACHE_TABLES            , "Account,User,DeviceGroup"       , "Record cache tables"),                       // APP|WEB
+        new Entry(DB_CACHE_MAX_SIZE          , 1000                             , "Record cache size (per table)"),             // APP|WEB
+        new Entry(DB_CACHE_TIMEOUT           , 60L                              , "Record cache timeout (sec)"),                // APP|WEB
+        new Entry(DB_QUERY_STATS             , false                            , "SQL statement statistics enabled"),          // APP|WEB
+        new Entry(DB_QUERY_STATS_MAX         , 1000                             , "SQL statement statistics max fingerprints"), // APP|WEB
+        new Entry(DB_SLOW_QUERY_MS           , 0L                               , "Slow SQL statement threshold (ms)"),         // APP|WEB
+        new Entry(DB_CACHE_INVALIDATE_PORT   , 0                                , "Record cache invalidation port"),            // APP|WEB
+        new Entry(DB_CACHE_INVALIDATE_PEERS  , ""                               , "Record cache invalidation peers"),           // APP|WEB
+        new Entry(DB_CACHE_INVALIDATE_BIND   , "127.0.0.1"                      , "Record cache invalidation bind address"),    // APP|WEB
+        new Entry(DB_CACHE_INVALIDATE_SECRET , ""                               , "Record cache invalidation shared secret"),   // APP|WEB
 
         new Entry("OSTools attributes"),
         new Entry(OSTOOLS_MEMORY_CHECK_ENABLE, false                            , "Enable memory checks"),                      // APP|WEB
         new Entry(OSTOOLS_MEMORY_TREND_WEIGHT, 0.15                             , "Memory Check Trend Weight"),                 // APP|WEB
         new Entry(OSTOOLS_MEMORY_USAGE_WARN  , 0.90                             , "Memory Usage Limit Warning"),                // APP|WEB
 
+        new Entry("Metrics attributes"),
+        new Entry(METRICS_ENABLE             , false                            , "Enable runtime metrics"),                    // APP|WEB
+        new Entry(METRICS_ACCESS_KEY         , null                             , "Remote metrics access key"),                 // WEB
+
     };
 
     // ------------------------------------------------------------------------
@@ -343,6 +397,7 @@ public class RTKey
                 }
             }
             defaultProperties = null;
+            RTConfig._configChanged();
         }
     }
     
@@ -356,6 +411,7 @@ public class RTKey
             if (rtKey != null) {
                 RTKey.getRuntimeEntryMap().put(rtKey, dftEntry);
                 defaultProperties = null;
+                RTConfig._configChanged();
             }
         }
     }
@@ -78,12 +78,17 @@
 //  2013/05/28  Martin D. Flynn
 //     -Changed non-critical "Print.logStackTrace" to "Print.logWarn".
 //     -Added "logActiveSessions"
+//  2026/10/19
+//     -Added "addSessionTerminatedHook", run when each client session has terminated
+//     -UDP lanes (see "setDatagramLaneCount") are stopped by "shutdown", and the datagrams
+//      still queued are closed.  Lanes may be keyed by device (see "DatagramKeyProvider").
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
 import java.io.*;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.net.*;
 import java.awt.event.*;
 import javax.net.*;
@@ -127,6 +132,15 @@ public class ServerSocketThread
 
     public static final boolean     ACK_FROM_LISTEN_PORT                = true;
 
+    /* maximum queued datagrams per UDP lane */
+    public static final int         DATAGRAM_LANE_QUEUE_SIZE            = 2000;
+
+    /* maximum interval (ms) before an idle UDP lane checks for shutdown */
+    public static final long        DATAGRAM_LANE_POLL_MS               = 500L;
+
+    /* maximum queued datagram responses dequeued at once by the UDP ACK queue thread */
+    public static final int         DATAGRAM_ACK_DRAIN_SIZE             = 64;
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -302,6 +316,38 @@ public class ServerSocketThread
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    private static Vector<Runnable> SessionTerminatedHooks = new Vector<Runnable>();
+
+    /**
+    *** Adds a hook which is run by the session thread, after the client handler
+    *** "sessionTerminated" callback, when each client session has terminated.
+    *** @param hook  The hook to run
+    **/
+    public static void addSessionTerminatedHook(Runnable hook)
+    {
+        if ((hook != null) && !SessionTerminatedHooks.contains(hook)) {
+            SessionTerminatedHooks.add(hook);
+        }
+    }
+
+    /**
+    *** Runs the session terminated hooks (called from the session thread)
+    **/
+    private static void _runSessionTerminatedHooks()
+    {
+        if (!SessionTerminatedHooks.isEmpty()) {
+            for (Runnable hook : SessionTerminatedHooks.toArray(new Runnable[0])) {
+                try {
+                    hook.run();
+                } catch (Throwable th) {
+                    Print.logException("Session terminated hook", th);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     private static Vector<ServerSocketThread> SSTList = new Vector<ServerSocketThread>();
 
     private static void _AddSST(ServerSocketThread sst)
@@ -430,6 +476,16 @@ public class ServerSocketThread
 
     private byte                                packetTermPattern[]     = null;
 
+    private PacketFramer                        packetFramer            = null;
+
+    private int                                 datagramLaneCount       = 0;
+    private DatagramLane                        datagramLanes[]         = null;
+    private DatagramKeyProvider                 datagramKeyProvider     = null;
+    private DatagramAckQueue                    datagramAckQueue        = null;
+    private long                                datagramDropCount       = 0L;
+
+    private String                              metricsName             = null;
+
     private boolean                             promptEnabled           = true;
     private byte                                prompt[]                = null;
     private int                                 promptIndex             = -1;
@@ -707,10 +763,16 @@ public class ServerSocketThread
                     clientSocket = new ClientSocket(this.serverSocket.accept()); // block until connection
                 } else
                 if (this.datagramSocket != null) {
-                    // UDP
-                    byte b[] = new byte[ServerSocketThread.this.getMaximumPacketLength()];
-                    DatagramPacket dp = new DatagramPacket(b, b.length);
-                    this.datagramSocket.receive(dp); // block until connection
+                    // UDP (buffer is returned to the pool when the ClientSocket is closed)
+                    int  maxLen = ServerSocketThread.this.getMaximumPacketLength();
+                    byte b[]    = BufferPool.getSharedPool().borrow(maxLen);
+                    DatagramPacket dp = new DatagramPacket(b, maxLen);
+                    try {
+                        this.datagramSocket.receive(dp); // block until connection
+                    } catch (IOException ioe) {
+                        BufferPool.getSharedPool().release(b);
+                        throw ioe;
+                    }
                     clientSocket = new ClientSocket(dp);
                     if (LogEnable) { 
                         Print.logInfo("DatagramPacket.getAddress()=" + dp.getAddress() + ", getSocketAddress()="+dp.getSocketAddress()); 
@@ -744,6 +806,11 @@ public class ServerSocketThread
                 continue; // go back and wait again
             }
 
+            /* UDP lanes: ordered per remote device */
+            if (clientSocket.isUDP() && this._dispatchDatagramLane(clientSocket)) {
+                continue;
+            }
+
             /* ip address : port */
             //String clientIPAddress;
             //try {
@@ -790,6 +857,9 @@ public class ServerSocketThread
         final long timeoutMS = (tmoMS >= 1000L)? tmoMS : 1000L;
     	try {
 
+            /* shutdown UDP lanes */
+            this._stopDatagramLanes();
+
             /* shutdown all client handler threads */
             synchronized (this.clientThreadPool) {
                 Iterator it = this.clientThreadPool.iterator();
@@ -901,6 +971,129 @@ public class ServerSocketThread
     
     // ------------------------------------------------------------------------
 
+    /**
+    *** Sets the number of ordered UDP worker lanes.<br>
+    *** When greater than '0', received datagrams are not dispatched to the general
+    *** session thread pool, but are instead hashed by remote device (see
+    *** <code>setDatagramKeyProvider</code>) into one of the specified number of lanes.
+    *** Each lane processes its datagrams sequentially, thus datagrams from the same
+    *** device are always handled in the order received.  Datagram responses (ACKs)
+    *** are queued, and sent asynchronously by a separate ACK queue thread (each
+    *** response is still sent with its own <code>DatagramSocket.send</code>).
+    *** Must be called before this ServerSocketThread is started.
+    *** @param count  The number of UDP lanes (0 to disable)
+    **/
+    public void setDatagramLaneCount(int count)
+    {
+        this.datagramLaneCount = (count > 0)? count : 0;
+    }
+
+    /**
+    *** Gets the number of ordered UDP worker lanes
+    *** @return The number of UDP lanes (0 if disabled)
+    **/
+    public int getDatagramLaneCount()
+    {
+        return this.datagramLaneCount;
+    }
+
+    /**
+    *** Sets the DatagramKeyProvider used to assign received datagrams to UDP lanes.
+    *** If not specified, datagrams are assigned by remote IP address and port.
+    *** @param dkp  The DatagramKeyProvider
+    **/
+    public void setDatagramKeyProvider(DatagramKeyProvider dkp)
+    {
+        this.datagramKeyProvider = dkp;
+    }
+
+    /**
+    *** Gets the number of received datagrams discarded because the assigned UDP lane was full
+    *** @return The number of dropped datagrams
+    **/
+    public long getDatagramDropCount()
+    {
+        return this.datagramDropCount;
+    }
+
+    /**
+    *** Gets the metrics name prefix for this server ("dcs.&lt;context&gt;")
+    *** @return The metrics name prefix
+    **/
+    protected String getMetricsName()
+    {
+        if (this.metricsName == null) {
+            this.metricsName = "dcs." + RTConfig.getContextName("server");
+        }
+        return this.metricsName;
+    }
+
+    /**
+    *** Dispatch a received datagram to its UDP lane
+    *** @param clientSocket  The UDP ClientSocket instance
+    *** @return True if the datagram was handled by the UDP lanes
+    **/
+    private boolean _dispatchDatagramLane(ClientSocket clientSocket)
+    {
+
+        /* UDP lanes enabled? */
+        if ((this.datagramLaneCount <= 0) || (this.datagramSocket == null)) {
+            return false;
+        }
+
+        /* start lanes */
+        if (this.datagramLanes == null) {
+            this.datagramAckQueue = new DatagramAckQueue();
+            this.datagramAckQueue.start();
+            this.datagramLanes = new DatagramLane[this.datagramLaneCount];
+            for (int i = 0; i < this.datagramLanes.length; i++) {
+                this.datagramLanes[i] = new DatagramLane(i);
+                this.datagramLanes[i].start();
+            }
+            if (LogEnable) { Print.logInfo("Started "+this.datagramLanes.length+" UDP lanes"); }
+        }
+
+        /* lane key */
+        Object key = null;
+        DatagramPacket dp = clientSocket.getDatagramPacket();
+        if (this.datagramKeyProvider != null) {
+            try {
+                key = this.datagramKeyProvider.getDatagramKey(dp.getAddress(), dp.getPort(), dp.getData(), dp.getLength());
+            } catch (Throwable th) {
+                Print.logException("DatagramKeyProvider", th);
+                key = null;
+            }
+        }
+        int hash = (key != null)? key.hashCode() : ((31 * dp.getAddress().hashCode()) + dp.getPort());
+
+        /* queue on lane */
+        int ndx = (hash & 0x7FFFFFFF) % this.datagramLanes.length;
+        if (!this.datagramLanes[ndx].add(clientSocket)) {
+            this.datagramDropCount++;
+            Print.logWarn("UDP lane #"+ndx+" full, datagram discarded [total dropped "+this.datagramDropCount+"]");
+            try { clientSocket.close(); } catch (IOException ioe) {/*ignore*/}
+        }
+        return true;
+
+    }
+
+    /**
+    *** Stops the UDP lanes and ACK queue
+    **/
+    private void _stopDatagramLanes()
+    {
+        if (this.datagramLanes != null) {
+            for (int i = 0; i < this.datagramLanes.length; i++) {
+                this.datagramLanes[i].shutdown();
+            }
+        }
+        if (this.datagramAckQueue != null) {
+            this.datagramAckQueue.interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Sets the remote UDP response port
     *** @param remotePort The remote UDP respose port
@@ -1213,6 +1406,29 @@ public class ServerSocketThread
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Sets the PacketFramer used to determine the length of binary packets.
+    *** If set, the PacketFramer is used in place of the ClientPacketHandler method
+    *** "getActualPacketLength", and its minimum length overrides the minimum packet
+    *** length specified on this ServerSocketThread and on the ClientPacketHandler.
+    *** @param framer  The PacketFramer (null to use the ClientPacketHandler)
+    **/
+    public void setPacketFramer(PacketFramer framer)
+    {
+        this.packetFramer = framer;
+    }
+
+    /**
+    *** Gets the PacketFramer used to determine the length of binary packets
+    *** @return The PacketFramer, or null if the ClientPacketHandler determines the packet length
+    **/
+    public PacketFramer getPacketFramer()
+    {
+        return this.packetFramer;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Sets the line terminator character
     *** @param term The line terminator character
@@ -1648,6 +1864,7 @@ public class ServerSocketThread
     private class ClientSocket
     {
         private Socket         tcpClient   = null;
+        private InputStream    tcpInput    = null;
         private DatagramPacket udpClient   = null;
         private InputStream    inpStream   = null;
         private boolean        isInpStream = false;
@@ -1675,6 +1892,9 @@ public class ServerSocketThread
         public boolean isInputStream() {
             return this.isInpStream;
         }
+        public DatagramPacket getDatagramPacket() {
+            return this.udpClient;
+        }
         public String getSessionType() {
             if (this.isTCP()) {
                 return "TCP";
@@ -1797,7 +2017,11 @@ public class ServerSocketThread
             }
             // return input stream
             if (this.isTCP()) {
-                return this.tcpClient.getInputStream();
+                if (this.tcpInput == null) {
+                    // buffered to avoid a socket read for each byte
+                    this.tcpInput = new BufferedInputStream(this.tcpClient.getInputStream());
+                }
+                return this.tcpInput;
             } else 
             if (this.isUDP()) {
                 if (this.inpStream == null) {
@@ -1875,7 +2099,11 @@ public class ServerSocketThread
                 this.tcpClient.close();
             } else
             if (this.isUDP()) {
-                // n/a
+                if (this.isOpen) {
+                    // return the datagram receive buffer to the pool
+                    this.inpStream = null;
+                    BufferPool.getSharedPool().release(this.udpClient.getData());
+                }
             } else
             if (this.isInputStream()) {
                 // n/a
@@ -1889,6 +2117,115 @@ public class ServerSocketThread
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    /**
+    *** DatagramKeyProvider: returns the key used to assign a datagram to a UDP lane
+    *** (typically the device mobile-id parsed from the datagram header)
+    **/
+    public interface DatagramKeyProvider
+    {
+        public Object getDatagramKey(InetAddress addr, int port, byte data[], int dataLen);
+    }
+
+    /**
+    *** DatagramLane: processes queued datagrams sequentially
+    **/
+    private class DatagramLane
+        extends Thread
+    {
+        private BlockingQueue<ClientSocket> queue   = new LinkedBlockingQueue<ClientSocket>(DATAGRAM_LANE_QUEUE_SIZE);
+        private ServerSessionThread         session = null;
+        private volatile boolean            stopped = false;
+        public DatagramLane(int ndx) {
+            super(ServerSocketThread.this.getName() + "_UDP_" + ndx);
+            this.setDaemon(true);
+            this.session = new ServerSessionThread(); // not started, run inline
+        }
+        public boolean add(ClientSocket clientSocket) {
+            return this.queue.offer(clientSocket);
+        }
+        public void discardQueued() {
+            // close unprocessed datagrams (returns the receive buffers to the pool)
+            ClientSocket clientSocket;
+            while ((clientSocket = this.queue.poll()) != null) {
+                try { clientSocket.close(); } catch (IOException ioe) {/*ignore*/}
+            }
+        }
+        public void shutdown() {
+            // not interrupted: the datagram currently being handled (if any) is allowed to
+            // complete, and the lane then stops within DATAGRAM_LANE_POLL_MS.
+            this.stopped = true;
+            this.discardQueued();
+        }
+        public void run() {
+            while (!this.stopped) {
+                ClientSocket clientSocket = null;
+                try {
+                    clientSocket = this.queue.poll(DATAGRAM_LANE_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                if (clientSocket == null) {
+                    continue; // shutdown?
+                } else
+                if (this.stopped) {
+                    // received during shutdown
+                    try { clientSocket.close(); } catch (IOException ioe) {/*ignore*/}
+                    break;
+                }
+                try {
+                    synchronized (this.session.runLock) {
+                        this.session.client = clientSocket;
+                    }
+                    this.session.handleClientSession(clientSocket);
+                } catch (Throwable th) {
+                    Print.logException("UDP lane session", th);
+                } finally {
+                    try { this.session.close(); } catch (IOException ioe) {/*ignore*/}
+                }
+            }
+            this.discardQueued();
+        }
+    }
+
+    /**
+    *** DatagramAckQueue: sends queued datagram responses asynchronously, so that a UDP
+    *** lane is not held up by the response send
+    **/
+    private class DatagramAckQueue
+        extends Thread
+    {
+        private BlockingQueue<DatagramPacket> queue = new LinkedBlockingQueue<DatagramPacket>();
+        public DatagramAckQueue() {
+            super(ServerSocketThread.this.getName() + "_UDP_ACK");
+            this.setDaemon(true);
+        }
+        public void add(DatagramPacket dp) {
+            this.queue.offer(dp);
+        }
+        public void run() {
+            java.util.List<DatagramPacket> pending = new ArrayList<DatagramPacket>(DATAGRAM_ACK_DRAIN_SIZE);
+            while (true) {
+                try {
+                    pending.add(this.queue.take());
+                } catch (InterruptedException ie) {
+                    break; // shutdown
+                }
+                this.queue.drainTo(pending, DATAGRAM_ACK_DRAIN_SIZE - 1);
+                for (DatagramPacket dp : pending) {
+                    try {
+                        ServerSocketThread.this.datagramSocket.send(dp);
+                    } catch (IOException ioe) {
+                        Print.logError("Sending UDP response ["+dp.getAddress()+":"+dp.getPort()+"] - " + ioe);
+                    }
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     /**
     *** SessionInfo
     **/
@@ -2386,7 +2723,13 @@ public class ServerSocketThread
                         /* handle packet, and get response */
                         if ((line != null) && (clientHandler != null)) {
                             try {
+                                long metricsNS = Metrics.StartTimer();
                                 byte response[] = clientHandler.getHandlePacket(line);
+                                if (metricsNS != 0L) {
+                                    String mn = ServerSocketThread.this.getMetricsName();
+                                    Metrics.GetCounter(mn + (clientSock.isTCP()? ".packets.tcp" : ".packets.udp")).increment();
+                                    Metrics.RecordElapsed(mn + ".handlePacket", metricsNS);
+                                }
                                 if ((response != null) && (response.length > 0)) {
                                     if (clientSock.isTCP()) {
                                         // TCP: Send response over socket connection
@@ -2529,6 +2872,7 @@ public class ServerSocketThread
                     Print.logException("Final packet transmission", t);
                 }
                 clientHandler.sessionTerminated(termError, this.readByteCount, this.writeByteCount);
+                ServerSocketThread._runSessionTerminatedHooks();
                 synchronized (ServerSocketThread.this.activeSessionList) {
                     ServerSocketThread.this.activeSessionList.remove(clientHandler);
                 }
@@ -2693,6 +3037,14 @@ public class ServerSocketThread
                 }
                 // construct datagram packet
                 DatagramPacket respPkt = new DatagramPacket(pkt, pkt.length, clientAddr, clientPort);
+                // queue on UDP lane ACK queue
+                DatagramAckQueue ackQueue = ServerSocketThread.this.datagramAckQueue;
+                if ((ackQueue != null) && !closeSocket) {
+                    if (LogEnable) { Print.logInfo("UDP Response [queued] 0x%s", StringTools.toHexString(pkt)); }
+                    ackQueue.add(respPkt);
+                    this.writeByteCount += pkt.length;
+                    return;
+                }
                 // send
                 int retry = 1;
                 for (;retry > 0; retry--) {
@@ -2820,8 +3172,9 @@ public class ServerSocketThread
             /* set default socket timeout */
             //clientSock.setSoTimeout(10000);
 
-            /* packet */
-            byte buff[]  = new byte[maxLen];
+            /* packet (pooled read buffer) */
+            BufferPool pool = BufferPool.getSharedPool();
+            byte buff[]  = pool.borrow(maxLen);
             int  buffLen = 0;
             boolean isIdle = true;
             long readStartTime = DateTime.getCurrentTimeMillis();
@@ -2846,8 +3199,9 @@ public class ServerSocketThread
                         // end of line/packet
                         if (ServerSocketThread.this.includePacketLineTerminator()) {
                             if (buffLen >= buff.length) { // overflow?
-                                byte newBuff[] = new byte[buff.length + 1];
+                                byte newBuff[] = pool.borrow(buff.length + 1);
                                 System.arraycopy(buff, 0, newBuff, 0, buff.length);
+                                pool.release(buff);
                                 buff = newBuff;
                             }
                             buff[buffLen++] = (byte)ch;
@@ -2875,8 +3229,9 @@ public class ServerSocketThread
 
                     /* save byte */
                     if (buffLen >= buff.length) { // overflow?
-                        byte newBuff[] = new byte[buff.length * 2];
+                        byte newBuff[] = pool.borrow(buff.length * 2);
                         System.arraycopy(buff, 0, newBuff, 0, buff.length);
+                        pool.release(buff);
                         buff = newBuff;
                     }
                     buff[buffLen++] = (byte)ch;
@@ -2921,16 +3276,11 @@ public class ServerSocketThread
             }
             long readEndTime = DateTime.getCurrentTimeMillis();
 
-            /* return packet */
-            if (buff.length == buffLen) {
-                // highly unlikely
-                return buff;
-            } else {
-                // resize buffer
-                byte newBuff[] = new byte[buffLen];
-                System.arraycopy(buff, 0, newBuff, 0, buffLen);
-                return newBuff;
-            }
+            /* return packet (copy out of the pooled buffer) */
+            byte newBuff[] = new byte[buffLen];
+            System.arraycopy(buff, 0, newBuff, 0, buffLen);
+            pool.release(buff);
+            return newBuff;
 
         }
 
@@ -2947,9 +3297,15 @@ public class ServerSocketThread
             long pcktTimeoutMS = ServerSocketThread.this.getPacketTimeout();
             long pcktTimeoutAt = (idleTimeoutMS > 0L)? (DateTime.getCurrentTimeMillis() + idleTimeoutMS) : -1L;
 
+            /* packet framer (overrides "getActualPacketLength") */
+            PacketFramer framer = ServerSocketThread.this.getPacketFramer();
+
             /* packet/read length */
             int maxLen = this._getMaximumPacketLength(clientHandler); // safety net only
             int minLen = this._getMinimumPacketLength(clientHandler); // tcp/udp dependent
+            if ((framer != null) && (framer.getMinimumPacketLength() > 0)) {
+                minLen = framer.getMinimumPacketLength();
+            }
 
             /* set default socket timeout */
             //clientSock.setSoTimeout(10000);
@@ -2958,8 +3314,9 @@ public class ServerSocketThread
             byte pktTerm[] = ServerSocketThread.this.getPacketTerminatorPattern();
             int  pktState  = 0;
 
-            /* read packet */
-            byte packet[] = new byte[maxLen];
+            /* read packet (pooled read buffer) */
+            BufferPool pool = BufferPool.getSharedPool();
+            byte packet[] = pool.borrow(maxLen);
             int  packetLen = 0;
             boolean isIdle = true;
             boolean breakOnLineTerm = false;
@@ -3062,22 +3419,24 @@ public class ServerSocketThread
                     // ---------------------------------------------------------
                     // at this point we've read the minimum required packet length
 
-                    /* no clientHandler? */
-                    if (clientHandler == null) {
+                    /* no clientHandler/framer? */
+                    if ((clientHandler == null) && (framer == null)) {
                         // continue reading
                         continue;
                     }
 
                     // ---------------------------------------------------------
-                    // at this point the client handler determines packet length
+                    // at this point the framer/client handler determines packet length
 
                     /* get the actual/next expected packet length */
-                    int     newPktLen  = clientHandler.getActualPacketLength(packet, packetLen);
+                    int     newPktLen  = (framer != null)?
+                        framer.getActualPacketLength(packet, packetLen) :
+                        clientHandler.getActualPacketLength(packet, packetLen);
                     boolean haveActual = ((newPktLen >= 0) && (newPktLen < PACKET_LEN_INCREMENTAL_MASK));
                     int     nextLen    = (newPktLen < 0)? newPktLen : (newPktLen & PACKET_LEN_INCREMENTAL_MASK);
 
                     /* has the client indicated that session should be terminated? */
-                    if (clientHandler.getTerminateSession()) {
+                    if ((clientHandler != null) && clientHandler.getTerminateSession()) {
                         // done reading, do not continue
                         break;
                     }
@@ -3227,17 +3586,19 @@ public class ServerSocketThread
                 }
             }
 
-            /* return packet */
-            if (packet.length == packetLen) {
-                // highly unlikely
-                return packet;
-            } else {
-                // resize buffer
-                byte newPacket[] = new byte[packetLen];
-                System.arraycopy(packet, 0, newPacket, 0, packetLen);
-                return newPacket;
+            /* validate framed packet */
+            if ((framer != null) && (packetLen > 0) && !framer.isValidPacket(packet, packetLen)) {
+                Print.logWarn("Invalid packet discarded ["+framer+"]: 0x" + StringTools.toHexString(packet, 0, packetLen));
+                pool.release(packet);
+                return null;
             }
 
+            /* return packet (copy out of the pooled buffer) */
+            byte newPacket[] = new byte[packetLen];
+            System.arraycopy(packet, 0, newPacket, 0, packetLen);
+            pool.release(packet);
+            return newPacket;
+
         }
 
     } // ServerSessionThread
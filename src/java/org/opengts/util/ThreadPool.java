@@ -128,6 +128,22 @@ public class ThreadPool
         return count;
     }
 
+    /**
+    *** Appends the thread count and queue depth of all ThreadPools to the specified
+    *** metrics text buffer
+    *** @param sb  The metrics text buffer
+    **/
+    protected static void _AppendMetrics(StringBuffer sb)
+    {
+        synchronized (ThreadPool.threadPoolList) {
+            for (ThreadPool tp : ThreadPool.threadPoolList.keySet()) {
+                String n = "threadPool." + tp.getName();
+                sb.append(n).append(".threads ").append(tp.getSize()).append("\n");
+                sb.append(n).append(".queue ").append(tp.getQueueSize()).append("\n");
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     private ThreadGroup                 poolGroup       = null;
@@ -234,6 +250,17 @@ public class ThreadPool
         return size;
     }
 
+    /**
+    *** Gets the number of jobs waiting in this thread pool's queue
+    *** @return The number of queued jobs
+    **/
+    public int getQueueSize()
+    {
+        synchronized (this.jobQueue) {
+            return this.jobQueue.size();
+        }
+    }
+
     /**
     *** Sets the maximum size of this thread pool
     *** @param maxSize The maximum size of the thread pool
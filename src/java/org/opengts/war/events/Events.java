@@ -64,6 +64,9 @@
 //     -Write users response errors in specified/requested mime format
 //  2012/10/16  Martin D. Flynn
 //     -Added option for link expiration
+//  2026/10/19
+//     -Events following a start time are streamed from an "EventDataCursor"
+//     -Added gzip encoded output (when accepted by the client)
 // ----------------------------------------------------------------------------
 package org.opengts.war.events;
 
@@ -118,6 +121,8 @@ public class Events
     private static final String  PROP_Events_useOldXMLFormat    = "Events.useOldXMLFormat";
     private static final String  PROP_Events_defaultLimit       = "Events.defaultLimit";
     private static final String  PROP_Events_maximumLimit       = "Events.maximumLimit";
+    private static final String  PROP_Events_streamEvents       = "Events.streamEvents";
+    private static final String  PROP_Events_gzipOutput         = "Events.gzipOutput";
 
     /* old XML format */
     private static       boolean OLD_XML_FORMAT                 = false;
@@ -126,6 +131,10 @@ public class Events
     public  static       long    DFT_LIMIT                      = 100L;
     public  static       long    MAX_LIMIT                      = 1000L;
 
+    /* streamed (paged) event output */
+    private static       boolean STREAM_EVENTS                  = true;
+    private static       boolean GZIP_OUTPUT                    = true;
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -140,6 +149,8 @@ public class Events
         OLD_XML_FORMAT = RTConfig.getBoolean(PROP_Events_useOldXMLFormat,OLD_XML_FORMAT);
         DFT_LIMIT      = Math.max(RTConfig.getLong(PROP_Events_defaultLimit,DFT_LIMIT),1L);
         MAX_LIMIT      = Math.max(RTConfig.getLong(PROP_Events_maximumLimit,MAX_LIMIT),DFT_LIMIT);
+        STREAM_EVENTS  = RTConfig.getBoolean(PROP_Events_streamEvents,STREAM_EVENTS);
+        GZIP_OUTPUT    = RTConfig.getBoolean(PROP_Events_gzipOutput,GZIP_OUTPUT);
 
     };
 
@@ -465,8 +476,8 @@ public class Events
         }
 
         /* extract records */
-        // NOT CURRENTLY SCALABLE!
-        // this version assumes that the number of returned records is reasonable and fits in memory
+        // Events following a specified start time are streamed (read one page at a time 
+        // while they are written).  Otherwise the 'latest' events are read into memory.
         Collection<Device> devList = new Vector<Device>();
         //java.util.List<EventData> evList = new Vector<EventData>();
         try {
@@ -475,6 +486,10 @@ public class Events
             for (String devID : deviceIDSet) {
                 Device dev = Device.getDevice(account, devID);
                 if (dev != null) {
+                    if ((limit > 0) && STREAM_EVENTS && (startTime > 0L)) {
+                        dev.setSavedRangeCursor(new EventDataCursor(dev, 
+                            startTime, endTime, null/*statusCodes*/, validGPS, limit));
+                    } else
                     if (limit > 0) {
                         EventData ed[] = this.getDeviceRangeEvents(dev, startTime, endTime, limit, validGPS);
                         //ListTools.toList(evList,ed);
@@ -499,8 +514,18 @@ public class Events
 
         /* output writer */
         PrintWriter out = null;
+        java.util.zip.GZIPOutputStream gzOut = null;
         try {
-            out = response.getWriter();
+            if (GZIP_OUTPUT && CommonServlet.acceptsGzipEncoding(request)) {
+                // compressed output (sync-flush, so that each flushed page is sent)
+                String charset = StringTools.blankDefault(response.getCharacterEncoding(), StringTools.CharEncoding_UTF_8);
+                response.setHeader("Content-Encoding", "gzip");
+                response.addHeader("Vary", "Accept-Encoding");
+                gzOut = new java.util.zip.GZIPOutputStream(response.getOutputStream(), 8192, true/*syncFlush*/);
+                out   = new PrintWriter(new OutputStreamWriter(gzOut, charset));
+            } else {
+                out = response.getWriter();
+            }
         } catch (IOException ioe) {
             Print.logException("Error getting output PrintWriter", ioe);
             this.errorResponse(response, outFmt, "Internal error (output)");
@@ -513,9 +538,15 @@ public class Events
                 account, devList,
                 outFmt, allTags, dispTmz,
                 privLabel);
+            if (gzOut != null) {
+                out.flush();
+                gzOut.finish();
+            }
         } catch (IOException ioe) {
             Print.logException("Error writing events", ioe);
-            this.errorResponse(response, outFmt, "Internal error (output)");
+            if (gzOut == null) {
+                this.errorResponse(response, outFmt, "Internal error (output)");
+            }
             return;
         }
 
@@ -0,0 +1,128 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Returns the current runtime metrics (counters, gauges, latency histograms)
+//  in a plain "name value" text format, suitable for periodic scraping.
+//  Access is allowed from the local host, or when the "key" parameter matches
+//  the runtime property "metrics.accessKey".
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.war.metrics;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.net.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.db.*;
+
+import org.opengts.war.tools.*;
+
+public class MetricsData 
+    extends CommonServlet
+{
+
+    private static final long serialVersionUID = 1L;
+
+    // ------------------------------------------------------------------------
+
+    /* parameter keys (lookups are case insensitive) */
+    private static final String     PARM_KEY[]                  = { "key", "accessKey" };
+
+    // ------------------------------------------------------------------------
+
+    /* static initializer */
+    static {
+
+        /* initialize DBFactories */
+        // should already have been called by 'RTConfigContextListener'
+        DBConfig.servletInit(null);
+
+    };
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* send plain text response */
+    private void plainTextResponse(HttpServletResponse response, String msg)
+        throws ServletException, IOException
+    {
+        CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
+        PrintWriter out = response.getWriter();
+        out.print(msg);
+    }
+
+    /* return true if the request is allowed to read the metrics */
+    private boolean isAuthorized(HttpServletRequest request)
+    {
+
+        /* access key */
+        String accessKey = RTConfig.getString(RTKey.METRICS_ACCESS_KEY,"");
+        if (!StringTools.isBlank(accessKey)) {
+            String key = AttributeTools.getRequestString(request, PARM_KEY, "");
+            if (accessKey.equals(key)) {
+                return true;
+            }
+        }
+
+        /* local host */
+        String ipAddr = request.getRemoteAddr();
+        try {
+            return (ipAddr != null) && InetAddress.getByName(ipAddr).isLoopbackAddress();
+        } catch (UnknownHostException uhe) {
+            return false;
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* GET request */
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+        throws ServletException, IOException
+    {
+
+        /* disabled */
+        if (!Metrics.IsEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        /* authorized? */
+        if (!this.isAuthorized(request)) {
+            Print.logWarn("Unauthorized metrics request: " + request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        /* metrics */
+        this.plainTextResponse(response, Metrics.GetText());
+
+    }
+
+    // ------------------------------------------------------------------------
+
+}
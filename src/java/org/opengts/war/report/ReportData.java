@@ -36,6 +36,8 @@
 //     -Added 'setOrderAscending' to allow descending order EventData reports.
 //  2009/11/01  Martin D. Flynn
 //     -Added ReportOption support
+//  2026/10/19
+//     -'_getEventData' reads events within a read-replica scope
 // ----------------------------------------------------------------------------
 package org.opengts.war.report;
 
@@ -1038,6 +1040,7 @@ public abstract class ReportData
 
         /* get events */
         EventData ed[] = null;
+        DBConnection.pushReadReplica(); // report events may be read from a read-replica
         try {
             ed = EventData.getRangeEvents(
                 accountID, deviceDB.getDeviceID(),
@@ -1049,6 +1052,8 @@ public abstract class ReportData
                 evRcdHandler);
         } catch (DBException dbe) {
             Print.logException("Unable to obtain EventData records", dbe);
+        } finally {
+            DBConnection.popReadReplica();
         }
 
         /* return events */
@@ -516,7 +516,10 @@ public abstract class ReportLayout
     {
         ReportPresentation rp = this.getReportPresentation();
         if (rp != null) {
-            return rp.writeReport(format, rd, out, indentLevel);
+            long metricsNS = Metrics.StartTimer();
+            int count = rp.writeReport(format, rd, out, indentLevel);
+            Metrics.RecordElapsed("report.render." + rd.getReportType(), metricsNS);
+            return count;
         } else {
             return 0;
         }
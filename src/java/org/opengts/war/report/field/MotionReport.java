@@ -49,6 +49,8 @@
 //  2013/08/06  Martin D. Flynn
 //     -Added check for Device specified WorkHours.
 //     -Fixed idle-time stop when ignition-off and "stopOnIgnitionOff" is true
+//  2026/10/19
+//     -Added property 'useTripTable' (read start/stop trips from the Trip table)
 // ----------------------------------------------------------------------------
 package org.opengts.war.report.field;
 
@@ -95,6 +97,7 @@ public class MotionReport
     private static final String PROP_stopOnIgnitionOff      = "stopOnIgnitionOff";
     private static final String PROP_tabulateByWorkHours    = "tabulateByWorkHours";
     private static final String PROP_WorkHours_             = "WorkHours.";
+    private static final String PROP_useTripTable           = "useTripTable";
 
     // ------------------------------------------------------------------------
     // Trip start types
@@ -148,6 +151,12 @@ public class MotionReport
     **/
     private static final boolean TABULATE_BY_WORK_HOURS     = false;
 
+    /**
+    *** Read start/stop trips from the Trip table (when maintained).  Applies only to the
+    *** "startstop" trip type without "stopOnIgnitionOff", which match the Trip table trips.
+    **/
+    private static final boolean USE_TRIP_TABLE             = false;
+
     // ------------------------------------------------------------------------
 
     // During TRIP_ON_SPEED trip delimiters, set this value to 'true' to reset the
@@ -192,6 +201,7 @@ public class MotionReport
     private long                        minStoppedTimeSec   = MIN_STOPPED_TIME_SEC; // TRIP_ON_SPEED only
     private boolean                     stopOnIgnitionOff   = STOP_ON_IGNITION_OFF;
     private boolean                     tabulateByWorkHours = TABULATE_BY_WORK_HOURS;
+    private boolean                     useTripTable        = USE_TRIP_TABLE;
     
     private TimeZone                    timeZone            = null;
     private WorkHours                   workHours           = null;
@@ -284,6 +294,7 @@ public class MotionReport
         this.minStoppedTimeSec   = rtp.getLong(   PROP_minimumStoppedTime  , MIN_STOPPED_TIME_SEC);
         this.stopOnIgnitionOff   = rtp.getBoolean(PROP_stopOnIgnitionOff   , STOP_ON_IGNITION_OFF);
         this.tabulateByWorkHours = rtp.getBoolean(PROP_tabulateByWorkHours , TABULATE_BY_WORK_HOURS);
+        this.useTripTable        = rtp.getBoolean(PROP_useTripTable        , USE_TRIP_TABLE);
 
         /* default work hours */
         if (this.tabulateByWorkHours) {
@@ -606,41 +617,46 @@ public class MotionReport
                 // get events
                 // this.lastValidOdometerKM = 0.0; <-- already reset above
                 this.deviceEventIndex = 0L; // provide an index to all events read
-                this.getEventData(device, this); // <== callback to 'handleDBRecord'
-                //Print.logInfo("Total Accumulated Idle Time: " + this.totalIdleSec + " seconds");
-
-                // handle final record here
-                if (this.lastStopTime > 0) {
-                    // we are stopped
-                    long   driveTime = (this.lastStartTime > 0L)? (this.lastStopTime     - this.lastStartTime    ) : -1L;
-                    double driveDist = (this.lastStartTime > 0L)? (this.lastStopOdometer - this.lastStartOdometer) : -1.0; // kilometers
-                    double fuelTrip  = (this.lastStartTime > 0L)? (this.lastStopFuelUsed - this.lastStartFuelUsed) : -1.0; // liter
-                    double driveEcon = (fuelTrip > 0.0)? (driveDist / fuelTrip) : 0.0; // kilometers per liter
-                    Device.FuelEconomyType driveEconType = Device.FuelEconomyType.FUEL_CONSUMED;
-                    long   stopElaps = -1L;
-                    long   idleElaps = (this.idleAccumulator > 0L)? this.idleAccumulator : -1L;
-                    double fuelIdle  = -1.0;
-                    this._addRecord(accountID, devID, device,
-                        this.lastStartTime  , this.lastStartPoint, this.lastStartAddress, this.lastStartOdometer, this.lastStartFuelUsed,
-                        this.lastStopTime   , this.lastStopPoint , this.lastStopAddress , this.lastStopOdometer , this.lastStopFuelUsed ,
-                        driveTime, driveDist, fuelTrip, driveEcon, driveEconType,
-                        stopElaps, idleElaps, fuelIdle);
-                } else
-                if (this.lastStartTime > 0) {
-                    // we haven't stopped during the range of this report
-                    long   driveTime = -1L;
-                    double driveDist = -1.0; // kilometers
-                    double fuelTrip  = -1.0; // liters
-                    double driveEcon = -1.0; // kilometers per liter
-                    Device.FuelEconomyType driveEconType = Device.FuelEconomyType.UNKNOWN;
-                    long   stopElaps = -1L;
-                    long   idleElaps = -1L;
-                    double fuelIdle  = -1.0;
-                    this._addRecord(accountID, devID, device,
-                        this.lastStartTime  , this.lastStartPoint, this.lastStartAddress, this.lastStartOdometer, this.lastStartFuelUsed,
-                        -1L                 , null               , ""                   , -1.0                  , -1.0                  ,
-                        driveTime, driveDist, fuelTrip, driveEcon, driveEconType,
-                        stopElaps, idleElaps, fuelIdle);
+                if (this.useTripTable && (this.tripStartType == TRIP_ON_START) && !this.stopOnIgnitionOff && Trip.IsEnabled()) {
+                    // precomputed trips (start/stop per "Device.GetMotionChange", no ignition-off stop)
+                    this._addTripRecords(accountID, devID, device);
+                } else {
+                    this.getEventData(device, this); // <== callback to 'handleDBRecord'
+                    //Print.logInfo("Total Accumulated Idle Time: " + this.totalIdleSec + " seconds");
+
+                    // handle final record here
+                    if (this.lastStopTime > 0) {
+                        // we are stopped
+                        long   driveTime = (this.lastStartTime > 0L)? (this.lastStopTime     - this.lastStartTime    ) : -1L;
+                        double driveDist = (this.lastStartTime > 0L)? (this.lastStopOdometer - this.lastStartOdometer) : -1.0; // kilometers
+                        double fuelTrip  = (this.lastStartTime > 0L)? (this.lastStopFuelUsed - this.lastStartFuelUsed) : -1.0; // liter
+                        double driveEcon = (fuelTrip > 0.0)? (driveDist / fuelTrip) : 0.0; // kilometers per liter
+                        Device.FuelEconomyType driveEconType = Device.FuelEconomyType.FUEL_CONSUMED;
+                        long   stopElaps = -1L;
+                        long   idleElaps = (this.idleAccumulator > 0L)? this.idleAccumulator : -1L;
+                        double fuelIdle  = -1.0;
+                        this._addRecord(accountID, devID, device,
+                            this.lastStartTime  , this.lastStartPoint, this.lastStartAddress, this.lastStartOdometer, this.lastStartFuelUsed,
+                            this.lastStopTime   , this.lastStopPoint , this.lastStopAddress , this.lastStopOdometer , this.lastStopFuelUsed ,
+                            driveTime, driveDist, fuelTrip, driveEcon, driveEconType,
+                            stopElaps, idleElaps, fuelIdle);
+                    } else
+                    if (this.lastStartTime > 0) {
+                        // we haven't stopped during the range of this report
+                        long   driveTime = -1L;
+                        double driveDist = -1.0; // kilometers
+                        double fuelTrip  = -1.0; // liters
+                        double driveEcon = -1.0; // kilometers per liter
+                        Device.FuelEconomyType driveEconType = Device.FuelEconomyType.UNKNOWN;
+                        long   stopElaps = -1L;
+                        long   idleElaps = -1L;
+                        double fuelIdle  = -1.0;
+                        this._addRecord(accountID, devID, device,
+                            this.lastStartTime  , this.lastStartPoint, this.lastStartAddress, this.lastStartOdometer, this.lastStartFuelUsed,
+                            -1L                 , null               , ""                   , -1.0                  , -1.0                  ,
+                            driveTime, driveDist, fuelTrip, driveEcon, driveEconType,
+                            stopElaps, idleElaps, fuelIdle);
+                    }
                 }
                 
                 /* fuel economy */
@@ -897,6 +913,37 @@ public class MotionReport
 
     }
 
+    /**
+    *** Adds the body records for the specified Device from the precomputed Trip table
+    *** (rather than from the Device start/stop events)
+    **/
+    private void _addTripRecords(String acctID, String devID, Device device)
+        throws DBException
+    {
+        ReportConstraints rc = this.getReportConstraints();
+        long rptLimit = rc.getReportLimit();
+        Trip trips[] = Trip.getTrips(acctID, devID, rc.getTimeStart(), rc.getTimeEnd(), rptLimit);
+        for (int t = 0; t < trips.length; t++) {
+            Trip   trip      = trips[t];
+            long   startTime = trip.getStartTime();
+            long   stopTime  = trip.isInProgress()? -1L : trip.getEndTime();
+            long   nextStart = ((t + 1) < trips.length)? trips[t + 1].getStartTime() : -1L;
+            long   driveTime = trip.getElapsedSeconds();             // -1 if in progress
+            double driveDist = trip.isInProgress()? -1.0 : trip.getDistanceKM();
+            long   stopElaps = ((stopTime > 0L) && (nextStart > stopTime))? (nextStart - stopTime) : -1L;
+            long   idleElaps = (trip.getIdleSeconds() > 0L)? trip.getIdleSeconds() : -1L;
+            double fuelTrip  = trip.isInProgress()? -1.0 : trip.getFuelTrip();      // liters
+            double driveEcon = (fuelTrip > 0.0)? (driveDist / fuelTrip) : 0.0;     // kilometers per liter
+            Device.FuelEconomyType driveEconType = trip.isInProgress()?
+                Device.FuelEconomyType.UNKNOWN : Device.FuelEconomyType.FUEL_CONSUMED;
+            this._addRecord(acctID, devID, device,
+                startTime, trip.getStartGeoPoint(), trip.getStartAddress(), trip.getStartOdometerKM(), trip.getStartFuelTotal(),
+                stopTime , (stopTime > 0L)? trip.getEndGeoPoint() : null, trip.getEndAddress(), trip.getEndOdometerKM(), trip.getEndFuelTotal(),
+                driveTime, driveDist, fuelTrip, driveEcon, driveEconType,
+                stopElaps, idleElaps, -1.0);
+        }
+    }
+
     /**
     *** Custom DBRecord callback handler class
     *** @param rcd  The EventData record
@@ -0,0 +1,172 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.war.report.field;
+
+import java.io.*;
+import java.util.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+import org.opengts.war.tools.*;
+import org.opengts.war.report.*;
+
+public class TripStateMileageReport
+    extends ReportData
+{
+
+    // ------------------------------------------------------------------------
+    // Summary report
+    // 1 distance record per device per subdivision (state/province), read from the
+    // precomputed Trip table ("Trip.enable") rather than from the Device events.
+    // Trips are selected by start time, so a trip which ends after the end of the
+    // report range is included in full.
+    // ------------------------------------------------------------------------
+
+    private java.util.List<FieldData>   rowData         = null;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Trip State Mileage Report Constructor
+    *** @param rptEntry The ReportEntry
+    *** @param reqState The session RequestProperties instance
+    *** @param devList  The list of devices
+    **/
+    public TripStateMileageReport(ReportEntry rptEntry, RequestProperties reqState, ReportDeviceList devList)
+        throws ReportException
+    {
+        super(rptEntry, reqState, devList);
+        if (this.getAccount() == null) {
+            throw new ReportException("Account-ID not specified");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the bound ReportLayout singleton instance for this report
+    *** @return The bound ReportLayout
+    **/
+    public static ReportLayout GetReportLayout()
+    {
+        // bind the report format to this data
+        return FieldLayout.getReportLayout();
+    }
+
+    /**
+    *** Gets the bound ReportLayout singleton instance for this report
+    *** @return The bound ReportLayout
+    **/
+    public ReportLayout getReportLayout()
+    {
+        // bind the report format to this data
+        return GetReportLayout();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates and returns an iterator for the row data displayed in the body of this report.
+    *** @return The body row data iterator
+    **/
+    public DBDataIterator getBodyDataIterator()
+    {
+
+        /* init */
+        this.rowData = new Vector<FieldData>();
+        if (!Trip.IsEnabled()) {
+            Print.logWarn("Trip table is not enabled ('Trip.enable')");
+            return new ListDataIterator(this.rowData);
+        }
+
+        /* loop through devices */
+        String acctID = this.getAccountID();
+        ReportDeviceList devList = this.getReportDeviceList();
+        for (Iterator<String> i = devList.iterator(); i.hasNext();) {
+            String devID = i.next();
+            try {
+
+                /* get Device record */
+                Device device = devList.getDevice(devID);
+                if (device == null) {
+                    // unlikely
+                    Print.logError("Returned DeviceList 'Device' is null: " + devID);
+                    continue;
+                }
+
+                /* accumulate subdivision distances */
+                OrderedMap<String,Double> distKM = new OrderedMap<String,Double>();
+                OrderedMap<String,Long>   trips  = new OrderedMap<String,Long>();
+                for (Trip trip : Trip.getTrips(acctID, devID, this.getTimeStart(), this.getTimeEnd(), -1L)) {
+                    OrderedMap<String,Double> tripKM = trip.getSubdivisionDistances();
+                    for (String sd : tripKM.keySet()) {
+                        Double km = distKM.get(sd);
+                        Long   tc = trips.get(sd);
+                        distKM.put(sd, new Double(((km != null)? km.doubleValue() : 0.0) + tripKM.get(sd).doubleValue()));
+                        trips.put( sd, new Long(  ((tc != null)? tc.longValue()   : 0L ) + 1L));
+                    }
+                }
+
+                /* create report records */
+                for (String sd : distKM.keySet()) {
+                    FieldData fd = new FieldData();
+                    fd.setDevice(device);
+                    fd.setString(FieldLayout.DATA_DEVICE_ID  , devID);
+                    fd.setString(FieldLayout.DATA_SUBDIVISION, sd);
+                    fd.setDouble(FieldLayout.DATA_DISTANCE   , distKM.get(sd).doubleValue()); // kilometers
+                    fd.setLong(  FieldLayout.DATA_COUNT      , trips.get(sd).longValue());
+                    this.rowData.add(fd);
+                }
+
+            } catch (DBException dbe) {
+
+                // error encountered
+                Print.logException("Error retrieving Trips for Device: " + devID, dbe);
+
+            }
+        }
+
+        /* return data iterator */
+        FieldData.sortByDeviceDescription(this.rowData);
+        return new ListDataIterator(this.rowData);
+
+    }
+
+    /**
+    *** Creates and returns an iterator for the row data displayed in the total rows of this report.
+    *** @return The total row data iterator
+    **/
+    public DBDataIterator getTotalsDataIterator()
+    {
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+
+}
@@ -22,6 +22,8 @@
 //  2008/07/21  Martin D. Flynn
 //     -Added additional CSS class types
 //     -Added support for forwarding requests to a JSP
+//  2026/10/19
+//     -Added "acceptsGzipEncoding"
 // ----------------------------------------------------------------------------
 package org.opengts.war.tools;
 
@@ -190,6 +192,27 @@ public class CommonServlet
         }
     }
 
+    /**
+    *** Returns true if the client accepts "gzip" encoded content (ie. the "Accept-Encoding"
+    *** header contains "gzip", with a non-zero quality value)
+    *** @param request  The HttpServletRequest instance
+    *** @return True if the client accepts gzip encoded content
+    **/
+    public static boolean acceptsGzipEncoding(HttpServletRequest request)
+    {
+        String accEnc = (request != null)? request.getHeader("Accept-Encoding") : null;
+        if (!StringTools.isBlank(accEnc)) {
+            for (String enc : StringTools.split(accEnc.toLowerCase(),',')) {
+                // "gzip", "gzip;q=0.8", but not "gzip;q=0"
+                String e[] = StringTools.split(enc,';');
+                if ((e.length > 0) && e[0].trim().equals("gzip")) {
+                    return !((e.length > 1) && e[1].replace(" ","").matches("q=0(\\.0*)?"));
+                }
+            }
+        }
+        return false;
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
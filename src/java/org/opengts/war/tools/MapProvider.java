@@ -44,6 +44,11 @@
 //     -Added "map.showPushpins" property.
 //  2012/04/26  Martin D. Flynn
 //     -Added PROP_info_showOptionalFields, PROP_info_inclBlankOptFields
+//  2026/10/19
+//     -Added live map push ("auto.push", "getAutoUpdatePush", "writeMapPush")
+//     -Added fleet map pushpin clustering properties ("map.cluster.*")
+//     -Added device map route simplification properties ("map.simplify.*")
+//     -Added incremental map update property ("map.delta.overlapSeconds")
 // ----------------------------------------------------------------------------
 package org.opengts.war.tools;
 
@@ -132,6 +137,13 @@ public interface MapProvider
     public static final String  PROP_map_view[]                 = new String[] { "map.view"                                          };  // String  (road|satellite|hybrid)
     public static final String  PROP_map_minProximity[]         = new String[] { "map.minProximity" /*meters*/                       };  // double  (mim meters between events)
     public static final String  PROP_map_includeGeozones[]      = new String[] { "map.includeGeozones"    , "includeGeozones"        };  // boolean (include traversed Geozones)
+    public static final String  PROP_map_delta_overlapSec[]     = new String[] { "map.delta.overlapSeconds"                          };  // long    (incremental update re-read window)
+    public static final String  PROP_map_cluster_enable[]       = new String[] { "map.cluster.enable"     , "map.cluster"            };  // boolean (cluster fleet pushpins in viewport)
+    public static final String  PROP_map_cluster_cellPixels[]   = new String[] { "map.cluster.cellPixels"                            };  // int     (cluster grid cell size)
+    public static final String  PROP_map_cluster_maxZoom[]      = new String[] { "map.cluster.maxZoom"                               };  // int     (no clustering above this zoom)
+    public static final String  PROP_map_simplify_enable[]      = new String[] { "map.simplify.enable"    , "map.simplify"           };  // boolean (simplify device map route)
+    public static final String  PROP_map_simplify_pixels[]      = new String[] { "map.simplify.pixelTolerance"                       };  // double  (simplification tolerance in pixels)
+    public static final String  PROP_map_simplify_minPoints[]   = new String[] { "map.simplify.minPoints"                            };  // int     (min points before simplifying)
     public static final String  PROP_pushpin_zoom[]             = new String[] { "pushpin.zoom"                                      };  // dbl/int (default zoom with points)
     public static final String  PROP_default_zoom[]             = new String[] { "default.zoom"                                      };  // dbl/int (default zoom without points)
     public static final String  PROP_default_latitude[]         = new String[] { "default.lat"            , "default.latitude"       };  // double  (default latitude)
@@ -152,6 +164,8 @@ public interface MapProvider
     public static final String  PROP_auto_onload_fleet[]        = new String[] { "auto.onload"            , "auto.onload.fleet"      };  // boolean (auto update onload)
     public static final String  PROP_auto_interval_fleet[]      = new String[] { "auto.interval"          , "auto.interval.fleet"    };  // int     (update interval seconds)
     public static final String  PROP_auto_count_fleet[]         = new String[] { "auto.count"             , "auto.count.fleet"       };  // int     (update count)
+    public static final String  PROP_auto_push_device[]         = new String[] { "auto.push"              , "auto.push.device"       };  // boolean (push updates)
+    public static final String  PROP_auto_push_fleet[]          = new String[] { "auto.push"              , "auto.push.fleet"        };  // boolean (push updates)
 
     /* replay properties (device map only) */
     public static final String  PROP_replay_enable[]            = new String[] { "replay.enable"                                     };  // boolean (replay)
@@ -345,6 +359,13 @@ public interface MapProvider
     **/
     public long getAutoUpdateCount(boolean isFleet);
 
+    /** 
+    *** Returns true if auto-updates are pushed to the map (rather than polled)
+    *** @param isFleet True for fleet map
+    *** @return True if auto-updates are pushed
+    **/
+    public boolean getAutoUpdatePush(boolean isFleet);
+
     // ------------------------------------------------------------------------
 
     /** 
@@ -420,6 +441,17 @@ public interface MapProvider
         int statusCodes[])
         throws IOException;
 
+    /**
+    *** Pushes new events for the current displayed map, as they are inserted, until
+    *** the client disconnects (Server-Sent Events)
+    *** @param reqState     The session RequestProperties
+    *** @param statusCodes  The status-codes to which the pushed events will be limited
+    **/
+    public void writeMapPush(
+        RequestProperties reqState,
+        int statusCodes[])
+        throws IOException;
+
     // ------------------------------------------------------------------------
 
     /**
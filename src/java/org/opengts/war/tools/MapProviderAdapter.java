@@ -41,6 +41,11 @@
 //     -"getMaxPushpins" modified to support a 'report' type limit as well.
 //  2013/08/06  Martin D. Flynn
 //     -Fixed Legend localization
+//  2026/10/19
+//     -Added incremental map updates ("delta"/ETag), and gzip encoded map updates
+//     -Added live map push channel ("writeMapPush", "auto.push")
+//     -Added fleet map viewport culling and server-side pushpin clustering
+//     -Added device map route simplification (see RouteSimplifier)
 // ----------------------------------------------------------------------------
 package org.opengts.war.tools;
 
@@ -844,6 +849,17 @@ public abstract class MapProviderAdapter
             this.getProperties().getLong(MapProvider.PROP_auto_count_device, DFT_AUTO_MAXCOUNT);
     }
 
+    /**
+    *** Returns true if auto-updates are pushed to the map by this MapProvider
+    *** @return True if auto-updates are pushed
+    **/
+    public boolean getAutoUpdatePush(boolean isFleet)
+    {
+        return isFleet?
+            this.getProperties().getBoolean(MapProvider.PROP_auto_push_fleet , false) :
+            this.getProperties().getBoolean(MapProvider.PROP_auto_push_device, false);
+    }
+
     // ------------------------------------------------------------------------
     
     /**
@@ -971,7 +987,12 @@ public abstract class MapProviderAdapter
 
     /**
     *** Writes the events in XML/JSON format to the http output stream.  The criteria used for
-    *** selecting EventData records is specified with the RequestProperties session state.
+    *** selecting EventData records is specified with the RequestProperties session state.<br>
+    *** If the request includes the "delta" parameter, or an "If-None-Match" header, with the
+    *** token of the current session map state (see MapUpdateState), only the events not
+    *** previously sent are returned, or "304 Not Modified" if there are none (see
+    *** MapUpdateState for the limitations of incremental updates).
+    *** The response is streamed to the client, gzip encoded if accepted by the client.
     *** @param reqState     The current session state containing the EventData selection criteria
     *** @param statusCodes  The status-codes to which the map event data will be limited
     **/
@@ -981,24 +1002,295 @@ public abstract class MapProviderAdapter
         int statusCodes[])
         throws IOException
     {
+        HttpServletRequest  request  = reqState.getHttpServletRequest();
         HttpServletResponse response = reqState.getHttpServletResponse();
-        PrintWriter out = response.getWriter();
+
+        /* precheck (ie. adjust RequestProperties) */
+        writeMapUpdate_precheck(reqState);
+
+        /* viewport (fleet map clustering) */
+        GeoBounds viewport = this._getClusterViewport(reqState);
+        boolean   simplify = !reqState.isFleet() && this.getProperties().getBoolean(MapProvider.PROP_map_simplify_enable, true);
+        int       zoom     = ((viewport != null) || simplify)? AttributeTools.getRequestInt(request, PARM_MAP_ZOOM, -1) : -1;
+
+        /* current map update state */
+        // (clustered responses are always complete, since the clusters include all points)
+        MapUpdateState mapState  = MapUpdateState.getSessionState(reqState); // may be null
+        String  selection  = MapUpdateState.getSelection(reqState, mapDataFormat, statusCodes) +
+            ((viewport != null)? (viewport.toString() + "|" + zoom) : "") +
+            (simplify? ("Z:" + zoom) : "");
+        String  deltaToken = AttributeTools.getRequestString(request, MapUpdateState.PARM_MAP_DELTA, null);
+        EventData evdata[] = null;
+        EventUtil.MapDelta delta = null;
+        if (mapState == null) {
+            // no session state: always a complete response
+            try {
+                evdata = reqState.getMapEvents(statusCodes, -1L, null, new HashSet<String>()); // does not return null
+            } catch (DBException dbe) {
+                Print.logException("Error reading Events", dbe);
+                CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
+                response.getWriter().println("\nError reading Events");
+                return;
+            }
+        } else {
+            synchronized (mapState) {
+                // the state is checked, read, and updated atomically for concurrent requests in the same session
+                boolean deltaOK    = !StringTools.isBlank(deltaToken) && mapState.isCurrent(selection, deltaToken);
+                boolean isDelta    = deltaOK && (viewport == null);
+                boolean notModOK   = deltaOK || MapProviderAdapter._ifNoneMatch(request, mapState, selection);
+
+                /* extract records */
+                Set<String> devIDSet = new HashSet<String>();
+                Set<String> replaced = null;
+                java.util.List<String> removed = null;
+                try {
+                    // This returns an array of EventData records based on the request attributes
+                    if (notModOK) {
+                        // only events not already sent
+                        mapState.setOverlapSeconds(this.getProperties().getLong(MapProvider.PROP_map_delta_overlapSec, MapUpdateState.DFT_OVERLAP_SEC));
+                        boolean limitFirst = EventData.LimitType.FIRST.equals(reqState.getEventLimitType());
+                        long    devLimit   = reqState.isFleet()? reqState.getFleetDeviceEventCount() : reqState.getEventLimit();
+                        Map<String,Long> since = mapState.getSinceTimes(limitFirst, devLimit);
+                        evdata  = mapState.getUnsentEvents(reqState.getMapEvents(statusCodes, -1L, since, devIDSet), null);
+                        removed = mapState.getRemovedDeviceIDs(devIDSet);
+                        if (ListTools.isEmpty(evdata) && ListTools.isEmpty(removed)) {
+                            // nothing has changed
+                            response.setHeader("ETag", "\"" + mapState.getToken() + "\"");
+                            response.setHeader("CACHE-CONTROL", "PRIVATE, NO-CACHE");
+                            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                            return;
+                        } else
+                        if (!isDelta) {
+                            // conditional full request: re-read all events
+                            devIDSet.clear();
+                            removed = null;
+                            evdata  = reqState.getMapEvents(statusCodes, -1L, null, devIDSet);
+                        } else
+                        if (!limitFirst) {
+                            // limited to the last N events: devices which would exceed N events are
+                            // replaced by their last N events
+                            replaced = mapState.getOverLimitDeviceIDs(evdata, devLimit);
+                            if (!replaced.isEmpty()) {
+                                since.keySet().removeAll(replaced);
+                                devIDSet.clear();
+                                evdata  = mapState.getUnsentEvents(reqState.getMapEvents(statusCodes, -1L, since, devIDSet), replaced);
+                                removed = mapState.getRemovedDeviceIDs(devIDSet);
+                            }
+                        }
+                    } else {
+                        evdata  = reqState.getMapEvents(statusCodes, -1L, null, devIDSet); // does not return null
+                    }
+                    //Print.logInfo("Found Event count: " + evdata.length);
+                } catch (DBException dbe) {
+                    Print.logException("Error reading Events", dbe);
+                    CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
+                    response.getWriter().println("\nError reading Events");
+                    return;
+                }
+
+                /* update map state */
+                String token = mapState.update(selection, evdata, isDelta, devIDSet, replaced);
+                delta = new EventUtil.MapDelta(token, isDelta, removed, replaced);
+                response.setHeader("ETag", "\"" + token + "\"");
+            }
+        }
 
         /* mime content type */
         String mimeType = EventUtil.IsXMLMapDataFormat(mapDataFormat)? 
             HTMLTools.MIME_XML() : 
             HTMLTools.MIME_JSON();
         CommonServlet.setResponseContentType(response, mimeType, StringTools.CharEncoding_UTF_8);
-        response.setHeader("CACHE-CONTROL", "NO-CACHE");
+        response.setHeader("CACHE-CONTROL", "PRIVATE, NO-CACHE"); // may be stored, but must be revalidated
         response.setHeader("PRAGMA"       , "NO-CACHE");
         response.setDateHeader("EXPIRES"  , 0         );
 
+        /* viewport culling and clustering */
+        java.util.List<GeoCluster<EventData>> clusters = null;
+        if (viewport != null) {
+            int cellPix = this.getProperties().getInt(MapProvider.PROP_map_cluster_cellPixels, GeoCluster.DFT_CELL_PIXELS);
+            int maxZoom = this.getProperties().getInt(MapProvider.PROP_map_cluster_maxZoom   , DFT_CLUSTER_MAX_ZOOM);
+            java.util.List<EventData> pushpins = new Vector<EventData>();
+            if ((zoom < 0) || (zoom > maxZoom)) {
+                // viewport culling only
+                for (EventData ev : evdata) {
+                    if (viewport.containsPoint(ev)) {
+                        pushpins.add(ev);
+                    }
+                }
+            } else {
+                // single points are displayed as pushpins
+                clusters = GeoCluster.createClusters(Arrays.asList(evdata), viewport, zoom, cellPix);
+                for (GeoCluster<EventData> gc : clusters) {
+                    if (gc.isSinglePoint()) {
+                        pushpins.addAll(gc.getMembers());
+                    }
+                }
+            }
+            evdata = pushpins.toArray(new EventData[pushpins.size()]);
+        }
+
+        /* route simplification (device map) */
+        // (the map state above retains the last timestamp of all events, so that
+        // subsequent incremental updates are unaffected by the removed points)
+        if (simplify && ((delta == null) || !delta.isDelta())) {
+            evdata = this._simplifyRoute(evdata, zoom);
+        }
+
         /* write map data */
+        // (streamed to the client, gzip encoded if accepted)
+        response.addHeader("Vary", "Accept-Encoding");
+        OutputStream out = response.getOutputStream();
+        java.util.zip.GZIPOutputStream gzOut = null;
+        if (CommonServlet.acceptsGzipEncoding(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            gzOut = new java.util.zip.GZIPOutputStream(out, 8192);
+            out = gzOut;
+        }
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(out, StringTools.CharEncoding_UTF_8));
         this.writeMapUpdate(
-            out, 0, 
+            pw, 0, 
             mapDataFormat, true/*isTopLevelTag*/,
             reqState, 
-            statusCodes); // XML/JSON
+            evdata, delta, clusters); // XML/JSON
+        pw.flush();
+        if (gzOut != null) {
+            gzOut.finish();
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* fleet map viewport request parameters */
+    public  static final String PARM_MAP_BOUNDS[]       = new String[] { "bounds", "viewport" }; // "minLat,maxLat,minLon,maxLon"
+    public  static final String PARM_MAP_ZOOM[]         = new String[] { "zoom" };
+
+    private static final int    DFT_CLUSTER_MAX_ZOOM    = 16;
+
+    /**
+    *** Returns the requested map viewport, if viewport culling/clustering applies to the
+    *** current request.  Viewport culling/clustering applies to fleet maps displaying a
+    *** single point per device (route lines require all points), when the request
+    *** includes the viewport bounds.
+    *** @param reqState  The current session state
+    *** @return The viewport bounds, or null if culling/clustering does not apply
+    **/
+    private GeoBounds _getClusterViewport(RequestProperties reqState)
+    {
+        if (!reqState.isFleet() || (reqState.getFleetDeviceEventCount() > 1L)) {
+            return null;
+        } else
+        if (!this.getProperties().getBoolean(MapProvider.PROP_map_cluster_enable, true)) {
+            return null;
+        }
+        String bounds = AttributeTools.getRequestString(reqState.getHttpServletRequest(), PARM_MAP_BOUNDS, "");
+        if (StringTools.isBlank(bounds)) {
+            return null;
+        }
+        GeoBounds gb = new GeoBounds(bounds, ','); // minLon > maxLon spans the +/-180 meridian
+        if ((gb.getMinLatitude() >= gb.getMaxLatitude()) || (gb.getMinLongitude() == gb.getMaxLongitude())) {
+            // invalid (or unparsed) bounds
+            Print.logWarn("Invalid map viewport: " + bounds);
+            return null;
+        }
+        return gb;
+    }
+
+    /* device map route simplification */
+    private static final double DFT_SIMPLIFY_PIXELS     = RouteSimplifier.DFT_PIXEL_TOLERANCE;
+    private static final int    DFT_SIMPLIFY_MIN_POINTS = 500;
+    private static final double ROUTE_BOUNDS_PIXELS     = 1000.0; // assumed map size when no zoom is specified
+
+    /**
+    *** Returns the simplified route for the specified map zoom level.  Routes with fewer
+    *** than "map.simplify.minPoints" events are returned as-is.  If no zoom level is
+    *** specified, the tolerance is derived from the size of the route bounds.  Events
+    *** with significant status codes, stops, and geozone transitions are always retained.
+    *** @param evdata  The route events
+    *** @param zoom    The requested map zoom level (&lt;0 if unspecified)
+    *** @return The simplified route events
+    **/
+    private EventData[] _simplifyRoute(EventData evdata[], int zoom)
+    {
+        int minPts = this.getProperties().getInt(MapProvider.PROP_map_simplify_minPoints, DFT_SIMPLIFY_MIN_POINTS);
+        if ((evdata == null) || (evdata.length < Math.max(minPts,3))) {
+            return evdata;
+        }
+        double pixTol = this.getProperties().getDouble(MapProvider.PROP_map_simplify_pixels, DFT_SIMPLIFY_PIXELS);
+        if (pixTol <= 0.0) {
+            return evdata;
+        }
+        RouteSimplifier rs = new RouteSimplifier(evdata);
+        java.util.List<EventData> route;
+        if (zoom >= 0) {
+            route = rs.simplifyForZoom(zoom, pixTol);
+        } else {
+            GeoBounds gb = new GeoBounds();
+            for (EventData ev : evdata) {
+                if (ev.isValidGeoPoint()) {
+                    gb.extendByPoint(ev);
+                }
+            }
+            route = rs.simplify((gb.getDiagonalMeters() / ROUTE_BOUNDS_PIXELS) * pixTol);
+        }
+        return route.toArray(new EventData[route.size()]);
+    }
+
+    /* return true if the request "If-None-Match" header matches the current map state */
+    private static boolean _ifNoneMatch(HttpServletRequest request, MapUpdateState mapState, String selection)
+    {
+        String inm = (request != null)? request.getHeader("If-None-Match") : null;
+        if ((mapState != null) && !StringTools.isBlank(inm)) {
+            for (String etag : StringTools.split(inm,',')) {
+                if (mapState.isCurrent(selection, etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Pushes new events for the devices on the current displayed map, as they are inserted,
+    *** until the client disconnects or the maximum connection time is reached (see
+    *** MapPushChannel).  The pushed records are in the same format as the map update
+    *** pushpin records.
+    *** @param reqState     The current session state containing the EventData selection criteria
+    *** @param statusCodes  The status-codes to which the pushed events will be limited
+    **/
+    public void writeMapPush(
+        RequestProperties reqState, 
+        int statusCodes[])
+        throws IOException
+    {
+        HttpServletRequest  request  = reqState.getHttpServletRequest();
+        HttpServletResponse response = reqState.getHttpServletResponse();
+
+        /* precheck (ie. adjust RequestProperties) */
+        writeMapUpdate_precheck(reqState);
+
+        /* subscribed devices */
+        Set<String> devIDSet;
+        try {
+            devIDSet = reqState.getMapDeviceIDs();
+        } catch (DBException dbe) {
+            Print.logException("Error reading map Devices", dbe);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (devIDSet.isEmpty()) {
+            // nothing to push, client should not reconnect
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+
+        /* run channel */
+        String iconSel = this.getIconSelector(reqState);
+        OrderedSet<String> iconKeys = (OrderedSet<String>)this.getPushpinIconMap(reqState).keySet();
+        MapPushChannel channel = new MapPushChannel(reqState, devIDSet, statusCodes, iconSel, iconKeys);
+        channel.run(request, response);
 
     }
 
@@ -1033,6 +1325,33 @@ public abstract class MapProviderAdapter
             return;
         }
 
+        /* write events */
+        this.writeMapUpdate(
+            out, indentLevel, 
+            mapDataFormat, isTopLevelTag,
+            reqState, 
+            evdata, null/*delta*/, null/*clusters*/);
+
+    }
+
+    /**
+    *** Writes the specified events and pushpin clusters in XML/JSON format to the http output stream.
+    *** @param out          The output stream
+    *** @param indentLevel  The indent level
+    *** @param reqState     The current session state
+    *** @param evdata       The events to write as individual pushpins
+    *** @param delta        The incremental update information (may be null)
+    *** @param clusters     The pushpin clusters (may be null)
+    **/
+    protected void writeMapUpdate(
+        PrintWriter out, int indentLevel, 
+        int mapDataFormat, boolean isTopLevelTag,
+        RequestProperties reqState, 
+        EventData evdata[], EventUtil.MapDelta delta,
+        Collection<? extends GeoCluster<?>> clusters)
+        throws IOException
+    {
+
         /* arguments */
         PrivateLabel privLabel  = reqState.getPrivateLabel();
         boolean      isFleet    = reqState.isFleet();
@@ -1068,16 +1387,17 @@ public abstract class MapProviderAdapter
             int mdf = (mapDataFormat <= EventUtil.MAPDATA_DEFAULT)? 
                 EventUtil.GetDefaultMapDataFormat() : 
                 mapDataFormat;
-            evUtil.writeMapEvents(
-                mdf, indentLevel, out, 
-                reqState.isSoapRequest(), isTopLevelTag,
-                privLabel, 
-                evdata, inclZones,
-                iconSel, iconKeys,
-                isFleet, fleetRoute, selID,
-                tmz, 
-                acct, user,
-                latest, lastBatt, lastSig, proximityM);
+            evUtil.writeMapEvents(out, (new EventUtil.MapEventsArgs())
+                .setDataFormat(mdf, indentLevel)
+                .setRequest(reqState.isSoapRequest(), isTopLevelTag, privLabel)
+                .setEvents(evdata, inclZones)
+                .setIcons(iconSel, iconKeys)
+                .setSelection(isFleet, fleetRoute, selID)
+                .setAccount(acct, user, tmz)
+                .setLatest(latest, lastBatt, lastSig)
+                .setMinProximity(proximityM)
+                .setDelta(delta)
+                .setClusters(clusters));
         } catch (IOException ioe) {
             Print.logException("Error writing events", ioe);
             out.println("\nError writing Events"); // output is Mime type plain
@@ -0,0 +1,364 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Server-Sent Events live map tracking channel
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Server-Sent Events ("text/event-stream") live map tracking channel.<br>
+*** A channel is subscribed to the EventBus for the devices displayed on the requesting
+*** session's map (the authorized devices of the selected group, or the selected device),
+*** and pushes each newly inserted event to the client as a "pushpin" event, whose data
+*** is the same pushpin record format returned by the map update request (see
+*** "EventUtil.formatMapEvent").  This replaces the periodic auto-update polling of the
+*** full map update request.<br>
+*** Back-pressure: inserted events are queued per device, and only the latest queued event
+*** for each device is retained.  When the client (or network) is slower than the rate at
+*** which events arrive, intermediate positions are dropped rather than buffered, so that
+*** the memory used by a channel is bounded by the number of subscribed devices.<br>
+*** Each channel occupies a request thread for the life of the connection, so the number
+*** of concurrent channels, and the duration of each connection, is limited (the client
+*** "EventSource" reconnects automatically when a connection ends).  When a client
+*** reconnects, a "resync" event is sent first, indicating that events may have been
+*** missed and that the client should request a (delta) map update.
+**/
+
+public class MapPushChannel
+    implements EventBus.Subscriber
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String  PROP_MapPush_maxConnections    = "MapPush.maxConnections";
+    public  static final String  PROP_MapPush_maxConnectSeconds = "MapPush.maxConnectSeconds";
+    public  static final String  PROP_MapPush_heartbeatSeconds  = "MapPush.heartbeatSeconds";
+
+    private static final int     DFT_MAX_CONNECTIONS            = 200;
+    private static final long    DFT_MAX_CONNECT_SECONDS        = 600L;
+    private static final long    DFT_HEARTBEAT_SECONDS          = 15L;
+    private static final long    RECONNECT_MS                   = 3000L;
+
+    public  static final String  MIME_EVENT_STREAM              = "text/event-stream";
+
+    public  static final String  EVENT_PUSHPIN                  = "pushpin";
+    public  static final String  EVENT_RESYNC                   = "resync";
+
+    // ------------------------------------------------------------------------
+
+    private static AtomicInteger activeCount                    = new AtomicInteger(0);
+    private static AtomicLong    pushedCount                    = new AtomicLong(0L);
+    private static AtomicLong    droppedCount                   = new AtomicLong(0L);
+
+    static {
+        Metrics.RegisterGauge("mapPush.connections", new Metrics.Gauge() {
+            public long getValue() { return activeCount.get(); }
+        });
+        Metrics.RegisterGauge("mapPush.pushed", new Metrics.Gauge() {
+            public long getValue() { return pushedCount.get(); }
+        });
+        Metrics.RegisterGauge("mapPush.dropped", new Metrics.Gauge() {
+            public long getValue() { return droppedCount.get(); }
+        });
+    }
+
+    /**
+    *** Gets the number of currently connected channels
+    *** @return The number of connected channels
+    **/
+    public static int GetActiveCount()
+    {
+        return activeCount.get();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private String                      accountID       = null;
+    private Set<String>                 deviceIDs       = null;
+    private int                         statusCodes[]   = null;
+    private long                        startTime       = -1L;
+    private long                        endTime         = -1L;
+
+    private BasicPrivateLabel           privLabel       = null;
+    private Account                     account         = null;
+    private String                      iconSelector    = null;
+    private OrderedSet<String>          iconKeys        = null;
+    private boolean                     isFleet         = false;
+    private TimeZone                    timeZone        = null;
+
+    private Map<String,EventData>       pending         = new LinkedHashMap<String,EventData>();
+    private Map<String,Device>          devices         = new HashMap<String,Device>();
+    private volatile boolean            closed          = false;
+
+    /**
+    *** Constructor
+    *** @param reqState      The session RequestProperties
+    *** @param deviceIDs     The IDs of the devices displayed on the map
+    *** @param statusCodes   The status-codes to which the pushed events are limited (null for all)
+    *** @param iconSelector  The MapProvider pushpin icon selector
+    *** @param iconKeys      The MapProvider pushpin icon keys
+    **/
+    public MapPushChannel(RequestProperties reqState,
+        Set<String> deviceIDs, int statusCodes[],
+        String iconSelector, OrderedSet<String> iconKeys)
+    {
+        this.account      = reqState.getCurrentAccount();
+        this.accountID    = reqState.getCurrentAccountID();
+        this.deviceIDs    = deviceIDs;
+        this.statusCodes  = statusCodes;
+        this.startTime    = reqState.getEventDateFromSec();
+        this.endTime      = reqState.getEventDateToSec();
+        this.privLabel    = reqState.getPrivateLabel();
+        this.iconSelector = iconSelector;
+        this.iconKeys     = iconKeys;
+        this.isFleet      = reqState.isFleet();
+        this.timeZone     = reqState.getTimeZone();
+    }
+
+    // ------------------------------------------------------------------------
+    // EventBus.Subscriber
+
+    /**
+    *** Returns true if this channel is interested in events for the specified Device
+    **/
+    public boolean isSubscribed(String acctID, String devID)
+    {
+        return !this.closed && this.accountID.equals(acctID) && this.deviceIDs.contains(devID);
+    }
+
+    /**
+    *** Queues the specified event, replacing any older event queued for the same Device
+    **/
+    public void eventInserted(EventData ev)
+    {
+
+        /* selection criteria */
+        if (!ev.isValidGeoPoint()) {
+            return;
+        } else
+        if ((this.statusCodes != null) && !ListTools.contains(this.statusCodes, ev.getStatusCode())) {
+            return;
+        }
+        long ts = ev.getTimestamp();
+        if ((this.startTime > 0L) && (ts < this.startTime)) {
+            return;
+        } else
+        if ((this.endTime > 0L) && (ts > this.endTime)) {
+            return;
+        }
+
+        /* queue (keep latest per device) */
+        synchronized (this.pending) {
+            String devID = ev.getDeviceID();
+            EventData prior = this.pending.get(devID);
+            if (prior != null) {
+                if (prior.getTimestamp() > ts) {
+                    // older than the event already queued
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                this.pending.remove(devID); // re-insert at end (arrival order)
+                droppedCount.incrementAndGet();
+            }
+            this.pending.put(devID, ev);
+            this.pending.notify();
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Waits for queued events
+    *** @param timeoutMS  The maximum time to wait
+    *** @return The queued events (empty if none arrived before the timeout)
+    **/
+    private java.util.List<EventData> _takePending(long timeoutMS)
+        throws InterruptedException
+    {
+        synchronized (this.pending) {
+            if (this.pending.isEmpty() && (timeoutMS > 0L)) {
+                this.pending.wait(timeoutMS);
+            }
+            java.util.List<EventData> list = new Vector<EventData>(this.pending.values());
+            this.pending.clear();
+            return list;
+        }
+    }
+
+    /**
+    *** Formats the specified event as a map pushpin record
+    **/
+    private String _formatEvent(EventData event)
+    {
+        // the published EventData instance is shared by all subscribers (and the inserting
+        // thread), so the Device and "last event" state are set on a detached copy
+        EventData ev;
+        try {
+            ev = DBRecord.copyRecord(event);
+        } catch (DBException dbe) {
+            Print.logError("Unable to copy EventData: " + this.accountID + "/" + event.getDeviceID() + " [" + dbe + "]");
+            return null;
+        }
+        Device dev = event.hasDevice()? event.getDevice() : null;
+        if (dev == null) {
+            // bridged event, not yet attached to a Device
+            String devID = event.getDeviceID();
+            dev = this.devices.get(devID);
+            if ((dev == null) && !this.devices.containsKey(devID)) {
+                try {
+                    dev = Device.getDevice(this.account, devID);
+                } catch (DBException dbe) {
+                    Print.logError("Unable to read Device: " + this.accountID + "/" + devID + " [" + dbe + "]");
+                }
+                this.devices.put(devID, dev);
+            }
+        }
+        if (dev != null) {
+            ev.setDevice(dev);
+        }
+        ev.setIsLastEvent(true);
+        int stoppedState = (ev.getSpeedKPH() <= 0.0)? 1/*stopped*/ : 0/*moving*/;
+        String dateFmt = (this.account != null)? this.account.getDateFormat() : BasicPrivateLabel.getDefaultDateFormat();
+        String timeFmt = (this.account != null)? this.account.getTimeFormat() : BasicPrivateLabel.getDefaultTimeFormat();
+        return EventUtil.getInstance().formatMapEvent(this.privLabel, ev,
+            this.iconSelector, this.iconKeys,
+            this.isFleet/*showFleetIcon*/, stoppedState,
+            this.timeZone, dateFmt, timeFmt);
+    }
+
+    /**
+    *** Writes a single Server-Sent Event
+    **/
+    private static void _writeEvent(PrintWriter out, String event, String id, String data)
+    {
+        if (event != null) {
+            out.write("event: " + event + "\n");
+        }
+        if (id != null) {
+            out.write("id: " + id + "\n");
+        }
+        for (String line : StringTools.split(StringTools.trim(data),'\n',false)) {
+            out.write("data: " + StringTools.stripChars(line,'\r') + "\n");
+        }
+        out.write("\n");
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs this channel on the current request thread, until the client disconnects or
+    *** the maximum connection time is reached.
+    *** @param request   The HttpServletRequest
+    *** @param response  The HttpServletResponse
+    **/
+    public void run(HttpServletRequest request, HttpServletResponse response)
+        throws IOException
+    {
+
+        /* connection limit */
+        int maxConn = RTConfig.getInt(PROP_MapPush_maxConnections, DFT_MAX_CONNECTIONS);
+        if (activeCount.incrementAndGet() > maxConn) {
+            activeCount.decrementAndGet();
+            Print.logWarn("Maximum map push connections reached: " + maxConn);
+            response.setHeader("Retry-After", "60");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        try {
+            long maxConnMS   = RTConfig.getLong(PROP_MapPush_maxConnectSeconds, DFT_MAX_CONNECT_SECONDS) * 1000L;
+            long heartbeatMS = Math.max(RTConfig.getLong(PROP_MapPush_heartbeatSeconds, DFT_HEARTBEAT_SECONDS), 1L) * 1000L;
+            long endMS       = System.currentTimeMillis() + maxConnMS;
+
+            /* headers */
+            CommonServlet.setResponseContentType(response, MIME_EVENT_STREAM, StringTools.CharEncoding_UTF_8);
+            response.setHeader("CACHE-CONTROL"    , "NO-CACHE");
+            response.setHeader("X-Accel-Buffering", "no"); // disable proxy buffering
+            PrintWriter out = response.getWriter();
+
+            /* start stream */
+            // (the initial "id" ensures that a reconnecting client sends "Last-Event-ID")
+            out.write("retry: " + RECONNECT_MS + "\n");
+            out.write("id: " + DateTime.getCurrentTimeSec() + "\n\n");
+            String lastEventID = request.getHeader("Last-Event-ID");
+            if (!StringTools.isBlank(lastEventID)) {
+                // reconnected: events may have been missed while disconnected
+                MapPushChannel._writeEvent(out, EVENT_RESYNC, null, lastEventID);
+            }
+            out.flush();
+
+            /* push events */
+            EventBus.Subscribe(this);
+            try {
+                while (!this.closed) {
+                    long waitMS = Math.min(heartbeatMS, endMS - System.currentTimeMillis());
+                    if (waitMS <= 0L) {
+                        // maximum connection time reached, client will reconnect
+                        break;
+                    }
+                    java.util.List<EventData> evList = this._takePending(waitMS);
+                    if (evList.isEmpty()) {
+                        out.write(": \n\n"); // heartbeat
+                    } else {
+                        for (EventData ev : evList) {
+                            String id = ev.getDeviceID() + ":" + ev.getTimestamp();
+                            String rcd = this._formatEvent(ev);
+                            if (rcd != null) {
+                                MapPushChannel._writeEvent(out, EVENT_PUSHPIN, id, rcd);
+                                pushedCount.incrementAndGet();
+                            }
+                        }
+                    }
+                    out.flush();
+                    if (out.checkError()) {
+                        // client disconnected
+                        break;
+                    }
+                }
+            } catch (InterruptedException ie) {
+                // shutting down
+            } finally {
+                this.closed = true;
+                EventBus.Unsubscribe(this);
+            }
+
+        } finally {
+            activeCount.decrementAndGet();
+        }
+
+    }
+
+}
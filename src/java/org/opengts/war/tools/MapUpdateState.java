@@ -0,0 +1,414 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2013, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Per-session map update state (incremental map updates)
+// ----------------------------------------------------------------------------
+// Change History:
+//  2026/10/19
+//     -Initial release
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.util.*;
+import java.io.*;
+import java.security.MessageDigest;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Per-session map update state.<br>
+*** Records the events sent to the client for each device displayed on the map, along with
+*** the map selection (device/group, date range, limits, etc) for which the events were sent.
+*** The state is identified by a "token", which is a digest of the selection and the
+*** per-device state, so that the same map data always has the same token.  The token is
+*** sent to the client as the response ETag, and with the map data.<br>
+*** On the next update request, the client either sends the token as the "delta"
+*** request parameter (in which case only the unsent events, and the removed devices, are
+*** returned), or as the "If-None-Match" header.  In either case, if the token matches
+*** the current session state and no unsent events are found, a "304 Not Modified" response
+*** is returned.<br>
+*** Unsent events are found by re-reading the events of each device starting an "overlap"
+*** window before the last event timestamp sent, and omitting the events (timestamp and
+*** status code) already sent within that window.  This includes events with the same
+*** timestamp as the last event sent, and events inserted late (ie. buffered by the device)
+*** with a timestamp within the overlap window.<br>
+*** Limitations:<br>
+*** <ul>
+*** <li>Events inserted later than the overlap window after their timestamp are not
+***     found by an incremental update (they are included in the next full update).</li>
+*** <li>Changes to events already sent (ie. a later address update) are not detected.</li>
+*** <li>When the events are limited to the last N events per device, a device for which
+***     the unsent events would exceed N events is "replaced": its last N events are
+***     returned, and the client discards its current dataset for that device.</li>
+*** <li>The check, read, and update of the state for a request must be performed while
+***     synchronized on this state, so that concurrent requests from the same session
+***     (ie. multiple map windows) do not update the state from the same token.</li>
+*** </ul>
+**/
+
+public class MapUpdateState
+    implements Serializable
+{
+
+    private static final long   serialVersionUID        = 1L;
+
+    // ------------------------------------------------------------------------
+
+    public  static final String PARM_MAP_DELTA[]        = new String[] { "delta", "mapDelta" };
+
+    public  static final long   DFT_OVERLAP_SEC         = 120L;
+
+    private static final String SESSION_ATTR            = "MapUpdateState";
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the map update state for the current session
+    *** @param reqState  The session RequestProperties
+    *** @return The map update state (null if no session exists)
+    **/
+    public static MapUpdateState getSessionState(RequestProperties reqState)
+    {
+        HttpServletRequest request = reqState.getHttpServletRequest();
+        HttpSession session = (request != null)? request.getSession(false) : null;
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            Object obj = session.getAttribute(SESSION_ATTR);
+            if (obj instanceof MapUpdateState) {
+                return (MapUpdateState)obj;
+            }
+            MapUpdateState mus = new MapUpdateState();
+            session.setAttribute(SESSION_ATTR, mus);
+            return mus;
+        }
+    }
+
+    /**
+    *** Returns a String which identifies the map selection criteria of the current request.
+    *** Events sent for one selection cannot be updated incrementally for another selection.
+    *** @param reqState       The session RequestProperties
+    *** @param mapDataFormat  The map data format
+    *** @param statusCodes    The status-codes to which the map events are limited
+    *** @return The selection String
+    **/
+    public static String getSelection(RequestProperties reqState, int mapDataFormat, int statusCodes[])
+    {
+        TimeZone tmz = reqState.getTimeZone();
+        StringBuffer sb = new StringBuffer();
+        sb.append(reqState.getCurrentAccountID()).append('|');
+        sb.append(reqState.getCurrentUserID()).append('|');
+        sb.append(reqState.isFleet()? "F:" + reqState.getSelectedDeviceGroupID() : "D:" + reqState.getSelectedDeviceID()).append('|');
+        sb.append(reqState.getEventDateFromSec()).append('|');
+        sb.append(reqState.getEventDateToSec()).append('|');
+        sb.append(reqState.getEventLimit()).append('|');
+        sb.append(reqState.getEventLimitType()).append('|');
+        sb.append(reqState.getFleetDeviceEventCount()).append('|');
+        sb.append(reqState.getDeviceNotifyEventsOnly()).append('|');
+        sb.append(mapDataFormat).append('|');
+        sb.append((tmz != null)? tmz.getID() : "").append('|');
+        if (statusCodes != null) {
+            for (int sc : statusCodes) { sb.append(sc).append(','); }
+        }
+        return sb.toString();
+    }
+
+    /**
+    *** Returns the key which identifies an event of a device
+    **/
+    private static String _eventKey(EventData ev)
+    {
+        return ev.getTimestamp() + "/" + ev.getStatusCode();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Events sent to the client for a single device
+    **/
+    private static class DeviceState
+        implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        private long              lastTime  = 0L;
+        private long              count     = 0L;
+        private Map<String,Long>  recent    = new HashMap<String,Long>(); // event key ==> timestamp
+        public void add(EventData ev) {
+            this.lastTime = Math.max(this.lastTime, ev.getTimestamp());
+            this.count++;
+            this.recent.put(MapUpdateState._eventKey(ev), new Long(ev.getTimestamp()));
+        }
+        public void trim(long overlapSec) {
+            long minTime = this.lastTime - overlapSec;
+            for (Iterator<Long> i = this.recent.values().iterator(); i.hasNext();) {
+                if (i.next().longValue() < minTime) {
+                    i.remove();
+                }
+            }
+        }
+        public boolean wasSent(EventData ev) {
+            return this.recent.containsKey(MapUpdateState._eventKey(ev));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private String                  selection   = null;
+    private String                  token       = null;
+    private long                    overlapSec  = DFT_OVERLAP_SEC;
+    private Map<String,DeviceState> devState    = new HashMap<String,DeviceState>();
+
+    /**
+    *** Constructor
+    **/
+    public MapUpdateState()
+    {
+        super();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the number of seconds before the last event timestamp sent, from which events
+    *** are re-read (and omitted if already sent) by an incremental update
+    *** @param overlapSec  The overlap window, in seconds
+    **/
+    public synchronized void setOverlapSeconds(long overlapSec)
+    {
+        this.overlapSec = Math.max(overlapSec, 0L);
+    }
+
+    /**
+    *** Gets the overlap window, in seconds
+    *** @return The overlap window, in seconds
+    **/
+    public synchronized long getOverlapSeconds()
+    {
+        return this.overlapSec;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if this state represents the map data identified by the specified
+    *** selection and token
+    *** @param selection  The map selection
+    *** @param token      The client token
+    *** @return True if this state matches
+    **/
+    public synchronized boolean isCurrent(String selection, String token)
+    {
+        return (this.token != null) &&
+            this.token.equals(MapUpdateState.unquoteETag(token)) &&
+            this.selection.equals(selection);
+    }
+
+    /**
+    *** Gets the current token
+    *** @return The current token
+    **/
+    public synchronized String getToken()
+    {
+        return this.token;
+    }
+
+    /**
+    *** Returns a map of DeviceID to the (inclusive) start time of the events to read for an
+    *** incremental update (the last event timestamp sent, less the overlap window)
+    *** @param limitFirst   True if the events are limited to the first N events of the range
+    *** @param perDevLimit  The per-device event limit
+    *** @return The map of DeviceID to start time
+    **/
+    public synchronized Map<String,Long> getSinceTimes(boolean limitFirst, long perDevLimit)
+    {
+        Map<String,Long> since = new HashMap<String,Long>();
+        for (Map.Entry<String,DeviceState> me : this.devState.entrySet()) {
+            DeviceState ds = me.getValue();
+            if (limitFirst && (perDevLimit > 0L) && (ds.count >= perDevLimit)) {
+                // the first N events have already been sent
+                since.put(me.getKey(), new Long(Long.MAX_VALUE));
+            } else {
+                since.put(me.getKey(), new Long(Math.max(ds.lastTime - this.overlapSec, 0L)));
+            }
+        }
+        return since;
+    }
+
+    /**
+    *** Returns the specified events, less those already sent to the client
+    *** @param evdata    The events read for an incremental update
+    *** @param replaced  The devices for which all events are returned (may be null)
+    *** @return The unsent events (does not return null)
+    **/
+    public synchronized EventData[] getUnsentEvents(EventData evdata[], Set<String> replaced)
+    {
+        if (ListTools.isEmpty(evdata)) {
+            return EventData.EMPTY_ARRAY;
+        }
+        java.util.List<EventData> unsent = new Vector<EventData>();
+        for (EventData ev : evdata) {
+            String devID = ev.getDeviceID();
+            DeviceState ds = this.devState.get(devID);
+            if ((ds != null) && ((replaced == null) || !replaced.contains(devID)) && ds.wasSent(ev)) {
+                continue;
+            }
+            unsent.add(ev);
+        }
+        return unsent.toArray(new EventData[unsent.size()]);
+    }
+
+    /**
+    *** Returns the list of devices for which the number of events sent to the client, plus
+    *** the specified unsent events, would exceed the per-device limit
+    *** @param unsent       The unsent events
+    *** @param perDevLimit  The per-device event limit
+    *** @return The set of DeviceIDs (does not return null)
+    **/
+    public synchronized Set<String> getOverLimitDeviceIDs(EventData unsent[], long perDevLimit)
+    {
+        Set<String> over = new HashSet<String>();
+        if ((perDevLimit > 0L) && !ListTools.isEmpty(unsent)) {
+            Map<String,long[]> count = new HashMap<String,long[]>();
+            for (EventData ev : unsent) {
+                String devID = ev.getDeviceID();
+                long c[] = count.get(devID);
+                if (c == null) {
+                    DeviceState ds = this.devState.get(devID);
+                    c = new long[] { (ds != null)? ds.count : 0L };
+                    count.put(devID, c);
+                }
+                if (++c[0] > perDevLimit) {
+                    over.add(devID);
+                }
+            }
+        }
+        return over;
+    }
+
+    /**
+    *** Returns the list of devices previously sent to the client, which are no longer selected
+    *** @param devIDSet  The currently selected devices
+    *** @return The list of removed DeviceIDs (does not return null)
+    **/
+    public synchronized java.util.List<String> getRemovedDeviceIDs(Set<String> devIDSet)
+    {
+        java.util.List<String> rmv = new Vector<String>();
+        for (String devID : this.devState.keySet()) {
+            if (!devIDSet.contains(devID)) {
+                rmv.add(devID);
+            }
+        }
+        Collections.sort(rmv);
+        return rmv;
+    }
+
+    /**
+    *** Updates this state with the events sent to the client
+    *** @param selection  The map selection
+    *** @param evdata     The events sent to the client
+    *** @param isDelta    True if the events are an incremental update of the current state
+    *** @param devIDSet   The currently selected devices
+    *** @param replaced   The devices for which the events sent replace those previously sent (may be null)
+    *** @return The new token
+    **/
+    public synchronized String update(String selection, EventData evdata[], boolean isDelta, 
+        Set<String> devIDSet, Set<String> replaced)
+    {
+
+        /* reset */
+        if (!isDelta || !selection.equals(this.selection)) {
+            this.devState.clear();
+        } else
+        if (replaced != null) {
+            this.devState.keySet().removeAll(replaced);
+        }
+        this.selection = selection;
+
+        /* remove unselected devices */
+        if (devIDSet != null) {
+            this.devState.keySet().retainAll(devIDSet);
+        }
+
+        /* add events */
+        if (evdata != null) {
+            for (EventData ev : evdata) {
+                String devID = ev.getDeviceID();
+                DeviceState ds = this.devState.get(devID);
+                if (ds == null) {
+                    ds = new DeviceState();
+                    this.devState.put(devID, ds);
+                }
+                ds.add(ev);
+            }
+        }
+        for (DeviceState ds : this.devState.values()) {
+            ds.trim(this.overlapSec);
+        }
+
+        /* token */
+        this.token = this._createToken();
+        return this.token;
+
+    }
+
+    /**
+    *** Creates the token representing the current state
+    **/
+    private String _createToken()
+    {
+        StringBuffer sb = new StringBuffer(this.selection);
+        for (String devID : new TreeSet<String>(this.devState.keySet())) {
+            DeviceState ds = this.devState.get(devID);
+            sb.append('\n').append(devID).append('=').append(ds.lastTime).append(',').append(ds.count);
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte d[] = md.digest(StringTools.getBytes(sb.toString()));
+            return StringTools.toHexString(d, 0, 12);
+        } catch (Throwable th) { // NoSuchAlgorithmException
+            return Long.toHexString(sb.toString().hashCode() & 0xFFFFFFFFL);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Removes the surrounding quotes (and weak indicator) from an ETag value
+    *** @param etag  The ETag value
+    *** @return The unquoted ETag value
+    **/
+    public static String unquoteETag(String etag)
+    {
+        String t = StringTools.trim(etag);
+        if (t.startsWith("W/")) {
+            t = t.substring(2);
+        }
+        if ((t.length() >= 2) && t.startsWith("\"") && t.endsWith("\"")) {
+            t = t.substring(1, t.length() - 1);
+        }
+        return t;
+    }
+
+}
@@ -58,6 +58,10 @@
 //     -Added support for hiding the "Password" field on the login page
 //  2010/07/04  Martin D. Flynn
 //     - Added "isLoggedInFromSysAdmin()"
+//  2026/10/19
+//     -"getMapEvents" can return only the events following a per-device 'since' time
+//     -Added "getMapDeviceIDs" (live map push channel)
+//     -"getMapEvents" reads events within a read-replica scope
 // ----------------------------------------------------------------------------
 package org.opengts.war.tools;
 
@@ -1065,6 +1069,34 @@ public class RequestProperties
         }
     }
 
+    /**
+    *** Returns the IDs of the devices displayed on the map: the authorized devices of the
+    *** selected group for the fleet map, otherwise the selected device
+    *** @return The set of DeviceIDs (does not return null)
+    **/
+    public Set<String> getMapDeviceIDs()
+        throws DBException
+    {
+        Set<String> devIDSet = new HashSet<String>();
+        if (this.isFleet()) {
+            User user = this.getCurrentUser();
+            OrderedSet<String> devIDList = this._getDeviceIDsForSelectedGroup(true/*fleet*/,false/*inclActv*/);
+            if (devIDList != null) {
+                for (String deviceID : devIDList) {
+                    if ((user == null) || user.isAuthorizedDevice(deviceID)) {
+                        devIDSet.add(deviceID);
+                    }
+                }
+            }
+        } else {
+            Device device = this.getSelectedDevice();
+            if (device != null) {
+                devIDSet.add(device.getDeviceID());
+            }
+        }
+        return devIDSet;
+    }
+
     /* get the description of a specific device */
     private Device descLastDevice = null;
     public String getDeviceDescription(String devID, boolean rtnDispName)
@@ -1247,6 +1279,36 @@ public class RequestProperties
     /* return array of events based on requested parameters */
     public EventData[] getMapEvents(int statusCodes[], long perDevLimit)
         throws DBException
+    {
+        return this.getMapEvents(statusCodes, perDevLimit, null, null);
+    }
+
+    /**
+    *** Returns an array of events based on the requested parameters.<br>
+    *** If 'sinceTime' is specified, only events with a timestamp at or after the time mapped
+    *** to the event DeviceID are returned (devices not in the map return all events).
+    *** @param statusCodes  The status-codes to which the events will be limited
+    *** @param perDevLimit  The per-device event limit (&lt;=0 for the default)
+    *** @param sinceTime    Map of DeviceID to the (inclusive) event start time (may be null)
+    *** @param devIDSet     Set into which the IDs of the selected devices are placed (may be null)
+    *** @return The array of events (does not return null)
+    **/
+    public EventData[] getMapEvents(int statusCodes[], long perDevLimit,
+        Map<String,Long> sinceTime, Set<String> devIDSet)
+        throws DBException
+    {
+        // map events are read-only, and may be read from a read-replica
+        DBConnection.pushReadReplica();
+        try {
+            return this._getMapEvents(statusCodes, perDevLimit, sinceTime, devIDSet);
+        } finally {
+            DBConnection.popReadReplica();
+        }
+    }
+
+    private EventData[] _getMapEvents(int statusCodes[], long perDevLimit,
+        Map<String,Long> sinceTime, Set<String> devIDSet)
+        throws DBException
     {
         PrivateLabel privLabel = this.getPrivateLabel();
         // this assumes that the number of returned records is reasonable and fits in memory
@@ -1303,13 +1365,23 @@ public class RequestProperties
                     // skip this deviceID
                     continue;
                 }
+                if (devIDSet != null) {
+                    devIDSet.add(deviceID);
+                }
+
+                // events after 'since' time only?
+                long devStartTime = RequestProperties._getSinceStartTime(sinceTime, deviceID, startTime);
+                if ((endTime > 0L) && (devStartTime > endTime)) {
+                    // no new events for this Device
+                    continue;
+                }
 
                 // get last event(s) for Device
                 if (notifyEventsOnly) {
                     EventData E = device.getLastNotifyEvent();
                     if (E != null) {
                         long ts = E.getTimestamp();
-                        if ((startTime > 0L) && (ts < startTime)) {
+                        if ((devStartTime > 0L) && (ts < devStartTime)) {
                             // skip this event
                         } else
                         if ((endTime > 0L) && (ts > endTime)) {
@@ -1320,7 +1392,7 @@ public class RequestProperties
                     }
                 } else {
                     EventData ev[] = device.getRangeEvents(
-                        startTime,                  // startTime
+                        devStartTime,               // startTime
                         endTime,                    // endTime
                         statusCodes,                // status codes
                         true,                       // validGPS (or cell lat/lon?)
@@ -1358,6 +1430,16 @@ public class RequestProperties
                 // no events for a null device
                 return EventData.EMPTY_ARRAY;
             }
+            if (devIDSet != null) {
+                devIDSet.add(device.getDeviceID());
+            }
+
+            // events after 'since' time only?
+            startTime = RequestProperties._getSinceStartTime(sinceTime, device.getDeviceID(), startTime);
+            if ((endTime > 0L) && (startTime > endTime)) {
+                // no new events for this Device
+                return EventData.EMPTY_ARRAY;
+            }
             
             // return device events
             EventData[] ev;
@@ -1392,6 +1474,19 @@ public class RequestProperties
  
     }
     
+    /* return the start time for events at/after the 'since' time of the specified device */
+    // (events with the same timestamp as the last event sent are included, since other
+    // events may have been inserted with that timestamp after the last event was sent)
+    private static long _getSinceStartTime(Map<String,Long> sinceTime, String deviceID, long startTime)
+    {
+        Long since = (sinceTime != null)? sinceTime.get(deviceID) : null;
+        if ((since == null) || (since.longValue() < startTime)) {
+            return startTime;
+        } else {
+            return since.longValue();
+        }
+    }
+
     // ------------------------------------------------------------------------
     
     /* return array of events based on requested parameters */
@@ -78,6 +78,8 @@
 //     -Added battery level display (icon|percent)
 //  2012/04/03  Martin D. Flynn
 //     -Change "mapTypeTitle" to display "NavigationTab" description
+//  2026/10/19
+//     -Added live map push channel command ("mappush")
 // ----------------------------------------------------------------------------
 package org.opengts.war.track.page;
 
@@ -151,6 +153,7 @@ public abstract class TrackMap
     public  static final String  COMMAND_MAP_UPDATE             = "mapupd";                 // arg=<N/A>
     public  static final String  COMMAND_KML_UPDATE             = "kmlupd";                 // arg=<N/A>
     public  static final String  COMMAND_AUTO_UPDATE            = "auto";                   // arg=interval,maxcount
+    public  static final String  COMMAND_MAP_PUSH               = "mappush";                // arg=<N/A>
 
     // ------------------------------------------------------------------------
     // Calendar vars
@@ -378,6 +381,10 @@ public abstract class TrackMap
         JavaScriptTools.writeJSVar(out, "AutoUpdateMapTimer"        , null);
         JavaScriptTools.writeJSVar(out, "AutoIntervalCount"         , 0);
         JavaScriptTools.writeJSVar(out, "AutoUpdateMapCount"        , 0);
+        MapProvider mapProvider = reqState.getMapProvider();
+        boolean autoUpdatePush = autoUpdateEnabled && (mapProvider != null) && mapProvider.getAutoUpdatePush(isFleet);
+        JavaScriptTools.writeJSVar(out, "AutoUpdatePush"            , autoUpdatePush);
+        JavaScriptTools.writeJSVar(out, "MapPushURL"                , (autoUpdatePush? privLabel.getWebPageURL(reqState,this.getPageName(),COMMAND_MAP_PUSH) : null));
         JavaScriptTools.writeJSVar(out, "LimitType"                 , this.getStringProperty(privLabel,PrivateLabel.PROP_TrackMap_limitType,"last"));
         JavaScriptTools.writeJSVar(out, "ID_MAP_UPDATE_BTN"         , ID_MAP_UPDATE_BTN);
         JavaScriptTools.writeJSVar(out, "ID_MAP_AUTOUPDATE_BTN"     , ID_MAP_AUTOUPDATE_BTN);
@@ -807,6 +814,19 @@ public abstract class TrackMap
             return;
         }
 
+        /* Server-Sent Events: live map push (replaces auto-update polling) */
+        if (cmdName.equals(COMMAND_MAP_PUSH)) {
+            if (!privLabel.hasReadAccess(currUser, this.getAclName(_ACL_AUTO))) {
+                reqState.getHttpServletResponse().sendError(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+            int statCodes[] = this.getStatusCodes(); // may be null
+            mapProvider.writeMapPush(
+                reqState, 
+                statCodes); // text/event-stream
+            return;
+        }
+
         /* Device Ping request (special case of 'Map') */
         if (cmdName.equals(COMMAND_DEVICE_PING)) {
             HttpServletResponse response = reqState.getHttpServletResponse();
@@ -0,0 +1,112 @@
+package org.opengts.db;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.opengts.util.*;
+import org.opengts.db.tables.*;
+
+/**
+ * TestNG tests for DeviceEventOwner request timeouts: a request still queued behind a
+ * slow lane is cancelled (and its session changes retained), while a request which has
+ * already started is waited for
+ */
+public class DeviceEventOwnerTest {
+
+    private String saved = null;
+
+    @BeforeClass
+    public void setUp() {
+        this.saved = RTConfig.getString(DBConfig.PROP_Device_eventOwner_timeoutSec, null);
+        RTConfig.setString(DBConfig.PROP_Device_eventOwner_timeoutSec, "1");
+    }
+
+    @AfterClass
+    public void tearDown() {
+        RTConfig.setString(DBConfig.PROP_Device_eventOwner_timeoutSec, this.saved);
+    }
+
+    private static Device sessionDevice(String devID) {
+        Device dev = new Device(new Device.Key("ownertest", devID));
+        Device copy = DeviceEventOwner.getOwnedDevice(dev);
+        Assert.assertTrue(copy.isSessionCopy(), "session copy");
+        return copy;
+    }
+
+    /* blocks the owner lane until released */
+    private static CountDownLatch blockLane(DeviceEventOwner owner) {
+        final CountDownLatch release = new CountDownLatch(1);
+        owner.queueTask(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                release.await(10L, TimeUnit.SECONDS);
+                return Boolean.TRUE;
+            }
+        });
+        return release;
+    }
+
+    @Test
+    public void testQueuedTimeoutCancelled() throws Exception {
+        Device copy = sessionDevice("queued");
+        DeviceEventOwner owner = DeviceEventOwner.getOwner(copy);
+        copy.setEquipmentType("changed");
+        CountDownLatch release = blockLane(owner);
+        final AtomicBoolean ran = new AtomicBoolean(false);
+        try {
+            String rtn = owner._callSession(copy, new Callable<String>() {
+                public String call() {
+                    ran.set(true);
+                    return "ran";
+                }
+            });
+            Assert.assertNull(rtn, "timed out while queued");
+        } finally {
+            release.countDown();
+        }
+        Thread.sleep(200L);
+        Assert.assertFalse(ran.get(), "cancelled task not run");
+        Assert.assertTrue(copy.hasChangedFields(), "session changes retained");
+
+        /* the retained changes are applied with the next request */
+        String rtn = owner._callSession(copy, new Callable<String>() {
+            public String call() {
+                return "next";
+            }
+        });
+        Assert.assertEquals(rtn, "next");
+        FutureTask<Boolean> check = owner.queueTask(new Callable<Boolean>() {
+            public Boolean call() {
+                return Boolean.TRUE;
+            }
+        });
+        check.get(5L, TimeUnit.SECONDS);
+        Assert.assertEquals(owner.getDevice().getEquipmentType(), "changed", "applied to the owned Device");
+    }
+
+    @Test
+    public void testRunningTimeoutWaited() throws Exception {
+        Device copy = sessionDevice("running");
+        DeviceEventOwner owner = DeviceEventOwner.getOwner(copy);
+        copy.setEquipmentType("slow");
+        long startMS = System.currentTimeMillis();
+        String rtn = owner._callSession(copy, new Callable<String>() {
+            public String call() throws Exception {
+                Thread.sleep(1800L); // longer than the owner timeout
+                return "done";
+            }
+        });
+        Assert.assertEquals(rtn, "done", "started task is not reported as failed");
+        Assert.assertTrue((System.currentTimeMillis() - startMS) >= 1800L, "waited for completion");
+        Assert.assertFalse(copy.hasChangedFields(), "changes applied");
+        Assert.assertEquals(copy.getEquipmentType(), "slow", "refreshed from the owned Device");
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.opengts.db;
+
+import java.io.File;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.opengts.util.*;
+import org.opengts.db.tables.*;
+
+/**
+ * TestNG tests for the EventArchive columnar file codec, range/status/GPS filters, counts,
+ * limited newest-first month reads, event keys, and archive/live merging
+ */
+public class EventArchiveTest {
+
+    private static final String ACCT    = "acct";
+    private static final String DEV     = "dev";
+    private static final long   JAN2020 = 1577836800L; // 2020/01/01 00:00:00 GMT
+    private static final long   FEB2020 = 1580515200L; // 2020/02/01 00:00:00 GMT
+    private static final long   APR2020 = 1585699200L; // 2020/04/01 00:00:00 GMT
+
+    private File   dir   = null;
+    private String saved = null;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.dir = File.createTempFile("evarch", "");
+        this.dir.delete();
+        this.saved = RTConfig.getString(DBConfig.PROP_EventArchive_dir, null);
+        RTConfig.setString(DBConfig.PROP_EventArchive_dir, this.dir.getAbsolutePath());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        RTConfig.setString(DBConfig.PROP_EventArchive_dir, this.saved);
+        deleteAll(this.dir);
+    }
+
+    private static void deleteAll(File f) {
+        File files[] = f.listFiles();
+        if (files != null) {
+            for (File c : files) {
+                deleteAll(c);
+            }
+        }
+        f.delete();
+    }
+
+    private static EventData event(long ts, int sc, double lat, double lon, double kph, String addr) {
+        EventData ev = new EventData(new EventData.Key(ACCT, DEV, ts, sc));
+        ev.setLatitude(lat);
+        ev.setLongitude(lon);
+        ev.setSpeedKPH(kph);
+        ev.setAddress(addr);
+        return ev;
+    }
+
+    /* 100 events, every 10th without a location, 3 status codes, repeated addresses */
+    private static EventData[] month(long monthStart) {
+        EventData ev[] = new EventData[100];
+        for (int i = 0; i < ev.length; i++) {
+            int    sc  = (i % 3 == 0)? StatusCodes.STATUS_MOTION_START : (i % 3 == 1)? StatusCodes.STATUS_LOCATION : -1;
+            double lat = (i % 10 == 9)? 0.0 :  37.123456 + (i * 0.0001);
+            double lon = (i % 10 == 9)? 0.0 : -121.654321 - (i * 0.0001);
+            ev[i] = event(monthStart + (i * 60L), sc, lat, lon, Math.PI * i, (i % 4 == 0)? null : ("addr" + (i % 4)));
+        }
+        return ev;
+    }
+
+    private File write(long monthStart, EventData ev[]) throws Exception {
+        String name = new DateTime(monthStart, DateTime.getGMTTimeZone()).format("yyyyMM", DateTime.getGMTTimeZone());
+        File file = new File(new File(new File(this.dir, ACCT), DEV), name + EventArchive.FILE_EXTN);
+        EventArchive._writeFile(file, ev);
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        EventData ev[] = month(JAN2020);
+        this.write(JAN2020, ev);
+        EventData rd[] = EventArchive.getArchivedEvents(ACCT, DEV, JAN2020, FEB2020 - 1L, null, false);
+        Assert.assertEquals(rd.length, ev.length);
+        for (int i = 0; i < ev.length; i++) {
+            Assert.assertEquals(rd[i].getTimestamp(), ev[i].getTimestamp());
+            Assert.assertEquals(rd[i].getStatusCode(), ev[i].getStatusCode(), "dictionary (negative value)");
+            Assert.assertEquals(rd[i].getLatitude(), ev[i].getLatitude(), "scaled decimal is exact");
+            Assert.assertEquals(rd[i].getLongitude(), ev[i].getLongitude());
+            Assert.assertEquals(rd[i].getSpeedKPH(), ev[i].getSpeedKPH(), "xor decimal is exact");
+            Assert.assertEquals(rd[i].getAddress(), ev[i].getAddress(), "string dictionary");
+        }
+    }
+
+    @Test
+    public void testFiltersAndCounts() throws Exception {
+        this.write(JAN2020, month(JAN2020));
+        long ts = JAN2020 + 600L, te = JAN2020 + 1800L; // events 10..30
+        int sc[] = new int[] { StatusCodes.STATUS_LOCATION };
+        Object crit[][] = {
+            { new Long(ts), new Long(te), null, Boolean.FALSE, new Integer(21) },
+            { new Long(JAN2020), new Long(FEB2020 - 1L), null, Boolean.TRUE , new Integer(90) },
+            { new Long(JAN2020), new Long(FEB2020 - 1L), sc  , Boolean.FALSE, new Integer(33) },
+            { new Long(ts), new Long(te), sc  , Boolean.TRUE , new Integer(6)  },
+        };
+        for (Object c[] : crit) {
+            long    s = ((Long)c[0]).longValue(), e = ((Long)c[1]).longValue();
+            int     codes[] = (int[])c[2];
+            boolean gps = ((Boolean)c[3]).booleanValue();
+            int     expect = ((Integer)c[4]).intValue();
+            EventData rd[] = EventArchive.getArchivedEvents(ACCT, DEV, s, e, codes, gps);
+            Assert.assertEquals(rd.length, expect, "selected");
+            Assert.assertEquals(EventArchive.countArchivedEvents(ACCT, DEV, s, e, codes, gps), (long)expect, "counted");
+        }
+        Assert.assertEquals(EventArchive.getArchivedEvents(ACCT, DEV, APR2020, -1L, null, false).length, 0, "no file");
+    }
+
+    @Test
+    public void testLimitedNewestFirst() throws Exception {
+        this.write(JAN2020, month(JAN2020));
+        this.write(FEB2020, month(FEB2020));
+        EventData last[] = EventArchive.getArchivedEvents(ACCT, DEV, -1L, -1L, null, false, true, 10L);
+        Assert.assertEquals(last.length, 100, "only the newest month is read");
+        Assert.assertEquals(last[0].getTimestamp(), FEB2020);
+        EventData first[] = EventArchive.getArchivedEvents(ACCT, DEV, -1L, -1L, null, false, false, 150L);
+        Assert.assertEquals(first.length, 200, "both months needed to meet the limit");
+        Assert.assertEquals(first[0].getTimestamp(), JAN2020, "ascending order");
+        Assert.assertEquals(first[199].getTimestamp(), FEB2020 + (99L * 60L));
+    }
+
+    @Test
+    public void testKeysAndMerge() throws Exception {
+        this.write(JAN2020, month(JAN2020));
+        java.util.Set<String> keys = EventArchive.getArchivedEventKeys(ACCT, DEV, JAN2020, JAN2020 + 120L, null, false);
+        Assert.assertEquals(keys.size(), 3);
+        Assert.assertTrue(keys.contains(EventArchive.GetEventKey(JAN2020 + 60L, StatusCodes.STATUS_LOCATION)));
+        long range[] = EventArchive.getArchivedTimeRange(ACCT, DEV, JAN2020 + 600L, -1L);
+        Assert.assertEquals(range[0], JAN2020);
+        Assert.assertEquals(range[1], FEB2020 - 1L, "month end");
+        Assert.assertNull(EventArchive.getArchivedTimeRange(ACCT, DEV, APR2020, -1L));
+
+        /* same timestamp, several status codes, one event both archived and live */
+        int s1 = StatusCodes.STATUS_LOCATION, s2 = StatusCodes.STATUS_MOTION_START, s3 = StatusCodes.STATUS_MOTION_STOP;
+        int sc[] = new int[] { s1, s2, s3 };
+        java.util.Arrays.sort(sc);
+        EventData arch[] = { event(JAN2020, sc[0], 0, 0, 0, null), event(JAN2020, sc[1], 0, 0, 0, "arch") };
+        EventData live[] = { event(JAN2020, sc[1], 0, 0, 0, "live"), event(JAN2020, sc[2], 0, 0, 0, null) };
+        java.util.List<EventData> merged = EventData.mergeArchivedEvents(arch, live);
+        Assert.assertEquals(merged.size(), 3, "duplicate returned once");
+        Assert.assertEquals(merged.get(1).getAddress(), "live", "live event replaces archived event");
+        Assert.assertEquals(merged.get(2).getStatusCode(), sc[2]);
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        File file = this.write(JAN2020, month(JAN2020));
+        EventData one[] = new EventData[] { event(JAN2020 + 5L, StatusCodes.STATUS_LOCATION, 1.5, 2.5, 0.0, "x") };
+        this.write(JAN2020, one);
+        Assert.assertEquals(EventArchive.countArchivedEvents(ACCT, DEV, JAN2020, FEB2020 - 1L, null, false), 1L, "replaced");
+        Assert.assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists(), "no temporary file left");
+    }
+
+}
@@ -0,0 +1,232 @@
+package org.opengts.db;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import org.opengts.util.*;
+import org.opengts.db.tables.*;
+
+/**
+ * TestNG tests for EventSpool crash recovery: torn records, per-device checkpoints,
+ * group commit, and dead-letter re-spooling
+ */
+public class EventSpoolTest {
+
+    private static final long   TS0 = 1700000000L;
+
+    private File   dir   = null;
+    private String saved = null;
+
+    @BeforeClass
+    public void setUp() {
+        this.saved = RTConfig.getString(DBConfig.PROP_EventSpool_segmentSizeMB, null);
+        RTConfig.setString(DBConfig.PROP_EventSpool_segmentSizeMB, "1");
+    }
+
+    @AfterClass
+    public void tearDown() {
+        RTConfig.setString(DBConfig.PROP_EventSpool_segmentSizeMB, this.saved);
+    }
+
+    @BeforeMethod
+    public void createDir() throws Exception {
+        this.dir = File.createTempFile("spool", "");
+        this.dir.delete();
+    }
+
+    @AfterMethod
+    public void deleteDir() {
+        File files[] = this.dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        this.dir.delete();
+    }
+
+    private static EventData event(String devID, long ts, double kph, String addr) {
+        EventData ev = new EventData(new EventData.Key("acct", devID, ts, StatusCodes.STATUS_LOCATION));
+        ev.setSpeedKPH(kph);
+        ev.setAddress(addr);
+        return ev;
+    }
+
+    private static String keys(List<EventSpool.Spooled> batch) {
+        StringBuffer sb = new StringBuffer();
+        for (EventSpool.Spooled sp : batch) {
+            if (sb.length() > 0) { sb.append(","); }
+            sb.append(sp.deviceID).append("@").append(sp.event.getTimestamp() - TS0);
+        }
+        return sb.toString();
+    }
+
+    /* returns the end of the last record in the specified segment file */
+    private static int endOfRecords(File seg) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(seg, "r");
+        try {
+            int pos = 0;
+            for (;;) {
+                raf.seek(pos);
+                int len = raf.readInt();
+                if (len <= 0) {
+                    return pos;
+                }
+                pos += 8 + len;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private File lastSegment() {
+        File last = null;
+        for (File f : this.dir.listFiles()) {
+            if (f.getName().startsWith("spool_") && ((last == null) || (f.getName().compareTo(last.getName()) > 0))) {
+                last = f;
+            }
+        }
+        return last;
+    }
+
+    @Test
+    public void testRecoveryDropsTornRecord() throws Exception {
+        EventSpool s1 = new EventSpool(this.dir);
+        s1.append(event("a", TS0 + 1L, 10.5, "first"));
+        s1.append(event("b", TS0 + 2L, 20.5, null));
+        s1.append(event("a", TS0 + 3L, 30.5, "third"));
+        s1._close(); // crash: nothing drained
+
+        /* torn record: header written, payload incomplete (CRC mismatch) */
+        File seg = this.lastSegment();
+        RandomAccessFile raf = new RandomAccessFile(seg, "rw");
+        try {
+            raf.seek(endOfRecords(seg));
+            raf.writeInt(40);
+            raf.writeInt(0x12345678);
+            raf.write(new byte[] { 1, 2, 3 });
+        } finally {
+            raf.close();
+        }
+
+        EventSpool s2 = new EventSpool(this.dir);
+        try {
+            Assert.assertEquals(s2.getPendingCount(), 3L, "torn record dropped");
+            List<EventSpool.Spooled> batch = s2._readBatch();
+            Assert.assertEquals(keys(batch), "a@1,b@2,a@3", "append order");
+            Assert.assertEquals(batch.get(0).event.getSpeedKPH(), 10.5);
+            Assert.assertEquals(batch.get(0).event.getAddress(), "first");
+            Assert.assertEquals(batch.get(1).event.getAddress(), "", "null field not spooled");
+            s2.append(event("c", TS0 + 4L, 0.0, null));
+            Assert.assertEquals(keys(s2._readBatch()), "c@4", "appended after the recovered records");
+        } finally {
+            s2._close();
+        }
+    }
+
+    @Test
+    public void testDeviceCheckpoint() throws Exception {
+        EventSpool s1 = new EventSpool(this.dir);
+        s1.append(event("a", TS0 + 1L, 0.0, null));
+        s1.append(event("b", TS0 + 2L, 0.0, null)); // "b" fails
+        s1.append(event("a", TS0 + 3L, 0.0, null));
+        s1.append(event("b", TS0 + 4L, 0.0, null));
+        s1.append(event("a", TS0 + 5L, 0.0, null));
+        List<EventSpool.Spooled> batch = s1._readBatch();
+        s1._checkpoint(batch, new boolean[] { true, false, true, false, true });
+        s1._close(); // crash while "b" is retried
+
+        EventSpool s2 = new EventSpool(this.dir);
+        try {
+            List<EventSpool.Spooled> again = s2._readBatch();
+            Assert.assertEquals(keys(again), "b@2,b@4", "inserted 'a' records are not replayed");
+            Assert.assertEquals(s2.getPendingCount(), 2L);
+            s2._checkpoint(again, new boolean[] { true, true });
+        } finally {
+            s2._close();
+        }
+
+        EventSpool s3 = new EventSpool(this.dir);
+        try {
+            Assert.assertEquals(s3.getPendingCount(), 0L, "fully drained");
+            Assert.assertTrue(s3._readBatch().isEmpty());
+        } finally {
+            s3._close();
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        final EventSpool spool = new EventSpool(this.dir);
+        Thread th[] = new Thread[8];
+        for (int t = 0; t < th.length; t++) {
+            final String devID = "d" + t;
+            th[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        Assert.assertTrue(spool.append(event(devID, TS0 + i, 0.0, null)));
+                    }
+                }
+            });
+            th[t].start();
+        }
+        for (Thread t : th) {
+            t.join();
+        }
+        spool._close();
+
+        EventSpool s2 = new EventSpool(this.dir);
+        try {
+            Assert.assertEquals(s2.getPendingCount(), 800L);
+            Map<String,Long> lastTS = new HashMap<String,Long>();
+            int count = 0;
+            for (List<EventSpool.Spooled> b = s2._readBatch(); !b.isEmpty(); b = s2._readBatch()) {
+                for (EventSpool.Spooled sp : b) {
+                    Long prev = lastTS.get(sp.deviceID);
+                    Assert.assertTrue((prev == null) || (prev.longValue() < sp.event.getTimestamp()), "per-device order");
+                    lastTS.put(sp.deviceID, new Long(sp.event.getTimestamp()));
+                    count++;
+                }
+            }
+            Assert.assertEquals(count, 800);
+        } finally {
+            s2._close();
+        }
+    }
+
+    @Test
+    public void testDeadLetterRespool() throws Exception {
+        EventSpool s1 = new EventSpool(this.dir);
+        s1.append(event("bad", TS0 + 1L, 0.0, "rejected"));
+        s1.append(event("ok" , TS0 + 2L, 0.0, null));
+        List<EventSpool.Spooled> batch = s1._readBatch();
+        s1._deadLetter(batch.subList(0, 1));
+        s1._checkpoint(batch, new boolean[] { true, true });
+        s1._close();
+
+        /* re-spool: rename the dead-letter file after the last segment */
+        File dead = new File(this.dir, "deadletter.seg");
+        Assert.assertTrue(dead.isFile());
+        File last = this.lastSegment();
+        long seq = Long.parseLong(last.getName().substring(6, last.getName().length() - 4)) + 1L;
+        Assert.assertTrue(dead.renameTo(new File(this.dir, "spool_" + StringTools.format(seq,"0000000000000000") + ".seg")));
+
+        EventSpool s2 = new EventSpool(this.dir);
+        try {
+            List<EventSpool.Spooled> again = s2._readBatch();
+            Assert.assertEquals(keys(again), "bad@1");
+            Assert.assertEquals(again.get(0).event.getAddress(), "rejected");
+        } finally {
+            s2._close();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.opengts.db;
+
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import org.opengts.db.tables.EventData;
+
+/**
+ * TestNG tests for RouteSimplifier significant events, tolerance/zoom monotonicity and windowed streaming
+ */
+public class RouteSimplifierTest {
+
+    private static long ts = 1000L;
+
+    private static EventData event(int statusCode, double lat, double lon, double kph) {
+        EventData ev = new EventData(new EventData.Key("acct", "dev", ts += 30L, statusCode));
+        ev.setLatitude(lat);
+        ev.setLongitude(lon);
+        ev.setSpeedKPH(kph);
+        return ev;
+    }
+
+    /* nearly straight eastbound route, with ~1m of north/south jitter */
+    private static java.util.List<EventData> straightRoute(int n) {
+        return straightRoute(n, -1);
+    }
+
+    /* as above, with a motion-start event at index 'startNdx' */
+    private static java.util.List<EventData> straightRoute(int n, int startNdx) {
+        java.util.List<EventData> route = new Vector<EventData>();
+        for (int i = 0; i < n; i++) {
+            double jitter = ((i % 2) == 0)? 0.00001 : -0.00001;
+            int sc = (i == startNdx)? StatusCodes.STATUS_MOTION_START : StatusCodes.STATUS_LOCATION;
+            route.add(event(sc, 37.0 + jitter, -121.0 + (i * 0.001), 50.0));
+        }
+        return route;
+    }
+
+    @Test
+    public void testStraightRouteReducedToEndpoints() {
+        java.util.List<EventData> route = straightRoute(50);
+        java.util.List<EventData> kept = new RouteSimplifier(route).simplify(5.0);
+        Assert.assertEquals(kept.size(), 2);
+        Assert.assertSame(kept.get(0), route.get(0));
+        Assert.assertSame(kept.get(1), route.get(route.size() - 1));
+        Assert.assertEquals(new RouteSimplifier(route).simplify(0.0).size(), route.size(), "tolerance 0 keeps all events");
+    }
+
+    @Test
+    public void testCornerRetained() {
+        java.util.List<EventData> route = new Vector<EventData>();
+        for (int i = 0; i <= 10; i++) { route.add(event(StatusCodes.STATUS_LOCATION, 37.0, -121.0 + (i * 0.001), 50.0)); }
+        for (int i = 1; i <= 10; i++) { route.add(event(StatusCodes.STATUS_LOCATION, 37.0 + (i * 0.001), -120.99, 50.0)); }
+        java.util.List<EventData> kept = new RouteSimplifier(route).simplify(5.0);
+        Assert.assertEquals(kept.size(), 3);
+        Assert.assertSame(kept.get(1), route.get(10), "corner");
+    }
+
+    @Test
+    public void testSignificantEventsRetained() {
+        java.util.List<EventData> route = straightRoute(30, 5);
+        EventData start = route.get(5);
+        EventData stop = route.get(10);
+        stop.setSpeedKPH(0.0);
+        EventData zone = route.get(20);
+        zone.setGeozoneID("yard");
+        EventData noGPS = route.get(25);
+        noGPS.setLatitude(0.0);
+        noGPS.setLongitude(0.0);
+        java.util.List<EventData> kept = new RouteSimplifier(route).simplify(1000000.0);
+        Assert.assertTrue(kept.contains(start), "status code event");
+        Assert.assertTrue(kept.contains(stop), "stopped");
+        Assert.assertTrue(kept.contains(route.get(11)), "started");
+        Assert.assertTrue(kept.contains(zone), "geozone transition");
+        Assert.assertTrue(kept.contains(noGPS), "invalid GPS");
+        Assert.assertTrue(RouteSimplifier.IsTrivialStatusCode(StatusCodes.STATUS_LOCATION));
+        Assert.assertFalse(RouteSimplifier.IsTrivialStatusCode(StatusCodes.STATUS_MOTION_START));
+    }
+
+    @Test
+    public void testToleranceMonotonic() {
+        java.util.List<EventData> route = new Vector<EventData>();
+        Random r = new Random(42L);
+        for (int i = 0; i < 200; i++) {
+            route.add(event(StatusCodes.STATUS_LOCATION, 37.0 + (r.nextDouble() * 0.01), -121.0 + (i * 0.0005), 40.0));
+        }
+        RouteSimplifier rs = new RouteSimplifier(route);
+        java.util.List<EventData> prev = rs.simplify(1.0);
+        for (double tol = 2.0; tol < 2000.0; tol *= 2.0) {
+            java.util.List<EventData> kept = rs.simplify(tol);
+            Assert.assertTrue(prev.containsAll(kept), "larger tolerance retains a subset at " + tol);
+            Assert.assertTrue(kept.size() <= prev.size());
+            prev = kept;
+        }
+        for (int i = 0; i < rs.size(); i++) {
+            int z = rs.getMinimumZoom(i, 1.0);
+            Assert.assertTrue(rs.simplifyForZoom(z, 1.0).contains(route.get(i)), "event " + i + " displayed at its minimum zoom");
+        }
+    }
+
+    @Test
+    public void testToleranceMeters() {
+        double z10 = RouteSimplifier.GetToleranceMeters(10, 0.0, 1.0);
+        Assert.assertEquals(z10, 156543.03392 / 1024.0, 1e-6);
+        Assert.assertEquals(RouteSimplifier.GetToleranceMeters(11, 0.0, 1.0), z10 / 2.0, 1e-6);
+        Assert.assertEquals(RouteSimplifier.GetToleranceMeters(10, 60.0, 2.0), z10, 1e-6, "cos(60) * 2 pixels");
+    }
+
+    @Test
+    public void testWindowedStreaming() {
+        java.util.List<EventData> route = straightRoute(1000, 500);
+        EventData start = route.get(500);
+        // a single window produces the same result as the whole route
+        java.util.List<EventData> whole = new RouteSimplifier(route).simplify(5.0);
+        java.util.List<EventData> single = new Vector<EventData>();
+        for (Iterator<EventData> i = RouteSimplifier.SimplifyIterator(route.iterator(), 5.0, 5000); i.hasNext();) {
+            single.add(i.next());
+        }
+        Assert.assertEquals(single, whole);
+        // small windows retain the endpoints and significant events, in order, without duplicates
+        java.util.List<EventData> windowed = new Vector<EventData>();
+        RouteSimplifier.Window w = new RouteSimplifier.Window(5.0, 64);
+        for (EventData ev : route) {
+            windowed.addAll(w.add(ev));
+        }
+        windowed.addAll(w.finish());
+        Assert.assertSame(windowed.get(0), route.get(0));
+        Assert.assertSame(windowed.get(windowed.size() - 1), route.get(route.size() - 1));
+        Assert.assertTrue(windowed.contains(start));
+        Assert.assertEquals(new HashSet<EventData>(windowed).size(), windowed.size(), "no duplicates");
+        Assert.assertTrue(windowed.size() < 100, "simplified: " + windowed.size());
+        for (int i = 1; i < windowed.size(); i++) {
+            Assert.assertTrue(windowed.get(i).getTimestamp() > windowed.get(i - 1).getTimestamp(), "ascending");
+        }
+        // no simplification
+        RouteSimplifier.Window none = new RouteSimplifier.Window(0.0, 64);
+        Assert.assertEquals(none.add(route.get(0)), Arrays.asList(route.get(0)));
+        Assert.assertTrue(none.finish().isEmpty());
+    }
+
+}
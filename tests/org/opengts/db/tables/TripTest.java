@@ -0,0 +1,87 @@
+package org.opengts.db.tables;
+
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import org.opengts.util.*;
+import org.opengts.db.*;
+
+/**
+ * TestNG tests for the Device start/stop determination and Trip accumulation
+ */
+public class TripTest {
+
+    private static EventData event(long ts, int sc, double lat, double lon, double kph) {
+        EventData ev = new EventData(new EventData.Key("acct", "dev", ts, sc));
+        ev.setLatitude(lat);
+        ev.setLongitude(lon);
+        ev.setSpeedKPH(kph);
+        return ev;
+    }
+
+    @Test
+    public void testMotionChange() {
+        EventData moving  = event(1000L, StatusCodes.STATUS_LOCATION, 37.0, -121.0, 40.0);
+        EventData stopped = event(1000L, StatusCodes.STATUS_LOCATION, 37.0, -121.0,  0.0);
+        // undefined state: speed only
+        Assert.assertEquals(Device.GetMotionChange(0L, 0L, moving ), Device.MOTION_START);
+        Assert.assertEquals(Device.GetMotionChange(0L, 0L, stopped), Device.MOTION_STOP );
+        // was moving
+        Assert.assertEquals(Device.GetMotionChange(500L, 100L, moving ), Device.MOTION_MOVING);
+        Assert.assertEquals(Device.GetMotionChange(500L, 100L, stopped), Device.MOTION_STOP  );
+        // was stopped
+        Assert.assertEquals(Device.GetMotionChange(100L, 500L, moving ), Device.MOTION_START  );
+        Assert.assertEquals(Device.GetMotionChange(100L, 500L, stopped), Device.MOTION_STOPPED);
+    }
+
+    @Test
+    public void testBuilder() {
+        EventData start = event(1000L, StatusCodes.STATUS_MOTION_START, 37.00, -121.0, 10.0);
+        start.setOdometerKM(100.0);
+        Trip.Builder tb = new Trip.Builder(start);
+        EventData ev1 = event(1600L, StatusCodes.STATUS_LOCATION, 37.05, -121.0, 60.0);
+        ev1.setOdometerKM(106.0);
+        ev1.setGeozoneID("yard");
+        tb.add(ev1);
+        EventData ev2 = event(2200L, StatusCodes.STATUS_LOCATION, 37.10, -121.0, 0.0); // idle 600 sec
+        ev2.setOdometerKM(110.0);
+        tb.add(ev2);
+        EventData stop = event(2800L, StatusCodes.STATUS_MOTION_STOP, 37.10, -121.0, 0.0); // idle 600 sec
+        stop.setOdometerKM(110.0);
+        tb.add(stop);
+        Trip trip = tb.getTrip(stop);
+        Assert.assertEquals(trip.getStartTime(), 1000L);
+        Assert.assertEquals(trip.getEndTime(), 2800L);
+        Assert.assertEquals(trip.getDistanceKM(), 10.0, 0.0001, "odometer distance");
+        Assert.assertEquals(trip.getIdleSeconds(), 1200L);
+        Assert.assertEquals(trip.getAvgSpeedKPH(), 10.0 / (600.0 / 3600.0), 0.0001, "moving seconds only");
+        Assert.assertEquals(trip.getMaxSpeedKPH(), 60.0, 0.0001);
+        Assert.assertEquals(trip.getEventCount(), 4L);
+        Assert.assertEquals(trip.getGeozonesEntered(), "yard");
+        Assert.assertEquals(trip.getGeozonesExited(), "yard");
+        // (the EventData address/fuel columns are optional, and not present here)
+        trip.setSubdivisionKM("US/CA=6.000,US/NV=4.000");
+        OrderedMap<String,Double> sd = trip.getSubdivisionDistances();
+        Assert.assertEquals(sd.size(), 2);
+        Assert.assertEquals(sd.get("US/CA").doubleValue(), 6.0, 0.001);
+        Assert.assertEquals(sd.get("US/NV").doubleValue(), 4.0, 0.001);
+    }
+
+    @Test
+    public void testBuilderGPSDistance() {
+        Trip.Builder tb = new Trip.Builder(event(1000L, StatusCodes.STATUS_MOTION_START, 37.0, -121.0, 10.0));
+        EventData stop = event(2000L, StatusCodes.STATUS_MOTION_STOP, 37.1, -121.0, 0.0);
+        tb.add(stop);
+        Trip trip = tb.getTrip(stop);
+        Assert.assertEquals(trip.getDistanceKM(), (new GeoPoint(37.0,-121.0)).kilometersToPoint(new GeoPoint(37.1,-121.0)), 0.0001);
+        Assert.assertEquals(trip.getFuelTrip(), -1.0, 0.0, "no fuel");
+        Assert.assertTrue(trip.getSubdivisionDistances().isEmpty());
+        // in progress
+        Trip open = (new Trip.Builder(stop)).getTrip(null);
+        Assert.assertTrue(open.isInProgress());
+        Assert.assertEquals(open.getElapsedSeconds(), -1L);
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.opengts.dbtools;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for DBQueryStats SQL fingerprinting and caller site extraction
+ */
+public class DBQueryStatsTest {
+
+    private static String fp(String sql) {
+        return DBQueryStats.Fingerprint(sql, true);
+    }
+
+    @Test
+    public void testLiteralsReplaced() {
+        Assert.assertEquals(
+            fp("SELECT * FROM EventData WHERE (accountID='demo' AND timestamp>=1700000000) LIMIT 100"),
+            "SELECT * FROM EventData WHERE (accountID=? AND timestamp>=?) LIMIT ?");
+        Assert.assertEquals(fp("UPDATE Device SET lastOdometerKM=12.5,flags=0x1F"), "UPDATE Device SET lastOdometerKM=?,flags=?");
+    }
+
+    @Test
+    public void testSameShapeSameFingerprint() {
+        Assert.assertEquals(
+            fp("SELECT * FROM Device WHERE accountID='a1' AND deviceID='d1'"),
+            fp("SELECT  *  FROM Device\n WHERE accountID='other'   AND deviceID='d22'"),
+            "literal values and whitespace do not matter");
+    }
+
+    @Test
+    public void testIdentifiersKept() {
+        Assert.assertEquals(fp("SELECT col1,`table2`.x FROM t3"), "SELECT col1,`table2`.x FROM t3", "digits in identifiers");
+        Assert.assertEquals(fp("SELECT \"col 9\" FROM t"), "SELECT \"col 9\" FROM t", "quoted identifier");
+    }
+
+    @Test
+    public void testValueListsCollapsed() {
+        Assert.assertEquals(
+            fp("INSERT INTO T (a,b,c) VALUES (1,'x',3)"),
+            fp("INSERT INTO T (a,b,c) VALUES (44,'yy',55)"));
+        Assert.assertEquals(fp("SELECT * FROM T WHERE id IN (1, 2, 3, 4)"), "SELECT * FROM T WHERE id IN (?+)");
+        Assert.assertEquals(fp("SELECT * FROM T WHERE id IN (1,2)"), fp("SELECT * FROM T WHERE id IN (1,2,3,4,5)"), "list length");
+        Assert.assertEquals(fp("SELECT * FROM T WHERE id=(5)"), "SELECT * FROM T WHERE id=(?)", "single value is not a list");
+    }
+
+    @Test
+    public void testQuoteEscapes() {
+        // MySQL: backslash escapes the next character
+        Assert.assertEquals(fp("SELECT 1 FROM T WHERE a='it\\'s' AND b=2"), "SELECT ? FROM T WHERE a=? AND b=?");
+        // standard: doubled quote, backslash is a literal character
+        Assert.assertEquals(
+            DBQueryStats.Fingerprint("SELECT * FROM T WHERE a='c:\\' AND b='it''s'", false),
+            "SELECT * FROM T WHERE a=? AND b=?");
+    }
+
+    @Test
+    public void testUnterminatedAndNull() {
+        Assert.assertEquals(fp("SELECT * FROM T WHERE a='open"), "SELECT * FROM T WHERE a=?");
+        Assert.assertEquals(fp(null), "");
+    }
+
+    @Test
+    public void testCallerSite() {
+        Throwable t = new Throwable();
+        t.setStackTrace(new StackTraceElement[] {
+            new StackTraceElement("org.opengts.dbtools.DBConnection", "execute", "DBConnection.java", 10),
+            new StackTraceElement("org.opengts.dbtools.DBRecord", "_select", "DBRecord.java", 20),
+            new StackTraceElement("org.opengts.db.tables.Device", "getDevice", "Device.java", 30),
+        });
+        Assert.assertEquals(DBQueryStats.GetCallerSite(t), "Device.getDevice:30", "first frame outside dbtools");
+        Assert.assertEquals(DBQueryStats.GetCallerSite(null), "?");
+    }
+
+}
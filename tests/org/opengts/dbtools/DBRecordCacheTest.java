@@ -0,0 +1,51 @@
+package org.opengts.dbtools;
+
+import org.opengts.util.StringTools;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for DBRecordCache invalidation message signing and validation
+ */
+public class DBRecordCacheTest {
+
+    private static final byte SECRET[] = StringTools.getBytes("shared-secret");
+    private static final long NOW      = 1700000000000L;
+
+    @Test
+    public void testRoundTrip() {
+        String msg = DBRecordCache._encodeInvalidation(SECRET, NOW, "Device\nacct,dev:1");
+        Assert.assertNotNull(msg);
+        Assert.assertEquals(DBRecordCache._decodeInvalidation(SECRET, msg, NOW + 1000L), "Device\nacct,dev:1");
+    }
+
+    @Test
+    public void testWrongSecretRejected() {
+        String msg = DBRecordCache._encodeInvalidation(StringTools.getBytes("other"), NOW, "Device\n*");
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, msg, NOW));
+        Assert.assertNull(DBRecordCache._decodeInvalidation(null, msg, NOW), "no secret configured");
+    }
+
+    @Test
+    public void testTamperedBodyRejected() {
+        String msg = DBRecordCache._encodeInvalidation(SECRET, NOW, "Device\nacct,dev1");
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, msg.replace("dev1", "dev2"), NOW));
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, msg.replace(":" + NOW + ":", ":" + (NOW + 1L) + ":"), NOW));
+    }
+
+    @Test
+    public void testExpiredRejected() {
+        String msg = DBRecordCache._encodeInvalidation(SECRET, NOW, "Device\n*");
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, msg, NOW + 120000L), "too old");
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, msg, NOW - 120000L), "from the future");
+    }
+
+    @Test
+    public void testMalformedRejected() {
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, "DBCache:Device\n*", NOW), "unsigned format");
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, "garbage", NOW));
+        Assert.assertNull(DBRecordCache._decodeInvalidation(SECRET, null, NOW));
+    }
+
+}
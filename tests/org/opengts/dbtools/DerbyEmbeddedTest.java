@@ -0,0 +1,210 @@
+package org.opengts.dbtools;
+
+import java.io.File;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opengts.util.RTConfig;
+import org.opengts.util.RTKey;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for the "derby_embedded" DBProvider: SQL generation, and (if the Derby
+ * driver is on the classpath) a create/insert/select/index/lock round-trip
+ */
+public class DerbyEmbeddedTest {
+
+    private static final String DERBY_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+
+    /* test table */
+    public static class TestRecord extends DBRecord<TestRecord> {
+        public static final String FLD_rowID    = "rowID";
+        public static final String FLD_name     = "name";
+        public static final String FLD_count    = "count";
+        public static final String FLD_data     = "data";
+        private static DBField FieldInfo[] = {
+            new DBField(FLD_rowID , Long.class   , DBField.TYPE_UINT32    , "Row ID", "key=true"),
+            new DBField(FLD_name  , String.class , DBField.TYPE_STRING(32), "Name"  , "altkey=name"),
+            new DBField(FLD_count , Integer.class, DBField.TYPE_UINT16    , "Count" , ""),
+            new DBField(FLD_data  , byte[].class , DBField.TYPE_BLOB      , "Data"  , ""),
+        };
+        public static class Key extends DBRecordKey<TestRecord> {
+            public Key() { super(); }
+            public Key(long rowID) { super.setFieldValue(FLD_rowID, rowID); }
+            public DBFactory<TestRecord> getFactory() { return TestRecord.getFactory(); }
+        }
+        private static DBFactory<TestRecord> factory = null;
+        public static DBFactory<TestRecord> getFactory() {
+            if (factory == null) {
+                factory = DBFactory.createDBFactory(
+                    DBProvider._translateTableName("DerbyTest"), FieldInfo, DBFactory.KeyType.PRIMARY,
+                    TestRecord.class, TestRecord.Key.class, false, false);
+            }
+            return factory;
+        }
+        public TestRecord() { super(); }
+        public TestRecord(TestRecord.Key key) { super(key); }
+        public String getName() { return (String)this.getFieldValue(FLD_name); }
+        public void setName(String v) { this.setFieldValue(FLD_name, v); }
+        public void setCount(int v) { this.setFieldValue(FLD_count, v); }
+        public byte[] getData() { return (byte[])this.getFieldValue(FLD_data); }
+        public void setData(byte v[]) { this.setFieldValue(FLD_data, v); }
+    }
+
+    private Map<String,String> saved = new HashMap<String,String>();
+    private File dbDir = null;
+
+    private void setProperty(String key, String val) {
+        this.saved.put(key, RTConfig.getString(key, null));
+        RTConfig.setString(key, val);
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        this.dbDir = File.createTempFile("derby", "");
+        this.dbDir.delete();
+        this.setProperty(RTKey.DB_PROVIDER     , DBProvider.Derby_Embedded_Name);
+        this.setProperty(RTKey.DB_EMBEDDED_DIR , this.dbDir.getAbsolutePath());
+        this.setProperty(RTKey.DB_NAME         , "gtstest");
+        this.setProperty(RTKey.DB_TABLE_LOCKING, "false");
+        DBProvider._resetProvider();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        for (Map.Entry<String,String> e : this.saved.entrySet()) {
+            RTConfig.setString(e.getKey(), e.getValue());
+        }
+        DBProvider._resetProvider();
+        if (this.dbDir != null) {
+            deleteAll(this.dbDir);
+        }
+    }
+
+    private static void deleteAll(File f) {
+        File files[] = f.listFiles();
+        if (files != null) {
+            for (File c : files) {
+                deleteAll(c);
+            }
+        }
+        f.delete();
+    }
+
+    private static void requireDriver() {
+        try {
+            Class.forName(DERBY_DRIVER);
+        } catch (ClassNotFoundException cnfe) {
+            throw new SkipException("Derby driver not on the classpath: " + DERBY_DRIVER);
+        }
+    }
+
+    @Test
+    public void testProviderSelected() {
+        DBProvider dbp = DBProvider.getProvider();
+        Assert.assertEquals(dbp.getID(), DBProvider.DB_DERBY);
+        Assert.assertTrue(dbp.isEmbedded());
+        Assert.assertTrue(dbp.supportsLimit() && dbp.supportsOffset());
+        String uri = DBProvider.getDBUri(true);
+        Assert.assertTrue(uri.startsWith("jdbc:derby:" + this.dbDir.getAbsolutePath()), uri);
+        Assert.assertTrue(uri.endsWith("/gtstest;create=true"), uri);
+    }
+
+    @Test
+    public void testTypeMapping() {
+        Assert.assertEquals(DBProvider.getSqlTypeFromDataType(DBField.TYPE_UINT16), "INTEGER", "unsigned 16 widened");
+        Assert.assertEquals(DBProvider.getSqlTypeFromDataType(DBField.TYPE_UINT32), "BIGINT", "unsigned 32 widened");
+        Assert.assertEquals(DBProvider.getSqlTypeFromDataType(DBField.TYPE_DATETIME), "TIMESTAMP");
+        Assert.assertEquals(DBProvider.getSqlTypeFromDataType(DBField.TYPE_STRING(32)), "VARCHAR(32)");
+    }
+
+    @Test
+    public void testStandardQuoting() {
+        Assert.assertEquals(DBField.quote("O'Brien\\x"), "'O''Brien\\x'", "no backslash escapes");
+    }
+
+    @Test
+    public void testOffsetFetch() {
+        DBSelect<TestRecord> dsel = new DBSelect<TestRecord>(TestRecord.getFactory());
+        dsel.setOrderByFields(TestRecord.FLD_rowID);
+        dsel.setLimit(3L);
+        dsel.setOffset(2L);
+        String sql = dsel.toString();
+        Assert.assertTrue(sql.endsWith(" OFFSET 2 ROWS FETCH NEXT 3 ROWS ONLY"), sql);
+        Assert.assertFalse(sql.contains("LIMIT"), sql);
+    }
+
+    @Test
+    public void testLockDisabled() throws DBException {
+        Assert.assertFalse(DBProvider.lockTables(new String[] { "DerbyTest" }, null), "locking disabled: nothing locked");
+        Assert.assertEquals(DBProvider.getLockLevel(), 0);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        requireDriver();
+        DBFactory<TestRecord> fact = TestRecord.getFactory();
+        if (fact.tableExists()) {
+            fact.dropTable();
+        }
+        fact.createTable();
+        Assert.assertTrue(fact.tableExists(), "created");
+
+        /* insert */
+        for (long i = 1L; i <= 10L; i++) {
+            TestRecord r = new TestRecord.Key(i).getDBRecord();
+            r.setName((i == 5L)? "O'Brien\\x" : ("row" + i));
+            r.setCount(60000); // above SMALLINT
+            r.setData(new byte[] { (byte)i, 0, (byte)0xFF });
+            r.insert();
+        }
+
+        /* read back */
+        TestRecord r5 = new TestRecord.Key(5L).getDBRecord(true);
+        Assert.assertEquals(r5.getName(), "O'Brien\\x", "quoted string");
+        Assert.assertEquals(r5.getData(), new byte[] { 5, 0, (byte)0xFF }, "blob");
+
+        /* OFFSET/FETCH */
+        TestRecord page[] = DBRecord.getRecords(fact, null, null, new String[] { TestRecord.FLD_rowID }, true, 3L, 2L);
+        Assert.assertEquals(page.length, 3);
+        Assert.assertEquals(page[0].getName(), "row3");
+        Assert.assertEquals(page[2].getName(), "O'Brien\\x");
+
+        /* type mapping */
+        DBConnection dbc = DBConnection.getDefaultConnection();
+        try {
+            DatabaseMetaData md = dbc.getConnection().getMetaData();
+            ResultSet rs = md.getColumns(null, null, fact.getTranslatedTableName().toUpperCase(), null);
+            Map<String,String> types = new HashMap<String,String>();
+            while (rs.next()) {
+                types.put(rs.getString("COLUMN_NAME").toUpperCase(), rs.getString("TYPE_NAME"));
+            }
+            rs.close();
+            Assert.assertEquals(types.get("ROWID"), "BIGINT");
+            Assert.assertEquals(types.get("COUNT"), "INTEGER");
+        } finally {
+            DBConnection.release(dbc);
+        }
+
+        /* alternate index */
+        Assert.assertTrue(DBProvider.getActualTableIndexMap("DerbyTest").getAlternateIndexes().contains("name"), "alternate index created");
+        DBProvider.removeAlternateIndex("DerbyTest", "name");
+        Assert.assertFalse(DBProvider.getActualTableIndexMap("DerbyTest").getAlternateIndexes().contains("name"), "alternate index dropped");
+
+        /* forced lock */
+        Assert.assertTrue(DBProvider.lockTableForRead("DerbyTest", true));
+        Assert.assertEquals(DBProvider.getLockLevel(), 1);
+        DBProvider.unlockTables();
+        Assert.assertEquals(DBProvider.getLockLevel(), 0);
+
+        fact.dropTable();
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.opengts.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for the AsyncLogWriter multi-producer ring buffer: no lost or duplicated
+ * records, per-thread order, and full buffer behaviour (drop, block)
+ */
+public class AsyncLogWriterTest {
+
+    private static final int PRODUCERS  = 8;
+    private static final int PER_THREAD = 20000;
+
+    private File logFile = null;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        this.logFile = File.createTempFile("AsyncLogWriterTest", ".log");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (this.logFile != null) {
+            this.logFile.delete();
+        }
+    }
+
+    /* log "P<thread>-<seq>" from several threads at once, return the number accepted */
+    private static long produce(final AsyncLogWriter alw, int producers, final int perThread) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService exec = Executors.newFixedThreadPool(producers);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < producers; t++) {
+            final int thread = t;
+            results.add(exec.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    start.await();
+                    int accepted = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (alw.log(Print.LOG_INFO, false, null, "P%d-%d", new Object[] { thread, i })) {
+                            accepted++;
+                        }
+                    }
+                    return accepted;
+                }
+            }));
+        }
+        start.countDown();
+        long accepted = 0L;
+        for (Future<Integer> f : results) {
+            accepted += f.get(60L, TimeUnit.SECONDS);
+        }
+        exec.shutdown();
+        return accepted;
+    }
+
+    /* returns the written sequence numbers by thread, checking for duplicates and order */
+    private List<List<Integer>> readRecords(int producers, long dropped[]) throws IOException {
+        List<List<Integer>> seqs = new ArrayList<List<Integer>>();
+        for (int t = 0; t < producers; t++) {
+            seqs.add(new ArrayList<Integer>());
+        }
+        BufferedReader br = new BufferedReader(new FileReader(this.logFile));
+        try {
+            for (String line; (line = br.readLine()) != null;) {
+                if (line.startsWith("P")) {
+                    int p = line.indexOf('-');
+                    int t = Integer.parseInt(line.substring(1, p));
+                    int i = Integer.parseInt(line.substring(p + 1));
+                    List<Integer> s = seqs.get(t);
+                    if (!s.isEmpty()) {
+                        Assert.assertTrue(i > s.get(s.size() - 1), "thread " + t + " order/duplicate at " + i);
+                    }
+                    s.add(i);
+                } else
+                if (line.contains("Async log queue full, dropped ")) {
+                    String n = line.substring(line.indexOf("dropped ") + 8);
+                    dropped[0] += Long.parseLong(n.substring(0, n.indexOf(' ')));
+                } else {
+                    Assert.fail("Unexpected log line: " + line);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return seqs;
+    }
+
+    @Test
+    public void testMultiProducerBlockOnFull() throws Exception {
+        long droppedBefore = AsyncLogWriter.GetDroppedCount();
+        AsyncLogWriter alw = new AsyncLogWriter(this.logFile, 64, true);
+        alw.start();
+        long accepted = produce(alw, PRODUCERS, PER_THREAD);
+        alw.shutdown(30000L);
+        Assert.assertEquals(accepted, (long)PRODUCERS * PER_THREAD, "all records accepted");
+        Assert.assertEquals(AsyncLogWriter.GetDroppedCount(), droppedBefore, "nothing dropped");
+        long dropped[] = new long[1];
+        List<List<Integer>> seqs = this.readRecords(PRODUCERS, dropped);
+        for (int t = 0; t < PRODUCERS; t++) {
+            Assert.assertEquals(seqs.get(t).size(), PER_THREAD, "thread " + t + " records written");
+        }
+        Assert.assertEquals(dropped[0], 0L);
+        Assert.assertEquals(alw.getQueueSize(), 0L, "queue drained");
+    }
+
+    @Test
+    public void testMultiProducerDropOnFull() throws Exception {
+        long droppedBefore = AsyncLogWriter.GetDroppedCount();
+        AsyncLogWriter alw = new AsyncLogWriter(this.logFile, 1024, false);
+        alw.start();
+        produce(alw, PRODUCERS, PER_THREAD);
+        alw.shutdown(30000L);
+        long droppedDelta = AsyncLogWriter.GetDroppedCount() - droppedBefore;
+        long dropped[] = new long[1];
+        List<List<Integer>> seqs = this.readRecords(PRODUCERS, dropped);
+        long written = 0L;
+        for (int t = 0; t < PRODUCERS; t++) {
+            written += seqs.get(t).size();
+        }
+        Assert.assertEquals(written + droppedDelta, (long)PRODUCERS * PER_THREAD, "each record written or dropped");
+        Assert.assertEquals(dropped[0], droppedDelta, "dropped records reported");
+    }
+
+    @Test
+    public void testFullBuffer() throws Exception {
+        long droppedBefore = AsyncLogWriter.GetDroppedCount();
+
+        /* drop: writer not yet started, the buffer fills */
+        AsyncLogWriter alw = new AsyncLogWriter(this.logFile, 10, false); // rounded up to 64
+        for (int i = 0; i < 64; i++) {
+            Assert.assertTrue(alw.log(Print.LOG_INFO, false, null, "P0-" + i, null), "queued");
+        }
+        Assert.assertEquals(alw.getQueueSize(), 64L);
+        for (int i = 64; i < 74; i++) {
+            Assert.assertTrue(alw.log(Print.LOG_INFO, false, null, "P0-" + i, null), "dropped");
+        }
+        Assert.assertEquals(AsyncLogWriter.GetDroppedCount() - droppedBefore, 10L, "dropped count");
+        Assert.assertFalse(alw.log(Print.LOG_ERROR, false, null, "error", null), "errors are not dropped (written directly)");
+        Assert.assertEquals(alw.getQueueSize(), 64L);
+
+        /* start: queued records are written, in order */
+        alw.start();
+        alw.shutdown(10000L);
+        long dropped[] = new long[1];
+        List<Integer> seq = this.readRecords(1, dropped).get(0);
+        Assert.assertEquals(seq.size(), 64);
+        Assert.assertEquals(seq.get(63), Integer.valueOf(63));
+        Assert.assertEquals(dropped[0], 10L, "dropped records reported");
+
+        /* block: a full buffer without a running writer does not block the caller */
+        AsyncLogWriter blk = new AsyncLogWriter(this.logFile, 64, true);
+        for (int i = 0; i < 64; i++) {
+            Assert.assertTrue(blk.log(Print.LOG_INFO, false, null, "P0-" + i, null));
+        }
+        Assert.assertFalse(blk.log(Print.LOG_INFO, false, null, "P0-64", null), "written directly");
+    }
+
+}
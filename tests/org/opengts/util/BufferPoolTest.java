@@ -0,0 +1,53 @@
+package org.opengts.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for BufferPool size classes and buffer reuse
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        BufferPool pool = new BufferPool(4);
+        Assert.assertEquals(pool.borrow(1).length, 64, "minimum size class");
+        Assert.assertEquals(pool.borrow(65).length, 128, "rounded to power of two");
+        Assert.assertEquals(pool.borrow(1024).length, 1024, "exact power of two");
+        Assert.assertEquals(pool.borrow(2 * 1024 * 1024).length, 2 * 1024 * 1024, "larger than largest class");
+    }
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool(4);
+        byte b[] = pool.borrow(500);
+        pool.release(b);
+        Assert.assertSame(pool.borrow(300), b, "released buffer reused");
+        Assert.assertEquals(pool.getBorrowCount(), 2L);
+        Assert.assertEquals(pool.getAllocationCount(), 1L);
+    }
+
+    @Test
+    public void testForeignBuffersIgnored() {
+        BufferPool pool = new BufferPool(4);
+        byte b[] = new byte[100]; // not a pooled size
+        pool.release(b);
+        Assert.assertNotSame(pool.borrow(100), b);
+        pool.release(null);
+    }
+
+    @Test
+    public void testMaximumRetained() {
+        BufferPool pool = new BufferPool(2);
+        byte a[] = pool.borrow(64), b[] = pool.borrow(64), c[] = pool.borrow(64);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c); // discarded, class is full
+        pool.borrow(64);
+        pool.borrow(64);
+        long allocs = pool.getAllocationCount();
+        pool.borrow(64);
+        Assert.assertEquals(pool.getAllocationCount(), allocs + 1L, "third buffer was not retained");
+    }
+
+}
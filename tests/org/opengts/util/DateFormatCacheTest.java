@@ -0,0 +1,157 @@
+package org.opengts.util;
+
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Differential TestNG tests for DateFormatCache
+ * Every cached result is compared against a newly created SimpleDateFormat
+ */
+public class DateFormatCacheTest {
+
+    private static final String PATTERNS[] = {
+        "yyyy/MM/dd HH:mm:ss",
+        "yyyy/MM/dd HH:mm:ss zzz",
+        "yyyy/MM/dd",
+        "MM/dd/yyyy",
+        "EEE MMM dd HH:mm:ss zzz yyyy",
+        "MMM dd, yyyy HH:mm:ss z",
+        "HH:mm:ss",
+        "hh:mm a",
+        "yyyyMMddHHmmss'.log'",
+        "yyyy-MM-dd'T'HH:mm:ssZ",
+        "yyyy-MM-dd HH:mm:ss.SSS",
+        "EEEE, d MMMM yyyy",
+        "D 'day of' yyyy, 'week' w",
+        "yyyy 'o''clock' dd",
+    };
+
+    private static final String TIMEZONES[] = {
+        "GMT",
+        "US/Pacific",
+        "America/New_York",
+        "Europe/London",
+        "Australia/Lord_Howe",
+        "Asia/Kolkata",
+        "America/Sao_Paulo",
+        "America/Havana",
+        "Asia/Tehran",
+        "America/Santiago",
+        "Pacific/Chatham",
+    };
+
+    /* expected result */
+    private static String expected(long timeMS, TimeZone tz, String pattern, Locale loc) {
+        SimpleDateFormat sdf = (loc != null)? new SimpleDateFormat(pattern, loc) : new SimpleDateFormat(pattern);
+        sdf.setTimeZone(tz);
+        StringBuffer sb = new StringBuffer();
+        sdf.format(new Date(timeMS), sb, new FieldPosition(0));
+        return sb.toString();
+    }
+
+    @DataProvider(name = "patternData")
+    public Object[][] patternData() {
+        Object data[][] = new Object[PATTERNS.length * TIMEZONES.length][];
+        int n = 0;
+        for (int p = 0; p < PATTERNS.length; p++) {
+            for (int z = 0; z < TIMEZONES.length; z++) {
+                data[n++] = new Object[] { PATTERNS[p], TIMEZONES[z] };
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Random times (including negative epoch times) formatted in random order
+     */
+    @Test(dataProvider = "patternData")
+    public void testRandomTimes(String pattern, String tzID) {
+        TimeZone tz = TimeZone.getTimeZone(tzID);
+        Random rand = new Random(pattern.hashCode() ^ tzID.hashCode());
+        for (int i = 0; i < 2000; i++) {
+            long timeMS = (rand.nextLong() % (200L * 365L * 86400000L));
+            Assert.assertEquals(DateFormatCache.format(timeMS, tz, pattern), expected(timeMS, tz, pattern, null),
+                "time=" + timeMS);
+        }
+    }
+
+    /**
+     * Sequential times (exercises the cached second/day results) across DST transitions,
+     * including transitions at midnight
+     */
+    @Test(dataProvider = "patternData")
+    public void testSequentialTimes(String pattern, String tzID) {
+        TimeZone tz = TimeZone.getTimeZone(tzID);
+        long steps[] = { 1L, 999L, 1000L, 59999L, 900000L, 3600000L - 1L, 86400000L - 1L };
+        long starts[] = {
+            1362880800000L - 3600000L,  // 2013/03/10 (US DST start)
+            1383444000000L - 7200000L,  // 2013/11/03 (US DST end)
+            1364691600000L - 3600000L,  // 2013/03/31 (EU DST start)
+            1364601600000L,             // 2013/03/30 (Lord Howe DST end, 30 minute shift)
+            1287284400000L - 3600000L,  // 2010/10/17 (Sao Paulo DST start, 00:00 skipped)
+            1362891600000L - 3600000L,  // 2013/03/10 (Havana DST start, 00:00 skipped)
+            1363897800000L - 3600000L,  // 2013/03/22 (Tehran DST start, 00:00 skipped)
+            1378612800000L - 3600000L,  // 2013/09/08 (Santiago DST start, 00:00 skipped)
+            -1000L,                     // epoch
+        };
+        for (long start : starts) {
+            for (long step : steps) {
+                long timeMS = start;
+                for (int i = 0; i < 400; i++, timeMS += step) {
+                    Assert.assertEquals(DateFormatCache.format(timeMS, tz, pattern), expected(timeMS, tz, pattern, null),
+                        "time=" + timeMS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Repeated formatting of the same time with different patterns/timezones/locales
+     */
+    @Test
+    public void testInterleavedKeys() {
+        Locale locs[] = { null, Locale.US, Locale.FRANCE, Locale.GERMANY, new Locale("es","MX") };
+        long timeMS = 1381000000123L;
+        for (int r = 0; r < 3; r++) {
+            for (String pattern : PATTERNS) {
+                for (String tzID : TIMEZONES) {
+                    TimeZone tz = TimeZone.getTimeZone(tzID);
+                    for (Locale loc : locs) {
+                        Assert.assertEquals(DateFormatCache.format(timeMS, tz, pattern, loc), expected(timeMS, tz, pattern, loc));
+                    }
+                }
+            }
+            timeMS += 86400000L + 1L;
+        }
+    }
+
+    /**
+     * Custom GMT offset timezones with the same ID prefix must not share formatters
+     */
+    @Test
+    public void testCustomOffsets() {
+        String pattern = "yyyy/MM/dd HH:mm:ss zzz";
+        long timeMS = 1381000000000L;
+        for (int h = -12; h <= 14; h++) {
+            TimeZone tz = TimeZone.getTimeZone("GMT" + ((h < 0)? "-" : "+") + Math.abs(h) + ":00");
+            Assert.assertEquals(DateFormatCache.format(timeMS, tz, pattern), expected(timeMS, tz, pattern, null));
+        }
+    }
+
+    /**
+     * Invalid patterns must throw the same exception as SimpleDateFormat
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidPattern() {
+        DateFormatCache.format(0L, TimeZone.getTimeZone("GMT"), "yyyy/MM/dd qq");
+    }
+
+}
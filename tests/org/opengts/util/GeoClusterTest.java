@@ -0,0 +1,94 @@
+package org.opengts.util;
+
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for GeoCluster grid clustering, viewport culling and Web Mercator pixel coordinates
+ */
+public class GeoClusterTest {
+
+    private static java.util.List<GeoPoint> points(double... latLon) {
+        java.util.List<GeoPoint> list = new Vector<GeoPoint>();
+        for (int i = 0; i < latLon.length; i += 2) {
+            list.add(new GeoPoint(latLon[i], latLon[i + 1]));
+        }
+        return list;
+    }
+
+    @Test
+    public void testWorldPixels() {
+        Assert.assertEquals(GeoCluster.getWorldPixelX(-180.0, 0), 0.0, 1e-9);
+        Assert.assertEquals(GeoCluster.getWorldPixelX(   0.0, 0), 128.0, 1e-9);
+        Assert.assertEquals(GeoCluster.getWorldPixelX( 180.0, 1), 512.0, 1e-9);
+        Assert.assertEquals(GeoCluster.getWorldPixelY(   0.0, 0), 128.0, 1e-9);
+        Assert.assertTrue(GeoCluster.getWorldPixelY(45.0, 0) < 128.0, "north is up");
+        Assert.assertEquals(GeoCluster.getWorldPixelY( 90.0, 0), 0.0, 1e-6, "pole is clamped to the world edge");
+        Assert.assertEquals(GeoCluster.getWorldPixelY(-90.0, 0), 256.0, 1e-6, "pole is clamped to the world edge");
+    }
+
+    @Test
+    public void testClustersSeparateWhenZoomedIn() {
+        // two points ~15m apart, and one point ~100km away
+        java.util.List<GeoPoint> pts = points(37.780, -121.220, 37.7801, -121.2201, 38.700, -121.220);
+        java.util.List<GeoCluster<GeoPoint>> low = GeoCluster.createClusters(pts, null, 5, 64);
+        Assert.assertEquals(low.size(), 1, "one cell at zoom 5");
+        Assert.assertEquals(low.get(0).getCount(), 3);
+        java.util.List<GeoCluster<GeoPoint>> mid = GeoCluster.createClusters(pts, null, 10, 64);
+        Assert.assertEquals(mid.size(), 2, "nearby points share a cell at zoom 10");
+        Assert.assertEquals(mid.get(0).getCount(), 2, "clusters are ordered by their first point");
+        Assert.assertTrue(mid.get(1).isSinglePoint());
+        Assert.assertSame(mid.get(1).getMembers().get(0), pts.get(2));
+        java.util.List<GeoCluster<GeoPoint>> high = GeoCluster.createClusters(pts, null, 22, 64);
+        Assert.assertEquals(high.size(), 3, "all points separate at zoom 22");
+    }
+
+    @Test
+    public void testClusterCenterAndBounds() {
+        java.util.List<GeoPoint> pts = points(10.0, 20.0, 10.2, 20.4);
+        GeoCluster<GeoPoint> gc = GeoCluster.createClusters(pts, null, 0, 64).get(0);
+        Assert.assertEquals(gc.getGeoPoint().getLatitude() , 10.1, 1e-9);
+        Assert.assertEquals(gc.getGeoPoint().getLongitude(), 20.2, 1e-9);
+        Assert.assertEquals(gc.getBounds().getMinLatitude() , 10.0, 1e-9);
+        Assert.assertEquals(gc.getBounds().getMaxLongitude(), 20.4, 1e-9);
+        Assert.assertFalse(new GeoCluster<GeoPoint>().getGeoPoint().isValid(), "empty cluster");
+    }
+
+    @Test
+    public void testInvalidAndCulledPoints() {
+        java.util.List<GeoPoint> pts = points(37.0, -121.0, 0.0, 0.0, 45.0, -100.0);
+        pts.add(null);
+        GeoBounds viewport = new GeoBounds("30,40,-125,-115", ',');
+        java.util.List<GeoCluster<GeoPoint>> cl = GeoCluster.createClusters(pts, viewport, 3, 64);
+        Assert.assertEquals(cl.size(), 1, "invalid, null and outside points are omitted");
+        Assert.assertEquals(cl.get(0).getCount(), 1);
+        Assert.assertEquals(GeoCluster.createClusters(null, null, 3, 64).size(), 0);
+    }
+
+    @Test
+    public void testViewportAcrossMeridian() {
+        java.util.List<GeoPoint> pts = points(0.0, 179.5, 0.0, -179.5, 0.0, 0.0);
+        GeoBounds viewport = new GeoBounds("-10,10,170,-170", ','); // minLon > maxLon
+        int count = 0;
+        for (GeoCluster<GeoPoint> gc : GeoCluster.createClusters(pts, viewport, 12, 64)) {
+            count += gc.getCount();
+        }
+        Assert.assertEquals(count, 2, "points on both sides of the meridian are inside");
+    }
+
+    @Test
+    public void testClustersStableWhenPanned() {
+        java.util.List<GeoPoint> pts = points(37.780, -121.220, 37.781, -121.221, 37.900, -121.500);
+        GeoBounds a = new GeoBounds("37,38,-122,-121", ',');
+        GeoBounds b = new GeoBounds("37.5,38.5,-121.8,-120.8", ',');
+        java.util.List<GeoCluster<GeoPoint>> ca = GeoCluster.createClusters(pts, a, 11, 64);
+        java.util.List<GeoCluster<GeoPoint>> cb = GeoCluster.createClusters(pts, b, 11, 64);
+        Assert.assertEquals(ca.size(), cb.size());
+        for (int i = 0; i < ca.size(); i++) {
+            Assert.assertEquals(ca.get(i).getMembers(), cb.get(i).getMembers(), "grid is anchored at the world origin");
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.opengts.util;
+
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for GeoShape, compared against GeoPolygon and the point-radius GeozoneChecker
+ */
+public class GeoShapeTest {
+
+    private static GeoPoint[] points(double lat[], double lon[]) {
+        GeoPoint gp[] = new GeoPoint[lat.length];
+        for (int i = 0; i < lat.length; i++) {
+            gp[i] = new GeoPoint(lat[i], lon[i]);
+        }
+        return gp;
+    }
+
+    /* test points: random, plus vertices, edge midpoints and points on vertex latitudes */
+    private static java.util.List<GeoPoint> testPoints(Random r, double lat[], double lon[]) {
+        java.util.List<GeoPoint> pts = new Vector<GeoPoint>();
+        for (int i = 0; i < 200; i++) {
+            pts.add(new GeoPoint(37.0 + (r.nextDouble() * 0.12) - 0.01, -121.0 + (r.nextDouble() * 0.12) - 0.01));
+        }
+        for (int i = 0; i < lat.length; i++) {
+            int j = (i + 1) % lat.length;
+            pts.add(new GeoPoint(lat[i], lon[i]));
+            pts.add(new GeoPoint((lat[i] + lat[j]) / 2.0, (lon[i] + lon[j]) / 2.0));
+            pts.add(new GeoPoint(lat[i], -121.0 + (r.nextDouble() * 0.1)));
+        }
+        return pts;
+    }
+
+    @Test
+    public void testPolygonMatchesGeoPolygon() {
+        Random r = new Random(7L);
+        for (int p = 0; p < 500; p++) {
+            // random (possibly concave or self-intersecting) polygon, 3..10 vertices
+            int n = 3 + r.nextInt(8);
+            double lat[] = new double[n], lon[] = new double[n];
+            for (int i = 0; i < n; i++) {
+                // coarse grid, so that vertex latitudes and longitudes repeat
+                lat[i] = 37.0 + (r.nextInt(11) * 0.01);
+                lon[i] = -121.0 + (r.nextInt(11) * 0.01);
+            }
+            GeoShape shape = GeoShape.createPolygon(lat, lon);
+            GeoPoint poly[] = points(lat, lon);
+            for (GeoPoint gp : testPoints(r, lat, lon)) {
+                Assert.assertEquals(shape.containsPoint(gp), GeoPolygon.isPointInside(gp, poly),
+                    "polygon " + p + " point " + gp);
+            }
+        }
+    }
+
+    @Test
+    public void testClosedPolygon() {
+        double lat[] = { 37.0, 37.0, 37.1, 37.1, 37.0 };
+        double lon[] = { -121.0, -120.9, -120.9, -121.0, -121.0 };
+        GeoShape shape = GeoShape.createPolygon(lat, lon);
+        Assert.assertTrue(shape.containsPoint(37.05, -120.95));
+        Assert.assertFalse(shape.containsPoint(37.15, -120.95));
+        Assert.assertFalse(shape.containsPoint(37.05, -120.85));
+    }
+
+    @Test
+    public void testPointRadiusMatchesChecker() {
+        Random r = new Random(11L);
+        GeozoneChecker checker = GeoPoint.getGeozoneChecker();
+        for (int p = 0; p < 100; p++) {
+            int n = 1 + r.nextInt(4);
+            double lat[] = new double[n], lon[] = new double[n];
+            for (int i = 0; i < n; i++) {
+                lat[i] = 37.0 + (r.nextDouble() * 0.1);
+                lon[i] = -121.0 + (r.nextDouble() * 0.1);
+            }
+            double radiusKM = 0.5 + (r.nextDouble() * 3.0);
+            GeoShape shape = GeoShape.createPointRadius(lat, lon, radiusKM);
+            GeoPoint gpList[] = points(lat, lon);
+            for (GeoPoint gp : testPoints(r, lat, lon)) {
+                Assert.assertEquals(shape.containsPoint(gp), checker.containsPoint(gp, gpList, radiusKM),
+                    "zone " + p + " point " + gp);
+            }
+        }
+    }
+
+    @Test
+    public void testCorridor() {
+        double lat[] = { 37.0, 37.0, 37.1 };
+        double lon[] = { -121.0, -120.9, -120.9 };
+        GeoShape shape = GeoShape.createCorridor(lat, lon, 0.5);
+        Assert.assertTrue(shape.containsPoint(37.0, -120.95), "on first segment");
+        Assert.assertTrue(shape.containsPoint(37.003, -120.95), "~330m from first segment");
+        Assert.assertFalse(shape.containsPoint(37.01, -120.95), "~1.1km from first segment");
+        Assert.assertTrue(shape.containsPoint(37.05, -120.9), "on second segment");
+        Assert.assertFalse(shape.containsPoint(37.05, -120.95), "inside the corner, away from both segments");
+        // a single point corridor is a point-radius
+        GeoShape pt = GeoShape.createCorridor(new double[] { 37.0 }, new double[] { -121.0 }, 0.5);
+        Assert.assertTrue(pt.containsPoint(37.002, -121.0));
+        Assert.assertFalse(pt.containsPoint(37.01, -121.0));
+    }
+
+    @Test
+    public void testRectangle() {
+        double lat[] = { 37.1, 37.0 };
+        double lon[] = { -121.0, -120.9 };
+        GeoShape shape = GeoShape.createRectangle(lat, lon, 0.0);
+        Assert.assertTrue(shape.containsPoint(37.05, -120.95));
+        Assert.assertTrue(shape.containsPoint(37.0, -121.0), "edge");
+        Assert.assertFalse(shape.containsPoint(37.11, -120.95));
+        Assert.assertFalse(GeoShape.createRectangle(new double[] { 37.0 }, new double[] { -121.0 }, 0.0).containsPoint(37.0, -121.0), "single point");
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.opengts.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for Metrics counters, gauges and latency histogram percentiles
+ */
+public class MetricsTest {
+
+    @Test
+    public void testHistogramExactSmallValues() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        for (long v = 0L; v < 8L; v++) {
+            h.record(v);
+        }
+        Assert.assertEquals(h.getCount(), 8L);
+        Assert.assertEquals(h.getMaximum(), 7L);
+        Assert.assertEquals(h.getMean(), 3.5, 0.0001);
+        Assert.assertEquals(h.getPercentile(50.0), 3L, "values below 8 have exact buckets");
+        Assert.assertEquals(h.getPercentile(100.0), 7L);
+    }
+
+    @Test
+    public void testHistogramPercentileError() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        for (long v = 1L; v <= 100000L; v++) {
+            h.record(v);
+        }
+        // 8 sub-buckets per power of two: upper bound is at most 12.5% above the true value
+        long expect[][] = { { 50, 50000L }, { 90, 90000L }, { 99, 99000L } };
+        for (long e[] : expect) {
+            long p = h.getPercentile((double)e[0]);
+            Assert.assertTrue(p >= e[1], "p" + e[0] + " lower bound: " + p);
+            Assert.assertTrue(p <= (e[1] + (e[1] / 8L)), "p" + e[0] + " upper bound: " + p);
+        }
+        Assert.assertEquals(h.getPercentile(100.0), 100000L, "clamped to maximum");
+    }
+
+    @Test
+    public void testHistogramEdgeValues() {
+        Metrics.Histogram h = new Metrics.Histogram();
+        Assert.assertEquals(h.getPercentile(99.0), 0L, "empty");
+        h.record(-5L);
+        Assert.assertEquals(h.getMaximum(), 0L, "negative recorded as 0");
+        h.record(Long.MAX_VALUE);
+        Assert.assertEquals(h.getMaximum(), Long.MAX_VALUE);
+        Assert.assertEquals(h.getPercentile(100.0), Long.MAX_VALUE, "overflow bucket");
+    }
+
+    @Test
+    public void testCountersGaugesAndReset() {
+        Metrics.SetEnabled(true);
+        try {
+            Metrics.Increment("test.counter");
+            Metrics.Add("test.counter", 4L);
+            Assert.assertEquals(Metrics.GetCounter("test.counter").get(), 5L);
+            Metrics.RegisterGauge("test.gauge", new Metrics.Gauge() {
+                public long getValue() { return 42L; }
+            });
+            Metrics.RecordElapsed("test.timer", Metrics.StartTimer());
+            Metrics.RecordElapsed("test.ignored", 0L);
+            String text = Metrics.GetText();
+            Assert.assertTrue(text.contains("test.counter 5\n"), text);
+            Assert.assertTrue(text.contains("test.gauge 42\n"), text);
+            Assert.assertTrue(text.contains("test.timer.count 1\n"), text);
+            Assert.assertFalse(text.contains("test.ignored"), "start time 0 is not recorded");
+            Metrics.Reset();
+            Assert.assertEquals(Metrics.GetCounter("test.counter").get(), 0L, "counter cleared");
+            Assert.assertTrue(Metrics.GetText().contains("test.gauge 42\n"), "gauge retained");
+        } finally {
+            Metrics.Reset();
+            Metrics.SetEnabled(false);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        Metrics.SetEnabled(false);
+        Assert.assertEquals(Metrics.StartTimer(), 0L);
+        Metrics.Increment("test.disabled");
+        Assert.assertFalse(Metrics.GetText().contains("test.disabled"));
+    }
+
+}
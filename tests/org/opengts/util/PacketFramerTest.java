@@ -0,0 +1,105 @@
+package org.opengts.util;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for PacketFramer specification parsing, header lengths and CRC validation
+ */
+public class PacketFramerTest {
+
+    private static final byte CHECK[] = "123456789".getBytes();
+
+    /* packet: [0x7E, len, payload..., crcHi, crcLo] with CRC calculated over all preceding bytes */
+    private static byte[] crcPacket(byte payload[], int crc16) {
+        byte p[] = new byte[2 + payload.length + 2];
+        p[0] = 0x7E;
+        p[1] = (byte)payload.length;
+        System.arraycopy(payload, 0, p, 2, payload.length);
+        p[p.length - 2] = (byte)((crc16 >> 8) & 0xFF);
+        p[p.length - 1] = (byte)(crc16 & 0xFF);
+        return p;
+    }
+
+    @Test
+    public void testKnownCrcValues() {
+        // standard check values for "123456789"
+        Assert.assertEquals(Checksum.calcCrc16(CHECK, 0, CHECK.length), 0xBB3D, "CRC-16/ARC");
+        Assert.assertEquals(Checksum.calcCrcCCITT(CHECK, 0, CHECK.length), 0x29B1, "CRC-16/CCITT-FALSE");
+    }
+
+    @DataProvider(name = "crcTypes")
+    public Object[][] crcTypes() {
+        return new Object[][] {
+            { "crc16" },
+            { "ccitt" },
+        };
+    }
+
+    @Test(dataProvider = "crcTypes")
+    public void testCrcPacketValidation(String crcType) {
+        PacketFramer pf = PacketFramer.parsePacketFramer("type=crc lengthOffset=1 lengthSize=1 lengthAdjust=4 crc=" + crcType);
+        Assert.assertNotNull(pf, "framer");
+        byte tmp[] = crcPacket(CHECK, 0);
+        int crcLen = tmp.length - 2;
+        int crc = crcType.equals("ccitt")?
+            Checksum.calcCrcCCITT(tmp, 0, crcLen) :
+            Checksum.calcCrc16(tmp, 0, crcLen);
+        byte pkt[] = crcPacket(CHECK, crc);
+        try {
+            Assert.assertEquals(pf.getActualPacketLength(pkt, 2), pkt.length, "packet length");
+        } catch (PacketFramer.FramingException fe) {
+            Assert.fail("Unexpected framing error: " + fe);
+        }
+        Assert.assertTrue(pf.isValidPacket(pkt, pkt.length), "valid CRC");
+        pkt[3] ^= 0x01;
+        Assert.assertFalse(pf.isValidPacket(pkt, pkt.length), "corrupted payload");
+    }
+
+    @Test
+    public void testChecksum8Validation() {
+        PacketFramer sum = PacketFramer.parsePacketFramer("type=crc lengthOffset=0 lengthSize=1 lengthAdjust=2 crc=sum8");
+        PacketFramer xor = PacketFramer.parsePacketFramer("type=crc lengthOffset=0 lengthSize=1 lengthAdjust=2 crc=xor8");
+        byte pkt[] = new byte[] { 3, 0x10, 0x20, 0x30, 0 };
+        pkt[4] = (byte)(pkt[0] + pkt[1] + pkt[2] + pkt[3]);
+        Assert.assertTrue(sum.isValidPacket(pkt, pkt.length), "sum8");
+        pkt[4] = (byte)(pkt[0] ^ pkt[1] ^ pkt[2] ^ pkt[3]);
+        Assert.assertTrue(xor.isValidPacket(pkt, pkt.length), "xor8");
+    }
+
+    @Test
+    public void testInvalidSpecification() {
+        Assert.assertNull(PacketFramer.parsePacketFramer("type=crc lengthSize=1 crc=crc32"), "unknown crc");
+        Assert.assertNull(PacketFramer.parsePacketFramer("type=unknown"), "unknown type");
+        Assert.assertNull(PacketFramer.parsePacketFramer("type=fixed length=0"), "fixed length 0");
+        Assert.assertNull(PacketFramer.parsePacketFramer(""), "blank");
+    }
+
+    @Test
+    public void testFixedHeaderLengths() throws PacketFramer.FramingException {
+        PacketFramer pf = PacketFramer.parsePacketFramer("type=header lengthOffset=1 lengthSize=2 lengthAdjust=3");
+        Assert.assertEquals(pf.getMinimumPacketLength(), 3);
+        // incomplete header: request the header length
+        int len = pf.getActualPacketLength(new byte[] { 0x01 }, 1);
+        Assert.assertEquals(len, ServerSocketThread.PACKET_LEN_INCREMENTAL_ | 3, "incremental");
+        // big-endian length 0x0102 + 3
+        Assert.assertEquals(pf.getActualPacketLength(new byte[] { 0x00, 0x01, 0x02 }, 3), 0x0102 + 3);
+        // little-endian
+        PacketFramer le = PacketFramer.parsePacketFramer("type=prefix lengthSize=2 littleEndian=true");
+        Assert.assertEquals(le.getActualPacketLength(new byte[] { 0x02, 0x01 }, 2), 0x0102 + 2);
+    }
+
+    @Test(expectedExceptions = PacketFramer.FramingException.class)
+    public void testOversizedLength() throws PacketFramer.FramingException {
+        PacketFramer pf = PacketFramer.parsePacketFramer("type=prefix lengthSize=4");
+        pf.getActualPacketLength(new byte[] { (byte)0x7F, (byte)0xFF, (byte)0xFF, (byte)0xFF }, 4);
+    }
+
+    @Test(expectedExceptions = PacketFramer.FramingException.class)
+    public void testUndersizedLength() throws PacketFramer.FramingException {
+        PacketFramer pf = PacketFramer.parsePacketFramer("type=header lengthOffset=2 lengthSize=1 lengthAdjust=-10");
+        pf.getActualPacketLength(new byte[] { 0x00, 0x00, 0x01 }, 3);
+    }
+
+}
@@ -0,0 +1,232 @@
+package org.opengts.util;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * TestNG tests for ServerSocketThread ordered UDP lanes: per-device datagram order,
+ * lane assignment by DatagramKeyProvider, and lane shutdown
+ */
+public class ServerSocketThreadTest {
+
+    private static final int    LANES   = 4;
+
+    // datagrams handled, by packet key ("key,value")
+    private static final Map<String,List<String>> handled = new HashMap<String,List<String>>();
+    private static final Map<String,Set<String>>  threads = new HashMap<String,Set<String>>();
+    private static volatile CountDownLatch        blocked = null;
+    private static volatile CountDownLatch        release = null;
+
+    public static class RecordingHandler
+        extends AbstractClientPacketHandler
+    {
+        public void sessionStarted(InetAddress inetAddr, boolean isTCP, boolean isText) {
+            super.sessionStarted(inetAddr, isTCP, isText);
+            super.clearTerminateSession();
+        }
+        public byte[] getHandlePacket(byte pkt[]) throws Exception {
+            String s = StringTools.toStringValue(pkt).trim();
+            int p = s.indexOf(',');
+            String key = s.substring(0, p), val = s.substring(p + 1);
+            if (val.equals("block")) {
+                blocked.countDown();
+                release.await(10L, TimeUnit.SECONDS);
+            } else
+            if ((s.hashCode() & 3) == 0) {
+                Thread.sleep(1L); // vary the lane processing time
+            }
+            synchronized (handled) {
+                if (!handled.containsKey(key)) {
+                    handled.put(key, new ArrayList<String>());
+                    threads.put(key, new HashSet<String>());
+                }
+                handled.get(key).add(val);
+                threads.get(key).add(Thread.currentThread().getName());
+                handled.notifyAll();
+            }
+            return null;
+        }
+    }
+
+    private ServerSocketThread sst = null;
+
+    @BeforeMethod
+    public void setUp() {
+        synchronized (handled) {
+            handled.clear();
+            threads.clear();
+        }
+        blocked = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        release.countDown();
+        if (this.sst != null) {
+            this.sst.shutdown(1000L);
+            this.sst = null;
+        }
+    }
+
+    private ServerSocketThread startServer(String name, ServerSocketThread.DatagramKeyProvider dkp) throws Exception {
+        this.sst = new ServerSocketThread(new DatagramSocket(0, InetAddress.getLoopbackAddress()));
+        this.sst.setName(name);
+        this.sst.setTextPackets(true);
+        this.sst.setLineTerminatorChar('\n');
+        this.sst.setMaximumPacketLength(128);
+        this.sst.setDatagramLaneCount(LANES);
+        this.sst.setDatagramKeyProvider(dkp);
+        this.sst.setClientPacketHandlerClass(RecordingHandler.class);
+        this.sst.start();
+        return this.sst;
+    }
+
+    private static void send(DatagramSocket ds, int port, String pkt) throws Exception {
+        byte b[] = (pkt + "\n").getBytes("US-ASCII");
+        ds.send(new DatagramPacket(b, b.length, InetAddress.getLoopbackAddress(), port));
+    }
+
+    private static int handledCount() {
+        synchronized (handled) {
+            int n = 0;
+            for (List<String> v : handled.values()) { n += v.size(); }
+            return n;
+        }
+    }
+
+    private static void awaitHandled(int count) throws Exception {
+        long until = System.currentTimeMillis() + 10000L;
+        synchronized (handled) {
+            while ((handledCount() < count) && (System.currentTimeMillis() < until)) {
+                handled.wait(100L);
+            }
+        }
+        Assert.assertEquals(handledCount(), count, "datagrams handled");
+    }
+
+    private static List<Thread> laneThreads(String name) {
+        List<Thread> lanes = new ArrayList<Thread>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith(name + "_UDP_") && !t.getName().endsWith("_ACK")) {
+                lanes.add(t);
+            }
+        }
+        return lanes;
+    }
+
+    private static void assertInOrder(String key, int count) {
+        List<String> vals = handled.get(key);
+        Assert.assertNotNull(vals, key);
+        Assert.assertEquals(vals.size(), count, key + " count");
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(vals.get(i), String.valueOf(i), key + " order");
+        }
+    }
+
+    @Test
+    public void testLaneOrderBySource() throws Exception {
+        ServerSocketThread srv = this.startServer("SSTTestOrder", null);
+        int port = srv.getLocalPort();
+        int senders = 6, count = 150;
+        DatagramSocket ds[] = new DatagramSocket[senders];
+        try {
+            for (int s = 0; s < senders; s++) {
+                ds[s] = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            }
+            for (int i = 0; i < count; i++) {
+                for (int s = 0; s < senders; s++) {
+                    send(ds[s], port, "src" + s + "," + i);
+                }
+                if ((i % 10) == 9) { awaitHandled(senders * (i + 1)); } // stay within the socket receive buffer
+            }
+            awaitHandled(senders * count);
+        } finally {
+            for (DatagramSocket d : ds) { if (d != null) { d.close(); } }
+        }
+        synchronized (handled) {
+            for (int s = 0; s < senders; s++) {
+                assertInOrder("src" + s, count);
+                Assert.assertEquals(threads.get("src" + s).size(), 1, "one lane per source");
+                Assert.assertTrue(threads.get("src" + s).iterator().next().startsWith("SSTTestOrder_UDP_"), "handled on a UDP lane");
+            }
+        }
+    }
+
+    @Test
+    public void testLaneOrderByKey() throws Exception {
+        // datagrams of one device arrive from changing source ports (ie. carrier NAT)
+        ServerSocketThread srv = this.startServer("SSTTestKey", new ServerSocketThread.DatagramKeyProvider() {
+            public Object getDatagramKey(InetAddress addr, int port, byte data[], int dataLen) {
+                String s = StringTools.toStringValue(data, 0, dataLen);
+                return s.substring(0, s.indexOf(','));
+            }
+        });
+        int port = srv.getLocalPort();
+        int sources = 4, count = 300;
+        DatagramSocket ds[] = new DatagramSocket[sources];
+        try {
+            for (int s = 0; s < sources; s++) {
+                ds[s] = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            }
+            for (int i = 0; i < count; i++) {
+                send(ds[i % sources], port, "dev1," + i);
+                send(ds[(i + 1) % sources], port, "dev2," + i);
+                if ((i % 10) == 9) { awaitHandled(2 * (i + 1)); }
+            }
+            awaitHandled(2 * count);
+        } finally {
+            for (DatagramSocket d : ds) { if (d != null) { d.close(); } }
+        }
+        synchronized (handled) {
+            assertInOrder("dev1", count);
+            assertInOrder("dev2", count);
+            Assert.assertEquals(threads.get("dev1").size(), 1, "one lane per key");
+            Assert.assertEquals(threads.get("dev2").size(), 1, "one lane per key");
+        }
+    }
+
+    @Test
+    public void testLaneShutdown() throws Exception {
+        ServerSocketThread srv = this.startServer("SSTTestStop", new ServerSocketThread.DatagramKeyProvider() {
+            public Object getDatagramKey(InetAddress addr, int port, byte data[], int dataLen) {
+                return "dev"; // all datagrams on one lane
+            }
+        });
+        int port = srv.getLocalPort();
+        DatagramSocket ds = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            send(ds, port, "dev,block");
+            Assert.assertTrue(blocked.await(10L, TimeUnit.SECONDS), "lane is handling the first datagram");
+            for (int i = 0; i < 5; i++) {
+                send(ds, port, "dev," + i); // queued behind the blocked datagram
+            }
+            Thread.sleep(200L);
+        } finally {
+            ds.close();
+        }
+        List<Thread> lanes = laneThreads("SSTTestStop");
+        Assert.assertEquals(lanes.size(), LANES, "lanes started");
+
+        /* shutdown while a lane is handling a datagram */
+        Assert.assertTrue(srv.shutdown(1000L), "shutdown");
+        this.sst = null;
+        release.countDown();
+        for (Thread t : lanes) {
+            t.join(5000L);
+            Assert.assertFalse(t.isAlive(), t.getName() + " stopped");
+        }
+
+        /* the datagram being handled completes, queued datagrams are discarded */
+        synchronized (handled) {
+            Assert.assertEquals(handled.get("dev"), Arrays.asList("block"), "queued datagrams not handled");
+        }
+    }
+
+}
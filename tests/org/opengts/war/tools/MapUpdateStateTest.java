@@ -0,0 +1,121 @@
+package org.opengts.war.tools;
+
+import java.io.*;
+import java.util.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import org.opengts.db.tables.EventData;
+
+/**
+ * TestNG tests for MapUpdateState tokens, overlap re-reads, unsent event filtering and per-device limits
+ */
+public class MapUpdateStateTest {
+
+    private static final String SEL = "acct|user|D:dev1|";
+
+    private static EventData event(String devID, long timestamp, int statusCode) {
+        return new EventData(new EventData.Key("acct", devID, timestamp, statusCode));
+    }
+
+    private static Set<String> devices(String... devIDs) {
+        return new HashSet<String>(Arrays.asList(devIDs));
+    }
+
+    @Test
+    public void testTokenIdentifiesState() {
+        MapUpdateState a = new MapUpdateState();
+        MapUpdateState b = new MapUpdateState();
+        EventData ev[] = { event("dev1", 1000L, 0xF020), event("dev1", 1010L, 0xF020) };
+        String ta = a.update(SEL, ev, false, devices("dev1"), null);
+        String tb = b.update(SEL, ev, false, devices("dev1"), null);
+        Assert.assertEquals(ta, tb, "same map data, same token");
+        Assert.assertTrue(a.isCurrent(SEL, "W/\"" + ta + "\""), "weak quoted ETag");
+        Assert.assertFalse(a.isCurrent(SEL + "x", ta), "other selection");
+        String tc = a.update(SEL, new EventData[] { event("dev1", 1020L, 0xF020) }, true, devices("dev1"), null);
+        Assert.assertFalse(tc.equals(ta), "new events, new token");
+        Assert.assertFalse(a.isCurrent(SEL, ta), "previous token is no longer current");
+    }
+
+    @Test
+    public void testSinceTimesIncludeOverlap() {
+        MapUpdateState mus = new MapUpdateState();
+        mus.setOverlapSeconds(120L);
+        mus.update(SEL, new EventData[] { event("dev1", 5000L, 0xF020) }, false, devices("dev1"), null);
+        Assert.assertEquals(mus.getSinceTimes(false, 10L).get("dev1"), new Long(4880L));
+        Assert.assertEquals(mus.getSinceTimes(true, 1L).get("dev1"), new Long(Long.MAX_VALUE), "first N already sent");
+        Assert.assertEquals(mus.getSinceTimes(true, 2L).get("dev1"), new Long(4880L));
+    }
+
+    @Test
+    public void testUnsentEvents() {
+        MapUpdateState mus = new MapUpdateState();
+        mus.setOverlapSeconds(120L);
+        mus.update(SEL, new EventData[] { event("dev1", 4950L, 0xF020), event("dev1", 5000L, 0xF020) }, false, devices("dev1"), null);
+        EventData reread[] = {
+            event("dev1", 4950L, 0xF020), // already sent
+            event("dev1", 4990L, 0xF011), // inserted late, within the overlap window
+            event("dev1", 5000L, 0xF020), // already sent
+            event("dev1", 5000L, 0xF021), // same timestamp as the last event sent
+            event("dev1", 5100L, 0xF020), // new
+        };
+        EventData unsent[] = mus.getUnsentEvents(reread, null);
+        Assert.assertEquals(unsent.length, 3);
+        Assert.assertEquals(unsent[0].getStatusCode(), 0xF011);
+        Assert.assertEquals(unsent[1].getStatusCode(), 0xF021);
+        Assert.assertEquals(unsent[2].getTimestamp(), 5100L);
+        Assert.assertEquals(mus.getUnsentEvents(reread, devices("dev1")).length, reread.length, "replaced devices are not filtered");
+        Assert.assertEquals(mus.getUnsentEvents(null, null).length, 0);
+    }
+
+    @Test
+    public void testSentKeysOutsideOverlapAreDiscarded() {
+        MapUpdateState mus = new MapUpdateState();
+        mus.setOverlapSeconds(60L);
+        mus.update(SEL, new EventData[] { event("dev1", 1000L, 0xF020) }, false, devices("dev1"), null);
+        mus.update(SEL, new EventData[] { event("dev1", 2000L, 0xF020) }, true, devices("dev1"), null);
+        // 1000 is before the overlap window of the last event, and would not be re-read
+        Assert.assertEquals(mus.getUnsentEvents(new EventData[] { event("dev1", 1000L, 0xF020) }, null).length, 1);
+        Assert.assertEquals(mus.getUnsentEvents(new EventData[] { event("dev1", 2000L, 0xF020) }, null).length, 0);
+    }
+
+    @Test
+    public void testLastLimitReplacesDevice() {
+        MapUpdateState mus = new MapUpdateState();
+        mus.update(SEL, new EventData[] { event("dev1", 100L, 0), event("dev1", 200L, 0), event("dev2", 100L, 0) }, false, devices("dev1","dev2"), null);
+        EventData unsent[] = { event("dev1", 300L, 0), event("dev2", 300L, 0) };
+        Set<String> over = mus.getOverLimitDeviceIDs(unsent, 2L);
+        Assert.assertEquals(over, devices("dev1"), "dev1 would display 3 of 2 events");
+        Assert.assertTrue(mus.getOverLimitDeviceIDs(unsent, 0L).isEmpty(), "no limit");
+        // dev1 replaced by its last 2 events, dev2 incremented
+        EventData sent[] = { event("dev1", 200L, 0), event("dev1", 300L, 0), event("dev2", 300L, 0) };
+        mus.update(SEL, sent, true, devices("dev1","dev2"), over);
+        Assert.assertEquals(mus.getOverLimitDeviceIDs(new EventData[] { event("dev1", 400L, 0) }, 3L).size(), 0, "dev1 now displays 2 events");
+        Assert.assertEquals(mus.getOverLimitDeviceIDs(new EventData[] { event("dev2", 400L, 0) }, 2L), devices("dev2"), "dev2 displays 2 events");
+    }
+
+    @Test
+    public void testRemovedDevices() {
+        MapUpdateState mus = new MapUpdateState();
+        mus.update(SEL, new EventData[] { event("dev1", 100L, 0), event("dev2", 100L, 0) }, false, devices("dev1","dev2"), null);
+        Assert.assertEquals(mus.getRemovedDeviceIDs(devices("dev2","dev3")), Arrays.asList("dev1"));
+        mus.update(SEL, null, true, devices("dev2"), null);
+        Assert.assertTrue(mus.getRemovedDeviceIDs(devices("dev2")).isEmpty());
+    }
+
+    @Test
+    public void testSerializable() throws Exception {
+        MapUpdateState mus = new MapUpdateState();
+        String token = mus.update(SEL, new EventData[] { event("dev1", 100L, 0) }, false, devices("dev1"), null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(mus);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        MapUpdateState copy = (MapUpdateState)ois.readObject();
+        Assert.assertTrue(copy.isCurrent(SEL, token), "session state survives serialization");
+        Assert.assertEquals(copy.getUnsentEvents(new EventData[] { event("dev1", 100L, 0) }, null).length, 0);
+    }
+
+}